@@ -68,93 +68,107 @@ public abstract class Agent<T extends NodeInterface> extends Thread implements S
 
 		do {
 
-			while (suspended.get()) {
-
-				Thread.yield();
-
-			}
+			final Task<T> task;
 
 			synchronized (taskQueue) {
 
-				currentTask = taskQueue.poll();
+				task = taskQueue.poll();
 
 			}
 
-			if (currentTask != null) {
+			if (task != null) {
 
-				lastStartTime = System.nanoTime();
+				try {
 
-				ReturnValue ret = null;
+					execute(task);
 
-				// only execute process if Service layer is ready
-				// (and not shutting down right now)
-				if (Services.getInstance().isInitialized()) {
+				} catch (InterruptedException iex) {
 
-					if (createEnclosingTransaction()) {
+					// agent was killed
+					break;
+				}
 
-						try (final Tx tx = StructrApp.getInstance().tx()) {
+			} else {
 
-							ret = processTask(currentTask);
-							tx.success();
+				// queue is empty, quit.
+				acceptingTasks.set(false);
+			}
 
-						} catch (Throwable t) {
+		} while (acceptingTasks.get());
 
-							// someone killed us or the task processing failed..
-							// Logger this!!
-							logger.error("Processing task {} failed. Maybe someone killed us?", currentTask.getType(), t);
-						}
+		// call beforeShutdown to allow agents to clean up
+		beforeShutdown();
+		agentService.notifyAgentStop(this);
+	}
 
-					} else {
+	/**
+	 * Executes the given task in the calling thread. Waits while this
+	 * agent is suspended.
+	 *
+	 * @param task
+	 * @return the return value of the task, or null if the task failed
+	 * @throws InterruptedException
+	 */
+	public final ReturnValue execute(final Task<T> task) throws InterruptedException {
 
-						try {
+		synchronized (suspended) {
 
-							ret = processTask(currentTask);
+			while (suspended.get()) {
 
-						} catch (Throwable t) {
+				suspended.wait();
+			}
+		}
 
-							// someone killed us or the task processing failed..
-							// Logger this!!
-							logger.error("Processing task {} failed. Maybe someone killed us?", currentTask.getType(), t);
-						}
-					}
-				}
+		currentTask   = task;
+		lastStartTime = System.nanoTime();
+
+		ReturnValue ret = null;
 
-				if (ret != null) {
+		try {
 
-					// handle return value
-					switch (ret) {
+			// only execute process if Service layer is ready
+			// (and not shutting down right now)
+			if (Services.getInstance().isInitialized()) {
 
-						case Success :
-						case Abort :
+				if (createEnclosingTransaction()) {
 
-							// task finished, nothing to do in these cases
-							break;
+					try (final Tx tx = StructrApp.getInstance().tx()) {
 
-						case Retry :
+						ret = processTask(task);
+						tx.success();
 
-							// TODO: schedule task for re-execution
-							break;
+					} catch (Throwable t) {
 
+						// someone killed us or the task processing failed..
+						// Logger this!!
+						logger.error("Processing task {} failed. Maybe someone killed us?", task.getType(), t);
 					}
-				}
 
-				long endTime = System.nanoTime();
+				} else {
 
-				// calc. average execution time
-				averageExecutionTime += endTime;
-				averageExecutionTime /= 2;
+					try {
 
-			} else {
+						ret = processTask(task);
 
-				// queue is empty, quit.
-				acceptingTasks.set(false);
+					} catch (Throwable t) {
+
+						// someone killed us or the task processing failed..
+						// Logger this!!
+						logger.error("Processing task {} failed. Maybe someone killed us?", task.getType(), t);
+					}
+				}
 			}
 
-		} while (acceptingTasks.get());
+		} finally {
 
-		// call beforeShutdown to allow agents to clean up
-		beforeShutdown();
-		agentService.notifyAgentStop(this);
+			final long executionTime = System.nanoTime() - lastStartTime;
+
+			// calc. average execution time
+			averageExecutionTime = averageExecutionTime == 0 ? executionTime : (averageExecutionTime + executionTime) / 2;
+			currentTask          = null;
+		}
+
+		return ret;
 	}
 
 	public final boolean assignTask(final Task<T> task) {
@@ -198,7 +212,12 @@ public abstract class Agent<T extends NodeInterface> extends Thread implements S
 	public final void resumeAgent() {
 
 		acceptingTasks.set(true);
-		suspended.set(false);
+
+		synchronized (suspended) {
+
+			suspended.set(false);
+			suspended.notifyAll();
+		}
 	}
 
 	protected void beforeShutdown() {
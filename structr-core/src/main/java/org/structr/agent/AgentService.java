@@ -18,8 +18,13 @@
  */
 package org.structr.agent;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -29,12 +34,27 @@ import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
 import org.structr.api.service.Command;
 import org.structr.api.service.RunnableService;
 import org.structr.api.service.StructrServices;
+import org.structr.common.error.FrameworkException;
 import org.structr.core.Services;
+import org.structr.core.app.App;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.Principal;
+import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.Tx;
 import org.structr.schema.ConfigurationProvider;
 
 //~--- classes ----------------------------------------------------------------
@@ -42,18 +62,27 @@ import org.structr.schema.ConfigurationProvider;
 /**
  * The agent service main class.
  *
+ * Tasks are executed by a work-stealing thread pool per task type, the
+ * number of threads of each pool is configured in
+ * {@link Settings#AgentThreads}. Tasks with a higher priority are executed
+ * first, delayed tasks are queued when their delay has expired.
  *
+ * Tasks that extend {@link AbstractTask} and have a public constructor
+ * with a single node parameter are recorded in a journal on disk before
+ * they are queued, and replayed when the service is started again.
  */
 public class AgentService extends Thread implements RunnableService {
 
 	private static final Logger logger = LoggerFactory.getLogger(AgentService.class.getName());
 
-	private final int maxAgents                          = 4;    // TODO: make configurable
 	private final Map<String, List<Agent>> runningAgents = new ConcurrentHashMap<>(10, 0.9f, 8);
 	private final Map<String, Class> agentClassCache     = new ConcurrentHashMap<>(10, 0.9f, 8);
-	private final Queue<Task> taskQueue                  = new ConcurrentLinkedQueue<>();
+	private final Map<String, TaskLane> lanes            = new ConcurrentHashMap<>();
+	private final AtomicLong sequence                    = new AtomicLong();
+	private ScheduledExecutorService delayedTasks        = null;
 	private Set<Class> supportedCommands                 = null;
-	private boolean run                                  = false;
+	private TaskJournal journal                          = null;
+	private volatile boolean run                         = false;
 
 	public AgentService() {
 
@@ -64,12 +93,18 @@ public class AgentService extends Thread implements RunnableService {
 		super.setDaemon(true);
 	}
 
-	public void processTask(Task task) {
+	public void processTask(final Task task) {
 
-		synchronized (taskQueue) {
+		final long delay = task.getDelay(TimeUnit.MILLISECONDS);
+		final long id    = journal(task);
 
-			taskQueue.add(task);
-			logger.debug("Task {} added to task queue", task);
+		if (delay > 0 && delayedTasks != null) {
+
+			delayedTasks.schedule(() -> queue(task, id), delay, TimeUnit.MILLISECONDS);
+
+		} else {
+
+			queue(task, id);
 		}
 	}
 
@@ -81,7 +116,7 @@ public class AgentService extends Thread implements RunnableService {
 
 			for (Agent agent : agents) {
 
-				if (agent.getTaskQueue().contains(task)) {
+				if (task.equals(agent.getCurrentTask()) || agent.getTaskQueue().contains(task)) {
 					return (agent);
 				}
 			}
@@ -90,24 +125,6 @@ public class AgentService extends Thread implements RunnableService {
 		return (null);
 	}
 
-	@Override
-	public void run() {
-
-		logger.info("AgentService started");
-
-		while (run) {
-
-			Task nextTask = taskQueue.poll();
-			if (nextTask != null) {
-
-				assignNextAgentForTask(nextTask);
-			}
-
-			// let others act
-			try { Thread.sleep(10); } catch(Throwable ignore) {}
-		}
-	}
-
 	public void notifyAgentStart(Agent agent) {
 
 		List<Agent> agents = getRunningAgentsForTask(agent.getSupportedTaskType());
@@ -137,6 +154,24 @@ public class AgentService extends Thread implements RunnableService {
 		return Collections.emptyMap();
 	}
 
+	/**
+	 * Returns the queue depth, the wait and execution times (in
+	 * milliseconds) and the number of executed and failed tasks per task
+	 * type.
+	 *
+	 * @return a map of task types to statistics
+	 */
+	public Map<String, Map<String, Object>> getStatistics() {
+
+		final Map<String, Map<String, Object>> statistics = new LinkedHashMap<>();
+
+		for (final TaskLane lane : lanes.values()) {
+			statistics.put(lane.name, lane.getStatistics());
+		}
+
+		return statistics;
+	}
+
 	// <editor-fold defaultstate="collapsed" desc="interface RunnableService">
 	@Override
 	public void injectArguments(Command command) {
@@ -145,6 +180,18 @@ public class AgentService extends Thread implements RunnableService {
 
 	@Override
 	public boolean initialize(final StructrServices services) throws ClassNotFoundException, InstantiationException, IllegalAccessException {
+
+		final File directory = new File(Settings.getFullSettingPath(Settings.AgentJournalPath));
+
+		try {
+
+			journal = new TaskJournal(directory);
+
+		} catch (IOException ioex) {
+
+			logger.error("Unable to open task journal in {}, queued tasks will not be persisted: {}", directory.getAbsolutePath(), ioex.getMessage());
+		}
+
 		return true;
 	}
 
@@ -157,13 +204,45 @@ public class AgentService extends Thread implements RunnableService {
 	@Override
 	public void startService() throws Exception {
 
-		run = true;
-		this.start();
+		final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, (r) -> {
+
+			final Thread thread = new Thread(r, "AgentService-delayed");
+
+			thread.setDaemon(true);
+
+			return thread;
+		});
+
+		executor.setRemoveOnCancelPolicy(true);
+
+		delayedTasks = executor;
+		run          = true;
+
+		// replay pending tasks when the schema is available
+		executor.execute(this::replayJournal);
 	}
 
 	@Override
 	public void stopService() {
+
 		run = false;
+
+		if (delayedTasks != null) {
+			delayedTasks.shutdownNow();
+		}
+
+		// running tasks are allowed to finish, queued tasks stay in the journal
+		for (final TaskLane lane : lanes.values()) {
+			lane.shutdown();
+		}
+
+		for (final TaskLane lane : lanes.values()) {
+			lane.awaitTermination();
+		}
+
+		if (journal != null) {
+			journal.close();
+		}
 	}
 
 	@Override
@@ -174,58 +253,168 @@ public class AgentService extends Thread implements RunnableService {
 	// </editor-fold>
 
 	// <editor-fold defaultstate="collapsed" desc="private methods">
-	private void assignNextAgentForTask(Task nextTask) {
+	private void queue(final Task task, final long journalId) {
 
-		Class taskClass    = nextTask.getClass();
-		List<Agent> agents = getRunningAgentsForTask(taskClass);
+		if (!run) {
 
-		// need to synchronize on agents
-		synchronized (agents) {
+			logger.debug("AgentService is not running, task {} not queued", task);
+			return;
+		}
 
-			// find next free agent (agents should be sorted by load, so one
-			// of the first should do..
-			for (Agent agent : agents) {
+		final Class taskClass = task.getClass();
+		final TaskLane lane   = lanes.computeIfAbsent(taskClass.getName(), TaskLane::new);
 
-				if (agent.assignTask(nextTask)) {
+		lane.submit(new QueuedTask(task, journalId, sequence.incrementAndGet()));
 
-					// ok, task is assigned
-					logger.debug("Task assigned to agent {}", agent.getName());
+		logger.debug("Task {} added to task queue", task);
+	}
 
-					return;
+	/**
+	 * Records the given task in the journal if it can be re-created from
+	 * the journal.
+	 *
+	 * @return the journal id of the task, or -1 if the task was not recorded
+	 */
+	private long journal(final Task task) {
+
+		if (journal != null && task instanceof AbstractTask && !task.getNodes().isEmpty() && getJournalConstructor(task.getClass()) != null) {
+
+			try (final Tx tx = StructrApp.getInstance().tx()) {
+
+				final List<String> uuids = new ArrayList<>();
+				final Principal user     = task.getUser();
+
+				for (final Object node : task.getNodes()) {
+					uuids.add(((NodeInterface)node).getUuid());
 				}
+
+				final long id = journal.add(task.getClass().getName(), task.priority(), user != null ? user.getUuid() : null, uuids);
+
+				tx.success();
+
+				return id;
+
+			} catch (FrameworkException | IOException ex) {
+
+				logger.warn("Unable to record task {} in journal: {}", task, ex.getMessage());
 			}
 		}
 
-		// FIXME: find better solution for hard limit here!
-		if (agents.size() < maxAgents) {
+		return -1L;
+	}
 
-			// if we get here, task was not assigned to any agent, need to
-			// create a new one.
-			Agent agent = createAgent(nextTask);
+	private void replayJournal() {
 
-			if ((agent != null) && agent.assignTask(nextTask)) {
-				agent.start();
-			} else {
+		while (run && !Services.getInstance().awaitInitialization(1000L)) {}
 
-				// re-add task..
-				synchronized (taskQueue) {
-					taskQueue.add(nextTask);
+		if (journal == null || !run) {
+			return;
+		}
+
+		final List<TaskJournal.Entry> entries = journal.getPending();
+		if (!entries.isEmpty()) {
+
+			logger.info("Replaying {} pending tasks", entries.size());
+
+			final App app = StructrApp.getInstance();
+
+			for (final TaskJournal.Entry entry : entries) {
+
+				Task task = null;
+
+				try (final Tx tx = app.tx()) {
+
+					task = createTask(app, entry);
+
+					tx.success();
+
+				} catch (Throwable t) {
+
+					logger.warn("Unable to replay task {}: {}", entry.getTaskClass(), t.getMessage());
+				}
+
+				if (task != null) {
+
+					queue(task, entry.getId());
+
+				} else {
+
+					complete(entry.getId());
 				}
 			}
-		} else {
+		}
+	}
+
+	private Task createTask(final App app, final TaskJournal.Entry entry) throws Exception {
+
+		final Class taskClass           = Class.forName(entry.getTaskClass());
+		final Constructor constructor   = getJournalConstructor(taskClass);
+		final List<NodeInterface> nodes = new ArrayList<>();
+
+		if (constructor == null) {
+			return null;
+		}
+
+		for (final String uuid : entry.getNodes()) {
+
+			final NodeInterface node = app.getNodeById(uuid);
+			if (node != null) {
+
+				nodes.add(node);
+			}
+		}
+
+		// nodes were deleted in the meantime
+		if (nodes.isEmpty()) {
+			return null;
+		}
+
+		final AbstractTask task = (AbstractTask)constructor.newInstance(nodes.get(0));
+
+		for (final NodeInterface node : nodes.subList(1, nodes.size())) {
+			task.addNode(node);
+		}
+
+		if (entry.getUser() != null) {
+			task.setUser((Principal)app.getNodeById(Principal.class, entry.getUser()));
+		}
+
+		task.setPriority(entry.getPriority());
 
-			logger.debug("Overall agents limit reached, re-queueing task");
+		return task;
+	}
+
+	private Constructor getJournalConstructor(final Class taskClass) {
+
+		for (final Constructor constructor : taskClass.getConstructors()) {
+
+			final Class[] parameterTypes = constructor.getParameterTypes();
+			if (parameterTypes.length == 1 && NodeInterface.class.isAssignableFrom(parameterTypes[0])) {
 
-			// re-add task..
-			synchronized (taskQueue) {
-				taskQueue.add(nextTask);
+				return constructor;
+			}
+		}
+
+		return null;
+	}
+
+	private void complete(final long journalId) {
+
+		if (journal != null && journalId >= 0) {
+
+			try {
+
+				journal.complete(journalId);
+
+			} catch (IOException ioex) {
+
+				logger.warn("Unable to record task completion in journal: {}", ioex.getMessage());
 			}
 		}
 	}
 
 	/**
-	 * Creates a new agent for the given Task. Note that the agent must be
-	 * started manually after creation.
+	 * Creates a new agent for the given Task.
 	 *
 	 * @param forTask
 	 * @return a new agent for the given task
@@ -304,7 +493,14 @@ public class AgentService extends Thread implements RunnableService {
 	 * @return tasks
 	 */
 	public Collection<Task> getTaskQueue() {
-		return (taskQueue);
+
+		final List<Task> tasks = new LinkedList<>();
+
+		for (final TaskLane lane : lanes.values()) {
+			lane.addTasks(tasks);
+		}
+
+		return (tasks);
 	}
 
 	/**
@@ -316,18 +512,7 @@ public class AgentService extends Thread implements RunnableService {
 	}
 
 	private List<Agent> getRunningAgentsForTask(Class taskClass) {
-
-		List<Agent> agents = runningAgents.get(taskClass.getName());
-
-		if (agents == null) {
-
-			agents = Collections.synchronizedList(new LinkedList<Agent>());
-
-			// Hashtable is synchronized
-			runningAgents.put(taskClass.getName(), agents);
-		}
-
-		return (agents);
+		return runningAgents.computeIfAbsent(taskClass.getName(), k -> Collections.synchronizedList(new LinkedList<Agent>()));
 	}
 
 	@Override
@@ -345,4 +530,176 @@ public class AgentService extends Thread implements RunnableService {
 	public String getModuleName() {
 		return "agents";
 	}
+
+	// ----- nested classes -----
+	private static class QueuedTask implements Comparable<QueuedTask> {
+
+		private Task task      = null;
+		private long journalId = -1L;
+		private long sequence  = 0L;
+		private long queued    = 0L;
+
+		public QueuedTask(final Task task, final long journalId, final long sequence) {
+
+			this.journalId = journalId;
+			this.sequence  = sequence;
+			this.queued    = System.nanoTime();
+			this.task      = task;
+		}
+
+		@Override
+		public int compareTo(final QueuedTask other) {
+
+			// higher priority first, FIFO within the same priority
+			final int result = Integer.compare(other.task.priority(), task.priority());
+			if (result == 0) {
+
+				return Long.compare(sequence, other.sequence);
+			}
+
+			return result;
+		}
+	}
+
+	/**
+	 * The queue and the worker pool of a single task type.
+	 */
+	private class TaskLane {
+
+		private final PriorityBlockingQueue<QueuedTask> queue = new PriorityBlockingQueue<>();
+		private final Queue<Agent> idleAgents                 = new ConcurrentLinkedQueue<>();
+		private final AtomicLong maxExecutionTime             = new AtomicLong();
+		private final AtomicLong maxWaitTime                  = new AtomicLong();
+		private final LongAdder totalExecutionTime            = new LongAdder();
+		private final LongAdder totalWaitTime                 = new LongAdder();
+		private final LongAdder executed                      = new LongAdder();
+		private final LongAdder failed                        = new LongAdder();
+		private ForkJoinPool pool                             = null;
+		private String name                                   = null;
+		private int threads                                   = 0;
+
+		public TaskLane(final String name) {
+
+			this.name    = name;
+			this.threads = Math.max(1, Settings.AgentThreads.getValue());
+			this.pool    = new ForkJoinPool(threads, (p) -> {
+
+				final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+
+				thread.setName("AgentService-" + name.substring(name.lastIndexOf('.') + 1) + "-" + thread.getPoolIndex());
+
+				return thread;
+
+			}, null, true);
+		}
+
+		public void submit(final QueuedTask task) {
+
+			queue.add(task);
+
+			// each submission runs the task with the highest priority
+			pool.execute(this::runNext);
+		}
+
+		public void addTasks(final List<Task> tasks) {
+
+			for (final QueuedTask queuedTask : queue) {
+				tasks.add(queuedTask.task);
+			}
+		}
+
+		public void shutdown() {
+			pool.shutdown();
+		}
+
+		public void awaitTermination() {
+
+			try {
+
+				pool.awaitTermination(10, TimeUnit.SECONDS);
+
+			} catch (InterruptedException iex) {}
+		}
+
+		public Map<String, Object> getStatistics() {
+
+			final Map<String, Object> statistics = new LinkedHashMap<>();
+			final long count                     = executed.sum();
+
+			statistics.put("threads",              threads);
+			statistics.put("queueDepth",           queue.size());
+			statistics.put("executed",             count);
+			statistics.put("failed",               failed.sum());
+			statistics.put("averageWaitTime",      count > 0 ? totalWaitTime.sum() / count / 1000000.0 : 0.0);
+			statistics.put("maxWaitTime",          maxWaitTime.get() / 1000000.0);
+			statistics.put("averageExecutionTime", count > 0 ? totalExecutionTime.sum() / count / 1000000.0 : 0.0);
+			statistics.put("maxExecutionTime",     maxExecutionTime.get() / 1000000.0);
+
+			return statistics;
+		}
+
+		// ----- private methods -----
+		private void runNext() {
+
+			// tasks can be queued before the service layer is ready
+			while (run && !Services.getInstance().awaitInitialization(1000L)) {}
+
+			// stopped services keep queued tasks in the journal
+			if (!run) {
+				return;
+			}
+
+			final QueuedTask next = queue.poll();
+			if (next == null) {
+				return;
+			}
+
+			Agent agent = idleAgents.poll();
+			if (agent == null) {
+
+				agent = createAgent(next.task);
+			}
+
+			if (agent == null) {
+
+				logger.warn("No agent found for task {}", next.task.getType());
+
+				failed.increment();
+				complete(next.journalId);
+
+				return;
+			}
+
+			final long start    = System.nanoTime();
+			final long waitTime = start - next.queued;
+
+			notifyAgentStart(agent);
+
+			try {
+
+				if (agent.execute(next.task) == null) {
+					failed.increment();
+				}
+
+			} catch (InterruptedException iex) {
+
+				failed.increment();
+
+			} finally {
+
+				final long executionTime = System.nanoTime() - start;
+
+				notifyAgentStop(agent);
+				idleAgents.add(agent);
+
+				totalWaitTime.add(waitTime);
+				totalExecutionTime.add(executionTime);
+				maxWaitTime.accumulateAndGet(waitTime, Math::max);
+				maxExecutionTime.accumulateAndGet(executionTime, Math::max);
+				executed.increment();
+
+				complete(next.journalId);
+			}
+		}
+	}
 }
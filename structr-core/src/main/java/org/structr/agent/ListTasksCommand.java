@@ -19,6 +19,7 @@
 package org.structr.agent;
 
 import java.util.Collection;
+import java.util.Map;
 
 /**
  * Returns a Collection of the currently remaining {@link Task}s
@@ -37,4 +38,20 @@ public class ListTasksCommand extends AgentServiceCommand {
 
 		return null;
 	}
+
+	/**
+	 * Returns the queue depth, wait time and execution time per task type.
+	 *
+	 * @return a map of task types to statistics
+	 */
+	public Map<String, Map<String, Object>> getStatistics() {
+
+		AgentService agentService = (AgentService)arguments.get("agentService");
+		if(agentService != null) {
+
+			return agentService.getStatistics();
+		}
+
+		return null;
+	}
 }
@@ -0,0 +1,256 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.agent;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Append-only journal of the pending tasks of the {@link AgentService}.
+ *
+ * Each line of the journal either records a queued task (the task class,
+ * its priority, the UUID of the user and the UUIDs of the nodes), or the
+ * completion of a task. Queued tasks are synced to disk before they are
+ * executed, incomplete lines at the end of the journal are ignored. The
+ * journal is truncated whenever it grows beyond one megabyte while no task
+ * is pending, and compacted when it is opened.
+ */
+class TaskJournal {
+
+	private static final String JOURNAL_NAME = "tasks.journal";
+	private static final long COMPACT_SIZE   = 1024L * 1024L;
+
+	private final Map<Long, Entry> pending = new LinkedHashMap<>();
+	private FileChannel channel            = null;
+	private File directory                 = null;
+	private long nextId                    = 1L;
+
+	public TaskJournal(final File directory) throws IOException {
+
+		this.directory = directory;
+
+		directory.mkdirs();
+
+		open();
+	}
+
+	/**
+	 * Returns the tasks that were queued but not completed when the
+	 * journal was opened.
+	 *
+	 * @return the pending tasks
+	 */
+	public synchronized List<Entry> getPending() {
+		return new ArrayList<>(pending.values());
+	}
+
+	/**
+	 * Records the given task and syncs the journal to disk.
+	 *
+	 * @param taskClass
+	 * @param priority
+	 * @param user the UUID of the user, or null
+	 * @param nodes the UUIDs of the nodes of the task
+	 * @return the id of the journal entry
+	 * @throws IOException
+	 */
+	public synchronized long add(final String taskClass, final int priority, final String user, final List<String> nodes) throws IOException {
+
+		final Entry entry = new Entry(nextId++, taskClass, priority, user, nodes);
+
+		write(entry.toString());
+		channel.force(false);
+
+		pending.put(entry.id, entry);
+
+		return entry.id;
+	}
+
+	/**
+	 * Records the completion of the task with the given id. A lost
+	 * completion record only causes the task to be executed again.
+	 *
+	 * @param id
+	 * @throws IOException
+	 */
+	public synchronized void complete(final long id) throws IOException {
+
+		if (pending.remove(id) != null) {
+
+			if (pending.isEmpty() && channel.size() > COMPACT_SIZE) {
+
+				channel.truncate(0L);
+
+			} else {
+
+				write("D\t" + id + "\n");
+			}
+		}
+	}
+
+	public synchronized int size() {
+		return pending.size();
+	}
+
+	public synchronized void close() {
+
+		try {
+
+			channel.close();
+
+		} catch (IOException ioex) {}
+	}
+
+	// ----- private methods -----
+	private void open() throws IOException {
+
+		final File file = new File(directory, JOURNAL_NAME);
+
+		if (file.exists()) {
+
+			try (final BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+
+				final StringBuilder buf = new StringBuilder();
+				int c                   = reader.read();
+
+				while (c >= 0) {
+
+					if (c == '\n') {
+
+						parse(buf.toString());
+						buf.setLength(0);
+
+					} else {
+
+						buf.append((char)c);
+					}
+
+					c = reader.read();
+				}
+			}
+		}
+
+		// rewrite the journal with the pending entries only
+		final File tmp = new File(directory, JOURNAL_NAME + ".tmp");
+
+		try (final FileChannel out = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+			for (final Entry entry : pending.values()) {
+				out.write(ByteBuffer.wrap(entry.toString().getBytes(StandardCharsets.UTF_8)));
+			}
+
+			out.force(true);
+		}
+
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+	}
+
+	private void parse(final String line) {
+
+		final String[] parts = line.split("\t", -1);
+
+		try {
+
+			if (parts.length == 2 && "D".equals(parts[0])) {
+
+				pending.remove(Long.valueOf(parts[1]));
+
+			} else if (parts.length == 6 && "A".equals(parts[0])) {
+
+				final long id            = Long.valueOf(parts[1]);
+				final String user        = StringUtils.isNotEmpty(parts[4]) ? parts[4] : null;
+				final List<String> uuids = StringUtils.isNotEmpty(parts[5]) ? Arrays.asList(parts[5].split(",")) : new ArrayList<>();
+
+				pending.put(id, new Entry(id, parts[2], Integer.valueOf(parts[3]), user, uuids));
+				nextId = Math.max(nextId, id + 1);
+			}
+
+		} catch (NumberFormatException nfex) {
+			// ignore invalid line
+		}
+	}
+
+	private void write(final String line) throws IOException {
+
+		final ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	// ----- nested classes -----
+	static class Entry {
+
+		private List<String> nodes = null;
+		private String taskClass   = null;
+		private String user        = null;
+		private int priority       = 0;
+		private long id            = 0L;
+
+		public Entry(final long id, final String taskClass, final int priority, final String user, final List<String> nodes) {
+
+			this.taskClass = taskClass;
+			this.priority  = priority;
+			this.nodes     = nodes;
+			this.user      = user;
+			this.id        = id;
+		}
+
+		public long getId() {
+			return id;
+		}
+
+		public String getTaskClass() {
+			return taskClass;
+		}
+
+		public int getPriority() {
+			return priority;
+		}
+
+		public String getUser() {
+			return user;
+		}
+
+		public List<String> getNodes() {
+			return nodes;
+		}
+
+		@Override
+		public String toString() {
+			return "A\t" + id + "\t" + taskClass + "\t" + priority + "\t" + (user != null ? user : "") + "\t" + StringUtils.join(nodes, ",") + "\n";
+		}
+	}
+}
@@ -123,6 +123,21 @@ public class EntityAndPropertiesContainer implements NodeInterface {
 		throw new UnsupportedOperationException("Not supported by this container.");
 	}
 
+	@Override
+	public <R extends AbstractRelationship> R getRelationshipTo(final RelationshipType relType, final NodeInterface targetNode) {
+		throw new UnsupportedOperationException("Not supported by this container.");
+	}
+
+	@Override
+	public void addToCollection(final PropertyKey key, final List values) throws FrameworkException {
+		throw new UnsupportedOperationException("Not supported by this container.");
+	}
+
+	@Override
+	public void removeFromCollection(final PropertyKey key, final List values) throws FrameworkException {
+		throw new UnsupportedOperationException("Not supported by this container.");
+	}
+
 	@Override
 	public <R extends AbstractRelationship> Iterable<R> getRelationships() {
 		throw new UnsupportedOperationException("Not supported by this container.");
@@ -0,0 +1,231 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import org.structr.api.config.Settings;
+import org.structr.api.util.FixedSizeCache;
+
+/**
+ * Caches the results of permission resolution along permission-propagating
+ * relationships, keyed by node, principal and permission.
+ *
+ * Each entry stores the IDs of the nodes (including principals) that were
+ * examined to compute it, so that a modification of the security, ownership
+ * or propagation of a node only invalidates the entries that depend on it.
+ * The cache is bounded, the least valuable entries are evicted first.
+ */
+public class PermissionResolutionCache {
+
+	private static final FixedSizeCache<CacheKey, CacheEntry> cache = new FixedSizeCache<>(Settings.ResolutionCacheSize.getValue());
+	private static final AtomicLongArray grantDepths                 = new AtomicLongArray(Settings.ResolutionDepth.getValue() + 1);
+	private static final AtomicLong generation                       = new AtomicLong();
+	private static final AtomicLong maxDepth                         = new AtomicLong();
+	private static final LongAdder invalidations                     = new LongAdder();
+	private static final LongAdder resolutions                       = new LongAdder();
+	private static final LongAdder totalDepth                        = new LongAdder();
+	private static final LongAdder truncated                         = new LongAdder();
+
+	/**
+	 * Returns the cached resolution result for the given node, principal
+	 * and permission, or null if no result is cached. The dependencies of
+	 * a cached result are passed to the given consumer, because a result
+	 * that is derived from it depends on the same nodes.
+	 *
+	 * @param nodeId
+	 * @param principalId
+	 * @param permission
+	 * @param dependencies the consumer for the dependencies of the cached result
+	 * @return the cached result or null
+	 */
+	public static Boolean get(final long nodeId, final long principalId, final Permission permission, final Consumer<Set<Long>> dependencies) {
+
+		final CacheEntry entry = cache.get(new CacheKey(nodeId, principalId, permission));
+		if (entry != null) {
+
+			dependencies.accept(entry.dependencies);
+
+			return entry.value;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Stores the given resolution result. A positive result is never
+	 * replaced by a negative one. Results that were computed before the
+	 * last invalidation (identified by the given generation) are ignored,
+	 * because they might be based on outdated information.
+	 *
+	 * @param generation the generation at the start of the resolution
+	 * @param nodeId
+	 * @param principalId
+	 * @param permission
+	 * @param value
+	 * @param dependencies the IDs of the nodes the result depends on
+	 */
+	public static void put(final long generation, final long nodeId, final long principalId, final Permission permission, final boolean value, final Set<Long> dependencies) {
+
+		if (generation == PermissionResolutionCache.generation.get()) {
+
+			final CacheKey key     = new CacheKey(nodeId, principalId, permission);
+			final CacheEntry entry = cache.get(key);
+
+			if (entry == null || !entry.value) {
+
+				cache.put(key, new CacheEntry(value, dependencies));
+			}
+		}
+	}
+
+	public static long getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 * Removes all entries that depend on one of the given node IDs.
+	 *
+	 * @param nodeIds
+	 */
+	public static void invalidate(final Collection<Long> nodeIds) {
+
+		if (!nodeIds.isEmpty()) {
+
+			generation.incrementAndGet();
+
+			invalidations.add(cache.removeAll(entry -> entry.dependsOn(nodeIds)));
+		}
+	}
+
+	public static void invalidate() {
+
+		generation.incrementAndGet();
+
+		invalidations.add(cache.size());
+		cache.clear();
+	}
+
+	/**
+	 * Records the depth of a breadth-first permission resolution.
+	 *
+	 * @param depth the maximum BFS level that was examined
+	 * @param granted whether the permission was granted
+	 * @param wasTruncated whether nodes were skipped because of the maximum resolution depth
+	 */
+	public static void recordResolution(final int depth, final boolean granted, final boolean wasTruncated) {
+
+		resolutions.increment();
+		totalDepth.add(depth);
+		maxDepth.accumulateAndGet(depth, Math::max);
+
+		if (granted && depth < grantDepths.length()) {
+			grantDepths.incrementAndGet(depth);
+		}
+
+		if (wasTruncated) {
+			truncated.increment();
+		}
+	}
+
+	public static Map<String, Object> getStatistics() {
+
+		final Map<String, Object> statistics = new LinkedHashMap<>();
+		final Map<Integer, Long> grants      = new LinkedHashMap<>();
+		final long count                     = resolutions.sum();
+
+		for (int i=0; i<grantDepths.length(); i++) {
+			grants.put(i, grantDepths.get(i));
+		}
+
+		statistics.put("cache",              cache.getStatistics());
+		statistics.put("invalidations",      invalidations.sum());
+		statistics.put("resolutions",        count);
+		statistics.put("averageDepth",       count > 0 ? (double)totalDepth.sum() / (double)count : 0.0);
+		statistics.put("maxDepth",           maxDepth.get());
+		statistics.put("grantsByDepth",      grants);
+		statistics.put("truncated",          truncated.sum());
+		statistics.put("maxResolutionDepth", Settings.ResolutionDepth.getValue());
+
+		return statistics;
+	}
+
+	// ----- nested classes -----
+	private static class CacheKey {
+
+		private Permission permission = null;
+		private long principalId      = 0L;
+		private long nodeId           = 0L;
+
+		public CacheKey(final long nodeId, final long principalId, final Permission permission) {
+
+			this.permission  = permission;
+			this.principalId = principalId;
+			this.nodeId      = nodeId;
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(nodeId) * 31 * 31 + Long.hashCode(principalId) * 31 + permission.name().hashCode();
+		}
+
+		@Override
+		public boolean equals(final Object other) {
+
+			if (other instanceof CacheKey) {
+
+				final CacheKey key = (CacheKey)other;
+
+				return key.nodeId == nodeId && key.principalId == principalId && key.permission.name().equals(permission.name());
+			}
+
+			return false;
+		}
+	}
+
+	private static class CacheEntry {
+
+		private Set<Long> dependencies = null;
+		private boolean value          = false;
+
+		public CacheEntry(final boolean value, final Set<Long> dependencies) {
+
+			this.dependencies = dependencies;
+			this.value        = value;
+		}
+
+		public boolean dependsOn(final Collection<Long> nodeIds) {
+
+			for (final Long id : nodeIds) {
+
+				if (dependencies.contains(id)) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+	}
+}
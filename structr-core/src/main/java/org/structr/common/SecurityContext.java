@@ -62,6 +62,7 @@ public class SecurityContext {
 	private boolean doTransactionNotifications           = true;
 	private boolean modifyAccessTime                     = true;
 	private boolean ignoreResultCount                    = false;
+	private boolean streamResults                        = false;
 	private boolean ensureCardinality                    = true;
 	private int serializationDepth                       = -1;
 
@@ -122,6 +123,11 @@ public class SecurityContext {
 			if (request.getParameter("ignoreResultCount") != null) {
 				this.ignoreResultCount = true;
 			}
+
+			final String stream = request.getParameter("stream");
+			if (stream != null && !"false".equals(stream)) {
+				this.streamResults = true;
+			}
 		}
 	}
 
@@ -795,6 +801,14 @@ public class SecurityContext {
 		return ignoreResultCount;
 	}
 
+	public void streamResults(final boolean doStream) {
+		this.streamResults = doStream;
+	}
+
+	public boolean streamResults() {
+		return streamResults;
+	}
+
 	public boolean doEnsureCardinality() {
 		return ensureCardinality;
 	}
@@ -24,6 +24,7 @@ import java.util.Set;
 import org.structr.api.graph.PropertyContainer;
 import org.structr.core.app.StructrApp;
 import org.structr.core.graph.RelationshipInterface;
+import org.structr.core.graph.TransactionCommand;
 import org.structr.core.property.PropertyKey;
 
 /**
@@ -65,8 +66,14 @@ public class SecurityDelegate {
 		} else {
 
 			final PropertyContainer propertyContainer = graphObject.getPropertyContainer();
+			final SecurityContext securityContext     = graphObject.getSecurityContext();
+			final Object previousValue                = propertyContainer.hasProperty(key.dbName()) ? propertyContainer.getProperty(key.dbName()) : null;
+
 			propertyContainer.setProperty(key.dbName(), allowed);
 
+			// register modification so that cached permission resolution results are invalidated
+			TransactionCommand.relationshipModified(securityContext != null ? securityContext.getCachedUser() : null, graphObject, key, previousValue, allowed);
+
 		}
 	}
 
@@ -18,6 +18,7 @@
  */
 package org.structr.common.fulltext;
 
+import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.common.error.FrameworkException;
@@ -35,6 +36,10 @@ public class DummyFulltextIndexer implements FulltextIndexer {
 		logger.warn("No fulltext indexer installed, this is a dummy implementation that does nothing.");
 	}
 
+	@Override
+	public void removeFromFulltextIndex(final Indexable indexable) throws FrameworkException {
+	}
+
 	@Override
 	public GraphObjectMap getContextObject(String searchTerm, String text, int contextLength) {
 
@@ -42,4 +47,11 @@ public class DummyFulltextIndexer implements FulltextIndexer {
 
 		return new GraphObjectMap();
 	}
+
+	@Override
+	public List<String> search(final String query) {
+
+		// fall back to the search in the indexedWords property
+		return null;
+	}
 }
@@ -18,6 +18,7 @@
  */
 package org.structr.common.fulltext;
 
+import java.util.List;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObjectMap;
 
@@ -26,5 +27,15 @@ import org.structr.core.GraphObjectMap;
 public interface FulltextIndexer {
 
 	void addToFulltextIndex(final Indexable indexable) throws FrameworkException;
+	void removeFromFulltextIndex(final Indexable indexable) throws FrameworkException;
 	GraphObjectMap getContextObject(final String searchTerm, final String text, final int contextLength);
+
+	/**
+	 * Searches the fulltext index and returns the UUIDs of the matching
+	 * documents, ordered by descending relevance.
+	 *
+	 * @param query the search terms, phrases are enclosed in double quotes
+	 * @return the UUIDs of the matching documents, or null if no fulltext index is available
+	 */
+	List<String> search(final String query);
 }
@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common.fulltext;
+
+import java.util.List;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.search.Occurrence;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.app.App;
+import org.structr.core.app.Query;
+import org.structr.core.app.StructrApp;
+import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.search.SearchAttribute;
+import org.structr.core.graph.search.SourceSearchAttribute;
+import org.structr.core.property.ArrayProperty;
+
+/**
+ * The words that were extracted from an indexable file. Searches for this
+ * property are answered by the fulltext index of the installed
+ * {@link FulltextIndexer}, ordered by relevance.
+ */
+public class IndexedWordsProperty extends ArrayProperty<String> {
+
+	private static final Logger logger = LoggerFactory.getLogger(IndexedWordsProperty.class.getName());
+
+	public IndexedWordsProperty(final String name) {
+		super(name, String.class);
+	}
+
+	@Override
+	public SearchAttribute getSearchAttribute(final SecurityContext securityContext, final Occurrence occur, final String[] searchValue, final boolean exactMatch, final Query query) {
+
+		if (searchValue != null && searchValue.length > 0) {
+
+			final App app            = StructrApp.getInstance(securityContext);
+			final List<String> uuids = app.getFulltextIndexer().search(StringUtils.join(searchValue, " "));
+
+			if (uuids != null) {
+
+				final SourceSearchAttribute attr = new SourceSearchAttribute(occur);
+
+				for (final String uuid : uuids) {
+
+					try {
+
+						// resolves only nodes that are visible in the given security context
+						final NodeInterface node = app.getNodeById(uuid);
+						if (node != null) {
+
+							attr.addToResult(node);
+						}
+
+					} catch (FrameworkException fex) {
+						logger.warn("Unable to resolve fulltext search result {}: {}", uuid, fex.getMessage());
+					}
+				}
+
+				return attr;
+			}
+		}
+
+		return super.getSearchAttribute(securityContext, occur, searchValue, exactMatch, query);
+	}
+}
@@ -33,6 +33,23 @@ public class Result<T extends GraphObject> {
 
 	public static final Result EMPTY_RESULT = new Result(Collections.EMPTY_LIST, 0, false, false);
 
+	/**
+	 * The result was sorted and paged by the database.
+	 */
+	public static final String QUERY_PATH_DATABASE      = "database";
+
+	/**
+	 * The result was sorted by the database and paged while it was
+	 * instantiated, because non-readable objects must be skipped.
+	 */
+	public static final String QUERY_PATH_DATABASE_SORT = "database_sort";
+
+	/**
+	 * The result was sorted and paged in memory, e.g. because of a sort
+	 * key that is not stored in the database.
+	 */
+	public static final String QUERY_PATH_MEMORY        = "memory";
+
 	private boolean isCollection      = false;
 	private boolean isPrimitiveArray  = false;
 	private boolean hasPartialContent = false;
@@ -43,6 +60,7 @@ public class Result<T extends GraphObject> {
 	private String queryTime          = null;
 	private String sortOrder          = null;
 	private String sortKey            = null;
+	private String queryPath          = null;
 
 	private Integer resultCount       = null;
 	private Integer pageCount         = null;
@@ -51,6 +69,7 @@ public class Result<T extends GraphObject> {
 
 	private GraphObject metaData      = null;
 	private Object nonGraphObject     = null;
+	private ResultStream<T> stream    = null;
 
 	public Result(final List<T> listResult, final Integer rawResultCount, final boolean isCollection, final boolean isPrimitiveArray) {
 
@@ -60,6 +79,21 @@ public class Result<T extends GraphObject> {
 		this.resultCount      = (rawResultCount != null ? rawResultCount : (results != null ? results.size() : 0));
 	}
 
+	/**
+	 * Creates a streaming result whose elements are instantiated lazily
+	 * while the result is written. The overall result count is known
+	 * only after the stream was consumed completely.
+	 *
+	 * @param stream the result stream
+	 * @param isCollection
+	 */
+	public Result(final ResultStream<T> stream, final boolean isCollection) {
+
+		this.isCollection     = isCollection;
+		this.isPrimitiveArray = false;
+		this.stream           = stream;
+	}
+
 	public Result(T singleResult, final boolean isPrimitiveArray) {
 
 		this.isCollection     = false;
@@ -89,17 +123,64 @@ public class Result<T extends GraphObject> {
 	}
 
 	public T get(final int i) {
-		return results.get(i);
+		return getResults().get(i);
 	}
 
 	public boolean isEmpty() {
-		return results == null || results.isEmpty();
+
+		final List<T> list = getResults();
+
+		return list == null || list.isEmpty();
 	}
 
+	/**
+	 * Returns the results of this result set. Calling this method on a
+	 * streaming result consumes the stream and materializes all results.
+	 *
+	 * @return the results
+	 */
 	public List<T> getResults() {
+
+		if (results == null && stream != null) {
+
+			results = new ArrayList<>();
+
+			for (final T obj : stream) {
+				results.add(obj);
+			}
+
+			stream.close();
+		}
+
 		return results;
 	}
 
+	public boolean isStreaming() {
+		return stream != null && results == null;
+	}
+
+	/**
+	 * Returns the results of this result set as an iterable that does
+	 * not materialize a streaming result.
+	 *
+	 * @return the results
+	 */
+	public Iterable<T> getResultStream() {
+
+		if (isStreaming()) {
+			return stream;
+		}
+
+		return getResults();
+	}
+
+	public void close() {
+
+		if (stream != null) {
+			stream.close();
+		}
+	}
+
 	public void setQueryTime(final String queryTime) {
 		this.queryTime = queryTime;
 	}
@@ -124,12 +205,26 @@ public class Result<T extends GraphObject> {
 		this.sortKey = sortKey;
 	}
 
+	public String getQueryPath() {
+		return queryPath;
+	}
+
+	public void setQueryPath(final String queryPath) {
+		this.queryPath = queryPath;
+	}
+
 	public Integer getRawResultCount() {
 
 		if (resultCount != null) {
 			return resultCount;
 		}
 
+		if (stream != null) {
+
+			// null until the stream is consumed
+			return stream.getRawResultCount();
+		}
+
 		return size();
 	}
 
@@ -194,7 +289,7 @@ public class Result<T extends GraphObject> {
 	}
 
 	public int size() {
-		return !isEmpty() ? results.size() : 0;
+		return !isEmpty() ? getResults().size() : 0;
 	}
 
 	public void setHasPartialContent(boolean hasPartialContent) {
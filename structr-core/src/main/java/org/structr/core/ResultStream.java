@@ -0,0 +1,42 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core;
+
+/**
+ * A lazily evaluated result set whose elements are instantiated while
+ * it is being iterated, so that large results can be written to the
+ * client without holding all of them in memory.
+ *
+ * A result stream can only be iterated once.
+ *
+ *
+ */
+public interface ResultStream<T extends GraphObject> extends Iterable<T>, AutoCloseable {
+
+	/**
+	 * Returns the overall number of results, or null if the stream has
+	 * not been consumed completely yet.
+	 *
+	 * @return the overall number of results or null
+	 */
+	public Integer getRawResultCount();
+
+	@Override
+	public void close();
+}
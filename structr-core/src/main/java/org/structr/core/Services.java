@@ -49,6 +49,7 @@ import org.structr.common.Permission;
 import org.structr.common.Permissions;
 import org.structr.common.SecurityContext;
 import org.structr.core.app.StructrApp;
+import org.structr.core.graph.ChangelogStore;
 import org.structr.core.graph.NodeService;
 import org.structr.schema.ConfigurationProvider;
 import org.structr.util.StructrLicenseManager;
@@ -75,6 +76,7 @@ public class Services implements StructrServices {
 	private final Map<Class, Service> serviceCache             = new ConcurrentHashMap<>(10, 0.9f, 8);
 	private final Set<Class> registeredServiceClasses          = new LinkedHashSet<>();
 	private final Set<String> configuredServiceClasses         = new LinkedHashSet<>();
+	private final Object initializationLock                    = new Object();
 	private LicenseManager licenseManager                      = null;
 	private ConfigurationProvider configuration                = null;
 	private boolean initializationDone                         = false;
@@ -291,7 +293,11 @@ public class Services implements StructrServices {
 
 		setOverridingSchemaTypesAllowed(false);
 
-		initializationDone = true;
+		synchronized (initializationLock) {
+
+			initializationDone = true;
+			initializationLock.notifyAll();
+		}
 	}
 
 	@Override
@@ -312,6 +318,32 @@ public class Services implements StructrServices {
 		return initializationDone;
 	}
 
+	/**
+	 * Waits until the initialization is complete, or until the given
+	 * time has elapsed.
+	 *
+	 * @param millis the maximum time to wait in milliseconds
+	 * @return whether the initialization is complete
+	 */
+	public boolean awaitInitialization(final long millis) {
+
+		synchronized (initializationLock) {
+
+			if (!initializationDone) {
+
+				try {
+
+					initializationLock.wait(millis);
+
+				} catch (InterruptedException iex) {
+					Thread.currentThread().interrupt();
+				}
+			}
+
+			return initializationDone;
+		}
+	}
+
 	public boolean isOverridingSchemaTypesAllowed() {
 		return overridingSchemaTypesAllowed;
 	}
@@ -335,6 +367,9 @@ public class Services implements StructrServices {
 
 			serviceCache.clear();
 
+			// close changelog segment files
+			ChangelogStore.shutdown();
+
 			// shut down configuration provider
 			configuration.shutdown();
 
@@ -50,11 +50,13 @@ public interface App extends Closeable {
 	public <T extends NodeInterface> T create(final Class<T> type, final String name) throws FrameworkException;
 	public <T extends NodeInterface> T create(final Class<T> type, final PropertyMap properties) throws FrameworkException;
 	public <T extends NodeInterface> T create(final Class<T> type, final NodeAttribute<?>... attributes) throws FrameworkException;
+	public <T extends NodeInterface> List<T> create(final Class<T> type, final List<PropertyMap> properties) throws FrameworkException;
 
 	public void delete(final NodeInterface node) throws FrameworkException;
 
 	public <A extends NodeInterface, B extends NodeInterface, R extends Relation<A, B, ?, ?>> R create(final A fromNode, final B toNode, final Class<R> relType) throws FrameworkException;
 	public <A extends NodeInterface, B extends NodeInterface, R extends Relation<A, B, ?, ?>> R create(final A fromNode, final B toNode, final Class<R> relType, final PropertyMap properties) throws FrameworkException;
+	public <A extends NodeInterface, B extends NodeInterface, R extends Relation<A, B, ?, ?>> List<R> create(final List<A> fromNodes, final List<B> toNodes, final Class<R> relType) throws FrameworkException;
 
 	public void delete(final RelationshipInterface relationship);
 
@@ -36,6 +36,7 @@ import org.structr.core.property.PropertyMap;
 public interface Query<T extends GraphObject> extends Iterable<T> {
 
 	public Result<T> getResult() throws FrameworkException;
+	public Result<T> getStreamingResult() throws FrameworkException;
 	public List<T> getAsList() throws FrameworkException;
 	public T getFirst() throws FrameworkException;
 
@@ -44,6 +45,7 @@ public interface Query<T extends GraphObject> extends Iterable<T> {
 	public Query<T> sort(final PropertyKey key);
 	public Query<T> sortAscending(final PropertyKey key);
 	public Query<T> sortDescending(final PropertyKey key);
+	public Query<T> thenSort(final PropertyKey key, final boolean descending);
 	public Query<T> order(final boolean descending);
 	public Query<T> pageSize(final int pageSize);
 	public Query<T> page(final int page);
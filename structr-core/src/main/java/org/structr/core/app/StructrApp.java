@@ -20,6 +20,7 @@ package org.structr.core.app;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
@@ -31,11 +32,11 @@ import org.structr.agent.AgentService;
 import org.structr.agent.Task;
 import org.structr.api.DatabaseService;
 import org.structr.api.NotFoundException;
-import org.structr.api.config.Settings;
 import org.structr.api.graph.GraphProperties;
+import org.structr.api.graph.Node;
+import org.structr.api.graph.Relationship;
 import org.structr.api.service.Command;
 import org.structr.api.service.Service;
-import org.structr.api.util.FixedSizeCache;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.common.fulltext.DummyFulltextIndexer;
@@ -58,6 +59,7 @@ import org.structr.core.graph.NodeServiceCommand;
 import org.structr.core.graph.RelationshipFactory;
 import org.structr.core.graph.RelationshipInterface;
 import org.structr.core.graph.Tx;
+import org.structr.core.graph.UuidIndex;
 import org.structr.core.graph.search.SearchNodeCommand;
 import org.structr.core.graph.search.SearchRelationshipCommand;
 import org.structr.core.property.PropertyMap;
@@ -73,8 +75,6 @@ public class StructrApp implements App {
 
 	private static final Logger logger = LoggerFactory.getLogger(StructrApp.class);
 
-	private static FixedSizeCache<String, Long> nodeUuidMap = null;
-	private static FixedSizeCache<String, Long> relUuidMap  = null;
 	private static final URI schemaBaseURI                  = URI.create("https://structr.org/v1.1/#");
 	private static final Object globalConfigLock            = new Object();
 	private RelationshipFactory relFactory                  = null;
@@ -98,37 +98,21 @@ public class StructrApp implements App {
 	@Override
 	public <T extends NodeInterface> T create(final Class<T> type, final PropertyMap source) throws FrameworkException {
 
-		if (type == null) {
-			throw new FrameworkException(422, "Empty type (null). Please supply a valid class name in the type property.");
-		}
-
 		final CreateNodeCommand<T> command = command(CreateNodeCommand.class);
-		final PropertyMap properties       = new PropertyMap(source);
-		String finalType                   = type.getSimpleName();
 
-		// try to identify the actual type from input set (creation wouldn't work otherwise anyway)
-		final String typeFromInput = properties.get(NodeInterface.type);
-		if (typeFromInput != null) {
-
-			Class actualType = StructrApp.getConfiguration().getNodeEntityClass(typeFromInput);
-			if (actualType == null) {
-
-				// overwrite type information when creating a node (adhere to type specified by resource!)
-				properties.put(AbstractNode.type, type.getSimpleName());
-
-			} else if (actualType.isInterface()) {
+		return command.execute(getCreationProperties(type, source));
+	}
 
-				throw new FrameworkException(422, "Invalid interface type " + type.getSimpleName() + ", please supply a non-interface class name in the type property");
+	@Override
+	public <T extends NodeInterface> List<T> create(final Class<T> type, final List<PropertyMap> sources) throws FrameworkException {
 
-			} else {
+		final CreateNodeCommand<T> command = command(CreateNodeCommand.class);
+		final List<PropertyMap> properties = new ArrayList<>(sources.size());
 
-				finalType = actualType.getSimpleName();
-			}
+		for (final PropertyMap source : sources) {
+			properties.add(getCreationProperties(type, source));
 		}
 
-		// set type
-		properties.put(AbstractNode.type, finalType);
-
 		return command.execute(properties);
 	}
 
@@ -146,7 +130,6 @@ public class StructrApp implements App {
 
 	@Override
 	public void delete(final NodeInterface node) {
-		removeNodeFromCache(node);
 		command(DeleteNodeCommand.class).execute(node);
 	}
 
@@ -160,9 +143,13 @@ public class StructrApp implements App {
 		return command(CreateRelationshipCommand.class).execute(fromNode, toNode, relType, properties);
 	}
 
+	@Override
+	public <A extends NodeInterface, B extends NodeInterface, R extends Relation<A, B, ?, ?>> List<R> create(final List<A> fromNodes, final List<B> toNodes, final Class<R> relType) throws FrameworkException {
+		return command(CreateRelationshipCommand.class).execute(fromNodes, toNodes, relType);
+	}
+
 	@Override
 	public void delete(final RelationshipInterface relationship) {
-		removeRelFromCache(relationship);
 		command(DeleteRelationshipCommand.class).execute(relationship);
 	}
 
@@ -178,31 +165,40 @@ public class StructrApp implements App {
 			return null;
 		}
 
-		final Long nodeId = getNodeFromCache(uuid);
-		if (nodeId == null) {
+		final long nodeId = UuidIndex.getNodeId(uuid);
+		if (nodeId >= 0) {
 
-			final Query query = nodeQuery().uuid(uuid);
+			try {
 
-			// set type for faster query
-			if (type != null) {
-				query.andType(type);
-			}
+				final Node node = getDatabaseService().getNodeById(nodeId);
 
-			final GraphObject entity = query.getFirst();
-			if (entity != null) {
+				// the ID of a deleted node can be reused
+				if (uuid.equals(node.getProperty(GraphObject.id.dbName()))) {
 
-				nodeUuidMap.put(uuid, entity.getId());
-				return (NodeInterface)entity;
-			}
+					return nodeFactory.instantiate(node);
+				}
 
-		} else {
+			} catch (NotFoundException ignore) {}
 
-			try {
-				return nodeFactory.instantiate(getDatabaseService().getNodeById(nodeId));
+			UuidIndex.removeOutdated(uuid);
+		}
 
-			} catch (NotFoundException ignore) {
-				nodeUuidMap.remove(uuid);
-			}
+		final long t0     = System.nanoTime();
+		final Query query = nodeQuery().uuid(uuid);
+
+		// set type for faster query
+		if (type != null) {
+			query.andType(type);
+		}
+
+		final GraphObject entity = query.getFirst();
+
+		UuidIndex.recordFallback(System.nanoTime() - t0);
+
+		if (entity != null) {
+
+			UuidIndex.putNode(uuid, entity.getId());
+			return (NodeInterface)entity;
 		}
 
 		return null;
@@ -220,35 +216,44 @@ public class StructrApp implements App {
 			return null;
 		}
 
-		final Long id = getRelFromCache(uuid);
-		if (id == null) {
+		final long id = UuidIndex.getRelationshipId(uuid);
+		if (id >= 0) {
 
-			final Query query = relationshipQuery().uuid(uuid);
+			try {
 
-			// set type for faster query
-			if (type != null) {
-				query.andType(type);
-			} else {
+				final Relationship relationship = getDatabaseService().getRelationshipById(id);
 
-				logger.warn("Relationship access by UUID is deprecated and not supported by Neo4j, this can take a very long time. Please examine the following stack trace and amend.");
-				Thread.dumpStack();
-			}
+				// the ID of a deleted relationship can be reused
+				if (uuid.equals(relationship.getProperty(GraphObject.id.dbName()))) {
 
-			final GraphObject entity = query.getFirst();
-			if (entity != null) {
+					return relFactory.instantiate(relationship);
+				}
 
-				relUuidMap.put(uuid, entity.getId());
-				return (RelationshipInterface)entity;
-			}
+			} catch (NotFoundException ignore) {}
+
+			UuidIndex.removeOutdated(uuid);
+		}
+
+		final long t0     = System.nanoTime();
+		final Query query = relationshipQuery().uuid(uuid);
 
+		// set type for faster query
+		if (type != null) {
+			query.andType(type);
 		} else {
 
-			try {
-				return relFactory.instantiate(getDatabaseService().getRelationshipById(id));
+			logger.warn("Relationship access by UUID is deprecated and not supported by Neo4j, this can take a very long time. Please examine the following stack trace and amend.");
+			Thread.dumpStack();
+		}
 
-			} catch (NotFoundException ignore) {
-				relUuidMap.remove(uuid);
-			}
+		final GraphObject entity = query.getFirst();
+
+		UuidIndex.recordFallback(System.nanoTime() - t0);
+
+		if (entity != null) {
+
+			UuidIndex.putRelationship(uuid, entity.getId());
+			return (RelationshipInterface)entity;
 		}
 
 		return null;
@@ -484,14 +489,7 @@ public class StructrApp implements App {
 	}
 
 	public static void invalidate(final String uuid) {
-
-		if (nodeUuidMap != null) {
-			nodeUuidMap.remove(uuid);
-		}
-
-		if (relUuidMap != null) {
-			relUuidMap.remove(uuid);
-		}
+		UuidIndex.remove(uuid);
 	}
 
 	// ----- private static methods -----
@@ -521,68 +519,43 @@ public class StructrApp implements App {
 	private static final Map<Class, URI> typeIdMap   = new LinkedHashMap<>();
 
 	// ---------- private methods -----
-	private synchronized Long getNodeFromCache(final String uuid) {
+	private PropertyMap getCreationProperties(final Class type, final PropertyMap source) throws FrameworkException {
 
-		if (nodeUuidMap == null) {
-
-			nodeUuidMap = new FixedSizeCache<>(Settings.UuidCacheSize.getValue());
+		if (type == null) {
+			throw new FrameworkException(422, "Empty type (null). Please supply a valid class name in the type property.");
 		}
 
-		return nodeUuidMap.get(uuid);
-	}
-
-	private synchronized Long getRelFromCache(final String uuid) {
-
-		if (relUuidMap == null) {
+		final PropertyMap properties = new PropertyMap(source);
+		String finalType             = type.getSimpleName();
 
-			relUuidMap = new FixedSizeCache<>(Settings.UuidCacheSize.getValue());
-		}
-
-		return relUuidMap.get(uuid);
-	}
+		// try to identify the actual type from input set (creation wouldn't work otherwise anyway)
+		final String typeFromInput = properties.get(NodeInterface.type);
+		if (typeFromInput != null) {
 
-	private synchronized void removeNodeFromCache(final NodeInterface node) {
+			Class actualType = StructrApp.getConfiguration().getNodeEntityClass(typeFromInput);
+			if (actualType == null) {
 
-		if (node != null) {
+				// overwrite type information when creating a node (adhere to type specified by resource!)
+				properties.put(AbstractNode.type, type.getSimpleName());
 
-			final String uuid = node.getUuid();
-			if (uuid != null) {
+			} else if (actualType.isInterface()) {
 
-				if (nodeUuidMap == null) {
+				throw new FrameworkException(422, "Invalid interface type " + type.getSimpleName() + ", please supply a non-interface class name in the type property");
 
-					nodeUuidMap = new FixedSizeCache<>(Settings.UuidCacheSize.getValue());
-				}
+			} else {
 
+				finalType = actualType.getSimpleName();
 			}
 		}
-	}
-
-	private synchronized void removeRelFromCache(final RelationshipInterface rel) {
-
-		if (rel != null) {
 
-			final String uuid = rel.getUuid();
-			if (uuid != null) {
-
-				if (relUuidMap == null) {
-
-					relUuidMap = new FixedSizeCache<>(Settings.UuidCacheSize.getValue());
-				}
+		// set type
+		properties.put(AbstractNode.type, finalType);
 
-			}
-		}
+		return properties;
 	}
 
 	@Override
 	public void invalidateCache(){
-
-		if (nodeUuidMap != null) {
-			nodeUuidMap.clear();
-		}
-
-		if (relUuidMap != null) {
-			relUuidMap.clear();
-		}
-
+		UuidIndex.rebuild(getDatabaseService());
 	}
 }
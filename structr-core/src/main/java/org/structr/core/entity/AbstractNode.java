@@ -25,7 +25,6 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.GregorianCalendar;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -66,6 +65,7 @@ import org.structr.common.GraphObjectComparator;
 import org.structr.common.IdSorter;
 import org.structr.common.Permission;
 import org.structr.common.PermissionPropagation;
+import org.structr.common.PermissionResolutionCache;
 import org.structr.common.PermissionResolutionMask;
 import org.structr.common.PropertyView;
 import org.structr.common.SecurityContext;
@@ -84,6 +84,7 @@ import org.structr.core.app.StructrApp;
 import org.structr.core.converter.PropertyConverter;
 import org.structr.core.entity.relationship.Ownership;
 import org.structr.core.entity.relationship.PrincipalOwnsNode;
+import org.structr.core.graph.MaterializedProperties;
 import org.structr.core.graph.ModificationQueue;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.NodeRelationshipStatisticsCommand;
@@ -93,6 +94,7 @@ import org.structr.core.graph.RelationshipInterface;
 import org.structr.core.property.FunctionProperty;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
+import org.structr.core.property.RelationProperty;
 import org.structr.core.script.Scripting;
 import org.structr.schema.action.ActionContext;
 import org.structr.schema.action.Function;
@@ -106,10 +108,9 @@ import org.structr.schema.action.Function;
  */
 public abstract class AbstractNode implements NodeInterface, AccessControllable, CMISInfo, CMISItemInfo {
 
-	private static final int permissionResolutionMaxLevel                                                 = Settings.ResolutionDepth.getValue();
-	private static final Logger logger                                                                    = LoggerFactory.getLogger(AbstractNode.class.getName());
-	private static final FixedSizeCache<String, Object> relationshipTemplateInstanceCache                 = new FixedSizeCache<>(1000);
-	private static final Map<Long, Map<Long, PermissionResolutionResult>> globalPermissionResolutionCache = new HashMap<>();
+	private static final int permissionResolutionMaxLevel                                 = Settings.ResolutionDepth.getValue();
+	private static final Logger logger                                                    = LoggerFactory.getLogger(AbstractNode.class.getName());
+	private static final FixedSizeCache<String, Object> relationshipTemplateInstanceCache = new FixedSizeCache<>(1000);
 
 	public static final View defaultView = new View(AbstractNode.class, PropertyView.Public, id, type);
 
@@ -486,6 +487,9 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 			return null;
 		}
 
+		// record dependency of materialized function properties
+		MaterializedProperties.recordRead(this);
+
 		return key.getProperty(securityContext, this, applyConverter, predicate);
 	}
 
@@ -594,6 +598,21 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 		return false;
 	}
 
+	@Override
+	public <R extends AbstractRelationship> R getRelationshipTo(final RelationshipType type, final NodeInterface targetNode) {
+
+		if (dbNode != null && type != null && targetNode != null) {
+
+			final Relationship rel = dbNode.getRelationshipTo(type, targetNode.getNode());
+			if (rel != null) {
+
+				return new RelationshipFactory<R>(securityContext).instantiate(rel);
+			}
+		}
+
+		return null;
+	}
+
 	@Override
 	public final <R extends AbstractRelationship> Iterable<R> getRelationships() {
 		return new IterableAdapter<>(dbNode.getRelationships(), new RelationshipFactory<R>(securityContext));
@@ -823,6 +842,13 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 			return true;
 		}
 
+		// cached resolution results depend on this node and the principal
+		alreadyTraversed.addDependency(getId());
+
+		if (accessingUser != null) {
+			alreadyTraversed.addDependency(accessingUser.getId());
+		}
+
 		// check owner
 		final Principal _owner = getOwnerNode();
 		final boolean hasOwner = (_owner != null);
@@ -862,6 +888,8 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 
 				final Queue<BFSInfo> bfsNodes   = new LinkedList<>();
 				final BFSInfo root              = new BFSInfo(null, this);
+				boolean truncated               = false;
+				int depth                       = 0;
 
 				// add initial element
 				bfsNodes.add(root);
@@ -869,16 +897,26 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 				do {
 
 					final BFSInfo info = bfsNodes.poll();
-					if (info != null && info.level < permissionResolutionMaxLevel) {
+					if (info != null) {
+
+						if (info.level >= permissionResolutionMaxLevel) {
+
+							// resolution is limited by the maximum depth
+							truncated = true;
+							continue;
+						}
+
+						depth = Math.max(depth, info.level);
 
-						final Boolean value = info.node.getPermissionResolutionResult(accessingUser.getId(), permission);
+						final Boolean value = info.node.getPermissionResolutionResult(accessingUser.getId(), permission, alreadyTraversed);
 						if (value != null) {
 
 							// returning immediately
 							if (Boolean.TRUE.equals(value)) {
 
 								// do backtracking
-								backtrack(info, accessingUser.getId(), permission, true, 0, doLog);
+								backtrack(info, accessingUser.getId(), permission, true, 0, alreadyTraversed, doLog);
+								PermissionResolutionCache.recordResolution(info.level, true, truncated);
 
 								return true;
 							}
@@ -888,7 +926,8 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 							if (info.node.hasEffectivePermissions(info, accessingUser, permission, mask, level, alreadyTraversed, bfsNodes, doLog)) {
 
 								// do backtracking
-								backtrack(info, accessingUser.getId(), permission, true, 0, doLog);
+								backtrack(info, accessingUser.getId(), permission, true, 0, alreadyTraversed, doLog);
+								PermissionResolutionCache.recordResolution(info.level, true, truncated);
 
 								return true;
 							}
@@ -898,7 +937,8 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 				} while (!bfsNodes.isEmpty());
 
 				// do backtracking
-				backtrack(root, accessingUser.getId(), permission, false, 0, doLog);
+				backtrack(root, accessingUser.getId(), permission, false, 0, alreadyTraversed, doLog);
+				PermissionResolutionCache.recordResolution(depth, false, truncated);
 			}
 
 			// Last: recursively check possible parent principals
@@ -913,7 +953,7 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 		return false;
 	}
 
-	private void backtrack(final BFSInfo info, final long principalId, final Permission permission, final boolean value, final int level, final boolean doLog) {
+	private void backtrack(final BFSInfo info, final long principalId, final Permission permission, final boolean value, final int level, final AlreadyTraversed alreadyTraversed, final boolean doLog) {
 
 		if (doLog) {
 
@@ -932,12 +972,12 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 			System.out.print(info.node.getType() + " (" + info.node.getUuid() + ") --> ");
 		}
 
-		info.node.storePermissionResolutionResult(principalId, permission, value);
+		info.node.storePermissionResolutionResult(principalId, permission, value, alreadyTraversed);
 
 		// go to parent(s)
 		if (info.parent != null) {
 
-			backtrack(info.parent, principalId, permission, value, level+1, doLog);
+			backtrack(info.parent, principalId, permission, value, level+1, alreadyTraversed, doLog);
 		}
 
 		if (doLog && level == 0) {
@@ -983,7 +1023,7 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 
 							if (otherNode.isGranted(permission, principal, mask, level+1, alreadyTraversed, false, doLog)) {
 
-								otherNode.storePermissionResolutionResult(principal.getId(), permission, true);
+								otherNode.storePermissionResolutionResult(principal.getId(), permission, true, alreadyTraversed);
 
 								// break early
 								return true;
@@ -1124,69 +1164,12 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 		mask.handleProperties(rel.getDeltaProperties());
 	}
 
-	private Boolean getPermissionResolutionResult(final long principalId, final Permission permission) {
-
-		Map<Long, PermissionResolutionResult> permissionResolutionCache = globalPermissionResolutionCache.get(getId());
-		if (permissionResolutionCache == null) {
-
-			permissionResolutionCache = new HashMap<>();
-			globalPermissionResolutionCache.put(getId(), permissionResolutionCache);
-		}
-
-		PermissionResolutionResult result = permissionResolutionCache.get(principalId);
-		if (result != null) {
-
-			if (permission.equals(Permission.read)) {
-				return result.read;
-			}
-
-			if (permission.equals(Permission.write)) {
-				return result.write;
-			}
-
-			if (permission.equals(Permission.delete)) {
-				return result.delete;
-			}
-
-			if (permission.equals(Permission.accessControl)) {
-				return result.accessControl;
-			}
-		}
-
-		return null;
+	private Boolean getPermissionResolutionResult(final long principalId, final Permission permission, final AlreadyTraversed alreadyTraversed) {
+		return PermissionResolutionCache.get(getId(), principalId, permission, alreadyTraversed::addDependencies);
 	}
 
-	private void storePermissionResolutionResult(final long principalId, final Permission permission, final boolean value) {
-
-		Map<Long, PermissionResolutionResult> permissionResolutionCache = globalPermissionResolutionCache.get(getId());
-		if (permissionResolutionCache == null) {
-
-			permissionResolutionCache = new HashMap<>();
-			globalPermissionResolutionCache.put(getId(), permissionResolutionCache);
-		}
-
-		PermissionResolutionResult result = permissionResolutionCache.get(principalId);
-		if (result == null) {
-
-			result = new PermissionResolutionResult();
-			permissionResolutionCache.put(principalId, result);
-		}
-
-		if (permission.equals(Permission.read) && (result.read == null || result.read == false)) {
-			result.read = value;
-		}
-
-		if (permission.equals(Permission.write) && (result.write == null || result.write == false)) {
-			result.write = value;
-		}
-
-		if (permission.equals(Permission.delete) && (result.delete == null || result.delete == false)) {
-			result.delete = value;
-		}
-
-		if (permission.equals(Permission.accessControl) && (result.accessControl == null || result.accessControl == false)) {
-			result.accessControl = value;
-		}
+	private void storePermissionResolutionResult(final long principalId, final Permission permission, final boolean value, final AlreadyTraversed alreadyTraversed) {
+		PermissionResolutionCache.put(alreadyTraversed.getGeneration(), getId(), principalId, permission, value, alreadyTraversed.getDependencies());
 	}
 
 	/**
@@ -1227,13 +1210,11 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 
 	@Override
 	public boolean onModification(SecurityContext securityContext, ErrorBuffer errorBuffer, final ModificationQueue modificationQueue) throws FrameworkException {
-		clearPermissionResolutionCache();
 		return true;
 	}
 
 	@Override
 	public boolean onDeletion(SecurityContext securityContext, ErrorBuffer errorBuffer, PropertyMap properties) throws FrameworkException {
-		clearPermissionResolutionCache();
 		return true;
 	}
 
@@ -1251,22 +1232,18 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 
 	@Override
 	public void ownerModified(SecurityContext securityContext) {
-		clearPermissionResolutionCache();
 	}
 
 	@Override
 	public void securityModified(SecurityContext securityContext) {
-		clearPermissionResolutionCache();
 	}
 
 	@Override
 	public void locationModified(SecurityContext securityContext) {
-		clearPermissionResolutionCache();
 	}
 
 	@Override
 	public void propagatedModification(SecurityContext securityContext) {
-		clearPermissionResolutionCache();
 	}
 
 	@Override
@@ -1421,58 +1398,132 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 
 			if (!key.equals(GraphObject.id)) {
 
-				if (dbNode != null && dbNode.hasProperty(key.dbName())) {
+				checkModificationOfExistingValue(key, dbNode != null && dbNode.hasProperty(key.dbName()));
+			}
+		}
 
-					// check for system properties
-					if (key.isSystemInternal() && !internalSystemPropertiesUnlocked) {
+		NodeInterface.super.setProperties(securityContext, properties);
+	}
 
-						throw new FrameworkException(422, "Property " + key.jsonName() + " is an internal system property", new InternalSystemPropertyToken(getClass().getSimpleName(), key));
+	@Override
+	public void addToCollection(final PropertyKey key, final List values) throws FrameworkException {
 
-					}
+		final RelationProperty relationProperty = getRelationPropertyForModification(key);
 
-					// check for read-only properties
-					if ((key.isReadOnly() || key.isWriteOnce()) && !readOnlyPropertiesUnlocked && !securityContext.isSuperUser()) {
+		for (final Object value : convertElements(key, values)) {
 
-						throw new FrameworkException(422, "Property " + key.jsonName() + " is read-only", new ReadOnlyPropertyToken(getClass().getSimpleName(), key));
+			relationProperty.addSingleElement(securityContext, this, value);
+		}
+	}
 
-					}
+	@Override
+	public void removeFromCollection(final PropertyKey key, final List values) throws FrameworkException {
 
-				}
+		final RelationProperty relationProperty = getRelationPropertyForModification(key);
+
+		for (final Object value : convertElements(key, values)) {
+
+			relationProperty.removeSingleElement(securityContext, this, value);
+		}
+	}
+
+	private RelationProperty getRelationPropertyForModification(final PropertyKey key) throws FrameworkException {
+
+		if (!isGranted(Permission.write, securityContext)) {
+
+			throw new FrameworkException(403, "Modification not permitted.");
+		}
+
+		if (!(key instanceof RelationProperty)) {
+
+			throw new FrameworkException(422, "Property " + key.jsonName() + " is not a relationship property");
+		}
+
+		try {
+
+			// only protected properties need to know whether a value exists, which is
+			// checked with a single query instead of loading the related nodes
+			if (key.isSystemInternal() || key.isReadOnly() || key.isWriteOnce()) {
+
+				final RelationProperty relationProperty = (RelationProperty)key;
+				final Direction direction               = "in".equals(relationProperty.getDirectionKey()) ? Direction.INCOMING : Direction.OUTGOING;
+
+				checkModificationOfExistingValue(key, dbNode != null && dbNode.hasRelationships(direction, relationProperty.getRelation()));
 			}
+
+		} finally {
+
+			internalSystemPropertiesUnlocked = false;
+			readOnlyPropertiesUnlocked       = false;
 		}
 
-		NodeInterface.super.setProperties(securityContext, properties);
+		return (RelationProperty)key;
 	}
 
-	private <T> Object setPropertyInternal(final PropertyKey<T> key, final T value) throws FrameworkException {
+	private void checkModificationOfExistingValue(final PropertyKey key, final boolean hasValue) throws FrameworkException {
 
-		if (key == null) {
+		if (hasValue) {
 
-			logger.error("Tried to set property with null key (action was denied)");
+			// check for system properties
+			if (key.isSystemInternal() && !internalSystemPropertiesUnlocked) {
 
-			throw new FrameworkException(422, "Tried to set property with null key (action was denied)", new NullArgumentToken(getClass().getSimpleName(), base));
+				throw new FrameworkException(422, "Property " + key.jsonName() + " is an internal system property", new InternalSystemPropertyToken(getClass().getSimpleName(), key));
+
+			}
+
+			// check for read-only properties
+			if ((key.isReadOnly() || key.isWriteOnce()) && !readOnlyPropertiesUnlocked && !securityContext.isSuperUser()) {
 
+				throw new FrameworkException(422, "Property " + key.jsonName() + " is read-only", new ReadOnlyPropertyToken(getClass().getSimpleName(), key));
+
+			}
 		}
+	}
 
-		try {
-			if (dbNode != null && dbNode.hasProperty(key.dbName())) {
+	private List convertElements(final PropertyKey key, final List values) throws FrameworkException {
 
-				// check for system properties
-				if (key.isSystemInternal() && !internalSystemPropertiesUnlocked) {
+		final PropertyConverter inputConverter = key.inputConverter(securityContext);
+		final List elements                    = new LinkedList<>();
 
-					throw new FrameworkException(422, "Property " + key.jsonName() + " is an internal system property", new InternalSystemPropertyToken(getClass().getSimpleName(), key));
+		if (inputConverter != null && key.isCollection()) {
 
-				}
+			final Object converted = inputConverter.convert(values);
+			if (converted instanceof Iterable) {
 
-				// check for read-only properties
-				if ((key.isReadOnly() || key.isWriteOnce()) && !readOnlyPropertiesUnlocked && !securityContext.isSuperUser()) {
+				Iterables.addAll(elements, (Iterable)converted);
+			}
 
-					throw new FrameworkException(422, "Property " + key.jsonName() + " is read-only", new ReadOnlyPropertyToken(getClass().getSimpleName(), key));
+		} else if (inputConverter != null) {
 
-				}
+			for (final Object value : values) {
 
+				elements.add(inputConverter.convert(value));
 			}
 
+		} else {
+
+			elements.addAll(values);
+		}
+
+		elements.removeAll(Collections.singleton(null));
+
+		return elements;
+	}
+
+	private <T> Object setPropertyInternal(final PropertyKey<T> key, final T value) throws FrameworkException {
+
+		if (key == null) {
+
+			logger.error("Tried to set property with null key (action was denied)");
+
+			throw new FrameworkException(422, "Tried to set property with null key (action was denied)", new NullArgumentToken(getClass().getSimpleName(), base));
+
+		}
+
+		try {
+
+			checkModificationOfExistingValue(key, dbNode != null && dbNode.hasProperty(key.dbName()));
+
 			return key.setProperty(securityContext, this, value);
 
 		} finally {
@@ -1522,7 +1573,7 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 	}
 
 	public static void clearPermissionResolutionCache() {
-		globalPermissionResolutionCache.clear();
+		PermissionResolutionCache.invalidate();
 	}
 
 	public static <A extends NodeInterface, B extends NodeInterface, R extends Relation<A, B, ?, ?>> R getRelationshipForType(final Class<R> type) {
@@ -2042,7 +2093,10 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 
 	private static class AlreadyTraversed {
 
+		private final long generation       = PermissionResolutionCache.getGeneration();
 		private Map<String, Set<Long>> sets = new LinkedHashMap<>();
+		private Set<Long> dependencies      = null;
+		private Set<Long> snapshot          = null;
 
 		public boolean contains(final String key, final Long id) {
 
@@ -2066,6 +2120,42 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 
 			return 0;
 		}
+
+		public void addDependency(final long id) {
+
+			if (dependencies == null) {
+				dependencies = new HashSet<>();
+			}
+
+			if (dependencies.add(id)) {
+				snapshot = null;
+			}
+		}
+
+		public void addDependencies(final Set<Long> ids) {
+
+			for (final Long id : ids) {
+				addDependency(id);
+			}
+		}
+
+		/**
+		 * Returns an immutable copy of the IDs collected so far, the copy
+		 * is shared between all results that are stored in the meantime.
+		 */
+		public Set<Long> getDependencies() {
+
+			if (snapshot == null) {
+
+				snapshot = dependencies != null ? Collections.unmodifiableSet(new HashSet<>(dependencies)) : Collections.emptySet();
+			}
+
+			return snapshot;
+		}
+
+		public long getGeneration() {
+			return generation;
+		}
 	}
 
 	private static class BFSInfo {
@@ -2084,12 +2174,4 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 			}
 		}
 	}
-
-	private static class PermissionResolutionResult {
-
-		Boolean read          = false;
-		Boolean write         = false;
-		Boolean delete        = false;
-		Boolean accessControl = false;
-	}
 }
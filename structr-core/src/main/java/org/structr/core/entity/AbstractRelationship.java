@@ -52,6 +52,7 @@ import org.structr.core.Services;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
 import org.structr.core.converter.PropertyConverter;
+import org.structr.core.graph.MaterializedProperties;
 import org.structr.core.graph.ModificationQueue;
 import org.structr.core.graph.NodeFactory;
 import org.structr.core.graph.NodeInterface;
@@ -328,6 +329,9 @@ public abstract class AbstractRelationship<S extends NodeInterface, T extends No
 			return null;
 		}
 
+		// record dependency of materialized function properties
+		MaterializedProperties.recordRead(this);
+
 		return key.getProperty(securityContext, this, applyConverter, predicate);
 	}
 
@@ -147,6 +147,74 @@ public class ManyEndpoint<T extends NodeInterface> extends AbstractEndpoint impl
 		return createdRelationships;
 	}
 
+	/**
+	 * Creates a relationship from the given source node to the given target
+	 * node unless the two nodes are already related. Other than {@link #set},
+	 * this method does not load the existing relationships of the source node.
+	 *
+	 * @param securityContext
+	 * @param sourceNode
+	 * @param targetNode
+	 * @return the new relationship, or null if the nodes were already related
+	 *
+	 * @throws FrameworkException
+	 */
+	public Relation add(final SecurityContext securityContext, final NodeInterface sourceNode, final T targetNode) throws FrameworkException {
+
+		final App app                        = StructrApp.getInstance(securityContext);
+		final PropertyMap properties         = new PropertyMap();
+		final NodeInterface actualSourceNode = (NodeInterface)unwrap(securityContext, relation.getClass(), sourceNode, properties);
+
+		properties.clear();
+
+		final NodeInterface actualTargetNode = (NodeInterface)unwrap(securityContext, relation.getClass(), targetNode, properties);
+
+		if (actualSourceNode == null || actualTargetNode == null || actualSourceNode.hasRelationshipTo(relation, actualTargetNode)) {
+			return null;
+		}
+
+		relation.ensureCardinality(securityContext, actualSourceNode, actualTargetNode);
+
+		final PropertyMap notionProperties = getNotionProperties(securityContext, relation.getClass(), actualSourceNode.getName() + relation.name() + actualTargetNode.getName());
+		if (notionProperties != null) {
+
+			properties.putAll(notionProperties);
+		}
+
+		return app.create(actualSourceNode, actualTargetNode, relation.getClass(), properties);
+	}
+
+	/**
+	 * Deletes the relationship from the given source node to the given
+	 * target node, if it exists. Other than {@link #set}, this method does
+	 * not load the other relationships of the source node.
+	 *
+	 * @param securityContext
+	 * @param sourceNode
+	 * @param targetNode
+	 * @return whether a relationship was deleted
+	 *
+	 * @throws FrameworkException
+	 */
+	public boolean remove(final SecurityContext securityContext, final NodeInterface sourceNode, final T targetNode) throws FrameworkException {
+
+		final NodeInterface actualSourceNode = (NodeInterface)unwrap(sourceNode);
+		final NodeInterface actualTargetNode = (NodeInterface)unwrap(targetNode);
+
+		if (actualSourceNode != null && actualTargetNode != null) {
+
+			final AbstractRelationship rel = actualSourceNode.getRelationshipTo(relation, actualTargetNode);
+			if (rel != null) {
+
+				StructrApp.getInstance(securityContext).delete(rel);
+
+				return true;
+			}
+		}
+
+		return false;
+	}
+
 	@Override
 	public Iterable<Relationship> getRawSource(final SecurityContext securityContext, final Node dbNode, final Predicate<GraphObject> predicate) {
 		return getMultiple(securityContext, dbNode, relation, Direction.OUTGOING, relation.getTargetType(), predicate);
@@ -146,6 +146,74 @@ public class ManyStartpoint<S extends NodeInterface> extends AbstractEndpoint im
 		return createdRelationship;
 	}
 
+	/**
+	 * Creates a relationship from the given source node to the given target
+	 * node unless the two nodes are already related. Other than {@link #set},
+	 * this method does not load the existing relationships of the target node.
+	 *
+	 * @param securityContext
+	 * @param targetNode
+	 * @param sourceNode
+	 * @return the new relationship, or null if the nodes were already related
+	 *
+	 * @throws FrameworkException
+	 */
+	public Relation add(final SecurityContext securityContext, final NodeInterface targetNode, final S sourceNode) throws FrameworkException {
+
+		final App app                        = StructrApp.getInstance(securityContext);
+		final PropertyMap properties         = new PropertyMap();
+		final NodeInterface actualTargetNode = (NodeInterface)unwrap(securityContext, relation.getClass(), targetNode, properties);
+
+		properties.clear();
+
+		final S actualSourceNode             = (S)unwrap(securityContext, relation.getClass(), sourceNode, properties);
+
+		if (actualSourceNode == null || actualTargetNode == null || actualSourceNode.hasRelationshipTo(relation, actualTargetNode)) {
+			return null;
+		}
+
+		final PropertyMap notionProperties = getNotionProperties(securityContext, relation.getClass(), actualSourceNode.getName() + relation.name() + actualTargetNode.getName());
+		if (notionProperties != null) {
+
+			properties.putAll(notionProperties);
+		}
+
+		relation.ensureCardinality(securityContext, actualSourceNode, actualTargetNode);
+
+		return app.create(actualSourceNode, actualTargetNode, relation.getClass(), properties);
+	}
+
+	/**
+	 * Deletes the relationship from the given source node to the given
+	 * target node, if it exists. Other than {@link #set}, this method does
+	 * not load the other relationships of the target node.
+	 *
+	 * @param securityContext
+	 * @param targetNode
+	 * @param sourceNode
+	 * @return whether a relationship was deleted
+	 *
+	 * @throws FrameworkException
+	 */
+	public boolean remove(final SecurityContext securityContext, final NodeInterface targetNode, final S sourceNode) throws FrameworkException {
+
+		final NodeInterface actualTargetNode = (NodeInterface)unwrap(targetNode);
+		final NodeInterface actualSourceNode = (NodeInterface)unwrap(sourceNode);
+
+		if (actualSourceNode != null && actualTargetNode != null) {
+
+			final AbstractRelationship rel = actualSourceNode.getRelationshipTo(relation, actualTargetNode);
+			if (rel != null) {
+
+				StructrApp.getInstance(securityContext).delete(rel);
+
+				return true;
+			}
+		}
+
+		return false;
+	}
+
 	@Override
 	public Iterable<Relationship> getRawSource(final SecurityContext securityContext, final Node dbNode, final Predicate<GraphObject> predicate) {
 		return getMultiple(securityContext, dbNode, relation, Direction.INCOMING, relation.getSourceType(), predicate);
@@ -72,6 +72,7 @@ public class SchemaProperty extends SchemaReloadingNode implements PropertyDefin
 	public static final Property<Boolean>            compound          = new BooleanProperty("compound");
 	public static final Property<Boolean>            unique            = new BooleanProperty("unique");
 	public static final Property<Boolean>            indexed           = new BooleanProperty("indexed");
+	public static final Property<Boolean>            materialized      = new BooleanProperty("materialized");
 	public static final Property<Boolean>            isDynamic         = new BooleanProperty("isDynamic");
 	public static final Property<Boolean>            isBuiltinProperty = new BooleanProperty("isBuiltinProperty");
 	public static final Property<Boolean>            isDefaultInUi     = new BooleanProperty("isDefaultInUi");
@@ -81,19 +82,19 @@ public class SchemaProperty extends SchemaReloadingNode implements PropertyDefin
 	public static final Property<String>             writeFunction     = new StringProperty("writeFunction");
 
 	public static final View defaultView = new View(SchemaProperty.class, PropertyView.Public,
-		name, dbName, schemaNode, schemaViews, propertyType, contentType, format, notNull, compound, unique, indexed, defaultValue, isBuiltinProperty, declaringClass, isDynamic, readFunction, writeFunction
+		name, dbName, schemaNode, schemaViews, propertyType, contentType, format, notNull, compound, unique, indexed, materialized, defaultValue, isBuiltinProperty, declaringClass, isDynamic, readFunction, writeFunction
 	);
 
 	public static final View uiView = new View(SchemaProperty.class, PropertyView.Ui,
-		name, dbName, schemaNode, schemaViews, propertyType, contentType, format, notNull, compound, unique, indexed, defaultValue, isBuiltinProperty, declaringClass, isDynamic, readFunction, writeFunction
+		name, dbName, schemaNode, schemaViews, propertyType, contentType, format, notNull, compound, unique, indexed, materialized, defaultValue, isBuiltinProperty, declaringClass, isDynamic, readFunction, writeFunction
 	);
 
 	public static final View schemaView = new View(SchemaProperty.class, "schema",
-		id, type, name, dbName, schemaNode, schemaViews, propertyType, contentType, format, notNull, compound, unique, indexed, defaultValue, isBuiltinProperty, isDefaultInUi, isDefaultInPublic, declaringClass, isDynamic, readFunction, writeFunction
+		id, type, name, dbName, schemaNode, schemaViews, propertyType, contentType, format, notNull, compound, unique, indexed, materialized, defaultValue, isBuiltinProperty, isDefaultInUi, isDefaultInPublic, declaringClass, isDynamic, readFunction, writeFunction
 	);
 
 	public static final View exportView = new View(SchemaProperty.class, "export",
-		id, type, name, schemaNode, schemaViews, dbName, propertyType, contentType, format, notNull, compound, unique, indexed, defaultValue, isBuiltinProperty, isDefaultInUi, isDefaultInPublic, declaringClass, isDynamic, readFunction, writeFunction
+		id, type, name, schemaNode, schemaViews, dbName, propertyType, contentType, format, notNull, compound, unique, indexed, materialized, defaultValue, isBuiltinProperty, isDefaultInUi, isDefaultInPublic, declaringClass, isDynamic, readFunction, writeFunction
 	);
 
 	private NotionPropertyParser notionPropertyParser           = null;
@@ -184,6 +185,18 @@ public class SchemaProperty extends SchemaReloadingNode implements PropertyDefin
 		return false;
 	}
 
+	@Override
+	public boolean isMaterialized() {
+
+		final Boolean isMaterialized = getProperty(materialized);
+		if (isMaterialized != null && isMaterialized) {
+
+			return true;
+		}
+
+		return false;
+	}
+
 	@Override
 	public String getRawSource() {
 		return "";
@@ -258,6 +271,7 @@ public class SchemaProperty extends SchemaReloadingNode implements PropertyDefin
 		_contentHash = addContentHash(isDefaultInPublic, _contentHash);
 		_contentHash = addContentHash(readFunction,      _contentHash);
 		_contentHash = addContentHash(writeFunction,     _contentHash);
+		_contentHash = addContentHash(materialized,      _contentHash);
 
 		return Integer.toHexString(_contentHash);
 	}
@@ -307,6 +307,21 @@ public class SuperUser implements Principal, AccessControllable, NonIndexed {
 		throw new UnsupportedOperationException("Not supported.");
 	}
 
+	@Override
+	public <R extends AbstractRelationship> R getRelationshipTo(final RelationshipType relType, final NodeInterface targetNode) {
+		throw new UnsupportedOperationException("Not supported.");
+	}
+
+	@Override
+	public void addToCollection(final PropertyKey key, final List values) throws FrameworkException {
+		throw new UnsupportedOperationException("Not supported.");
+	}
+
+	@Override
+	public void removeFromCollection(final PropertyKey key, final List values) throws FrameworkException {
+		throw new UnsupportedOperationException("Not supported.");
+	}
+
 	@Override
 	public <R extends AbstractRelationship> Iterable<R> getRelationships() {
 		throw new UnsupportedOperationException("Not supported.");
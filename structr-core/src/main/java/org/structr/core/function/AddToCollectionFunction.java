@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.function;
+
+import java.util.LinkedList;
+import java.util.List;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.app.StructrApp;
+import org.structr.core.graph.NodeInterface;
+import org.structr.core.property.PropertyKey;
+import org.structr.schema.action.ActionContext;
+import org.structr.schema.action.Function;
+
+/**
+ *
+ */
+public class AddToCollectionFunction extends Function<Object, Object> {
+
+	public static final String ERROR_MESSAGE_ADD_TO_COLLECTION    = "Usage: ${add_to_collection(entity, propertyKey, element [, element...])}. Example: ${add_to_collection(group, \"members\", me)}";
+	public static final String ERROR_MESSAGE_ADD_TO_COLLECTION_JS = "Usage: ${{Structr.add_to_collection(entity, propertyKey, element [, element...])}}. Example: ${{Structr.add_to_collection(group, \"members\", Structr.get(\"me\"))}}";
+
+	@Override
+	public String getName() {
+		return "add_to_collection()";
+	}
+
+	@Override
+	public Object apply(final ActionContext ctx, final Object caller, final Object[] sources) throws FrameworkException {
+
+		if (arrayHasMinLengthAndAllElementsNotNull(sources, 3)) {
+
+			if (sources[0] instanceof NodeInterface) {
+
+				final NodeInterface node = (NodeInterface)sources[0];
+				final PropertyKey key    = StructrApp.getConfiguration().getPropertyKeyForJSONName(node.getClass(), sources[1].toString());
+				final List elements      = new LinkedList<>();
+
+				for (int i=2; i<sources.length; i++) {
+
+					if (sources[i] instanceof Iterable) {
+
+						for (final Object element : (Iterable)sources[i]) {
+							elements.add(element);
+						}
+
+					} else {
+
+						elements.add(sources[i]);
+					}
+				}
+
+				node.setSecurityContext(ctx.getSecurityContext());
+				node.addToCollection(key, elements);
+
+			} else {
+
+				throw new FrameworkException(422, "Invalid use of builtin method add_to_collection, usage: add_to_collection(entity, propertyKey, element..)");
+			}
+
+		} else {
+
+			logParameterError(caller, sources, ctx.isJavaScriptContext());
+		}
+
+		return "";
+	}
+
+	@Override
+	public String usage(boolean inJavaScriptContext) {
+		return (inJavaScriptContext ? ERROR_MESSAGE_ADD_TO_COLLECTION_JS : ERROR_MESSAGE_ADD_TO_COLLECTION);
+	}
+
+	@Override
+	public String shortDescription() {
+		return "Relates the given entities to an entity via a collection property, without replacing the existing elements";
+	}
+}
@@ -18,11 +18,15 @@
  */
 package org.structr.core.function;
 
+import org.structr.common.error.FrameworkException;
+import org.structr.schema.action.ActionContext;
+
 /**
- * Interface to identify functions that support batching.
+ * Interface to identify functions that support batching. The batch size is
+ * passed with each call because function instances are shared between all
+ * expressions and threads.
  */
 public interface BatchableFunction {
 
-	void setBatched(final boolean isBatched);
-	void setBatchSize(final int batchSize);
+	Object applyBatched(final ActionContext ctx, final Object caller, final Object[] sources, final int batchSize) throws FrameworkException;
 }
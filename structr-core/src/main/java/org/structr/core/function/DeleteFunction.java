@@ -39,9 +39,6 @@ public class DeleteFunction extends Function<Object, Object> implements Batchabl
 
 	public static final String ERROR_MESSAGE_DELETE = "Usage: ${delete(entityOrCollection)}. Example: ${delete(this)}";
 
-	private boolean batched = false;
-	private int batchSize   = -1;
-
 	@Override
 	public String getName() {
 		return "delete()";
@@ -49,17 +46,7 @@ public class DeleteFunction extends Function<Object, Object> implements Batchabl
 
 	@Override
 	public Object apply(final ActionContext ctx, final Object caller, final Object[] sources) throws FrameworkException {
-
-		if (sources != null) {
-
-			final App app = StructrApp.getInstance(ctx.getSecurityContext());
-			for (final Object obj : sources) {
-
-				deleteObject(app, obj);
-			}
-		}
-
-		return "";
+		return delete(ctx, sources, -1);
 	}
 
 	@Override
@@ -74,17 +61,26 @@ public class DeleteFunction extends Function<Object, Object> implements Batchabl
 
 	// ----- interface BatchableFunction -----
 	@Override
-	public void setBatched(boolean isBatched) {
-		this.batched = isBatched;
+	public Object applyBatched(final ActionContext ctx, final Object caller, final Object[] sources, final int batchSize) throws FrameworkException {
+		return delete(ctx, sources, batchSize);
 	}
 
-	@Override
-	public void setBatchSize(int batchSize) {
-		this.batchSize = batchSize;
+	// ----- private methods -----
+	private Object delete(final ActionContext ctx, final Object[] sources, final int batchSize) throws FrameworkException {
+
+		if (sources != null) {
+
+			final App app = StructrApp.getInstance(ctx.getSecurityContext());
+			for (final Object obj : sources) {
+
+				deleteObject(app, obj, batchSize);
+			}
+		}
+
+		return "";
 	}
 
-	// ----- private methods -----
-	private void deleteObject(final App app, final Object obj) throws FrameworkException {
+	private void deleteObject(final App app, final Object obj, final int batchSize) throws FrameworkException {
 
 		if (obj instanceof NodeInterface) {
 
@@ -98,7 +94,7 @@ public class DeleteFunction extends Function<Object, Object> implements Batchabl
 
 		if (obj instanceof Iterable) {
 
-			if (batched) {
+			if (batchSize > 0) {
 
 				final Iterable iterable = (Iterable)obj;
 				final Iterator iterator = iterable.iterator();
@@ -110,7 +106,7 @@ public class DeleteFunction extends Function<Object, Object> implements Batchabl
 
 						while (iterator.hasNext()) {
 
-							deleteObject(app, iterator.next());
+							deleteObject(app, iterator.next(), batchSize);
 
 							if ((++count % batchSize) == 0) {
 								break;
@@ -131,7 +127,7 @@ public class DeleteFunction extends Function<Object, Object> implements Batchabl
 
 				for (final Object o : (Iterable)obj) {
 
-					deleteObject(app, o);
+					deleteObject(app, o, batchSize);
 				}
 			}
 		}
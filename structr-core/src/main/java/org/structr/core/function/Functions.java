@@ -29,6 +29,8 @@ import java.util.LinkedList;
 import java.util.Map;
 import java.util.Set;
 import org.apache.commons.lang3.StringUtils;
+import org.structr.api.config.Settings;
+import org.structr.api.util.FixedSizeCache;
 import org.structr.common.error.FrameworkException;
 import org.structr.common.error.UnlicensedException;
 import org.structr.core.GraphObject;
@@ -60,8 +62,9 @@ import org.structr.schema.action.Function;
  */
 public class Functions {
 
-	private static final Map<String, Function<Object, Object>> functions = new LinkedHashMap<>();
-	public static final String NULL_STRING                               = "___NULL___";
+	private static final FixedSizeCache<String, Expression> expressionCache = new FixedSizeCache<>(Settings.ExpressionCacheSize.getValue());
+	private static final Map<String, Function<Object, Object>> functions    = new LinkedHashMap<>();
+	public static final String NULL_STRING                                  = "___NULL___";
 
 	public static void put(final boolean licensed, final int edition, final String name, final Function<Object, Object> function) {
 
@@ -73,6 +76,9 @@ public class Functions {
 
 			functions.put(name, new UnlicensedFunction(name, edition));
 		}
+
+		// cached expressions reference the functions that were registered when they were parsed
+		expressionCache.clear();
 	}
 
 	public static Set<String> getNames() {
@@ -88,6 +94,87 @@ public class Functions {
 	}
 
 	public static Object evaluate(final ActionContext actionContext, final GraphObject entity, final String expression) throws FrameworkException, UnlicensedException {
+		return parse(expression).evaluate(actionContext, entity);
+	}
+
+	/**
+	 * Returns the expression tree for the given StructrScript expression.
+	 * Expression trees are cached by their source text and shared between
+	 * all threads, they must not be modified by the caller.
+	 *
+	 * @param expression the source text
+	 * @return the root of the expression tree
+	 * @throws FrameworkException if the expression cannot be parsed
+	 */
+	public static Expression parse(final String expression) throws FrameworkException {
+
+		Expression root = expressionCache.get(expression);
+		if (root == null) {
+
+			root = parseExpression(expression);
+
+			final Expression existing = expressionCache.putIfAbsent(expression, root);
+			if (existing != null) {
+
+				root = existing;
+			}
+		}
+
+		return root;
+	}
+
+	public static Map<String, Object> getExpressionCacheStatistics() {
+		return expressionCache.getStatistics();
+	}
+
+	public static String cleanString(final Object input) {
+
+		if (input == null) {
+
+			return "";
+		}
+
+		String normalized = Normalizer.normalize(input.toString(), Normalizer.Form.NFD)
+			.replaceAll("\\<", "")
+			.replaceAll("\\>", "")
+			.replaceAll("\\.", "")
+			.replaceAll("\\'", "-")
+			.replaceAll("\\?", "")
+			.replaceAll("\\(", "")
+			.replaceAll("\\)", "")
+			.replaceAll("\\{", "")
+			.replaceAll("\\}", "")
+			.replaceAll("\\[", "")
+			.replaceAll("\\]", "")
+			.replaceAll("\\+", "-")
+			.replaceAll("/", "-")
+			.replaceAll("–", "-")
+			.replaceAll("\\\\", "-")
+			.replaceAll("\\|", "-")
+			.replaceAll("'", "-")
+			.replaceAll("!", "")
+			.replaceAll(",", "")
+			.replaceAll("-", " ")
+			.replaceAll("_", " ")
+			.replaceAll("`", "-");
+
+		String result = normalized.replaceAll("-", " ");
+		result = StringUtils.normalizeSpace(result.toLowerCase());
+		result = result.replaceAll("[^\\p{ASCII}]", "").replaceAll("\\p{P}", "-").replaceAll("\\-(\\s+\\-)+", "-");
+		result = result.replaceAll(" ", "-");
+
+		return result;
+	}
+
+	// ----- package-private methods -----
+	/**
+	 * Parses the given expression without using the expression cache.
+	 *
+	 * @param expression the source text
+	 * @return the root of the expression tree
+	 * @throws FrameworkException if the expression cannot be parsed
+	 */
+	static Expression parseExpression(final String expression) throws FrameworkException {
 
 		final String expressionWithoutNewlines = expression.replace('\n', ' ').replace('\r', ' ');
 		final StreamTokenizer tokenizer = new StreamTokenizer(new StringReader(expressionWithoutNewlines));
@@ -214,46 +301,7 @@ public class Functions {
 			throw new FrameworkException(422, "Invalid expression: mismatched closing bracket after " + lastToken);
 		}
 
-		return root.evaluate(actionContext, entity);
-	}
-
-	public static String cleanString(final Object input) {
-
-		if (input == null) {
-
-			return "";
-		}
-
-		String normalized = Normalizer.normalize(input.toString(), Normalizer.Form.NFD)
-			.replaceAll("\\<", "")
-			.replaceAll("\\>", "")
-			.replaceAll("\\.", "")
-			.replaceAll("\\'", "-")
-			.replaceAll("\\?", "")
-			.replaceAll("\\(", "")
-			.replaceAll("\\)", "")
-			.replaceAll("\\{", "")
-			.replaceAll("\\}", "")
-			.replaceAll("\\[", "")
-			.replaceAll("\\]", "")
-			.replaceAll("\\+", "-")
-			.replaceAll("/", "-")
-			.replaceAll("–", "-")
-			.replaceAll("\\\\", "-")
-			.replaceAll("\\|", "-")
-			.replaceAll("'", "-")
-			.replaceAll("!", "")
-			.replaceAll(",", "")
-			.replaceAll("-", " ")
-			.replaceAll("_", " ")
-			.replaceAll("`", "-");
-
-		String result = normalized.replaceAll("-", " ");
-		result = StringUtils.normalizeSpace(result.toLowerCase());
-		result = result.replaceAll("[^\\p{ASCII}]", "").replaceAll("\\p{P}", "-").replaceAll("\\-(\\s+\\-)+", "-");
-		result = result.replaceAll(" ", "-");
-
-		return result;
+		return root;
 	}
 
 	// ----- private methods -----
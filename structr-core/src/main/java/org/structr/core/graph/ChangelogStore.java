@@ -0,0 +1,652 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+
+/**
+ * Append-only, segmented on-disk store for the changelog entries of
+ * graph objects, indexed by UUID.
+ *
+ * Each entry is stored as a record consisting of the UUID of the graph
+ * object, the timestamp of the entry and the JSON-encoded entry itself.
+ * New records are always appended to the current segment file, a new
+ * segment is started when the current one exceeds the configured size
+ * (in megabytes).
+ * The position and timestamp of the records in the current segment are
+ * kept in an in-memory index, so its size is limited by the segment size.
+ * When a segment is full, its index is written to an index file next to
+ * the segment, sorted by a hash of the UUID, and looked up with a binary
+ * search. Missing index files are rebuilt from the segment files on
+ * startup. Reading the changelog of a graph object therefore only reads
+ * its own records, and only those in the requested time range.
+ */
+public class ChangelogStore {
+
+	private static final Logger logger                 = LoggerFactory.getLogger(ChangelogStore.class.getName());
+	private static final Pattern TIME_PATTERN          = Pattern.compile("\"time\":(\\d+)");
+	private static final String SEGMENT_SUFFIX         = ".log";
+	private static final String INDEX_SUFFIX           = ".idx";
+	private static final int INDEX_ENTRY_SIZE          = 28;
+	private static ChangelogStore instance             = null;
+
+	private final TreeMap<Integer, FileChannel> segments = new TreeMap<>();
+	private final TreeMap<Integer, FileChannel> indexes  = new TreeMap<>();
+	private final Map<String, List<Record>> index        = new HashMap<>();
+	private File directory                               = null;
+	private FileChannel current                          = null;
+	private int currentSegment                           = 0;
+
+	private ChangelogStore(final File directory) throws IOException {
+
+		this.directory = directory;
+
+		directory.mkdirs();
+
+		open();
+	}
+
+	/**
+	 * Returns the changelog store in the directory that is configured in
+	 * {@link Settings#ChangelogPath}. The store is re-opened when the
+	 * configured directory changes.
+	 *
+	 * @return the changelog store
+	 */
+	public static synchronized ChangelogStore getInstance() {
+
+		final File directory = new File(Settings.getFullSettingPath(Settings.ChangelogPath));
+
+		if (instance != null && !instance.directory.equals(directory)) {
+
+			instance.close();
+			instance = null;
+		}
+
+		if (instance == null) {
+
+			try {
+
+				instance = new ChangelogStore(directory);
+
+			} catch (IOException ioex) {
+
+				logger.error("Unable to open changelog store in {}: {}", directory.getAbsolutePath(), ioex.getMessage());
+			}
+		}
+
+		return instance;
+	}
+
+	public static synchronized void shutdown() {
+
+		if (instance != null) {
+
+			instance.close();
+			instance = null;
+		}
+	}
+
+	/**
+	 * Appends the given changelogs to the store. All entries are written
+	 * with a single write operation.
+	 *
+	 * @param changelogs a map of UUIDs to one or more newline-separated changelog entries
+	 */
+	public synchronized void append(final Map<String, String> changelogs) {
+
+		final Map<String, List<Record>> records = new LinkedHashMap<>();
+		final ByteArrayOutputStream buffer      = new ByteArrayOutputStream();
+		final DataOutputStream dos              = new DataOutputStream(buffer);
+
+		try {
+
+			for (final Entry<String, String> entry : changelogs.entrySet()) {
+
+				final String uuid = entry.getKey();
+				final String log  = entry.getValue();
+
+				if (uuid != null && log != null) {
+
+					for (final String line : log.split("\n")) {
+
+						if (!line.isEmpty()) {
+
+							final byte[] data = line.getBytes(StandardCharsets.UTF_8);
+							final long time   = getTime(line);
+
+							dos.writeUTF(uuid);
+							dos.writeLong(time);
+							dos.writeInt(data.length);
+
+							List<Record> list = records.get(uuid);
+							if (list == null) {
+
+								list = new ArrayList<>();
+								records.put(uuid, list);
+							}
+
+							// position of the entry relative to the start of this batch
+							list.add(new Record(0, dos.size(), data.length, time));
+
+							dos.write(data);
+						}
+					}
+				}
+			}
+
+			dos.flush();
+
+			if (buffer.size() == 0) {
+				return;
+			}
+
+			// start a new segment if the current one is full
+			if (current.size() > 0 && current.size() + buffer.size() > getMaxSegmentSize()) {
+
+				writeIndex(currentSegment);
+				openSegment(currentSegment + 1);
+			}
+
+			final long position = current.size();
+
+			write(current, ByteBuffer.wrap(buffer.toByteArray()), position);
+
+			// records have been written, update index
+			for (final Entry<String, List<Record>> entry : records.entrySet()) {
+
+				List<Record> list = index.get(entry.getKey());
+				if (list == null) {
+
+					list = new ArrayList<>();
+					index.put(entry.getKey(), list);
+				}
+
+				for (final Record record : entry.getValue()) {
+					list.add(new Record(currentSegment, position + record.position, record.length, record.time));
+				}
+			}
+
+		} catch (IOException ioex) {
+
+			logger.error("Unable to write changelog entries: {}", ioex.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the changelog entries of the graph object with the given
+	 * UUID in the given time range, in the order they were written.
+	 *
+	 * @param uuid the UUID of the graph object
+	 * @param timeFrom the lower bound of the time range (inclusive), or null
+	 * @param timeTo the upper bound of the time range (inclusive), or null
+	 *
+	 * @return the changelog entries
+	 */
+	public List<String> read(final String uuid, final Long timeFrom, final Long timeTo) {
+
+		final Map<Integer, FileChannel> sealed = new TreeMap<>();
+		final List<String> entries             = new ArrayList<>();
+		final List<Record> records             = new ArrayList<>();
+
+		synchronized (this) {
+
+			sealed.putAll(indexes);
+
+			final List<Record> list = index.get(uuid);
+			if (list != null) {
+
+				for (final Record record : list) {
+
+					if ((timeFrom == null || record.time >= timeFrom) && (timeTo == null || record.time <= timeTo)) {
+
+						records.add(record);
+					}
+				}
+			}
+		}
+
+		try {
+
+			final byte[] header      = encode(uuid);
+			final List<Record> found = new ArrayList<>();
+
+			// records in full segments are looked up in their index files
+			for (final Entry<Integer, FileChannel> entry : sealed.entrySet()) {
+				lookup(entry.getKey(), entry.getValue(), uuid, header, timeFrom, timeTo, found);
+			}
+
+			// records of the current segment come last
+			found.addAll(records);
+
+			for (final Record record : found) {
+
+				final FileChannel channel = getSegment(record.segment);
+				if (channel != null) {
+
+					final ByteBuffer buffer = ByteBuffer.allocate(record.length);
+
+					read(channel, buffer, record.position);
+
+					entries.add(new String(buffer.array(), StandardCharsets.UTF_8));
+				}
+			}
+
+		} catch (IOException ioex) {
+
+			logger.error("Unable to read changelog entries of {}: {}", uuid, ioex.getMessage());
+		}
+
+		return entries;
+	}
+
+	// ----- private methods -----
+	private void open() throws IOException {
+
+		final File[] files = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+		if (files != null) {
+
+			Arrays.sort(files);
+
+			for (int i=0; i<files.length; i++) {
+
+				final File file      = files[i];
+				final String name    = file.getName();
+				final int number     = Integer.valueOf(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+				final File indexFile = getIndexFile(number);
+
+				if (i < files.length - 1) {
+
+					if (indexFile.exists()) {
+
+						segments.put(number, FileChannel.open(file.toPath(), StandardOpenOption.READ));
+						indexes.put(number, FileChannel.open(indexFile.toPath(), StandardOpenOption.READ));
+
+					} else {
+
+						// rebuild the index of a full segment
+						scan(file, number);
+						writeIndex(number);
+					}
+
+				} else {
+
+					// the last segment is the current one, its index is kept in memory
+					indexFile.delete();
+					scan(file, number);
+				}
+			}
+		}
+
+		openSegment(segments.isEmpty() ? 1 : segments.lastKey());
+	}
+
+	/**
+	 * Writes the in-memory index of the given segment to its index file
+	 * and removes it from memory. Index entries are sorted by the hash of
+	 * the UUID and the position of the record.
+	 */
+	private void writeIndex(final int segment) throws IOException {
+
+		final List<IndexEntry> entries = new ArrayList<>();
+
+		for (final Entry<String, List<Record>> entry : index.entrySet()) {
+
+			final String uuid  = entry.getKey();
+			final long hash    = hash(uuid);
+			final int overhead = encode(uuid).length + 12;
+
+			for (final Record record : entry.getValue()) {
+				entries.add(new IndexEntry(hash, record.position - overhead, record.time, record.length));
+			}
+		}
+
+		Collections.sort(entries);
+
+		final ByteBuffer buffer = ByteBuffer.allocate(entries.size() * INDEX_ENTRY_SIZE);
+
+		for (final IndexEntry entry : entries) {
+
+			buffer.putLong(entry.hash);
+			buffer.putLong(entry.position);
+			buffer.putLong(entry.time);
+			buffer.putInt(entry.length);
+		}
+
+		buffer.flip();
+
+		// write to a temporary file first so that an index file is always complete
+		final File indexFile = getIndexFile(segment);
+		final File tmpFile   = new File(indexFile.getAbsolutePath() + ".tmp");
+
+		try (final FileChannel channel = FileChannel.open(tmpFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+			write(channel, buffer, 0L);
+			channel.force(true);
+		}
+
+		Files.move(tmpFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		indexes.put(segment, FileChannel.open(indexFile.toPath(), StandardOpenOption.READ));
+		index.clear();
+	}
+
+	/**
+	 * Adds the records of the given UUID in the given segment to the
+	 * given list. Different UUIDs can have the same hash, so the UUID
+	 * in the header of each candidate record is compared.
+	 */
+	private void lookup(final int segment, final FileChannel indexChannel, final String uuid, final byte[] header, final Long timeFrom, final Long timeTo, final List<Record> records) throws IOException {
+
+		final FileChannel channel = getSegment(segment);
+		final ByteBuffer buffer   = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+		final long count          = indexChannel.size() / INDEX_ENTRY_SIZE;
+		final long hash           = hash(uuid);
+		long low                  = 0L;
+		long high                 = count;
+
+		if (channel == null) {
+			return;
+		}
+
+		// binary search for the first entry with the given hash
+		while (low < high) {
+
+			final long mid = (low + high) >>> 1;
+
+			read(indexChannel, buffer, mid * INDEX_ENTRY_SIZE);
+
+			if (buffer.getLong(0) < hash) {
+
+				low = mid + 1;
+
+			} else {
+
+				high = mid;
+			}
+		}
+
+		for (long i=low; i<count; i++) {
+
+			read(indexChannel, buffer, i * INDEX_ENTRY_SIZE);
+
+			if (buffer.getLong(0) != hash) {
+				break;
+			}
+
+			final long position = buffer.getLong(8);
+			final long time     = buffer.getLong(16);
+			final int length    = buffer.getInt(24);
+
+			if ((timeFrom == null || time >= timeFrom) && (timeTo == null || time <= timeTo)) {
+
+				final ByteBuffer existing = ByteBuffer.allocate(header.length);
+
+				read(channel, existing, position);
+
+				if (Arrays.equals(header, existing.array())) {
+
+					records.add(new Record(segment, position + header.length + 12, length, time));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds the records of the given segment file to the index. A record
+	 * that was not written completely (e.g. because of a crash during a
+	 * write) is removed from the end of the file.
+	 */
+	private void scan(final File file, final int segment) throws IOException {
+
+		long position = 0L;
+
+		try (final DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+
+			while (position < file.length()) {
+
+				final String uuid  = dis.readUTF();
+				final long time    = dis.readLong();
+				final int length   = dis.readInt();
+				final long start   = position + 2 + uuid.getBytes(StandardCharsets.UTF_8).length + 8 + 4;
+
+				if (start + length > file.length()) {
+					break;
+				}
+
+				dis.skipBytes(length);
+
+				List<Record> list = index.get(uuid);
+				if (list == null) {
+
+					list = new ArrayList<>();
+					index.put(uuid, list);
+				}
+
+				list.add(new Record(segment, start, length, time));
+
+				position = start + length;
+			}
+
+		} catch (EOFException eofex) {
+			// incomplete record at the end of the file
+		}
+
+		final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+		if (channel.size() > position) {
+
+			logger.warn("Removing incomplete changelog record at the end of {}", file.getAbsolutePath());
+			channel.truncate(position);
+		}
+
+		segments.put(segment, channel);
+	}
+
+	private void openSegment(final int segment) throws IOException {
+
+		FileChannel channel = segments.get(segment);
+		if (channel == null) {
+
+			final File file = new File(directory, String.format("%08d", segment) + SEGMENT_SUFFIX);
+
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			segments.put(segment, channel);
+		}
+
+		current        = channel;
+		currentSegment = segment;
+	}
+
+	private synchronized FileChannel getSegment(final int segment) {
+		return segments.get(segment);
+	}
+
+	private synchronized void close() {
+
+		for (final FileChannel channel : segments.values()) {
+
+			try {
+
+				channel.close();
+
+			} catch (IOException ioex) {
+				logger.warn("Unable to close changelog segment: {}", ioex.getMessage());
+			}
+		}
+
+		for (final FileChannel channel : indexes.values()) {
+
+			try {
+
+				channel.close();
+
+			} catch (IOException ioex) {
+				logger.warn("Unable to close changelog index: {}", ioex.getMessage());
+			}
+		}
+
+		segments.clear();
+		indexes.clear();
+		index.clear();
+
+		current = null;
+	}
+
+	private void write(final FileChannel channel, final ByteBuffer buffer, final long position) throws IOException {
+
+		long offset = position;
+
+		while (buffer.hasRemaining()) {
+			offset += channel.write(buffer, offset);
+		}
+	}
+
+	private void read(final FileChannel channel, final ByteBuffer buffer, final long position) throws IOException {
+
+		buffer.clear();
+
+		while (buffer.hasRemaining()) {
+
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new EOFException();
+			}
+		}
+	}
+
+	private File getIndexFile(final int segment) {
+		return new File(directory, String.format("%08d", segment) + INDEX_SUFFIX);
+	}
+
+	/**
+	 * Returns the UUID as it is written in the header of a record.
+	 */
+	private byte[] encode(final String uuid) throws IOException {
+
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final DataOutputStream dos         = new DataOutputStream(buffer);
+
+		dos.writeUTF(uuid);
+		dos.flush();
+
+		return buffer.toByteArray();
+	}
+
+	/**
+	 * 64-bit FNV-1a hash of the given UUID.
+	 */
+	private long hash(final String uuid) {
+
+		long hash = 0xcbf29ce484222325L;
+
+		for (int i=0; i<uuid.length(); i++) {
+
+			hash ^= uuid.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+
+		return hash;
+	}
+
+	private long getMaxSegmentSize() {
+		return Settings.ChangelogSegmentSize.getValue() * 1024L * 1024L;
+	}
+
+	private long getTime(final String line) {
+
+		final Matcher matcher = TIME_PATTERN.matcher(line);
+		if (matcher.find()) {
+
+			return Long.valueOf(matcher.group(1));
+		}
+
+		return System.currentTimeMillis();
+	}
+
+	// ----- nested classes -----
+	private static class IndexEntry implements Comparable<IndexEntry> {
+
+		private long hash     = 0L;
+		private long position = 0L;
+		private long time     = 0L;
+		private int length    = 0;
+
+		public IndexEntry(final long hash, final long position, final long time, final int length) {
+
+			this.hash     = hash;
+			this.position = position;
+			this.time     = time;
+			this.length   = length;
+		}
+
+		@Override
+		public int compareTo(final IndexEntry other) {
+
+			final int result = Long.compare(hash, other.hash);
+			if (result == 0) {
+
+				return Long.compare(position, other.position);
+			}
+
+			return result;
+		}
+	}
+
+	private static class Record {
+
+		private int segment   = 0;
+		private long position = 0L;
+		private int length    = 0;
+		private long time     = 0L;
+
+		public Record(final int segment, final long position, final int length, final long time) {
+
+			this.segment  = segment;
+			this.position = position;
+			this.length   = length;
+			this.time     = time;
+		}
+	}
+}
@@ -18,9 +18,13 @@
  */
 package org.structr.core.graph;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -80,199 +84,282 @@ public class CreateNodeCommand<T extends NodeInterface> extends NodeServiceComma
 
 	public T execute(final PropertyMap attributes) throws FrameworkException {
 
+		final List<T> nodes = execute(Collections.singletonList(attributes));
+		if (!nodes.isEmpty()) {
+
+			return nodes.get(0);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Creates a new node for each of the given property maps. The nodes
+	 * of each type are created with a single statement, the remaining
+	 * properties are set and the creation callbacks are called for each
+	 * node in the order of the given list.
+	 *
+	 * @param attributes the properties of the new nodes
+	 * @return the new nodes
+	 *
+	 * @throws FrameworkException
+	 */
+	public List<T> execute(final List<PropertyMap> attributes) throws FrameworkException {
+
 		final DatabaseService graphDb = (DatabaseService) arguments.get("graphDb");
 		final Principal user          = securityContext.getUser(false);
-		T node	                      = null;
+		final List<T> nodes           = new ArrayList<>();
 
 		if (graphDb != null) {
 
-			final NodeFactory<T> nodeFactory = new NodeFactory<>(securityContext);
-			final PropertyMap properties     = new PropertyMap(attributes);
-			final PropertyMap toNotify       = new PropertyMap();
-			final Object typeObject          = properties.get(AbstractNode.type);
-			final Class nodeType             = getTypeOrGeneric(typeObject);
-			final Set<String> labels         = TypeProperty.getLabelsForType(nodeType);
-			final CreationContainer tmp      = new CreationContainer();
-			final Date now                   = new Date();
-			final boolean isCreation         = true;
+			final Map<Class, List<NodeCreation>> creationsByType = new LinkedHashMap<>();
+			final List<NodeCreation> creations                   = new ArrayList<>();
+			final Date now                                       = new Date();
 
-			// use user-supplied UUID?
-			String uuid = properties.get(GraphObject.id);
-			if (uuid == null) {
+			for (final PropertyMap properties : attributes) {
 
-				// no, create new one
-				uuid = getNextUuid();
+				final NodeCreation creation = prepareCreation(user, properties, now);
+				List<NodeCreation> list     = creationsByType.get(creation.nodeType);
 
-				properties.put(GraphObject.id, uuid);
+				if (list == null) {
 
-			} else {
+					list = new ArrayList<>();
+					creationsByType.put(creation.nodeType, list);
+				}
 
-				// enable UUID validation
-				securityContext.uuidWasSetManually(true);
+				list.add(creation);
+				creations.add(creation);
 			}
 
-			// use property keys to set property values on creation dummy
-			// set default values for common properties in creation query
-			GraphObject.id.setProperty(securityContext, tmp, uuid);
-			GraphObject.type.setProperty(securityContext, tmp, nodeType.getSimpleName());
-			AbstractNode.createdDate.setProperty(securityContext, tmp, now);
-			AbstractNode.lastModifiedDate.setProperty(securityContext, tmp, now);
+			// create the nodes of each type with a single statement
+			for (final Entry<Class, List<NodeCreation>> entry : creationsByType.entrySet()) {
+
+				final List<NodeCreation> list = entry.getValue();
+				final List<Node> created      = createNodes(graphDb, user, TypeProperty.getLabelsForType(entry.getKey()), list);
 
-			// default property values
-			AbstractNode.visibleToPublicUsers.setProperty(securityContext, tmp,        getOrDefault(properties, AbstractNode.visibleToPublicUsers, false));
-			AbstractNode.visibleToAuthenticatedUsers.setProperty(securityContext, tmp, getOrDefault(properties, AbstractNode.visibleToAuthenticatedUsers, false));
-			AbstractNode.hidden.setProperty(securityContext, tmp,                      getOrDefault(properties, AbstractNode.hidden, false));
-			AbstractNode.deleted.setProperty(securityContext, tmp,                     getOrDefault(properties, AbstractNode.deleted, false));
+				for (int i=0; i<list.size(); i++) {
+					list.get(i).node = created.get(i);
+				}
+			}
 
-			if (user != null) {
+			for (final NodeCreation creation : creations) {
 
-				final String userId = user.getProperty(GraphObject.id);
+				final T node = initializeNode(user, creation);
+				if (node != null) {
 
-				AbstractNode.createdBy.setProperty(securityContext, tmp, userId);
-				AbstractNode.lastModifiedBy.setProperty(securityContext, tmp, userId);
+					nodes.add(node);
+				}
 			}
+		}
 
-			// prevent double setting of properties
-			properties.remove(AbstractNode.id);
-			properties.remove(AbstractNode.type);
-			properties.remove(AbstractNode.visibleToPublicUsers);
-			properties.remove(AbstractNode.visibleToAuthenticatedUsers);
-			properties.remove(AbstractNode.hidden);
-			properties.remove(AbstractNode.deleted);
-			properties.remove(AbstractNode.lastModifiedDate);
-			properties.remove(AbstractNode.lastModifiedBy);
-			properties.remove(AbstractNode.createdDate);
-			properties.remove(AbstractNode.createdBy);
+		for (final T node : nodes) {
 
-			// move properties to creation container that can be set directly on creation
-			tmp.filterIndexableForCreation(securityContext, properties, tmp, toNotify);
+			// notify node of its creation
+			node.onNodeCreation();
 
-			// collect default values and try to set them on creation
-			for (final PropertyKey key : StructrApp.getConfiguration().getPropertySet(nodeType, PropertyView.All)) {
+			// iterate post creation transformations
+			final Set<Transformation<GraphObject>> transformations = StructrApp.getConfiguration().getEntityCreationTransformations(node.getClass());
+			for (Transformation<GraphObject> transformation : transformations) {
 
-				if (key instanceof AbstractPrimitiveProperty && !tmp.hasProperty(key.jsonName())) {
+				transformation.apply(securityContext, node);
+			}
+		}
 
-					final Object defaultValue = key.defaultValue();
-					if (defaultValue != null) {
+		return nodes;
+	}
 
-						key.setProperty(securityContext, tmp, defaultValue);
-					}
-				}
-			}
+	// ----- private methods -----
+	private NodeCreation prepareCreation(final Principal user, final PropertyMap attributes, final Date now) throws FrameworkException {
 
-			node = (T) nodeFactory.instantiateWithType(createNode(graphDb, user, nodeType, labels, tmp.getData()), nodeType, null, isCreation);
-			if (node != null) {
+		final PropertyMap properties = new PropertyMap(attributes);
+		final PropertyMap toNotify   = new PropertyMap();
+		final Object typeObject      = properties.get(AbstractNode.type);
+		final Class nodeType         = getTypeOrGeneric(typeObject);
+		final CreationContainer tmp  = new CreationContainer();
 
-				TransactionCommand.nodeCreated(user, node);
+		// use user-supplied UUID?
+		String uuid = properties.get(GraphObject.id);
+		if (uuid == null) {
 
-				securityContext.disableModificationOfAccessTime();
-				node.setProperties(securityContext, properties);
-				securityContext.enableModificationOfAccessTime();
+			// no, create new one
+			uuid = getNextUuid();
 
-				// ensure modification callbacks are called (necessary for validation)
-				for (final Entry<PropertyKey, Object> entry : toNotify.entrySet()) {
+			properties.put(GraphObject.id, uuid);
 
-					final PropertyKey key = entry.getKey();
-					final Object value    = entry.getValue();
+		} else {
 
-					if (!key.isUnvalidated()) {
-						TransactionCommand.nodeModified(securityContext.getCachedUser(), (AbstractNode)node, key, null, value);
-					}
-				}
+			// enable UUID validation
+			securityContext.uuidWasSetManually(true);
+		}
+
+		// use property keys to set property values on creation dummy
+		// set default values for common properties in creation query
+		GraphObject.id.setProperty(securityContext, tmp, uuid);
+		GraphObject.type.setProperty(securityContext, tmp, nodeType.getSimpleName());
+		AbstractNode.createdDate.setProperty(securityContext, tmp, now);
+		AbstractNode.lastModifiedDate.setProperty(securityContext, tmp, now);
 
-				properties.clear();
+		// default property values
+		AbstractNode.visibleToPublicUsers.setProperty(securityContext, tmp,        getOrDefault(properties, AbstractNode.visibleToPublicUsers, false));
+		AbstractNode.visibleToAuthenticatedUsers.setProperty(securityContext, tmp, getOrDefault(properties, AbstractNode.visibleToAuthenticatedUsers, false));
+		AbstractNode.hidden.setProperty(securityContext, tmp,                      getOrDefault(properties, AbstractNode.hidden, false));
+		AbstractNode.deleted.setProperty(securityContext, tmp,                     getOrDefault(properties, AbstractNode.deleted, false));
 
-				// ensure indexing of newly created node
-				node.addToIndex();
+		if (user != null) {
 
-				// invalidate UUID cache
-				StructrApp.invalidate(uuid);
+			final String userId = user.getProperty(GraphObject.id);
+
+			AbstractNode.createdBy.setProperty(securityContext, tmp, userId);
+			AbstractNode.lastModifiedBy.setProperty(securityContext, tmp, userId);
+		}
+
+		// prevent double setting of properties
+		properties.remove(AbstractNode.id);
+		properties.remove(AbstractNode.type);
+		properties.remove(AbstractNode.visibleToPublicUsers);
+		properties.remove(AbstractNode.visibleToAuthenticatedUsers);
+		properties.remove(AbstractNode.hidden);
+		properties.remove(AbstractNode.deleted);
+		properties.remove(AbstractNode.lastModifiedDate);
+		properties.remove(AbstractNode.lastModifiedBy);
+		properties.remove(AbstractNode.createdDate);
+		properties.remove(AbstractNode.createdBy);
+
+		// move properties to creation container that can be set directly on creation
+		tmp.filterIndexableForCreation(securityContext, properties, tmp, toNotify);
+
+		// collect default values and try to set them on creation
+		for (final PropertyKey key : StructrApp.getConfiguration().getPropertySet(nodeType, PropertyView.All)) {
+
+			if (key instanceof AbstractPrimitiveProperty && !tmp.hasProperty(key.jsonName())) {
+
+				final Object defaultValue = key.defaultValue();
+				if (defaultValue != null) {
+
+					key.setProperty(securityContext, tmp, defaultValue);
+				}
 			}
 		}
 
+		return new NodeCreation(nodeType, uuid, tmp.getData(), properties, toNotify);
+	}
+
+	private T initializeNode(final Principal user, final NodeCreation creation) throws FrameworkException {
+
+		final NodeFactory<T> nodeFactory = new NodeFactory<>(securityContext);
+		final boolean isCreation         = true;
+		final T node                     = (T) nodeFactory.instantiateWithType(creation.node, creation.nodeType, null, isCreation);
+
 		if (node != null) {
 
-			// notify node of its creation
-			node.onNodeCreation();
+			TransactionCommand.nodeCreated(user, node);
 
-			// iterate post creation transformations
-			final Set<Transformation<GraphObject>> transformations = StructrApp.getConfiguration().getEntityCreationTransformations(node.getClass());
-			for (Transformation<GraphObject> transformation : transformations) {
+			securityContext.disableModificationOfAccessTime();
+			node.setProperties(securityContext, creation.properties);
+			securityContext.enableModificationOfAccessTime();
 
-				transformation.apply(securityContext, node);
+			// ensure modification callbacks are called (necessary for validation)
+			for (final Entry<PropertyKey, Object> entry : creation.toNotify.entrySet()) {
+
+				final PropertyKey key = entry.getKey();
+				final Object value    = entry.getValue();
+
+				if (!key.isUnvalidated()) {
+					TransactionCommand.nodeModified(securityContext.getCachedUser(), (AbstractNode)node, key, null, value);
+				}
 			}
+
+			creation.properties.clear();
+
+			// ensure indexing of newly created node
+			node.addToIndex();
+
+			// invalidate UUID cache
+			StructrApp.invalidate(creation.uuid);
 		}
 
 		return node;
 	}
 
-	// ----- private methods -----
-	private Node createNode(final DatabaseService graphDb, final Principal user, final Class nodeType, final Set<String> labels, final Map<String, Object> properties) throws FrameworkException {
+	private List<Node> createNodes(final DatabaseService graphDb, final Principal user, final Set<String> labels, final List<NodeCreation> creations) throws FrameworkException {
 
-		final Map<String, Object> parameters         = new HashMap<>();
-		final Map<String, Object> ownsProperties     = new HashMap<>();
-		final Map<String, Object> securityProperties = new HashMap<>();
-		final StringBuilder buf                      = new StringBuilder();
-		final String newUuid                         = (String)properties.get("id");
+		final List<Map<String, Object>> rows = new ArrayList<>(creations.size());
 
-		if (user != null && user.shouldSkipSecurityRelationships() == false) {
+		try {
 
-			buf.append("MATCH (u:Principal) WHERE id(u) = {userId}");
-			buf.append(" CREATE (u)-[o:OWNS {ownsProperties}]->(n");
+			if (user != null && user.shouldSkipSecurityRelationships() == false) {
 
-			for (final String label : labels) {
+				final Map<String, Object> parameters = new HashMap<>();
+				final List<Node> nodes               = new ArrayList<>(creations.size());
+				final StringBuilder buf              = new StringBuilder();
 
-				buf.append(":");
-				buf.append(label);
-			}
+				buf.append("MATCH (u:Principal) WHERE id(u) = {userId}");
+				buf.append(" UNWIND {rows} AS row");
+				buf.append(" CREATE (u)-[o:OWNS]->(n");
 
-			buf.append(" {nodeProperties})<-[s:SECURITY {securityProperties}]-(u)");
-			buf.append(" RETURN n");
+				for (final String label : labels) {
 
-			// configure OWNS relationship
-			ownsProperties.put(GraphObject.id.dbName(),                getNextUuid());
-			ownsProperties.put(GraphObject.type.dbName(),              PrincipalOwnsNode.class.getSimpleName());
-			ownsProperties.put(AbstractRelationship.sourceId.dbName(), user.getUuid());
-			ownsProperties.put(AbstractRelationship.targetId.dbName(), newUuid);
+					buf.append(":");
+					buf.append(label);
+				}
 
-			// configure SECURITY relationship
-			securityProperties.put(Security.allowed.dbName(),              new String[] { Permission.read.name(), Permission.write.name(), Permission.delete.name(), Permission.accessControl.name() } );
-			securityProperties.put(GraphObject.id.dbName(),                getNextUuid());
-			securityProperties.put(GraphObject.type.dbName(),              Security.class.getSimpleName());
-			securityProperties.put(AbstractRelationship.sourceId.dbName(), user.getUuid());
-			securityProperties.put(AbstractRelationship.targetId.dbName(), newUuid);
+				buf.append(")<-[s:SECURITY]-(u)");
+				buf.append(" SET n = row.nodeProperties, o = row.ownsProperties, s = row.securityProperties");
+				buf.append(" RETURN n");
 
-			// store properties in statement
-			parameters.put("userId",             user.getId());
-			parameters.put("ownsProperties",     ownsProperties);
-			parameters.put("securityProperties", securityProperties);
+				for (final NodeCreation creation : creations) {
 
-		} else {
+					final Map<String, Object> ownsProperties     = new HashMap<>();
+					final Map<String, Object> securityProperties = new HashMap<>();
+					final Map<String, Object> row                = new HashMap<>();
 
-			buf.append("CREATE (n");
+					// configure OWNS relationship
+					ownsProperties.put(GraphObject.id.dbName(),                getNextUuid());
+					ownsProperties.put(GraphObject.type.dbName(),              PrincipalOwnsNode.class.getSimpleName());
+					ownsProperties.put(AbstractRelationship.sourceId.dbName(), user.getUuid());
+					ownsProperties.put(AbstractRelationship.targetId.dbName(), creation.uuid);
 
-			for (final String label : labels) {
+					// configure SECURITY relationship
+					securityProperties.put(Security.allowed.dbName(),              new String[] { Permission.read.name(), Permission.write.name(), Permission.delete.name(), Permission.accessControl.name() } );
+					securityProperties.put(GraphObject.id.dbName(),                getNextUuid());
+					securityProperties.put(GraphObject.type.dbName(),              Security.class.getSimpleName());
+					securityProperties.put(AbstractRelationship.sourceId.dbName(), user.getUuid());
+					securityProperties.put(AbstractRelationship.targetId.dbName(), creation.uuid);
 
-				buf.append(":");
-				buf.append(label);
-			}
+					row.put("nodeProperties",     creation.data);
+					row.put("ownsProperties",     ownsProperties);
+					row.put("securityProperties", securityProperties);
 
-			buf.append(" {nodeProperties})");
-			buf.append(" RETURN n");
-		}
+					rows.add(row);
+				}
 
-		// make properties available to Cypher statement
-		parameters.put("nodeProperties", properties);
+				// store properties in statement
+				parameters.put("userId", user.getId());
+				parameters.put("rows",   rows);
 
-		final NativeResult result = graphDb.execute(buf.toString(), parameters);
-		try {
+				try (final NativeResult result = graphDb.execute(buf.toString(), parameters)) {
+
+					while (result.hasNext()) {
+
+						nodes.add((Node)result.next().get("n"));
+					}
+				}
+
+				if (nodes.size() == creations.size()) {
+					return nodes;
+				}
 
-			if (result.hasNext()) {
+			} else {
+
+				for (final NodeCreation creation : creations) {
+					rows.add(creation.data);
+				}
 
-				final Map<String, Object> data = result.next();
-				final Node newNode             = (Node)data.get("n");
+				final List<Node> nodes = graphDb.createNodes(labels, rows);
+				if (nodes.size() == creations.size()) {
 
-				return newNode;
+					return nodes;
+				}
 			}
 
 		} catch (DataFormatException dex) {
@@ -303,4 +390,24 @@ public class CreateNodeCommand<T extends NodeInterface> extends NodeServiceComma
 
 		return defaultValue;
 	}
+
+	// ----- nested classes -----
+	private static class NodeCreation {
+
+		private Map<String, Object> data = null;
+		private PropertyMap properties   = null;
+		private PropertyMap toNotify     = null;
+		private Class nodeType           = null;
+		private String uuid              = null;
+		private Node node                = null;
+
+		public NodeCreation(final Class nodeType, final String uuid, final Map<String, Object> data, final PropertyMap properties, final PropertyMap toNotify) {
+
+			this.nodeType   = nodeType;
+			this.uuid       = uuid;
+			this.data       = data;
+			this.properties = properties;
+			this.toNotify   = toNotify;
+		}
+	}
 }
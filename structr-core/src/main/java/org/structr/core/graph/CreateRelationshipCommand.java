@@ -18,11 +18,16 @@
  */
 package org.structr.core.graph;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.DatabaseService;
 import org.structr.api.graph.Node;
 import org.structr.api.graph.Relationship;
+import org.structr.api.graph.RelationshipSpec;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.Transformation;
@@ -54,22 +59,98 @@ public class CreateRelationshipCommand extends NodeServiceCommand {
 		return createRelationship(fromNode, toNode, relType, properties);
 	}
 
+	/**
+	 * Creates a relationship of the given type between each pair of nodes
+	 * at the same position in the given lists. The relationships are
+	 * created with a single statement, so the cardinality of the
+	 * relationship type is only ensured against existing relationships,
+	 * not against other relationships in the same batch.
+	 *
+	 * @param fromNodes the start nodes
+	 * @param toNodes the end nodes
+	 * @param relType the relationship type
+	 * @return the new relationships
+	 *
+	 * @throws FrameworkException
+	 */
+	public synchronized <A extends NodeInterface, B extends NodeInterface, R extends Relation<A, B, ?, ?>> List<R> execute(final List<A> fromNodes, final List<B> toNodes, final Class<R> relType) throws FrameworkException {
+
+		if (fromNodes.size() != toNodes.size()) {
+			throw new IllegalArgumentException("Number of start nodes and end nodes must be equal.");
+		}
+
+		final DatabaseService graphDb = (DatabaseService)arguments.get("graphDb");
+		final List<R> relationships   = new ArrayList<>();
+
+		if (graphDb != null) {
+
+			// disable updating access time when creating relationships
+			securityContext.disableModificationOfAccessTime();
+
+			final RelationshipFactory<R> factory = new RelationshipFactory(securityContext);
+			final List<RelationshipSpec> specs   = new ArrayList<>();
+			final R template                     = instantiate(relType);
+			final Date now                       = new Date();
+
+			for (int i=0; i<fromNodes.size(); i++) {
+
+				final A fromNode = fromNodes.get(i);
+				final B toNode   = toNodes.get(i);
+
+				template.ensureCardinality(securityContext, fromNode, toNode);
+
+				specs.add(new RelationshipSpec(fromNode.getNode(), toNode.getNode(), template, getInitialProperties(fromNode, toNode, relType, template, now)));
+			}
+
+			for (final Relationship rel : graphDb.createRelationships(specs)) {
+
+				final R newRel = factory.instantiateWithType(rel, relType, null, true);
+				if (newRel != null) {
+
+					notifyCreation(newRel, null);
+					relationships.add(newRel);
+				}
+			}
+
+			// enable access time update again for subsequent calls
+			securityContext.enableModificationOfAccessTime();
+		}
+
+		return relationships;
+	}
+
 	private synchronized <A extends NodeInterface, B extends NodeInterface, R extends Relation<A, B, ?, ?>> R createRelationship(final A fromNode, final B toNode, final Class<R> relType, final PropertyMap attributes) throws FrameworkException {
 
 		// disable updating access time when creating relationships
 		securityContext.disableModificationOfAccessTime();
 
 		final RelationshipFactory<R> factory = new RelationshipFactory(securityContext);
-		final PropertyMap properties         = new PropertyMap(attributes);
-		final CreationContainer tmp          = new CreationContainer();
 		final R template                     = instantiate(relType);
 		final Node startNode                 = fromNode.getNode();
 		final Node endNode                   = toNode.getNode();
 		final Date now                       = new Date();
-		final Principal user                 = securityContext.getCachedUser();
 
 		template.ensureCardinality(securityContext, fromNode, toNode);
 
+		// create relationship including initial properties
+		final Relationship rel = startNode.createRelationshipTo(endNode, template, getInitialProperties(fromNode, toNode, relType, template, now));
+		final R newRel         = factory.instantiateWithType(rel, relType, null, true);
+		if (newRel != null) {
+
+			notifyCreation(newRel, attributes);
+		}
+
+		// enable access time update again for subsequent calls
+		securityContext.enableModificationOfAccessTime();
+
+		return newRel;
+	}
+
+	private Map<String, Object> getInitialProperties(final NodeInterface fromNode, final NodeInterface toNode, final Class relType, final Relation template, final Date now) throws FrameworkException {
+
+		final CreationContainer tmp = new CreationContainer();
+		final Principal user        = securityContext.getCachedUser();
+
 		// date properties need converter
 		AbstractRelationship.createdDate.setProperty(securityContext, tmp, now);
 		AbstractRelationship.lastModifiedDate.setProperty(securityContext, tmp, now);
@@ -88,30 +169,24 @@ public class CreateRelationshipCommand extends NodeServiceCommand {
 			tmp.getData().put(AbstractRelationship.createdBy.jsonName(), user.getUuid());
 		}
 
-		// create relationship including initial properties
-		final Relationship rel = startNode.createRelationshipTo(endNode, template, tmp.getData());
-		final R newRel         = factory.instantiateWithType(rel, relType, null, true);
-		if (newRel != null) {
+		return tmp.getData();
+	}
 
-			newRel.setProperties(securityContext, properties);
+	private void notifyCreation(final RelationshipInterface newRel, final PropertyMap attributes) throws FrameworkException {
 
-			// notify transaction handler
-			TransactionCommand.relationshipCreated(user, newRel);
+		newRel.setProperties(securityContext, new PropertyMap(attributes));
 
-			// notify relationship of its creation
-			newRel.onRelationshipCreation();
+		// notify transaction handler
+		TransactionCommand.relationshipCreated(securityContext.getCachedUser(), newRel);
 
-			// iterate post creation transformations
-			for (Transformation<GraphObject> transformation : StructrApp.getConfiguration().getEntityCreationTransformations(newRel.getClass())) {
+		// notify relationship of its creation
+		newRel.onRelationshipCreation();
 
-				transformation.apply(securityContext, newRel);
-			}
-		}
+		// iterate post creation transformations
+		for (Transformation<GraphObject> transformation : StructrApp.getConfiguration().getEntityCreationTransformations(newRel.getClass())) {
 
-		// enable access time update again for subsequent calls
-		securityContext.enableModificationOfAccessTime();
-
-		return newRel;
+			transformation.apply(securityContext, newRel);
+		}
 	}
 
 	private <T extends Relation> T instantiate(final Class<T> type) {
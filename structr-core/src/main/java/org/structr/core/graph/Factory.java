@@ -18,10 +18,13 @@
  */
 package org.structr.core.graph;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.function.Function;
@@ -36,6 +39,7 @@ import org.structr.common.error.FrameworkException;
 import org.structr.core.Adapter;
 import org.structr.core.GraphObject;
 import org.structr.core.Result;
+import org.structr.core.ResultStream;
 import org.structr.core.app.StructrApp;
 import org.structr.schema.SchemaHelper;
 
@@ -150,6 +154,92 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 
 	}
 
+	/**
+	 * Create structr nodes from the underlying database nodes for a
+	 * negative page number, i.e. a page counted from the end of the
+	 * result. The input must be sorted in reverse order, so the page can
+	 * be collected while the input is read, without holding all of it in
+	 * memory.
+	 *
+	 * @param input the input, sorted in reverse order
+	 * @return result
+	 * @throws org.structr.common.error.FrameworkException
+	 */
+	public Result instantiateReverse(final QueryResult<S> input) throws FrameworkException {
+
+		final SecurityContext securityContext = factoryProfile.getSecurityContext();
+		final boolean dontCheckCount          = securityContext.ignoreResultCount();
+		final int pageSize                    = factoryProfile.getPageSize();
+		final int page                        = factoryProfile.getPage();
+		final long fromIndex                  = (long)(-page - 1) * pageSize;
+		final long toIndex                    = fromIndex + pageSize;
+		final ArrayDeque<T> tail              = new ArrayDeque<>();
+		final List<T> nodes                   = new ArrayList<>();
+		int overallCount                      = 0;
+
+		try (final QueryResult<S> tmp = input) {
+
+			for (final S item : tmp) {
+
+				final T n = instantiate(item);
+				if (n != null) {
+
+					if (overallCount >= fromIndex && overallCount < toIndex) {
+						nodes.add(n);
+					}
+
+					overallCount++;
+
+					// keep the last elements in case the page
+					// number exceeds the number of pages
+					tail.add(n);
+
+					if (tail.size() > pageSize) {
+						tail.removeFirst();
+					}
+
+					// stop if we got enough nodes
+					if (nodes.size() == pageSize && dontCheckCount) {
+						break;
+					}
+				}
+			}
+
+		} catch (NetworkException nex) {
+			throw new FrameworkException(503, nex.getMessage());
+		}
+
+		// the first elements of the result if the page number exceeds the number of pages
+		final List<T> result = new ArrayList<>(overallCount >= toIndex ? nodes : tail);
+
+		Collections.reverse(result);
+
+		// The overall count may be inaccurate
+		return new Result(result, overallCount, true, false);
+	}
+
+	/**
+	 * Create a lazily evaluated result stream from the underlying database
+	 * nodes. Nodes are instantiated and security-checked one by one while
+	 * the stream is iterated, so the memory needed does not depend on the
+	 * size of the result. Negative page numbers are not supported since
+	 * they require the whole result to be read in advance.
+	 *
+	 * @param input
+	 * @return result stream
+	 */
+	public ResultStream<T> stream(final QueryResult<S> input) {
+
+		final int pageSize = factoryProfile.getPageSize();
+		final int page     = factoryProfile.getPage();
+
+		if (page < 0) {
+			throw new IllegalArgumentException("Negative page numbers are not supported in streaming mode");
+		}
+
+		return new InstantiatingResultStream(input, pageSize == Integer.MAX_VALUE ? 0 : (page - 1) * pageSize, pageSize);
+	}
+
 	/**
 	 * Create structr nodes from all given underlying database nodes
 	 * No paging, but security check
@@ -246,6 +336,111 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 
 
 	// ----- nested classes -----
+	private class InstantiatingResultStream implements ResultStream<T> {
+
+		private final boolean dontCheckCount;
+		private final QueryResult<S> source;
+		private final int pageSize;
+		private final int offset;
+		private Integer rawResultCount = null;
+		private boolean iterated       = false;
+		private boolean closed         = false;
+
+		public InstantiatingResultStream(final QueryResult<S> source, final int offset, final int pageSize) {
+
+			this.dontCheckCount = factoryProfile.getSecurityContext().ignoreResultCount();
+			this.source         = source;
+			this.pageSize       = pageSize;
+			this.offset         = offset;
+		}
+
+		@Override
+		public Integer getRawResultCount() {
+			return rawResultCount;
+		}
+
+		@Override
+		public void close() {
+
+			if (source != null && !closed) {
+				source.close();
+			}
+
+			closed = true;
+		}
+
+		@Override
+		public Iterator<T> iterator() {
+
+			if (iterated) {
+				throw new IllegalStateException("Result stream can only be iterated once");
+			}
+
+			iterated = true;
+
+			final Iterator<S> iterator = source != null ? source.iterator() : null;
+
+			return new Iterator<T>() {
+
+				private int overallCount = 0;
+				private T next           = null;
+
+				@Override
+				public boolean hasNext() {
+
+					if (next == null && rawResultCount == null) {
+						next = fetch();
+					}
+
+					return next != null;
+				}
+
+				@Override
+				public T next() {
+
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+
+					final T current = next;
+					next = null;
+
+					return current;
+				}
+
+				private T fetch() {
+
+					while (iterator != null && iterator.hasNext()) {
+
+						final T n = instantiate(iterator.next());
+						if (n != null) {
+
+							overallCount++;
+
+							if (overallCount > offset) {
+
+								if (overallCount <= offset + pageSize) {
+									return n;
+								}
+
+								// page is complete, count the remaining
+								// results only if the count is needed
+								if (dontCheckCount) {
+									break;
+								}
+							}
+						}
+					}
+
+					rawResultCount = overallCount;
+					close();
+
+					return null;
+				}
+			};
+		}
+	}
+
 	protected class FactoryProfile {
 
 		private boolean includeDeletedAndHidden = true;
@@ -25,6 +25,7 @@ import org.slf4j.LoggerFactory;
 import org.structr.bolt.wrapper.NodeWrapper;
 import org.structr.bolt.wrapper.RelationshipWrapper;
 import org.structr.common.AccessPathCache;
+import org.structr.common.PermissionResolutionCache;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
@@ -49,6 +50,7 @@ public class FlushCachesCommand extends NodeServiceCommand implements Maintenanc
 		NodeWrapper.clearCache();
 		RelationshipWrapper.clearCache();
 		AccessPathCache.invalidate();
+		PermissionResolutionCache.invalidate();
 
 		App app = StructrApp.getInstance();
 
@@ -0,0 +1,512 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.graph.PropertyContainer;
+import org.structr.common.PropertyView;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.app.App;
+import org.structr.core.app.StructrApp;
+import org.structr.core.property.FunctionProperty;
+import org.structr.core.property.PropertyKey;
+import org.structr.schema.ConfigurationProvider;
+
+/**
+ * Stores the values of materialized function properties in the database and
+ * keeps track of the entities that were read while computing them.
+ *
+ * A value is computed when its entity is committed, and recomputed in the
+ * background after a transaction that modified one of the entities it was
+ * computed from. Dependencies are only known for values that were computed
+ * since the last start, so all values are recomputed in the background when
+ * the schema is loaded for the first time. Later schema changes only cause
+ * the recomputation of properties whose read function has changed. Until
+ * then, and for values that cannot be stored, the read function is evaluated
+ * on every read.
+ */
+public class MaterializedProperties {
+
+	private static final Logger logger                              = LoggerFactory.getLogger(MaterializedProperties.class);
+	private static final Map<Dependent, Set<String>> dependencies   = new ConcurrentHashMap<>();
+	private static final Map<String, Set<Dependent>> dependents     = new ConcurrentHashMap<>();
+	private static final Map<String, String> definitions            = new ConcurrentHashMap<>();
+	private static final ThreadLocal<Set<String>> recordedReads     = new ThreadLocal<>();
+	private static final AtomicInteger recording                    = new AtomicInteger(0);
+	private static final int BATCH_SIZE                             = 1000;
+	private static final int MAX_ROUNDS                             = 10;
+	private static ExecutorService updateExecutor                   = null;
+
+	/**
+	 * Indicates whether the value of the given property of the given entity
+	 * is stored in the database and up to date.
+	 *
+	 * @param obj the entity
+	 * @param key the property
+	 * @return whether the stored value can be used
+	 */
+	public static boolean isMaterialized(final GraphObject obj, final FunctionProperty key) {
+		return dependencies.containsKey(new Dependent(obj.getUuid(), key.jsonName()));
+	}
+
+	/**
+	 * Records that the given entity was read, if the current thread is
+	 * computing the value of a materialized property.
+	 *
+	 * @param obj the entity
+	 */
+	public static void recordRead(final GraphObject obj) {
+
+		// fast path, nothing is recorded in any thread
+		if (recording.get() == 0) {
+			return;
+		}
+
+		final Set<String> reads = recordedReads.get();
+		if (reads != null) {
+
+			// reading the UUID is a property read as well and must not be recorded
+			recordedReads.set(null);
+
+			try {
+
+				final String uuid = obj.getUuid();
+				if (uuid != null) {
+
+					reads.add(uuid);
+				}
+
+			} finally {
+
+				recordedReads.set(reads);
+			}
+		}
+	}
+
+	/**
+	 * Computes the value of the given property of the given entity, stores
+	 * it in the database and records the entities it depends on.
+	 *
+	 * @param obj the entity
+	 * @param key the property
+	 * @return whether the stored value has changed
+	 */
+	public static boolean materialize(final GraphObject obj, final FunctionProperty key) {
+
+		final String uuid = obj.getUuid();
+		if (uuid == null) {
+			return false;
+		}
+
+		final GraphObject entity          = getSuperUserInstance(obj);
+		final PropertyContainer container = entity.getPropertyContainer();
+		final Dependent dependent         = new Dependent(uuid, key.jsonName());
+		final Set<String> outerReads      = recordedReads.get();
+		final Set<String> reads           = new LinkedHashSet<>();
+		final String dbName               = key.dbName();
+		Object value                      = null;
+
+		reads.add(uuid);
+
+		recordedReads.set(reads);
+		recording.incrementAndGet();
+
+		try {
+
+			value = key.evaluate(entity.getSecurityContext(), entity, null);
+
+		} catch (Throwable t) {
+
+			logger.warn("Exception while materializing function property \"{}\" of {}: {}", key.jsonName(), uuid, t.getMessage());
+
+		} finally {
+
+			recording.decrementAndGet();
+			recordedReads.set(outerReads);
+
+			// a materialized value that depends on this one inherits its dependencies
+			if (outerReads != null) {
+				outerReads.addAll(reads);
+			}
+		}
+
+		final Object previousValue = container.hasProperty(dbName) ? container.getProperty(dbName) : null;
+
+		if (value == null) {
+
+			if (previousValue != null) {
+				container.removeProperty(dbName);
+			}
+
+		} else if (isStorable(value)) {
+
+			if (!Objects.deepEquals(value, previousValue)) {
+				container.setProperty(dbName, value);
+			}
+
+		} else {
+
+			// the value cannot be stored, so it is always evaluated
+			if (previousValue != null) {
+				container.removeProperty(dbName);
+			}
+
+			unregister(dependent);
+
+			return previousValue != null;
+		}
+
+		register(dependent, reads);
+
+		return !Objects.deepEquals(value, previousValue);
+	}
+
+	/**
+	 * Schedules the recomputation of all materialized values that depend on
+	 * the entities modified in the given transaction. Must only be called
+	 * after the transaction was committed successfully.
+	 *
+	 * @param modifiedUuids the UUIDs of all modified, created or deleted entities
+	 * @param recomputedUuids the UUIDs of the entities whose values were already recomputed at commit
+	 */
+	public static void update(final Collection<String> modifiedUuids, final Set<String> recomputedUuids) {
+
+		if (dependents.isEmpty()) {
+			return;
+		}
+
+		final Set<Dependent> outdated = new LinkedHashSet<>();
+
+		for (final String uuid : modifiedUuids) {
+
+			final Set<Dependent> set = dependents.get(uuid);
+			if (set != null) {
+
+				for (final Dependent dependent : set) {
+
+					if (!recomputedUuids.contains(dependent.uuid)) {
+						outdated.add(dependent);
+					}
+				}
+			}
+		}
+
+		if (!outdated.isEmpty()) {
+
+			getUpdateExecutor().submit(() -> recompute(outdated));
+		}
+	}
+
+	/**
+	 * Schedules the recomputation of all materialized values whose read
+	 * function is new or has changed since the last call, which also
+	 * records their dependencies.
+	 */
+	public static void refresh() {
+
+		final ConfigurationProvider config = StructrApp.getConfiguration();
+		final List<Class> types            = new ArrayList<>();
+
+		types.addAll(config.getNodeEntities().values());
+		types.addAll(config.getRelationshipEntities().values());
+
+		for (final Class type : types) {
+
+			final Set<String> names = new LinkedHashSet<>();
+
+			for (final PropertyKey key : config.getPropertySet(type, PropertyView.All)) {
+
+				if (key instanceof FunctionProperty && ((FunctionProperty)key).isMaterialized() && type.equals(key.getDeclaringClass())) {
+
+					final String readFunction = key.readFunction() != null ? key.readFunction() : "";
+					final String previous     = definitions.put(type.getName() + "." + key.jsonName(), readFunction);
+
+					if (!readFunction.equals(previous)) {
+
+						names.add(key.jsonName());
+					}
+				}
+			}
+
+			if (!names.isEmpty()) {
+
+				getUpdateExecutor().submit(() -> refresh(type, names));
+			}
+		}
+	}
+
+	public static synchronized void clear() {
+
+		if (updateExecutor != null) {
+
+			updateExecutor.shutdownNow();
+			updateExecutor = null;
+		}
+
+		dependencies.clear();
+		dependents.clear();
+		definitions.clear();
+	}
+
+	public static int getMaterializedCount() {
+		return dependencies.size();
+	}
+
+	// ----- private methods -----
+	private static void refresh(final Class type, final Set<String> names) {
+
+		final App app = StructrApp.getInstance();
+		int page      = 1;
+		int count     = BATCH_SIZE;
+
+		// load and recompute the entities in pages, so that only one page is kept in memory
+		while (count == BATCH_SIZE) {
+
+			final Set<Dependent> batch = new LinkedHashSet<>();
+
+			try (final Tx tx = app.tx()) {
+
+				final List<? extends GraphObject> entities = NodeInterface.class.isAssignableFrom(type) ? app.nodeQuery(type).pageSize(BATCH_SIZE).page(page).getAsList() : app.relationshipQuery(type).pageSize(BATCH_SIZE).page(page).getAsList();
+
+				for (final GraphObject obj : entities) {
+
+					for (final String name : names) {
+						batch.add(new Dependent(obj.getUuid(), name));
+					}
+				}
+
+				count = entities.size();
+
+				tx.success();
+
+			} catch (FrameworkException fex) {
+
+				logger.warn("Unable to load entities of type {} to materialize function properties: {}", type.getSimpleName(), fex.getMessage());
+				return;
+			}
+
+			recompute(batch);
+
+			page++;
+		}
+	}
+
+	private static void recompute(final Set<Dependent> outdated) {
+
+		final App app              = StructrApp.getInstance();
+		Set<Dependent> current     = outdated;
+		int rounds                 = 0;
+
+		// changed values can outdate other values, but cyclic dependencies must not loop forever
+		while (!current.isEmpty() && rounds++ < MAX_ROUNDS) {
+
+			final List<Dependent> list = new ArrayList<>(current);
+			final Set<Dependent> next  = new LinkedHashSet<>();
+
+			for (int i=0; i<list.size(); i+=BATCH_SIZE) {
+
+				try (final Tx tx = app.tx(false, false, false)) {
+
+					for (final Dependent dependent : list.subList(i, Math.min(list.size(), i + BATCH_SIZE))) {
+
+						final GraphObject obj = getEntity(app, dependent.uuid);
+						if (obj == null) {
+
+							unregister(dependent);
+							continue;
+						}
+
+						final PropertyKey key = StructrApp.getConfiguration().getPropertyKeyForJSONName(obj.getClass(), dependent.name, false);
+						if (key instanceof FunctionProperty && ((FunctionProperty)key).isMaterialized()) {
+
+							if (materialize(obj, (FunctionProperty)key)) {
+
+								next.addAll(dependents.getOrDefault(dependent.uuid, Collections.emptySet()));
+								next.remove(dependent);
+							}
+
+						} else {
+
+							unregister(dependent);
+						}
+					}
+
+					tx.success();
+
+				} catch (Throwable t) {
+
+					logger.warn("Unable to update materialized function properties: {}", t.getMessage());
+				}
+			}
+
+			current = next;
+		}
+	}
+
+	private static GraphObject getEntity(final App app, final String uuid) throws FrameworkException {
+
+		final GraphObject node = app.getNodeById(uuid);
+		if (node != null) {
+
+			return node;
+		}
+
+		return app.getRelationshipById(uuid);
+	}
+
+	private static GraphObject getSuperUserInstance(final GraphObject obj) {
+
+		final SecurityContext securityContext = obj.getSecurityContext();
+		if (securityContext != null && securityContext.isSuperUser()) {
+
+			return obj;
+		}
+
+		// materialized values must not depend on the permissions of the user who modified the entity
+		try {
+
+			final GraphObject entity = getEntity(StructrApp.getInstance(), obj.getUuid());
+			if (entity != null) {
+
+				return entity;
+			}
+
+		} catch (FrameworkException fex) {
+			logger.warn("Unable to load {} as superuser: {}", obj.getUuid(), fex.getMessage());
+		}
+
+		return obj;
+	}
+
+	private static synchronized void register(final Dependent dependent, final Set<String> reads) {
+
+		unregister(dependent);
+
+		for (final String uuid : reads) {
+
+			Set<Dependent> set = dependents.get(uuid);
+			if (set == null) {
+
+				set = ConcurrentHashMap.newKeySet();
+				dependents.put(uuid, set);
+			}
+
+			set.add(dependent);
+		}
+
+		dependencies.put(dependent, reads);
+	}
+
+	private static synchronized void unregister(final Dependent dependent) {
+
+		final Set<String> reads = dependencies.remove(dependent);
+		if (reads != null) {
+
+			for (final String uuid : reads) {
+
+				final Set<Dependent> set = dependents.get(uuid);
+				if (set != null) {
+
+					set.remove(dependent);
+
+					if (set.isEmpty()) {
+						dependents.remove(uuid);
+					}
+				}
+			}
+		}
+	}
+
+	private static boolean isStorable(final Object value) {
+
+		if (value instanceof String || value instanceof Boolean || value instanceof Number) {
+			return true;
+		}
+
+		if (value instanceof String[] || value instanceof Boolean[] || value instanceof Long[] || value instanceof Integer[] || value instanceof Double[]) {
+			return true;
+		}
+
+		return false;
+	}
+
+	private static synchronized ExecutorService getUpdateExecutor() {
+
+		if (updateExecutor == null) {
+
+			// a single thread keeps the updates in commit order
+			updateExecutor = Executors.newSingleThreadExecutor(r -> {
+
+				final Thread thread = new Thread(r, "MaterializedPropertyUpdater");
+
+				thread.setDaemon(true);
+
+				return thread;
+			});
+		}
+
+		return updateExecutor;
+	}
+
+	// ----- nested classes -----
+	private static class Dependent {
+
+		private String uuid = null;
+		private String name = null;
+
+		public Dependent(final String uuid, final String name) {
+
+			this.uuid = uuid;
+			this.name = name;
+		}
+
+		@Override
+		public int hashCode() {
+			return uuid.hashCode() * 31 + name.hashCode();
+		}
+
+		@Override
+		public boolean equals(final Object other) {
+
+			if (other instanceof Dependent) {
+
+				final Dependent dependent = (Dependent)other;
+
+				return uuid.equals(dependent.uuid) && name.equals(dependent.name);
+			}
+
+			return false;
+		}
+	}
+}
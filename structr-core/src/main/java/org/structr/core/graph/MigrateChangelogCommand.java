@@ -0,0 +1,148 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.DatabaseService;
+import org.structr.api.util.Iterables;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+
+/**
+ * Moves the changelog entries that are stored in the structrChangeLog
+ * property of nodes and relationships to the {@link ChangelogStore} and
+ * removes the property from the graph objects.
+ */
+public class MigrateChangelogCommand extends NodeServiceCommand implements MaintenanceCommand {
+
+	private static final Logger logger = LoggerFactory.getLogger(MigrateChangelogCommand.class.getName());
+
+	@Override
+	public void execute(final Map<String, Object> attributes) throws FrameworkException {
+
+		final DatabaseService graphDb          = (DatabaseService) arguments.get("graphDb");
+		final SecurityContext superUserContext = SecurityContext.getSuperUserInstance();
+		final NodeFactory nodeFactory          = new NodeFactory(superUserContext);
+		final RelationshipFactory relFactory   = new RelationshipFactory(superUserContext);
+		final ChangelogStore store             = ChangelogStore.getInstance();
+
+		if (store == null) {
+
+			info("Unable to open changelog store, aborting.");
+			return;
+		}
+
+		info("Start migrating changelog of all nodes");
+
+		final long nodeCount = migrate(store, Iterables.map(nodeFactory, graphDb.getAllNodes()).iterator(), "MigrateNodeChangelog");
+
+		info("Done with migrating changelog of {} nodes", nodeCount);
+		info("Start migrating changelog of all relationships");
+
+		final long relCount = migrate(store, Iterables.map(relFactory, graphDb.getAllRelationships()).iterator(), "MigrateRelationshipChangelog");
+
+		info("Done with migrating changelog of {} relationships", relCount);
+	}
+
+	@Override
+	public boolean requiresEnclosingTransaction() {
+		return false;
+	}
+
+	@Override
+	public boolean requiresFlushingOfCaches() {
+		return false;
+	}
+
+	// ----- private methods -----
+	/**
+	 * Returns the entries of the given legacy changelog that are not in
+	 * the store yet. The store is written before the transaction that
+	 * removes the legacy changelog commits, so entries of a batch that
+	 * was rolled back, or of an earlier run of this command, may already
+	 * be in the store and must not be appended again.
+	 */
+	private String getMissingEntries(final ChangelogStore store, final String uuid, final String changelog) {
+
+		final List<String> existing = store.read(uuid, null, null);
+		final StringBuilder missing = new StringBuilder();
+
+		for (final String line : changelog.split("\n")) {
+
+			if (!line.isEmpty() && !existing.remove(line)) {
+
+				missing.append(line);
+				missing.append("\n");
+			}
+		}
+
+		return missing.toString();
+	}
+
+	private long migrate(final ChangelogStore store, final Iterator<GraphObject> iterator, final String description) {
+
+		return bulkGraphOperation(securityContext, iterator, 1000, description, new BulkGraphOperation<GraphObject>() {
+
+			@Override
+			public void handleGraphObject(final SecurityContext securityContext, final GraphObject obj) {
+
+				try {
+
+					final String changelog = obj.getProperty(GraphObject.structrChangeLog);
+					if (changelog != null) {
+
+						final String missing = getMissingEntries(store, obj.getUuid(), changelog);
+						if (!missing.isEmpty()) {
+
+							store.append(Collections.singletonMap(obj.getUuid(), missing));
+						}
+
+						obj.unlockSystemPropertiesOnce();
+						obj.setProperty(GraphObject.structrChangeLog, null);
+					}
+
+				} catch (FrameworkException fex) {
+
+					logger.warn("Unable to migrate changelog of {}: {}", obj, fex.getMessage());
+				}
+			}
+
+			@Override
+			public void handleThrowable(final SecurityContext securityContext, final Throwable t, final GraphObject obj) {
+				logger.warn("Unable to migrate changelog of {}: {}", obj, t.getMessage());
+			}
+
+			@Override
+			public void handleTransactionFailure(final SecurityContext securityContext, final Throwable t) {
+				logger.warn("Unable to migrate changelog: {}", t.getMessage());
+			}
+
+			@Override
+			public boolean doValidation() {
+				return false;
+			}
+		});
+	}
+}
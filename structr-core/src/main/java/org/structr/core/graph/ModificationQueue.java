@@ -34,12 +34,14 @@ import org.structr.api.config.Settings;
 import org.structr.api.graph.Node;
 import org.structr.api.graph.Relationship;
 import org.structr.api.graph.RelationshipType;
+import org.structr.common.PermissionPropagation;
 import org.structr.common.RelType;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.ErrorBuffer;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.entity.Principal;
+import org.structr.core.entity.Security;
 import org.structr.core.property.PropertyKey;
 
 /**
@@ -56,6 +58,7 @@ public class ModificationQueue {
 	private final Map<String, TransactionPostProcess> postProcesses                         = new LinkedHashMap<>();
 	private final Set<String> alreadyPropagated                                             = new LinkedHashSet<>();
 	private final Set<String> synchronizationKeys                                           = new TreeSet<>();
+	private final Set<Long> permissionModifiedIds                                           = new LinkedHashSet<>();
 
 	/**
 	 * Returns a set containing the different entity types of
@@ -71,6 +74,17 @@ public class ModificationQueue {
 		return modifications.size();
 	}
 
+	/**
+	 * Returns the IDs of all nodes whose security relationships,
+	 * ownership, permission propagation, visibility or group membership
+	 * was modified in this queue, or which were deleted.
+	 *
+	 * @return the node IDs
+	 */
+	public Set<Long> getPermissionModifiedIds() {
+		return permissionModifiedIds;
+	}
+
 	public boolean doInnerCallbacks(final SecurityContext securityContext, final ErrorBuffer errorBuffer) throws FrameworkException {
 
 		long t0                  = System.currentTimeMillis();
@@ -158,10 +172,67 @@ public class ModificationQueue {
 		}
 	}
 
+	/**
+	 * Adds the nodes and relationships created in this queue to the UUID
+	 * index, and removes the deleted ones. Must only be called after the
+	 * transaction was committed successfully.
+	 */
+	public void updateUuidIndex() {
+
+		for (final GraphObjectModificationState state : modifications.values()) {
+
+			if (state.isDeleted()) {
+
+				UuidIndex.remove(state.getUuid());
+
+			} else if (state.isCreated()) {
+
+				final GraphObject obj = state.getGraphObject();
+				if (obj instanceof NodeInterface) {
+
+					UuidIndex.putNode(state.getUuid(), obj.getId());
+
+				} else if (obj != null) {
+
+					UuidIndex.putRelationship(state.getUuid(), obj.getId());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Schedules the recomputation of materialized function properties that
+	 * depend on the entities modified in this transaction. Must only be
+	 * called after the transaction was committed successfully.
+	 */
+	public void updateMaterializedProperties() {
+
+		final Set<String> modifiedUuids   = new LinkedHashSet<>();
+		final Set<String> recomputedUuids = new HashSet<>();
+
+		for (final GraphObjectModificationState state : modifications.values()) {
+
+			final String uuid = state.getUuid();
+			if (uuid != null) {
+
+				modifiedUuids.add(uuid);
+
+				// values of created and modified entities are recomputed at commit
+				if (!state.isDeleted() && (state.isCreated() || state.isModified())) {
+					recomputedUuids.add(uuid);
+				}
+			}
+		}
+
+		MaterializedProperties.update(modifiedUuids, recomputedUuids);
+	}
+
 	public void updateChangelog() {
 
 		if (Settings.ChangelogEnabled.getValue() && !modificationEvents.isEmpty()) {
 
+			final Map<String, String> changelogs = new LinkedHashMap<>();
+
 			for (final ModificationEvent ev: modificationEvents) {
 
 				if (!ev.isDeleted()) {
@@ -170,12 +241,14 @@ public class ModificationQueue {
 						final GraphObject obj = ev.getGraphObject();
 						if (obj != null) {
 
-							final String existingLog = obj.getProperty(GraphObject.structrChangeLog);
-							final String newLog      = ev.getChangeLog();
-							final String newValue    = existingLog != null ? existingLog + newLog : newLog;
+							final String newLog = ev.getChangeLog();
+							if (newLog != null && !newLog.isEmpty()) {
 
-							obj.unlockSystemPropertiesOnce();
-							obj.setProperty(GraphObject.structrChangeLog, newValue);
+								final String uuid        = obj.getUuid();
+								final String existingLog = changelogs.get(uuid);
+
+								changelogs.put(uuid, existingLog != null ? existingLog + newLog : newLog);
+							}
 						}
 
 					} catch (Throwable t) {
@@ -183,6 +256,16 @@ public class ModificationQueue {
 					}
 				}
 			}
+
+			// write all entries of this transaction at once
+			if (!changelogs.isEmpty()) {
+
+				final ChangelogStore store = ChangelogStore.getInstance();
+				if (store != null) {
+
+					store.append(changelogs);
+				}
+			}
 		}
 	}
 
@@ -192,6 +275,7 @@ public class ModificationQueue {
 		alreadyPropagated.clear();
 		modifications.clear();
 		modificationEvents.clear();
+		permissionModifiedIds.clear();
 	}
 
 	public void create(final Principal user, final NodeInterface node) {
@@ -219,6 +303,7 @@ public class ModificationQueue {
 		if (sourceNode != null && targetNode != null) {
 
 			modifyEndNodes(user, sourceNode, targetNode, relationship.getRelType());
+			modifyPermissions(relationship, sourceNode, targetNode);
 
 			getState(sourceNode).updateChangeLog(user, GraphObjectModificationState.Verb.link, relationship.getType(), relationship.getUuid(), targetNode.getUuid(), GraphObjectModificationState.Direction.out);
 			getState(targetNode).updateChangeLog(user, GraphObjectModificationState.Verb.link, relationship.getType(), relationship.getUuid(), sourceNode.getUuid(), GraphObjectModificationState.Direction.in);
@@ -227,10 +312,12 @@ public class ModificationQueue {
 
 	public void modifyOwner(NodeInterface node) {
 		getState(node).modifyOwner();
+		permissionModifiedIds.add(node.getId());
 	}
 
 	public void modifySecurity(NodeInterface node) {
 		getState(node).modifySecurity();
+		permissionModifiedIds.add(node.getId());
 	}
 
 	public void modifyLocation(NodeInterface node) {
@@ -240,6 +327,10 @@ public class ModificationQueue {
 	public void modify(final Principal user, final NodeInterface node, final PropertyKey key, final Object previousValue, final Object newValue) {
 		getState(node).modify(user, key, previousValue, newValue);
 
+		if (GraphObject.visibleToPublicUsers.equals(key) || GraphObject.visibleToAuthenticatedUsers.equals(key)) {
+			permissionModifiedIds.add(node.getId());
+		}
+
 		if (key != null&& key.requiresSynchronization()) {
 			synchronizationKeys.add(key.getSynchronizationKey());
 		}
@@ -248,6 +339,10 @@ public class ModificationQueue {
 	public void modify(final Principal user, RelationshipInterface relationship, PropertyKey key, Object previousValue, Object newValue) {
 		getState(relationship).modify(user, key, previousValue, newValue);
 
+		if (relationship instanceof Security || relationship instanceof PermissionPropagation) {
+			modifyPermissions(relationship, relationship.getSourceNodeAsSuperUser(), relationship.getTargetNodeAsSuperUser());
+		}
+
 		if (key != null && key.requiresSynchronization()) {
 			synchronizationKeys.add(key.getSynchronizationKey());
 		}
@@ -271,6 +366,7 @@ public class ModificationQueue {
 	public void delete(final Principal user, final NodeInterface node) {
 
 		getState(node).delete(false);
+		permissionModifiedIds.add(node.getId());
 
 		if (Settings.ChangelogEnabled.getValue()) {
 
@@ -295,6 +391,7 @@ public class ModificationQueue {
 		final NodeInterface targetNode = relationship.getTargetNodeAsSuperUser();
 
 		modifyEndNodes(user, sourceNode, targetNode, relationship.getRelType());
+		modifyPermissions(relationship, sourceNode, targetNode);
 
 		getState(sourceNode).updateChangeLog(user, GraphObjectModificationState.Verb.unlink, relationship.getType(), relationship.getUuid(), targetNode.getUuid(), GraphObjectModificationState.Direction.out);
 		getState(targetNode).updateChangeLog(user, GraphObjectModificationState.Verb.unlink, relationship.getType(), relationship.getUuid(), sourceNode.getUuid(), GraphObjectModificationState.Direction.in);
@@ -439,6 +536,23 @@ public class ModificationQueue {
 		}
 	}
 
+	/**
+	 * Collects the IDs of the end nodes of relationships that influence
+	 * permission resolution: security relationships, permission-propagating
+	 * relationships and relationships to principals (group membership).
+	 */
+	private void modifyPermissions(final RelationshipInterface relationship, final NodeInterface sourceNode, final NodeInterface targetNode) {
+
+		if (sourceNode != null && targetNode != null) {
+
+			if (relationship instanceof Security || relationship instanceof PermissionPropagation || sourceNode instanceof Principal || targetNode instanceof Principal) {
+
+				permissionModifiedIds.add(sourceNode.getId());
+				permissionModifiedIds.add(targetNode.getId());
+			}
+		}
+	}
+
 	private GraphObjectModificationState getState(final NodeInterface node) {
 		return getState(node, false);
 	}
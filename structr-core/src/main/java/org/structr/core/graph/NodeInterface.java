@@ -25,6 +25,7 @@ import org.structr.api.graph.RelationshipType;
 import org.structr.common.AccessControllable;
 import org.structr.common.SecurityContext;
 import org.structr.common.View;
+import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import static org.structr.core.GraphObject.id;
 import static org.structr.core.GraphObject.type;
@@ -42,6 +43,7 @@ import org.structr.core.entity.relationship.PrincipalOwnsNode;
 import org.structr.core.property.BooleanProperty;
 import org.structr.core.property.EntityIdProperty;
 import org.structr.core.property.Property;
+import org.structr.core.property.PropertyKey;
 import org.structr.core.property.StartNode;
 import org.structr.core.property.StartNodes;
 import org.structr.core.property.StringProperty;
@@ -75,6 +77,31 @@ public interface NodeInterface extends GraphObject, Comparable, AccessControllab
 	public boolean isDeleted();
 
 	public boolean hasRelationshipTo(final RelationshipType type, final NodeInterface targetNode);
+	public <R extends AbstractRelationship> R getRelationshipTo(final RelationshipType type, final NodeInterface targetNode);
+
+	/**
+	 * Relates the given elements to this node via the given relationship
+	 * property. Only the relationships of elements that are not related
+	 * yet are created, the existing relationships are not loaded.
+	 *
+	 * @param key the relationship property
+	 * @param values the elements, as entities, UUIDs or property maps
+	 *
+	 * @throws FrameworkException
+	 */
+	public void addToCollection(final PropertyKey key, final List values) throws FrameworkException;
+
+	/**
+	 * Removes the relationships between this node and the given elements
+	 * via the given relationship property. The other relationships are not
+	 * loaded.
+	 *
+	 * @param key the relationship property
+	 * @param values the elements, as entities, UUIDs or property maps
+	 *
+	 * @throws FrameworkException
+	 */
+	public void removeFromCollection(final PropertyKey key, final List values) throws FrameworkException;
 
 	public <R extends AbstractRelationship> Iterable<R> getRelationships();
 	public <R extends AbstractRelationship> Iterable<R> getRelationshipsAsSuperUser();
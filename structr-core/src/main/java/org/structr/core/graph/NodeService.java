@@ -125,6 +125,9 @@ public class NodeService implements SingletonService {
 		}
 
 		importSeedFile(basePath);
+
+		// read the UUIDs of all nodes and relationships in the background
+		UuidIndex.rebuild(graphDb);
 	}
 
 	@Override
@@ -133,6 +136,8 @@ public class NodeService implements SingletonService {
 		if (isRunning()) {
 
 			logger.info("Shutting down graph database service");
+			MaterializedProperties.clear();
+			UuidIndex.clear();
 			graphDb.shutdown();
 
 			graphDb       = null;
@@ -120,7 +120,13 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 		String fileName         = (String)attributes.get("file");
 		String validate         = (String)attributes.get("validate");
 		String query            = (String)attributes.get("query");
+		String format           = (String)attributes.get("format");
+		String target           = (String)attributes.get("target");
 		Long batchSize          = (Long)attributes.get("batchSize");
+		Long threads            = (Long)attributes.get("threads");
+		int threadCount         = threads != null ? threads.intValue() : Runtime.getRuntime().availableProcessors();
+		int blockSize           = batchSize != null ? batchSize.intValue() : 1000;
+		boolean snapshot        = "snapshot".equals(format);
 		boolean doValidation    = true;
 
 		// should we validate imported nodes?
@@ -141,17 +147,53 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 			throw new FrameworkException(400, "Please specify sync file.");
 		}
 
+		if (snapshot && query != null) {
+
+			throw new FrameworkException(400, "Cypher queries are not supported by the snapshot format.");
+		}
+
 		if ("export".equals(mode)) {
 
-			exportToFile(graphDb, fileName, query, true);
+			if (snapshot) {
+
+				SyncSnapshot.exportToFile(graphDb, fileName, true, threadCount, blockSize);
+
+			} else {
+
+				exportToFile(graphDb, fileName, query, true);
+			}
 
 		} else if ("exportDb".equals(mode)) {
 
-			exportToFile(graphDb, fileName, query, false);
+			if (snapshot) {
+
+				SyncSnapshot.exportToFile(graphDb, fileName, false, threadCount, blockSize);
+
+			} else {
+
+				exportToFile(graphDb, fileName, query, false);
+			}
 
 		} else if ("import".equals(mode)) {
 
-			importFromFile(graphDb, securityContext, fileName, doValidation, batchSize);
+			// the format of the file is detected automatically
+			if (SyncSnapshot.isSnapshot(fileName)) {
+
+				SyncSnapshot.importFromFile(graphDb, securityContext, fileName, doValidation, threadCount);
+
+			} else {
+
+				importFromFile(graphDb, securityContext, fileName, doValidation, batchSize);
+			}
+
+		} else if ("convert".equals(mode)) {
+
+			if (target == null) {
+
+				throw new FrameworkException(400, "Please specify target file.");
+			}
+
+			SyncSnapshot.convert(fileName, target, blockSize);
 
 		} else {
 
@@ -419,15 +461,18 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 		final int len       = inputStream.readInt();
 		final byte[] buffer = new byte[len];
 
-		inputStream.read(buffer, 0, len);
+		inputStream.readFully(buffer);
 
 		return buffer;
 	}
 
 	public static Object deserialize(final DataInputStream inputStream) throws IOException {
+		return deserialize(inputStream, inputStream.readByte());
+	}
+
+	static Object deserialize(final DataInputStream inputStream, final byte type) throws IOException {
 
 		Object serializedObject = null;
-		final byte type         = inputStream.readByte();
 		Class clazz             = classMap.get(type);
 
 		if (clazz != null) {
@@ -462,6 +507,16 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 		return serializedObject;
 	}
 
+	/**
+	 * Indicates whether the given value can be serialized with {@link #serialize}.
+	 *
+	 * @param value
+	 * @return whether the type of the given value is supported
+	 */
+	static boolean isSupported(final Object value) {
+		return value == null || typeMap.containsKey(value.getClass());
+	}
+
 	private static void exportDirectory(ZipOutputStream zos, File dir, String path, Set<String> filesToInclude) throws IOException {
 
 		final String nestedPath = path + dir.getName() + "/";
@@ -948,7 +1003,7 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 		}
 	}
 
-	private static boolean checkAndMerge(final NodeInterface node, final Set<Long> deletedNodes, final Set<Long> deletedRels) throws FrameworkException {
+	static boolean checkAndMerge(final NodeInterface node, final Set<Long> deletedNodes, final Set<Long> deletedRels) throws FrameworkException {
 
 		final Class type                        = node.getClass();
 		final String name                       = node.getName();
@@ -0,0 +1,1577 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.DatabaseService;
+import org.structr.api.NativeResult;
+import org.structr.api.Transaction;
+import org.structr.api.graph.Node;
+import org.structr.api.graph.PropertyContainer;
+import org.structr.api.graph.Relationship;
+import org.structr.api.graph.RelationshipSpec;
+import org.structr.api.graph.RelationshipType;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.ErrorBuffer;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.app.App;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.AbstractSchemaNode;
+import org.structr.core.entity.SchemaReloadingNode;
+import org.structr.core.entity.SuperUser;
+import org.structr.schema.SchemaHelper;
+
+/**
+ * Block-indexed snapshot format for {@link SyncCommand}.
+ *
+ * A snapshot file consists of a header, any number of blocks and an
+ * index of all blocks at the end of the file. Each block contains the
+ * records of a number of nodes, relationships or file chunks, encoded
+ * with {@link SyncCommand#serialize}, and is compressed and checksummed
+ * on its own, so that blocks can be written by several producer threads
+ * and read in any order by several consumer threads.
+ *
+ * The export uses one producer per node type and per relationship type,
+ * every block only contains records of a single type. The import creates
+ * the nodes of all node blocks in parallel, with one transaction and one
+ * bulk statement per type and block, and creates the relationships in a
+ * second phase. The numbers of the imported blocks are recorded in a
+ * progress file next to the snapshot, an interrupted import is resumed
+ * by running it again.
+ */
+public class SyncSnapshot {
+
+	private static final Logger logger           = LoggerFactory.getLogger(SyncSnapshot.class.getName());
+	private static final byte[] HEADER           = "STRSNAP1".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] TRAILER          = "STRSIDX1".getBytes(StandardCharsets.US_ASCII);
+	private static final String PROGRESS_SUFFIX  = ".progress";
+	private static final String NODE_LABEL       = "NodeInterface";
+	private static final String ZIP_DB_NAME      = "db";
+	private static final int BLOCK_HEADER_SIZE   = 21;
+	private static final int MAX_BLOCK_BYTES     = 4 * 1024 * 1024;
+	private static final int FILE_CHUNK_SIZE     = 1024 * 1024;
+
+	public static final byte NODES               = 'N';
+	public static final byte RELATIONSHIPS       = 'R';
+	public static final byte FILES               = 'F';
+
+	/**
+	 * Exports the whole structr database to a snapshot file with the given
+	 * name, using the given number of threads.
+	 *
+	 * @param graphDb
+	 * @param fileName
+	 * @param includeFiles
+	 * @param threads
+	 * @param blockSize the maximum number of records per block
+	 * @throws FrameworkException
+	 */
+	public static void exportToFile(final DatabaseService graphDb, final String fileName, final boolean includeFiles, final int threads, final int blockSize) throws FrameworkException {
+
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final List<Future<Long>> nodes = new LinkedList<>();
+		final List<Future<Long>> rels  = new LinkedList<>();
+		final long t0                  = System.currentTimeMillis();
+		Future<Long> files             = null;
+		long nodeCount                 = 0L;
+		long relCount                  = 0L;
+
+		// the block index is only written if all blocks were exported, otherwise
+		// the writer removes the incomplete file when it is closed
+		try (final Writer writer = new Writer(fileName)) {
+
+			try {
+
+				if (includeFiles) {
+
+					logger.info("Exporting files..");
+
+					files = executor.submit(() -> exportFiles(writer, new File("files"), blockSize));
+				}
+
+				for (final String type : getTypes(graphDb, "MATCH (n) WHERE exists(n." + GraphObject.id.dbName() + ") RETURN DISTINCT n." + NodeInterface.type.dbName() + " AS type")) {
+					nodes.add(executor.submit(() -> exportNodes(graphDb, writer, type, blockSize)));
+				}
+
+				for (final String type : getTypes(graphDb, "MATCH ()-[r]->() WHERE exists(r." + GraphObject.id.dbName() + ") RETURN DISTINCT type(r) AS type")) {
+					rels.add(executor.submit(() -> exportRelationships(graphDb, writer, type, blockSize)));
+				}
+
+				if (files != null) {
+					files.get();
+				}
+
+				for (final Future<Long> future : nodes) {
+					nodeCount += future.get();
+				}
+
+				for (final Future<Long> future : rels) {
+					relCount += future.get();
+				}
+
+			} finally {
+
+				// stop the remaining producers BEFORE the writer is closed
+				executor.shutdownNow();
+				executor.awaitTermination(1, TimeUnit.MINUTES);
+			}
+
+			writer.finish();
+
+			logger.info("Exported {} nodes and {} rels in {} blocks in {} ms", nodeCount, relCount, writer.getBlockCount(), System.currentTimeMillis() - t0);
+
+		} catch (IOException | InterruptedException | ExecutionException ex) {
+
+			logger.warn("", ex);
+
+			throw new FrameworkException(500, ex.getMessage());
+		}
+	}
+
+	/**
+	 * Imports the snapshot file with the given name, using the given number
+	 * of threads. If a previous import of the same file was interrupted,
+	 * the import continues with the blocks that were not imported yet.
+	 *
+	 * @param graphDb
+	 * @param securityContext
+	 * @param fileName
+	 * @param doValidation
+	 * @param threads
+	 * @throws FrameworkException
+	 */
+	public static void importFromFile(final DatabaseService graphDb, final SecurityContext securityContext, final String fileName, final boolean doValidation, final int threads) throws FrameworkException {
+
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final App app                  = StructrApp.getInstance();
+		final long t0                  = System.currentTimeMillis();
+
+		try (final Reader reader = new Reader(fileName); final Progress progress = new Progress(fileName + PROGRESS_SUFFIX, reader.getSize())) {
+
+			final List<Block> schemaBlocks = new LinkedList<>();
+			final List<Block> nodeBlocks   = new LinkedList<>();
+
+			if (progress.isResumed()) {
+				logger.info("Resuming import of {}, {} of {} blocks already imported", fileName, progress.getCompletedCount(), reader.getBlocks().size());
+			}
+
+			// schema nodes are imported first and sequentially, because they trigger a schema reload
+			for (final Block block : reader.getBlocks(NODES)) {
+
+				if (isSchemaType(block.getType())) {
+
+					schemaBlocks.add(block);
+
+				} else {
+
+					nodeBlocks.add(block);
+				}
+			}
+
+			final BlockTask nodeTask = (block, probe) -> importNodes(graphDb, securityContext, reader, block, doValidation, probe);
+			final BlockTask relTask  = (block, probe) -> importRelationships(graphDb, securityContext, reader, block, doValidation, probe);
+
+			final long fileCount     = importFiles(reader, progress);
+			final long nodeCount     = importBlocks(null, schemaBlocks, progress, nodeTask) + importBlocks(executor, nodeBlocks, progress, nodeTask);
+
+			logger.info("Imported {} nodes, importing relationships..", nodeCount);
+
+			final long relCount      = importBlocks(executor, reader.getBlocks(RELATIONSHIPS), progress, relTask);
+
+			progress.finish();
+
+			logger.info("Imported {} files, {} nodes and {} rels in {} ms", fileCount, nodeCount, relCount, System.currentTimeMillis() - t0);
+
+		} catch (IOException ioex) {
+
+			logger.warn("", ioex);
+
+			throw new FrameworkException(500, ioex.getMessage());
+
+		} finally {
+
+			executor.shutdownNow();
+		}
+
+		// build schema
+		try (final Tx tx = app.tx()) {
+
+			SchemaHelper.reloadSchema(new ErrorBuffer(), securityContext.getSessionId());
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			logger.warn("", fex);
+		}
+
+		// set correct labels after schema has been compiled
+		app.command(BulkCreateLabelsCommand.class).execute(Collections.emptyMap());
+	}
+
+	/**
+	 * Converts the given file from the ZIP format of {@link SyncCommand}
+	 * to the snapshot format and vice versa.
+	 *
+	 * @param sourceFileName
+	 * @param targetFileName
+	 * @param blockSize the maximum number of records per block
+	 * @throws FrameworkException
+	 */
+	public static void convert(final String sourceFileName, final String targetFileName, final int blockSize) throws FrameworkException {
+
+		try {
+
+			if (isSnapshot(sourceFileName)) {
+
+				logger.info("Converting snapshot {} to ZIP file {}", sourceFileName, targetFileName);
+				convertToZip(sourceFileName, targetFileName);
+
+			} else {
+
+				logger.info("Converting ZIP file {} to snapshot {}", sourceFileName, targetFileName);
+				convertToSnapshot(sourceFileName, targetFileName, blockSize);
+			}
+
+		} catch (IOException ioex) {
+
+			logger.warn("", ioex);
+
+			throw new FrameworkException(500, ioex.getMessage());
+		}
+	}
+
+	/**
+	 * Indicates whether the file with the given name is a snapshot file.
+	 *
+	 * @param fileName
+	 * @return whether the file starts with the snapshot header
+	 */
+	public static boolean isSnapshot(final String fileName) {
+
+		final byte[] header = new byte[HEADER.length];
+
+		try (final InputStream is = new FileInputStream(fileName)) {
+
+			int length = 0;
+
+			while (length < header.length) {
+
+				final int count = is.read(header, length, header.length - length);
+				if (count < 0) {
+
+					return false;
+				}
+
+				length += count;
+			}
+
+			return Arrays.equals(HEADER, header);
+
+		} catch (IOException ioex) {
+			return false;
+		}
+	}
+
+	// ----- private static methods -----
+	private static List<String> getTypes(final DatabaseService graphDb, final String query) {
+
+		final List<String> types = new LinkedList<>();
+
+		try (final Transaction tx = graphDb.beginTx()) {
+
+			try (final NativeResult result = graphDb.execute(query)) {
+
+				while (result.hasNext()) {
+
+					final Object type = result.next().get("type");
+					types.add(type != null ? type.toString() : null);
+				}
+			}
+
+			tx.success();
+		}
+
+		return types;
+	}
+
+	private static long exportNodes(final DatabaseService graphDb, final Writer writer, final String type, final int blockSize) throws IOException {
+
+		final BlockBuffer buffer             = new BlockBuffer(writer, NODES, type, blockSize);
+		final Map<String, Object> parameters = new HashMap<>();
+		final String uuidPropertyName        = GraphObject.id.dbName();
+		final String typePropertyName        = NodeInterface.type.dbName();
+		final String query;
+		long count                           = 0L;
+
+		if (type != null) {
+
+			query = "MATCH (n:`" + type + "`) WHERE n." + typePropertyName + " = {type} AND exists(n." + uuidPropertyName + ") RETURN n";
+			parameters.put("type", type);
+
+		} else {
+
+			query = "MATCH (n) WHERE exists(n." + uuidPropertyName + ") AND NOT exists(n." + typePropertyName + ") RETURN n";
+		}
+
+		try (final Transaction tx = graphDb.beginTx()) {
+
+			try (final NativeResult result = graphDb.execute(query, parameters)) {
+
+				while (result.hasNext()) {
+
+					writeProperties(buffer.getOutput(), (Node)result.next().get("n"));
+					buffer.recordWritten();
+
+					count++;
+				}
+			}
+
+			tx.success();
+		}
+
+		buffer.flush();
+
+		return count;
+	}
+
+	private static long exportRelationships(final DatabaseService graphDb, final Writer writer, final String type, final int blockSize) throws IOException {
+
+		final BlockBuffer buffer      = new BlockBuffer(writer, RELATIONSHIPS, type, blockSize);
+		final String uuidPropertyName = GraphObject.id.dbName();
+		long count                    = 0L;
+
+		// relationships to or from non-structr nodes are ignored
+		final String query = "MATCH (s)-[r:`" + type + "`]->(e) WHERE exists(r." + uuidPropertyName + ") AND exists(s." + uuidPropertyName + ") AND exists(e." + uuidPropertyName + ") "
+			+ "RETURN s." + uuidPropertyName + " AS startId, e." + uuidPropertyName + " AS endId, r";
+
+		try (final Transaction tx = graphDb.beginTx()) {
+
+			try (final NativeResult result = graphDb.execute(query)) {
+
+				while (result.hasNext()) {
+
+					final Map<String, Object> row = result.next();
+					final DataOutputStream dos    = buffer.getOutput();
+
+					SyncCommand.serialize(dos, row.get("startId"));
+					SyncCommand.serialize(dos, row.get("endId"));
+					SyncCommand.serialize(dos, type);
+
+					writeProperties(dos, (Relationship)row.get("r"));
+					buffer.recordWritten();
+
+					count++;
+				}
+			}
+
+			tx.success();
+		}
+
+		buffer.flush();
+
+		return count;
+	}
+
+	private static long exportFiles(final Writer writer, final File directory, final int blockSize) throws IOException {
+
+		final BlockBuffer buffer = new BlockBuffer(writer, FILES, null, blockSize);
+		final long count         = exportDirectory(buffer, directory, "");
+
+		buffer.flush();
+
+		return count;
+	}
+
+	private static long exportDirectory(final BlockBuffer buffer, final File directory, final String path) throws IOException {
+
+		final String nestedPath = path + directory.getName() + "/";
+		final File[] contents   = directory.listFiles();
+		long count              = 0L;
+
+		writeFileChunk(buffer, nestedPath, directory.lastModified(), 0L, new byte[0], 0);
+
+		if (contents != null) {
+
+			for (final File file : contents) {
+
+				if (file.isDirectory()) {
+
+					count += exportDirectory(buffer, file, nestedPath);
+
+				} else {
+
+					try (final InputStream is = new FileInputStream(file)) {
+
+						exportFile(buffer, is, nestedPath + file.getName(), file.lastModified());
+					}
+
+					count++;
+				}
+			}
+		}
+
+		return count;
+	}
+
+	private static void exportFile(final BlockBuffer buffer, final InputStream is, final String path, final long lastModified) throws IOException {
+
+		final byte[] chunk = new byte[FILE_CHUNK_SIZE];
+		long offset        = 0L;
+		int length         = 0;
+
+		do {
+
+			length = 0;
+
+			// fill the whole chunk unless the end of the file is reached
+			while (length < chunk.length) {
+
+				final int count = is.read(chunk, length, chunk.length - length);
+				if (count < 0) {
+
+					break;
+				}
+
+				length += count;
+			}
+
+			// empty files are exported as a single empty chunk
+			if (length > 0 || offset == 0L) {
+
+				writeFileChunk(buffer, path, lastModified, offset, chunk, length);
+			}
+
+			offset += length;
+
+		} while (length == chunk.length);
+	}
+
+	private static long importBlocks(final ExecutorService executor, final List<Block> blocks, final Progress progress, final BlockTask task) throws IOException, FrameworkException {
+
+		final Map<Block, Future<Long>> futures = new LinkedHashMap<>();
+		final List<Block> failed               = new LinkedList<>();
+		long count                             = 0L;
+
+		for (final Block block : blocks) {
+
+			if (!progress.isCompleted(block)) {
+
+				if (executor != null) {
+
+					futures.put(block, executor.submit(() -> {
+
+						final long result = task.run(block, progress.isResumed());
+
+						progress.completed(block);
+
+						return result;
+					}));
+
+				} else {
+
+					count += task.run(block, progress.isResumed());
+					progress.completed(block);
+				}
+			}
+		}
+
+		for (final Entry<Block, Future<Long>> entry : futures.entrySet()) {
+
+			try {
+
+				count += entry.getValue().get();
+
+			} catch (InterruptedException | ExecutionException ex) {
+
+				logger.warn("Unable to import block {} in parallel, retrying: {}", entry.getKey().getNumber(), ex.getMessage());
+				failed.add(entry.getKey());
+			}
+		}
+
+		// blocks that could not be imported in parallel (e.g. because of
+		// deadlocks) are imported sequentially, with a check whether the
+		// block was committed before the failure
+		for (final Block block : failed) {
+
+			count += task.run(block, true);
+			progress.completed(block);
+		}
+
+		return count;
+	}
+
+	private static long importNodes(final DatabaseService graphDb, final SecurityContext securityContext, final Reader reader, final Block block, final boolean doValidation, final boolean probe) throws IOException, FrameworkException {
+
+		final Map<String, List<Map<String, Object>>> nodesByType = new LinkedHashMap<>();
+		final DataInputStream dis                                = reader.read(block);
+		final App app                                            = StructrApp.getInstance();
+		final NodeFactory nodeFactory                            = new NodeFactory(securityContext);
+		final String uuidPropertyName                            = GraphObject.id.dbName();
+		final String typePropertyName                            = NodeInterface.type.dbName();
+		final Set<Long> deletedNodes                             = new HashSet<>();
+		final Set<Long> deletedRels                              = new HashSet<>();
+		final SuperUser superUser                                = new SuperUser();
+		String firstId                                           = null;
+		long count                                               = 0L;
+
+		for (int i=0; i<block.getCount(); i++) {
+
+			final Map<String, Object> properties = readProperties(dis);
+			final Object type                    = properties.get(typePropertyName);
+
+			if (firstId == null) {
+				firstId = (String)properties.get(uuidPropertyName);
+			}
+
+			nodesByType.computeIfAbsent(type != null ? type.toString() : null, k -> new ArrayList<>()).add(properties);
+		}
+
+		try (final Tx tx = app.tx(doValidation)) {
+
+			// all nodes of a block are committed in a single transaction, so it
+			// is sufficient to check the first node when resuming an import
+			if (probe && firstId != null && exists(graphDb, "MATCH (n:" + NODE_LABEL + ") WHERE n." + uuidPropertyName + " = {id} RETURN count(n) AS count", toMap("id", firstId))) {
+
+				logger.info("Skipping block {}, nodes have already been imported", block.getNumber());
+
+				tx.success();
+
+				return 0L;
+			}
+
+			for (final Entry<String, List<Map<String, Object>>> entry : nodesByType.entrySet()) {
+
+				final Set<String> labels = new LinkedHashSet<>();
+
+				// the remaining labels are set by BulkCreateLabelsCommand after the schema has been compiled
+				labels.add(NODE_LABEL);
+
+				if (entry.getKey() != null) {
+					labels.add(entry.getKey());
+				}
+
+				for (final Node node : graphDb.createNodes(labels, entry.getValue())) {
+
+					final NodeInterface entity = nodeFactory.instantiate(node);
+
+					// check for existing schema node and merge
+					if (entity instanceof AbstractSchemaNode) {
+						SyncCommand.checkAndMerge(entity, deletedNodes, deletedRels);
+					}
+
+					if (!deletedNodes.contains(node.getId())) {
+
+						TransactionCommand.nodeCreated(superUser, entity);
+						entity.addToIndex();
+					}
+
+					count++;
+				}
+			}
+
+			tx.success();
+		}
+
+		return count;
+	}
+
+	private static long importRelationships(final DatabaseService graphDb, final SecurityContext securityContext, final Reader reader, final Block block, final boolean doValidation, final boolean probe) throws IOException, FrameworkException {
+
+		final List<Map<String, Object>> records = new ArrayList<>(block.getCount());
+		final DataInputStream dis               = reader.read(block);
+		final App app                           = StructrApp.getInstance();
+		final RelationshipFactory relFactory    = new RelationshipFactory(securityContext);
+		final List<RelationshipSpec> specs      = new ArrayList<>(block.getCount());
+		final Set<String> uuids                 = new LinkedHashSet<>();
+		final String uuidPropertyName           = GraphObject.id.dbName();
+		final SuperUser superUser               = new SuperUser();
+		long count                              = 0L;
+
+		for (int i=0; i<block.getCount(); i++) {
+
+			final Map<String, Object> record = new HashMap<>();
+			final String startId             = (String)SyncCommand.deserialize(dis);
+			final String endId               = (String)SyncCommand.deserialize(dis);
+
+			record.put("start",      startId);
+			record.put("end",        endId);
+			record.put("type",       SyncCommand.deserialize(dis));
+			record.put("properties", readProperties(dis));
+
+			uuids.add(startId);
+			uuids.add(endId);
+
+			records.add(record);
+		}
+
+		try (final Tx tx = app.tx(doValidation)) {
+
+			if (probe && !records.isEmpty()) {
+
+				final Map<String, Object> first = records.get(0);
+				final Object id                 = ((Map)first.get("properties")).get(uuidPropertyName);
+
+				if (exists(graphDb, "MATCH (n:" + NODE_LABEL + ")-[r]->() WHERE n." + uuidPropertyName + " = {start} AND r." + uuidPropertyName + " = {id} RETURN count(r) AS count", toMap("start", first.get("start"), "id", id))) {
+
+					logger.info("Skipping block {}, relationships have already been imported", block.getNumber());
+
+					tx.success();
+
+					return 0L;
+				}
+			}
+
+			// resolve the start and end nodes of all relationships with a single query
+			final Map<String, Long> ids = new HashMap<>();
+
+			try (final NativeResult result = graphDb.execute("MATCH (n:" + NODE_LABEL + ") WHERE n." + uuidPropertyName + " IN {ids} RETURN n." + uuidPropertyName + " AS uuid, id(n) AS id", toMap("ids", new ArrayList<>(uuids)))) {
+
+				while (result.hasNext()) {
+
+					final Map<String, Object> row = result.next();
+
+					ids.put((String)row.get("uuid"), ((Number)row.get("id")).longValue());
+				}
+			}
+
+			for (final Map<String, Object> record : records) {
+
+				final Long startNodeId = ids.get((String)record.get("start"));
+				final Long endNodeId   = ids.get((String)record.get("end"));
+
+				if (startNodeId != null && endNodeId != null) {
+
+					specs.add(new RelationshipSpec(
+						graphDb.getNodeById(startNodeId),
+						graphDb.getNodeById(endNodeId),
+						RelationshipType.forName((String)record.get("type")),
+						(Map<String, Object>)record.get("properties")
+					));
+
+				} else {
+
+					logger.warn("NOT creating relationship of type {}, start: {}, end: {}", record.get("type"), record.get("start"), record.get("end"));
+				}
+			}
+
+			for (final Relationship rel : graphDb.createRelationships(specs)) {
+
+				final RelationshipInterface entity = relFactory.instantiate(rel);
+
+				TransactionCommand.relationshipCreated(superUser, entity);
+				entity.addToIndex();
+
+				count++;
+			}
+
+			tx.success();
+		}
+
+		return count;
+	}
+
+	private static long importFiles(final Reader reader, final Progress progress) throws IOException {
+
+		final Set<String> writing = new HashSet<>();
+		long count                = 0L;
+
+		// file chunks are imported sequentially, in the order they were exported
+		for (final Block block : reader.getBlocks(FILES)) {
+
+			if (progress.isCompleted(block)) {
+				continue;
+			}
+
+			final DataInputStream dis = reader.read(block);
+
+			for (int i=0; i<block.getCount(); i++) {
+
+				final String path       = (String)SyncCommand.deserialize(dis);
+				final long lastModified = dis.readLong();
+				final long offset       = dis.readLong();
+				final byte[] data       = SyncCommand.deserializeData(dis);
+				final File file         = new File(path);
+
+				if (path.endsWith("/")) {
+
+					file.mkdirs();
+
+				} else if (offset == 0L) {
+
+					boolean overwrite = false;
+
+					if (!file.exists()) {
+
+						overwrite = true;
+
+					} else if (file.lastModified() < lastModified) {
+
+						logger.info("Overwriting existing file {} because import file is newer.", path);
+						overwrite = true;
+					}
+
+					if (overwrite) {
+
+						file.getAbsoluteFile().getParentFile().mkdirs();
+
+						writeFile(file, data, false);
+						writing.add(path);
+
+						count++;
+					}
+
+				} else if (writing.contains(path) || (progress.isResumed() && file.length() == offset)) {
+
+					writeFile(file, data, true);
+					writing.add(path);
+				}
+			}
+
+			progress.completed(block);
+		}
+
+		return count;
+	}
+
+	private static void convertToSnapshot(final String sourceFileName, final String targetFileName, final int blockSize) throws IOException {
+
+		final Map<String, BlockBuffer> nodes = new LinkedHashMap<>();
+		final Map<String, BlockBuffer> rels  = new LinkedHashMap<>();
+		final String typePropertyName        = NodeInterface.type.dbName();
+		long nodeCount                       = 0L;
+		long relCount                        = 0L;
+
+		try (final Writer writer = new Writer(targetFileName); final ZipInputStream zis = new ZipInputStream(new FileInputStream(sourceFileName))) {
+
+			final BlockBuffer files = new BlockBuffer(writer, FILES, null, blockSize);
+			ZipEntry entry          = zis.getNextEntry();
+
+			while (entry != null) {
+
+				if (ZIP_DB_NAME.equals(entry.getName())) {
+
+					final DataInputStream dis = new DataInputStream(zis);
+					int objectType            = dis.read();
+
+					while (objectType >= 0) {
+
+						if (objectType == 'N') {
+
+							final Map<String, Object> properties = readLegacyProperties(dis);
+							final Object type                    = properties.get(typePropertyName);
+							final String key                     = type != null ? type.toString() : null;
+							final BlockBuffer buffer             = nodes.computeIfAbsent(key, k -> new BlockBuffer(writer, NODES, k, blockSize));
+
+							writeProperties(buffer.getOutput(), properties);
+							buffer.recordWritten();
+
+							nodeCount++;
+
+						} else if (objectType == 'R') {
+
+							final Object startId       = SyncCommand.deserialize(dis);
+							final Object endId         = SyncCommand.deserialize(dis);
+							final String type          = (String)SyncCommand.deserialize(dis);
+							final BlockBuffer buffer   = rels.computeIfAbsent(type, k -> new BlockBuffer(writer, RELATIONSHIPS, k, blockSize));
+							final DataOutputStream dos = buffer.getOutput();
+
+							SyncCommand.serialize(dos, startId);
+							SyncCommand.serialize(dos, endId);
+							SyncCommand.serialize(dos, type);
+
+							writeProperties(dos, readLegacyProperties(dis));
+							buffer.recordWritten();
+
+							relCount++;
+
+						} else if (objectType != '\n') {
+
+							throw new IOException("Invalid record type " + objectType + " in " + sourceFileName);
+						}
+
+						objectType = dis.read();
+					}
+
+				} else if (entry.isDirectory()) {
+
+					writeFileChunk(files, entry.getName(), Math.max(0L, entry.getTime()), 0L, new byte[0], 0);
+
+				} else {
+
+					exportFile(files, zis, entry.getName(), Math.max(0L, entry.getTime()));
+				}
+
+				entry = zis.getNextEntry();
+			}
+
+			files.flush();
+
+			for (final BlockBuffer buffer : nodes.values()) {
+				buffer.flush();
+			}
+
+			for (final BlockBuffer buffer : rels.values()) {
+				buffer.flush();
+			}
+
+			writer.finish();
+		}
+
+		logger.info("Converted {} nodes and {} rels", nodeCount, relCount);
+	}
+
+	private static void convertToZip(final String sourceFileName, final String targetFileName) throws IOException {
+
+		try (final Reader reader = new Reader(sourceFileName); final ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(targetFileName))) {
+
+			final DataOutputStream dos = new DataOutputStream(zos);
+			boolean open               = false;
+
+			zos.setLevel(6);
+
+			for (final Block block : reader.getBlocks(FILES)) {
+
+				final DataInputStream dis = reader.read(block);
+
+				for (int i=0; i<block.getCount(); i++) {
+
+					final String path       = (String)SyncCommand.deserialize(dis);
+					final long lastModified = dis.readLong();
+					final long offset       = dis.readLong();
+					final byte[] data       = SyncCommand.deserializeData(dis);
+
+					if (offset == 0L) {
+
+						if (open) {
+							zos.closeEntry();
+						}
+
+						final ZipEntry entry = new ZipEntry(path);
+
+						entry.setTime(lastModified);
+						zos.putNextEntry(entry);
+
+						open = true;
+					}
+
+					zos.write(data);
+				}
+			}
+
+			if (open) {
+				zos.closeEntry();
+			}
+
+			zos.putNextEntry(new ZipEntry(ZIP_DB_NAME));
+
+			// nodes must precede relationships in the ZIP format
+			for (final Block block : reader.getBlocks(NODES)) {
+
+				final DataInputStream dis = reader.read(block);
+
+				for (int i=0; i<block.getCount(); i++) {
+
+					dos.write('N');
+					writeLegacyProperties(dos, readProperties(dis));
+				}
+			}
+
+			for (final Block block : reader.getBlocks(RELATIONSHIPS)) {
+
+				final DataInputStream dis = reader.read(block);
+
+				for (int i=0; i<block.getCount(); i++) {
+
+					dos.write('R');
+					SyncCommand.serialize(dos, SyncCommand.deserialize(dis));
+					SyncCommand.serialize(dos, SyncCommand.deserialize(dis));
+					SyncCommand.serialize(dos, SyncCommand.deserialize(dis));
+					writeLegacyProperties(dos, readProperties(dis));
+				}
+			}
+
+			dos.flush();
+
+			zos.closeEntry();
+			zos.finish();
+		}
+	}
+
+	private static boolean isSchemaType(final String type) {
+
+		if (type != null) {
+
+			final Class entityClass = StructrApp.getConfiguration().getNodeEntityClass(type);
+
+			return entityClass != null && SchemaReloadingNode.class.isAssignableFrom(entityClass);
+		}
+
+		return false;
+	}
+
+	private static boolean exists(final DatabaseService graphDb, final String query, final Map<String, Object> parameters) {
+
+		try (final NativeResult result = graphDb.execute(query, parameters)) {
+
+			if (result.hasNext()) {
+
+				final Object count = result.next().get("count");
+
+				return count instanceof Number && ((Number)count).longValue() > 0;
+			}
+		}
+
+		return false;
+	}
+
+	private static Map<String, Object> toMap(final Object... keysAndValues) {
+
+		final Map<String, Object> map = new HashMap<>();
+
+		for (int i=0; i<keysAndValues.length; i+=2) {
+			map.put((String)keysAndValues[i], keysAndValues[i+1]);
+		}
+
+		return map;
+	}
+
+	private static void writeProperties(final DataOutputStream dos, final PropertyContainer container) throws IOException {
+
+		final Map<String, Object> properties = new LinkedHashMap<>();
+
+		for (final String key : container.getPropertyKeys()) {
+			properties.put(key, container.getProperty(key));
+		}
+
+		writeProperties(dos, properties);
+	}
+
+	private static void writeProperties(final DataOutputStream dos, final Map<String, Object> properties) throws IOException {
+
+		final Map<String, Object> supported = new LinkedHashMap<>();
+
+		for (final Entry<String, Object> entry : properties.entrySet()) {
+
+			final Object value = entry.getValue();
+
+			if (value != null) {
+
+				if (SyncCommand.isSupported(value)) {
+
+					supported.put(entry.getKey(), value);
+
+				} else {
+
+					logger.warn("Unable to export property {} of type {}, type not supported", entry.getKey(), value.getClass());
+				}
+			}
+		}
+
+		dos.writeInt(supported.size());
+
+		for (final Entry<String, Object> entry : supported.entrySet()) {
+
+			SyncCommand.serialize(dos, entry.getKey());
+			SyncCommand.serialize(dos, entry.getValue());
+		}
+	}
+
+	private static Map<String, Object> readProperties(final DataInputStream dis) throws IOException {
+
+		final Map<String, Object> properties = new LinkedHashMap<>();
+		final int count                      = dis.readInt();
+
+		for (int i=0; i<count; i++) {
+
+			final String key   = (String)SyncCommand.deserialize(dis);
+			final Object value = SyncCommand.deserialize(dis);
+
+			properties.put(key, value);
+		}
+
+		return properties;
+	}
+
+	private static void writeLegacyProperties(final DataOutputStream dos, final Map<String, Object> properties) throws IOException {
+
+		for (final Entry<String, Object> entry : properties.entrySet()) {
+
+			SyncCommand.serialize(dos, entry.getKey());
+			SyncCommand.serialize(dos, entry.getValue());
+		}
+
+		// do not use platform-specific line ending here!
+		dos.write('\n');
+	}
+
+	private static Map<String, Object> readLegacyProperties(final DataInputStream dis) throws IOException {
+
+		final Map<String, Object> properties = new LinkedHashMap<>();
+		byte type                            = dis.readByte();
+
+		// keys are always strings, so a newline terminates the record
+		while (type != '\n') {
+
+			final String key   = (String)SyncCommand.deserialize(dis, type);
+			final Object value = SyncCommand.deserialize(dis);
+
+			if (key != null && value != null) {
+				properties.put(key, value);
+			}
+
+			type = dis.readByte();
+		}
+
+		return properties;
+	}
+
+	private static void writeFileChunk(final BlockBuffer buffer, final String path, final long lastModified, final long offset, final byte[] data, final int length) throws IOException {
+
+		final DataOutputStream dos = buffer.getOutput();
+
+		SyncCommand.serialize(dos, path);
+		dos.writeLong(lastModified);
+		dos.writeLong(offset);
+		dos.writeInt(length);
+		dos.write(data, 0, length);
+
+		buffer.recordWritten();
+	}
+
+	private static void writeFile(final File file, final byte[] data, final boolean append) throws IOException {
+
+		try (final FileOutputStream fos = new FileOutputStream(file, append)) {
+
+			fos.write(data);
+			fos.flush();
+		}
+	}
+
+	// ----- nested classes -----
+	/**
+	 * The position, content type and number of records of a block.
+	 */
+	public static class Block {
+
+		private String type = null;
+		private long offset = 0L;
+		private int number  = 0;
+		private int count   = 0;
+		private byte kind   = 0;
+
+		public Block(final int number, final byte kind, final String type, final long offset, final int count) {
+
+			this.number = number;
+			this.kind   = kind;
+			this.type   = type;
+			this.offset = offset;
+			this.count  = count;
+		}
+
+		public int getNumber() {
+			return number;
+		}
+
+		public byte getKind() {
+			return kind;
+		}
+
+		/**
+		 * Returns the node or relationship type of all records in this
+		 * block, or null if the block contains file chunks or nodes
+		 * without a type.
+		 *
+		 * @return the type or null
+		 */
+		public String getType() {
+			return type;
+		}
+
+		public long getOffset() {
+			return offset;
+		}
+
+		public int getCount() {
+			return count;
+		}
+	}
+
+	/**
+	 * Appends compressed blocks to a snapshot file. Blocks can be written
+	 * by several threads, the compression of a block is done in the calling
+	 * thread. The block index is written when the writer is closed.
+	 */
+	public static class Writer implements Closeable {
+
+		private final List<Block> blocks = new ArrayList<>();
+		private FileChannel channel      = null;
+		private Path path                = null;
+
+		public Writer(final String fileName) throws IOException {
+
+			this.path    = Paths.get(fileName);
+			this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+
+			writeFully(ByteBuffer.wrap(HEADER));
+		}
+
+		public void write(final byte kind, final String type, final int count, final byte[] data, final int length) throws IOException {
+
+			final ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+			final Deflater deflater                = new Deflater(6);
+			final CRC32 crc                        = new CRC32();
+
+			try (final DeflaterOutputStream dos = new DeflaterOutputStream(compressed, deflater)) {
+
+				dos.write(data, 0, length);
+
+			} finally {
+
+				deflater.end();
+			}
+
+			final byte[] bytes = compressed.toByteArray();
+
+			crc.update(bytes);
+
+			final ByteBuffer buffer = ByteBuffer.allocate(BLOCK_HEADER_SIZE + bytes.length);
+
+			buffer.put(kind);
+			buffer.putInt(count);
+			buffer.putInt(length);
+			buffer.putInt(bytes.length);
+			buffer.putLong(crc.getValue());
+			buffer.put(bytes);
+			buffer.flip();
+
+			synchronized (this) {
+
+				if (channel == null) {
+					throw new IOException("Snapshot file " + path + " is already closed.");
+				}
+
+				final long offset = channel.position();
+
+				writeFully(buffer);
+
+				blocks.add(new Block(blocks.size(), kind, type, offset, count));
+			}
+		}
+
+		public synchronized int getBlockCount() {
+			return blocks.size();
+		}
+
+		/**
+		 * Writes the block index and the trailer and closes the file. A
+		 * snapshot file is only complete after this method was called.
+		 *
+		 * @throws IOException
+		 */
+		public synchronized void finish() throws IOException {
+
+			if (channel != null) {
+
+				final ByteArrayOutputStream index = new ByteArrayOutputStream();
+				final DataOutputStream dos        = new DataOutputStream(index);
+				final long indexOffset            = channel.position();
+
+				dos.writeInt(blocks.size());
+
+				for (final Block block : blocks) {
+
+					dos.writeByte(block.getKind());
+					dos.writeLong(block.getOffset());
+					dos.writeInt(block.getCount());
+
+					SyncCommand.serialize(dos, block.getType());
+				}
+
+				dos.writeLong(indexOffset);
+				dos.write(TRAILER);
+				dos.flush();
+
+				writeFully(ByteBuffer.wrap(index.toByteArray()));
+
+				channel.force(true);
+				channel.close();
+				channel = null;
+			}
+		}
+
+		/**
+		 * Closes the file. If the snapshot was not finished, the incomplete
+		 * file is removed, so that it can't be mistaken for a snapshot.
+		 *
+		 * @throws IOException
+		 */
+		@Override
+		public synchronized void close() throws IOException {
+
+			if (channel != null) {
+
+				channel.close();
+				channel = null;
+
+				Files.deleteIfExists(path);
+			}
+		}
+
+		// ----- private methods -----
+		private void writeFully(final ByteBuffer buffer) throws IOException {
+
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Reads the blocks of a snapshot file. Blocks can be read by several
+	 * threads at the same time.
+	 */
+	public static class Reader implements Closeable {
+
+		private final List<Block> blocks = new ArrayList<>();
+		private FileChannel channel      = null;
+		private String fileName          = null;
+		private long size                = 0L;
+
+		public Reader(final String fileName) throws IOException {
+
+			this.channel  = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+			this.fileName = fileName;
+			this.size     = channel.size();
+
+			if (size < HEADER.length + 12 + TRAILER.length) {
+				throw new IOException("Snapshot file " + fileName + " is incomplete.");
+			}
+
+			final ByteBuffer trailer = read(size - 8 - TRAILER.length, 8 + TRAILER.length);
+			final long indexOffset   = trailer.getLong();
+			final byte[] magic       = new byte[TRAILER.length];
+
+			trailer.get(magic);
+
+			if (!Arrays.equals(TRAILER, magic) || indexOffset < HEADER.length || indexOffset > size - 8 - TRAILER.length) {
+				throw new IOException("Snapshot file " + fileName + " is incomplete, block index not found.");
+			}
+
+			final ByteBuffer index    = read(indexOffset, (int)(size - 8 - TRAILER.length - indexOffset));
+			final DataInputStream dis = new DataInputStream(new ByteArrayInputStream(index.array()));
+			final int count           = dis.readInt();
+
+			for (int i=0; i<count; i++) {
+
+				final byte kind   = dis.readByte();
+				final long offset = dis.readLong();
+				final int records = dis.readInt();
+
+				blocks.add(new Block(i, kind, (String)SyncCommand.deserialize(dis), offset, records));
+			}
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		public List<Block> getBlocks() {
+			return Collections.unmodifiableList(blocks);
+		}
+
+		public List<Block> getBlocks(final byte kind) {
+
+			final List<Block> result = new ArrayList<>();
+
+			for (final Block block : blocks) {
+
+				if (block.getKind() == kind) {
+					result.add(block);
+				}
+			}
+
+			return result;
+		}
+
+		/**
+		 * Reads, verifies and decompresses the given block.
+		 *
+		 * @param block
+		 * @return a stream of the records in the block
+		 * @throws IOException
+		 */
+		public DataInputStream read(final Block block) throws IOException {
+
+			final ByteBuffer header   = read(block.getOffset(), BLOCK_HEADER_SIZE);
+			final byte kind           = header.get();
+			final int count           = header.getInt();
+			final int length          = header.getInt();
+			final int compressed      = header.getInt();
+			final long checksum       = header.getLong();
+
+			if (kind != block.getKind() || count != block.getCount()) {
+				throw new IOException("Invalid header of block " + block.getNumber() + " in snapshot file " + fileName);
+			}
+
+			final ByteBuffer data     = read(block.getOffset() + BLOCK_HEADER_SIZE, compressed);
+			final byte[] uncompressed = new byte[length];
+			final Inflater inflater   = new Inflater();
+			final CRC32 crc           = new CRC32();
+
+			crc.update(data.array());
+
+			if (crc.getValue() != checksum) {
+				throw new IOException("Checksum error in block " + block.getNumber() + " of snapshot file " + fileName);
+			}
+
+			try {
+
+				inflater.setInput(data.array());
+
+				int position = 0;
+
+				while (position < length && !inflater.finished()) {
+					position += inflater.inflate(uncompressed, position, length - position);
+				}
+
+			} catch (DataFormatException dex) {
+
+				throw new IOException("Unable to decompress block " + block.getNumber() + " of snapshot file " + fileName, dex);
+
+			} finally {
+
+				inflater.end();
+			}
+
+			return new DataInputStream(new ByteArrayInputStream(uncompressed));
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+
+		// ----- private methods -----
+		private ByteBuffer read(final long position, final int length) throws IOException {
+
+			final ByteBuffer buffer = ByteBuffer.allocate(length);
+
+			while (buffer.hasRemaining()) {
+
+				if (channel.read(buffer, position + buffer.position()) < 0) {
+					throw new IOException("Unexpected end of snapshot file " + fileName);
+				}
+			}
+
+			buffer.flip();
+
+			return buffer;
+		}
+	}
+
+	/**
+	 * Collects the records of a single kind and type and writes them as a
+	 * block when the block size is reached.
+	 */
+	private static class BlockBuffer {
+
+		private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		private final DataOutputStream dos         = new DataOutputStream(buffer);
+		private Writer writer                      = null;
+		private String type                        = null;
+		private int blockSize                      = 0;
+		private int count                          = 0;
+		private byte kind                          = 0;
+
+		public BlockBuffer(final Writer writer, final byte kind, final String type, final int blockSize) {
+
+			this.writer    = writer;
+			this.kind      = kind;
+			this.type      = type;
+			this.blockSize = blockSize;
+		}
+
+		public DataOutputStream getOutput() {
+			return dos;
+		}
+
+		public void recordWritten() throws IOException {
+
+			if (++count >= blockSize || buffer.size() >= MAX_BLOCK_BYTES) {
+				flush();
+			}
+		}
+
+		public void flush() throws IOException {
+
+			if (count > 0) {
+
+				dos.flush();
+
+				writer.write(kind, type, count, buffer.toByteArray(), buffer.size());
+
+				buffer.reset();
+				count = 0;
+			}
+		}
+	}
+
+	/**
+	 * The numbers of the blocks of a snapshot that have been imported.
+	 * The file is removed when the import is finished.
+	 */
+	private static class Progress implements Closeable {
+
+		private final Set<Integer> completed = ConcurrentHashMap.newKeySet();
+		private FileOutputStream output      = null;
+		private boolean resumed              = false;
+		private File file                    = null;
+
+		public Progress(final String fileName, final long snapshotSize) throws IOException {
+
+			final String header = "snapshot " + snapshotSize;
+
+			this.file    = new File(fileName);
+			this.resumed = file.exists();
+
+			final List<String> lines = new ArrayList<>();
+
+			if (resumed) {
+
+				final String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+
+				lines.addAll(Arrays.asList(content.split("\n")));
+
+				// the last line is incomplete if the import was interrupted while it was written
+				if (!content.endsWith("\n")) {
+					lines.remove(lines.size() - 1);
+				}
+			}
+
+			if (lines.isEmpty()) {
+
+				lines.add(header);
+
+			} else if (!header.equals(lines.get(0))) {
+
+				throw new IOException("Progress file " + fileName + " belongs to a different snapshot, remove it to start a new import.");
+			}
+
+			for (final String line : lines.subList(1, lines.size())) {
+				completed.add(Integer.valueOf(line));
+			}
+
+			// rewrite the complete lines only
+			Files.write(file.toPath(), (String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8));
+
+			this.output = new FileOutputStream(file, true);
+		}
+
+		public boolean isResumed() {
+			return resumed;
+		}
+
+		public boolean isCompleted(final Block block) {
+			return completed.contains(block.getNumber());
+		}
+
+		public int getCompletedCount() {
+			return completed.size();
+		}
+
+		public void completed(final Block block) throws IOException {
+
+			completed.add(block.getNumber());
+			write(Integer.toString(block.getNumber()));
+		}
+
+		public void finish() throws IOException {
+
+			close();
+			file.delete();
+		}
+
+		@Override
+		public synchronized void close() throws IOException {
+
+			if (output != null) {
+
+				output.close();
+				output = null;
+			}
+		}
+
+		// ----- private methods -----
+		private synchronized void write(final String line) throws IOException {
+
+			output.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+			output.flush();
+		}
+	}
+
+	@FunctionalInterface
+	private interface BlockTask {
+
+		long run(final Block block, final boolean probe) throws IOException, FrameworkException;
+	}
+}
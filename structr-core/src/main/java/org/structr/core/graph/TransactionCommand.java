@@ -25,11 +25,14 @@ import java.util.Map;
 import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.ConstraintViolationException;
+import org.structr.api.DataFormatException;
 import org.structr.api.DatabaseService;
 import org.structr.api.NetworkException;
 import org.structr.api.NotInTransactionException;
 import org.structr.api.graph.Node;
 import org.structr.api.graph.Relationship;
+import org.structr.common.PermissionResolutionCache;
 import org.structr.common.error.ErrorBuffer;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.StructrTransactionListener;
@@ -130,6 +133,17 @@ public class TransactionCommand extends NodeServiceCommand implements AutoClosea
 				throw new FrameworkException(422, "Unable to commit transaction, transaction post processing failed", errorBuffer);
 			}
 
+			// write deferred modifications BEFORE the transaction is marked successful,
+			// so that write failures abort the commit and are reported to the caller
+			try {
+				tx.flush();
+
+			} catch (DataFormatException | ConstraintViolationException ex) {
+
+				tx.failure();
+				throw new FrameworkException(422, ex.getMessage());
+			}
+
 			try {
 				tx.success();
 
@@ -165,6 +179,10 @@ public class TransactionCommand extends NodeServiceCommand implements AutoClosea
 
 					// release semaphores as the transaction is now finished
 					semaphore.release(synchronizationKeys);	// careful: this can be null
+
+					// invalidate permission resolution results that depend on modified nodes,
+					// regardless of the outcome because they may have been computed in this tx
+					PermissionResolutionCache.invalidate(modificationQueue.getPermissionModifiedIds());
 				}
 
 			} else {
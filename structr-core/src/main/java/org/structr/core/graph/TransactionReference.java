@@ -82,6 +82,14 @@ public class TransactionReference implements Transaction {
 		}
 	}
 
+	@Override
+	public void flush() {
+
+		if (tx != null) {
+			tx.flush();
+		}
+	}
+
 	@Override
 	public void close() {
 
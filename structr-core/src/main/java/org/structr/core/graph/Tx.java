@@ -76,6 +76,12 @@ public class Tx implements AutoCloseable {
 
 		final ModificationQueue modificationQueue = cmd.finishTx();
 
+		if (success && modificationQueue != null) {
+
+			modificationQueue.updateUuidIndex();
+			modificationQueue.updateMaterializedProperties();
+		}
+
 		if (success && guard.compareAndSet(false, true)) {
 
 			boolean retry  = true;
@@ -0,0 +1,320 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.DatabaseService;
+import org.structr.api.NativeResult;
+import org.structr.api.Transaction;
+import org.structr.api.config.Settings;
+import org.structr.api.util.UuidMap;
+
+/**
+ * Maps the UUIDs of all nodes and relationships to their internal database
+ * IDs, so that entities can be fetched by UUID without a database query.
+ *
+ * The index is rebuilt in the background when the database is started and
+ * maintained from the creations and deletions of committed transactions.
+ * Entries can be outdated (e.g. after a rollback or when an ID is reused),
+ * so callers must verify the UUID of the entity they fetched, and fall back
+ * to a query when the index does not contain a UUID.
+ */
+public class UuidIndex {
+
+	private static final Logger logger                = LoggerFactory.getLogger(UuidIndex.class);
+	private static final AtomicBoolean rebuilding     = new AtomicBoolean(false);
+	private static final LongAdder lookups            = new LongAdder();
+	private static final LongAdder lookupNanos        = new LongAdder();
+	private static final LongAdder hits               = new LongAdder();
+	private static final LongAdder outdated           = new LongAdder();
+	private static final LongAdder fallbacks          = new LongAdder();
+	private static final LongAdder fallbackNanos      = new LongAdder();
+	private static ExecutorService rebuildExecutor    = null;
+	private static UuidMap relationships              = null;
+	private static UuidMap nodes                      = null;
+	private static long lastRebuildMillis             = 0L;
+
+	/**
+	 * Returns the internal ID of the node with the given UUID, or -1 if
+	 * the UUID is not contained in this index.
+	 *
+	 * @param uuid
+	 * @return the ID or -1
+	 */
+	public static long getNodeId(final String uuid) {
+		return lookup(getNodes(), uuid);
+	}
+
+	/**
+	 * Returns the internal ID of the relationship with the given UUID, or
+	 * -1 if the UUID is not contained in this index.
+	 *
+	 * @param uuid
+	 * @return the ID or -1
+	 */
+	public static long getRelationshipId(final String uuid) {
+		return lookup(getRelationships(), uuid);
+	}
+
+	public static void putNode(final String uuid, final long id) {
+		getNodes().put(uuid, id);
+	}
+
+	public static void putRelationship(final String uuid, final long id) {
+		getRelationships().put(uuid, id);
+	}
+
+	/**
+	 * Removes an entry that turned out to be outdated.
+	 *
+	 * @param uuid
+	 */
+	public static void removeOutdated(final String uuid) {
+
+		outdated.increment();
+		remove(uuid);
+	}
+
+	public static void remove(final String uuid) {
+
+		if (uuid != null) {
+
+			getNodes().remove(uuid);
+			getRelationships().remove(uuid);
+		}
+	}
+
+	/**
+	 * Records the duration of a query that was necessary because the
+	 * index did not contain a UUID.
+	 *
+	 * @param nanos
+	 */
+	public static void recordFallback(final long nanos) {
+
+		fallbacks.increment();
+		fallbackNanos.add(nanos);
+	}
+
+	/**
+	 * Removes all entries and rebuilds the index from the given database
+	 * in the background. Nodes are read in parallel, partitioned by the
+	 * first character of their UUID, which allows the use of the UUID
+	 * index of the database.
+	 *
+	 * @param graphDb
+	 */
+	public static void rebuild(final DatabaseService graphDb) {
+
+		if (!rebuilding.compareAndSet(false, true)) {
+
+			logger.info("UUID index rebuild already in progress, ignoring.");
+			return;
+		}
+
+		final ExecutorService executor = getRebuildExecutor();
+		final long t0                  = System.currentTimeMillis();
+
+		getNodes().clear();
+		getRelationships().clear();
+
+		executor.submit(() -> {
+
+			final List<Future> futures = new LinkedList<>();
+
+			try {
+
+				for (final char prefix : "0123456789abcdef".toCharArray()) {
+
+					final Map<String, Object> parameters = new LinkedHashMap<>();
+
+					parameters.put("prefix", String.valueOf(prefix));
+
+					futures.add(executor.submit(() -> read(graphDb, getNodes(), "MATCH (n:NodeInterface) WHERE n.id STARTS WITH {prefix} RETURN n.id AS uuid, id(n) AS id", parameters)));
+				}
+
+				futures.add(executor.submit(() -> read(graphDb, getRelationships(), "MATCH ()-[r]->() WHERE exists(r.id) RETURN r.id AS uuid, id(r) AS id", new LinkedHashMap<>())));
+
+				for (final Future future : futures) {
+					future.get();
+				}
+
+				lastRebuildMillis = System.currentTimeMillis() - t0;
+
+				logger.info("UUID index rebuilt in {} ms, {} nodes, {} relationships", lastRebuildMillis, getNodes().size(), getRelationships().size());
+
+			} catch (Throwable t) {
+
+				logger.warn("Unable to rebuild UUID index: {}", t.getMessage());
+
+			} finally {
+
+				rebuilding.set(false);
+			}
+
+			return null;
+		});
+	}
+
+	/**
+	 * Removes all entries and releases the memory of this index.
+	 */
+	public static synchronized void clear() {
+
+		if (rebuildExecutor != null) {
+
+			rebuildExecutor.shutdownNow();
+			rebuildExecutor = null;
+		}
+
+		rebuilding.set(false);
+
+		if (nodes != null) {
+
+			nodes.close();
+			nodes = null;
+		}
+
+		if (relationships != null) {
+
+			relationships.close();
+			relationships = null;
+		}
+	}
+
+	public static Map<String, Object> getStatistics() {
+
+		final Map<String, Object> statistics = new LinkedHashMap<>();
+		final UuidMap nodeMap                = getNodes();
+		final UuidMap relMap                 = getRelationships();
+		final long lookupCount               = lookups.sum();
+		final long fallbackCount             = fallbacks.sum();
+
+		statistics.put("storage",                nodeMap.getStorage().name());
+		statistics.put("nodes",                  nodeMap.size());
+		statistics.put("relationships",          relMap.size());
+		statistics.put("memoryFootprint",        nodeMap.getMemoryFootprint() + relMap.getMemoryFootprint());
+		statistics.put("lookups",                lookupCount);
+		statistics.put("hits",                   hits.sum());
+		statistics.put("averageLookupNanos",     lookupCount > 0 ? (double)lookupNanos.sum() / (double)lookupCount : 0.0);
+		statistics.put("outdated",               outdated.sum());
+		statistics.put("fallbacks",              fallbackCount);
+		statistics.put("averageFallbackMillis",  fallbackCount > 0 ? (double)fallbackNanos.sum() / (double)fallbackCount / 1000000.0 : 0.0);
+		statistics.put("rebuilding",             rebuilding.get());
+		statistics.put("lastRebuildMillis",      lastRebuildMillis);
+
+		return statistics;
+	}
+
+	// ----- private static methods -----
+	private static long lookup(final UuidMap map, final String uuid) {
+
+		final long t0 = System.nanoTime();
+		final long id = map.get(uuid);
+
+		lookupNanos.add(System.nanoTime() - t0);
+		lookups.increment();
+
+		if (id >= 0) {
+			hits.increment();
+		}
+
+		return id;
+	}
+
+	private static Object read(final DatabaseService graphDb, final UuidMap map, final String query, final Map<String, Object> parameters) {
+
+		try (final Transaction tx = graphDb.beginTx()) {
+
+			try (final NativeResult result = graphDb.execute(query, parameters)) {
+
+				while (result.hasNext()) {
+
+					final Map<String, Object> row = result.next();
+					final Object uuid             = row.get("uuid");
+					final Object id               = row.get("id");
+
+					if (uuid instanceof String && id instanceof Number) {
+
+						map.put((String)uuid, ((Number)id).longValue());
+					}
+				}
+			}
+
+			tx.success();
+		}
+
+		return null;
+	}
+
+	private static synchronized UuidMap getNodes() {
+
+		if (nodes == null) {
+			nodes = createMap("nodes");
+		}
+
+		return nodes;
+	}
+
+	private static synchronized UuidMap getRelationships() {
+
+		if (relationships == null) {
+			relationships = createMap("relationships");
+		}
+
+		return relationships;
+	}
+
+	private static synchronized ExecutorService getRebuildExecutor() {
+
+		if (rebuildExecutor == null) {
+
+			// one coordinating thread plus the readers
+			rebuildExecutor = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors() + 1), r -> {
+
+				final Thread thread = new Thread(r, "UuidIndexRebuild");
+
+				thread.setDaemon(true);
+
+				return thread;
+			});
+		}
+
+		return rebuildExecutor;
+	}
+
+	private static UuidMap createMap(final String name) {
+
+		final UuidMap.Storage storage = UuidMap.Storage.valueOf(Settings.UuidIndexStorage.getValue());
+		final File directory          = new File(Settings.getFullSettingPath(Settings.UuidIndexPath), name);
+
+		return new UuidMap(Settings.UuidCacheSize.getValue(), storage, directory);
+	}
+}
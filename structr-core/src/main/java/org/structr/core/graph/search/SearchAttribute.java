@@ -19,10 +19,13 @@
 package org.structr.core.graph.search;
 
 import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
 import org.structr.api.Predicate;
 import org.structr.api.search.Occurrence;
 import org.structr.api.search.QueryPredicate;
+import org.structr.api.search.SortSpec;
 import org.structr.api.search.SortType;
 import org.structr.core.GraphObject;
 import org.structr.core.graph.NodeAttribute;
@@ -42,6 +45,7 @@ public abstract class SearchAttribute<T> extends NodeAttribute<T> implements Pre
 	private Occurrence occur           = null;
 	private PropertyKey sortKey        = null;
 	private boolean sortDescending     = false;
+	private List<SortSpec> sortSpecs   = new LinkedList<>();
 
 	public abstract boolean includeInResult(GraphObject entity);
 
@@ -89,6 +93,10 @@ public abstract class SearchAttribute<T> extends NodeAttribute<T> implements Pre
 		this.sortDescending = sortDescending;
 	}
 
+	public void setSecondarySortSpecs(final List<SortSpec> sortSpecs) {
+		this.sortSpecs = sortSpecs;
+	}
+
 	// ----- interface Predicate<GraphObject> -----
 	@Override
 	public boolean accept(final GraphObject obj) {
@@ -142,4 +150,14 @@ public abstract class SearchAttribute<T> extends NodeAttribute<T> implements Pre
 	public boolean sortDescending() {
 		return sortDescending;
 	}
+
+	@Override
+	public List<SortSpec> getSecondarySortSpecs() {
+		return sortSpecs;
+	}
+
+	@Override
+	public boolean hasExplicitSortKey() {
+		return sortKey != null;
+	}
 }
@@ -20,11 +20,14 @@ package org.structr.core.graph.search;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,6 +36,7 @@ import org.structr.api.QueryResult;
 import org.structr.api.graph.PropertyContainer;
 import org.structr.api.index.Index;
 import org.structr.api.search.Occurrence;
+import org.structr.api.search.SortSpec;
 import org.structr.common.GraphObjectComparator;
 import org.structr.common.PagingHelper;
 import org.structr.common.SecurityContext;
@@ -84,21 +88,22 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 		baseTypes.add(AbstractNode.class.getSimpleName());
 	}
 
-	private final SearchAttributeGroup rootGroup = new SearchAttributeGroup(Occurrence.REQUIRED);
-	private SearchAttributeGroup currentGroup    = rootGroup;
-	private PropertyKey sortKey                  = null;
-	private boolean publicOnly                   = false;
-	private boolean includeDeletedAndHidden      = true;
-	private boolean sortDescending               = false;
-	private boolean doNotSort                    = false;
-	private int pageSize                         = Integer.MAX_VALUE;
-	private int page                             = 1;
+	private final Map<PropertyKey, Boolean> secondarySortKeys = new LinkedHashMap<>();
+	private final SearchAttributeGroup rootGroup              = new SearchAttributeGroup(Occurrence.REQUIRED);
+	private SearchAttributeGroup currentGroup                 = rootGroup;
+	private PropertyKey sortKey                               = null;
+	private boolean publicOnly                                = false;
+	private boolean includeDeletedAndHidden                   = true;
+	private boolean sortDescending                            = false;
+	private boolean doNotSort                                 = false;
+	private int pageSize                                      = Integer.MAX_VALUE;
+	private int page                                          = 1;
 
 	public abstract Factory<S, T> getFactory(final SecurityContext securityContext, final boolean includeDeletedAndHidden, final boolean publicOnly, final int pageSize, final int page);
 	public abstract boolean isRelationshipSearch();
 	public abstract Index<S> getIndex();
 
-	private Result<T> doSearch() throws FrameworkException {
+	private Result<T> doSearch(final boolean streaming) throws FrameworkException {
 
 		if (page == 0 || pageSize <= 0) {
 
@@ -188,6 +193,11 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 			}
 		}
 
+		// sorting in memory is only needed for results that are merged from
+		// other sources or filtered by empty values that are not stored in
+		// the database, or for sort keys the database cannot sort by
+		final boolean sortInMemory = hasEmptySearchFields || hasGraphSources || hasSpatialSource || !canSortInDatabase();
+
 		// only do "normal" query if no other sources are present
 		// use filters to filter sources otherwise
 		if (!hasSpatialSource && !sources.isEmpty()) {
@@ -196,23 +206,23 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 
 		} else {
 
-			// apply sorting
-			if (sortKey != null && !doNotSort) {
-
-				rootGroup.setSortKey(sortKey);
-				rootGroup.sortDescending(sortDescending);
-			}
-
 			final Index<S> index = getIndex();
 			if (index != null) {
 
-				// do query
-				final QueryResult hits = getIndex().query(rootGroup);
-				intermediateResult     = factory.instantiate(hits);
+				if (sortInMemory) {
+
+					// read all results, they are sorted and paged below
+					final QueryResult hits = index.query(rootGroup);
+					intermediateResult     = getFactory(securityContext, includeDeletedAndHidden, publicOnly, Integer.MAX_VALUE, 1).instantiate(hits);
+
+				} else {
+
+					return queryDatabase(index, factory, streaming);
+				}
 			}
 		}
 
-		if (intermediateResult != null && (hasEmptySearchFields || hasGraphSources || hasSpatialSource)) {
+		if (intermediateResult != null && sortInMemory) {
 
 			// sorted result set
 			final Set<GraphObject> intermediateResultSet = new LinkedHashSet<>(intermediateResult.getResults());
@@ -259,10 +269,14 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 			}
 
 			// sort list
-			Collections.sort(finalResult, new GraphObjectComparator(sortKey, sortDescending));
+			Collections.sort(finalResult, getComparator());
 
 			// return paged final result
-			return new Result(PagingHelper.subList(finalResult, pageSize, page), resultCount, true, false);
+			final Result<T> result = new Result(PagingHelper.subList(finalResult, pageSize, page), resultCount, true, false);
+
+			result.setQueryPath(Result.QUERY_PATH_MEMORY);
+
+			return result;
 
 		} else {
 
@@ -271,6 +285,183 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 		}
 	}
 
+	/**
+	 * Sorts the query in the database and pages it. The page is selected
+	 * by the database as well if the factory will not filter any of the
+	 * results, otherwise the non-readable results are skipped while the
+	 * results are instantiated. Negative pages are read in reverse order
+	 * so that the results before the requested page need not be kept.
+	 */
+	private Result<T> queryDatabase(final Index<S> index, final Factory<S, T> factory, final boolean streaming) throws FrameworkException {
+
+		// unpaged queries are not worth an additional count query
+		if ((page < 0 || pageSize < Integer.MAX_VALUE) && canPageInDatabase()) {
+
+			final boolean needsCount = page < 0 || !securityContext.ignoreResultCount();
+			final long count         = needsCount ? index.count(rootGroup) : 0L;
+
+			if (!needsCount || count >= 0) {
+
+				long offset = 0;
+				long limit  = -1;
+
+				if (page > 0) {
+
+					if (pageSize < Integer.MAX_VALUE) {
+
+						offset = (long)(page - 1) * pageSize;
+						limit  = pageSize;
+					}
+
+				} else {
+
+					offset = Math.max(0, count + (long)page * pageSize);
+					limit  = Math.min(count, offset + pageSize) - offset;
+				}
+
+				applySorting(false);
+
+				final Factory<S, T> unpagedFactory = getFactory(securityContext, includeDeletedAndHidden, publicOnly, Integer.MAX_VALUE, 1);
+				final QueryResult<S> hits          = index.query(rootGroup, (int)Math.min(offset, Integer.MAX_VALUE), (int)limit);
+				final Result<T> result;
+
+				if (streaming) {
+
+					result = new Result(unpagedFactory.stream(hits), true);
+
+				} else {
+
+					result = unpagedFactory.instantiate(hits);
+				}
+
+				if (needsCount) {
+					result.setRawResultCount((int)count);
+				}
+
+				result.setQueryPath(Result.QUERY_PATH_DATABASE);
+
+				return result;
+			}
+		}
+
+		final Result<T> result;
+
+		if (page < 0) {
+
+			applySorting(true);
+
+			result = factory.instantiateReverse(index.query(rootGroup));
+
+		} else {
+
+			applySorting(false);
+
+			final QueryResult<S> hits = index.query(rootGroup);
+
+			// results that need no post-processing can be streamed
+			if (streaming) {
+
+				result = new Result(factory.stream(hits), true);
+
+			} else {
+
+				result = factory.instantiate(hits);
+			}
+		}
+
+		result.setQueryPath(Result.QUERY_PATH_DATABASE_SORT);
+
+		return result;
+	}
+
+	private void applySorting(final boolean reverse) {
+
+		if (sortKey != null && !doNotSort) {
+
+			final List<SortSpec> sortSpecs = new LinkedList<>();
+
+			for (final Entry<PropertyKey, Boolean> entry : secondarySortKeys.entrySet()) {
+
+				final PropertyKey key = entry.getKey();
+
+				sortSpecs.add(new SortSpec(key.dbName(), key.getSortType(), entry.getValue() ^ reverse));
+			}
+
+			rootGroup.setSortKey(sortKey);
+			rootGroup.setSecondarySortSpecs(sortSpecs);
+		}
+
+		// the default sort key is used if there is none
+		rootGroup.sortDescending((sortDescending && !doNotSort) ^ reverse);
+	}
+
+	/**
+	 * Indicates whether the database can sort the results of this query,
+	 * i.e. whether the sort keys are stored and indexed scalar values and
+	 * the results are not merged from several type labels.
+	 */
+	private boolean canSortInDatabase() {
+
+		if (sortKey != null && !doNotSort) {
+
+			if (!isSortableInDatabase(sortKey)) {
+				return false;
+			}
+
+			for (final PropertyKey key : secondarySortKeys.keySet()) {
+
+				if (!isSortableInDatabase(key)) {
+					return false;
+				}
+			}
+		}
+
+		return countTypes(rootGroup) <= 1;
+	}
+
+	/**
+	 * Indicates whether the database can select the requested page,
+	 * which is only possible if none of the results is removed by the
+	 * security check in the factory.
+	 */
+	private boolean canPageInDatabase() {
+		return !isRelationshipSearch() && !publicOnly && securityContext.isSuperUser();
+	}
+
+	private boolean isSortableInDatabase(final PropertyKey key) {
+		return (key.isIndexed() || key.isPassivelyIndexed()) && key.relatedType() == null && !key.isCollection();
+	}
+
+	private int countTypes(final SearchAttributeGroup group) {
+
+		int count = 0;
+
+		for (final SearchAttribute attr : group.getSearchAttributes()) {
+
+			if (attr instanceof TypeSearchAttribute) {
+
+				count++;
+
+			} else if (attr instanceof SearchAttributeGroup) {
+
+				count += countTypes((SearchAttributeGroup)attr);
+			}
+		}
+
+		return count;
+	}
+
+	private Comparator<GraphObject> getComparator() {
+
+		Comparator<GraphObject> comparator = new GraphObjectComparator(sortKey, sortDescending);
+
+		for (final Entry<PropertyKey, Boolean> entry : secondarySortKeys.entrySet()) {
+			comparator = comparator.thenComparing(new GraphObjectComparator(entry.getKey(), entry.getValue()));
+		}
+
+		return comparator;
+	}
+
 	private Set<GraphObject> mergeSources(List<SourceSearchAttribute> sources) {
 
 		final Set<GraphObject> mergedResult = new LinkedHashSet<>();
@@ -312,7 +503,20 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 
 	@Override
 	public Result<T> getResult() throws FrameworkException {
-		return doSearch();
+		return doSearch(false);
+	}
+
+	/**
+	 * Returns a lazily evaluated result if possible, i.e. if the query
+	 * results need no further filtering or sorting in memory. The result
+	 * must be consumed in the current transaction.
+	 *
+	 * @return the result
+	 * @throws FrameworkException
+	 */
+	@Override
+	public Result<T> getStreamingResult() throws FrameworkException {
+		return doSearch(true);
 	}
 
 	@Override
@@ -372,6 +576,14 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 		return this;
 	}
 
+	@Override
+	public org.structr.core.app.Query<T> thenSort(final PropertyKey key, final boolean descending) {
+
+		secondarySortKeys.put(key, descending);
+
+		return this;
+	}
+
 	@Override
 	public org.structr.core.app.Query<T> order(final boolean descending) {
 
@@ -38,8 +38,6 @@ public class BatchExpression extends Expression {
 
 	private Expression batchExpression = null;
 	private Expression sizeExpression  = null;
-	private boolean background         = false;
-	private int batchSize              = -1;
 
 	public BatchExpression() {
 		super("batch");
@@ -76,7 +74,8 @@ public class BatchExpression extends Expression {
 		if (value != null && value instanceof Number) {
 
 			// store batch size for children to use
-			this.batchSize = ((Number)value).intValue();
+			final int previousBatchSize = ctx.getBatchSize();
+			ctx.setBatchSize(((Number)value).intValue());
 
 			// initialize holders to store results from worker thread (must be final)
 			final StaticValue<FrameworkException> exception = new StaticValue<>(null);
@@ -97,6 +96,8 @@ public class BatchExpression extends Expression {
 
 			try { workerThread.join(); } catch (Throwable t) { t.printStackTrace(); }
 
+			ctx.setBatchSize(previousBatchSize);
+
 			if (exception.get(null) != null) {
 				throw exception.get(null);
 			}
@@ -119,9 +120,4 @@ public class BatchExpression extends Expression {
 	public boolean isBatched() {
 		return true;
 	}
-
-	@Override
-	public int getBatchSize() {
-		return batchSize;
-	}
 }
@@ -18,7 +18,7 @@
  */
 package org.structr.core.parser;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 import org.structr.common.error.FrameworkException;
 import org.structr.common.error.UnlicensedException;
@@ -26,12 +26,15 @@ import org.structr.core.GraphObject;
 import org.structr.schema.action.ActionContext;
 
 /**
+ * A node in the expression tree of a StructrScript expression.
  *
- *
+ * Expression trees are cached and evaluated concurrently, so they must not
+ * be modified after parsing. All evaluation state is stored in the
+ * {@link ActionContext} that is passed to the evaluate and transform methods.
  */
 public abstract class Expression {
 
-	protected List<Expression> expressions = new LinkedList<>();
+	protected List<Expression> expressions = new ArrayList<>();
 	protected Expression parent            = null;
 	protected String name                  = null;
 	protected int level                    = 0;
@@ -85,15 +88,6 @@ public abstract class Expression {
 		return parent != null && parent.isBatched();
 	}
 
-	public int getBatchSize() {
-
-		if (parent != null) {
-			return parent.getBatchSize();
-		}
-
-		return -1;
-	}
-
 	public abstract Object evaluate(final ActionContext ctx, final GraphObject entity) throws FrameworkException, UnlicensedException;
 	public abstract Object transform(final ActionContext ctx, final GraphObject entity, final Object source) throws FrameworkException, UnlicensedException;
 }
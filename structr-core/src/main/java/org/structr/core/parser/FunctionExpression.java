@@ -72,14 +72,10 @@ public class FunctionExpression extends Expression {
 			return function.usage(ctx.isJavaScriptContext());
 		}
 
-		if (function instanceof BatchableFunction) {
-
-			// enable batching if batchable function is found
-			((BatchableFunction)function).setBatchSize(getBatchSize());
-			((BatchableFunction)function).setBatched(isBatched());
+		if (function instanceof BatchableFunction && isBatched()) {
 
 			// batchable functions must create their own transaction when in batched mode
-			return function.apply(ctx, entity, results.toArray());
+			return ((BatchableFunction)function).applyBatched(ctx, entity, results.toArray(), ctx.getBatchSize());
 
 		} else if (isBatched()) {
 
@@ -188,6 +188,15 @@ public class EndNode<S extends NodeInterface, T extends NodeInterface> extends P
 		setProperty(securityContext, obj, t);
 	}
 
+	@Override
+	public void removeSingleElement(final SecurityContext securityContext, final GraphObject obj, final T t) throws FrameworkException {
+
+		if (t != null && t.equals(getProperty(securityContext, obj, false))) {
+
+			setProperty(securityContext, obj, null);
+		}
+	}
+
 	@Override
 	public Class<T> getTargetType() {
 		return destType;
@@ -214,11 +214,12 @@ public class EndNodes<S extends NodeInterface, T extends NodeInterface> extends
 
 	@Override
 	public void addSingleElement(final SecurityContext securityContext, final GraphObject obj, final T t) throws FrameworkException {
+		relation.getTarget().add(securityContext, (NodeInterface)obj, t);
+	}
 
-		List<T> list = getProperty(securityContext, obj, false);
-		list.add(t);
-
-		setProperty(securityContext, obj, list);
+	@Override
+	public void removeSingleElement(final SecurityContext securityContext, final GraphObject obj, final T t) throws FrameworkException {
+		relation.getTarget().remove(securityContext, (NodeInterface)obj, t);
 	}
 
 	@Override
@@ -21,11 +21,13 @@ package org.structr.core.property;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.Predicate;
+import org.structr.api.graph.PropertyContainer;
 import org.structr.api.search.SortType;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.converter.PropertyConverter;
+import org.structr.core.graph.MaterializedProperties;
 import org.structr.core.script.Scripting;
 import org.structr.schema.action.ActionContext;
 
@@ -37,8 +39,31 @@ public class FunctionProperty<T> extends Property<T> {
 
 	private static final Logger logger = LoggerFactory.getLogger(FunctionProperty.class.getName());
 
+	private boolean materialized = false;
+
 	public FunctionProperty(final String name) {
+		this(name, false);
+	}
+
+	/**
+	 * Creates a function property. The value of a materialized function
+	 * property is stored in the database and recomputed when the entity
+	 * or one of the entities that were read during the evaluation of the
+	 * read function changes, so that reading the value doesn't evaluate
+	 * the function, and the database can search and sort on it.
+	 *
+	 * @param name the name of the property
+	 * @param materialized whether the value is materialized
+	 */
+	public FunctionProperty(final String name, final boolean materialized) {
+
 		super(name);
+
+		if (materialized) {
+
+			this.materialized = true;
+			indexed();
+		}
 	}
 
 	@Override
@@ -67,12 +92,17 @@ public class FunctionProperty<T> extends Property<T> {
 
 			if (obj != null && readFunction != null) {
 
-				final ActionContext actionContext = new ActionContext(securityContext);
+				// materialized values are read from the database, unless they are not known (yet)
+				if (materialized && predicate == null && MaterializedProperties.isMaterialized(obj, this)) {
+
+					final PropertyContainer container = obj.getPropertyContainer();
+					if (container != null) {
 
-				// don't ignore predicate
-				actionContext.setPredicate(predicate);
+						return container.hasProperty(dbName) ? (T)container.getProperty(dbName) : null;
+					}
+				}
 
-				return (T)Scripting.evaluate(actionContext, obj, "${".concat(readFunction).concat("}"), "getProperty(" + jsonName + ")");
+				return evaluate(securityContext, obj, predicate);
 
 			} else {
 
@@ -89,6 +119,43 @@ public class FunctionProperty<T> extends Property<T> {
 		return null;
 	}
 
+	/**
+	 * Evaluates the read function of this property.
+	 *
+	 * @param securityContext the security context
+	 * @param obj the entity
+	 * @param predicate the predicate or null
+	 * @return the value
+	 * @throws FrameworkException
+	 */
+	public T evaluate(final SecurityContext securityContext, final GraphObject obj, final Predicate<GraphObject> predicate) throws FrameworkException {
+
+		final ActionContext actionContext = new ActionContext(securityContext);
+
+		// don't ignore predicate
+		actionContext.setPredicate(predicate);
+
+		return (T)Scripting.evaluate(actionContext, obj, "${".concat(readFunction).concat("}"), "getProperty(" + jsonName + ")");
+	}
+
+	public boolean isMaterialized() {
+		return materialized;
+	}
+
+	@Override
+	public void index(final GraphObject obj) {
+
+		if (materialized) {
+
+			// recompute and store the value
+			MaterializedProperties.materialize(obj, this);
+
+		} else {
+
+			super.index(obj);
+		}
+	}
+
 	@Override
 	public boolean isCollection() {
 		return false;
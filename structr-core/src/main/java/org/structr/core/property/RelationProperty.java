@@ -41,7 +41,31 @@ public interface RelationProperty<T> {
 	public boolean doAutocreate();
 	public String getAutocreateFlagName();
 
+	/**
+	 * Relates the given element to the given object. Collection properties
+	 * create a single relationship if the element is not related yet, and
+	 * leave the other elements untouched.
+	 *
+	 * @param securityContext
+	 * @param obj
+	 * @param t
+	 *
+	 * @throws FrameworkException
+	 */
 	public void addSingleElement(final SecurityContext securityContext, final GraphObject obj, final T t) throws FrameworkException;
 
+	/**
+	 * Removes the relationship between the given element and the given
+	 * object, if it exists. Collection properties delete a single
+	 * relationship and leave the other elements untouched.
+	 *
+	 * @param securityContext
+	 * @param obj
+	 * @param t
+	 *
+	 * @throws FrameworkException
+	 */
+	public void removeSingleElement(final SecurityContext securityContext, final GraphObject obj, final T t) throws FrameworkException;
+
 	public String getDirectionKey();
 }
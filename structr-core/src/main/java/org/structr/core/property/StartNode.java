@@ -192,6 +192,15 @@ public class StartNode<S extends NodeInterface, T extends NodeInterface> extends
 		setProperty(securityContext, obj, s);
 	}
 
+	@Override
+	public void removeSingleElement(final SecurityContext securityContext, final GraphObject obj, final S s) throws FrameworkException {
+
+		if (s != null && s.equals(getProperty(securityContext, obj, false))) {
+
+			setProperty(securityContext, obj, null);
+		}
+	}
+
 	@Override
 	public Class<? extends S> getTargetType() {
 		return destType;
@@ -19,11 +19,17 @@
 package org.structr.core.script;
 
 import java.io.StringWriter;
-import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.script.Bindings;
@@ -31,16 +37,17 @@ import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
-import org.apache.commons.collections4.map.LRUMap;
 import org.apache.commons.lang3.StringUtils;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.ContextFactory;
 import org.mozilla.javascript.Script;
 import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
 import org.mozilla.javascript.Undefined;
 import org.renjin.script.RenjinScriptEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.util.FixedSizeCache;
 import org.structr.common.error.FrameworkException;
 import org.structr.common.error.UnlicensedException;
 import org.structr.core.GraphObject;
@@ -51,14 +58,25 @@ import org.structr.schema.action.ActionContext;
 import org.structr.schema.parser.DatePropertyParser;
 
 /**
+ * Evaluates StructrScript, JavaScript and other script expressions.
  *
- *
+ * Compiled JavaScript code is cached by its source, so scripts that differ
+ * only in the entity they are evaluated for share the compiled code. Each
+ * source is compiled only once, concurrent evaluations of the same source
+ * wait for the compilation, other scripts are not blocked. All scripts use
+ * a shared, sealed scope with the JavaScript standard objects as the
+ * prototype of their top-level scope.
  */
 public class Scripting {
 
-	private static final Logger logger                       = LoggerFactory.getLogger(Scripting.class.getName());
-	private static final Pattern ScriptEngineExpression      = Pattern.compile("^\\$\\{(\\w+)\\{(.*)\\}\\}$", Pattern.DOTALL);
-	private static final Map<String, Script> compiledScripts = Collections.synchronizedMap(new LRUMap<>(10000));
+	private static final Logger logger                                  = LoggerFactory.getLogger(Scripting.class.getName());
+	private static final Pattern ScriptEngineExpression                 = Pattern.compile("^\\$\\{(\\w+)\\{(.*)\\}\\}$", Pattern.DOTALL);
+	private static final FixedSizeCache<String, Script> compiledScripts = new FixedSizeCache<>(10000);
+	private static final Map<String, FutureTask<Script>> compilations   = new ConcurrentHashMap<>();
+	private static final Map<String, MethodStatistics> methodStatistics = new ConcurrentHashMap<>();
+	private static final LongAdder compileCount                         = new LongAdder();
+	private static final LongAdder compileTime                          = new LongAdder();
+	private static volatile ScriptableObject sharedScope                = null;
 
 	public static String replaceVariables(final ActionContext actionContext, final GraphObject entity, final Object rawValue) throws FrameworkException {
 
@@ -239,6 +257,7 @@ public class Scripting {
 		final String entityName        = entity != null ? entity.getProperty(AbstractNode.name) : null;
 		final String entityDescription = entity != null ? ( StringUtils.isNotBlank(entityName) ? "\"" + entityName + "\":" : "" ) + entity.getUuid() : "anonymous";
 		final Context scriptingContext = Scripting.setupJavascriptContext();
+		final long start               = System.nanoTime();
 
 		try {
 
@@ -249,7 +268,7 @@ public class Scripting {
 			scriptingContext.setGenerateObserverCount(false);
 			scriptingContext.setGeneratingDebug(true);
 
-			final Scriptable scope = scriptingContext.initStandardObjects();
+			final Scriptable scope = createScope(scriptingContext);
 			final StructrScriptable scriptable = new StructrScriptable(actionContext, entity, scriptingContext);
 
 			scriptable.setParentScope(scope);
@@ -260,7 +279,8 @@ public class Scripting {
 			// clear output buffer
 			actionContext.clear();
 
-			final String sourceLocation     = methodName + " [" + entityDescription + "], line ";
+			// the entity description is not part of the source location, so the compiled code can be shared
+			final String sourceLocation     = methodName + ", line ";
 			final String embeddedSourceCode = embedInFunction(actionContext, script);
 			final Script compiledScript     = compileOrGetCached(scriptingContext, embeddedSourceCode, sourceLocation, 1);
 
@@ -294,12 +314,14 @@ public class Scripting {
 		} catch (final Throwable t) {
 
 			// if any other kind of Throwable is encountered throw a new FrameworkException and be done with it
-			logger.warn("", t);
+			logger.warn("Error evaluating {} [{}]", methodName, entityDescription, t);
 			throw new FrameworkException(422, t.getMessage());
 
 		} finally {
 
 			Scripting.destroyJavascriptContext();
+
+			methodStatistics.computeIfAbsent(methodName, k -> new MethodStatistics()).add(System.nanoTime() - start);
 		}
 	}
 
@@ -332,18 +354,121 @@ public class Scripting {
 		return buf.toString();
 	}
 
+	public static Map<String, Object> getStatistics() {
+
+		final Map<String, Object> statistics = new LinkedHashMap<>();
+		final Map<String, Object> methods    = new LinkedHashMap<>();
+		final long count                     = compileCount.sum();
+
+		statistics.put("compiledScripts",    compiledScripts.size());
+		statistics.put("compileCount",       count);
+		statistics.put("averageCompileTime", count > 0 ? (double)compileTime.sum() / (double)count / 1000000.0 : 0.0);
+		statistics.put("cacheHitRate",       compiledScripts.getHitRate());
+
+		for (final Entry<String, MethodStatistics> entry : methodStatistics.entrySet()) {
+			methods.put(entry.getKey(), entry.getValue().toMap());
+		}
+
+		statistics.put("methods", methods);
+
+		return statistics;
+	}
+
+	private static Scriptable createScope(final Context context) {
+
+		ScriptableObject scope = sharedScope;
+		if (scope == null) {
+
+			synchronized (Scripting.class) {
+
+				scope = sharedScope;
+				if (scope == null) {
+
+					scope = context.initStandardObjects(null, true);
+					scope.sealObject();
+
+					sharedScope = scope;
+				}
+			}
+		}
+
+		// top-level variables and functions of a script are defined in a new scope object
+		final Scriptable localScope = context.newObject(scope);
+
+		localScope.setPrototype(scope);
+		localScope.setParentScope(null);
+
+		return localScope;
+	}
+
 	private static Script compileOrGetCached(final Context context, final String source, final String sourceName, final int lineNo) {
 
-		synchronized (compiledScripts) {
+		final Script cachedScript = compiledScripts.get(source);
+		if (cachedScript != null) {
 
-			Script script = compiledScripts.get(source);
-			if (script == null) {
+			return cachedScript;
+		}
 
-				script = context.compileString(source, sourceName, lineNo, null);
-				compiledScripts.put(source, script);
+		final FutureTask<Script> compilation = new FutureTask<>(() -> {
+
+			// another thread might have finished compiling the source after the lookup above
+			final Script existingScript = compiledScripts.get(source);
+			if (existingScript != null) {
+
+				return existingScript;
 			}
 
+			final long start    = System.nanoTime();
+			final Script script = context.compileString(source, sourceName, lineNo, null);
+
+			compileTime.add(System.nanoTime() - start);
+			compileCount.increment();
+
+			compiledScripts.put(source, script);
+
 			return script;
+		});
+
+		// only one thread compiles a given source, other threads wait for the result
+		final FutureTask<Script> existingCompilation = compilations.putIfAbsent(source, compilation);
+		if (existingCompilation == null) {
+
+			try {
+
+				// the compilation runs in this thread because it needs the current context
+				compilation.run();
+
+			} finally {
+
+				compilations.remove(source, compilation);
+			}
+
+			return getResult(compilation);
+		}
+
+		return getResult(existingCompilation);
+	}
+
+	private static Script getResult(final FutureTask<Script> compilation) {
+
+		try {
+
+			return compilation.get();
+
+		} catch (InterruptedException iex) {
+
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(iex);
+
+		} catch (ExecutionException eex) {
+
+			final Throwable cause = eex.getCause();
+			if (cause instanceof RuntimeException) {
+
+				throw (RuntimeException)cause;
+			}
+
+			throw new RuntimeException(cause);
 		}
 	}
 
@@ -470,6 +595,32 @@ public class Scripting {
 	}
 
 	// ----- nested classes -----
+	private static class MethodStatistics {
+
+		private final AtomicLong maxTime    = new AtomicLong();
+		private final LongAdder totalTime   = new LongAdder();
+		private final LongAdder invocations = new LongAdder();
+
+		public void add(final long time) {
+
+			invocations.increment();
+			totalTime.add(time);
+			maxTime.accumulateAndGet(time, Math::max);
+		}
+
+		public Map<String, Object> toMap() {
+
+			final Map<String, Object> map = new LinkedHashMap<>();
+			final long count              = invocations.sum();
+
+			map.put("invocations", count);
+			map.put("averageTime", count > 0 ? (double)totalTime.sum() / (double)count / 1000000.0 : 0.0);
+			map.put("maxTime",     maxTime.get() / 1000000.0);
+
+			return map;
+		}
+	}
+
 	private static class Tuple {
 
 		public String key = null;
@@ -22,6 +22,7 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -48,9 +49,11 @@ import org.structr.core.app.StructrApp;
 import org.structr.core.converter.PropertyConverter;
 import org.structr.core.function.Functions;
 import org.structr.core.function.GrantFunction;
+import org.structr.core.graph.NodeInterface;
 import org.structr.core.property.EnumProperty;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
+import org.structr.core.property.RelationProperty;
 import org.structr.schema.action.ActionContext;
 import org.structr.schema.action.Function;
 
@@ -429,8 +432,11 @@ public class StructrScriptable extends ScriptableObject {
 								// exec wrapped function call
 								final Object result = push.call(cx, scope, thisObj, args);
 
-								// do association
-								rootScriptable.put(key, rootScriptable, StructrArray.this);
+								// do association, relate only the new elements if possible
+								if (!(rootScriptable instanceof GraphObjectWrapper) || !((GraphObjectWrapper)rootScriptable).addToCollection(key, args)) {
+
+									rootScriptable.put(key, rootScriptable, StructrArray.this);
+								}
 
 								return result;
 							}
@@ -583,6 +589,40 @@ public class StructrScriptable extends ScriptableObject {
 		public void put(int i, Scriptable s, Object o) {
 		}
 
+		/**
+		 * Relates the given values to the wrapped node via the given
+		 * relationship collection property, without replacing the
+		 * existing elements.
+		 *
+		 * @param name the name of the property
+		 * @param values the values to add
+		 * @return false if the property is not a relationship collection
+		 */
+		public boolean addToCollection(final String name, final Object[] values) {
+
+			final PropertyKey key = getKey(name);
+			if (key instanceof RelationProperty && key.isCollection() && obj instanceof NodeInterface) {
+
+				final List list = new LinkedList<>();
+
+				for (final Object value : values) {
+					list.add(StructrScriptable.this.unwrap(value));
+				}
+
+				try {
+
+					((NodeInterface)obj).addToCollection(key, list);
+
+				} catch (FrameworkException fex) {
+					exception = fex;
+				}
+
+				return true;
+			}
+
+			return false;
+		}
+
 		@Override
 		public void delete(String string) {
 
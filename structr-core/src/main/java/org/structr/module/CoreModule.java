@@ -23,6 +23,7 @@ import org.structr.api.service.LicenseManager;
 import org.structr.core.entity.AbstractSchemaNode;
 import org.structr.core.function.AbbrFunction;
 import org.structr.core.function.AddFunction;
+import org.structr.core.function.AddToCollectionFunction;
 import org.structr.core.function.AncestorTypesFunction;
 import org.structr.core.function.AndFunction;
 import org.structr.core.function.AppendFunction;
@@ -118,6 +119,7 @@ import org.structr.core.function.QuotFunction;
 import org.structr.core.function.RInterpreterFunction;
 import org.structr.core.function.RandomFunction;
 import org.structr.core.function.ReadFunction;
+import org.structr.core.function.RemoveFromCollectionFunction;
 import org.structr.core.function.ReplaceFunction;
 import org.structr.core.function.ResetCounterFunction;
 import org.structr.core.function.RetrieveFunction;
@@ -306,6 +308,8 @@ public class CoreModule implements StructrModule {
 		Functions.put(true, LicenseManager.Community, "create", new CreateFunction());
 		Functions.put(true, LicenseManager.Community, "delete", new DeleteFunction());
 		Functions.put(true, LicenseManager.Community, "create_relationship", new CreateRelationshipFunction());
+		Functions.put(true, LicenseManager.Community, "add_to_collection", new AddToCollectionFunction());
+		Functions.put(true, LicenseManager.Community, "remove_from_collection", new RemoveFromCollectionFunction());
 	}
 
 	@Override
@@ -49,6 +49,7 @@ import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.SchemaNode;
 import org.structr.core.entity.SchemaRelationshipNode;
+import org.structr.core.graph.MaterializedProperties;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.Tx;
 import org.structr.core.graph.search.SearchCommand;
@@ -193,6 +194,9 @@ public class SchemaService implements Service {
 							updateIndexConfiguration(removedClasses);
 						}
 
+						// read functions may have changed, and dependencies are not known after a restart
+						MaterializedProperties.refresh();
+
 						tx.success();
 					}
 
@@ -62,6 +62,7 @@ public class ActionContext {
 	protected StringBuilder outputBuffer      = new StringBuilder();
 	protected Locale locale                   = Locale.getDefault();
 	private boolean javaScriptContext         = false;
+	private int batchSize                     = -1;
 
 	public ActionContext(final SecurityContext securityContext) {
 		this(securityContext, null);
@@ -379,6 +380,20 @@ public class ActionContext {
 		return locale;
 	}
 
+	/**
+	 * Returns the batch size of the enclosing batch() expression, or -1
+	 * if no batch() expression is being evaluated.
+	 *
+	 * @return the batch size
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public void setBatchSize(final int batchSize) {
+		this.batchSize = batchSize;
+	}
+
 	public void setLocale(final Locale locale) {
 		this.locale = locale;
 	}
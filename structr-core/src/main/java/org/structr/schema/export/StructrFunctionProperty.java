@@ -36,6 +36,7 @@ public class StructrFunctionProperty extends StructrStringProperty implements Js
 	protected String readFunction  = null;
 	protected String writeFunction = null;
 	protected String contentType   = null;
+	protected boolean materialized = false;
 
 	public StructrFunctionProperty(final StructrTypeDefinition parent, final String name) {
 
@@ -71,6 +72,18 @@ public class StructrFunctionProperty extends StructrStringProperty implements Js
 		return writeFunction;
 	}
 
+	@Override
+	public JsonFunctionProperty setMaterialized(final boolean materialized) {
+
+		this.materialized = materialized;
+		return this;
+	}
+
+	@Override
+	public boolean isMaterialized() {
+		return materialized;
+	}
+
 	@Override
 	public JsonFunctionProperty setContentType(String contentType) {
 
@@ -96,6 +109,10 @@ public class StructrFunctionProperty extends StructrStringProperty implements Js
 			map.put(JsonSchema.KEY_WRITE_FUNCTION, writeFunction);
 		}
 
+		if (materialized) {
+			map.put(JsonSchema.KEY_MATERIALIZED, true);
+		}
+
 		return map;
 	}
 
@@ -130,6 +147,19 @@ public class StructrFunctionProperty extends StructrStringProperty implements Js
 			}
 		}
 
+		final Object materializedValue = source.get(JsonSchema.KEY_MATERIALIZED);
+		if (materializedValue != null) {
+
+			if (materializedValue instanceof Boolean) {
+
+				this.materialized = (Boolean)materializedValue;
+
+			} else {
+
+				throw new IllegalStateException("Invalid materialized flag for property " + name + ", expected boolean.");
+			}
+		}
+
 		final Object contentTypeValue = source.get(JsonSchema.KEY_CONTENT_TYPE);
 		if (contentTypeValue != null) {
 
@@ -153,6 +183,7 @@ public class StructrFunctionProperty extends StructrStringProperty implements Js
 		setReadFunction(property.getReadFunction());
 		setWriteFunction(property.getWriteFunction());
 		setContentType(property.getSourceContentType());
+		setMaterialized(property.isMaterialized());
 	}
 
 	@Override
@@ -183,6 +214,7 @@ public class StructrFunctionProperty extends StructrStringProperty implements Js
 
 		property.setProperty(SchemaProperty.readFunction,  readFunction);
 		property.setProperty(SchemaProperty.writeFunction, writeFunction);
+		property.setProperty(SchemaProperty.materialized,  materialized);
 
 		return property;
 	}
@@ -30,6 +30,9 @@ public interface JsonFunctionProperty extends JsonStringProperty {
 	public JsonFunctionProperty setWriteFunction(final String writeFunction);
 	public String getWriteFunction();
 
+	public JsonFunctionProperty setMaterialized(final boolean materialized);
+	public boolean isMaterialized();
+
 	@Override
 	public JsonFunctionProperty setContentType(final String contentType);
 	@Override
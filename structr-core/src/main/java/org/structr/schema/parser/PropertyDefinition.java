@@ -36,6 +36,7 @@ public interface PropertyDefinition {
 	public boolean isCompound();
 	public boolean isUnique();
 	public boolean isIndexed();
+	public boolean isMaterialized();
 	public String getDefaultValue();
 	public String getContentType();
 	public String getReadFunction();
@@ -147,6 +147,7 @@ public abstract class PropertySourceGenerator {
 				new NodeAttribute<>(SchemaProperty.compound, source.isCompound()),
 				new NodeAttribute<>(SchemaProperty.unique,         source.isUnique()),
 				new NodeAttribute<>(SchemaProperty.indexed,        source.isIndexed()),
+				new NodeAttribute<>(SchemaProperty.materialized,   source.isMaterialized()),
 				new NodeAttribute<>(SchemaProperty.notNull,        source.isNotNull()),
 				new NodeAttribute<>(SchemaProperty.readFunction,   source.getReadFunction()),
 				new NodeAttribute<>(SchemaProperty.writeFunction,  source.getWriteFunction())
@@ -157,6 +157,11 @@ public class StringBasedPropertyDefinition implements PropertyDefinition {
 		return indexed;
 	}
 
+	@Override
+	public boolean isMaterialized() {
+		return false;
+	}
+
 	@Override
 	public String getDefaultValue() {
 		return defaultValue;
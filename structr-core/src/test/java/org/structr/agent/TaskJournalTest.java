@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.agent;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ *
+ *
+ */
+public class TaskJournalTest {
+
+	@Test
+	public void testReplay() throws Exception {
+
+		final File directory = new File("/tmp/structr-taskjournal-test-" + System.nanoTime());
+
+		TaskJournal journal = new TaskJournal(directory);
+
+		final long id1 = journal.add("org.structr.test.Task1", 0, null, Arrays.asList("uuid1"));
+		final long id2 = journal.add("org.structr.test.Task2", 5, "user1", Arrays.asList("uuid2", "uuid3"));
+		final long id3 = journal.add("org.structr.test.Task1", 0, null, Arrays.asList("uuid4"));
+
+		journal.complete(id1);
+		journal.complete(id3);
+		journal.close();
+
+		// simulate an incomplete write at the end of the journal
+		try (final RandomAccessFile file = new RandomAccessFile(new File(directory, "tasks.journal"), "rw")) {
+
+			file.seek(file.length());
+			file.write("A\t4\torg.structr.test.Task1\t0\t\tuu".getBytes("utf-8"));
+		}
+
+		journal = new TaskJournal(directory);
+
+		final List<TaskJournal.Entry> pending = journal.getPending();
+
+		assertEquals("Invalid number of pending tasks", 1, pending.size());
+		assertEquals("Invalid pending task", id2, pending.get(0).getId());
+		assertEquals("Invalid pending task", "org.structr.test.Task2", pending.get(0).getTaskClass());
+		assertEquals("Invalid pending task", 5, pending.get(0).getPriority());
+		assertEquals("Invalid pending task", "user1", pending.get(0).getUser());
+		assertEquals("Invalid pending task", Arrays.asList("uuid2", "uuid3"), pending.get(0).getNodes());
+
+		// new ids must not collide with replayed ids
+		final long id4 = journal.add("org.structr.test.Task1", 0, null, Arrays.asList("uuid5"));
+
+		assertEquals("Invalid journal id", id3 + 1, id4);
+
+		journal.complete(id2);
+		journal.close();
+
+		journal = new TaskJournal(directory);
+
+		assertEquals("Invalid number of pending tasks", 1, journal.size());
+
+		journal.close();
+	}
+}
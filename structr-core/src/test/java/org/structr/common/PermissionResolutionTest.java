@@ -238,6 +238,253 @@ public class PermissionResolutionTest extends StructrTest {
 		}
 	}
 
+	@Test
+	public void test02PermissionResolutionCacheInvalidation() {
+
+		NodeInterface instance1 = null;
+		TestUser user1          = null;
+		Class type1             = null;
+		Class type2             = null;
+
+		try (final Tx tx = app.tx()) {
+
+			// create a test user
+			user1 = app.create(TestUser.class, "user1");
+
+			// create schema setup with permission propagation
+			final SchemaNode t1 = app.create(SchemaNode.class, "Type1");
+			final SchemaNode t2 = app.create(SchemaNode.class, "Type2");
+
+			app.create(SchemaRelationshipNode.class,
+				new NodeAttribute<>(SchemaRelationshipNode.sourceNode, t1),
+				new NodeAttribute<>(SchemaRelationshipNode.targetNode, t2),
+				new NodeAttribute<>(SchemaRelationshipNode.relationshipType, "RELATED"),
+				new NodeAttribute<>(SchemaRelationshipNode.sourceMultiplicity, "1"),
+				new NodeAttribute<>(SchemaRelationshipNode.targetMultiplicity, "1"),
+				new NodeAttribute<>(SchemaRelationshipNode.sourceJsonName, "source"),
+				new NodeAttribute<>(SchemaRelationshipNode.targetJsonName, "target"),
+				new NodeAttribute<>(SchemaRelationshipNode.permissionPropagation, Direction.Out),
+				new NodeAttribute<>(SchemaRelationshipNode.readPropagation, Propagation.Add)
+			);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		// create and link objects, make object of type 1 visible,
+		// expect object of type 2 to be visible as well
+		try (final Tx tx = app.tx()) {
+
+			type1 = StructrApp.getConfiguration().getNodeEntityClass("Type1");
+			type2 = StructrApp.getConfiguration().getNodeEntityClass("Type2");
+
+			final PropertyKey key         = StructrApp.getConfiguration().getPropertyKeyForJSONName(type1, "target");
+			final NodeInterface instance2 = app.create(type2, "instance1OfType2");
+
+			instance1 = app.create(type1, "instance1OfType1");
+			instance1.setProperty(key, instance2);
+			instance1.grant(Permission.read, user1);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		final App userApp = StructrApp.getInstance(SecurityContext.getInstance(user1, AccessMode.Backend));
+
+		// resolve and cache permissions, check twice to read from the cache
+		for (int i=0; i<2; i++) {
+
+			try (final Tx tx = userApp.tx()) {
+
+				Assert.assertNotNull("User1 should be able to find instance of type Type2", userApp.nodeQuery(type2).getFirst());
+
+				tx.success();
+
+			} catch (FrameworkException fex) {
+				fex.printStackTrace();
+				fail("Unexpected exception");
+			}
+		}
+
+		// revoke access to instance1, the cached result for instance2 must be invalidated
+		try (final Tx tx = app.tx()) {
+
+			instance1.revoke(Permission.read, user1);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		try (final Tx tx = userApp.tx()) {
+
+			Assert.assertNull("User1 should NOT be able to find instance of type Type1", userApp.nodeQuery(type1).getFirst());
+			Assert.assertNull("User1 should NOT be able to find instance of type Type2", userApp.nodeQuery(type2).getFirst());
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		// grant access again
+		try (final Tx tx = app.tx()) {
+
+			instance1.grant(Permission.read, user1);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		try (final Tx tx = userApp.tx()) {
+
+			Assert.assertNotNull("User1 should be able to find instance of type Type2", userApp.nodeQuery(type2).getFirst());
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	@Test
+	public void test03PermissionResolutionCacheInvalidationTwoHops() {
+
+		final Class[] types     = new Class[4];
+		NodeInterface instance1 = null;
+		PropertyKey link        = null;
+		TestUser user1          = null;
+
+		try (final Tx tx = app.tx()) {
+
+			// create a test user
+			user1 = app.create(TestUser.class, "user1");
+
+			// create schema setup with a chain of permission-propagating relationships
+			final SchemaNode[] nodes = new SchemaNode[4];
+
+			for (int i=0; i<4; i++) {
+				nodes[i] = app.create(SchemaNode.class, "Chain" + (i+1));
+			}
+
+			for (int i=0; i<3; i++) {
+
+				app.create(SchemaRelationshipNode.class,
+					new NodeAttribute<>(SchemaRelationshipNode.sourceNode, nodes[i]),
+					new NodeAttribute<>(SchemaRelationshipNode.targetNode, nodes[i+1]),
+					new NodeAttribute<>(SchemaRelationshipNode.relationshipType, "NEXT" + (i+1)),
+					new NodeAttribute<>(SchemaRelationshipNode.sourceMultiplicity, "1"),
+					new NodeAttribute<>(SchemaRelationshipNode.targetMultiplicity, "1"),
+					new NodeAttribute<>(SchemaRelationshipNode.sourceJsonName, "previous"),
+					new NodeAttribute<>(SchemaRelationshipNode.targetJsonName, "next"),
+					new NodeAttribute<>(SchemaRelationshipNode.permissionPropagation, Direction.Out),
+					new NodeAttribute<>(SchemaRelationshipNode.readPropagation, Propagation.Add)
+				);
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		// create and link objects, grant read access on the first object only
+		try (final Tx tx = app.tx()) {
+
+			NodeInterface previous = null;
+
+			for (int i=0; i<4; i++) {
+
+				types[i] = StructrApp.getConfiguration().getNodeEntityClass("Chain" + (i+1));
+
+				final NodeInterface instance = app.create(types[i], "instanceOfChain" + (i+1));
+
+				if (previous != null) {
+
+					previous.setProperty(StructrApp.getConfiguration().getPropertyKeyForJSONName(types[i-1], "next"), instance);
+
+				} else {
+
+					instance1 = instance;
+				}
+
+				previous = instance;
+			}
+
+			link = StructrApp.getConfiguration().getPropertyKeyForJSONName(types[0], "next");
+
+			instance1.grant(Permission.read, user1);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		final App userApp = StructrApp.getInstance(SecurityContext.getInstance(user1, AccessMode.Backend));
+
+		resolveChain(userApp, types);
+
+		// revoke the grant on instance1, three hops away from instance4
+		try (final Tx tx = app.tx()) {
+
+			instance1.revoke(Permission.read, user1);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		assertChainNotVisible(userApp, types);
+
+		// grant access again
+		try (final Tx tx = app.tx()) {
+
+			instance1.grant(Permission.read, user1);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		resolveChain(userApp, types);
+
+		// remove the propagating relationship between instance1 and instance2,
+		// which is two hops away from instance4 and not examined when the
+		// resolution for instance4 ends at the cached result for instance3
+		try (final Tx tx = app.tx()) {
+
+			instance1.setProperty(link, null);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		assertChainNotVisible(userApp, types);
+	}
+
 	// ----- private methods -----
 	public static void clearResourceAccess() {
 
@@ -256,4 +503,37 @@ public class PermissionResolutionTest extends StructrTest {
 			logger.warn("Unable to clear resource access grants", t);
 		}
 	}
+
+	private void resolveChain(final App userApp, final Class[] types) {
+
+		// resolve the permissions for instance3 first, so that the resolution
+		// for instance4 ends at the cached result for instance3
+		try (final Tx tx = userApp.tx()) {
+
+			Assert.assertNotNull("User1 should be able to find instance of type Chain3", userApp.nodeQuery(types[2]).getFirst());
+			Assert.assertNotNull("User1 should be able to find instance of type Chain4", userApp.nodeQuery(types[3]).getFirst());
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	private void assertChainNotVisible(final App userApp, final Class[] types) {
+
+		try (final Tx tx = userApp.tx()) {
+
+			Assert.assertNull("User1 should NOT be able to find instance of type Chain4", userApp.nodeQuery(types[3]).getFirst());
+			Assert.assertNull("User1 should NOT be able to find instance of type Chain3", userApp.nodeQuery(types[2]).getFirst());
+			Assert.assertNull("User1 should NOT be able to find instance of type Chain2", userApp.nodeQuery(types[1]).getFirst());
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
 }
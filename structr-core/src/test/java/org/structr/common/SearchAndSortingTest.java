@@ -1952,6 +1952,50 @@ public class SearchAndSortingTest extends StructrTest {
 
 	}
 
+	@Test
+	public void test09SecondarySortAndQueryPath() {
+
+		try {
+
+			final List<TestOne> nodes = createTestNodes(TestOne.class, 6);
+
+			try (final Tx tx = app.tx()) {
+
+				for (int i=0; i<nodes.size(); i++) {
+
+					nodes.get(i).setProperty(AbstractNode.name, "TestOne-" + (i / 2));
+					nodes.get(i).setProperty(TestOne.anInt, i);
+				}
+
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				final Result<TestOne> result = app.nodeQuery(TestOne.class).sort(AbstractNode.name).thenSort(TestOne.anInt, true).pageSize(2).page(2).getResult();
+
+				assertEquals("Sorting by indexed keys should be done in the database", Result.QUERY_PATH_DATABASE, result.getQueryPath());
+				assertEquals(6, (int)result.getRawResultCount());
+				assertEquals(2, result.size());
+				assertEquals(3, (int)result.get(0).getProperty(TestOne.anInt));
+				assertEquals(2, (int)result.get(1).getProperty(TestOne.anInt));
+
+				final Result<TestOne> lastPage = app.nodeQuery(TestOne.class).sort(AbstractNode.name).thenSort(TestOne.anInt, true).pageSize(2).page(-3).getResult();
+
+				assertEquals(2, lastPage.size());
+				assertEquals(1, (int)lastPage.get(0).getProperty(TestOne.anInt));
+				assertEquals(0, (int)lastPage.get(1).getProperty(TestOne.anInt));
+
+				tx.success();
+			}
+
+		} catch (FrameworkException fex) {
+
+			logger.error(fex.toString());
+			fail("Unexpected exception");
+		}
+	}
+
 	// ----- private methods -----
 	private void testPaging(final Class type, final int pageSize, final int page, final int number, final int offset, final boolean includeDeletedAndHidden, final boolean publicOnly, final PropertyKey sortKey, final boolean sortDesc) throws FrameworkException {
 
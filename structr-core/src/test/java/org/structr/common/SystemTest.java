@@ -19,6 +19,7 @@
 package org.structr.common;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
@@ -48,6 +49,7 @@ import org.structr.core.graph.NodeAttribute;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.Tx;
 import org.structr.core.property.IntProperty;
+import org.structr.core.property.PropertyKey;
 import org.structr.core.property.StringProperty;
 import org.structr.core.script.Scripting;
 import org.structr.schema.action.ActionContext;
@@ -602,6 +604,60 @@ public class SystemTest extends StructrTest {
 		}
 	}
 
+	@Test
+	public void testCollectionDeltaPerformance() {
+
+		final PropertyKey key = TestSix.manyToManyTestOnes;
+		final int num         = 5000;
+		final int count       = 20;
+		TestSix smallNode     = null;
+		TestSix largeNode     = null;
+
+		// test setup, create a supernode with 5000 relationships and a node without relationships
+		try (final Tx tx = app.tx()) {
+
+			System.out.println("Creating supernode with " + num + " relationships.");
+
+			smallNode = createTestNode(TestSix.class);
+			largeNode = createTestNode(TestSix.class, new NodeAttribute<>(TestSix.manyToManyTestOnes, createTestNodes(TestOne.class, num)));
+
+			tx.success();
+
+		} catch (Throwable fex) {
+			fail("Unexpected exception");
+		}
+
+		try {
+
+			// warm up
+			appendElements(key, smallNode, count);
+
+			final long small = appendElements(key, smallNode, count);
+			final long large = appendElements(key, largeNode, count);
+
+			System.out.println("Appending " + count + " elements took " + small + " ms for a collection with " + count + " elements, " + large + " ms for a collection with " + num + " elements.");
+
+			// appending must not depend on the size of the collection
+			assertTrue("Appending to a large collection should not be significantly slower", large < (small * 3) + 500);
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			assertEquals("Invalid number of elements after append", num + count, largeNode.getProperty(TestSix.manyToManyTestOnes).size());
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+	}
+
 	@Test
 	public void testConcurrentIdenticalRelationshipCreation() {
 
@@ -635,6 +691,34 @@ public class SystemTest extends StructrTest {
 		}
 	}
 
+	/**
+	 * Appends the given number of new elements to the collection of the
+	 * given node, one element per transaction, and returns the time spent
+	 * appending. Uses addToCollection, which is what REST, scripting and
+	 * the built-in functions call.
+	 */
+	private long appendElements(final PropertyKey key, final TestSix node, final int count) throws FrameworkException {
+
+		long time = 0L;
+
+		for (int i=0; i<count; i++) {
+
+			try (final Tx tx = app.tx()) {
+
+				final TestOne element = createTestNode(TestOne.class);
+				final long t0         = System.currentTimeMillis();
+
+				node.addToCollection(key, Collections.singletonList(element));
+
+				time += System.currentTimeMillis() - t0;
+
+				tx.success();
+			}
+		}
+
+		return time;
+	}
+
 	private static class TestRunner implements Runnable {
 
 		private boolean success = true;
@@ -0,0 +1,110 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.function;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.schema.action.ActionContext;
+
+/**
+ * JMH benchmark that measures the cost of parsing and evaluating typical
+ * template expressions, with and without the expression cache.
+ *
+ * This class is not run by the test suite, run it with
+ *
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.structr.core.function.StructrScriptBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class StructrScriptBenchmark {
+
+	@Param({
+		"retrieve('name')",
+		"upper(concat(retrieve('firstName'), ' ', retrieve('lastName')))",
+		"if(empty(retrieve('name')), 'unknown', lower(retrieve('name')))",
+		"join(merge('a', 'b', if(equal(retrieve('count'), 1), 'c', 'd')), ', ')"
+	})
+	private String expression = null;
+
+	private SecurityContext securityContext = null;
+
+	@Setup
+	public void setup() {
+
+		Functions.put(true, 0, "retrieve", new RetrieveFunction());
+		Functions.put(true, 0, "upper",    new UpperFunction());
+		Functions.put(true, 0, "lower",    new LowerFunction());
+		Functions.put(true, 0, "concat",   new ConcatFunction());
+		Functions.put(true, 0, "empty",    new EmptyFunction());
+		Functions.put(true, 0, "equal",    new EqualFunction());
+		Functions.put(true, 0, "merge",    new MergeFunction());
+		Functions.put(true, 0, "join",     new JoinFunction());
+
+		securityContext = SecurityContext.getSuperUserInstance();
+	}
+
+	@Benchmark
+	public Object cached() throws FrameworkException {
+		return Functions.parse(expression).evaluate(createActionContext(), null);
+	}
+
+	@Benchmark
+	public Object uncached() throws FrameworkException {
+		return Functions.parseExpression(expression).evaluate(createActionContext(), null);
+	}
+
+	public static void main(final String[] args) throws RunnerException {
+
+		new Runner(new OptionsBuilder().include(StructrScriptBenchmark.class.getSimpleName()).build()).run();
+	}
+
+	// ----- private methods -----
+	private ActionContext createActionContext() {
+
+		final ActionContext ctx = new ActionContext(securityContext);
+
+		ctx.store("name",      "Structr");
+		ctx.store("firstName", "John");
+		ctx.store("lastName",  "Doe");
+		ctx.store("count",     1);
+
+		return ctx;
+	}
+}
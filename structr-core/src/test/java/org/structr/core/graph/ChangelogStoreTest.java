@@ -0,0 +1,186 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.lang3.StringUtils;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.structr.api.config.Settings;
+
+/**
+ *
+ *
+ */
+public class ChangelogStoreTest {
+
+	private String previousBasePath = null;
+	private String basePath         = null;
+
+	@Before
+	public void setup() {
+
+		previousBasePath = Settings.BasePath.getValue();
+		basePath         = "/tmp/structr-changelog-test-" + System.nanoTime();
+
+		Settings.BasePath.setValue(basePath);
+	}
+
+	@After
+	public void cleanup() {
+
+		ChangelogStore.shutdown();
+
+		Settings.ChangelogSegmentSize.setValue(Settings.ChangelogSegmentSize.getDefaultValue());
+		Settings.BasePath.setValue(previousBasePath);
+	}
+
+	@Test
+	public void testAppendAndRead() {
+
+		final ChangelogStore store = ChangelogStore.getInstance();
+
+		for (int i=0; i<10; i++) {
+
+			final Map<String, String> batch = new LinkedHashMap<>();
+
+			batch.put("uuid1", entry(i * 10, "change") + "\n" + entry(i * 10 + 1, "change") + "\n");
+			batch.put("uuid2", entry(i * 10, "link") + "\n");
+
+			store.append(batch);
+		}
+
+		assertEquals("Invalid number of changelog entries", 20, store.read("uuid1", null, null).size());
+		assertEquals("Invalid number of changelog entries", 10, store.read("uuid2", null, null).size());
+		assertEquals("Invalid number of changelog entries",  0, store.read("uuid3", null, null).size());
+
+		final List<String> range = store.read("uuid1", 20L, 41L);
+
+		assertEquals("Invalid number of changelog entries in time range", 6, range.size());
+		assertEquals("Invalid changelog entry", entry(20, "change"), range.get(0));
+		assertEquals("Invalid changelog entry", entry(41, "change"), range.get(5));
+	}
+
+	@Test
+	public void testReopen() {
+
+		final Map<String, String> batch = new LinkedHashMap<>();
+
+		batch.put("uuid1", entry(1, "create") + "\n" + entry(2, "change"));
+
+		ChangelogStore.getInstance().append(batch);
+		ChangelogStore.shutdown();
+
+		// simulate an incomplete write at the end of the segment
+		try (final RandomAccessFile file = new RandomAccessFile(new File(Settings.getFullSettingPath(Settings.ChangelogPath), "00000001.log"), "rw")) {
+
+			file.seek(file.length());
+			file.writeUTF("uuid1");
+			file.writeLong(3L);
+			file.writeInt(100);
+			file.write(new byte[10]);
+
+		} catch (Throwable t) {
+			throw new RuntimeException(t);
+		}
+
+		final ChangelogStore store = ChangelogStore.getInstance();
+
+		assertEquals("Changelog index not rebuilt", 2, store.read("uuid1", null, null).size());
+
+		store.append(batch);
+
+		final List<String> entries = store.read("uuid1", null, null);
+
+		assertEquals("Invalid number of changelog entries after reopen", 4, entries.size());
+		assertEquals("Invalid changelog entry after incomplete write", entry(2, "change"), entries.get(3));
+	}
+
+	@Test
+	public void testSegments() {
+
+		Settings.ChangelogSegmentSize.setValue(1);
+
+		final ChangelogStore store = ChangelogStore.getInstance();
+		final String payload       = StringUtils.repeat("x", 1000);
+
+		for (int i=0; i<3000; i++) {
+
+			final Map<String, String> batch = new LinkedHashMap<>();
+
+			batch.put("uuid" + (i % 3), "{\"time\":" + i + ",\"val\":\"" + payload + "\"}");
+
+			store.append(batch);
+		}
+
+		final File directory  = new File(Settings.getFullSettingPath(Settings.ChangelogPath));
+		final File[] segments = directory.listFiles((dir, name) -> name.endsWith(".log"));
+
+		assertTrue("Changelog store did not create new segments", segments.length > 2);
+
+		for (final File segment : segments) {
+			assertTrue("Changelog segment exceeds maximum size", segment.length() <= 1024 * 1024);
+		}
+
+		// all segments except the current one have an index file
+		assertEquals("Invalid number of changelog index files", segments.length - 1, directory.listFiles((dir, name) -> name.endsWith(".idx")).length);
+
+		assertSegmentedEntries(store);
+
+		// index files are used after the store is re-opened
+		ChangelogStore.shutdown();
+
+		assertSegmentedEntries(ChangelogStore.getInstance());
+
+		// missing index files are rebuilt
+		ChangelogStore.shutdown();
+
+		assertTrue("Changelog index file not found", new File(directory, "00000001.idx").delete());
+
+		assertSegmentedEntries(ChangelogStore.getInstance());
+		assertTrue("Changelog index file not rebuilt", new File(directory, "00000001.idx").exists());
+	}
+
+	// ----- private methods -----
+	private void assertSegmentedEntries(final ChangelogStore store) {
+
+		final List<String> entries = store.read("uuid0", null, null);
+
+		assertEquals("Invalid number of changelog entries", 1000, entries.size());
+		assertEquals("Invalid number of changelog entries",    1, store.read("uuid2", 2999L, null).size());
+		assertEquals("Invalid number of changelog entries",   10, store.read("uuid1", 1000L, 1029L).size());
+		assertEquals("Invalid number of changelog entries",    0, store.read("uuid3", null, null).size());
+
+		// entries are returned in the order they were written
+		for (int i=0; i<entries.size(); i++) {
+			assertTrue("Invalid changelog entry", entries.get(i).startsWith("{\"time\":" + (i * 3) + ","));
+		}
+	}
+
+	private String entry(final long time, final String verb) {
+		return "{\"time\":" + time + ",\"verb\":\"" + verb + "\"}";
+	}
+}
@@ -0,0 +1,229 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.structr.common.StructrTest;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.entity.Relation.Cardinality;
+import org.structr.core.entity.SchemaProperty;
+import org.structr.core.property.FunctionProperty;
+import org.structr.core.property.PropertyKey;
+import org.structr.schema.ConfigurationProvider;
+import org.structr.schema.export.StructrSchema;
+import org.structr.schema.json.JsonObjectType;
+import org.structr.schema.json.JsonSchema;
+
+/**
+ * Test computation, storage and recomputation of materialized function
+ * properties.
+ */
+public class MaterializedPropertiesTest extends StructrTest {
+
+	@Test
+	public void testMaterializedFunctionProperty() {
+
+		try {
+
+			final JsonSchema schema      = StructrSchema.createFromDatabase(app);
+			final JsonObjectType project = schema.addType("Project");
+			final JsonObjectType task    = schema.addType("Task");
+
+			project.relate(task, "HAS", Cardinality.OneToMany, "project", "tasks");
+			project.addFunctionProperty("taskNames", "public").setReadFunction("join(extract(sort(this.tasks, 'name'), 'name'), ',')").setMaterialized(true);
+
+			StructrSchema.extendDatabaseSchema(app, schema);
+
+		} catch (FrameworkException | URISyntaxException ex) {
+
+			ex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		final ConfigurationProvider config = StructrApp.getConfiguration();
+		final Class projectType            = config.getNodeEntityClass("Project");
+		final Class taskType               = config.getNodeEntityClass("Task");
+		final PropertyKey tasks            = config.getPropertyKeyForJSONName(projectType, "tasks");
+		final PropertyKey taskNames        = config.getPropertyKeyForJSONName(projectType, "taskNames");
+		NodeInterface project              = null;
+		NodeInterface task1                = null;
+
+		assertTrue("Function property should be materialized", ((FunctionProperty)taskNames).isMaterialized());
+
+		try (final Tx tx = app.tx()) {
+
+			project = app.create(projectType, "project");
+			task1   = app.create(taskType, "task1");
+
+			project.setProperty(tasks, Arrays.asList(task1, app.create(taskType, "task2")));
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			// the value is computed when the entity is committed
+			assertTrue("Value should be materialized after commit", MaterializedProperties.isMaterialized(project, (FunctionProperty)taskNames));
+			assertEquals("Invalid materialized value", "task1,task2", project.getNode().getProperty("taskNames"));
+			assertEquals("Invalid materialized value", "task1,task2", project.getProperty(taskNames));
+
+			// the stored value can be searched in the database
+			assertEquals("Materialized value should be searchable", 1, app.nodeQuery(projectType).and(taskNames, "task1,task2").getAsList().size());
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			task1.setProperty(AbstractNode.name, "renamed");
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		// the project depends on the name of the task, so it is recomputed in the background
+		final long timeout = System.currentTimeMillis() + 10000;
+		Object value       = null;
+
+		while (System.currentTimeMillis() < timeout) {
+
+			try (final Tx tx = app.tx()) {
+
+				value = project.getNode().getProperty("taskNames");
+
+				tx.success();
+
+			} catch (FrameworkException fex) {
+
+				fex.printStackTrace();
+				fail("Unexpected exception.");
+			}
+
+			if ("renamed,task2".equals(value)) {
+				break;
+			}
+
+			try { Thread.sleep(100); } catch (InterruptedException iex) {}
+		}
+
+		assertEquals("Materialized value should be recomputed when a dependency changes", "renamed,task2", value);
+	}
+
+	@Test
+	public void testChangedReadFunction() {
+
+		try {
+
+			final JsonSchema schema   = StructrSchema.createFromDatabase(app);
+			final JsonObjectType item = schema.addType("Item");
+
+			item.addFunctionProperty("label", "public").setReadFunction("this.name").setMaterialized(true);
+
+			StructrSchema.extendDatabaseSchema(app, schema);
+
+		} catch (FrameworkException | URISyntaxException ex) {
+
+			ex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		final Class itemType = StructrApp.getConfiguration().getNodeEntityClass("Item");
+		NodeInterface item   = null;
+
+		try (final Tx tx = app.tx()) {
+
+			item = app.create(itemType, "item");
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		assertEquals("Invalid materialized value", "item", getStoredValue(item, "label", "item"));
+
+		// changing the read function reloads the schema, which recomputes the existing values
+		try (final Tx tx = app.tx()) {
+
+			app.nodeQuery(SchemaProperty.class).andName("label").getFirst().setProperty(SchemaProperty.readFunction, "concat(this.name, '!')");
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		assertEquals("Materialized value should be recomputed when the read function changes", "item!", getStoredValue(item, "label", "item!"));
+	}
+
+	// ----- private methods -----
+	private Object getStoredValue(final NodeInterface node, final String name, final Object expected) {
+
+		final long timeout = System.currentTimeMillis() + 10000;
+		Object value       = null;
+
+		while (System.currentTimeMillis() < timeout) {
+
+			try (final Tx tx = app.tx()) {
+
+				value = node.getNode().getProperty(name);
+
+				tx.success();
+
+			} catch (FrameworkException fex) {
+
+				fex.printStackTrace();
+				fail("Unexpected exception.");
+			}
+
+			if (expected.equals(value)) {
+				break;
+			}
+
+			try { Thread.sleep(100); } catch (InterruptedException iex) {}
+		}
+
+		return value;
+	}
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.structr.common.StructrTest;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.entity.TestOne;
+
+/**
+ * Test migration of the changelog property to the changelog store.
+ */
+public class MigrateChangelogCommandTest extends StructrTest {
+
+	@Test
+	public void testRepeatedMigration() {
+
+		final String first  = "{\"verb\":\"create\",\"time\":1}";
+		final String second = "{\"verb\":\"change\",\"time\":2}";
+
+		try {
+
+			final ChangelogStore store = ChangelogStore.getInstance();
+			final TestOne node         = createTestNode(TestOne.class);
+			final String uuid          = node.getUuid();
+
+			try (final Tx tx = app.tx()) {
+
+				node.unlockSystemPropertiesOnce();
+				node.setProperty(GraphObject.structrChangeLog, first + "\n" + second + "\n");
+
+				tx.success();
+			}
+
+			// simulate an earlier migration whose transaction was rolled back
+			store.append(Collections.singletonMap(uuid, first + "\n"));
+
+			app.command(MigrateChangelogCommand.class).execute(new HashMap<>());
+
+			final List<String> entries = store.read(uuid, null, null);
+
+			assertEquals("Invalid number of changelog entries after migration", 2, entries.size());
+			assertEquals("Invalid changelog entry after migration", first,  entries.get(0));
+			assertEquals("Invalid changelog entry after migration", second, entries.get(1));
+
+			try (final Tx tx = app.tx()) {
+
+				assertNull("Changelog property should be removed after migration", node.getProperty(GraphObject.structrChangeLog));
+
+				tx.success();
+			}
+
+			// running the migration again must not change the store
+			app.command(MigrateChangelogCommand.class).execute(new HashMap<>());
+
+			assertEquals("Invalid number of changelog entries after repeated migration", 2, store.read(uuid, null, null).size());
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+	}
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ *
+ *
+ */
+public class SyncSnapshotTest {
+
+	private final Path path   = Paths.get("/tmp/structr-snapshot-test-" + System.nanoTime());
+	private final byte[] data = "test".getBytes();
+
+	@After
+	public void cleanup() throws IOException {
+		Files.deleteIfExists(path);
+	}
+
+	@Test
+	public void testUnfinishedSnapshot() throws IOException {
+
+		// a snapshot that was not finished (e.g. because an export thread failed) is removed
+		try (final SyncSnapshot.Writer writer = new SyncSnapshot.Writer(path.toString())) {
+
+			writer.write(SyncSnapshot.NODES, "TestOne", 1, data, data.length);
+		}
+
+		assertFalse("Unfinished snapshot file must be removed", Files.exists(path));
+	}
+
+	@Test
+	public void testFinishedSnapshot() throws IOException {
+
+		try (final SyncSnapshot.Writer writer = new SyncSnapshot.Writer(path.toString())) {
+
+			writer.write(SyncSnapshot.NODES, "TestOne", 1, data, data.length);
+			writer.finish();
+
+			try {
+
+				writer.write(SyncSnapshot.NODES, "TestOne", 1, data, data.length);
+				fail("Writing to a finished snapshot must fail.");
+
+			} catch (IOException expected) {}
+		}
+
+		try (final SyncSnapshot.Reader reader = new SyncSnapshot.Reader(path.toString())) {
+
+			assertEquals("Invalid number of blocks in finished snapshot", 1, reader.getBlocks().size());
+		}
+	}
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.structr.common.StructrTest;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.entity.TestOne;
+import org.structr.core.entity.relationship.NodeHasLocation;
+
+/**
+ * Test maintenance and verification of the UUID index.
+ */
+public class UuidIndexTest extends StructrTest {
+
+	@Test
+	public void testIndexMaintenance() {
+
+		try {
+
+			final TestOne node        = createTestNode(TestOne.class);
+			final NodeHasLocation rel = createTestRelationships(NodeHasLocation.class, 1).get(0);
+			final String nodeUuid     = node.getUuid();
+			final String relUuid      = rel.getUuid();
+
+			// created entities are added when the transaction is committed
+			assertEquals("Created node should be in UUID index", node.getId(), UuidIndex.getNodeId(nodeUuid));
+			assertEquals("Created relationship should be in UUID index", rel.getId(), UuidIndex.getRelationshipId(relUuid));
+
+			try (final Tx tx = app.tx()) {
+
+				assertEquals("Node lookup by UUID returns wrong node", node.getId(), app.get(TestOne.class, nodeUuid).getId());
+
+				app.delete(node);
+				app.delete(rel);
+
+				tx.success();
+			}
+
+			assertEquals("Deleted node should not be in UUID index", -1L, UuidIndex.getNodeId(nodeUuid));
+			assertEquals("Deleted relationship should not be in UUID index", -1L, UuidIndex.getRelationshipId(relUuid));
+
+			try (final Tx tx = app.tx()) {
+
+				assertNull("Deleted node should not be found", app.get(TestOne.class, nodeUuid));
+
+				tx.success();
+			}
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+	}
+
+	@Test
+	public void testOutdatedEntries() {
+
+		try {
+
+			final TestOne first  = createTestNode(TestOne.class);
+			final TestOne second = createTestNode(TestOne.class);
+			final String uuid    = first.getUuid();
+
+			// simulate an entry that refers to a reused ID
+			UuidIndex.putNode(uuid, second.getId());
+
+			try (final Tx tx = app.tx()) {
+
+				final TestOne result = app.get(TestOne.class, uuid);
+
+				assertNotNull("Node should be found despite outdated index entry", result);
+				assertEquals("Outdated index entry should not be used", first.getId(), result.getId());
+
+				tx.success();
+			}
+
+			assertEquals("Outdated index entry should be replaced", first.getId(), UuidIndex.getNodeId(uuid));
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+	}
+}
@@ -26,6 +26,7 @@ import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -46,11 +47,13 @@ import org.structr.core.Result;
 import org.structr.core.entity.Group;
 import org.structr.core.entity.TestEleven;
 import org.structr.core.entity.TestOne;
+import org.structr.core.entity.TestSix;
 import org.structr.core.entity.TestTwo;
 import org.structr.core.graph.BulkCreateLabelsCommand;
 import org.structr.core.graph.BulkRebuildIndexCommand;
 import org.structr.core.graph.BulkSetNodePropertiesCommand;
 import org.structr.core.graph.SyncCommand;
+import org.structr.core.graph.SyncSnapshot;
 import org.structr.core.graph.Tx;
 
 /**
@@ -61,7 +64,8 @@ public class MaintenanceTest extends StructrTest {
 
 	private static final Logger logger = LoggerFactory.getLogger(MaintenanceTest.class.getName());
 
-	private final static String EXPORT_FILENAME = "___structr-test-export___.zip";
+	private final static String EXPORT_FILENAME   = "___structr-test-export___.zip";
+	private final static String SNAPSHOT_FILENAME = "___structr-test-export___.snapshot";
 
 	@Test
 	public void testSyncCommandParameters() {
@@ -255,6 +259,99 @@ public class MaintenanceTest extends StructrTest {
 		}
 	}
 
+	@Test
+	public void testSyncCommandSnapshotExportImport() {
+
+		try {
+
+			createSnapshotTestData();
+
+			final Map<String, Object> exportParams = toMap("mode", "export", "file", SNAPSHOT_FILENAME, "format", "snapshot");
+
+			// small blocks and several threads
+			exportParams.put("batchSize", 7L);
+			exportParams.put("threads",   4L);
+
+			app.command(SyncCommand.class).execute(exportParams);
+
+			final Path exportFile = Paths.get(SNAPSHOT_FILENAME);
+
+			assertTrue("Export file doesn't exist!", Files.exists(exportFile));
+			assertTrue("Export file must be a snapshot", SyncSnapshot.isSnapshot(SNAPSHOT_FILENAME));
+
+			cleanDatabase();
+
+			// the format is detected automatically
+			app.command(SyncCommand.class).execute(toMap("mode", "import", "file", SNAPSHOT_FILENAME, "threads", 4L));
+
+			assertSnapshotTestData();
+			assertTrue("Progress file must be removed after the import", !Files.exists(Paths.get(SNAPSHOT_FILENAME + ".progress")));
+
+			// an existing progress file resumes the import, blocks that were
+			// already committed must not be imported again
+			Files.write(Paths.get(SNAPSHOT_FILENAME + ".progress"), new byte[0]);
+
+			app.command(SyncCommand.class).execute(toMap("mode", "import", "file", SNAPSHOT_FILENAME, "threads", 4L));
+
+			assertSnapshotTestData();
+
+			// clean-up after test
+			Files.delete(exportFile);
+
+		} catch (Exception ex) {
+			logger.warn("", ex);
+			fail("Unexpected exception.");
+		}
+	}
+
+	@Test
+	public void testSyncCommandSnapshotConversion() {
+
+		final String convertedFileName = "___structr-test-converted___.zip";
+
+		try {
+
+			createSnapshotTestData();
+
+			app.command(SyncCommand.class).execute(toMap("mode", "exportDb", "file", EXPORT_FILENAME));
+
+			final Map<String, Object> convertParams = toMap("mode", "convert", "file", EXPORT_FILENAME, "target", SNAPSHOT_FILENAME);
+
+			convertParams.put("batchSize", 7L);
+
+			// ZIP to snapshot
+			app.command(SyncCommand.class).execute(convertParams);
+
+			assertTrue("Converted file must be a snapshot", SyncSnapshot.isSnapshot(SNAPSHOT_FILENAME));
+
+			cleanDatabase();
+
+			app.command(SyncCommand.class).execute(toMap("mode", "import", "file", SNAPSHOT_FILENAME));
+
+			assertSnapshotTestData();
+
+			// snapshot to ZIP
+			app.command(SyncCommand.class).execute(toMap("mode", "convert", "file", SNAPSHOT_FILENAME, "target", convertedFileName));
+
+			assertTrue("Converted file must not be a snapshot", !SyncSnapshot.isSnapshot(convertedFileName));
+
+			cleanDatabase();
+
+			app.command(SyncCommand.class).execute(toMap("mode", "import", "file", convertedFileName));
+
+			assertSnapshotTestData();
+
+			// clean-up after test
+			Files.delete(Paths.get(EXPORT_FILENAME));
+			Files.delete(Paths.get(SNAPSHOT_FILENAME));
+			Files.delete(Paths.get(convertedFileName));
+
+		} catch (Exception ex) {
+			logger.warn("", ex);
+			fail("Unexpected exception.");
+		}
+	}
+
 	@Test
 	public void testBulkCreateLabelsCommand() {
 
@@ -431,4 +528,49 @@ public class MaintenanceTest extends StructrTest {
 			fail("Unexpected exception.");
 		}
 	}
+
+	// ----- private methods -----
+	private void createSnapshotTestData() throws FrameworkException {
+
+		final List<TestOne> testOnes = createTestNodes(TestOne.class, 100);
+		final List<TestSix> testSixs = createTestNodes(TestSix.class, 10);
+
+		try (final Tx tx = app.tx()) {
+
+			for (int i=0; i<testSixs.size(); i++) {
+
+				testSixs.get(i).setProperty(TestSix.manyToManyTestOnes, testOnes.subList(i * 10, (i + 1) * 10));
+			}
+
+			testOnes.get(0).setProperty(TestOne.name, "first");
+			testOnes.get(0).setProperty(TestOne.aStringArray, new String[] { "one", "two" });
+
+			tx.success();
+		}
+	}
+
+	private void assertSnapshotTestData() throws FrameworkException {
+
+		try (final Tx tx = app.tx()) {
+
+			assertEquals(100, app.nodeQuery(TestOne.class).getResult().size());
+			assertEquals(10,  app.nodeQuery(TestSix.class).getResult().size());
+
+			for (final TestSix testSix : app.nodeQuery(TestSix.class).getAsList()) {
+				assertEquals(10, testSix.getProperty(TestSix.manyToManyTestOnes).size());
+			}
+
+			final TestOne first = app.nodeQuery(TestOne.class).andName("first").getFirst();
+
+			assertEquals("one", first.getProperty(TestOne.aStringArray)[0]);
+			assertEquals("two", first.getProperty(TestOne.aStringArray)[1]);
+
+			final Set<String> labels = Iterables.toSet(first.getNode().getLabels()).stream().map(Label::name).collect(Collectors.toSet());
+
+			assertTrue("Set of labels must contain AbstractNode", labels.contains("AbstractNode"));
+			assertTrue("Set of labels must contain TestOne",      labels.contains("TestOne"));
+
+			tx.success();
+		}
+	}
 }
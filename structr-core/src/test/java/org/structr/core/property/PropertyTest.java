@@ -18,6 +18,7 @@
  */
 package org.structr.core.property;
 
+import java.util.Arrays;
 import java.util.Date;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
@@ -36,22 +37,27 @@ import org.structr.api.DatabaseService;
 import org.structr.api.graph.Label;
 import org.structr.api.util.Iterables;
 import org.structr.common.AccessControllable;
+import org.structr.common.AccessMode;
+import org.structr.common.SecurityContext;
 import org.structr.common.StructrTest;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.Result;
+import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
 import org.structr.core.converter.PropertyConverter;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.OneFourOneToOne;
 import org.structr.core.entity.SchemaNode;
 import org.structr.core.entity.SchemaRelationshipNode;
+import org.structr.core.entity.SixOneManyToMany;
 import org.structr.core.entity.TestEnum;
 import org.structr.core.entity.TestFive;
 import org.structr.core.entity.TestFour;
 import org.structr.core.entity.TestOne;
 import org.structr.core.entity.TestSix;
 import org.structr.core.entity.TestThree;
+import org.structr.core.entity.TestUser;
 import org.structr.core.graph.NodeAttribute;
 import org.structr.core.graph.Tx;
 import org.structr.schema.ConfigurationProvider;
@@ -395,6 +401,184 @@ public class PropertyTest extends StructrTest {
 
 	}
 
+	@Test
+	public void testAddAndRemoveSingleElementOnCollectionProperty() {
+
+		final EndNodes<TestSix, TestOne> endNodes     = (EndNodes)TestSix.manyToManyTestOnes;
+		final StartNodes<TestSix, TestOne> startNodes = (StartNodes)TestOne.manyToManyTestSixs;
+
+		try {
+
+			final TestSix testSix  = createTestNode(TestSix.class);
+			final TestOne testOne1 = createTestNode(TestOne.class);
+			final TestOne testOne2 = createTestNode(TestOne.class);
+			final TestOne testOne3 = createTestNode(TestOne.class);
+
+			try (final Tx tx = app.tx()) {
+
+				testSix.setProperty(TestSix.manyToManyTestOnes, Arrays.asList(testOne1, testOne2));
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				// adding an element that is already related must not create a second relationship
+				endNodes.addSingleElement(securityContext, testSix, testOne1);
+				endNodes.addSingleElement(securityContext, testSix, testOne3);
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				assertEquals("Invalid number of relationships after add", 3, Iterables.count(testSix.getOutgoingRelationships(SixOneManyToMany.class)));
+				assertEquals("Invalid collection after add", Arrays.asList(testOne1, testOne2, testOne3), testSix.getProperty(TestSix.manyToManyTestOnes));
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				// removing an element that is not related must not fail
+				endNodes.removeSingleElement(securityContext, testSix, testOne2);
+				endNodes.removeSingleElement(securityContext, testSix, testOne2);
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				assertEquals("Invalid collection after remove", Arrays.asList(testOne1, testOne3), testSix.getProperty(TestSix.manyToManyTestOnes));
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				// other direction
+				final TestSix testSix2 = createTestNode(TestSix.class);
+
+				startNodes.addSingleElement(securityContext, testOne2, testSix);
+				startNodes.addSingleElement(securityContext, testOne2, testSix2);
+				startNodes.removeSingleElement(securityContext, testOne1, testSix);
+
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				assertEquals("Invalid collection after add and remove", Arrays.asList(testOne3, testOne2), testSix.getProperty(TestSix.manyToManyTestOnes));
+				assertEquals("Invalid collection after add", 2, testOne2.getProperty(TestOne.manyToManyTestSixs).size());
+				assertTrue("Invalid collection after remove", testOne1.getProperty(TestOne.manyToManyTestSixs).isEmpty());
+				tx.success();
+			}
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+	}
+
+	@Test
+	public void testAddToReadOnlyCollectionProperty() {
+
+		final Property<List<TestOne>> readOnlyTestOnes = new EndNodes<>("manyToManyTestOnes", SixOneManyToMany.class).readOnly();
+
+		try {
+
+			final TestUser owner    = createTestNode(TestUser.class);
+			final TestOne testOne1  = createTestNode(TestOne.class, owner);
+			final TestOne testOne2  = createTestNode(TestOne.class, owner);
+			final PropertyMap props = new PropertyMap();
+
+			// read-only properties can be set when the node is created
+			props.put(readOnlyTestOnes, Arrays.asList(testOne1));
+
+			final TestSix testSix   = createTestNode(TestSix.class, props, owner);
+			final App userApp       = StructrApp.getInstance(SecurityContext.getInstance(owner, AccessMode.Backend));
+
+			try (final Tx tx = userApp.tx()) {
+
+				final TestSix node = userApp.get(TestSix.class, testSix.getUuid());
+
+				node.addToCollection(readOnlyTestOnes, Arrays.asList(testOne2));
+
+				fail("Adding an element to a read-only collection should throw an exception");
+
+			} catch (FrameworkException fex) {
+
+				assertEquals("Invalid error code", 422, fex.getStatus());
+			}
+
+			try (final Tx tx = userApp.tx()) {
+
+				final TestSix node = userApp.get(TestSix.class, testSix.getUuid());
+
+				node.removeFromCollection(readOnlyTestOnes, Arrays.asList(testOne1));
+
+				fail("Removing an element from a read-only collection should throw an exception");
+
+			} catch (FrameworkException fex) {
+
+				assertEquals("Invalid error code", 422, fex.getStatus());
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				assertEquals("Read-only collection should not be modified", Arrays.asList(testOne1), testSix.getProperty(TestSix.manyToManyTestOnes));
+				tx.success();
+			}
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+	}
+
+	@Test
+	public void testAddToWriteOnceCollectionProperty() {
+
+		final Property<List<TestOne>> writeOnceTestOnes = new EndNodes<>("manyToManyTestOnes", SixOneManyToMany.class).writeOnce();
+
+		try {
+
+			final TestUser owner   = createTestNode(TestUser.class);
+			final TestOne testOne1 = createTestNode(TestOne.class, owner);
+			final TestOne testOne2 = createTestNode(TestOne.class, owner);
+			final TestSix testSix  = createTestNode(TestSix.class, owner);
+			final App userApp      = StructrApp.getInstance(SecurityContext.getInstance(owner, AccessMode.Backend));
+
+			try (final Tx tx = userApp.tx()) {
+
+				// an empty collection can be written once
+				userApp.get(TestSix.class, testSix.getUuid()).addToCollection(writeOnceTestOnes, Arrays.asList(testOne1));
+				tx.success();
+			}
+
+			try (final Tx tx = userApp.tx()) {
+
+				final TestSix node = userApp.get(TestSix.class, testSix.getUuid());
+
+				node.addToCollection(writeOnceTestOnes, Arrays.asList(testOne2));
+
+				fail("Adding an element to a write-once collection should throw an exception");
+
+			} catch (FrameworkException fex) {
+
+				assertEquals("Invalid error code", 422, fex.getStatus());
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				assertEquals("Write-once collection should not be modified", Arrays.asList(testOne1), testSix.getProperty(TestSix.manyToManyTestOnes));
+				tx.success();
+			}
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+	}
+
 	/**
 	 * Test of typeName method, of class CollectionProperty.
 	 */
@@ -549,6 +549,59 @@ public class ScriptingTest extends StructrTest {
 		}
 	}
 
+	@Test
+	public void testAddToAndRemoveFromCollection() {
+
+		Group group    = null;
+		TestUser user1 = null;
+		TestUser user2 = null;
+		TestUser user3 = null;
+
+		// setup phase
+		try (final Tx tx = app.tx()) {
+
+			group = app.create(Group.class, "Group");
+			user1 = app.create(TestUser.class, "Tester1");
+			user2 = app.create(TestUser.class, "Tester2");
+			user3 = app.create(TestUser.class, "Tester3");
+
+			group.setProperty(Group.members, Arrays.asList(new Principal[] { user1 } ));
+
+			tx.success();
+
+		} catch(FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			final ActionContext actionContext = new ActionContext(securityContext);
+
+			// StructrScript
+			Scripting.replaceVariables(actionContext, group, "${add_to_collection(this, 'members', find('TestUser', 'name', 'Tester2'), first(find('TestUser', 'name', 'Tester1')))}");
+			assertEquals("Invalid result of add_to_collection", Arrays.asList(user1, user2), group.getProperty(Group.members));
+
+			Scripting.replaceVariables(actionContext, group, "${remove_from_collection(this, 'members', first(find('TestUser', 'name', 'Tester1')))}");
+			assertEquals("Invalid result of remove_from_collection", Arrays.asList(user2), group.getProperty(Group.members));
+
+			// JavaScript, with UUIDs
+			Scripting.evaluate(actionContext, group, "${{ Structr.add_to_collection(Structr.this, 'members', '" + user3.getUuid() + "'); }}", "test");
+			assertEquals("Invalid result of add_to_collection", Arrays.asList(user2, user3), group.getProperty(Group.members));
+
+			Scripting.evaluate(actionContext, group, "${{ Structr.remove_from_collection(Structr.this, 'members', Structr.find('TestUser')); }}", "test");
+			assertTrue("Invalid result of remove_from_collection", group.getProperty(Group.members).isEmpty());
+
+			tx.success();
+
+		} catch(UnlicensedException|FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+	}
+
 	@Test
 	public void testPropertyConversion() {
 
@@ -2461,4 +2514,127 @@ public class ScriptingTest extends StructrTest {
 			fail("Unexpected exception.");
 		}
 	}
+
+	@Test
+	public void testConcurrentEvaluationOfCachedExpressions() {
+
+		final String expression    = "${if(empty(this.name), 'empty', concat(this.name, '-', upper(this.name), each(merge('a', 'b'), store('last', data))))}";
+		final List<TestOne> nodes  = new LinkedList<>();
+		final List<Thread> threads = new LinkedList<>();
+		final List<String> errors  = Collections.synchronizedList(new LinkedList<>());
+
+		try (final Tx tx = app.tx()) {
+
+			for (int i=0; i<8; i++) {
+				nodes.add(createTestNode(TestOne.class, "node" + i));
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		for (final TestOne node : nodes) {
+
+			final Thread thread = new Thread(() -> {
+
+				try (final Tx tx = app.tx()) {
+
+					final String name = node.getName();
+
+					for (int i=0; i<500; i++) {
+
+						final ActionContext ctx = new ActionContext(securityContext, null);
+						final String result     = Scripting.replaceVariables(ctx, node, expression);
+
+						if (!(name + "-" + name.toUpperCase()).equals(result) || !"b".equals(ctx.retrieve("last"))) {
+							errors.add(result);
+						}
+					}
+
+					tx.success();
+
+				} catch (FrameworkException fex) {
+					errors.add(fex.getMessage());
+				}
+			});
+
+			threads.add(thread);
+			thread.start();
+		}
+
+		for (final Thread thread : threads) {
+			try { thread.join(); } catch (InterruptedException iex) {}
+		}
+
+		assertTrue("Concurrent evaluation of the same expression should not interfere: " + errors, errors.isEmpty());
+	}
+
+	@Test
+	public void testConcurrentJavascriptEvaluationWithSharedScope() {
+
+		// top-level variables must not leak between evaluations that share the compiled script and the standard scope
+		final String script        = "${{ var before = typeof counter; var counter = Structr.get('this').name; return before + '-' + counter; }}";
+		final List<TestOne> nodes  = new LinkedList<>();
+		final List<Thread> threads = new LinkedList<>();
+		final List<String> errors  = Collections.synchronizedList(new LinkedList<>());
+		final long compileCount    = getCompileCount();
+
+		try (final Tx tx = app.tx()) {
+
+			for (int i=0; i<8; i++) {
+				nodes.add(createTestNode(TestOne.class, "node" + i));
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		for (final TestOne node : nodes) {
+
+			final Thread thread = new Thread(() -> {
+
+				try (final Tx tx = app.tx()) {
+
+					final String name = node.getName();
+
+					for (int i=0; i<100; i++) {
+
+						final String result = Scripting.replaceVariables(new ActionContext(securityContext, null), node, script);
+
+						if (!("undefined-" + name).equals(result)) {
+							errors.add(result);
+						}
+					}
+
+					tx.success();
+
+				} catch (FrameworkException fex) {
+					errors.add(fex.getMessage());
+				}
+			});
+
+			threads.add(thread);
+			thread.start();
+		}
+
+		for (final Thread thread : threads) {
+			try { thread.join(); } catch (InterruptedException iex) {}
+		}
+
+		assertTrue("Concurrent evaluation of the same script should not interfere: " + errors, errors.isEmpty());
+		assertEquals("Script should be compiled only once", compileCount + 1, getCompileCount());
+	}
+
+	// ----- private methods -----
+	private long getCompileCount() {
+		return ((Number)Scripting.getStatistics().get("compileCount")).longValue();
+	}
 }
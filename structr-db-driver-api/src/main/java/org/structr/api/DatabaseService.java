@@ -18,11 +18,16 @@
  */
 package org.structr.api;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import org.structr.api.graph.Direction;
 import org.structr.api.graph.GraphProperties;
 import org.structr.api.graph.Node;
 import org.structr.api.graph.Relationship;
+import org.structr.api.graph.RelationshipSpec;
+import org.structr.api.graph.RelationshipType;
 import org.structr.api.index.Index;
 
 /**
@@ -46,6 +51,41 @@ public interface DatabaseService {
 
 	Node createNode(final Set<String> labels, final Map<String, Object> properties);
 
+	/**
+	 * Creates a node with the given labels for each of the given property
+	 * maps in a single statement.
+	 *
+	 * @param labels the labels of the new nodes
+	 * @param properties the initial properties of the new nodes
+	 *
+	 * @return the new nodes, in the order of the property maps
+	 */
+	List<Node> createNodes(final Set<String> labels, final List<Map<String, Object>> properties);
+
+	/**
+	 * Creates the given relationships with one statement per relationship
+	 * type. Other than {@link Node#createRelationshipTo}, this method does
+	 * not reuse existing relationships of the same type between two nodes.
+	 *
+	 * @param relationships the relationships to create
+	 *
+	 * @return the new relationships, in the order of the given list
+	 */
+	List<Relationship> createRelationships(final List<RelationshipSpec> relationships);
+
+	/**
+	 * Loads the relationships of the given type and direction of all the
+	 * given nodes, along with the nodes on the other side, in a single
+	 * statement and caches them, so that subsequent calls to
+	 * {@link Node#getRelationships(Direction, RelationshipType)} on one of
+	 * the nodes don't need to query the database.
+	 *
+	 * @param nodes the nodes to load the relationships for
+	 * @param relationshipType the relationship type
+	 * @param direction the direction, relative to the given nodes
+	 */
+	void prefetchRelationships(final Collection<Node> nodes, final RelationshipType relationshipType, final Direction direction);
+
 	Node getNodeById(final long id);
 	Relationship getRelationshipById(final long id);
 
@@ -68,4 +108,12 @@ public interface DatabaseService {
 	NativeResult execute(final String nativeQuery);
 
 	void invalidateQueryCache();
+
+	/**
+	 * Returns a map of runtime statistics (cache sizes, hit and miss
+	 * counts etc.) for monitoring purposes.
+	 *
+	 * @return a map of statistics
+	 */
+	Map<String, Object> getStatistics();
 }
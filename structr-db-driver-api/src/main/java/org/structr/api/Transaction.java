@@ -26,6 +26,12 @@ public interface Transaction extends AutoCloseable {
 	void failure();
 	void success();
 
+	/**
+	 * Writes modifications that were deferred by the driver, so that
+	 * write failures are raised before the transaction is committed.
+	 */
+	void flush();
+
 	@Override
 	void close();
 }
@@ -64,6 +64,12 @@ public class Settings {
 	public static final Setting<String> SnapshotsPath         = new StringSetting(generalGroup,   "Paths",       "snapshot.path",              "snapshots" + File.separator, "IMPORTANT: Path is relative to base.path");
 	public static final Setting<String> LayoutsPath           = new StringSetting(generalGroup,   "Paths",       "layouts.path",               "layouts" + File.separator, "IMPORTANT: Path is relative to base.path");
 	public static final Setting<String> WebDataPath           = new StringSetting(generalGroup,   "Paths",       "data.webapp.path",           "webapp-data" + File.separator, "IMPORTANT: Path is relative to base.path");
+	public static final Setting<String> ChangelogPath         = new StringSetting(generalGroup,   "Paths",       "changelog.path",             "changelog" + File.separator, "IMPORTANT: Path is relative to base.path");
+	public static final Setting<String> FulltextIndexPath     = new StringSetting(generalGroup,   "Paths",       "fulltext.index.path",        "fulltext" + File.separator, "IMPORTANT: Path is relative to base.path");
+	public static final Setting<String> AgentJournalPath      = new StringSetting(generalGroup,   "Paths",       "agent.journal.path",         "agents" + File.separator, "IMPORTANT: Path is relative to base.path");
+	public static final Setting<String> UuidIndexPath         = new StringSetting(generalGroup,   "Paths",       "uuid.index.path",            "uuidindex" + File.separator, "IMPORTANT: Path is relative to base.path");
+	public static final Setting<String> LogEventsPath         = new StringSetting(generalGroup,   "Paths",       "logevents.path",             "logevents" + File.separator, "IMPORTANT: Path is relative to base.path");
+	public static final Setting<String> DeploymentPath        = new StringSetting(generalGroup,   "Paths",       "deployment.path",            "deployment" + File.separator, "IMPORTANT: Path is relative to base.path");
 	public static final Setting<Boolean> LogSchemaOutput      = new BooleanSetting(generalGroup,  "Logging",     "NodeExtender.log",           false);
 	public static final Setting<Boolean> RequestLogging       = new BooleanSetting(generalGroup,  "Logging",     "log.requests",               false);
 	public static final Setting<String> LogPrefix             = new StringSetting(generalGroup,   "Logging",     "log.prefix",                 "structr");
@@ -114,19 +120,26 @@ public class Settings {
 	public static final Setting<Integer> RelationshipCacheSize = new IntegerSetting(databaseGroup, "Caching",             "database.cache.relationship.size", 100000);
 	public static final Setting<Integer> NodeCacheSize         = new IntegerSetting(databaseGroup, "Caching",             "database.cache.node.size",         100000);
 	public static final Setting<Integer> UuidCacheSize         = new IntegerSetting(databaseGroup, "Caching",             "database.cache.uuid.size",         100000);
+	public static final Setting<String> UuidIndexStorage       = new ChoiceSetting(databaseGroup,  "Caching",             "database.cache.uuid.storage",      "heap", "heap", "direct", "mapped");
 	public static final Setting<Integer> QueryCacheSize        = new IntegerSetting(databaseGroup, "Caching",             "database.cache.query.size",        1000);
+	public static final Setting<Integer> QueryCacheResultSize  = new IntegerSetting(databaseGroup, "Caching",             "database.cache.query.resultsize",  5000);
 	public static final Setting<Boolean> CypherDebugLogging    = new BooleanSetting(databaseGroup, "Debugging",           "log.cypher.debug",                 false);
 	public static final Setting<Boolean> SyncDebugging         = new BooleanSetting(databaseGroup, "Sync debugging",      "sync.debug",                       false);
 
 	// application settings
 	public static final Setting<Integer> ResolutionDepth      = new IntegerSetting(applicationGroup, "Security",   "application.security.resolution.depth",     5);
+	public static final Setting<Integer> ResolutionCacheSize  = new IntegerSetting(applicationGroup, "Security",   "application.security.resolution.cachesize", 100000);
 	public static final Setting<String> OwnerlessNodes        = new StringSetting(applicationGroup,  "Security",   "application.security.ownerless.nodes",      "read");
 	public static final Setting<Boolean> ChangelogEnabled     = new BooleanSetting(applicationGroup, "Changelog",  "application.changelog.enabled",             false);
+	public static final Setting<Integer> ChangelogSegmentSize = new IntegerSetting(applicationGroup, "Changelog",  "application.changelog.segment.size",        64);
+	public static final Setting<Integer> ExpressionCacheSize  = new IntegerSetting(applicationGroup, "Scripting",  "application.scripting.expressioncache.size", 10000);
+	public static final Setting<Integer> AgentThreads         = new IntegerSetting(applicationGroup, "Agents",     "application.agents.threads",                4);
 	public static final Setting<Boolean> FilesystemEnabled    = new BooleanSetting(applicationGroup, "Filesystem", "application.filesystem.enabled",            false);
 	public static final Setting<Boolean> UniquePaths          = new BooleanSetting(applicationGroup, "Filesystem", "application.filesystem.unique.paths",       true);
 	public static final Setting<Integer> IndexingLimit        = new IntegerSetting(applicationGroup, "Filesystem", "application.filesystem.indexing.limit",     50000);
 	public static final Setting<Integer> IndexingMinLength    = new IntegerSetting(applicationGroup, "Filesystem", "application.filesystem.indexing.minlength", 4);
 	public static final Setting<Integer> IndexingMaxLength    = new IntegerSetting(applicationGroup, "Filesystem", "application.filesystem.indexing.maxlength", 40);
+	public static final Setting<Integer> IndexingMergeFactor  = new IntegerSetting(applicationGroup, "Filesystem", "application.filesystem.indexing.mergefactor", 10);
 	public static final Setting<String> DefaultUploadFolder   = new StringSetting(applicationGroup,  "Filesystem", "application.uploads.folder",                "");
 	public static final Setting<String> HttpProxyUrl          = new StringSetting(applicationGroup,  "Proxy",      "application.proxy.http.url",                "");
 	public static final Setting<String> HttpProxyUser         = new StringSetting(applicationGroup,  "Proxy",      "application.proxy.http.username",           "");
@@ -142,9 +155,10 @@ public class Settings {
 	public static final Setting<Boolean> SmtpTesting          = new BooleanSetting(smtpGroup, "hidden",        "smtp.testing.only", false);
 
 	// advanced settings
-	public static final Setting<String> ForeignTypeName          = new StringSetting(advancedGroup,  "hidden", "foreign.type.key",         "");
-	public static final Setting<Boolean> JsonRedundancyReduction = new BooleanSetting(advancedGroup, "JSON",   "json.redundancyReduction", true);
-	public static final Setting<Boolean> JsonLenient             = new BooleanSetting(advancedGroup, "JSON",   "json.lenient",             false);
+	public static final Setting<String> ForeignTypeName              = new StringSetting(advancedGroup,  "hidden", "foreign.type.key",           "");
+	public static final Setting<Boolean> JsonRedundancyReduction     = new BooleanSetting(advancedGroup, "JSON",   "json.redundancyReduction",   true);
+	public static final Setting<Boolean> JsonLenient                 = new BooleanSetting(advancedGroup, "JSON",   "json.lenient",               false);
+	public static final Setting<Boolean> JsonRelationshipPrefetching = new BooleanSetting(advancedGroup, "JSON",   "json.prefetchRelationships", true);
 
 	public static final Setting<String> GeocodingProvider        = new StringSetting(advancedGroup,  "Geocoding",   "geocoding.provider",            "org.structr.common.geo.GoogleGeoCodingProvider");
 	public static final Setting<String> GeocodingLanguage        = new StringSetting(advancedGroup,  "Geocoding",   "geocoding.language",            "de");
@@ -178,6 +192,8 @@ public class Settings {
 	public static final Setting<Boolean> HtmlUserAutocreate       = new BooleanSetting(servletsGroup, "HtmlServlet", "HtmlServlet.user.autocreate",       true);
 	public static final Setting<String> HtmlResolveProperties     = new StringSetting(servletsGroup,  "HtmlServlet", "HtmlServlet.resolveProperties",     "AbstractNode.name");
 	public static final Setting<String> HtmlCustomResponseHeaders = new TextSetting(servletsGroup,    "HtmlServlet", "HtmlServlet.customResponseHeaders", "Strict-Transport-Security:max-age=60,X-Content-Type-Options:nosniff,X-Frame-Options:SAMEORIGIN,X-XSS-Protection:1;mode=block");
+	public static final Setting<Boolean> HtmlRenderCacheEnabled   = new BooleanSetting(servletsGroup, "HtmlServlet", "HtmlServlet.rendercache.enabled",   true);
+	public static final Setting<Integer> HtmlRenderCacheSize      = new IntegerSetting(servletsGroup, "HtmlServlet", "HtmlServlet.rendercache.size",      64);
 
 	public static final Setting<String> WebsocketServletPath       = new StringSetting(servletsGroup,  "WebSocketServlet", "WebSocketServlet.path",              "/structr/ws/*");
 	public static final Setting<String> WebsocketServletClass      = new StringSetting(servletsGroup,  "WebSocketServlet", "WebSocketServlet.class",             "org.structr.websocket.servlet.WebSocketServlet");
@@ -188,6 +204,8 @@ public class Settings {
 	public static final Setting<Boolean> WebsocketUserAutologin    = new BooleanSetting(servletsGroup, "WebSocketServlet", "WebSocketServlet.user.autologin",    false);
 	public static final Setting<Boolean> WebsocketUserAutocreate   = new BooleanSetting(servletsGroup, "WebSocketServlet", "WebSocketServlet.user.autocreate",   false);
 	public static final Setting<Boolean> WebsocketFrontendAccess   = new BooleanSetting(servletsGroup, "WebSocketServlet", "WebSocketServlet.frontendAccess",    false);
+	public static final Setting<Integer> WebsocketBroadcastThreads = new IntegerSetting(servletsGroup, "WebSocketServlet", "WebSocketServlet.broadcast.threads",  4);
+	public static final Setting<Integer> WebsocketBroadcastQueue   = new IntegerSetting(servletsGroup, "WebSocketServlet", "WebSocketServlet.broadcast.queuesize", 1000);
 
 	public static final Setting<String> CsvServletPath       = new StringSetting(servletsGroup,  "CsvServlet", "CsvServlet.path",              "/structr/csv/*");
 	public static final Setting<String> CsvServletClass      = new StringSetting(servletsGroup,  "CsvServlet", "CsvServlet.class",             "org.structr.rest.servlet.CsvServlet");
@@ -35,6 +35,28 @@ public interface Node extends PropertyContainer {
 
 	boolean hasRelationshipTo(final RelationshipType relationshipType, final Node targetNode);
 
+	/**
+	 * Returns the outgoing relationship of the given type from this node to
+	 * the given node, without loading the other relationships of this node.
+	 *
+	 * @param relationshipType the relationship type
+	 * @param targetNode the end node of the relationship
+	 *
+	 * @return the relationship, or null if the nodes are not related
+	 */
+	Relationship getRelationshipTo(final RelationshipType relationshipType, final Node targetNode);
+
+	/**
+	 * Indicates whether this node has at least one relationship of the
+	 * given type in the given direction, without loading the relationships.
+	 *
+	 * @param direction the direction
+	 * @param relationshipType the relationship type
+	 *
+	 * @return whether a relationship exists
+	 */
+	boolean hasRelationships(final Direction direction, final RelationshipType relationshipType);
+
 	Iterable<Relationship> getRelationships();
 	Iterable<Relationship> getRelationships(final Direction direction);
 	Iterable<Relationship> getRelationships(final Direction direction, final RelationshipType relationshipType);
@@ -0,0 +1,57 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.api.graph;
+
+import java.util.Map;
+
+/**
+ * The start node, end node, type and initial properties of a relationship
+ * that is to be created with {@link org.structr.api.DatabaseService#createRelationships}.
+ */
+public class RelationshipSpec {
+
+	private Map<String, Object> properties = null;
+	private RelationshipType type          = null;
+	private Node startNode                 = null;
+	private Node endNode                   = null;
+
+	public RelationshipSpec(final Node startNode, final Node endNode, final RelationshipType type, final Map<String, Object> properties) {
+
+		this.startNode  = startNode;
+		this.endNode    = endNode;
+		this.type       = type;
+		this.properties = properties;
+	}
+
+	public Node getStartNode() {
+		return startNode;
+	}
+
+	public Node getEndNode() {
+		return endNode;
+	}
+
+	public RelationshipType getType() {
+		return type;
+	}
+
+	public Map<String, Object> getProperties() {
+		return properties;
+	}
+}
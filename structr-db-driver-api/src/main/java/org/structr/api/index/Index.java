@@ -32,4 +32,25 @@ public interface Index<T> {
 	void remove(final T t, final String key);
 
 	QueryResult<T> query(final QueryPredicate predicate);
+
+	/**
+	 * Returns the given range of the results of the given predicate.
+	 *
+	 * @param predicate the predicate
+	 * @param offset the number of results to skip
+	 * @param limit the maximum number of results, or -1 for all results
+	 *
+	 * @return the results
+	 */
+	QueryResult<T> query(final QueryPredicate predicate, final int offset, final int limit);
+
+	/**
+	 * Returns the number of results of the given predicate, or -1 if
+	 * the results cannot be counted without reading them.
+	 *
+	 * @param predicate the predicate
+	 *
+	 * @return the number of results or -1
+	 */
+	long count(final QueryPredicate predicate);
 }
@@ -18,6 +18,8 @@
  */
 package org.structr.api.search;
 
+import java.util.Collections;
+import java.util.List;
 
 public interface QueryPredicate {
 
@@ -39,4 +41,25 @@ public interface QueryPredicate {
 	String getSortKey();
 	SortType getSortType();
 	boolean sortDescending();
+
+	/**
+	 * Indicates whether the sort key of this predicate was requested
+	 * explicitly, i.e. whether the results must be returned in a total
+	 * order instead of the natural order of the database.
+	 *
+	 * @return whether an explicit sort key was requested
+	 */
+	default boolean hasExplicitSortKey() {
+		return false;
+	}
+
+	/**
+	 * Additional sort keys that are applied in the given order if the
+	 * values of all preceding sort keys are equal.
+	 *
+	 * @return the secondary sort keys
+	 */
+	default List<SortSpec> getSecondarySortSpecs() {
+		return Collections.emptyList();
+	}
 }
@@ -0,0 +1,48 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.api.search;
+
+/**
+ * A sort key with its sort type and direction.
+ */
+public class SortSpec {
+
+	private String sortKey         = null;
+	private SortType sortType      = null;
+	private boolean sortDescending = false;
+
+	public SortSpec(final String sortKey, final SortType sortType, final boolean sortDescending) {
+
+		this.sortKey        = sortKey;
+		this.sortType       = sortType;
+		this.sortDescending = sortDescending;
+	}
+
+	public String getSortKey() {
+		return sortKey;
+	}
+
+	public SortType getSortType() {
+		return sortType;
+	}
+
+	public boolean sortDescending() {
+		return sortDescending;
+	}
+}
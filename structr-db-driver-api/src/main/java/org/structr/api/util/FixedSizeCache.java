@@ -18,67 +18,627 @@
  */
 package org.structr.api.util;
 
-import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import org.apache.commons.collections4.map.LRUMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
 
 /**
- * A map-like storage structure with a fixed maximum size that
- * removes the least recently used entry when the insertion of
- * a new entry causes the map to exceed the specified maximum
- * size.
+ * A map-like storage structure with a fixed maximum size that removes
+ * entries when the insertion of a new entry causes the map to exceed
+ * the specified maximum size.
+ *
+ * The cache is split into independently locked segments, lookups never
+ * block. Each segment uses a W-TinyLFU policy: new entries are stored
+ * in a small LRU admission window, entries that leave the window are
+ * only admitted to the main LRU area if they were not accessed less
+ * frequently than the entry they would replace. Access frequencies are
+ * estimated with a compact count-min sketch that is aged periodically,
+ * so that frequently used entries survive scans of one-time accesses.
+ *
+ * Values that implement {@link Cachable} are notified when they are
+ * evicted due to size restrictions.
  *
  * @param <K>
  * @param <V>
  */
 public class FixedSizeCache<K, V> {
 
-	private Map<K, V> cache  = null;
+	private static final int ADMISSION_TOLERANCE = 1;
+	private static final int MIN_SEGMENT_SIZE    = 256;
+	private static final int MAX_SEGMENTS        = 64;
+
+	private final Map<K, Entry<K, V>> data = new ConcurrentHashMap<>();
+	private final LongAdder evictions      = new LongAdder();
+	private final LongAdder misses         = new LongAdder();
+	private final LongAdder hits           = new LongAdder();
+	private Segment<K, V>[] segments       = null;
+	private int maxSize                    = 0;
+	private int mask                       = 0;
 
 	public FixedSizeCache(final int maxSize) {
-		this.cache   = Collections.synchronizedMap(new InvalidatingLRUMap<>(maxSize));
+
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("FixedSizeCache max size must be greater than 0");
+		}
+
+		int segmentCount = 1;
+
+		while (segmentCount * 2 <= MAX_SEGMENTS && segmentCount * 2 * MIN_SEGMENT_SIZE <= maxSize) {
+			segmentCount *= 2;
+		}
+
+		this.segments = new Segment[segmentCount];
+		this.mask     = segmentCount - 1;
+		this.maxSize  = maxSize;
+
+		for (int i=0; i<segmentCount; i++) {
+
+			// distribute the remainder over the first segments
+			segments[i] = new Segment<>(data, evictions, maxSize / segmentCount + (i < maxSize % segmentCount ? 1 : 0));
+		}
+	}
+
+	public void put(final K key, final V value) {
+
+		if (key != null) {
+			segmentFor(key).put(key, value, false);
+		}
+	}
+
+	public V get(final K key) {
+
+		if (key != null) {
+
+			final Segment<K, V> segment = segmentFor(key);
+			final Entry<K, V> entry     = data.get(key);
+
+			if (entry != null) {
+
+				hits.increment();
+				segment.recordAccess(key, entry);
+
+				return entry.value;
+			}
+
+			misses.increment();
+			segment.recordAccess(key, null);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Stores the given value if no value is stored for the given key,
+	 * returns the value that is associated with the key after this call.
+	 *
+	 * @param key
+	 * @param value
+	 * @return the existing value or the given value
+	 */
+	public V putIfAbsent(final K key, final V value) {
+
+		if (key != null) {
+
+			final Entry<K, V> entry = data.get(key);
+			if (entry != null) {
+
+				return entry.value;
+			}
+
+			return segmentFor(key).put(key, value, true);
+		}
+
+		return value;
+	}
+
+	public void remove(final K key) {
+
+		if (key != null) {
+			segmentFor(key).remove(key);
+		}
+	}
+
+	public void clear() {
+
+		for (final Segment<K, V> segment : segments) {
+			segment.clear();
+		}
+	}
+
+	/**
+	 * Removes all values that match the given predicate without
+	 * notifying them, returns the number of removed entries.
+	 *
+	 * @param predicate
+	 * @return the number of removed entries
+	 */
+	public int removeAll(final Predicate<V> predicate) {
+
+		int count = 0;
+
+		for (final Segment<K, V> segment : segments) {
+			count += segment.removeAll(predicate);
+		}
+
+		return count;
+	}
+
+	public int size() {
+		return data.size();
+	}
+
+	public boolean isEmpty() {
+		return data.isEmpty();
+	}
+
+	public double getHitRate() {
+
+		final long hitCount = hits.sum();
+		final long total    = hitCount + misses.sum();
+
+		if (total > 0) {
+			return (double)hitCount / (double)total;
+		}
+
+		return 0.0;
 	}
 
-	public synchronized void put(final K key, final V value) {
-		cache.put(key, value);
+	public Map<String, Object> getStatistics() {
+
+		final Map<String, Object> statistics = new LinkedHashMap<>();
+
+		statistics.put("size",      size());
+		statistics.put("maxSize",   maxSize);
+		statistics.put("segments",  segments.length);
+		statistics.put("hits",      hits.sum());
+		statistics.put("misses",    misses.sum());
+		statistics.put("hitRate",   getHitRate());
+		statistics.put("evictions", evictions.sum());
+
+		return statistics;
 	}
 
-	public synchronized V get(final K key) {
-		return cache.get(key);
+	// ----- private methods -----
+	private Segment<K, V> segmentFor(final Object key) {
+		return segments[spread(key.hashCode()) & mask];
 	}
 
-	public synchronized void remove(final K key) {
-		cache.remove(key);
+	private static int spread(final int hashCode) {
+
+		int h = hashCode * 0x9E3779B9;
+
+		return h ^ (h >>> 16);
 	}
 
-	public synchronized void clear() {
-		cache.clear();
+	// ----- nested classes -----
+	private static class Entry<K, V> {
+
+		private Entry<K, V> prev = null;
+		private Entry<K, V> next = null;
+		private boolean inWindow = true;
+		private boolean removed  = false;
+		private volatile V value = null;
+		private K key            = null;
+
+		public Entry(final K key, final V value) {
+
+			this.key   = key;
+			this.value = value;
+		}
 	}
 
-	public synchronized int size() {
-		return cache.size();
+	private static class AccessOrderList<K, V> {
+
+		private Entry<K, V> head = null;
+		private Entry<K, V> tail = null;
+		private int size         = 0;
+
+		public void addLast(final Entry<K, V> entry) {
+
+			entry.prev = tail;
+			entry.next = null;
+
+			if (tail != null) {
+				tail.next = entry;
+			} else {
+				head = entry;
+			}
+
+			tail = entry;
+			size++;
+		}
+
+		public void unlink(final Entry<K, V> entry) {
+
+			if (entry.prev != null) {
+				entry.prev.next = entry.next;
+			} else {
+				head = entry.next;
+			}
+
+			if (entry.next != null) {
+				entry.next.prev = entry.prev;
+			} else {
+				tail = entry.prev;
+			}
+
+			entry.prev = null;
+			entry.next = null;
+			size--;
+		}
+
+		public void moveToEnd(final Entry<K, V> entry) {
+
+			if (entry != tail) {
+
+				unlink(entry);
+				addLast(entry);
+			}
+		}
+
+		public void clear() {
+
+			head = null;
+			tail = null;
+			size = 0;
+		}
 	}
 
-	public synchronized boolean isEmpty() {
-		return cache.isEmpty();
+	private static class Segment<K, V> {
+
+		private final AccessOrderList<K, V> window = new AccessOrderList<>();
+		private final AccessOrderList<K, V> main   = new AccessOrderList<>();
+		private final ReentrantLock lock           = new ReentrantLock();
+		private Map<K, Entry<K, V>> data           = null;
+		private FrequencySketch sketch             = null;
+		private LongAdder evictions                = null;
+		private int windowSize                     = 0;
+		private int mainSize                       = 0;
+
+		public Segment(final Map<K, Entry<K, V>> data, final LongAdder evictions, final int capacity) {
+
+			this.data       = data;
+			this.evictions  = evictions;
+			this.windowSize = Math.max(1, capacity / 100);
+			this.mainSize   = capacity - windowSize;
+			this.sketch     = new FrequencySketch(capacity);
+		}
+
+		/**
+		 * Records an access to the given key without blocking, accesses
+		 * are dropped if the segment is locked by another thread.
+		 */
+		public void recordAccess(final K key, final Entry<K, V> entry) {
+
+			if (lock.tryLock()) {
+
+				try {
+
+					sketch.increment(key.hashCode());
+
+					if (entry != null && !entry.removed) {
+
+						if (entry.inWindow) {
+
+							window.moveToEnd(entry);
+
+						} else {
+
+							main.moveToEnd(entry);
+						}
+					}
+
+				} finally {
+
+					lock.unlock();
+				}
+			}
+		}
+
+		public V put(final K key, final V value, final boolean onlyIfAbsent) {
+
+			Entry<K, V> evicted = null;
+
+			lock.lock();
+			try {
+
+				sketch.increment(key.hashCode());
+
+				final Entry<K, V> existing = data.get(key);
+				if (existing != null) {
+
+					if (onlyIfAbsent) {
+						return existing.value;
+					}
+
+					existing.value = value;
+
+					if (existing.inWindow) {
+
+						window.moveToEnd(existing);
+
+					} else {
+
+						main.moveToEnd(existing);
+					}
+
+					return value;
+				}
+
+				final Entry<K, V> entry = new Entry<>(key, value);
+
+				data.put(key, entry);
+				window.addLast(entry);
+
+				evicted = evict();
+
+			} finally {
+
+				lock.unlock();
+			}
+
+			// notify evicted value outside of the lock
+			if (evicted != null) {
+
+				evictions.increment();
+
+				if (evicted.value instanceof Cachable) {
+
+					((Cachable)evicted.value).onRemoveFromCache();
+				}
+			}
+
+			return value;
+		}
+
+		public void remove(final K key) {
+
+			lock.lock();
+			try {
+
+				final Entry<K, V> entry = data.remove(key);
+				if (entry != null) {
+
+					unlink(entry);
+				}
+
+			} finally {
+
+				lock.unlock();
+			}
+		}
+
+		public void clear() {
+
+			lock.lock();
+			try {
+
+				clear(window);
+				clear(main);
+
+			} finally {
+
+				lock.unlock();
+			}
+		}
+
+		public int removeAll(final Predicate<V> predicate) {
+
+			lock.lock();
+			try {
+
+				return removeAll(window, predicate) + removeAll(main, predicate);
+
+			} finally {
+
+				lock.unlock();
+			}
+		}
+
+		// ----- private methods -----
+		/**
+		 * Moves the oldest entry of the admission window to the main area
+		 * if the window is full, returns the entry that was evicted or null.
+		 */
+		private Entry<K, V> evict() {
+
+			if (window.size > windowSize) {
+
+				final Entry<K, V> candidate = window.head;
+
+				window.unlink(candidate);
+				candidate.inWindow = false;
+
+				if (main.size < mainSize) {
+
+					main.addLast(candidate);
+
+				} else {
+
+					final Entry<K, V> victim = main.head;
+					final Entry<K, V> loser;
+
+					// reject the candidate only if the least recently used entry of the
+					// main area was accessed more often, the tolerance compensates for
+					// the estimation error so that uniform access degrades to LRU
+					if (victim != null && sketch.frequency(candidate.key.hashCode()) + ADMISSION_TOLERANCE >= sketch.frequency(victim.key.hashCode())) {
+
+						main.unlink(victim);
+						main.addLast(candidate);
+
+						loser = victim;
+
+					} else {
+
+						loser = candidate;
+					}
+
+					loser.removed = true;
+					data.remove(loser.key, loser);
+
+					return loser;
+				}
+			}
+
+			return null;
+		}
+
+		private void unlink(final Entry<K, V> entry) {
+
+			entry.removed = true;
+
+			if (entry.inWindow) {
+
+				window.unlink(entry);
+
+			} else {
+
+				main.unlink(entry);
+			}
+		}
+
+		private void clear(final AccessOrderList<K, V> list) {
+
+			for (Entry<K, V> entry = list.head; entry != null; entry = entry.next) {
+
+				entry.removed = true;
+				data.remove(entry.key, entry);
+			}
+
+			list.clear();
+		}
+
+		private int removeAll(final AccessOrderList<K, V> list, final Predicate<V> predicate) {
+
+			Entry<K, V> entry = list.head;
+			int count         = 0;
+
+			while (entry != null) {
+
+				final Entry<K, V> next = entry.next;
+
+				if (predicate.test(entry.value)) {
+
+					entry.removed = true;
+					list.unlink(entry);
+					data.remove(entry.key, entry);
+
+					count++;
+				}
+
+				entry = next;
+			}
+
+			return count;
+		}
 	}
 
-	private static class InvalidatingLRUMap<K, V> extends LRUMap<K, V> {
+	/**
+	 * A count-min sketch with four hash functions and saturating 4-bit counters that
+	 * estimates the access frequency of a key. All counters are halved
+	 * after a number of increments proportional to the capacity, so that
+	 * the sketch adapts to changing access patterns. Instances are not
+	 * thread-safe, they are only accessed while holding the segment lock.
+	 */
+	private static class FrequencySketch {
+
+		private final int[] indexes = new int[4];
+		private byte[] table        = null;
+		private int sampleSize      = 0;
+		private int additions       = 0;
+		private int tableMask       = 0;
+
+		public FrequencySketch(final int capacity) {
+
+			int length = 64;
+
+			// about 16 counters per entry keep the estimation error low
+			while (length < (long)capacity * 16 && length < (1 << 30)) {
+				length *= 2;
+			}
+
+			// two 4-bit counters per byte
+			this.table      = new byte[length / 2];
+			this.tableMask  = length - 1;
+			this.sampleSize = (int)Math.min(Integer.MAX_VALUE, Math.max(10L, capacity * 10L));
+		}
+
+		public void increment(final int hashCode) {
+
+			final int frequency = frequency(hashCode);
+			if (frequency < 15) {
+
+				// conservative update: only the smallest counters are
+				// incremented, which reduces the overestimation error
+				for (final int index : indexes) {
+
+					if (counterAt(index) == frequency) {
+						incrementAt(index);
+					}
+				}
+
+				if (++additions >= sampleSize) {
+					reset();
+				}
+			}
+		}
+
+		public int frequency(final int hashCode) {
+
+			int frequency = Integer.MAX_VALUE;
+
+			computeIndexes(hashCode);
+
+			for (final int index : indexes) {
+				frequency = Math.min(frequency, counterAt(index));
+			}
+
+			return frequency;
+		}
+
+		// ----- private methods -----
+		private void computeIndexes(final int hashCode) {
+
+			int h = hashCode * 0x85EBCA6B;
+
+			h ^= h >>> 13;
+			h *= 0xC2B2AE35;
+			h ^= h >>> 16;
+
+			// double hashing, the step must be odd to reach all counters
+			final int step = (Integer.rotateLeft(h, 16) * 0x9E3779B9) | 1;
+
+			for (int i=0; i<indexes.length; i++) {
+				indexes[i] = (h + i * step) & tableMask;
+			}
+		}
+
+		private int counterAt(final int index) {
+
+			final int shift = (index & 1) << 2;
+
+			return (table[index >>> 1] >>> shift) & 0x0F;
+		}
+
+		private void incrementAt(final int index) {
+
+			final int shift = (index & 1) << 2;
 
-		public InvalidatingLRUMap(final int maxSize) {
-			super(maxSize, true);
+			table[index >>> 1] += (1 << shift);
 		}
 
-		@Override
-		protected boolean removeLRU(final LinkEntry<K, V> entry) {
+		private void reset() {
 
-			final V value = entry.getValue();
-			if (value != null && value instanceof Cachable) {
+			for (int i=0; i<table.length; i++) {
 
-				((Cachable)value).onRemoveFromCache();
+				// halve both 4-bit counters in this byte
+				table[i] = (byte)((table[i] >>> 1) & 0x77);
 			}
 
-			return true;
+			additions = additions / 2;
 		}
 	}
 }
@@ -0,0 +1,452 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.api.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A compact map from 32-character hexadecimal UUIDs to internal database
+ * IDs that is intended to hold the IDs of all entities in the database.
+ *
+ * UUIDs are stored as two primitive long values, together with the ID in
+ * open-addressing hash tables with linear probing, so an entry occupies 24
+ * bytes. The map is split into independently locked segments that grow
+ * separately. The tables can be stored on the heap, in direct (off-heap)
+ * memory or in memory-mapped temporary files.
+ *
+ * UUIDs that are not 32-character hexadecimal strings are not supported
+ * and silently ignored.
+ */
+public class UuidMap {
+
+	public enum Storage { heap, direct, mapped }
+
+	private static final int SEGMENT_COUNT     = 64;
+	private static final int MIN_CAPACITY      = 16;
+	private static final int MAX_CAPACITY      = 1 << 26;
+	private static final int SLOT_SIZE         = 3;
+	private static final double LOAD_FACTOR    = 0.75;
+
+	private final Segment[] segments = new Segment[SEGMENT_COUNT];
+	private final Storage storage;
+	private final File directory;
+
+	/**
+	 * Creates a new map that is sized for the given number of entries.
+	 *
+	 * @param expectedSize the expected number of entries
+	 * @param storage the storage type of the hash tables
+	 * @param directory the directory for memory-mapped files, only used with {@link Storage#mapped}
+	 */
+	public UuidMap(final int expectedSize, final Storage storage, final File directory) {
+
+		this.storage   = storage;
+		this.directory = directory;
+
+		if (Storage.mapped.equals(storage)) {
+			directory.mkdirs();
+		}
+
+		final int capacity = capacityFor(expectedSize / SEGMENT_COUNT);
+
+		for (int i=0; i<SEGMENT_COUNT; i++) {
+			segments[i] = new Segment(i, capacity);
+		}
+	}
+
+	public long get(final String uuid) {
+
+		final long[] key = parse(uuid);
+		if (key != null) {
+
+			final int hash = hash(key[0], key[1]);
+
+			return segmentFor(hash).get(hash, key[0], key[1]);
+		}
+
+		return -1L;
+	}
+
+	public void put(final String uuid, final long id) {
+
+		final long[] key = parse(uuid);
+		if (key != null && id >= 0) {
+
+			final int hash = hash(key[0], key[1]);
+
+			segmentFor(hash).put(hash, key[0], key[1], id);
+		}
+	}
+
+	public void remove(final String uuid) {
+
+		final long[] key = parse(uuid);
+		if (key != null) {
+
+			final int hash = hash(key[0], key[1]);
+
+			segmentFor(hash).remove(hash, key[0], key[1]);
+		}
+	}
+
+	public void clear() {
+
+		for (final Segment segment : segments) {
+			segment.clear();
+		}
+	}
+
+	public int size() {
+
+		int size = 0;
+
+		for (final Segment segment : segments) {
+			size += segment.size();
+		}
+
+		return size;
+	}
+
+	/**
+	 * Returns the number of bytes occupied by the hash tables of this map.
+	 *
+	 * @return the memory footprint in bytes
+	 */
+	public long getMemoryFootprint() {
+
+		long bytes = 0L;
+
+		for (final Segment segment : segments) {
+			bytes += segment.capacity() * SLOT_SIZE * 8L;
+		}
+
+		return bytes;
+	}
+
+	public Storage getStorage() {
+		return storage;
+	}
+
+	/**
+	 * Releases the hash tables of this map and removes any memory-mapped
+	 * files. The map must not be used afterwards.
+	 */
+	public void close() {
+
+		for (final Segment segment : segments) {
+			segment.close();
+		}
+	}
+
+	/**
+	 * Indicates whether the given string can be stored in this map.
+	 *
+	 * @param uuid
+	 * @return whether the given string is a 32-character hexadecimal UUID
+	 */
+	public static boolean isSupported(final String uuid) {
+		return parse(uuid) != null;
+	}
+
+	// ----- private methods -----
+	private Segment segmentFor(final int hash) {
+		return segments[(hash >>> 26) & (SEGMENT_COUNT - 1)];
+	}
+
+	private LongBuffer allocate(final int index, final int capacity) {
+
+		final int bytes = capacity * SLOT_SIZE * 8;
+
+		switch (storage) {
+
+			case direct:
+				return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder()).asLongBuffer();
+
+			case mapped:
+
+				final File file = new File(directory, "uuids-" + index + "-" + capacity + ".map");
+
+				try (final RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+
+					raf.setLength(0);
+					raf.setLength(bytes);
+
+					// the mapping stays valid after the file is closed and removed
+					final LongBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, bytes).order(ByteOrder.nativeOrder()).asLongBuffer();
+
+					if (!file.delete()) {
+						file.deleteOnExit();
+					}
+
+					return buffer;
+
+				} catch (IOException ioex) {
+					throw new IllegalStateException("Unable to map UUID table file " + file.getAbsolutePath(), ioex);
+				}
+
+			default:
+				return LongBuffer.allocate(capacity * SLOT_SIZE);
+		}
+	}
+
+	private static int capacityFor(final int size) {
+
+		int capacity = MIN_CAPACITY;
+
+		while (capacity < MAX_CAPACITY && capacity * LOAD_FACTOR < size) {
+			capacity <<= 1;
+		}
+
+		return capacity;
+	}
+
+	private static int hash(final long high, final long low) {
+
+		// finalization step of MurmurHash3
+		long h = high * 31 + low;
+
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+
+		return (int)h;
+	}
+
+	private static long[] parse(final String uuid) {
+
+		if (uuid == null || uuid.length() != 32) {
+			return null;
+		}
+
+		long high = 0L;
+		long low  = 0L;
+
+		for (int i=0; i<32; i++) {
+
+			final int digit = Character.digit(uuid.charAt(i), 16);
+			if (digit < 0) {
+
+				return null;
+			}
+
+			if (i < 16) {
+
+				high = (high << 4) | digit;
+
+			} else {
+
+				low = (low << 4) | digit;
+			}
+		}
+
+		return new long[] { high, low };
+	}
+
+	// ----- nested classes -----
+	/**
+	 * One hash table of the map. A slot consists of the two halves of
+	 * the UUID and the ID plus one, so that zero marks an empty slot.
+	 */
+	private class Segment {
+
+		private LongBuffer table = null;
+		private int capacity     = 0;
+		private int size         = 0;
+		private int index        = 0;
+
+		public Segment(final int index, final int capacity) {
+
+			this.table    = allocate(index, capacity);
+			this.capacity = capacity;
+			this.index    = index;
+		}
+
+		public synchronized long get(final int hash, final long high, final long low) {
+
+			final int mask = capacity - 1;
+
+			for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+
+				final int offset = slot * SLOT_SIZE;
+				final long value = table.get(offset + 2);
+
+				if (value == 0L) {
+
+					return -1L;
+				}
+
+				if (table.get(offset) == high && table.get(offset + 1) == low) {
+
+					return value - 1;
+				}
+			}
+		}
+
+		public synchronized void put(final int hash, final long high, final long low, final long id) {
+
+			if (size >= capacity * LOAD_FACTOR) {
+				resize();
+			}
+
+			if (insert(table, capacity, hash, high, low, id + 1)) {
+				size++;
+			}
+		}
+
+		public synchronized void remove(final int hash, final long high, final long low) {
+
+			final int mask = capacity - 1;
+			int slot       = hash & mask;
+
+			while (true) {
+
+				final int offset = slot * SLOT_SIZE;
+				if (table.get(offset + 2) == 0L) {
+
+					// not found
+					return;
+				}
+
+				if (table.get(offset) == high && table.get(offset + 1) == low) {
+					break;
+				}
+
+				slot = (slot + 1) & mask;
+			}
+
+			// shift following entries back so that no probe sequence is interrupted
+			int free = slot;
+
+			for (int next = (free + 1) & mask;; next = (next + 1) & mask) {
+
+				final int offset = next * SLOT_SIZE;
+				final long value = table.get(offset + 2);
+
+				if (value == 0L) {
+					break;
+				}
+
+				final long nextHigh = table.get(offset);
+				final long nextLow  = table.get(offset + 1);
+				final int home      = hash(nextHigh, nextLow) & mask;
+
+				// move the entry if its home slot is not in (free, next]
+				if (((next - home) & mask) >= ((next - free) & mask)) {
+
+					write(table, free, nextHigh, nextLow, value);
+					free = next;
+				}
+			}
+
+			write(table, free, 0L, 0L, 0L);
+			size--;
+		}
+
+		public synchronized void clear() {
+
+			close();
+
+			this.table    = allocate(index, MIN_CAPACITY);
+			this.capacity = MIN_CAPACITY;
+			this.size     = 0;
+		}
+
+		public synchronized void close() {
+
+			this.table    = null;
+			this.capacity = 0;
+			this.size     = 0;
+		}
+
+		public synchronized int size() {
+			return size;
+		}
+
+		public synchronized long capacity() {
+			return capacity;
+		}
+
+		// ----- private methods -----
+		private void resize() {
+
+			if (capacity >= MAX_CAPACITY) {
+				throw new IllegalStateException("UuidMap segment capacity exceeded");
+			}
+
+			final int newCapacity     = capacity << 1;
+			final LongBuffer newTable = allocate(index, newCapacity);
+
+			for (int slot=0; slot<capacity; slot++) {
+
+				final int offset = slot * SLOT_SIZE;
+				final long value = table.get(offset + 2);
+
+				if (value != 0L) {
+
+					final long high = table.get(offset);
+					final long low  = table.get(offset + 1);
+
+					insert(newTable, newCapacity, hash(high, low), high, low, value);
+				}
+			}
+
+			this.table    = newTable;
+			this.capacity = newCapacity;
+		}
+
+		private boolean insert(final LongBuffer target, final int targetCapacity, final int hash, final long high, final long low, final long value) {
+
+			final int mask = targetCapacity - 1;
+
+			for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+
+				final int offset = slot * SLOT_SIZE;
+
+				if (target.get(offset + 2) == 0L) {
+
+					write(target, slot, high, low, value);
+					return true;
+				}
+
+				if (target.get(offset) == high && target.get(offset + 1) == low) {
+
+					target.put(offset + 2, value);
+					return false;
+				}
+			}
+		}
+
+		private void write(final LongBuffer target, final int slot, final long high, final long low, final long value) {
+
+			final int offset = slot * SLOT_SIZE;
+
+			target.put(offset,     high);
+			target.put(offset + 1, low);
+			target.put(offset + 2, value);
+		}
+	}
+}
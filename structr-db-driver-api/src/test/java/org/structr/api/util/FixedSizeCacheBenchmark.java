@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.api.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.collections4.map.LRUMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark that compares {@link FixedSizeCache} with the previous
+ * implementation (a globally synchronized LRU map) under a mixed,
+ * skewed read/write workload on multiple threads.
+ *
+ * This class is not run by the test suite, run it with
+ *
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.structr.api.util.FixedSizeCacheBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class FixedSizeCacheBenchmark {
+
+	private static final int KEY_SPACE = 1 << 20;
+
+	@Param({ "10000", "100000" })
+	private int cacheSize = 0;
+
+	@Param({ "90", "50" })
+	private int readPercentage = 0;
+
+	private SynchronizedLRUCache<Long, Long> synchronizedCache = null;
+	private FixedSizeCache<Long, Long> fixedSizeCache          = null;
+	private Long[] keys                                        = null;
+
+	@Setup
+	public void setup() {
+
+		final ThreadLocalRandom random = ThreadLocalRandom.current();
+
+		synchronizedCache = new SynchronizedLRUCache<>(cacheSize);
+		fixedSizeCache    = new FixedSizeCache<>(cacheSize);
+		keys              = new Long[KEY_SPACE];
+
+		// zipf-like distribution: a small number of keys is accessed very often
+		for (int i=0; i<KEY_SPACE; i++) {
+			keys[i] = (long)(Math.pow(random.nextDouble(), 4.0) * cacheSize * 4);
+		}
+
+		for (int i=0; i<cacheSize; i++) {
+
+			synchronizedCache.put(keys[i], keys[i]);
+			fixedSizeCache.put(keys[i], keys[i]);
+		}
+	}
+
+	@Benchmark
+	public Long fixedSizeCache() {
+
+		final ThreadLocalRandom random = ThreadLocalRandom.current();
+		final Long key                 = keys[random.nextInt(KEY_SPACE)];
+
+		if (random.nextInt(100) < readPercentage) {
+
+			final Long value = fixedSizeCache.get(key);
+			if (value != null) {
+
+				return value;
+			}
+		}
+
+		fixedSizeCache.put(key, key);
+
+		return key;
+	}
+
+	@Benchmark
+	public Long synchronizedLRUCache() {
+
+		final ThreadLocalRandom random = ThreadLocalRandom.current();
+		final Long key                 = keys[random.nextInt(KEY_SPACE)];
+
+		if (random.nextInt(100) < readPercentage) {
+
+			final Long value = synchronizedCache.get(key);
+			if (value != null) {
+
+				return value;
+			}
+		}
+
+		synchronizedCache.put(key, key);
+
+		return key;
+	}
+
+	public static void main(final String[] args) throws RunnerException {
+
+		new Runner(new OptionsBuilder().include(FixedSizeCacheBenchmark.class.getSimpleName()).build()).run();
+	}
+
+	// ----- nested classes -----
+	/**
+	 * The previous implementation of FixedSizeCache as a baseline.
+	 */
+	private static class SynchronizedLRUCache<K, V> {
+
+		private LRUMap<K, V> cache = null;
+
+		public SynchronizedLRUCache(final int maxSize) {
+			cache = new LRUMap<>(maxSize, true);
+		}
+
+		public synchronized void put(final K key, final V value) {
+			cache.put(key, value);
+		}
+
+		public synchronized V get(final K key) {
+			return cache.get(key);
+		}
+	}
+}
@@ -18,6 +18,8 @@
  */
 package org.structr.api.util;
 
+import java.util.LinkedList;
+import java.util.List;
 import org.junit.Assert;
 
 /**
@@ -56,4 +58,71 @@ public class FixedSizeCacheTest {
 		}
 
 	}
+
+	@org.junit.Test
+	public void testFrequentEntriesSurviveScan() {
+
+		final FixedSizeCache<Long, Long> test = new FixedSizeCache<>(100);
+
+		for (long i=0; i<50; i++) {
+			test.put(i, i);
+		}
+
+		// access the first entries frequently
+		for (int j=0; j<10; j++) {
+
+			for (long i=0; i<50; i++) {
+				test.get(i);
+			}
+		}
+
+		// a scan of entries that are accessed only once
+		for (long i=1000; i<1500; i++) {
+			test.put(i, i);
+		}
+
+		Assert.assertEquals("Invalid FixedSizeCache size", 100, test.size());
+
+		for (long i=0; i<50; i++) {
+			Assert.assertEquals("Frequently accessed entry was evicted by scan", Long.valueOf(i), test.get(i));
+		}
+	}
+
+	@org.junit.Test
+	public void testEvictionCallback() {
+
+		final FixedSizeCache<Long, TestCachable> test = new FixedSizeCache<>(10);
+		final List<TestCachable> values               = new LinkedList<>();
+
+		for (long i=0; i<20; i++) {
+
+			final TestCachable value = new TestCachable();
+
+			values.add(value);
+			test.put(i, value);
+		}
+
+		int evicted = 0;
+
+		for (final TestCachable value : values) {
+
+			if (value.removed) {
+				evicted++;
+			}
+		}
+
+		Assert.assertEquals("Invalid number of eviction callbacks", 10, evicted);
+		Assert.assertEquals("Invalid number of evictions", 10L, test.getStatistics().get("evictions"));
+	}
+
+	// ----- nested classes -----
+	private static class TestCachable implements Cachable {
+
+		private boolean removed = false;
+
+		@Override
+		public void onRemoveFromCache() {
+			removed = true;
+		}
+	}
 }
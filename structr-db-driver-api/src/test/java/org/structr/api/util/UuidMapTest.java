@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.api.util;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class UuidMapTest {
+
+	@Test
+	public void testHeapStorage() throws Exception {
+		testMap(new UuidMap(100, UuidMap.Storage.heap, null));
+	}
+
+	@Test
+	public void testDirectStorage() throws Exception {
+		testMap(new UuidMap(100, UuidMap.Storage.direct, null));
+	}
+
+	@Test
+	public void testMappedStorage() throws Exception {
+
+		final File directory = Files.createTempDirectory("uuidmap").toFile();
+
+		testMap(new UuidMap(100, UuidMap.Storage.mapped, directory));
+
+		// mapped files are removed immediately
+		assertEquals("Mapped UuidMap files should be removed", 0, directory.list().length);
+
+		directory.delete();
+	}
+
+	@Test
+	public void testUnsupportedUuids() {
+
+		final UuidMap map = new UuidMap(10, UuidMap.Storage.heap, null);
+
+		map.put(null, 1L);
+		map.put("abc", 2L);
+		map.put("0123456789abcdef0123456789abcdeg", 3L);
+
+		assertEquals("Invalid UuidMap size", 0, map.size());
+		assertEquals("Unsupported UUID should not be found", -1L, map.get("abc"));
+		assertFalse(UuidMap.isSupported("0123456789abcdef0123456789abcdeg"));
+		assertTrue(UuidMap.isSupported("0123456789ABCDEF0123456789abcdef"));
+
+		map.close();
+	}
+
+	// ----- private methods -----
+	private void testMap(final UuidMap map) {
+
+		final List<String> uuids = new ArrayList<>();
+		final int count          = 100000;
+
+		for (int i=0; i<count; i++) {
+
+			final String uuid = UUID.randomUUID().toString().replaceAll("\\-", "");
+
+			uuids.add(uuid);
+			map.put(uuid, i);
+		}
+
+		assertEquals("Invalid UuidMap size", count, map.size());
+		assertTrue("UuidMap should grow beyond its expected size", map.getMemoryFootprint() >= count * 24L);
+
+		for (int i=0; i<count; i++) {
+			assertEquals("Invalid UuidMap contents", i, map.get(uuids.get(i)));
+		}
+
+		// overwrite every third entry, remove every other entry
+		for (int i=0; i<count; i+=3) {
+			map.put(uuids.get(i), i + count);
+		}
+
+		for (int i=0; i<count; i+=2) {
+			map.remove(uuids.get(i));
+		}
+
+		for (int i=0; i<count; i++) {
+
+			final long expected = i % 2 == 0 ? -1L : (i % 3 == 0 ? i + count : i);
+
+			assertEquals("Invalid UuidMap contents after removal", expected, map.get(uuids.get(i)));
+		}
+
+		assertEquals("Invalid UuidMap size", count / 2, map.size());
+
+		map.clear();
+
+		assertEquals("Invalid UuidMap size", 0, map.size());
+		assertEquals("UuidMap should be empty after clear", -1L, map.get(uuids.get(1)));
+
+		map.close();
+	}
+}
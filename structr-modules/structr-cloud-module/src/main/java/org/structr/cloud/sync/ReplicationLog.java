@@ -0,0 +1,632 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.cloud.sync;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.core.graph.ModificationEvent;
+import org.structr.core.property.PropertyKey;
+
+/**
+ * A durable, segmented append-only log of the transactions that need to be
+ * replicated to the slaves of a replication master.
+ *
+ * Each record of the log contains the modifications of one transaction and
+ * is identified by a monotonically increasing sequence number. The log is
+ * split into segment files that are named after the sequence number of
+ * their first record. Every slave has a cursor that stores the sequence
+ * number of the last record the slave has acknowledged, segments are
+ * removed as soon as all slaves have acknowledged them. The positions of
+ * every INDEX_INTERVAL-th record of a segment are kept in memory, so that a
+ * read does not need to parse the segment from its first record.
+ */
+public class ReplicationLog {
+
+	private static final Logger logger          = LoggerFactory.getLogger(ReplicationLog.class.getName());
+	private static final String SEGMENT_SUFFIX  = ".log";
+	private static final String CURSOR_SUFFIX   = ".cursor";
+	private static final int HEADER_SIZE        = 16;
+	private static final int INDEX_INTERVAL     = 32;
+
+	private final Map<Long, NavigableMap<Long, Long>> offsets = new ConcurrentHashMap<>();
+	private final Map<String, Long> cursors                   = new ConcurrentHashMap<>();
+	private final List<Long> segments                         = new ArrayList<>();
+	private FileChannel channel                               = null;
+	private Path directory                                    = null;
+	private long segmentSize                                  = 0L;
+	private long lastSequence                                 = 0L;
+
+	public ReplicationLog(final Path directory, final long segmentSize) throws IOException {
+
+		this.directory   = directory;
+		this.segmentSize = segmentSize;
+
+		open();
+	}
+
+	/**
+	 * Appends the given modification events as a single record to this
+	 * log. The record is written to disk when this method returns.
+	 *
+	 * @param modificationEvents the modifications of a transaction
+	 * @return the sequence number of the new record
+	 * @throws IOException
+	 */
+	public synchronized long append(final Collection<ModificationEvent> modificationEvents) throws IOException {
+
+		final List<Entry> entries = new ArrayList<>();
+
+		for (final ModificationEvent event : modificationEvents) {
+			entries.add(new Entry(event));
+		}
+
+		final byte[] payload = serialize(entries);
+		final CRC32 crc      = new CRC32();
+		final long sequence  = lastSequence + 1;
+
+		crc.update(payload);
+
+		if (channel == null || channel.size() >= segmentSize) {
+			roll(sequence);
+		}
+
+		indexRecord(segments.get(segments.size() - 1), sequence, channel.size());
+
+		final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+
+		buffer.putLong(sequence);
+		buffer.putInt(payload.length);
+		buffer.putInt((int)crc.getValue());
+		buffer.put(payload);
+		buffer.flip();
+
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+
+		channel.force(false);
+
+		lastSequence = sequence;
+
+		// wake up waiting senders
+		notifyAll();
+
+		return sequence;
+	}
+
+	/**
+	 * Reads up to maxRecords records that follow the given sequence number.
+	 *
+	 * @param afterSequence the sequence number of the last record that was read
+	 * @param maxRecords the maximum number of records to read
+	 * @return the records, or an empty list if there are no new records
+	 * @throws IOException
+	 */
+	public List<Record> read(final long afterSequence, final int maxRecords) throws IOException {
+
+		final List<Record> records = new ArrayList<>();
+		final List<Long> snapshot  = new ArrayList<>();
+		final long last;
+
+		synchronized (this) {
+
+			snapshot.addAll(segments);
+			last = lastSequence;
+		}
+
+		// find the segment that contains the first record to read
+		int first = 0;
+		for (int i=0; i<snapshot.size(); i++) {
+
+			if (snapshot.get(i) <= afterSequence + 1) {
+				first = i;
+			}
+		}
+
+		for (int i=first; i<snapshot.size() && records.size() < maxRecords; i++) {
+
+			final long segment                   = snapshot.get(i);
+			final NavigableMap<Long, Long> index = offsets.get(segment);
+			long position                        = 0L;
+
+			if (index != null) {
+
+				// start at the closest indexed record before the first record to read
+				final Map.Entry<Long, Long> entry = index.floorEntry(afterSequence + 1);
+				if (entry != null) {
+
+					position = entry.getValue();
+				}
+			}
+
+			try (final FileChannel file = FileChannel.open(getSegmentPath(segment), StandardOpenOption.READ)) {
+
+				file.position(position);
+
+				final DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(file)));
+
+				Record record = readRecord(input);
+				while (record != null && record.getSequence() <= last && records.size() < maxRecords) {
+
+					indexRecord(segment, record.getSequence(), position);
+
+					if (record.getSequence() > afterSequence) {
+						records.add(record);
+					}
+
+					position += HEADER_SIZE + record.getLength();
+					record    = readRecord(input);
+				}
+
+			} catch (NoSuchFileException nsfex) {
+
+				// segment was removed in the meantime
+				logger.debug("Replication log segment {} removed while reading", snapshot.get(i));
+			}
+		}
+
+		return records;
+	}
+
+	/**
+	 * Waits until a record with a sequence number greater than the given
+	 * one is available, or the given timeout has elapsed.
+	 *
+	 * @param afterSequence the sequence number
+	 * @param timeout the timeout in milliseconds
+	 * @return whether a new record is available
+	 * @throws InterruptedException
+	 */
+	public synchronized boolean await(final long afterSequence, final long timeout) throws InterruptedException {
+
+		if (lastSequence <= afterSequence) {
+			wait(timeout);
+		}
+
+		return lastSequence > afterSequence;
+	}
+
+	/**
+	 * Returns the sequence number of the oldest record in this log, or
+	 * the next sequence number if this log is empty.
+	 *
+	 * @return the first sequence number
+	 */
+	public synchronized long getFirstSequence() {
+
+		if (segments.isEmpty()) {
+			return lastSequence + 1;
+		}
+
+		return segments.get(0);
+	}
+
+	public synchronized long getLastSequence() {
+		return lastSequence;
+	}
+
+	/**
+	 * Returns the cursor of the given slave, i.e. the sequence number of
+	 * the last record that was acknowledged by the slave, or -1 if the
+	 * slave has no cursor yet.
+	 *
+	 * @param slave the name of the slave
+	 * @return the cursor
+	 */
+	public long getCursor(final String slave) {
+
+		final Long cursor = cursors.get(slave);
+		if (cursor != null) {
+
+			return cursor;
+		}
+
+		return -1L;
+	}
+
+	/**
+	 * Stores the cursor of the given slave and removes all segments that
+	 * have been acknowledged by all slaves.
+	 *
+	 * @param slave the name of the slave
+	 * @param sequence the sequence number of the last acknowledged record
+	 * @throws IOException
+	 */
+	public void setCursor(final String slave, final long sequence) throws IOException {
+
+		final Path path = directory.resolve(slave + CURSOR_SUFFIX);
+		final Path temp = directory.resolve(slave + CURSOR_SUFFIX + ".tmp");
+
+		Files.write(temp, Long.toString(sequence).getBytes(StandardCharsets.UTF_8));
+		Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+		cursors.put(slave, sequence);
+
+		removeAcknowledgedSegments();
+	}
+
+	/**
+	 * Removes the cursors of all slaves that are not in the given list.
+	 *
+	 * @param slaves the names of the slaves to keep
+	 * @throws IOException
+	 */
+	public void removeCursorsExcept(final Collection<String> slaves) throws IOException {
+
+		for (final String slave : new ArrayList<>(cursors.keySet())) {
+
+			if (!slaves.contains(slave)) {
+
+				Files.deleteIfExists(directory.resolve(slave + CURSOR_SUFFIX));
+				cursors.remove(slave);
+			}
+		}
+
+		removeAcknowledgedSegments();
+	}
+
+	public synchronized void close() {
+
+		if (channel != null) {
+
+			try {
+
+				channel.close();
+
+			} catch (IOException ioex) {
+				logger.warn("Unable to close replication log: {}", ioex.getMessage());
+			}
+
+			channel = null;
+		}
+	}
+
+	// ----- private methods -----
+	private void open() throws IOException {
+
+		Files.createDirectories(directory);
+
+		try (final DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+
+			for (final Path path : stream) {
+
+				final String name = path.getFileName().toString();
+
+				if (name.endsWith(".tmp")) {
+
+					Files.delete(path);
+
+				} else if (name.endsWith(SEGMENT_SUFFIX)) {
+
+					segments.add(Long.valueOf(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+
+				} else if (name.endsWith(CURSOR_SUFFIX)) {
+
+					final String value = new String(Files.readAllBytes(path), StandardCharsets.UTF_8).trim();
+
+					cursors.put(name.substring(0, name.length() - CURSOR_SUFFIX.length()), Long.valueOf(value));
+				}
+			}
+		}
+
+		Collections.sort(segments);
+
+		for (final Long segment : segments) {
+			offsets.put(segment, new ConcurrentSkipListMap<>());
+		}
+
+		if (!segments.isEmpty()) {
+
+			final long first = segments.get(segments.size() - 1);
+			final Path path  = getSegmentPath(first);
+			long validLength = 0L;
+
+			lastSequence = first - 1;
+
+			// find the last complete record of the current segment
+			try (final DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+
+				Record record = readRecord(input);
+				while (record != null) {
+
+					indexRecord(first, record.getSequence(), validLength);
+
+					lastSequence  = record.getSequence();
+					validLength  += HEADER_SIZE + record.getLength();
+
+					record = readRecord(input);
+				}
+			}
+
+			channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+			// remove incomplete record at the end of the segment
+			if (channel.size() > validLength) {
+
+				logger.warn("Removing incomplete record from replication log segment {}", path);
+				channel.truncate(validLength);
+			}
+		}
+
+		logger.info("Replication log opened, {} segments, last sequence number is {}", segments.size(), lastSequence);
+	}
+
+	private void roll(final long firstSequence) throws IOException {
+
+		if (channel != null) {
+			channel.close();
+		}
+
+		channel = FileChannel.open(getSegmentPath(firstSequence), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+		offsets.put(firstSequence, new ConcurrentSkipListMap<>());
+		segments.add(firstSequence);
+	}
+
+	/**
+	 * Stores the position of the record with the given sequence number if
+	 * it is one of the records that are indexed.
+	 */
+	private void indexRecord(final long segment, final long sequence, final long position) {
+
+		final NavigableMap<Long, Long> index = offsets.get(segment);
+		if (index != null && (sequence - segment) % INDEX_INTERVAL == 0) {
+
+			index.putIfAbsent(sequence, position);
+		}
+	}
+
+	private synchronized void removeAcknowledgedSegments() {
+
+		if (cursors.isEmpty()) {
+			return;
+		}
+
+		final long acknowledged = Collections.min(cursors.values());
+
+		// a segment can be removed when the next segment starts at or
+		// before the first record that was not acknowledged by all slaves
+		while (segments.size() > 1 && segments.get(1) <= acknowledged + 1) {
+
+			final long segment = segments.remove(0);
+			final Path path    = getSegmentPath(segment);
+
+			offsets.remove(segment);
+
+			try {
+
+				Files.deleteIfExists(path);
+
+			} catch (IOException ioex) {
+				logger.warn("Unable to remove replication log segment {}: {}", path, ioex.getMessage());
+			}
+		}
+	}
+
+	private Path getSegmentPath(final long firstSequence) {
+		return directory.resolve(String.format("%020d", firstSequence) + SEGMENT_SUFFIX);
+	}
+
+	private static Record readRecord(final DataInputStream input) throws IOException {
+
+		try {
+
+			final long sequence = input.readLong();
+			final int length    = input.readInt();
+			final int checksum  = input.readInt();
+			final byte[] data   = new byte[length];
+			final CRC32 crc     = new CRC32();
+
+			input.readFully(data);
+			crc.update(data);
+
+			if ((int)crc.getValue() != checksum) {
+				return null;
+			}
+
+			return new Record(sequence, length, deserialize(data));
+
+		} catch (EOFException eofex) {
+
+			// incomplete record
+			return null;
+		}
+	}
+
+	private static byte[] serialize(final List<Entry> entries) throws IOException {
+
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+		try (final DataOutputStream output = new DataOutputStream(buffer)) {
+
+			output.writeInt(entries.size());
+
+			for (final Entry entry : entries) {
+
+				output.writeBoolean(entry.isNode());
+				output.writeBoolean(entry.isDeleted());
+				output.writeUTF(entry.getUuid());
+				output.writeInt(entry.getPropertyKeys().size());
+
+				for (final String key : entry.getPropertyKeys()) {
+					output.writeUTF(key);
+				}
+			}
+		}
+
+		return buffer.toByteArray();
+	}
+
+	private static List<Entry> deserialize(final byte[] data) throws IOException {
+
+		final List<Entry> entries = new ArrayList<>();
+
+		try (final DataInputStream input = new DataInputStream(new ByteArrayInputStream(data))) {
+
+			final int count = input.readInt();
+
+			for (int i=0; i<count; i++) {
+
+				final boolean node    = input.readBoolean();
+				final boolean deleted = input.readBoolean();
+				final String uuid     = input.readUTF();
+				final int keyCount    = input.readInt();
+				final Set<String> keys = new LinkedHashSet<>();
+
+				for (int j=0; j<keyCount; j++) {
+					keys.add(input.readUTF());
+				}
+
+				entries.add(new Entry(uuid, node, deleted, keys));
+			}
+		}
+
+		return entries;
+	}
+
+	// ----- nested classes -----
+	/**
+	 * A single record of the replication log, i.e. the modifications of a
+	 * single transaction.
+	 */
+	public static class Record {
+
+		private List<Entry> entries = null;
+		private long sequence       = 0L;
+		private int length          = 0;
+
+		public Record(final long sequence, final int length, final List<Entry> entries) {
+
+			this.sequence = sequence;
+			this.length   = length;
+			this.entries  = entries;
+		}
+
+		public long getSequence() {
+			return sequence;
+		}
+
+		public int getLength() {
+			return length;
+		}
+
+		public List<Entry> getEntries() {
+			return entries;
+		}
+	}
+
+	/**
+	 * The modification of a single node or relationship.
+	 */
+	public static class Entry {
+
+		private Set<String> propertyKeys = null;
+		private String uuid              = null;
+		private boolean node             = false;
+		private boolean deleted          = false;
+
+		public Entry(final ModificationEvent event) {
+
+			this.uuid         = event.getUuid();
+			this.node         = event.isNode();
+			this.deleted      = event.isDeleted();
+			this.propertyKeys = new LinkedHashSet<>();
+
+			if (!deleted) {
+
+				// collect all possibly modified property keys
+				addPropertyKeys(event.getNewProperties().keySet());
+				addPropertyKeys(event.getModifiedProperties().keySet());
+				addPropertyKeys(event.getRemovedProperties().keySet());
+			}
+		}
+
+		public Entry(final String uuid, final boolean node, final boolean deleted, final Set<String> propertyKeys) {
+
+			this.uuid         = uuid;
+			this.node         = node;
+			this.deleted      = deleted;
+			this.propertyKeys = propertyKeys;
+		}
+
+		public String getUuid() {
+			return uuid;
+		}
+
+		public boolean isNode() {
+			return node;
+		}
+
+		public boolean isDeleted() {
+			return deleted;
+		}
+
+		public Set<String> getPropertyKeys() {
+			return propertyKeys;
+		}
+
+		/**
+		 * Merges a later modification of the same entity into this one.
+		 *
+		 * @param entry the later modification
+		 */
+		public void merge(final Entry entry) {
+
+			this.deleted = entry.isDeleted();
+
+			propertyKeys.addAll(entry.getPropertyKeys());
+		}
+
+		// ----- private methods -----
+		private void addPropertyKeys(final Set<PropertyKey> keys) {
+
+			for (final PropertyKey key : keys) {
+				propertyKeys.add(key.dbName());
+			}
+		}
+	}
+}
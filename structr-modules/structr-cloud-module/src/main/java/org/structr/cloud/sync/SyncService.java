@@ -18,14 +18,13 @@
  */
 package org.structr.cloud.sync;
 
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.Map;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,7 +35,7 @@ import org.structr.api.service.StructrServices;
 import org.structr.cloud.CloudHost;
 import org.structr.cloud.CloudListener;
 import org.structr.cloud.CloudService;
-import org.structr.cloud.transmission.SingleTransmission;
+import org.structr.cloud.sync.ReplicationLog.Record;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.StructrTransactionListener;
@@ -46,34 +45,37 @@ import org.structr.core.app.StructrApp;
 import org.structr.core.graph.ModificationEvent;
 import org.structr.core.graph.TransactionCommand;
 import org.structr.core.graph.Tx;
+import org.structr.rest.resource.EnvResource;
 
 /**
+ * Replicates all local transactions of a replication master to its slaves.
  *
- *
+ * Transactions are written to a durable {@link ReplicationLog} when they
+ * are committed. Each slave has its own sender thread that transmits the
+ * log records after the slave's cursor in batches, so that a slow or
+ * unreachable slave does not delay the others. After a restart of the
+ * master or a downtime of a slave, the senders continue at the stored
+ * cursors. A slave is resynchronized completely if it has no cursor yet,
+ * or if its cursor refers to records that are no longer in the log.
  */
-public class SyncService extends Thread  implements RunnableService, StructrTransactionListener {
+public class SyncService implements RunnableService, StructrTransactionListener {
 
-	private static final BlockingQueue<List<ModificationEvent>> syncQueue = new ArrayBlockingQueue<>(1000);
-	private static final Logger logger                                    = LoggerFactory.getLogger(CloudService.class.getName());
+	private static final Logger logger = LoggerFactory.getLogger(CloudService.class.getName());
 
 	public enum SyncRole {
 		master,
 		slave
 	};
 
+	private final List<SlaveSender> senders    = new LinkedList<>();
 	private final List<SyncHostInfo> syncHosts = new LinkedList<>();
+	private ReplicationLog replicationLog      = null;
 	private boolean running                    = false;
 	private boolean active                     = false;
 	private String allowedMaster               = null;
 	private SyncRole role                      = null;
-	private int requiredSyncCount              = 0;
 	private int retryInterval                  = 60;
-
-	public SyncService() {
-
-		super("SyncService");
-		this.setDaemon(true);
-	}
+	private int batchSize                      = 100;
 
 	@Override
 	public void injectArguments(Command command) {
@@ -94,8 +96,8 @@ public class SyncService extends Thread  implements RunnableService, StructrTran
 				throw new IllegalStateException("no master address set for this slave, please set sync.master in structr.conf");
 			}
 
-			final String minimum = Settings.getOrCreateStringSetting("sync.minimum").getValue("1");
 			final String retry   = Settings.getOrCreateStringSetting("sync.retry").getValue("60");
+			final String batch   = Settings.getOrCreateStringSetting("sync.batch.size").getValue("100");
 			final String hosts   = Settings.getOrCreateStringSetting("sync.hosts").getValue();
 			final String users   = Settings.getOrCreateStringSetting("sync.users").getValue();
 			final String pwds    = Settings.getOrCreateStringSetting("sync.passwords").getValue();
@@ -160,11 +162,14 @@ public class SyncService extends Thread  implements RunnableService, StructrTran
 				}
 
 				try {
-					// check and initialize sync hosts and policy
-					initializeSyncHosts(minimum);
 
-				} catch (FrameworkException fex) {
-					logger.warn("", fex);
+					final String logPath     = Settings.getOrCreateStringSetting("sync.log.path").getValue("replication");
+					final String segmentSize = Settings.getOrCreateStringSetting("sync.log.segmentsize").getValue("16");
+
+					replicationLog = new ReplicationLog(Paths.get(Settings.getBasePath(), logPath), Long.valueOf(segmentSize) * 1024L * 1024L);
+
+				} catch (IOException ioex) {
+					throw new IllegalStateException("unable to open replication log: " + ioex.getMessage());
 				}
 			}
 
@@ -172,7 +177,11 @@ public class SyncService extends Thread  implements RunnableService, StructrTran
 				this.retryInterval = Integer.valueOf(retry);
 			}
 
-			logger.info("Retry interval is set to {} seconds", retryInterval);
+			if (StringUtils.isNotBlank(batch)) {
+				this.batchSize = Integer.valueOf(batch);
+			}
+
+			logger.info("Retry interval is set to {} seconds, batch size is {} transactions", retryInterval, batchSize);
 		}
 
 		return true;
@@ -183,7 +192,23 @@ public class SyncService extends Thread  implements RunnableService, StructrTran
 
 	@Override
 	public void shutdown() {
+
 		running = false;
+
+		for (final SlaveSender sender : senders) {
+			sender.interrupt();
+		}
+
+		for (final SlaveSender sender : senders) {
+
+			try { sender.join(10000); } catch (InterruptedException iex) {}
+		}
+
+		senders.clear();
+
+		if (replicationLog != null) {
+			replicationLog.close();
+		}
 	}
 
 	@Override
@@ -197,67 +222,30 @@ public class SyncService extends Thread  implements RunnableService, StructrTran
 		TransactionCommand.registerTransactionListener(this);
 
 		running = true;
-		start();
-
-		logger.info("SyncService successfully started.");
-	}
-
-	@Override
-	public void run() {
-
-		while (running) {
-
-			try {
-
-				// wait to be notified when new data is available
-				synchronized (syncQueue) {
-
-					while (syncQueue.isEmpty()) {
-						syncQueue.wait();
-					}
-				}
-
-				// load the head of the queue without removing it
-				// (will be removed later if sync was successful)
-				final List<ModificationEvent> transaction = syncQueue.peek();
-				if (transaction != null) {
-
-					// define success as "at least one sync process was successful"
-					final SyncListener successListener = new SyncListener(requiredSyncCount);
 
-					final SyncTransmission transmission = new SyncTransmission(transaction);
+		if (replicationLog != null) {
 
-					for (final SyncHostInfo info : syncHosts) {
+			final List<String> cursorNames = new LinkedList<>();
 
-						try {
+			for (final SyncHostInfo host : syncHosts) {
 
-							CloudService.doRemote(SecurityContext.getSuperUserInstance(), transmission, info, successListener);
+				final SlaveSender sender = new SlaveSender(host);
 
-						} catch (FrameworkException fex) {
-							logger.warn("Unable to synchronize with host {}: {}", new Object[] { info, fex.getMessage() } );
-						}
-					}
-
-					// remove sync changeset from queue when sync
-					// was successful (see above)
-					if (successListener.wasSuccessful()) {
-
-						syncQueue.remove(transaction);
-
-					} else {
-
-						logger.warn("Unable to synchronize with required number of hosts, retrying in {} seconds..", retryInterval);
-
-						// sleep
-						try { Thread.sleep(retryInterval * 1000); } catch (Throwable t) {}
-					}
+				cursorNames.add(sender.cursorName);
+				senders.add(sender);
+			}
 
-				}
+			// slaves that are no longer configured must not prevent the removal of old segments
+			replicationLog.removeCursorsExcept(cursorNames);
 
-			} catch (Throwable t) {
-				logger.warn("", t);
+			for (final SlaveSender sender : senders) {
+				sender.start();
 			}
+
+			EnvResource.registerStatistics("replicationStatistics", this::getStatistics);
 		}
+
+		logger.info("SyncService successfully started.");
 	}
 
 	@Override
@@ -270,12 +258,44 @@ public class SyncService extends Thread  implements RunnableService, StructrTran
 		return true;
 	}
 
+	@Override
+	public String getName() {
+		return SyncService.class.getSimpleName();
+	}
+
 
 	@Override
 	public boolean isVital() {
 		return true;
 	}
 
+	/**
+	 * Returns the replication state of all slaves of this master, including
+	 * the lag of each slave, i.e. the number of transactions that have not
+	 * been acknowledged by the slave yet.
+	 *
+	 * @return the replication statistics
+	 */
+	public Map<String, Object> getStatistics() {
+
+		final Map<String, Object> statistics = new LinkedHashMap<>();
+		final Map<String, Object> slaves     = new LinkedHashMap<>();
+
+		if (replicationLog != null) {
+
+			statistics.put("firstSequence", replicationLog.getFirstSequence());
+			statistics.put("lastSequence",  replicationLog.getLastSequence());
+
+			for (final SlaveSender sender : senders) {
+				slaves.put(sender.host.toString(), sender.getStatistics());
+			}
+		}
+
+		statistics.put("slaves", slaves);
+
+		return statistics;
+	}
+
 	// ----- interface Feature -----
 	@Override
 	public String getModuleName() {
@@ -304,7 +324,7 @@ public class SyncService extends Thread  implements RunnableService, StructrTran
 		}
 
 		// only react if desired
-		if (active && running && !modificationEvents.isEmpty()) {
+		if (active && running && replicationLog != null && !modificationEvents.isEmpty()) {
 
 			try {
 				// store last sync timestamp for the given instance ID
@@ -316,185 +336,155 @@ public class SyncService extends Thread  implements RunnableService, StructrTran
 				logger.error("Unable to store last modified date for current instance", fex);
 			}
 
-
 			try {
 
-				// copy all modification events and return quickly
-				syncQueue.put(new ArrayList<>(modificationEvents));
+				// write modifications to disk, senders are notified by the log
+				replicationLog.append(modificationEvents);
 
-				// notify sync queue of new input
-				synchronized (syncQueue) { syncQueue.notify(); }
-
-			} catch (InterruptedException iex) {
-				logger.warn("", iex);
+			} catch (IOException ioex) {
+				logger.error("Unable to write transaction to replication log", ioex);
 			}
-
 		}
 	}
 
 	// ----- private methods -----
-	private void initializeSyncHosts(final String minimum) throws FrameworkException {
-
-		final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
-		final String instanceId           = StructrApp.getInstance().getInstanceId();
+	private void synchronizeSlave(final SyncHostInfo info) throws FrameworkException {
 
-		// check connection and version of sync host
-		for (Iterator<SyncHostInfo> it = syncHosts.iterator(); it.hasNext();) {
+		logger.info("Establishing initial replication with {}.", info);
 
-			final SyncHostInfo host = it.next();
-			boolean reachable       = true;
-
-			try {
-
-				final SingleTransmission<ReplicationStatus> transmission = new SingleTransmission<>(new ReplicationStatus(instanceId));
-				final ReplicationStatus status = CloudService.doRemote(SecurityContext.getSuperUserInstance(), transmission, host, new LoggingListener());
-				if (status != null) {
-
-					final String slaveId = status.getSlaveId();
-					if (slaveId != null ) {
-
-						final long syncTimestamp  = status.getLastSync();
-						String lastSyncString     = "not synced yet";
-
-						if (syncTimestamp != 0L) {
-
-							lastSyncString = "last sync was " + dateFormat.format(syncTimestamp);
-						}
-
-						logger.info("Determined instance ID of {} to be {}, {}.", new Object[] { host, slaveId, lastSyncString } );
+		try (final Tx tx = StructrApp.getInstance().tx()) {
 
-						// store replication status in host info
-						host.setReplicationStatus(status);
+			CloudService.doRemote(SecurityContext.getSuperUserInstance(), new UpdateTransmission(), info, new LoggingListener());
 
-					} else {
+			tx.success();
+		}
 
-						reachable = false;
-					}
+		logger.info("Done.");
+	}
 
-				} else {
+	// ----- nested classes -----
+	/**
+	 * Transmits the records of the replication log to a single slave.
+	 */
+	private class SlaveSender extends Thread {
 
-					reachable = false;
-				}
+		private SyncHostInfo host     = null;
+		private String cursorName     = null;
+		private String state          = "starting";
+		private String lastError      = null;
+		private long lastTransmission = 0L;
+		private long transmitted      = 0L;
+		private int failures          = 0;
 
-			} catch (Throwable t) {
+		public SlaveSender(final SyncHostInfo host) {
 
-				logger.warn("", t);
-				reachable = false;
-			}
+			super("SyncService " + host);
 
-			if (!reachable) {
+			this.host       = host;
+			this.cursorName = host.getHostName() + "_" + host.getPort();
 
-				logger.warn("Synchronization slave {} not reachable, removing from list", host);
-				it.remove();
-			}
+			this.setDaemon(true);
 		}
 
-		// check number of synchronization hosts
-		final int numSyncHosts  = syncHosts.size();
-		requiredSyncCount       = Integer.valueOf(minimum);
+		@Override
+		public void run() {
 
-		if (numSyncHosts < requiredSyncCount) {
-			throw new IllegalStateException("synchronization policy requires at least " + requiredSyncCount + " hosts, but only " + numSyncHosts + " are reachable");
-		}
+			while (running) {
 
-		logger.info("Synchronization to {} host{} required.", new Object[] { requiredSyncCount, requiredSyncCount == 1 ? "" : "s" } );
+				try {
 
+					final long cursor = replicationLog.getCursor(cursorName);
 
-		// prepare synchronization hosts
-		for (final SyncHostInfo host : syncHosts) {
+					// records after the cursor are not available, resynchronize completely
+					if (cursor < replicationLog.getFirstSequence() - 1 || cursor > replicationLog.getLastSequence()) {
 
-			// try to copy database contents to synchronization slave
-			checkAndInitializeSyncHost(host);
-		}
-	}
+						final long sequence = replicationLog.getLastSequence();
 
-	private void checkAndInitializeSyncHost(final SyncHostInfo host) throws FrameworkException {
+						state = "resync";
 
-		final String masterId         = StructrApp.getInstance().getInstanceId();
-		final SimpleDateFormat df     = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
-		final long localSyncTimestamp = StructrApp.getInstance().getGlobalSetting(masterId + ".lastModified", 0L);
+						synchronizeSlave(host);
+						replicationLog.setCursor(cursorName, sequence);
 
-		if (localSyncTimestamp == 0L) {
+						onSuccess(0);
 
-			// no synchronization with this slave yet, clear and initialize slave database
-			synchronizeSlave(host);
+						continue;
+					}
 
-		} else {
+					if (!replicationLog.await(cursor, 1000L)) {
 
-			// there has been a synchronization in the past
-			if (host.getLastSyncTimestamp() != localSyncTimestamp) {
+						state = "idle";
+						continue;
+					}
 
-				logger.info("Replication host {} is out of sync, last remote update was {} whereas last local update was {}",
-					new Object[] { host,  df.format(host.getLastSyncTimestamp()), df.format(localSyncTimestamp) }
-				);
+					final List<Record> records = replicationLog.read(cursor, batchSize);
+					if (!records.isEmpty()) {
 
-				// clear and re-initialize slave database..
-				synchronizeSlave(host);
+						state = "transmitting";
 
-			} else {
+						final Object result = CloudService.doRemote(SecurityContext.getSuperUserInstance(), new SyncTransmission(records), host, null);
+						if (!Boolean.TRUE.equals(result)) {
 
-				logger.info("Replication host {} is in sync, last update was {}", new Object[] { host, df.format(localSyncTimestamp) } );
-			}
-		}
-	}
+							throw new FrameworkException(504, "Transmission to " + host + " was not successful");
+						}
 
-	private void synchronizeSlave(final SyncHostInfo info) {
+						replicationLog.setCursor(cursorName, records.get(records.size() - 1).getSequence());
 
-		logger.info("Establishing initial replication.");
+						onSuccess(records.size());
+					}
 
-		try (final Tx tx = StructrApp.getInstance().tx()) {
+				} catch (InterruptedException iex) {
 
-			CloudService.doRemote(SecurityContext.getSuperUserInstance(), new UpdateTransmission(), info, new LoggingListener());
+					// shutdown
 
-			tx.success();
+				} catch (Throwable t) {
 
-		} catch (Throwable t) {
-			logger.warn("", t);
-		}
+					state     = "waiting";
+					lastError = t.getMessage();
 
-		logger.info("Done.");
-	}
+					failures++;
 
-	// ----- nested classes -----
-	private static class SyncListener implements CloudListener {
+					// exponential backoff, limited by the retry interval
+					final long delay = Math.min(retryInterval * 1000L, 1000L << Math.min(failures, 16));
 
-		private int successCount         = 0;
-		private int requiredSuccessCount = 0;
+					logger.warn("Unable to synchronize with host {}, retrying in {} ms: {}", host, delay, t.getMessage());
 
-		public SyncListener(final int requiredSuccessCount) {
-			this.requiredSuccessCount = requiredSuccessCount;
+					try { Thread.sleep(delay); } catch (InterruptedException iex) {}
+				}
+			}
 		}
 
-		@Override
-		public void transmissionStarted() {
-		}
+		public Map<String, Object> getStatistics() {
 
-		@Override
-		public void transmissionFinished() {
-			successCount++;
-		}
+			final Map<String, Object> statistics = new LinkedHashMap<>();
+			final long cursor                    = replicationLog.getCursor(cursorName);
 
-		@Override
-		public void transmissionAborted() {
-		}
+			statistics.put("state",            state);
+			statistics.put("cursor",           cursor);
+			statistics.put("lag",              Math.max(0L, replicationLog.getLastSequence() - Math.max(0L, cursor)));
+			statistics.put("transmitted",      transmitted);
+			statistics.put("failures",         failures);
+			statistics.put("lastTransmission", lastTransmission);
+			statistics.put("lastError",        lastError);
 
-		@Override
-		public void transmissionProgress(final String message) {
+			return statistics;
 		}
 
-		public boolean wasSuccessful() {
-			return successCount >= requiredSuccessCount;
+		// ----- private methods -----
+		private void onSuccess(final int count) {
+
+			transmitted     += count;
+			lastTransmission = System.currentTimeMillis();
+			failures         = 0;
+			lastError        = null;
 		}
 	}
 
 	private static class SyncHostInfo implements CloudHost {
 
-		private ReplicationStatus status = null;
-		private String instanceId        = null;
-		private String host              = null;
-		private String user              = null;
-		private String pwd               = null;
-		private int port                 = -1;
+		private String host = null;
+		private String user = null;
+		private String pwd  = null;
+		private int port    = -1;
 
 		public SyncHostInfo(final String host, final String user, final String pwd, final String portSource) {
 
@@ -528,20 +518,6 @@ public class SyncService extends Thread  implements RunnableService, StructrTran
 		public int getPort() {
 			return port;
 		}
-
-		public void setReplicationStatus(final ReplicationStatus status) {
-
-			this.instanceId = status.getSlaveId();
-			this.status     = status;
-		}
-
-		public long getLastSyncTimestamp() {
-			return status.getLastSync();
-		}
-
-		public String getInstanceId() {
-			return instanceId;
-		}
 	}
 
 	private class LoggingListener implements CloudListener {
@@ -19,12 +19,12 @@
 package org.structr.cloud.sync;
 
 import java.io.IOException;
-import java.util.LinkedHashSet;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.structr.api.NotFoundException;
 import org.structr.cloud.CloudConnection;
 import org.structr.cloud.CloudService;
 import org.structr.cloud.CloudTransmission;
@@ -34,57 +34,73 @@ import org.structr.cloud.message.FileNodeDataContainer;
 import org.structr.cloud.message.FileNodeEndChunk;
 import org.structr.cloud.message.NodeDataContainer;
 import org.structr.cloud.message.RelationshipDataContainer;
+import org.structr.cloud.sync.ReplicationLog.Entry;
+import org.structr.cloud.sync.ReplicationLog.Record;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
+import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
-import org.structr.core.graph.ModificationEvent;
 import org.structr.core.graph.Tx;
-import org.structr.core.property.PropertyKey;
 import org.structr.dynamic.File;
 
 /**
+ * Transmits a batch of records of the replication log to a slave.
  *
- *
+ * Multiple modifications of the same entity are merged, so that each
+ * entity is transmitted only once, with its current state. Nodes are sent
+ * before relationships, deletions are sent last.
  */
 public class SyncTransmission implements CloudTransmission {
 
 	private static final Logger logger = LoggerFactory.getLogger(SyncTransmission.class.getName());
-	private List<ModificationEvent> transaction = null;
+	private final List<Entry> entries  = new ArrayList<>();
+
+	public SyncTransmission(final List<Record> records) {
+
+		final Map<String, Entry> merged = new LinkedHashMap<>();
+
+		for (final Record record : records) {
+
+			for (final Entry entry : record.getEntries()) {
+
+				final Entry existing = merged.get(entry.getUuid());
+				if (existing != null) {
+
+					existing.merge(entry);
+
+				} else {
 
-	public SyncTransmission(final List<ModificationEvent> transaction) {
+					merged.put(entry.getUuid(), entry);
+				}
+			}
+		}
 
-		this.transaction = transaction;
+		addEntries(merged.values(), true,  false);
+		addEntries(merged.values(), false, false);
+		addEntries(merged.values(), false, true);
+		addEntries(merged.values(), true,  true);
 	}
 
 	@Override
 	public Boolean doRemote(final CloudConnection client) throws IOException, FrameworkException {
 
-		int count = 0;
+		final App app = StructrApp.getInstance();
+		int count     = 0;
 
-		try (final Tx tx = StructrApp.getInstance().tx()) {
+		try (final Tx tx = app.tx()) {
 
-			for (final ModificationEvent event : transaction) {
+			for (final Entry entry : entries) {
 
-				final GraphObject graphObject  = event.getGraphObject();
+				final String uuid = entry.getUuid();
 
-				if (event.isDeleted()) {
+				if (entry.isDeleted()) {
 
-					final String id = event.getRemovedProperties().get(GraphObject.id);
-					if (id != null) {
-
-						client.send(new Delete(id));
-					}
+					client.send(new Delete(uuid));
 
 				} else {
 
-					try {
-
-						final Set<String> propertyKeys = new LinkedHashSet<>();
-
-						// collect all possibly modified property keys
-						mapPropertyKeysToStrings(propertyKeys, event.getNewProperties().keySet());
-						mapPropertyKeysToStrings(propertyKeys, event.getModifiedProperties().keySet());
-						mapPropertyKeysToStrings(propertyKeys, event.getRemovedProperties().keySet());
+					final GraphObject graphObject = entry.isNode() ? app.getNodeById(uuid) : app.getRelationshipById(uuid);
+					if (graphObject != null) {
 
 						if (graphObject.isNode()) {
 
@@ -94,15 +110,15 @@ public class SyncTransmission implements CloudTransmission {
 
 							} else {
 
-								client.send(new NodeDataContainer(graphObject.getSyncNode(), count, propertyKeys));
+								client.send(new NodeDataContainer(graphObject.getSyncNode(), count, entry.getPropertyKeys()));
 							}
 
 						} else {
 
-							client.send(new RelationshipDataContainer(graphObject.getSyncRelationship(), count, propertyKeys));
+							client.send(new RelationshipDataContainer(graphObject.getSyncRelationship(), count, entry.getPropertyKeys()));
 						}
 
-					} catch (NotFoundException nfex) {
+					} else {
 
 						logger.info("Trying to synchronize deleted entity, ignoring");
 					}
@@ -152,10 +168,13 @@ public class SyncTransmission implements CloudTransmission {
 	}
 
 	// ----- private methods -----
-	private void mapPropertyKeysToStrings(final Set<String> propertyKeys, final Set<PropertyKey> source) {
+	private void addEntries(final Iterable<Entry> source, final boolean nodes, final boolean deleted) {
 
-		for (final PropertyKey key : source) {
-			propertyKeys.add(key.dbName());
+		for (final Entry entry : source) {
+
+			if (entry.isNode() == nodes && entry.isDeleted() == deleted) {
+				entries.add(entry);
+			}
 		}
 	}
 }
@@ -18,9 +18,14 @@
  */
 package org.structr.text;
 
+import java.io.IOException;
+import java.util.Collections;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.structr.api.service.LicenseManager;
 import org.structr.common.error.FrameworkException;
 import org.structr.common.fulltext.FulltextIndexer;
@@ -31,12 +36,15 @@ import org.structr.core.entity.AbstractSchemaNode;
 import org.structr.core.property.GenericProperty;
 import org.structr.module.StructrModule;
 import org.structr.schema.action.Actions;
+import org.structr.text.index.FulltextIndex;
 
 /**
  *
  */
 public class FulltextIndexerModule implements FulltextIndexer, StructrModule {
 
+	private static final Logger logger = LoggerFactory.getLogger(FulltextIndexerModule.class.getName());
+
 	@Override
 	public void onLoad(final LicenseManager licenseManager) {
 	}
@@ -46,6 +54,42 @@ public class FulltextIndexerModule implements FulltextIndexer, StructrModule {
 		StructrApp.getInstance(node.getSecurityContext()).processTasks(new FulltextIndexingTask(node));
 	}
 
+	@Override
+	public void removeFromFulltextIndex(final Indexable node) throws FrameworkException {
+
+		final FulltextIndex index = FulltextIndex.getInstance();
+		if (index != null) {
+
+			try {
+
+				index.remove(Collections.singleton(node.getUuid()));
+
+			} catch (IOException ioex) {
+
+				throw new FrameworkException(500, "Unable to remove " + node.getUuid() + " from fulltext index: " + ioex.getMessage());
+			}
+		}
+	}
+
+	@Override
+	public List<String> search(final String query) {
+
+		final FulltextIndex index = FulltextIndex.getInstance();
+		if (index != null) {
+
+			try {
+
+				return index.search(query);
+
+			} catch (IOException ioex) {
+
+				logger.warn("Unable to search fulltext index: {}", ioex.getMessage());
+			}
+		}
+
+		return null;
+	}
+
 	@Override
 	public GraphObjectMap getContextObject(final String searchTerm, final String text, final int contextLength) {
 
@@ -21,9 +21,10 @@ package org.structr.text;
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Iterator;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
@@ -42,16 +43,13 @@ import org.slf4j.LoggerFactory;
 import org.structr.agent.Agent;
 import org.structr.agent.ReturnValue;
 import org.structr.agent.Task;
-import org.structr.api.graph.Node;
-import org.structr.api.index.Index;
 import org.structr.common.fulltext.Indexable;
-import org.structr.core.Services;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.Person;
 import org.structr.core.entity.Principal;
 import static org.structr.core.graph.NodeInterface.owner;
-import org.structr.core.graph.NodeService;
 import org.structr.core.graph.Tx;
+import org.structr.text.index.FulltextIndex;
 
 /**
  *
@@ -68,11 +66,19 @@ public class FulltextIndexingAgent extends Agent<Indexable> {
 
 		if (TASK_NAME.equals(task.getType())) {
 
+			final Map<String, List<String>> documents = new LinkedHashMap<>();
+
 			for (final Indexable file : task.getNodes()) {
 
-				doIndexing(file);
+				doIndexing(file, documents);
 			}
 
+			// all files of a task are written into a single index segment
+			final FulltextIndex index = FulltextIndex.getInstance();
+			if (index != null) {
+
+				index.add(documents);
+			}
 
 			return ReturnValue.Success;
 		}
@@ -91,11 +97,12 @@ public class FulltextIndexingAgent extends Agent<Indexable> {
 	}
 
 	// ----- private methods -----
-	private void doIndexing(final Indexable file) {
+	private void doIndexing(final Indexable file, final Map<String, List<String>> documents) {
 
 		boolean parsingSuccessful         = false;
 		InputStream inputStream           = null;
 		String fileName                   = "unknown file";
+		String uuid                       = null;
 
 		try {
 
@@ -103,6 +110,7 @@ public class FulltextIndexingAgent extends Agent<Indexable> {
 
 				inputStream = file.getInputStream();
 				fileName = file.getName();
+				uuid = file.getUuid();
 
 				tx.success();
 			}
@@ -163,38 +171,24 @@ public class FulltextIndexingAgent extends Agent<Indexable> {
 							tx.success();
 						}
 
-						// index document excluding stop words
-						final NodeService nodeService       = Services.getInstance().getService(NodeService.class);
-						final Index<Node> fulltextIndex     = nodeService.getNodeIndex();
-						final Set<String> stopWords         = languageStopwordMap.get(tokenizer.getLanguage());
-						final String indexKeyName           = Indexable.indexedWords.jsonName();
-						final Iterator<String> wordIterator = tokenizer.getWords().iterator();
-						final Node node                     = file.getNode();
-						final Set<String> indexedWords      = new TreeSet<>();
-
-						while (wordIterator.hasNext()) {
-
-							try (Tx tx = StructrApp.getInstance().tx()) {
+						// store words excluding stop words
+						final Set<String> stopWords    = languageStopwordMap.get(tokenizer.getLanguage());
+						final Set<String> indexedWords = new TreeSet<>();
 
-								// remove node from index (in case of previous indexing runs)
-								fulltextIndex.remove(node, indexKeyName);
+						for (final String word : tokenizer.getWords()) {
 
-								while (wordIterator.hasNext()) {
+							// strip double quotes
+							final String strippedWord = StringUtils.strip(word, "\"");
 
-									// strip double quotes
-									final String word = StringUtils.strip(wordIterator.next(), "\"");
+							if (!stopWords.contains(strippedWord)) {
 
-									if (!stopWords.contains(word)) {
-
-										indexedWords.add(word);
-										fulltextIndex.add(node, indexKeyName, word, String.class);
-									}
-								}
-
-								tx.success();
+								indexedWords.add(strippedWord);
 							}
 						}
 
+						// the inverted index contains all words with their positions, for phrase queries
+						documents.put(uuid, new ArrayList<>(tokenizer.getTokens()));
+
 						// store indexed words separately
 						try (Tx tx = StructrApp.getInstance().tx()) {
 
@@ -20,7 +20,9 @@ package org.structr.text;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 import org.apache.commons.lang.StringUtils;
 import org.apache.tika.language.LanguageIdentifier;
@@ -43,6 +45,7 @@ public class FulltextTokenizer extends Writer {
 	private final StringBuilder rawText      = new StringBuilder();
 	private final StringBuilder wordBuffer   = new StringBuilder();
 	private final Set<String> words          = new LinkedHashSet<>();
+	private final List<String> tokens        = new ArrayList<>();
 	private String language                  = "de";
 	private String fileName                  = null;
 	private char lastCharacter               = 0;
@@ -140,6 +143,16 @@ public class FulltextTokenizer extends Writer {
 		return words;
 	}
 
+	/**
+	 * Returns all words in the order of their occurrence, without double
+	 * quotes, for the positions in the fulltext index.
+	 *
+	 * @return the tokens
+	 */
+	public List<String> getTokens() {
+		return tokens;
+	}
+
 	@Override
 	public void flush() throws IOException {
 
@@ -201,8 +214,14 @@ public class FulltextTokenizer extends Writer {
 		final int length = word.length();
 		if (length >= wordMinLength && length <= wordMaxLength) {
 
+			final String token = StringUtils.strip(word, "\"");
+
 			words.add(word);
 
+			if (StringUtils.isNotEmpty(token)) {
+				tokens.add(token);
+			}
+
 			wordCount++;
 
 			if (wordCount > wordCountLimit && !wordCountLimitInfoShown) {
@@ -0,0 +1,697 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.text.index;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+import org.structr.text.index.IndexSegment.Posting;
+
+/**
+ * Embedded, segment-based inverted index for the fulltext search of
+ * indexable files.
+ *
+ * Each call to {@link #add(java.util.Map)} writes a new immutable segment
+ * that contains the postings (term frequencies and positions) of the given
+ * documents. Documents are updated by deleting them from older segments, and
+ * segments are merged incrementally when their number exceeds the configured
+ * merge factor. The list of segments is stored in a manifest file that is
+ * replaced atomically, so a crash never leaves a partially written segment
+ * in the index.
+ *
+ * Search results are ranked with BM25, quoted phrases must match the exact
+ * sequence of terms.
+ */
+public class FulltextIndex {
+
+	private static final Logger logger        = LoggerFactory.getLogger(FulltextIndex.class.getName());
+	private static final String MANIFEST_NAME = "segments";
+	private static final double K1            = 1.2;
+	private static final double B             = 0.75;
+	private static FulltextIndex instance     = null;
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Object mergeLock            = new Object();
+	private List<IndexSegment> segments       = new ArrayList<>();
+	private File directory                    = null;
+	private long nextSegmentId                = 1L;
+
+	private FulltextIndex(final File directory) throws IOException {
+
+		this.directory = directory;
+
+		directory.mkdirs();
+
+		open();
+	}
+
+	/**
+	 * Returns the fulltext index in the directory that is configured in
+	 * {@link Settings#FulltextIndexPath}. The index is re-opened when the
+	 * configured directory changes.
+	 *
+	 * @return the fulltext index
+	 */
+	public static synchronized FulltextIndex getInstance() {
+
+		final File directory = new File(Settings.getFullSettingPath(Settings.FulltextIndexPath));
+
+		if (instance != null && !instance.directory.equals(directory)) {
+
+			instance.close();
+			instance = null;
+		}
+
+		if (instance == null) {
+
+			try {
+
+				instance = new FulltextIndex(directory);
+
+			} catch (IOException ioex) {
+
+				logger.error("Unable to open fulltext index in {}: {}", directory.getAbsolutePath(), ioex.getMessage());
+			}
+		}
+
+		return instance;
+	}
+
+	public static synchronized void shutdown() {
+
+		if (instance != null) {
+
+			instance.close();
+			instance = null;
+		}
+	}
+
+	/**
+	 * Adds the given documents to the index, replacing earlier versions
+	 * of the same documents. All documents are written into a single new
+	 * segment.
+	 *
+	 * @param documents a map of UUIDs to the tokens of each document, in document order
+	 * @throws IOException
+	 */
+	public void add(final Map<String, List<String>> documents) throws IOException {
+
+		if (documents.isEmpty()) {
+			return;
+		}
+
+		final long id              = allocateSegmentId();
+		final IndexSegment segment = writeSegment(id, documents);
+
+		lock.writeLock().lock();
+		try {
+
+			final List<IndexSegment> previous    = segments;
+			final List<IndexSegment> newSegments = new ArrayList<>(previous);
+
+			newSegments.add(segment);
+
+			// the new segment is registered before the previous versions are deleted, see repair()
+			writeManifest(newSegments);
+
+			segments = newSegments;
+
+			for (final String uuid : documents.keySet()) {
+				deleteFromSegments(previous, uuid);
+			}
+
+		} finally {
+
+			lock.writeLock().unlock();
+		}
+
+		maybeMerge();
+	}
+
+	/**
+	 * Removes the documents with the given UUIDs from the index.
+	 *
+	 * @param uuids
+	 * @throws IOException
+	 */
+	public void remove(final Collection<String> uuids) throws IOException {
+
+		lock.writeLock().lock();
+		try {
+
+			for (final String uuid : uuids) {
+				deleteFromSegments(segments, uuid);
+			}
+
+		} finally {
+
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Searches the index with the given query and returns the UUIDs of
+	 * the matching documents, ordered by descending relevance.
+	 *
+	 * Terms outside of quotes are optional, a document matches if it
+	 * contains at least one of them. Quoted phrases are required, a
+	 * document matches only if it contains the terms of each phrase in the
+	 * given order.
+	 *
+	 * @param query
+	 * @return the UUIDs of the matching documents
+	 * @throws IOException
+	 */
+	public List<String> search(final String query) throws IOException {
+
+		final FulltextQuery parsed = FulltextQuery.parse(query);
+		if (parsed.isEmpty()) {
+
+			return new ArrayList<>();
+		}
+
+		lock.readLock().lock();
+		try {
+
+			final Map<String, Double> scores = new HashMap<>();
+			final Set<String> allTerms       = parsed.getAllTerms();
+			final Map<String, Integer> df    = new HashMap<>();
+			long totalLength                 = 0L;
+			int documentCount                = 0;
+
+			for (final IndexSegment segment : segments) {
+
+				documentCount += segment.getLiveDocumentCount();
+				totalLength   += segment.getLiveLength();
+			}
+
+			if (documentCount == 0) {
+				return new ArrayList<>();
+			}
+
+			final double averageLength = (double)totalLength / (double)documentCount;
+
+			// collect postings of all terms in all segments, and the global document frequencies
+			final Map<IndexSegment, Map<String, List<Posting>>> postings = new LinkedHashMap<>();
+			for (final IndexSegment segment : segments) {
+
+				final Map<String, List<Posting>> segmentPostings = new HashMap<>();
+
+				for (final String term : allTerms) {
+
+					final List<Posting> list = new ArrayList<>();
+
+					for (final Posting posting : segment.getPostings(term)) {
+
+						if (!segment.isDeleted(posting.getDocument())) {
+							list.add(posting);
+						}
+					}
+
+					segmentPostings.put(term, list);
+					df.merge(term, list.size(), Integer::sum);
+				}
+
+				postings.put(segment, segmentPostings);
+			}
+
+			for (final Entry<IndexSegment, Map<String, List<Posting>>> entry : postings.entrySet()) {
+
+				final IndexSegment segment                        = entry.getKey();
+				final Map<String, List<Posting>> segmentPostings = entry.getValue();
+				final Map<Integer, Map<String, Posting>> byDoc    = new HashMap<>();
+
+				for (final Entry<String, List<Posting>> termPostings : segmentPostings.entrySet()) {
+
+					for (final Posting posting : termPostings.getValue()) {
+						byDoc.computeIfAbsent(posting.getDocument(), k -> new HashMap<>()).put(termPostings.getKey(), posting);
+					}
+				}
+
+				for (final Entry<Integer, Map<String, Posting>> doc : byDoc.entrySet()) {
+
+					final Map<String, Posting> terms = doc.getValue();
+
+					if (!parsed.matches(terms)) {
+						continue;
+					}
+
+					final int length = segment.getLength(doc.getKey());
+					double score     = 0.0;
+
+					for (final Entry<String, Posting> term : terms.entrySet()) {
+
+						final double tf  = term.getValue().getFrequency();
+						final double n   = df.get(term.getKey());
+						final double idf = Math.log(1.0 + (documentCount - n + 0.5) / (n + 0.5));
+
+						score += idf * (tf * (K1 + 1.0)) / (tf + K1 * (1.0 - B + B * length / averageLength));
+					}
+
+					scores.put(segment.getUuid(doc.getKey()), score);
+				}
+			}
+
+			final List<Entry<String, Double>> ranked = new ArrayList<>(scores.entrySet());
+			final List<String> result                = new ArrayList<>(ranked.size());
+
+			Collections.sort(ranked, Comparator.comparing((Entry<String, Double> e) -> e.getValue()).reversed().thenComparing(Entry::getKey));
+
+			for (final Entry<String, Double> item : ranked) {
+				result.add(item.getKey());
+			}
+
+			return result;
+
+		} finally {
+
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Merges segments until their number does not exceed the configured
+	 * merge factor. The smallest segments are merged first, the merged
+	 * segment is written without holding the index lock, deletes that
+	 * occurred in the meantime are applied to the merged segment before
+	 * it replaces the original segments.
+	 *
+	 * @throws IOException
+	 */
+	public void maybeMerge() throws IOException {
+
+		final int mergeFactor = Math.max(2, Settings.IndexingMergeFactor.getValue());
+
+		synchronized (mergeLock) {
+
+			while (true) {
+
+				final List<IndexSegment> candidates;
+
+				lock.readLock().lock();
+				try {
+
+					if (segments.size() <= mergeFactor) {
+						return;
+					}
+
+					candidates = new ArrayList<>(segments);
+
+				} finally {
+
+					lock.readLock().unlock();
+				}
+
+				candidates.sort(Comparator.comparingInt(IndexSegment::getLiveDocumentCount));
+
+				merge(candidates.subList(0, mergeFactor));
+			}
+		}
+	}
+
+	public int getSegmentCount() {
+
+		lock.readLock().lock();
+		try {
+
+			return segments.size();
+
+		} finally {
+
+			lock.readLock().unlock();
+		}
+	}
+
+	public int getDocumentCount() {
+
+		lock.readLock().lock();
+		try {
+
+			int count = 0;
+
+			for (final IndexSegment segment : segments) {
+				count += segment.getLiveDocumentCount();
+			}
+
+			return count;
+
+		} finally {
+
+			lock.readLock().unlock();
+		}
+	}
+
+	// ----- private methods -----
+	private void open() throws IOException {
+
+		final File manifest  = new File(directory, MANIFEST_NAME);
+		final Set<Long> ids  = new HashSet<>();
+
+		if (manifest.exists()) {
+
+			try (final BufferedReader reader = Files.newBufferedReader(manifest.toPath(), StandardCharsets.UTF_8)) {
+
+				String line = reader.readLine();
+				while (line != null) {
+
+					if (!line.trim().isEmpty()) {
+						ids.add(Long.valueOf(line.trim()));
+					}
+
+					line = reader.readLine();
+				}
+			}
+		}
+
+		for (final long id : new TreeSet<>(ids)) {
+
+			segments.add(IndexSegment.open(directory, id));
+			nextSegmentId = Math.max(nextSegmentId, id + 1);
+		}
+
+		// remove files that do not belong to a segment in the manifest (crash during write or merge)
+		final File[] files = directory.listFiles();
+		if (files != null) {
+
+			for (final File file : files) {
+
+				final String name = file.getName();
+				if (MANIFEST_NAME.equals(name)) {
+					continue;
+				}
+
+				final int pos = name.indexOf('.');
+				if (name.endsWith(".tmp") || pos < 0 || !ids.contains(parseId(name.substring(0, pos)))) {
+
+					logger.info("Removing orphaned fulltext index file {}", name);
+					file.delete();
+
+				} else {
+
+					nextSegmentId = Math.max(nextSegmentId, parseId(name.substring(0, pos)) + 1);
+				}
+			}
+		}
+
+		repair();
+	}
+
+	/**
+	 * Makes sure that each document is live in a single segment only, in
+	 * case the index was interrupted between writing a new segment and
+	 * the deletes of the previous version of a document.
+	 */
+	private void repair() throws IOException {
+
+		final Map<String, IndexSegment> live = new HashMap<>();
+
+		// segments are ordered by id, newer segments win
+		for (final IndexSegment segment : segments) {
+
+			final int count = segment.getDocumentCount();
+			for (int i=0; i<count; i++) {
+
+				if (!segment.isDeleted(i)) {
+
+					final String uuid           = segment.getUuid(i);
+					final IndexSegment previous = live.put(uuid, segment);
+
+					if (previous != null && previous.delete(uuid)) {
+						previous.writeDeletes();
+					}
+				}
+			}
+		}
+	}
+
+	private void close() {
+
+		lock.writeLock().lock();
+		try {
+
+			for (final IndexSegment segment : segments) {
+				segment.close();
+			}
+
+			segments = new ArrayList<>();
+
+		} finally {
+
+			lock.writeLock().unlock();
+		}
+	}
+
+	private synchronized long allocateSegmentId() {
+		return nextSegmentId++;
+	}
+
+	private void deleteFromSegments(final List<IndexSegment> list, final String uuid) throws IOException {
+
+		for (final IndexSegment segment : list) {
+
+			if (segment.delete(uuid)) {
+				segment.writeDeletes();
+			}
+		}
+	}
+
+	private IndexSegment writeSegment(final long id, final Map<String, List<String>> documents) throws IOException {
+
+		final TreeMap<String, List<Posting>> postings = new TreeMap<>();
+
+		try (final IndexSegment.Writer writer = new IndexSegment.Writer(directory, id, documents.size())) {
+
+			int document = 0;
+
+			for (final Entry<String, List<String>> entry : documents.entrySet()) {
+
+				final Map<String, List<Integer>> positions = new LinkedHashMap<>();
+				final List<String> tokens                  = entry.getValue();
+				final int count                            = tokens.size();
+
+				for (int i=0; i<count; i++) {
+					positions.computeIfAbsent(tokens.get(i), k -> new ArrayList<>()).add(i);
+				}
+
+				for (final Entry<String, List<Integer>> term : positions.entrySet()) {
+					postings.computeIfAbsent(term.getKey(), k -> new ArrayList<>()).add(new Posting(document, toArray(term.getValue())));
+				}
+
+				writer.addDocument(entry.getKey(), count);
+
+				document++;
+			}
+
+			for (final Entry<String, List<Posting>> entry : postings.entrySet()) {
+				writer.addPostings(entry.getKey(), entry.getValue());
+			}
+
+			return writer.finish();
+		}
+	}
+
+	private void merge(final List<IndexSegment> sources) throws IOException {
+
+		final long id                                 = allocateSegmentId();
+		final TreeMap<String, List<Posting>> postings = new TreeMap<>();
+		final List<String> uuids                      = new ArrayList<>();
+		final List<Integer> lengths                   = new ArrayList<>();
+
+		// snapshot of the deleted documents at the start of the merge
+		final Map<IndexSegment, Set<Integer>> deleted = new HashMap<>();
+		final Map<IndexSegment, int[]> mapping        = new HashMap<>();
+
+		lock.readLock().lock();
+		try {
+
+			for (final IndexSegment source : sources) {
+				deleted.put(source, source.getDeletedDocuments());
+			}
+
+		} finally {
+
+			lock.readLock().unlock();
+		}
+
+		for (final IndexSegment source : sources) {
+
+			final Set<Integer> sourceDeleted = deleted.get(source);
+			final int count                  = source.getDocumentCount();
+			final int[] map                  = new int[count];
+
+			for (int i=0; i<count; i++) {
+
+				if (sourceDeleted.contains(i)) {
+
+					map[i] = -1;
+
+				} else {
+
+					map[i] = uuids.size();
+					uuids.add(source.getUuid(i));
+					lengths.add(source.getLength(i));
+				}
+			}
+
+			mapping.put(source, map);
+
+			for (final String term : source.getTerms()) {
+
+				for (final Posting posting : source.getPostings(term)) {
+
+					final int document = map[posting.getDocument()];
+					if (document >= 0) {
+
+						postings.computeIfAbsent(term, k -> new ArrayList<>()).add(new Posting(document, posting.getPositions()));
+					}
+				}
+			}
+		}
+
+		final IndexSegment merged;
+
+		try (final IndexSegment.Writer writer = new IndexSegment.Writer(directory, id, uuids.size())) {
+
+			final int count = uuids.size();
+			for (int i=0; i<count; i++) {
+
+				writer.addDocument(uuids.get(i), lengths.get(i));
+			}
+
+			for (final Entry<String, List<Posting>> entry : postings.entrySet()) {
+				writer.addPostings(entry.getKey(), entry.getValue());
+			}
+
+			merged = writer.finish();
+		}
+
+		lock.writeLock().lock();
+		try {
+
+			// apply deletes that occurred during the merge
+			boolean modified = false;
+
+			for (final IndexSegment source : sources) {
+
+				final Set<Integer> before = deleted.get(source);
+				final int[] map           = mapping.get(source);
+
+				for (final int document : source.getDeletedDocuments()) {
+
+					if (!before.contains(document) && map[document] >= 0) {
+
+						modified |= merged.delete(source.getUuid(document));
+					}
+				}
+			}
+
+			if (modified) {
+				merged.writeDeletes();
+			}
+
+			final List<IndexSegment> newSegments = new ArrayList<>();
+
+			for (final IndexSegment segment : segments) {
+
+				if (!sources.contains(segment)) {
+					newSegments.add(segment);
+				}
+			}
+
+			newSegments.add(merged);
+			newSegments.sort(Comparator.comparingLong(IndexSegment::getId));
+
+			writeManifest(newSegments);
+
+			segments = newSegments;
+
+		} finally {
+
+			lock.writeLock().unlock();
+		}
+
+		// readers hold the read lock while using a segment, so the sources can be removed now
+		for (final IndexSegment source : sources) {
+			source.deleteFiles();
+		}
+
+		logger.debug("Merged {} fulltext index segments into segment {} with {} documents", sources.size(), id, uuids.size());
+	}
+
+	private void writeManifest(final List<IndexSegment> list) throws IOException {
+
+		final File manifest = new File(directory, MANIFEST_NAME);
+		final File tmp      = new File(directory, MANIFEST_NAME + ".tmp");
+
+		try (final Writer writer = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8)) {
+
+			for (final IndexSegment segment : list) {
+
+				writer.write(Long.toString(segment.getId()));
+				writer.write("\n");
+			}
+		}
+
+		Files.move(tmp.toPath(), manifest.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static long parseId(final String value) {
+
+		try {
+
+			return Long.parseLong(value);
+
+		} catch (NumberFormatException nfex) {
+			return -1L;
+		}
+	}
+
+	private static int[] toArray(final List<Integer> list) {
+
+		final int[] array = new int[list.size()];
+		int i             = 0;
+
+		for (final Integer value : list) {
+			array[i++] = value;
+		}
+
+		return array;
+	}
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.text.index;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.structr.text.FulltextTokenizer;
+import org.structr.text.index.IndexSegment.Posting;
+
+/**
+ * A parsed fulltext query, consisting of optional terms and required
+ * phrases. Phrases are enclosed in double quotes, the text of the query is
+ * tokenized the same way as the indexed documents.
+ */
+public class FulltextQuery {
+
+	private final List<List<String>> phrases = new ArrayList<>();
+	private final Set<String> terms          = new LinkedHashSet<>();
+
+	private FulltextQuery() {}
+
+	public static FulltextQuery parse(final String query) {
+
+		final FulltextQuery parsed = new FulltextQuery();
+
+		if (query != null) {
+
+			final String[] parts = query.split("\"", -1);
+
+			for (int i=0; i<parts.length; i++) {
+
+				final List<String> tokens = tokenize(parts[i]);
+
+				// odd parts are enclosed in quotes
+				if (i % 2 == 1 && tokens.size() > 1) {
+
+					parsed.phrases.add(tokens);
+
+				} else {
+
+					parsed.terms.addAll(tokens);
+				}
+			}
+		}
+
+		return parsed;
+	}
+
+	public boolean isEmpty() {
+		return terms.isEmpty() && phrases.isEmpty();
+	}
+
+	public Set<String> getAllTerms() {
+
+		final Set<String> all = new LinkedHashSet<>(terms);
+
+		for (final List<String> phrase : phrases) {
+			all.addAll(phrase);
+		}
+
+		return all;
+	}
+
+	/**
+	 * Indicates whether a document with the given postings matches this
+	 * query, i.e. contains all phrases of this query.
+	 *
+	 * @param postings the postings of the query terms in the document
+	 * @return whether the document matches
+	 */
+	public boolean matches(final Map<String, Posting> postings) {
+
+		for (final List<String> phrase : phrases) {
+
+			if (!containsPhrase(postings, phrase)) {
+				return false;
+			}
+		}
+
+		return !postings.isEmpty();
+	}
+
+	// ----- private methods -----
+	private boolean containsPhrase(final Map<String, Posting> postings, final List<String> phrase) {
+
+		final int length        = phrase.size();
+		final int[][] positions = new int[length][];
+
+		for (int i=0; i<length; i++) {
+
+			final Posting posting = postings.get(phrase.get(i));
+			if (posting == null) {
+
+				return false;
+			}
+
+			positions[i] = posting.getPositions();
+		}
+
+		for (final int start : positions[0]) {
+
+			boolean found = true;
+
+			for (int i=1; i<length && found; i++) {
+				found = contains(positions[i], start + i);
+			}
+
+			if (found) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static boolean contains(final int[] sortedPositions, final int position) {
+		return Arrays.binarySearch(sortedPositions, position) >= 0;
+	}
+
+	private static List<String> tokenize(final String text) {
+
+		final FulltextTokenizer tokenizer = new FulltextTokenizer(null);
+
+		try {
+
+			tokenizer.write(text);
+			tokenizer.flush();
+
+		} catch (IOException ioex) {
+			// the tokenizer does not do any I/O
+		}
+
+		return tokenizer.getTokens();
+	}
+}
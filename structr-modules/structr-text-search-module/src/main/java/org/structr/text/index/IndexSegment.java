@@ -0,0 +1,550 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.text.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable segment of the fulltext index on disk, with a mutable set of
+ * deleted documents.
+ *
+ * A segment file consists of the document table (UUID and number of tokens
+ * of each document), the postings of all terms and the term dictionary. The
+ * postings of a term contain the document number, the term frequency and
+ * the delta-encoded positions of the term in each document. The document
+ * table and the term dictionary are kept in memory, postings are read from
+ * disk when a term is searched. The numbers of deleted documents are stored
+ * in a separate file next to the segment.
+ */
+public class IndexSegment {
+
+	private static final int MAGIC   = 0x53545849;
+	private static final int VERSION = 1;
+
+	private final Map<String, TermInfo> dictionary = new HashMap<>();
+	private final Map<String, Integer> documents   = new HashMap<>();
+	private final Set<Integer> deleted             = new HashSet<>();
+	private FileChannel channel                    = null;
+	private String[] terms                         = null;
+	private String[] uuids                         = null;
+	private int[] lengths                          = null;
+	private File directory                         = null;
+	private long totalLength                       = 0L;
+	private long id                                = 0L;
+
+	private IndexSegment(final File directory, final long id) {
+
+		this.directory = directory;
+		this.id        = id;
+	}
+
+	/**
+	 * Opens the segment with the given id in the given directory.
+	 *
+	 * @param directory
+	 * @param id
+	 * @return the segment
+	 * @throws IOException
+	 */
+	public static IndexSegment open(final File directory, final long id) throws IOException {
+
+		final IndexSegment segment = new IndexSegment(directory, id);
+
+		segment.load();
+
+		return segment;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public int getDocumentCount() {
+		return uuids.length;
+	}
+
+	public int getLiveDocumentCount() {
+		return uuids.length - deleted.size();
+	}
+
+	public long getLiveLength() {
+		return totalLength;
+	}
+
+	public String getUuid(final int document) {
+		return uuids[document];
+	}
+
+	public int getLength(final int document) {
+		return lengths[document];
+	}
+
+	public boolean isDeleted(final int document) {
+		return deleted.contains(document);
+	}
+
+	public Set<Integer> getDeletedDocuments() {
+		return new HashSet<>(deleted);
+	}
+
+	public String[] getTerms() {
+		return terms;
+	}
+
+	/**
+	 * Marks the document with the given UUID as deleted.
+	 *
+	 * @param uuid
+	 * @return whether a live document with the given UUID was found
+	 */
+	public boolean delete(final String uuid) {
+
+		final Integer document = documents.get(uuid);
+		if (document != null && deleted.add(document)) {
+
+			totalLength -= lengths[document];
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Writes the set of deleted documents to disk.
+	 *
+	 * @throws IOException
+	 */
+	public void writeDeletes() throws IOException {
+
+		final File file = getDeletesFile(directory, id);
+		final File tmp  = new File(directory, file.getName() + ".tmp");
+
+		try (final DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+
+			dos.writeInt(deleted.size());
+
+			for (final int document : deleted) {
+				dos.writeInt(document);
+			}
+		}
+
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Reads the postings of the given term, including the postings of
+	 * deleted documents.
+	 *
+	 * @param term
+	 * @return the postings, or an empty list if the term does not occur in this segment
+	 * @throws IOException
+	 */
+	public List<Posting> getPostings(final String term) throws IOException {
+
+		final TermInfo info = dictionary.get(term);
+		if (info == null) {
+
+			return new ArrayList<>();
+		}
+
+		final ByteBuffer buffer   = ByteBuffer.allocate(info.length);
+		final List<Posting> list  = new ArrayList<>(info.documentFrequency);
+		long position             = info.offset;
+
+		while (buffer.hasRemaining()) {
+
+			final int count = channel.read(buffer, position);
+			if (count < 0) {
+				throw new IOException("Unexpected end of segment " + id);
+			}
+
+			position += count;
+		}
+
+		buffer.flip();
+
+		int document = 0;
+
+		for (int i=0; i<info.documentFrequency; i++) {
+
+			document += readVarInt(buffer);
+
+			final int frequency   = readVarInt(buffer);
+			final int[] positions = new int[frequency];
+			int pos               = 0;
+
+			for (int j=0; j<frequency; j++) {
+
+				pos += readVarInt(buffer);
+				positions[j] = pos;
+			}
+
+			list.add(new Posting(document, positions));
+		}
+
+		return list;
+	}
+
+	public void close() {
+
+		try {
+
+			channel.close();
+
+		} catch (IOException ioex) {}
+	}
+
+	public void deleteFiles() {
+
+		close();
+
+		getSegmentFile(directory, id).delete();
+		getDeletesFile(directory, id).delete();
+	}
+
+	@Override
+	public String toString() {
+		return "IndexSegment(" + id + ", " + getLiveDocumentCount() + " documents)";
+	}
+
+	// ----- public static methods -----
+	public static File getSegmentFile(final File directory, final long id) {
+		return new File(directory, String.format("%08d.seg", id));
+	}
+
+	public static File getDeletesFile(final File directory, final long id) {
+		return new File(directory, String.format("%08d.del", id));
+	}
+
+	// ----- private methods -----
+	private void load() throws IOException {
+
+		final File file = getSegmentFile(directory, id);
+
+		try (final DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+
+			if (dis.readInt() != MAGIC || dis.readInt() != VERSION) {
+				throw new IOException("Invalid segment file " + file.getName());
+			}
+
+			final int documentCount = dis.readInt();
+
+			uuids   = new String[documentCount];
+			lengths = new int[documentCount];
+
+			for (int i=0; i<documentCount; i++) {
+
+				uuids[i]   = dis.readUTF();
+				lengths[i] = dis.readInt();
+
+				documents.put(uuids[i], i);
+				totalLength += lengths[i];
+			}
+		}
+
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+		// the dictionary is located at the offset stored at the end of the file
+		final ByteBuffer footer = ByteBuffer.allocate(8);
+		channel.read(footer, channel.size() - 8);
+		footer.flip();
+
+		try (final DataInputStream dis = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+
+			skipFully(dis, footer.getLong());
+
+			final int termCount = dis.readInt();
+
+			terms = new String[termCount];
+
+			for (int i=0; i<termCount; i++) {
+
+				final String term = dis.readUTF();
+
+				dictionary.put(term, new TermInfo(dis.readInt(), dis.readLong(), dis.readInt()));
+				terms[i] = term;
+			}
+		}
+
+		final File deletesFile = getDeletesFile(directory, id);
+		if (deletesFile.exists()) {
+
+			try (final DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(deletesFile)))) {
+
+				final int count = dis.readInt();
+				for (int i=0; i<count; i++) {
+
+					final int document = dis.readInt();
+					if (deleted.add(document)) {
+
+						totalLength -= lengths[document];
+					}
+				}
+			}
+		}
+	}
+
+	private static void skipFully(final DataInputStream dis, final long count) throws IOException {
+
+		long remaining = count;
+
+		while (remaining > 0) {
+
+			final long skipped = dis.skip(remaining);
+			if (skipped <= 0) {
+				throw new IOException("Unexpected end of segment file");
+			}
+
+			remaining -= skipped;
+		}
+	}
+
+	private static int readVarInt(final ByteBuffer buffer) {
+
+		int value = 0;
+		int shift = 0;
+		byte b;
+
+		do {
+
+			b      = buffer.get();
+			value |= (b & 0x7f) << shift;
+			shift += 7;
+
+		} while ((b & 0x80) != 0);
+
+		return value;
+	}
+
+	private static void writeVarInt(final ByteArrayOutputStream out, final int value) {
+
+		int v = value;
+
+		while ((v & ~0x7f) != 0) {
+
+			out.write((v & 0x7f) | 0x80);
+			v >>>= 7;
+		}
+
+		out.write(v);
+	}
+
+	// ----- nested classes -----
+	/**
+	 * The occurrences of a term in a single document.
+	 */
+	public static class Posting {
+
+		private int document    = 0;
+		private int[] positions = null;
+
+		public Posting(final int document, final int[] positions) {
+
+			this.document  = document;
+			this.positions = positions;
+		}
+
+		public int getDocument() {
+			return document;
+		}
+
+		public int getFrequency() {
+			return positions.length;
+		}
+
+		public int[] getPositions() {
+			return positions;
+		}
+	}
+
+	/**
+	 * Writes a new segment file. The documents must be added before the
+	 * postings, and the postings must be added in the order of their
+	 * terms.
+	 */
+	public static class Writer implements AutoCloseable {
+
+		private final ByteArrayOutputStream postings = new ByteArrayOutputStream();
+		private final List<String> dictionaryTerms   = new ArrayList<>();
+		private final List<TermInfo> dictionaryInfos = new ArrayList<>();
+		private DataOutputStream output              = null;
+		private File directory                       = null;
+		private File tmp                             = null;
+		private String lastTerm                      = null;
+		private long offset                          = 0L;
+		private long id                              = 0L;
+		private int documentCount                    = 0;
+		private boolean finished                     = false;
+
+		public Writer(final File directory, final long id, final int documentCount) throws IOException {
+
+			this.tmp           = new File(directory, getSegmentFile(directory, id).getName() + ".tmp");
+			this.output        = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+			this.documentCount = documentCount;
+			this.directory     = directory;
+			this.id            = id;
+
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeInt(documentCount);
+		}
+
+		public void addDocument(final String uuid, final int length) throws IOException {
+
+			output.writeUTF(uuid);
+			output.writeInt(length);
+
+			offset = output.size();
+		}
+
+		/**
+		 * Adds the postings of the given term, which must be sorted by
+		 * document number.
+		 *
+		 * @param term
+		 * @param list
+		 * @throws IOException
+		 */
+		public void addPostings(final String term, final List<Posting> list) throws IOException {
+
+			if (list.isEmpty()) {
+				return;
+			}
+
+			if (lastTerm != null && lastTerm.compareTo(term) >= 0) {
+				throw new IllegalStateException("Terms must be added in sorted order");
+			}
+
+			int lastDocument = 0;
+
+			postings.reset();
+
+			for (final Posting posting : list) {
+
+				writeVarInt(postings, posting.document - lastDocument);
+				writeVarInt(postings, posting.positions.length);
+
+				int lastPosition = 0;
+
+				for (final int position : posting.positions) {
+
+					writeVarInt(postings, position - lastPosition);
+					lastPosition = position;
+				}
+
+				lastDocument = posting.document;
+			}
+
+			dictionaryTerms.add(term);
+			dictionaryInfos.add(new TermInfo(list.size(), offset, postings.size()));
+
+			postings.writeTo(output);
+
+			offset  += postings.size();
+			lastTerm = term;
+		}
+
+		/**
+		 * Writes the term dictionary, syncs the segment file to disk and
+		 * opens the new segment.
+		 *
+		 * @return the new segment
+		 * @throws IOException
+		 */
+		public IndexSegment finish() throws IOException {
+
+			final int count = dictionaryTerms.size();
+
+			output.writeInt(count);
+
+			for (int i=0; i<count; i++) {
+
+				final TermInfo info = dictionaryInfos.get(i);
+
+				output.writeUTF(dictionaryTerms.get(i));
+				output.writeInt(info.documentFrequency);
+				output.writeLong(info.offset);
+				output.writeInt(info.length);
+			}
+
+			// position of the dictionary
+			output.writeLong(offset);
+			output.flush();
+
+			try (final FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.WRITE)) {
+				channel.force(true);
+			}
+
+			output.close();
+
+			Files.move(tmp.toPath(), getSegmentFile(directory, id).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+			finished = true;
+
+			return IndexSegment.open(directory, id);
+		}
+
+		@Override
+		public void close() throws IOException {
+
+			if (!finished) {
+
+				output.close();
+				tmp.delete();
+			}
+		}
+
+		public int getDocumentCount() {
+			return documentCount;
+		}
+	}
+
+	private static class TermInfo {
+
+		private int documentFrequency = 0;
+		private long offset           = 0L;
+		private int length            = 0;
+
+		public TermInfo(final int documentFrequency, final long offset, final int length) {
+
+			this.documentFrequency = documentFrequency;
+			this.offset            = offset;
+			this.length            = length;
+		}
+	}
+}
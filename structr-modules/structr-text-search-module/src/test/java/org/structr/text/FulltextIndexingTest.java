@@ -145,6 +145,61 @@ public class FulltextIndexingTest extends StructrTextSearchModuleTest {
 
 	}
 
+	@Test
+	public void testSearch() {
+
+		try (final Tx tx = app.tx()) {
+
+			FileHelper.createFile(securityContext, FulltextIndexingTest.class.getResourceAsStream("/test/test.txt"), "", File.class, "test.txt");
+			FileHelper.createFile(securityContext, FulltextIndexingTest.class.getResourceAsStream("/test/test2.txt"), "", File.class, "test2.txt");
+
+			tx.success();
+
+		} catch (FrameworkException|IOException fex) {
+			fail("Unexpected exception.");
+		}
+
+		delay();
+
+		try (final Tx tx = app.tx()) {
+
+			final List<? extends FileBase> result1 = app.nodeQuery(File.class).and(Indexable.indexedWords, new String[] { "repetition lorem" }, false).getAsList();
+			final List<? extends FileBase> result2 = app.nodeQuery(File.class).and(Indexable.indexedWords, new String[] { "\"lorem ipsum\"" }, false).getAsList();
+			final List<? extends FileBase> result3 = app.nodeQuery(File.class).and(Indexable.indexedWords, new String[] { "\"ipsum lorem\"" }, false).getAsList();
+
+			Assert.assertEquals("Invalid fulltext search result", 2, result1.size());
+			Assert.assertEquals("Invalid phrase search result", 1, result2.size());
+			Assert.assertEquals("Invalid phrase search result", "test.txt", result2.get(0).getName());
+			Assert.assertEquals("Invalid phrase search result", 0, result3.size());
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fail("Unexpected exception.");
+		}
+
+		// deleted files must be removed from the fulltext index
+		try (final Tx tx = app.tx()) {
+
+			app.delete(app.nodeQuery(File.class).andName("test.txt").getFirst());
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fail("Unexpected exception.");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			Assert.assertEquals("Deleted file found in fulltext index", 0, app.nodeQuery(File.class).and(Indexable.indexedWords, new String[] { "lorem" }, false).getAsList().size());
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fail("Unexpected exception.");
+		}
+	}
+
 	// ----- private methods -----
 	private void testFile() {
 
@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.text.index;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.structr.api.config.Settings;
+
+/**
+ *
+ *
+ */
+public class FulltextIndexTest {
+
+	@Before
+	public void setup() {
+
+		Settings.BasePath.setValue("/tmp/structr-fulltext-test-" + System.nanoTime());
+	}
+
+	@After
+	public void cleanup() {
+
+		FulltextIndex.shutdown();
+
+		Settings.IndexingMergeFactor.setValue(Settings.IndexingMergeFactor.getDefaultValue());
+	}
+
+	@Test
+	public void testRankedSearch() throws Exception {
+
+		final FulltextIndex index = FulltextIndex.getInstance();
+
+		index.add(documents(
+			"doc1", "structr graph database application platform",
+			"doc2", "graph graph graph theory",
+			"doc3", "relational database systems"
+		));
+
+		assertEquals("Invalid search result", Arrays.asList("doc2", "doc1"), index.search("graph"));
+		assertEquals("Invalid search result", Arrays.asList("doc3", "doc1"), index.search("platform systems"));
+		assertEquals("Invalid search result", 3, index.search("graph database").size());
+		assertEquals("Invalid search result", 0, index.search("unknown").size());
+	}
+
+	@Test
+	public void testPhraseSearch() throws Exception {
+
+		final FulltextIndex index = FulltextIndex.getInstance();
+
+		index.add(documents(
+			"doc1", "structr graph database application platform",
+			"doc2", "database graph structr"
+		));
+
+		assertEquals("Invalid phrase search result", Arrays.asList("doc1"), index.search("\"graph database\""));
+		assertEquals("Invalid phrase search result", Arrays.asList("doc2"), index.search("\"database graph\""));
+		assertEquals("Invalid phrase search result", 0, index.search("\"graph platform\"").size());
+	}
+
+	@Test
+	public void testUpdateAndDelete() throws Exception {
+
+		final FulltextIndex index = FulltextIndex.getInstance();
+
+		index.add(documents("doc1", "first version", "doc2", "first version"));
+		index.add(documents("doc1", "second version"));
+
+		assertEquals("Document was not updated", Arrays.asList("doc2"), index.search("first"));
+		assertEquals("Document was not updated", Arrays.asList("doc1"), index.search("second"));
+
+		index.remove(Collections.singleton("doc2"));
+
+		assertEquals("Document was not deleted", 0, index.search("first").size());
+		assertEquals("Invalid number of documents", 1, index.getDocumentCount());
+	}
+
+	@Test
+	public void testMergeAndReopen() throws Exception {
+
+		Settings.IndexingMergeFactor.setValue(3);
+
+		FulltextIndex index = FulltextIndex.getInstance();
+
+		for (int i=0; i<20; i++) {
+
+			index.add(documents("doc" + i, "common term number" + i));
+		}
+
+		index.remove(Collections.singleton("doc5"));
+
+		assertTrue("Segments were not merged", index.getSegmentCount() <= 3);
+		assertEquals("Invalid number of documents after merge", 19, index.getDocumentCount());
+
+		FulltextIndex.shutdown();
+
+		// simulate an interrupted segment write
+		final File directory = new File(Settings.getFullSettingPath(Settings.FulltextIndexPath));
+		assertTrue(new File(directory, "99999999.seg.tmp").createNewFile());
+
+		index = FulltextIndex.getInstance();
+
+		assertEquals("Invalid number of documents after reopen", 19, index.getDocumentCount());
+		assertEquals("Invalid search result after reopen", 19, index.search("common").size());
+		assertEquals("Invalid search result after reopen", Arrays.asList("doc7"), index.search("number7"));
+		assertEquals("Deleted document found after reopen", 0, index.search("number5").size());
+		assertTrue("Orphaned file was not removed", !new File(directory, "99999999.seg.tmp").exists());
+	}
+
+	// ----- private methods -----
+	private Map<String, List<String>> documents(final String... data) {
+
+		final Map<String, List<String>> documents = new LinkedHashMap<>();
+
+		for (int i=0; i<data.length; i+=2) {
+			documents.put(data[i], Arrays.asList(data[i+1].split(" ")));
+		}
+
+		return documents;
+	}
+}
@@ -24,19 +24,29 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import org.neo4j.driver.v1.AuthTokens;
 import org.neo4j.driver.v1.Config;
 import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.Record;
 import org.neo4j.driver.v1.GraphDatabase;
 import org.neo4j.driver.v1.Session;
 import org.neo4j.driver.v1.exceptions.ClientException;
+import org.neo4j.driver.v1.exceptions.DatabaseException;
 import org.neo4j.driver.v1.exceptions.ServiceUnavailableException;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.factory.GraphDatabaseBuilder;
@@ -51,16 +61,19 @@ import org.structr.api.NotInTransactionException;
 import org.structr.api.QueryResult;
 import org.structr.api.Transaction;
 import org.structr.api.config.Settings;
+import org.structr.api.graph.Direction;
 import org.structr.api.graph.GraphProperties;
 import org.structr.api.graph.Label;
 import org.structr.api.graph.Node;
 import org.structr.api.graph.Relationship;
+import org.structr.api.graph.RelationshipSpec;
 import org.structr.api.graph.RelationshipType;
 import org.structr.api.index.Index;
 import org.structr.api.util.QueryUtils;
 import org.structr.bolt.index.CypherNodeIndex;
 import org.structr.bolt.index.CypherRelationshipIndex;
 import org.structr.bolt.index.NodeResultStream;
+import org.structr.bolt.index.QueryCacheInvalidation;
 import org.structr.bolt.index.RelationshipResultStream;
 import org.structr.bolt.index.SimpleCypherQuery;
 import org.structr.bolt.mapper.NodeNodeMapper;
@@ -86,6 +99,7 @@ public class BoltDatabaseService implements DatabaseService, GraphProperties {
 	private String databasePath                                       = null;
 	private Driver driver                                             = null;
 	private int queryCacheSize                                        = 1000;
+	private int queryCacheResultSize                                  = 5000;
 
 	@Override
 	public boolean initialize() {
@@ -145,7 +159,8 @@ public class BoltDatabaseService implements DatabaseService, GraphProperties {
 
 			final int relCacheSize  = Settings.RelationshipCacheSize.getValue();
 			final int nodeCacheSize = Settings.NodeCacheSize.getValue();
-			this.queryCacheSize     = Settings.QueryCacheSize.getValue();
+			this.queryCacheSize       = Settings.QueryCacheSize.getValue();
+			this.queryCacheResultSize = Settings.QueryCacheResultSize.getValue();
 
 			NodeWrapper.initialize(nodeCacheSize);
 			logger.info("Node cache size set to {}", nodeCacheSize);
@@ -232,7 +247,205 @@ public class BoltDatabaseService implements DatabaseService, GraphProperties {
 		// make properties available to Cypher statement
 		map.put("properties", properties);
 
-		return NodeWrapper.newInstance(this, getCurrentTransaction().getNode(buf.toString(), map));
+		final SessionTransaction tx = getCurrentTransaction();
+		final NodeWrapper node      = NodeWrapper.newInstance(this, tx.getNode(buf.toString(), map));
+
+		tx.created(node);
+
+		return node;
+	}
+
+	@Override
+	public List<Node> createNodes(final Set<String> labels, final List<Map<String, Object>> properties) {
+
+		final StringBuilder buf       = new StringBuilder("UNWIND {rows} AS row CREATE (n");
+		final Map<String, Object> map = new HashMap<>();
+		final List<Node> nodes        = new ArrayList<>(properties.size());
+
+		if (properties.isEmpty()) {
+			return nodes;
+		}
+
+		for (final String label : labels) {
+
+			buf.append(":");
+			buf.append(label);
+		}
+
+		buf.append(") SET n = row RETURN n");
+
+		// make properties available to Cypher statement
+		map.put("rows", properties);
+
+		final SessionTransaction tx = getCurrentTransaction();
+
+		try (final QueryResult<org.neo4j.driver.v1.types.Node> result = tx.getNodes(buf.toString(), map)) {
+
+			for (final org.neo4j.driver.v1.types.Node n : result) {
+
+				final NodeWrapper node = NodeWrapper.newInstance(this, n);
+
+				tx.created(node);
+				nodes.add(node);
+			}
+
+		} catch (DatabaseException dex) {
+			throw SessionTransaction.translateDatabaseException(dex);
+		} catch (ClientException cex) {
+			throw SessionTransaction.translateClientException(cex);
+		}
+
+		return nodes;
+	}
+
+	@Override
+	public List<Relationship> createRelationships(final List<RelationshipSpec> relationships) {
+
+		final Map<String, List<Integer>> positionsByType = new LinkedHashMap<>();
+		final Relationship[] result                      = new Relationship[relationships.size()];
+		final SessionTransaction tx                      = getCurrentTransaction();
+
+		// relationship types cannot be parameterized, so we need one statement per type
+		for (int i=0; i<relationships.size(); i++) {
+
+			final String type       = relationships.get(i).getType().name();
+			List<Integer> positions = positionsByType.get(type);
+
+			if (positions == null) {
+
+				positions = new LinkedList<>();
+				positionsByType.put(type, positions);
+			}
+
+			positions.add(i);
+		}
+
+		for (final Entry<String, List<Integer>> entry : positionsByType.entrySet()) {
+
+			final List<Map<String, Object>> rows = new ArrayList<>(entry.getValue().size());
+			final Map<String, Object> map        = new HashMap<>();
+
+			for (final Integer position : entry.getValue()) {
+
+				final RelationshipSpec spec   = relationships.get(position);
+				final Map<String, Object> row = new HashMap<>();
+
+				row.put("start",      spec.getStartNode().getId());
+				row.put("end",        spec.getEndNode().getId());
+				row.put("properties", spec.getProperties() != null ? spec.getProperties() : Collections.EMPTY_MAP);
+
+				rows.add(row);
+			}
+
+			map.put("rows", rows);
+
+			final String statement = "UNWIND {rows} AS row MATCH (n), (m) WHERE ID(n) = row.start AND ID(m) = row.end CREATE (n)-[r:" + entry.getKey() + "]->(m) SET r = row.properties RETURN r";
+
+			try (final QueryResult<org.neo4j.driver.v1.types.Relationship> rels = tx.getRelationships(statement, map)) {
+
+				final Iterator<Integer> positions = entry.getValue().iterator();
+
+				for (final org.neo4j.driver.v1.types.Relationship r : rels) {
+
+					final RelationshipWrapper relationship = RelationshipWrapper.newInstance(this, r);
+
+					tx.created(relationship);
+
+					result[positions.next()] = relationship;
+				}
+
+			} catch (DatabaseException dex) {
+				throw SessionTransaction.translateDatabaseException(dex);
+			} catch (ClientException cex) {
+				throw SessionTransaction.translateClientException(cex);
+			}
+		}
+
+		// the relationship caches of the start and end nodes are outdated now
+		for (final RelationshipSpec spec : relationships) {
+
+			final NodeWrapper startNode = (NodeWrapper)spec.getStartNode();
+			final NodeWrapper endNode   = (NodeWrapper)spec.getEndNode();
+
+			startNode.clearCaches();
+			endNode.clearCaches();
+
+			tx.modified(startNode);
+			tx.modified(endNode);
+		}
+
+		return Arrays.asList(result);
+	}
+
+	@Override
+	public void prefetchRelationships(final Collection<Node> nodes, final RelationshipType relationshipType, final Direction direction) {
+
+		final Map<Long, List<Relationship>> relationships = new LinkedHashMap<>();
+		final Map<Long, NodeWrapper> wrappers             = new HashMap<>();
+		final Map<String, Object> map                     = new HashMap<>();
+		final SessionTransaction tx                       = getCurrentTransaction();
+		final String type                                 = relationshipType.name();
+		final long t0                                     = System.currentTimeMillis();
+		int count                                         = 0;
+
+		for (final Node node : nodes) {
+
+			final NodeWrapper wrapper = (NodeWrapper)node;
+
+			// skip nodes whose relationships are already cached
+			if (!wrapper.hasCachedRelationships(direction, relationshipType)) {
+
+				relationships.put(wrapper.getId(), new LinkedList<>());
+				wrappers.put(wrapper.getId(), wrapper);
+			}
+		}
+
+		if (relationships.isEmpty()) {
+			return;
+		}
+
+		final String statement;
+
+		switch (direction) {
+
+			case OUTGOING:
+				statement = "UNWIND {ids} AS id MATCH (n)-[r:" + type + "]->(m) WHERE ID(n) = id RETURN id, r, m";
+				break;
+
+			case INCOMING:
+				statement = "UNWIND {ids} AS id MATCH (n)<-[r:" + type + "]-(m) WHERE ID(n) = id RETURN id, r, m";
+				break;
+
+			default:
+				statement = "UNWIND {ids} AS id MATCH (n)-[r:" + type + "]-(m) WHERE ID(n) = id RETURN id, r, m";
+				break;
+		}
+
+		map.put("ids", new ArrayList<>(relationships.keySet()));
+
+		try (final QueryResult<Record> records = tx.getRecords(statement, map)) {
+
+			for (final Record record : records) {
+
+				// put the other node into the node cache so that the relationship can resolve it
+				NodeWrapper.newInstance(this, record.get("m").asNode());
+
+				relationships.get(record.get("id").asLong()).add(RelationshipWrapper.newInstance(this, record.get("r").asRelationship()));
+				count++;
+			}
+
+		} catch (DatabaseException dex) {
+			throw SessionTransaction.translateDatabaseException(dex);
+		} catch (ClientException cex) {
+			throw SessionTransaction.translateClientException(cex);
+		}
+
+		for (final Entry<Long, List<Relationship>> entry : relationships.entrySet()) {
+
+			wrappers.get(entry.getKey()).setCachedRelationships(direction, relationshipType, entry.getValue());
+		}
+
+		tx.logBatch(type + " " + direction.name() + " relationships of " + relationships.size() + " nodes", count, t0);
 	}
 
 	@Override
@@ -308,7 +521,7 @@ public class BoltDatabaseService implements DatabaseService, GraphProperties {
 	public Index<Node> nodeIndex() {
 
 		if (nodeIndex == null) {
-			nodeIndex = new CypherNodeIndex(this, queryCacheSize);
+			nodeIndex = new CypherNodeIndex(this, queryCacheSize, queryCacheResultSize);
 		}
 
 		return nodeIndex;
@@ -318,7 +531,7 @@ public class BoltDatabaseService implements DatabaseService, GraphProperties {
 	public Index<Relationship> relationshipIndex() {
 
 		if (relationshipIndex == null) {
-			relationshipIndex = new CypherRelationshipIndex(this, queryCacheSize);
+			relationshipIndex = new CypherRelationshipIndex(this, queryCacheSize, queryCacheResultSize);
 		}
 
 		return relationshipIndex;
@@ -346,6 +559,36 @@ public class BoltDatabaseService implements DatabaseService, GraphProperties {
 		}
 	}
 
+	@Override
+	public Map<String, Object> getStatistics() {
+
+		final Map<String, Object> statistics = new LinkedHashMap<>();
+
+		statistics.put("nodeCache",         NodeWrapper.getCacheStatistics());
+		statistics.put("relationshipCache", RelationshipWrapper.getCacheStatistics());
+
+		if (nodeIndex != null) {
+			statistics.put("nodeQueryCache", nodeIndex.getStatistics());
+		}
+
+		if (relationshipIndex != null) {
+			statistics.put("relationshipQueryCache", relationshipIndex.getStatistics());
+		}
+
+		return statistics;
+	}
+
+	public void invalidateQueryCache(final QueryCacheInvalidation nodes, final QueryCacheInvalidation relationships) {
+
+		if (nodeIndex != null) {
+			nodeIndex.invalidateCache(nodes);
+		}
+
+		if (relationshipIndex != null) {
+			relationshipIndex.invalidateCache(relationships);
+		}
+	}
+
 	public SessionTransaction getCurrentTransaction() {
 
 		final SessionTransaction tx = sessions.get();
@@ -18,11 +18,19 @@
  */
 package org.structr.bolt;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import org.apache.commons.lang.StringUtils;
 import org.neo4j.driver.v1.Record;
 import org.neo4j.driver.v1.Session;
@@ -46,23 +54,48 @@ import org.structr.api.ConstraintViolationException;
 import org.structr.api.DataFormatException;
 import org.structr.api.NetworkException;
 import org.structr.api.util.QueryUtils;
+import org.structr.bolt.index.QueryCacheInvalidation;
 import org.structr.bolt.mapper.RecordLongMapper;
 import org.structr.bolt.mapper.RecordNodeMapper;
 import org.structr.bolt.mapper.RecordRelationshipMapper;
 import org.structr.bolt.wrapper.EntityWrapper;
+import org.structr.bolt.wrapper.NodeWrapper;
+import org.structr.bolt.wrapper.RelationshipWrapper;
 import org.structr.bolt.wrapper.StatementResultWrapper;
 
 /**
+ * A transaction on a Bolt session.
  *
+ * Property and label modifications as well as the deletion of relationships
+ * are not sent to the database immediately but collected per entity and
+ * written in batches before the next statement is executed, and at commit.
+ * The entity wrappers update their local data immediately, so that reads in
+ * the same transaction see their own writes.
+ *
+ * The first modification of an entity that was not created in this
+ * transaction is written immediately, so that the write lock on the entity
+ * is acquired before other transactions can see the modified local data.
  */
 public class SessionTransaction implements org.structr.api.Transaction {
 
-	private final Set<EntityWrapper> modifiedEntities = new HashSet<>();
-	private BoltDatabaseService db                    = null;
-	private Session session                           = null;
-	private Transaction tx                            = null;
-	private boolean closed                            = false;
-	private boolean success                           = false;
+	private static final Pattern WRITE_CLAUSES                              = Pattern.compile("\\b(CREATE|MERGE|SET|DELETE|REMOVE|DETACH|FOREACH|LOAD|CALL|DROP)\\b", Pattern.CASE_INSENSITIVE);
+	private static final Pattern LABELS_AND_TYPES                           = Pattern.compile(":\\s*`?([\\p{L}_][\\p{L}\\p{N}_]*)`?");
+	private static final Pattern LABELED_VARIABLES                          = Pattern.compile("[\\(\\[]\\s*`?(\\w+)`?\\s*:");
+	private static final Pattern SET_TARGETS                                = Pattern.compile("(?:\\bSET|,)\\s*`?(\\w+)`?\\s*(?:\\+?=|\\.|:)", Pattern.CASE_INSENSITIVE);
+
+	private final QueryCacheInvalidation relationshipInvalidation           = new QueryCacheInvalidation();
+	private final QueryCacheInvalidation nodeInvalidation                   = new QueryCacheInvalidation();
+	private final Map<EntityWrapper, Map<String, Object>> pendingProperties = new LinkedHashMap<>();
+	private final Map<NodeWrapper, Map<String, Boolean>> pendingLabels      = new LinkedHashMap<>();
+	private final Set<Long> pendingRelationshipDeletions                    = new LinkedHashSet<>();
+	private final Set<EntityWrapper> modifiedEntities                       = new HashSet<>();
+	private final Set<EntityWrapper> lockedEntities                         = new HashSet<>();
+	private BoltDatabaseService db                                          = null;
+	private Session session                                                 = null;
+	private Transaction tx                                                  = null;
+	private boolean closed                                                  = false;
+	private boolean success                                                 = false;
+	private boolean nativeModifications                                     = false;
 
 	public SessionTransaction(final BoltDatabaseService db, final Session session) {
 
@@ -79,6 +112,9 @@ public class SessionTransaction implements org.structr.api.Transaction {
 	@Override
 	public void success() {
 
+		// write pending modifications before the transaction is committed
+		flush();
+
 		tx.success();
 
 		// transaction must be marked successfull explicitely
@@ -90,6 +126,9 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		if (!success) {
 
+			// discard modifications that were not written yet
+			clearPendingModifications();
+
 			// We need to invalidate all existing references because we cannot
 			// be sure that they contain the correct values after a rollback.
 			for (final EntityWrapper entity : modifiedEntities) {
@@ -98,12 +137,6 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		} else {
 
-			if (!modifiedEntities.isEmpty()) {
-
-				// data was written, invalidate query cache
-				db.invalidateQueryCache();
-			}
-
 			// Notify all nodes that are modified in this transaction
 			// so that the relationship caches are rebuilt.
 			for (final EntityWrapper entity : modifiedEntities) {
@@ -131,6 +164,13 @@ public class SessionTransaction implements org.structr.api.Transaction {
 			if (session.isOpen()) {
 				session.close();
 			}
+
+			// data was written, invalidate the affected query cache entries
+			// AFTER the commit so that no other transaction can re-populate
+			// the cache with outdated results
+			if (success) {
+				db.invalidateQueryCache(nodeInvalidation, relationshipInvalidation);
+			}
 		}
 	}
 
@@ -166,6 +206,8 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		final long t0 = System.currentTimeMillis();
 
+		flush();
+
 		try {
 
 			return tx.run(statement, map).next().get(0).asLong();
@@ -186,6 +228,8 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		final long t0 = System.currentTimeMillis();
 
+		flush();
+
 		try {
 
 			final StatementResult result = tx.run(statement, map);
@@ -212,6 +256,8 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		final long t0 = System.currentTimeMillis();
 
+		flush();
+
 		try {
 
 			return tx.run(statement, map).next().get(0).asEntity();
@@ -232,6 +278,8 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		final long t0 = System.currentTimeMillis();
 
+		flush();
+
 		try {
 
 			return tx.run(statement, map).next().get(0).asNode();
@@ -252,6 +300,8 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		final long t0 = System.currentTimeMillis();
 
+		flush();
+
 		try {
 
 			return tx.run(statement, map).next().get(0).asRelationship();
@@ -272,6 +322,8 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		final long t0 = System.currentTimeMillis();
 
+		flush();
+
 		try {
 
 			return QueryUtils.map(new RecordNodeMapper(), new StatementIterable(tx.run(statement, map)));
@@ -292,6 +344,8 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		final long t0 = System.currentTimeMillis();
 
+		flush();
+
 		try {
 
 			return QueryUtils.map(new RecordRelationshipMapper(), new StatementIterable(tx.run(statement, map)));
@@ -308,10 +362,34 @@ public class SessionTransaction implements org.structr.api.Transaction {
 		}
 	}
 
+	public QueryResult<Record> getRecords(final String statement, final Map<String, Object> map) {
+
+		final long t0 = System.currentTimeMillis();
+
+		flush();
+
+		try {
+
+			return new StatementIterable(tx.run(statement, map));
+
+		} catch (TransientException tex) {
+			closed = true;
+			throw new RetryException(tex);
+		} catch (NoSuchRecordException nex) {
+			throw new NotFoundException(nex);
+		} catch (ServiceUnavailableException ex) {
+			throw new NetworkException(ex.getMessage(), ex);
+		} finally {
+			logQuery(statement, map, t0);
+		}
+	}
+
 	public QueryResult<Long> getIds(final String statement, final Map<String, Object> map) {
 
 		final long t0 = System.currentTimeMillis();
 
+		flush();
+
 		try {
 
 			return QueryUtils.map(new RecordLongMapper(), new StatementIterable(tx.run(statement, map)));
@@ -332,6 +410,8 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		final long t0 = System.currentTimeMillis();
 
+		flush();
+
 		try {
 
 			final StatementResult result = tx.run(statement, map);
@@ -367,6 +447,10 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		final long t0 = System.currentTimeMillis();
 
+		analyzeNativeStatement(statement);
+
+		flush();
+
 		try {
 
 			return new StatementResultWrapper(db, tx.run(statement, map));
@@ -391,6 +475,8 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		final long t0 = System.currentTimeMillis();
 
+		flush();
+
 		try {
 
 			tx.run(statement, map).consume();
@@ -435,14 +521,191 @@ public class SessionTransaction implements org.structr.api.Transaction {
 		}
 	}
 
+	public void logBatch(final String description, final int resultCount, final long t0) {
+
+		if (db.logQueries()) {
+
+			final long time  = System.currentTimeMillis() - t0;
+			final String log = time + "ms";
+
+			System.out.print(StringUtils.leftPad(log, 5) + " ");
+			System.out.println("Batch: " + resultCount + " results for " + description);
+		}
+	}
+
+	public boolean hasModifications() {
+		return nativeModifications || !modifiedEntities.isEmpty();
+	}
+
 	public void modified(final EntityWrapper wrapper) {
+		modifiedEntities.add(wrapper);
+	}
+
+	public void modified(final EntityWrapper wrapper, final String key) {
+
+		getInvalidation(wrapper).modified(wrapper.getTypeLabels(), key);
+
+		modifiedEntities.add(wrapper);
+	}
+
+	public void created(final EntityWrapper wrapper) {
+
+		getInvalidation(wrapper).structurallyModified(wrapper.getTypeLabels());
+
+		modifiedEntities.add(wrapper);
+		lockedEntities.add(wrapper);
+	}
+
+	public void deleted(final EntityWrapper wrapper) {
 
-		// data was written, invalidate query cache
-		db.invalidateQueryCache();
+		getInvalidation(wrapper).structurallyModified(wrapper.getTypeLabels());
 
 		modifiedEntities.add(wrapper);
 	}
 
+	public void labelModified(final EntityWrapper wrapper, final String label) {
+
+		getInvalidation(wrapper).structurallyModified(wrapper.getTypeLabels());
+		getInvalidation(wrapper).structurallyModified(Collections.singleton(label));
+
+		modifiedEntities.add(wrapper);
+	}
+
+	// ----- pending modifications -----
+	public void setProperty(final EntityWrapper wrapper, final String key, final Object value) {
+
+		getPendingProperties(wrapper).put(key, value);
+		lock(wrapper);
+	}
+
+	public void setProperties(final EntityWrapper wrapper, final Map<String, Object> values) {
+
+		getPendingProperties(wrapper).putAll(values);
+		lock(wrapper);
+	}
+
+	public void addLabel(final NodeWrapper wrapper, final String label) {
+
+		getPendingLabels(wrapper).put(label, true);
+		lock(wrapper);
+	}
+
+	public void removeLabel(final NodeWrapper wrapper, final String label) {
+
+		getPendingLabels(wrapper).put(label, false);
+		lock(wrapper);
+	}
+
+	/**
+	 * Deletes the given entity. Relationships are deleted with the next
+	 * batch of pending modifications, nodes are deleted immediately so
+	 * that a failed deletion is reported to the caller.
+	 *
+	 * @param wrapper the entity to delete
+	 */
+	public void delete(final EntityWrapper wrapper) {
+
+		if (wrapper instanceof RelationshipWrapper) {
+
+			pendingProperties.remove(wrapper);
+			pendingRelationshipDeletions.add(wrapper.getId());
+
+			lock(wrapper);
+
+		} else {
+
+			final Map<String, Object> map = new HashMap<>();
+
+			pendingProperties.remove(wrapper);
+			pendingLabels.remove(wrapper);
+
+			map.put("id", wrapper.getId());
+
+			set("MATCH (n) WHERE ID(n) = {id} DELETE n", map);
+		}
+
+		deleted(wrapper);
+	}
+
+	/**
+	 * Writes all pending modifications of this transaction to the database,
+	 * using one statement per kind of modification.
+	 */
+	@Override
+	public void flush() {
+
+		if (pendingProperties.isEmpty() && pendingLabels.isEmpty() && pendingRelationshipDeletions.isEmpty()) {
+			return;
+		}
+
+		final List<Map<String, Object>> nodeProperties         = new ArrayList<>();
+		final List<Map<String, Object>> relationshipProperties = new ArrayList<>();
+		final Map<String, List<Long>> addedLabels              = new LinkedHashMap<>();
+		final Map<String, List<Long>> removedLabels            = new LinkedHashMap<>();
+		final List<Long> deletedRelationships                  = new ArrayList<>(pendingRelationshipDeletions);
+
+		for (final Entry<EntityWrapper, Map<String, Object>> entry : pendingProperties.entrySet()) {
+
+			final EntityWrapper wrapper   = entry.getKey();
+			final Map<String, Object> row = new HashMap<>();
+
+			row.put("id", wrapper.getId());
+			row.put("properties", entry.getValue());
+
+			if (wrapper instanceof NodeWrapper) {
+
+				nodeProperties.add(row);
+
+			} else {
+
+				relationshipProperties.add(row);
+			}
+		}
+
+		for (final Entry<NodeWrapper, Map<String, Boolean>> entry : pendingLabels.entrySet()) {
+
+			final long id = entry.getKey().getId();
+
+			for (final Entry<String, Boolean> label : entry.getValue().entrySet()) {
+
+				final Map<String, List<Long>> target = label.getValue() ? addedLabels : removedLabels;
+				List<Long> ids                       = target.get(label.getKey());
+
+				if (ids == null) {
+
+					ids = new ArrayList<>();
+					target.put(label.getKey(), ids);
+				}
+
+				ids.add(id);
+			}
+		}
+
+		// clear pending modifications before the statements are executed
+		// because set() flushes the pending modifications itself
+		clearPendingModifications();
+
+		if (!nodeProperties.isEmpty()) {
+			set("UNWIND {batch} AS row MATCH (n) WHERE ID(n) = row.id SET n += row.properties", Collections.singletonMap("batch", nodeProperties));
+		}
+
+		if (!relationshipProperties.isEmpty()) {
+			set("UNWIND {batch} AS row MATCH ()-[n]-() WHERE ID(n) = row.id SET n += row.properties", Collections.singletonMap("batch", relationshipProperties));
+		}
+
+		for (final Entry<String, List<Long>> entry : addedLabels.entrySet()) {
+			set("UNWIND {ids} AS id MATCH (n) WHERE ID(n) = id SET n :" + entry.getKey(), Collections.singletonMap("ids", entry.getValue()));
+		}
+
+		for (final Entry<String, List<Long>> entry : removedLabels.entrySet()) {
+			set("UNWIND {ids} AS id MATCH (n) WHERE ID(n) = id REMOVE n:" + entry.getKey(), Collections.singletonMap("ids", entry.getValue()));
+		}
+
+		if (!deletedRelationships.isEmpty()) {
+			set("UNWIND {ids} AS id MATCH ()-[n]-() WHERE ID(n) = id DELETE n", Collections.singletonMap("ids", deletedRelationships));
+		}
+	}
+
 	// ----- public static methods -----
 	public static RuntimeException translateClientException(final ClientException cex) {
 
@@ -472,6 +735,161 @@ public class SessionTransaction implements org.structr.api.Transaction {
 		throw dex;
 	}
 
+	// ----- private methods -----
+	/**
+	 * Determines which cached query results can be affected by the given
+	 * native statement. Statements that only contain CREATE clauses, and
+	 * SET clauses on entities created in the same statement, can only
+	 * create entities with the labels and types that are explicitly named
+	 * in the statement, all other writing statements affect every cached
+	 * result.
+	 */
+	private void analyzeNativeStatement(final String statement) {
+
+		final Matcher matcher = WRITE_CLAUSES.matcher(statement);
+		boolean isWrite       = false;
+		boolean createOnly    = true;
+		boolean hasSet        = false;
+
+		while (matcher.find()) {
+
+			final String clause = matcher.group(1);
+
+			isWrite = true;
+
+			if ("SET".equalsIgnoreCase(clause)) {
+
+				hasSet = true;
+
+			} else if (!"CREATE".equalsIgnoreCase(clause)) {
+
+				createOnly = false;
+				break;
+			}
+		}
+
+		if (createOnly && hasSet) {
+			createOnly = onlySetsCreatedEntities(statement);
+		}
+
+		if (isWrite) {
+
+			nativeModifications = true;
+
+			if (createOnly) {
+
+				final Matcher labelMatcher = LABELS_AND_TYPES.matcher(statement);
+				final Set<String> labels   = new HashSet<>();
+
+				while (labelMatcher.find()) {
+					labels.add(labelMatcher.group(1));
+				}
+
+				nodeInvalidation.structurallyModified(labels);
+				relationshipInvalidation.structurallyModified(labels);
+
+			} else {
+
+				nodeInvalidation.invalidateAll();
+				relationshipInvalidation.invalidateAll();
+			}
+		}
+	}
+
+	/**
+	 * Indicates whether all SET clauses of the given statement modify
+	 * variables that are bound with a label or type after the first
+	 * CREATE clause, i.e. entities created by the statement itself.
+	 */
+	private boolean onlySetsCreatedEntities(final String statement) {
+
+		final int createIndex = statement.toUpperCase().indexOf("CREATE");
+		if (createIndex < 0) {
+
+			return false;
+		}
+
+		final Matcher labeledMatcher = LABELED_VARIABLES.matcher(statement);
+		final Set<String> matched    = new HashSet<>();
+		final Set<String> created    = new HashSet<>();
+
+		while (labeledMatcher.find()) {
+
+			if (labeledMatcher.start() > createIndex) {
+
+				created.add(labeledMatcher.group(1));
+
+			} else {
+
+				matched.add(labeledMatcher.group(1));
+			}
+		}
+
+		final Matcher setMatcher = SET_TARGETS.matcher(statement.substring(createIndex));
+		while (setMatcher.find()) {
+
+			final String variable = setMatcher.group(1);
+
+			if (!created.contains(variable) || matched.contains(variable)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private Map<String, Object> getPendingProperties(final EntityWrapper wrapper) {
+
+		Map<String, Object> properties = pendingProperties.get(wrapper);
+		if (properties == null) {
+
+			// null values must be kept, SET n += {properties} removes them
+			properties = new HashMap<>();
+			pendingProperties.put(wrapper, properties);
+		}
+
+		return properties;
+	}
+
+	private Map<String, Boolean> getPendingLabels(final NodeWrapper wrapper) {
+
+		Map<String, Boolean> labels = pendingLabels.get(wrapper);
+		if (labels == null) {
+
+			labels = new LinkedHashMap<>();
+			pendingLabels.put(wrapper, labels);
+		}
+
+		return labels;
+	}
+
+	/**
+	 * Writes the pending modifications immediately if this transaction does
+	 * not hold the write lock on the given entity yet.
+	 */
+	private void lock(final EntityWrapper wrapper) {
+
+		if (lockedEntities.add(wrapper)) {
+			flush();
+		}
+	}
+
+	private void clearPendingModifications() {
+
+		pendingProperties.clear();
+		pendingLabels.clear();
+		pendingRelationshipDeletions.clear();
+	}
+
+	private QueryCacheInvalidation getInvalidation(final EntityWrapper wrapper) {
+
+		if (wrapper instanceof NodeWrapper) {
+			return nodeInvalidation;
+		}
+
+		return relationshipInvalidation;
+	}
+
 	// ----- nested classes -----
 	private class StatementIterable implements QueryResult<Record> {
 
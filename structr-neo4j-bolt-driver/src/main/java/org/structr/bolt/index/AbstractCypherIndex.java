@@ -18,14 +18,19 @@
  */
 package org.structr.bolt.index;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.QueryResult;
@@ -39,12 +44,13 @@ import org.structr.api.search.GroupQuery;
 import org.structr.api.search.NotEmptyQuery;
 import org.structr.api.search.QueryPredicate;
 import org.structr.api.search.RangeQuery;
+import org.structr.api.search.SortSpec;
 import org.structr.api.search.SpatialQuery;
 import org.structr.api.search.TypeConverter;
 import org.structr.api.search.TypeQuery;
 import org.structr.api.search.UuidQuery;
+import org.structr.api.util.Cachable;
 import org.structr.api.util.FixedSizeCache;
-import org.structr.api.util.Iterables;
 import org.structr.bolt.*;
 import org.structr.bolt.index.converter.BooleanTypeConverter;
 import org.structr.bolt.index.converter.ByteTypeConverter;
@@ -105,13 +111,21 @@ public abstract class AbstractCypherIndex<T extends PropertyContainer> implement
 		CONVERTERS.put(byte.class,    new ByteTypeConverter());
 	}
 
-	protected final FixedSizeCache<Integer, CachedQueryResult> queryCache;
+	protected final FixedSizeCache<String, CachedQueryResult> queryCache;
 	protected final BoltDatabaseService db;
 
-	public AbstractCypherIndex(final BoltDatabaseService db, final int queryCacheSize) {
+	private final AtomicLong generation    = new AtomicLong();
+	private final AtomicLong hits          = new AtomicLong();
+	private final AtomicLong misses        = new AtomicLong();
+	private final AtomicLong invalidations = new AtomicLong();
+	private final AtomicLong evictions     = new AtomicLong();
+	private final int maxResultSize;
 
-		this.queryCache = new FixedSizeCache<>(queryCacheSize);
-		this.db         = db;
+	public AbstractCypherIndex(final BoltDatabaseService db, final int queryCacheSize, final int maxResultSize) {
+
+		this.queryCache    = new FixedSizeCache<>(queryCacheSize);
+		this.maxResultSize = maxResultSize;
+		this.db            = db;
 	}
 
 	public abstract QueryResult<T> getResult(final PageableQuery query);
@@ -148,6 +162,11 @@ public abstract class AbstractCypherIndex<T extends PropertyContainer> implement
 
 	@Override
 	public QueryResult<T> query(final QueryPredicate predicate) {
+		return query(predicate, 0, -1);
+	}
+
+	@Override
+	public QueryResult<T> query(final QueryPredicate predicate, final int offset, final int limit) {
 
 		final AdvancedCypherQuery query = new AdvancedCypherQuery(this);
 
@@ -157,19 +176,95 @@ public abstract class AbstractCypherIndex<T extends PropertyContainer> implement
 		if (sortKey != null) {
 
 			query.sort(predicate.getSortType(), sortKey, predicate.sortDescending());
+
+			for (final SortSpec spec : predicate.getSecondarySortSpecs()) {
+				query.sort(spec.getSortType(), spec.getSortKey(), spec.sortDescending());
+			}
+
+			query.totalOrder(predicate.hasExplicitSortKey());
+		}
+
+		query.range(offset, limit);
+
+		// Transactions with pending modifications must see their own
+		// writes, so the cache can only be used for unmodified ones.
+		if (!db.getCurrentTransaction().hasModifications()) {
+
+			final String cacheKey          = query.getCacheKey();
+			final CachedQueryResult cached = queryCache.get(cacheKey);
+
+			if (cached != null) {
+
+				hits.incrementAndGet();
+				return cached;
+			}
+
+			misses.incrementAndGet();
+
+			return new CachingQueryResult(getResult(query), cacheKey, query.getTypeLabels(), query.getPropertyKeys(), generation.get());
 		}
 
 		return getResult(query);
 	}
 
+	@Override
+	public long count(final QueryPredicate predicate) {
+
+		final AdvancedCypherQuery query = new AdvancedCypherQuery(this);
+
+		createQuery(this, predicate, query, true);
+
+		final String statement = query.getCountStatement();
+		if (statement != null) {
+
+			return db.getCurrentTransaction().getLong(statement, query.getParameters());
+		}
+
+		return -1;
+	}
+
 	public void invalidateCache() {
 
+		generation.incrementAndGet();
+
 		if (!queryCache.isEmpty()) {
 
 			queryCache.clear();
 		}
 	}
 
+	/**
+	 * Removes only the cached results whose type labels and property
+	 * keys overlap with the given modifications.
+	 *
+	 * @param invalidation the modifications of a transaction
+	 */
+	public void invalidateCache(final QueryCacheInvalidation invalidation) {
+
+		if (!invalidation.isEmpty()) {
+
+			generation.incrementAndGet();
+
+			if (!queryCache.isEmpty()) {
+
+				invalidations.addAndGet(queryCache.removeAll(result -> result.isAffectedBy(invalidation)));
+			}
+		}
+	}
+
+	public Map<String, Object> getStatistics() {
+
+		final Map<String, Object> statistics = new LinkedHashMap<>();
+
+		statistics.put("size",          queryCache.size());
+		statistics.put("hits",          hits.get());
+		statistics.put("misses",        misses.get());
+		statistics.put("invalidations", invalidations.get());
+		statistics.put("evictions",     evictions.get());
+
+		return statistics;
+	}
+
 	// ----- interface QueryFactory -----
 	@Override
 	public boolean createQuery(final QueryFactory parent, final QueryPredicate predicate, final AdvancedCypherQuery query, final boolean isFirst) {
@@ -192,34 +287,122 @@ public abstract class AbstractCypherIndex<T extends PropertyContainer> implement
 	}
 
 	// ----- nested classes -----
-	protected class CachedQueryResult implements QueryResult<T> {
+	protected class CachedQueryResult implements QueryResult<T>, Cachable {
 
-		private Collection<T> result = null;
+		private final Collection<String> labels;
+		private final Set<String> keys;
+		private final List<T> result;
 
-		public CachedQueryResult(final Iterable<T> source) {
+		public CachedQueryResult(final List<T> result, final Collection<String> labels, final Set<String> keys) {
 
-			if (source instanceof Collection) {
+			this.result = Collections.unmodifiableList(result);
+			this.labels = labels;
+			this.keys   = keys;
+		}
 
-				this.result = (Collection)source;
+		@Override
+		public void close() {
+		}
 
-			} else {
+		@Override
+		public Iterator<T> iterator() {
+			return result.iterator();
+		}
+
+		@Override
+		public void onRemoveFromCache() {
+			evictions.incrementAndGet();
+		}
+
+		public boolean isEmpty() {
+			return result.isEmpty();
+		}
 
-				this.result = Iterables.toList(source);
+		public boolean isAffectedBy(final QueryCacheInvalidation invalidation) {
+			return invalidation.affects(labels, keys);
+		}
+	}
 
-			}
+	/**
+	 * Streams the results of a query and stores them in the query cache
+	 * after they have been consumed completely, unless the result exceeds
+	 * the maximum size or the cache was invalidated in the meantime.
+	 */
+	private class CachingQueryResult implements QueryResult<T> {
+
+		private final Collection<String> labels;
+		private final QueryResult<T> source;
+		private final Set<String> keys;
+		private final String cacheKey;
+		private final long startGeneration;
+		private List<T> collected = new ArrayList<>();
+
+		public CachingQueryResult(final QueryResult<T> source, final String cacheKey, final Collection<String> labels, final Set<String> keys, final long startGeneration) {
+
+			this.startGeneration = startGeneration;
+			this.cacheKey        = cacheKey;
+			this.source          = source;
+			this.labels          = new ArrayList<>(labels);
+			this.keys            = new HashSet<>(keys);
 		}
 
 		@Override
 		public void close() {
+			source.close();
 		}
 
 		@Override
 		public Iterator<T> iterator() {
-			return result.iterator();
+
+			final Iterator<T> iterator = source.iterator();
+
+			return new Iterator<T>() {
+
+				@Override
+				public boolean hasNext() {
+
+					final boolean hasNext = iterator.hasNext();
+					if (!hasNext && collected != null) {
+
+						store();
+					}
+
+					return hasNext;
+				}
+
+				@Override
+				public T next() {
+
+					final T next = iterator.next();
+
+					if (collected != null) {
+
+						if (collected.size() < maxResultSize) {
+
+							collected.add(next);
+
+						} else {
+
+							// result too large, do not cache
+							collected = null;
+						}
+					}
+
+					return next;
+				}
+			};
 		}
 
-		public boolean isEmpty() {
-			return result.isEmpty();
+		private void store() {
+
+			// do not cache results that were read while other transactions
+			// committed modifications or after this transaction wrote data
+			if (generation.get() == startGeneration && !db.getCurrentTransaction().hasModifications()) {
+
+				queryCache.put(cacheKey, new CachedQueryResult(collected, labels, keys));
+			}
+
+			collected = null;
 		}
 	}
 }
@@ -19,11 +19,14 @@
 package org.structr.bolt.index;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import org.structr.api.search.SortSpec;
 import org.structr.api.search.SortType;
 
 /**
@@ -33,16 +36,18 @@ public class AdvancedCypherQuery implements PageableQuery {
 
 	private final Map<String, Object> parameters = new HashMap<>();
 	private final List<String> typeLabels        = new LinkedList<>();
+	private final Set<String> propertyKeys       = new HashSet<>();
+	private final List<SortSpec> sortSpecs       = new LinkedList<>();
 	private final StringBuilder buffer           = new StringBuilder();
 	private String sourceTypeLabel               = null;
 	private String targetTypeLabel               = null;
 	private AbstractCypherIndex<?> index         = null;
-	private boolean sortDescending               = false;
-	private SortType sortType                    = null;
-	private String sortKey                       = null;
 	private int page                             = 0;
 	private int pageSize                         = 0;
+	private int offset                           = 0;
+	private int limit                            = -1;
 	private int count                            = 0;
+	private boolean totalOrder                   = false;
 
 	public AdvancedCypherQuery(final AbstractCypherIndex<?> index) {
 		this.index    = index;
@@ -54,23 +59,41 @@ public class AdvancedCypherQuery implements PageableQuery {
 		return getStatement();
 	}
 
-	public int getHashCode() {
+	/**
+	 * Returns a key that uniquely identifies the result set of this
+	 * query, independent of the current page.
+	 *
+	 * @return the cache key
+	 */
+	public String getCacheKey() {
 
-		int hashCode = 23;
+		final StringBuilder buf = new StringBuilder();
 
-		hashCode += 27 * typeLabels.hashCode();
-		hashCode += 37 * getStatement().hashCode();
-		hashCode += 47 * deepHashCode(parameters);
+		buf.append(typeLabels);
+		buf.append(getStatement(0));
+		buf.append(deepToString(parameters));
 
-		if (sortKey != null) {
-			hashCode += 57 * sortKey.hashCode();
-		}
+		return buf.toString();
+	}
 
-		if (sortDescending) {
-			hashCode += 1;
-		}
+	/**
+	 * Returns the type labels (node labels or relationship types)
+	 * this query is restricted to, or an empty list if there is no
+	 * such restriction.
+	 *
+	 * @return the type labels
+	 */
+	public List<String> getTypeLabels() {
+		return typeLabels;
+	}
 
-		return hashCode;
+	/**
+	 * Returns the property keys this query filters or sorts on.
+	 *
+	 * @return the property keys
+	 */
+	public Set<String> getPropertyKeys() {
+		return propertyKeys;
 	}
 
 	@Override
@@ -85,9 +108,118 @@ public class AdvancedCypherQuery implements PageableQuery {
 
 	@Override
 	public String getStatement() {
+		return getStatement(page);
+	}
+
+	private String getStatement(final int pageNumber) {
+
+		final StringBuilder buf = new StringBuilder();
+
+		appendMatch(buf, index.getQuerySuffix());
+
+		if (!sortSpecs.isEmpty()) {
+
+			boolean sortDescending = false;
+
+			buf.append(" ORDER BY");
+
+			for (final SortSpec spec : sortSpecs) {
+
+				final SortType sortType = spec.getSortType();
+				final String sortKey    = spec.getSortKey();
+
+				sortDescending = spec.sortDescending();
+
+				switch (sortType) {
+
+					case Default:
+						// default is "String"
+						// no COALESCE needed => much faster
+						buf.append(" n.`");
+						buf.append(sortKey);
+						buf.append("`");
+
+						break;
+
+					default:
+						// other types are numeric
+						buf.append(" COALESCE(n.`");
+						buf.append(sortKey);
+						buf.append("`, ");
+
+						// COALESCE needs a correctly typed minimum value,
+						// so we need to supply a value based on the sort
+						// type.
+
+						buf.append("-1");
+						buf.append(")");
+				}
+
+				if (sortDescending) {
+					buf.append(" DESC");
+				}
+
+				buf.append(",");
+			}
+
+			if (totalOrder || offset > 0 || limit >= 0) {
+
+				// use the internal id as a tie-breaker so that the order is
+				// total and consecutive batches and ranges do not overlap
+				buf.append(" id(n)");
+
+				if (sortDescending) {
+					buf.append(" DESC");
+				}
+
+			} else {
+
+				// keep the natural order of results with equal sort values
+				buf.setLength(buf.length() - 1);
+			}
+		}
+
+		final int skip = offset + pageNumber * pageSize;
+		int batchSize  = pageSize;
+
+		if (limit >= 0) {
+
+			// do not read beyond the requested range
+			batchSize = Math.max(0, Math.min(pageSize, limit - pageNumber * pageSize));
+		}
+
+		buf.append(" SKIP ");
+		buf.append(skip);
+		buf.append(" LIMIT ");
+		buf.append(batchSize);
+
+		return buf.toString();
+	}
+
+	/**
+	 * Returns a statement that counts the results of this query, or
+	 * null if the query cannot be counted with a single statement.
+	 *
+	 * @return the count statement or null
+	 */
+	public String getCountStatement() {
+
+		if (typeLabels.size() > 1) {
+
+			// the results of a UNION cannot be counted
+			return null;
+		}
 
 		final StringBuilder buf = new StringBuilder();
-		final int typeCount     = typeLabels.size();
+
+		appendMatch(buf, " RETURN count(DISTINCT n)");
+
+		return buf.toString();
+	}
+
+	private void appendMatch(final StringBuilder buf, final String suffix) {
+
+		final int typeCount = typeLabels.size();
 
 		switch (typeCount) {
 
@@ -100,7 +232,7 @@ public class AdvancedCypherQuery implements PageableQuery {
 					buf.append(buffer);
 				}
 
-				buf.append(index.getQuerySuffix());
+				buf.append(suffix);
 				break;
 
 			case 1:
@@ -112,7 +244,7 @@ public class AdvancedCypherQuery implements PageableQuery {
 					buf.append(buffer);
 				}
 
-				buf.append(index.getQuerySuffix());
+				buf.append(suffix);
 				break;
 
 			default:
@@ -127,7 +259,7 @@ public class AdvancedCypherQuery implements PageableQuery {
 						buf.append(buffer);
 					}
 
-					buf.append(index.getQuerySuffix());
+					buf.append(suffix);
 
 					if (it.hasNext()) {
 						buf.append(" UNION ");
@@ -135,45 +267,6 @@ public class AdvancedCypherQuery implements PageableQuery {
 				}
 				break;
 		}
-
-		if (sortKey != null) {
-
-			switch (sortType) {
-
-				case Default:
-					// default is "String"
-					// no COALESCE needed => much faster
-					buf.append(" ORDER BY n.`");
-					buf.append(sortKey);
-					buf.append("` ");
-					
-					break;
-
-				default:
-					// other types are numeric
-					buf.append(" ORDER BY COALESCE(n.`");
-					buf.append(sortKey);
-					buf.append("`, ");
-					
-					// COALESCE needs a correctly typed minimum value,
-					// so we need to supply a value based on the sort
-					// type.
-					
-					buf.append("-1");
-					buf.append(")");
-			}
-
-			if (sortDescending) {
-				buf.append(" DESC");
-			}
-		}
-
-		buf.append(" SKIP ");
-		buf.append(page * pageSize);
-		buf.append(" LIMIT ");
-		buf.append(pageSize);
-
-		return buf.toString();
 	}
 
 	@Override
@@ -219,6 +312,10 @@ public class AdvancedCypherQuery implements PageableQuery {
 
 	public void addSimpleParameter(final String key, final String operator, final Object value, final boolean isProperty) {
 
+		if (isProperty) {
+			propertyKeys.add(key);
+		}
+
 		if (value != null) {
 
 			final String paramKey = "param" + count++;
@@ -264,6 +361,8 @@ public class AdvancedCypherQuery implements PageableQuery {
 
 	public void addListParameter(final String key, final String operator, final Object value) {
 
+		propertyKeys.add(key);
+
 		if (value != null) {
 
 			final String paramKey = "param" + count++;
@@ -293,6 +392,8 @@ public class AdvancedCypherQuery implements PageableQuery {
 		final String paramKey1 = "param" + count++;
 		final String paramKey2 = "param" + count++;
 
+		propertyKeys.add(key);
+
 		buffer.append("(n.`");
 		buffer.append(key);
 		buffer.append("` ");
@@ -313,11 +414,41 @@ public class AdvancedCypherQuery implements PageableQuery {
 		parameters.put(paramKey2, value2);
 	}
 
+	/**
+	 * Adds a sort key to this query. Sort keys are applied in the order
+	 * in which they were added.
+	 *
+	 * @param sortType the sort type
+	 * @param sortKey the sort key
+	 * @param sortDescending whether to sort in descending order
+	 */
 	public void sort(final SortType sortType, final String sortKey, final boolean sortDescending) {
 
-		this.sortDescending = sortDescending;
-		this.sortType       = sortType;
-		this.sortKey        = sortKey;
+		sortSpecs.add(new SortSpec(sortKey, sortType, sortDescending));
+
+		propertyKeys.add(sortKey);
+	}
+
+	/**
+	 * Restricts the results of this query to the given range.
+	 *
+	 * @param offset the number of results to skip
+	 * @param limit the maximum number of results, or -1 for all results
+	 */
+	public void range(final int offset, final int limit) {
+
+		this.offset = offset;
+		this.limit  = limit;
+	}
+
+	/**
+	 * Requests a total order of the results, even if the query is not
+	 * restricted to a range.
+	 *
+	 * @param totalOrder whether the results must be in a total order
+	 */
+	public void totalOrder(final boolean totalOrder) {
+		this.totalOrder = totalOrder;
 	}
 
 	public void setSourceType(final String sourceTypeLabel) {
@@ -328,7 +459,7 @@ public class AdvancedCypherQuery implements PageableQuery {
 		this.targetTypeLabel = targetTypeLabel;
 	}
 
-	private int deepHashCode(final Map<String, Object> map) {
+	private String deepToString(final Map<String, Object> map) {
 
 		final StringBuilder buf = new StringBuilder();
 
@@ -340,6 +471,6 @@ public class AdvancedCypherQuery implements PageableQuery {
 			buf.append(entry.getValue());
 		}
 
-		return buf.toString().hashCode();
+		return buf.toString();
 	}
 }
@@ -29,9 +29,9 @@ import org.structr.bolt.mapper.NodeNodeMapper;
  */
 public class CypherNodeIndex extends AbstractCypherIndex<Node> {
 
-	public CypherNodeIndex(final BoltDatabaseService db, final int queryCacheSize) {
+	public CypherNodeIndex(final BoltDatabaseService db, final int queryCacheSize, final int maxResultSize) {
 
-		super(db, queryCacheSize);
+		super(db, queryCacheSize, maxResultSize);
 	}
 
 	@Override
@@ -0,0 +1,143 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.bolt.index;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Collects the type labels and property keys of the entities that were
+ * modified in a transaction, so that only the cached query results which
+ * can be affected by these modifications need to be invalidated.
+ *
+ * A structural modification (creation, deletion or a change of labels)
+ * affects every cached query on one of the entity's labels, a property
+ * modification only affects the cached queries on one of the entity's
+ * labels that filter or sort on the modified key.
+ */
+public class QueryCacheInvalidation {
+
+	private final Map<String, Set<String>> modifiedKeys = new HashMap<>();
+	private final Set<String> structuralLabels          = new HashSet<>();
+	private boolean all                                 = false;
+
+	public void modified(final Collection<String> labels, final String key) {
+
+		for (final String label : labels) {
+
+			Set<String> keys = modifiedKeys.get(label);
+			if (keys == null) {
+
+				keys = new HashSet<>();
+				modifiedKeys.put(label, keys);
+			}
+
+			keys.add(key);
+		}
+	}
+
+	public void structurallyModified(final Collection<String> labels) {
+		structuralLabels.addAll(labels);
+	}
+
+	/**
+	 * Marks this object as affecting every cached query, e.g. after a
+	 * native statement whose modifications cannot be determined.
+	 */
+	public void invalidateAll() {
+		all = true;
+	}
+
+	public boolean isEmpty() {
+		return !all && modifiedKeys.isEmpty() && structuralLabels.isEmpty();
+	}
+
+	public void clear() {
+
+		modifiedKeys.clear();
+		structuralLabels.clear();
+
+		all = false;
+	}
+
+	/**
+	 * Indicates whether the result of a query with the given type labels
+	 * and property keys can be affected by the modifications collected
+	 * in this object. A query without type labels is affected by every
+	 * modification.
+	 *
+	 * @param labels the type labels of the query
+	 * @param keys the property keys of the query
+	 *
+	 * @return whether the query is affected
+	 */
+	public boolean affects(final Collection<String> labels, final Set<String> keys) {
+
+		if (all) {
+			return true;
+		}
+
+		if (labels.isEmpty()) {
+
+			if (!structuralLabels.isEmpty()) {
+				return true;
+			}
+
+			for (final Set<String> modified : modifiedKeys.values()) {
+
+				if (intersects(modified, keys)) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+		for (final String label : labels) {
+
+			if (structuralLabels.contains(label)) {
+				return true;
+			}
+
+			final Set<String> modified = modifiedKeys.get(label);
+			if (modified != null && intersects(modified, keys)) {
+
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	// ----- private methods -----
+	private boolean intersects(final Set<String> set1, final Set<String> set2) {
+
+		for (final String key : set1) {
+
+			if (set2.contains(key)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+}
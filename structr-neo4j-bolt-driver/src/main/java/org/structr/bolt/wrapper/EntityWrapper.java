@@ -19,6 +19,7 @@
 package org.structr.bolt.wrapper;
 
 import java.lang.reflect.Array;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -55,6 +56,14 @@ public abstract class EntityWrapper<T extends Entity> implements PropertyContain
 	protected abstract String getQueryPrefix();
 	public abstract void clearCaches();
 
+	/**
+	 * Returns the labels (for nodes) or the type (for relationships)
+	 * of this entity, used to invalidate cached query results.
+	 *
+	 * @return the type labels of this entity
+	 */
+	public abstract Collection<String> getTypeLabels();
+
 	@Override
 	public long getId() {
 		return id;
@@ -123,17 +132,13 @@ public abstract class EntityWrapper<T extends Entity> implements PropertyContain
 		// only update values if actually different from what is stored
 		if (differentValue(key, value)) {
 
-			final Map<String, Object> map = new HashMap<>();
-			final String query            = getQueryPrefix() + " WHERE ID(n) = {id} SET n.`" + key + "` = {value}";
-
-			map.put("id", id);
-			map.put("value", value);
-
-			// update entity handle
-			tx.set(query, map);
+			// register pending modification, written in a batch by the transaction
+			tx.setProperty(this, key, value);
 
 			// update data
 			update(key, value);
+
+			tx.modified(this, key);
 		}
 
 		// mark node as modified
@@ -145,20 +150,18 @@ public abstract class EntityWrapper<T extends Entity> implements PropertyContain
 
 		assertNotStale();
 
-		final Map<String, Object> map = new HashMap<>();
-		final SessionTransaction tx   = db.getCurrentTransaction();
-		final String query            = getQueryPrefix() + " WHERE ID(n) = {id} SET n += {properties}";
-
-		// overwrite a potential "id" property
-		map.put("id", id);
-		map.put("properties", values);
+		final SessionTransaction tx = db.getCurrentTransaction();
 
-		// execute query
-		tx.set(query, map);
+		// register pending modifications
+		tx.setProperties(this, values);
 
 		// update data
 		update(values);
 
+		for (final String key : values.keySet()) {
+			tx.modified(this, key);
+		}
+
 		tx.modified(this);
 	}
 
@@ -167,19 +170,15 @@ public abstract class EntityWrapper<T extends Entity> implements PropertyContain
 
 		assertNotStale();
 
-		final SessionTransaction tx   = db.getCurrentTransaction();
-		final Map<String, Object> map = new HashMap<>();
-		final String query            = getQueryPrefix() + " WHERE ID(n) = {id} SET n.`" + key + "` = Null";
-
-		map.put("id", id);
+		final SessionTransaction tx = db.getCurrentTransaction();
 
-		// execute query
-		tx.set(query, map);
+		// a null value removes the property
+		tx.setProperty(this, key, null);
 
 		// remove key from data
 		data.remove(key);
 
-		tx.modified(this);
+		tx.modified(this, key);
 	}
 
 	@Override
@@ -195,13 +194,9 @@ public abstract class EntityWrapper<T extends Entity> implements PropertyContain
 
 		assertNotStale();
 
-		final SessionTransaction tx   = db.getCurrentTransaction();
-		final Map<String, Object> map = new HashMap<>();
-
-		map.put("id", id);
+		final SessionTransaction tx = db.getCurrentTransaction();
 
-		tx.set(getQueryPrefix() + " WHERE ID(n) = {id} DELETE n", map);
-		tx.modified(this);
+		tx.delete(this);
 
 		stale = true;
 	}
@@ -220,7 +215,21 @@ public abstract class EntityWrapper<T extends Entity> implements PropertyContain
 	}
 
 	// ----- protected methods -----
-	protected synchronized void assertNotStale() {
+	protected void assertNotStale() {
+
+		if (stale) {
+
+			// write pending modifications of the current transaction before acquiring the
+			// lock on this shared wrapper, flushing can wait for database locks held by
+			// other transactions which in turn can wait for this wrapper.
+			db.getCurrentTransaction().flush();
+
+			refresh();
+		}
+	}
+
+	// ----- private methods -----
+	private synchronized void refresh() {
 
 		if (stale) {
 
@@ -249,7 +258,6 @@ public abstract class EntityWrapper<T extends Entity> implements PropertyContain
 		}
 	}
 
-	// ----- private methods -----
 	private void update(final Map<String, Object> values) {
 
 		for (final Entry<String, Object> entry : values.entrySet()) {
@@ -18,14 +18,17 @@
  */
 package org.structr.bolt.wrapper;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.structr.api.graph.Direction;
 import org.structr.api.graph.Label;
 import org.structr.api.graph.Node;
@@ -43,10 +46,16 @@ import org.structr.bolt.mapper.RelationshipRelationshipMapper;
 public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> implements Node {
 
 	private final Map<String, Map<String, List<Relationship>>> relationshipCache = new HashMap<>();
+	private final Set<String> labels                                             = ConcurrentHashMap.newKeySet();
 	private static FixedSizeCache<Long, NodeWrapper> nodeCache                   = null;
 
 	private NodeWrapper(final BoltDatabaseService db, final org.neo4j.driver.v1.types.Node node) {
+
 		super(db, node);
+
+		for (final String label : node.labels()) {
+			labels.add(label);
+		}
 	}
 
 	public static void initialize(final int cacheSize) {
@@ -69,6 +78,11 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 		relationshipCache.clear();
 	}
 
+	@Override
+	public Collection<String> getTypeLabels() {
+		return labels;
+	}
+
 	@Override
 	public Relationship createRelationshipTo(final Node endNode, final RelationshipType relationshipType) {
 		return createRelationshipTo(endNode, relationshipType, Collections.EMPTY_MAP);
@@ -100,7 +114,11 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 		((NodeWrapper)endNode).relationshipCache.clear();
 		relationshipCache.clear();
 
-		return RelationshipWrapper.newInstance(db, rel);
+		final RelationshipWrapper relationship = RelationshipWrapper.newInstance(db, rel);
+
+		tx.created(relationship);
+
+		return relationship;
 	}
 
 	@Override
@@ -108,13 +126,12 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 
 		assertNotStale();
 
-		final SessionTransaction tx   = db.getCurrentTransaction();
-		final Map<String, Object> map = new HashMap<>();
+		final SessionTransaction tx = db.getCurrentTransaction();
 
-		map.put("id", id);
+		tx.addLabel(this, label.name());
+		tx.labelModified(this, label.name());
 
-		tx.set("MATCH (n) WHERE ID(n) = {id} SET n :" + label.name(), map);
-		tx.modified(this);
+		labels.add(label.name());
 	}
 
 	@Override
@@ -122,13 +139,12 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 
 		assertNotStale();
 
-		final SessionTransaction tx   = db.getCurrentTransaction();
-		final Map<String, Object> map = new HashMap<>();
+		final SessionTransaction tx = db.getCurrentTransaction();
 
-		map.put("id", id);
+		tx.removeLabel(this, label.name());
+		tx.labelModified(this, label.name());
 
-		tx.set("MATCH (n) WHERE ID(n) = {id} REMOVE n:" + label.name(), map);
-		tx.modified(this);
+		labels.remove(label.name());
 	}
 
 	@Override
@@ -191,6 +207,40 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 		}
 	}
 
+	@Override
+	public Relationship getRelationshipTo(final RelationshipType type, final Node targetNode) {
+
+		assertNotStale();
+
+		final List<Relationship> list = getList(Direction.OUTGOING, type);
+		if (list != null) {
+
+			for (final Relationship relationship : list) {
+
+				if (relationship.getEndNode().getId() == targetNode.getId()) {
+					return relationship;
+				}
+			}
+
+			return null;
+		}
+
+		final RelationshipRelationshipMapper mapper = new RelationshipRelationshipMapper(db);
+		final SessionTransaction tx                 = db.getCurrentTransaction();
+		final Map<String, Object> params            = new LinkedHashMap<>();
+
+		params.put("id1", getId());
+		params.put("id2", targetNode.getId());
+
+		final Iterator<Relationship> iterator = Iterables.map(mapper, tx.getRelationships("MATCH (n)-[r:" + type.name() + "]->(m) WHERE ID(n) = {id1} AND ID(m) = {id2} RETURN r LIMIT 1", params)).iterator();
+		if (iterator.hasNext()) {
+
+			return iterator.next();
+		}
+
+		return null;
+	}
+
 	@Override
 	public Iterable<Relationship> getRelationships() {
 
@@ -287,6 +337,35 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 		return list;
 	}
 
+	@Override
+	public boolean hasRelationships(final Direction direction, final RelationshipType relationshipType) {
+
+		assertNotStale();
+
+		final List<Relationship> list = getList(direction, relationshipType);
+		if (list != null) {
+
+			return !list.isEmpty();
+		}
+
+		final SessionTransaction tx   = db.getCurrentTransaction();
+		final Map<String, Object> map = new HashMap<>();
+
+		map.put("id", id);
+
+		switch (direction) {
+
+			case OUTGOING:
+				return tx.getLong("MATCH (n) WHERE ID(n) = {id} RETURN size((n)-[:" + relationshipType.name() + "]->())", map) > 0;
+
+			case INCOMING:
+				return tx.getLong("MATCH (n) WHERE ID(n) = {id} RETURN size((n)<-[:" + relationshipType.name() + "]-())", map) > 0;
+
+			default:
+				return tx.getLong("MATCH (n) WHERE ID(n) = {id} RETURN size((n)-[:" + relationshipType.name() + "]-())", map) > 0;
+		}
+	}
+
 	@Override
 	public void delete() {
 
@@ -294,44 +373,57 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 		nodeCache.remove(id);
 	}
 
+	/**
+	 * Indicates whether the relationships of the given direction and type
+	 * are present in the relationship cache of this node.
+	 */
+	public boolean hasCachedRelationships(final Direction direction, final RelationshipType relationshipType) {
+		return getList(direction, relationshipType) != null;
+	}
+
+	/**
+	 * Stores relationships that were loaded in a batch for several nodes
+	 * in the relationship cache of this node.
+	 */
+	public void setCachedRelationships(final Direction direction, final RelationshipType relationshipType, final Iterable<Relationship> relationships) {
+		setList(direction, relationshipType, toList(relationships));
+	}
+
 	public static void clearCache() {
 		nodeCache.clear();
 	}
 
+	public static Map<String, Object> getCacheStatistics() {
+		return nodeCache.getStatistics();
+	}
+
 	// ----- public static methods -----
 	public static NodeWrapper newInstance(final BoltDatabaseService db, final org.neo4j.driver.v1.types.Node node) {
 
-		synchronized (nodeCache) {
-
-			NodeWrapper wrapper = nodeCache.get(node.id());
-			if (wrapper == null) {
-
-				wrapper = new NodeWrapper(db, node);
-				nodeCache.put(node.id(), wrapper);
-			}
+		final NodeWrapper wrapper = nodeCache.get(node.id());
+		if (wrapper == null) {
 
-			return wrapper;
+			// another thread may have created a wrapper in the meantime
+			return nodeCache.putIfAbsent(node.id(), new NodeWrapper(db, node));
 		}
+
+		return wrapper;
 	}
 
 	public static NodeWrapper newInstance(final BoltDatabaseService db, final long id) {
 
-		synchronized (nodeCache) {
-
-			NodeWrapper wrapper = nodeCache.get(id);
-			if (wrapper == null) {
+		final NodeWrapper wrapper = nodeCache.get(id);
+		if (wrapper == null) {
 
-				final SessionTransaction tx   = db.getCurrentTransaction();
-				final Map<String, Object> map = new HashMap<>();
-
-				map.put("id", id);
+			final SessionTransaction tx   = db.getCurrentTransaction();
+			final Map<String, Object> map = new HashMap<>();
 
-				wrapper = new NodeWrapper(db, tx.getNode("MATCH (n) WHERE ID(n) = {id} RETURN n", map));
-				nodeCache.put(id, wrapper);
-			}
+			map.put("id", id);
 
-			return wrapper;
+			return nodeCache.putIfAbsent(id, new NodeWrapper(db, tx.getNode("MATCH (n) WHERE ID(n) = {id} RETURN n", map)));
 		}
+
+		return wrapper;
 	}
 
 	// ----- private methods -----
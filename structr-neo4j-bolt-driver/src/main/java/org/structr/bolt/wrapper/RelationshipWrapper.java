@@ -18,6 +18,8 @@
  */
 package org.structr.bolt.wrapper;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import org.structr.api.NotFoundException;
@@ -83,6 +85,11 @@ public class RelationshipWrapper extends EntityWrapper<org.neo4j.driver.v1.types
 	public void clearCaches() {
 	}
 
+	@Override
+	public Collection<String> getTypeLabels() {
+		return Collections.singleton(type);
+	}
+
 	@Override
 	public Node getStartNode() {
 
@@ -141,39 +148,36 @@ public class RelationshipWrapper extends EntityWrapper<org.neo4j.driver.v1.types
 		relationshipCache.clear();
 	}
 
+	public static Map<String, Object> getCacheStatistics() {
+		return relationshipCache.getStatistics();
+	}
+
 	// ----- public static methods -----
 	public static RelationshipWrapper newInstance(final BoltDatabaseService db, final org.neo4j.driver.v1.types.Relationship relationship) {
 
-		synchronized (relationshipCache) {
-
-			RelationshipWrapper wrapper = relationshipCache.get(relationship.id());
-			if (wrapper == null) {
+		final RelationshipWrapper wrapper = relationshipCache.get(relationship.id());
+		if (wrapper == null) {
 
-				wrapper = new RelationshipWrapper(db, relationship);
-				relationshipCache.put(relationship.id(), wrapper);
-			}
-
-			return wrapper;
+			// another thread may have created a wrapper in the meantime
+			return relationshipCache.putIfAbsent(relationship.id(), new RelationshipWrapper(db, relationship));
 		}
+
+		return wrapper;
 	}
 
 	public static RelationshipWrapper newInstance(final BoltDatabaseService db, final long id) {
 
-		synchronized (relationshipCache) {
-
-			RelationshipWrapper wrapper = relationshipCache.get(id);
-			if (wrapper == null) {
+		final RelationshipWrapper wrapper = relationshipCache.get(id);
+		if (wrapper == null) {
 
-				final SessionTransaction tx   = db.getCurrentTransaction();
-				final Map<String, Object> map = new HashMap<>();
+			final SessionTransaction tx   = db.getCurrentTransaction();
+			final Map<String, Object> map = new HashMap<>();
 
-				map.put("id", id);
+			map.put("id", id);
 
-				wrapper = new RelationshipWrapper(db, tx.getRelationship("MATCH ()-[n]-() WHERE ID(n) = {id} RETURN n", map));
-				relationshipCache.put(id, wrapper);
-			}
-
-			return wrapper;
+			return relationshipCache.putIfAbsent(id, new RelationshipWrapper(db, tx.getRelationship("MATCH ()-[n]-() WHERE ID(n) = {id} RETURN n", map)));
 		}
+
+		return wrapper;
 	}
 }
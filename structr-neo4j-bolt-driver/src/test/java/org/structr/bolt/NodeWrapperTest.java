@@ -20,8 +20,13 @@ package org.structr.bolt;
 
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import org.junit.Assert;
 import static org.junit.Assert.fail;
 import org.junit.Test;
@@ -29,8 +34,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.Transaction;
 import org.structr.api.config.Settings;
+import org.structr.api.NativeResult;
+import org.structr.api.graph.Label;
 import org.structr.api.graph.Node;
 import org.structr.api.graph.Relationship;
+import org.structr.api.graph.RelationshipSpec;
 import org.structr.api.graph.RelationshipType;
 import org.structr.api.util.Iterables;
 
@@ -167,4 +175,169 @@ public class NodeWrapperTest {
 		s.shutdown();
 	}
 
+	@Test
+	public void testBatchedModifications() {
+
+		try {
+
+			Settings.DatabasePath.setValue(Files.createTempDirectory("structr-test").toFile().getAbsolutePath());
+			Settings.ConnectionUrl.setValue(Settings.TestingConnectionUrl.getValue());
+
+		} catch (IOException ioex) {
+			logger.warn("", ioex);
+		}
+
+		final BoltDatabaseService s = new BoltDatabaseService();
+		s.initialize();
+
+		long id = 0L;
+
+		try (final Transaction tx = s.beginTx()) {
+
+			final Node node1 = s.createNode(Collections.EMPTY_SET, Collections.EMPTY_MAP);
+			final Node node2 = s.createNode(Collections.EMPTY_SET, Collections.EMPTY_MAP);
+
+			id = node1.getId();
+
+			for (int i=0; i<20; i++) {
+				node1.setProperty("key" + i, i);
+			}
+
+			node1.removeProperty("key19");
+			node1.addLabel(s.forName(Label.class, "Batched"));
+
+			final Relationship rel = node1.createRelationshipTo(node2, s.forName(RelationshipType.class, "TEST"));
+
+			rel.setProperty("name", "rel");
+
+			// pending modifications must be visible to queries in the same transaction
+			Assert.assertEquals("Pending modifications not visible in transaction", 1L, count(s, "MATCH (n:Batched) WHERE ID(n) = {id} AND n.key18 = 18 AND n.key19 IS NULL RETURN count(n)", id));
+			Assert.assertEquals("Pending modifications not visible in transaction", 1L, count(s, "MATCH (n)-[r:TEST]->() WHERE ID(n) = {id} AND r.name = 'rel' RETURN count(r)", id));
+
+			rel.delete();
+			node1.setProperty("key0", "modified");
+
+			tx.success();
+
+		} catch (Throwable t) {
+			logger.warn("", t);
+			fail("Unexpected exception.");
+		}
+
+		try (final Transaction tx = s.beginTx()) {
+
+			Assert.assertEquals("Pending modifications not written at commit", 1L, count(s, "MATCH (n:Batched) WHERE ID(n) = {id} AND n.key0 = 'modified' RETURN count(n)", id));
+			Assert.assertEquals("Pending deletion not written at commit", 0L, count(s, "MATCH (n)-[r]-() WHERE ID(n) = {id} RETURN count(r)", id));
+
+			tx.success();
+		}
+
+		// modifications of a failed transaction must not be written
+		try (final Transaction tx = s.beginTx()) {
+
+			s.getNodeById(id).setProperty("key1", "fail");
+		}
+
+		try (final Transaction tx = s.beginTx()) {
+
+			Assert.assertEquals("Pending modifications written without commit", 1L, count(s, "MATCH (n) WHERE ID(n) = {id} AND n.key1 = 1 RETURN count(n)", id));
+
+			tx.success();
+		}
+
+		s.shutdown();
+	}
+
+	@Test
+	public void testBulkCreation() {
+
+		try {
+
+			Settings.DatabasePath.setValue(Files.createTempDirectory("structr-test").toFile().getAbsolutePath());
+			Settings.ConnectionUrl.setValue(Settings.TestingConnectionUrl.getValue());
+
+		} catch (IOException ioex) {
+			logger.warn("", ioex);
+		}
+
+		final BoltDatabaseService s = new BoltDatabaseService();
+		s.initialize();
+
+		long id = 0L;
+
+		try (final Transaction tx = s.beginTx()) {
+
+			final List<Map<String, Object>> properties = new ArrayList<>();
+			final List<RelationshipSpec> specs         = new ArrayList<>();
+
+			for (int i=0; i<10; i++) {
+
+				final Map<String, Object> map = new HashMap<>();
+
+				map.put("name", "node" + i);
+				map.put("index", i);
+
+				properties.add(map);
+			}
+
+			final List<Node> nodes = s.createNodes(new HashSet<>(Arrays.asList("Bulk")), properties);
+
+			Assert.assertEquals("Invalid createNodes result", 10, nodes.size());
+
+			for (int i=0; i<10; i++) {
+				Assert.assertEquals("Invalid createNodes result order", "node" + i, nodes.get(i).getProperty("name"));
+			}
+
+			id = nodes.get(0).getId();
+
+			// alternate relationship types to verify that the result order is kept
+			for (int i=1; i<10; i++) {
+				specs.add(new RelationshipSpec(nodes.get(0), nodes.get(i), s.forName(RelationshipType.class, i % 2 == 0 ? "EVEN" : "ODD"), Collections.singletonMap("index", i)));
+			}
+
+			final List<Relationship> rels = s.createRelationships(specs);
+
+			Assert.assertEquals("Invalid createRelationships result", 9, rels.size());
+
+			for (int i=0; i<9; i++) {
+
+				final Relationship rel = rels.get(i);
+
+				Assert.assertEquals("Invalid createRelationships result order", i + 1, ((Number)rel.getProperty("index")).intValue());
+				Assert.assertEquals("Invalid createRelationships result order", nodes.get(i + 1).getId(), rel.getEndNode().getId());
+			}
+
+			Assert.assertEquals("Relationship cache of start node not updated", 9, Iterables.count(nodes.get(0).getRelationships()));
+
+			tx.success();
+
+		} catch (Throwable t) {
+			logger.warn("", t);
+			fail("Unexpected exception.");
+		}
+
+		try (final Transaction tx = s.beginTx()) {
+
+			Assert.assertEquals("Bulk created nodes not written at commit", 1L, count(s, "MATCH (n:Bulk) WHERE ID(n) = {id} AND n.name = 'node0' RETURN count(n)", id));
+			Assert.assertEquals("Bulk created relationships not written at commit", 4L, count(s, "MATCH (n)-[r:EVEN]->(:Bulk) WHERE ID(n) = {id} RETURN count(r)", id));
+			Assert.assertEquals("Bulk created relationships not written at commit", 5L, count(s, "MATCH (n)-[r:ODD]->(:Bulk) WHERE ID(n) = {id} RETURN count(r)", id));
+
+			tx.success();
+		}
+
+		s.shutdown();
+	}
+
+	// ----- private methods -----
+	private long count(final BoltDatabaseService s, final String query, final long id) {
+
+		final Map<String, Object> params = new HashMap<>();
+
+		params.put("id", id);
+
+		try (final NativeResult result = s.execute(query, params)) {
+
+			return (Long)result.next().values().iterator().next();
+		}
+	}
 }
@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.bolt.index;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class QueryCacheInvalidationTest {
+
+	@Test
+	public void testPropertyModification() {
+
+		final QueryCacheInvalidation invalidation = new QueryCacheInvalidation();
+
+		invalidation.modified(Arrays.asList("NodeInterface", "Folder"), "name");
+
+		Assert.assertTrue("Query on modified label and key must be affected",           invalidation.affects(Arrays.asList("Folder"), new HashSet<>(Arrays.asList("name", "parentId"))));
+		Assert.assertTrue("Query without labels must be affected",                      invalidation.affects(Collections.emptyList(), new HashSet<>(Arrays.asList("name"))));
+		Assert.assertFalse("Query on modified label with other keys must not be affected", invalidation.affects(Arrays.asList("Folder"), new HashSet<>(Arrays.asList("size"))));
+		Assert.assertFalse("Query on other label must not be affected",                 invalidation.affects(Arrays.asList("Page"), new HashSet<>(Arrays.asList("name"))));
+	}
+
+	@Test
+	public void testStructuralModification() {
+
+		final QueryCacheInvalidation invalidation = new QueryCacheInvalidation();
+
+		Assert.assertTrue(invalidation.isEmpty());
+
+		invalidation.structurallyModified(Arrays.asList("NodeInterface", "Folder"));
+
+		Assert.assertFalse(invalidation.isEmpty());
+		Assert.assertTrue("Query on created label must be affected",    invalidation.affects(Arrays.asList("Folder"), Collections.emptySet()));
+		Assert.assertTrue("Query without labels must be affected",      invalidation.affects(Collections.emptyList(), Collections.emptySet()));
+		Assert.assertFalse("Query on other label must not be affected", invalidation.affects(Arrays.asList("Page"), new HashSet<>(Arrays.asList("name"))));
+
+		invalidation.clear();
+
+		Assert.assertTrue(invalidation.isEmpty());
+	}
+}
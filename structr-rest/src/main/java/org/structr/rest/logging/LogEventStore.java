@@ -0,0 +1,1422 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.logging;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObjectMap;
+import org.structr.core.app.App;
+import org.structr.core.app.StructrApp;
+import org.structr.core.graph.Tx;
+import org.structr.rest.logging.entity.LogEvent;
+
+/**
+ * Append-only, columnar on-disk store for log events.
+ *
+ * Events are partitioned by day and, within a day, by a hash of their
+ * subject. Each partition stores every field of an event in a column
+ * file of its own: the timestamp, the dictionary-encoded action, subject
+ * and object, and the end offset of the message in a separate data file.
+ * A query only reads the columns it needs, and the message of an event
+ * is only read when the event matches all other criteria.
+ *
+ * The store maintains rollups with the number of events per action and
+ * minute, hour and day. The rollups of a day are written to its directory
+ * together with the number of rows they cover, so when the store is
+ * opened, only the events that were appended after that need to be
+ * counted again.
+ */
+public class LogEventStore {
+
+	private static final Logger logger            = LoggerFactory.getLogger(LogEventStore.class.getName());
+	private static final String DICTIONARY        = "dictionary";
+	private static final String MIGRATED          = "migrated";
+	private static final String MIGRATION_PENDING = "migration.pending";
+	private static final String ROLLUP            = "rollup";
+	private static final String TIMESTAMPS        = "timestamp.col";
+	private static final String ACTIONS           = "action.col";
+	private static final String SUBJECTS          = "subject.col";
+	private static final String OBJECTS           = "object.col";
+	private static final String MESSAGES          = "message.col";
+	private static final String MESSAGE_DATA      = "message.dat";
+	private static final String DAY_FORMAT        = "yyyy-MM-dd";
+	private static final int BUCKET_COUNT         = 16;
+	private static final int BLOCK_SIZE           = 8192;
+	private static final int ROLLUP_WRITE_ROWS    = 10000;
+	private static final int NULL_VALUE           = -1;
+
+	public static final long MINUTE               = TimeUnit.MINUTES.toMillis(1);
+	public static final long HOUR                 = TimeUnit.HOURS.toMillis(1);
+	public static final long DAY                  = TimeUnit.DAYS.toMillis(1);
+
+	private static LogEventStore instance         = null;
+
+	private final Map<String, Integer> dictionary = new HashMap<>();
+	private final TreeMap<Long, Day> days         = new TreeMap<>();
+	private final AtomicBoolean migrating         = new AtomicBoolean(false);
+	private volatile String[] values              = new String[1024];
+	private volatile int valueCount               = 0;
+	private File directory                        = null;
+	private int unwrittenRows                     = 0;
+
+	private LogEventStore(final File directory) throws IOException {
+
+		this.directory = directory;
+
+		directory.mkdirs();
+
+		open();
+	}
+
+	/**
+	 * Returns the log event store in the directory that is configured in
+	 * {@link Settings#LogEventsPath}. The store is re-opened when the
+	 * configured directory changes.
+	 *
+	 * @return the log event store
+	 */
+	public static synchronized LogEventStore getInstance() {
+
+		final File directory = new File(Settings.getFullSettingPath(Settings.LogEventsPath));
+
+		if (instance != null && !instance.directory.equals(directory)) {
+
+			instance.close();
+			instance = null;
+		}
+
+		if (instance == null) {
+
+			try {
+
+				instance = new LogEventStore(directory);
+
+			} catch (IOException ioex) {
+
+				logger.error("Unable to open log event store in {}: {}", directory.getAbsolutePath(), ioex.getMessage());
+			}
+		}
+
+		return instance;
+	}
+
+	public static synchronized void shutdown() {
+
+		if (instance != null) {
+
+			instance.close();
+			instance = null;
+		}
+	}
+
+	/**
+	 * Appends the given events to the store. The events of each partition
+	 * are written with a single write operation per column.
+	 *
+	 * @param events the events to append
+	 *
+	 * @throws IOException if the events could not be written
+	 */
+	public synchronized void append(final List<Event> events) throws IOException {
+
+		final Map<Partition, List<Event>> batches = new LinkedHashMap<>();
+
+		register(events);
+
+		for (final Event event : events) {
+
+			final Day day             = getOrCreateDay(event.getTimestamp());
+			final Partition partition = day.getOrCreatePartition(bucket(event.getSubjectId()));
+
+			List<Event> batch = batches.get(partition);
+			if (batch == null) {
+
+				batch = new ArrayList<>();
+				batches.put(partition, batch);
+			}
+
+			batch.add(event);
+		}
+
+		for (final Entry<Partition, List<Event>> entry : batches.entrySet()) {
+
+			final Partition partition = entry.getKey();
+
+			partition.append(entry.getValue());
+
+			for (final Event event : entry.getValue()) {
+
+				partition.day.count(event.getTimestamp(), id(event.getAction()));
+			}
+
+			unwrittenRows += entry.getValue().size();
+		}
+
+		if (unwrittenRows >= ROLLUP_WRITE_ROWS) {
+			writeRollups();
+		}
+	}
+
+	/**
+	 * Visits all events that match the given criteria. A criterion that is
+	 * null is ignored. The events are visited in the order of their
+	 * partitions, not necessarily in the order of their timestamps.
+	 *
+	 * @param subjectId the subject of the events, or null
+	 * @param objectId the object of the events, or null
+	 * @param action the action of the events, or null
+	 * @param timeFrom the lower bound of the time range (inclusive), or null
+	 * @param timeTo the upper bound of the time range (inclusive), or null
+	 * @param visitor the visitor
+	 */
+	public void scan(final String subjectId, final String objectId, final String action, final Long timeFrom, final Long timeTo, final Visitor visitor) {
+
+		final List<Partition> partitions = new ArrayList<>();
+		final List<Long> rowCounts       = new ArrayList<>();
+		final long from                  = timeFrom != null ? timeFrom : Long.MIN_VALUE;
+		final long to                    = timeTo   != null ? timeTo   : Long.MAX_VALUE;
+		final int subject;
+		final int object;
+		final int act;
+
+		synchronized (this) {
+
+			subject = subjectId != null ? lookup(subjectId) : NULL_VALUE;
+			object  = objectId  != null ? lookup(objectId)  : NULL_VALUE;
+			act     = action    != null ? lookup(action)    : NULL_VALUE;
+
+			// values that are not in the dictionary cannot match any event
+			if (subject == Integer.MIN_VALUE || object == Integer.MIN_VALUE || act == Integer.MIN_VALUE) {
+				return;
+			}
+
+			for (final Day day : days.values()) {
+
+				// prune days by their time range and the actions they contain
+				if (day.last < from || day.first > to || (action != null && !day.totals.containsKey(act))) {
+					continue;
+				}
+
+				for (int i=0; i<BUCKET_COUNT; i++) {
+
+					final Partition partition = day.partitions[i];
+
+					if (partition != null && partition.rows > 0 && (subjectId == null || i == bucket(subjectId))) {
+
+						partitions.add(partition);
+						rowCounts.add(partition.rows);
+					}
+				}
+			}
+		}
+
+		try {
+
+			for (int i=0; i<partitions.size(); i++) {
+
+				partitions.get(i).scan(rowCounts.get(i), subjectId != null, subject, objectId != null, object, action != null, act, from, to, visitor);
+			}
+
+		} catch (IOException | UncheckedIOException ex) {
+
+			logger.error("Unable to read log events: {}", ex.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the number of events per action, from the rollups. Events
+	 * without an action are counted with a null key.
+	 *
+	 * @return a map of actions to the number of events
+	 */
+	public synchronized Map<String, Integer> getActionCounts() {
+
+		final Map<Integer, Integer> counts = new LinkedHashMap<>();
+		final Map<String, Integer> result  = new LinkedHashMap<>();
+
+		for (final Day day : days.values()) {
+			add(counts, day.totals);
+		}
+
+		for (final Entry<Integer, Integer> entry : counts.entrySet()) {
+			result.put(value(entry.getKey()), entry.getValue());
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the number of events of the given action per interval of the
+	 * given resolution, from the rollups. Only intervals that lie
+	 * completely within the given time range are included, so the bounds
+	 * of the time range should be aligned to the resolution.
+	 *
+	 * @param resolution the resolution, one of MINUTE, HOUR or DAY
+	 * @param action the action, or null for events of all actions
+	 * @param timeFrom the lower bound of the time range (inclusive), or null
+	 * @param timeTo the upper bound of the time range (inclusive), or null
+	 *
+	 * @return a map of interval start timestamps to the number of events
+	 */
+	public synchronized TreeMap<Long, Integer> getCounts(final long resolution, final String action, final Long timeFrom, final Long timeTo) {
+
+		final TreeMap<Long, Integer> result = new TreeMap<>();
+		final long from                     = timeFrom != null ? timeFrom : Long.MIN_VALUE;
+		final long to                       = timeTo   != null ? timeTo   : Long.MAX_VALUE;
+		final int act                       = action   != null ? lookup(action) : NULL_VALUE;
+
+		if (act == Integer.MIN_VALUE) {
+			return result;
+		}
+
+		for (final Day day : days.values()) {
+
+			final Map<Long, Map<Integer, Integer>> counts;
+
+			if (resolution == DAY) {
+
+				counts = Collections.singletonMap(day.start, day.totals);
+
+			} else if (resolution == HOUR) {
+
+				counts = day.hours;
+
+			} else if (resolution == MINUTE) {
+
+				counts = day.minutes;
+
+			} else {
+
+				throw new IllegalArgumentException("Unsupported resolution " + resolution);
+			}
+
+			for (final Entry<Long, Map<Integer, Integer>> entry : counts.entrySet()) {
+
+				final long start = entry.getKey();
+
+				if (start >= from && start + resolution - 1 <= to) {
+
+					final int count = action != null ? get(entry.getValue(), act) : sum(entry.getValue());
+					if (count > 0) {
+
+						result.put(start, count);
+					}
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the timestamp of the first event in the store, or
+	 * Long.MAX_VALUE if the store is empty.
+	 *
+	 * @return the timestamp of the first event
+	 */
+	public synchronized long getFirstTimestamp() {
+
+		long first = Long.MAX_VALUE;
+
+		for (final Day day : days.values()) {
+			first = Math.min(first, day.first);
+		}
+
+		return first;
+	}
+
+	/**
+	 * Returns the timestamp of the last event in the store, or 0 if the
+	 * store is empty.
+	 *
+	 * @return the timestamp of the last event
+	 */
+	public synchronized long getLastTimestamp() {
+
+		long last = 0L;
+
+		for (final Day day : days.values()) {
+			last = Math.max(last, day.last);
+		}
+
+		return last;
+	}
+
+	/**
+	 * Writes the rollups of all days that have changed since they were
+	 * written the last time.
+	 */
+	public synchronized void writeRollups() {
+
+		for (final Day day : days.values()) {
+
+			if (day.dirty) {
+
+				try {
+
+					day.writeRollup();
+
+				} catch (IOException ioex) {
+
+					logger.warn("Unable to write rollup of log events in {}: {}", day.directory.getAbsolutePath(), ioex.getMessage());
+				}
+			}
+		}
+
+		unwrittenRows = 0;
+	}
+
+	/**
+	 * Moves the log events that are stored as nodes in the database to
+	 * this store. The migration runs only once per store directory, a
+	 * marker file is written when it is complete.
+	 *
+	 * The events are moved in batches. A batch is written to a pending
+	 * file before the transaction that deletes its nodes commits, and is
+	 * appended to the store after the commit, so that a batch that was
+	 * rolled back is not stored twice. An interrupted migration appends
+	 * the pending batch when it is resumed, if its nodes were deleted.
+	 * The store is only locked while a batch is appended, so new events
+	 * can be logged and queried while the migration is running.
+	 *
+	 * @throws IOException if the events could not be written
+	 * @throws FrameworkException if the events could not be read or deleted
+	 */
+	public void migrateLogEvents() throws IOException, FrameworkException {
+
+		final File marker  = new File(directory, MIGRATED);
+		final File pending = new File(directory, MIGRATION_PENDING);
+
+		if (marker.exists() || !migrating.compareAndSet(false, true)) {
+
+			return;
+		}
+
+		try {
+
+			final App app = StructrApp.getInstance();
+			int count     = 0;
+			int size      = 0;
+
+			if (pending.exists()) {
+
+				count += appendPendingEvents(app, pending);
+			}
+
+			do {
+
+				final Map<String, Event> events = new LinkedHashMap<>();
+
+				try (final Tx tx = app.tx(false, false, false)) {
+
+					final List<LogEvent> logEvents = app.nodeQuery(LogEvent.class).pageSize(1000).page(1).getAsList();
+
+					for (final LogEvent logEvent : logEvents) {
+
+						events.put(logEvent.getUuid(), new Event(logEvent.getTimestamp(), logEvent.getAction(), logEvent.getSubjectId(), logEvent.getObjectId(), logEvent.getMessage()));
+					}
+
+					if (!events.isEmpty()) {
+
+						writePendingEvents(pending, events);
+					}
+
+					for (final LogEvent logEvent : logEvents) {
+						app.delete(logEvent);
+					}
+
+					tx.success();
+				}
+
+				// the nodes are deleted, so the events can be stored
+				if (!events.isEmpty()) {
+
+					append(new ArrayList<>(events.values()));
+
+					Files.delete(pending.toPath());
+				}
+
+				size   = events.size();
+				count += size;
+
+			} while (size > 0);
+
+			writeRollups();
+
+			marker.createNewFile();
+
+			if (count > 0) {
+				logger.info("Moved {} log events from the database to the log event store", count);
+			}
+
+		} finally {
+
+			migrating.set(false);
+		}
+	}
+
+	// ----- private methods -----
+	/**
+	 * Appends the events of a batch that was pending when the migration
+	 * was interrupted, unless the transaction that deletes its nodes was
+	 * not committed, in which case the events are migrated again.
+	 */
+	private int appendPendingEvents(final App app, final File pending) throws IOException, FrameworkException {
+
+		final Map<String, Event> events = readPendingEvents(pending);
+		boolean committed               = true;
+
+		try (final Tx tx = app.tx(false, false, false)) {
+
+			for (final String uuid : events.keySet()) {
+
+				if (app.get(LogEvent.class, uuid) != null) {
+
+					committed = false;
+					break;
+				}
+			}
+
+			tx.success();
+		}
+
+		if (committed) {
+
+			append(new ArrayList<>(events.values()));
+		}
+
+		Files.delete(pending.toPath());
+
+		return committed ? events.size() : 0;
+	}
+
+	private void writePendingEvents(final File pending, final Map<String, Event> events) throws IOException {
+
+		final File tmp = new File(directory, MIGRATION_PENDING + ".tmp");
+
+		try (final DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+
+			dos.writeInt(events.size());
+
+			for (final Entry<String, Event> entry : events.entrySet()) {
+
+				final Event event = entry.getValue();
+
+				writeString(dos, entry.getKey());
+				dos.writeLong(event.getTimestamp());
+				writeString(dos, event.getAction());
+				writeString(dos, event.getSubjectId());
+				writeString(dos, event.getObjectId());
+				writeString(dos, event.getMessage());
+			}
+		}
+
+		Files.move(tmp.toPath(), pending.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private Map<String, Event> readPendingEvents(final File pending) throws IOException {
+
+		final Map<String, Event> events = new LinkedHashMap<>();
+
+		try (final DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(pending)))) {
+
+			final int count = dis.readInt();
+
+			for (int i=0; i<count; i++) {
+
+				final String uuid    = readString(dis);
+				final long timestamp = dis.readLong();
+
+				events.put(uuid, new Event(timestamp, readString(dis), readString(dis), readString(dis), readString(dis)));
+			}
+		}
+
+		return events;
+	}
+
+	private void open() throws IOException {
+
+		readDictionary();
+
+		final File[] files = directory.listFiles(File::isDirectory);
+		if (files != null) {
+
+			Arrays.sort(files);
+
+			for (final File file : files) {
+
+				try {
+
+					final long start = dayFormat().parse(file.getName()).getTime();
+					final Day day    = new Day(start, file);
+
+					day.open();
+
+					days.put(start, day);
+
+				} catch (ParseException pex) {
+
+					logger.warn("Ignoring unknown directory {} in log event store", file.getAbsolutePath());
+				}
+			}
+		}
+
+		// write rollups that have been updated while opening the store
+		writeRollups();
+	}
+
+	private synchronized void close() {
+
+		writeRollups();
+
+		days.clear();
+		dictionary.clear();
+
+		values     = new String[1024];
+		valueCount = 0;
+	}
+
+	/**
+	 * Reads the dictionary of action, subject and object values. A value
+	 * that was not written completely is removed from the end of the file.
+	 */
+	private void readDictionary() throws IOException {
+
+		final File file = new File(directory, DICTIONARY);
+		long position   = 0L;
+
+		if (!file.exists()) {
+			return;
+		}
+
+		try (final DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+
+			while (position < file.length()) {
+
+				final int length = dis.readInt();
+				final byte[] buf = new byte[length];
+
+				dis.readFully(buf);
+
+				addValue(new String(buf, StandardCharsets.UTF_8));
+
+				position += 4 + length;
+			}
+
+		} catch (EOFException eofex) {
+			// incomplete value at the end of the file
+		}
+
+		if (file.length() > position) {
+
+			logger.warn("Removing incomplete value at the end of {}", file.getAbsolutePath());
+
+			try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+				channel.truncate(position);
+			}
+		}
+	}
+
+	/**
+	 * Adds the actions, subjects and objects of the given events that are
+	 * not yet in the dictionary to the dictionary file, before any column
+	 * refers to them.
+	 */
+	private void register(final List<Event> events) throws IOException {
+
+		final Map<String, Integer> added    = new LinkedHashMap<>();
+		final ByteArrayOutputStream buffer  = new ByteArrayOutputStream();
+		final DataOutputStream dos          = new DataOutputStream(buffer);
+
+		for (final Event event : events) {
+
+			for (final String value : new String[] { event.getAction(), event.getSubjectId(), event.getObjectId() }) {
+
+				if (value != null && !dictionary.containsKey(value) && !added.containsKey(value)) {
+
+					final byte[] data = value.getBytes(StandardCharsets.UTF_8);
+
+					dos.writeInt(data.length);
+					dos.write(data);
+
+					added.put(value, added.size());
+				}
+			}
+		}
+
+		if (!added.isEmpty()) {
+
+			dos.flush();
+
+			final File file = new File(directory, DICTIONARY);
+
+			write(file, ByteBuffer.wrap(buffer.toByteArray()), file.length());
+
+			for (final String value : added.keySet()) {
+				addValue(value);
+			}
+		}
+	}
+
+	private void addValue(final String value) {
+
+		String[] current = values;
+
+		if (valueCount == current.length) {
+
+			current = Arrays.copyOf(current, current.length * 2);
+			values  = current;
+		}
+
+		current[valueCount] = value;
+		dictionary.put(value, valueCount);
+
+		// publish the new value to readers
+		valueCount = valueCount + 1;
+	}
+
+	private int id(final String value) {
+
+		if (value == null) {
+			return NULL_VALUE;
+		}
+
+		return dictionary.get(value);
+	}
+
+	/**
+	 * Returns the dictionary ID of the given value, or Integer.MIN_VALUE
+	 * if the value is not in the dictionary.
+	 */
+	private int lookup(final String value) {
+
+		final Integer id = dictionary.get(value);
+		if (id != null) {
+
+			return id;
+		}
+
+		return Integer.MIN_VALUE;
+	}
+
+	private String value(final int id) {
+
+		if (id == NULL_VALUE) {
+			return null;
+		}
+
+		return values[id];
+	}
+
+	private Day getOrCreateDay(final long timestamp) {
+
+		final long start = Math.floorDiv(timestamp, DAY) * DAY;
+		Day day          = days.get(start);
+
+		if (day == null) {
+
+			day = new Day(start, new File(directory, dayFormat().format(new Date(start))));
+			days.put(start, day);
+		}
+
+		return day;
+	}
+
+	private static int bucket(final String subjectId) {
+
+		if (subjectId == null) {
+			return 0;
+		}
+
+		return (subjectId.hashCode() & Integer.MAX_VALUE) % BUCKET_COUNT;
+	}
+
+	private static SimpleDateFormat dayFormat() {
+
+		final SimpleDateFormat format = new SimpleDateFormat(DAY_FORMAT);
+
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+		return format;
+	}
+
+	private static void add(final Map<Integer, Integer> target, final Map<Integer, Integer> source) {
+
+		for (final Entry<Integer, Integer> entry : source.entrySet()) {
+			target.merge(entry.getKey(), entry.getValue(), Integer::sum);
+		}
+	}
+
+	private static int get(final Map<Integer, Integer> counts, final int key) {
+
+		final Integer count = counts.get(key);
+		if (count != null) {
+
+			return count;
+		}
+
+		return 0;
+	}
+
+	private static int sum(final Map<Integer, Integer> counts) {
+
+		int sum = 0;
+
+		for (final Integer count : counts.values()) {
+			sum += count;
+		}
+
+		return sum;
+	}
+
+	private static void writeString(final DataOutputStream dos, final String value) throws IOException {
+
+		if (value != null) {
+
+			final byte[] data = value.getBytes(StandardCharsets.UTF_8);
+
+			dos.writeInt(data.length);
+			dos.write(data);
+
+		} else {
+
+			dos.writeInt(NULL_VALUE);
+		}
+	}
+
+	private static String readString(final DataInputStream dis) throws IOException {
+
+		final int length = dis.readInt();
+		if (length != NULL_VALUE) {
+
+			final byte[] data = new byte[length];
+
+			dis.readFully(data);
+
+			return new String(data, StandardCharsets.UTF_8);
+		}
+
+		return null;
+	}
+
+	private static void write(final File file, final ByteBuffer buffer, final long position) throws IOException {
+
+		try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+
+			long offset = position;
+
+			while (buffer.hasRemaining()) {
+				offset += channel.write(buffer, offset);
+			}
+		}
+	}
+
+	private static void read(final FileChannel channel, final ByteBuffer buffer, final long position) throws IOException {
+
+		while (buffer.hasRemaining()) {
+
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new EOFException();
+			}
+		}
+
+		buffer.flip();
+	}
+
+	// ----- nested classes -----
+	/**
+	 * Visitor for the events of a scan.
+	 */
+	public interface Visitor {
+
+		/**
+		 * Called for every matching event. The given row is only valid
+		 * during the call.
+		 *
+		 * @param row the current row
+		 */
+		void visit(final Row row);
+	}
+
+	/**
+	 * A log event.
+	 */
+	public static class Event {
+
+		private long timestamp   = 0L;
+		private String action    = null;
+		private String subjectId = null;
+		private String objectId  = null;
+		private String message   = null;
+
+		public Event(final long timestamp, final String action, final String subjectId, final String objectId, final String message) {
+
+			this.timestamp = timestamp;
+			this.action    = action;
+			this.subjectId = subjectId;
+			this.objectId  = objectId;
+			this.message   = message;
+		}
+
+		public long getTimestamp() {
+			return timestamp;
+		}
+
+		public String getAction() {
+			return action;
+		}
+
+		public String getSubjectId() {
+			return subjectId;
+		}
+
+		public String getObjectId() {
+			return objectId;
+		}
+
+		public String getMessage() {
+			return message;
+		}
+
+		public GraphObjectMap toGraphObjectMap() {
+
+			final GraphObjectMap map = new GraphObjectMap();
+
+			map.put(LogEvent.actionProperty,    action);
+			map.put(LogEvent.messageProperty,   message);
+			map.put(LogEvent.timestampProperty, new Date(timestamp));
+			map.put(LogEvent.subjectProperty,   subjectId);
+			map.put(LogEvent.objectProperty,    objectId);
+
+			return map;
+		}
+	}
+
+	/**
+	 * The current row of a scan. The message of the row is only read from
+	 * disk when it is requested.
+	 */
+	public class Row {
+
+		private FileChannel messageData = null;
+		private ByteBuffer messageEnds  = null;
+		private int index               = 0;
+		private long timestamp          = 0L;
+		private int action              = NULL_VALUE;
+		private int subject             = NULL_VALUE;
+		private int object              = NULL_VALUE;
+
+		public long getTimestamp() {
+			return timestamp;
+		}
+
+		public String getAction() {
+			return value(action);
+		}
+
+		public String getSubjectId() {
+			return value(subject);
+		}
+
+		public String getObjectId() {
+			return value(object);
+		}
+
+		public String getMessage() {
+
+			try {
+
+				// the message ends at the end offset of this row and starts at the end offset of the previous row
+				final long start        = messageEnds.getLong((index - 1) * 8);
+				final long end          = messageEnds.getLong(index * 8);
+				final ByteBuffer buffer = ByteBuffer.allocate((int)(end - start));
+
+				read(messageData, buffer, start);
+
+				return new String(buffer.array(), StandardCharsets.UTF_8);
+
+			} catch (IOException ioex) {
+
+				throw new UncheckedIOException(ioex);
+			}
+		}
+	}
+
+	/**
+	 * The events of one day, with their rollups.
+	 */
+	private class Day {
+
+		private final TreeMap<Long, Map<Integer, Integer>> minutes = new TreeMap<>();
+		private final TreeMap<Long, Map<Integer, Integer>> hours   = new TreeMap<>();
+		private final Map<Integer, Integer> totals                 = new HashMap<>();
+		private final Partition[] partitions                       = new Partition[BUCKET_COUNT];
+		private final long[] rolledUp                              = new long[BUCKET_COUNT];
+		private File directory                                     = null;
+		private long start                                         = 0L;
+		private long first                                         = Long.MAX_VALUE;
+		private long last                                          = Long.MIN_VALUE;
+		private boolean dirty                                      = false;
+
+		public Day(final long start, final File directory) {
+
+			this.start     = start;
+			this.directory = directory;
+		}
+
+		public Partition getOrCreatePartition(final int bucket) {
+
+			Partition partition = partitions[bucket];
+			if (partition == null) {
+
+				partition = new Partition(this, new File(directory, String.format("%02d", bucket)));
+				partition.directory.mkdirs();
+
+				partitions[bucket] = partition;
+			}
+
+			return partition;
+		}
+
+		public void count(final long timestamp, final int action) {
+
+			final long minute = Math.floorDiv(timestamp, MINUTE) * MINUTE;
+			final long hour   = Math.floorDiv(timestamp, HOUR) * HOUR;
+
+			minutes.computeIfAbsent(minute, k -> new HashMap<>()).merge(action, 1, Integer::sum);
+			hours.computeIfAbsent(hour, k -> new HashMap<>()).merge(action, 1, Integer::sum);
+			totals.merge(action, 1, Integer::sum);
+
+			first = Math.min(first, timestamp);
+			last  = Math.max(last, timestamp);
+			dirty = true;
+		}
+
+		/**
+		 * Opens the partitions of this day and reads the rollup. Events
+		 * that are not covered by the rollup are counted again.
+		 */
+		public void open() throws IOException {
+
+			for (int i=0; i<BUCKET_COUNT; i++) {
+
+				final File dir = new File(directory, String.format("%02d", i));
+				if (dir.isDirectory()) {
+
+					final Partition partition = new Partition(this, dir);
+
+					partition.open();
+
+					partitions[i] = partition;
+				}
+			}
+
+			if (!readRollup()) {
+
+				// rollup is missing or does not match the columns
+				clearRollup();
+			}
+
+			for (int i=0; i<BUCKET_COUNT; i++) {
+
+				final Partition partition = partitions[i];
+				if (partition != null && partition.rows > rolledUp[i]) {
+
+					partition.countFrom(rolledUp[i]);
+				}
+			}
+		}
+
+		private boolean readRollup() throws IOException {
+
+			final File file = new File(directory, ROLLUP);
+			if (!file.exists()) {
+
+				return false;
+			}
+
+			try (final DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+
+				for (int i=0; i<BUCKET_COUNT; i++) {
+
+					rolledUp[i] = dis.readLong();
+
+					final long rows = partitions[i] != null ? partitions[i].rows : 0L;
+					if (rolledUp[i] > rows) {
+
+						return false;
+					}
+				}
+
+				first = dis.readLong();
+				last  = dis.readLong();
+
+				final int minuteCount = dis.readInt();
+
+				for (int i=0; i<minuteCount; i++) {
+
+					final long minute = dis.readLong();
+					final long hour   = Math.floorDiv(minute, HOUR) * HOUR;
+					final int entries = dis.readInt();
+
+					for (int j=0; j<entries; j++) {
+
+						final int action = dis.readInt();
+						final int count  = dis.readInt();
+
+						minutes.computeIfAbsent(minute, k -> new HashMap<>()).merge(action, count, Integer::sum);
+						hours.computeIfAbsent(hour, k -> new HashMap<>()).merge(action, count, Integer::sum);
+						totals.merge(action, count, Integer::sum);
+					}
+				}
+
+				return true;
+
+			} catch (EOFException eofex) {
+
+				return false;
+			}
+		}
+
+		private void clearRollup() {
+
+			minutes.clear();
+			hours.clear();
+			totals.clear();
+
+			Arrays.fill(rolledUp, 0L);
+
+			first = Long.MAX_VALUE;
+			last  = Long.MIN_VALUE;
+			dirty = true;
+		}
+
+		/**
+		 * Writes the minute rollup of this day to a temporary file that
+		 * replaces the existing rollup file when it is complete.
+		 */
+		public void writeRollup() throws IOException {
+
+			final File file = new File(directory, ROLLUP);
+			final File tmp  = new File(directory, ROLLUP + ".tmp");
+
+			directory.mkdirs();
+
+			try (final DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+
+				for (int i=0; i<BUCKET_COUNT; i++) {
+
+					rolledUp[i] = partitions[i] != null ? partitions[i].rows : 0L;
+
+					dos.writeLong(rolledUp[i]);
+				}
+
+				dos.writeLong(first);
+				dos.writeLong(last);
+				dos.writeInt(minutes.size());
+
+				for (final Entry<Long, Map<Integer, Integer>> entry : minutes.entrySet()) {
+
+					dos.writeLong(entry.getKey());
+					dos.writeInt(entry.getValue().size());
+
+					for (final Entry<Integer, Integer> count : entry.getValue().entrySet()) {
+
+						dos.writeInt(count.getKey());
+						dos.writeInt(count.getValue());
+					}
+				}
+			}
+
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+			dirty = false;
+		}
+	}
+
+	/**
+	 * The events of one day and subject bucket, stored in one file per
+	 * column.
+	 */
+	private class Partition {
+
+		private Day day         = null;
+		private File directory  = null;
+		private long rows       = 0L;
+		private long messageEnd = 0L;
+
+		public Partition(final Day day, final File directory) {
+
+			this.day       = day;
+			this.directory = directory;
+		}
+
+		/**
+		 * Determines the number of rows of this partition. A row that was
+		 * not written to all columns (e.g. because of a crash during a
+		 * write) is removed.
+		 */
+		public void open() throws IOException {
+
+			long count = Long.MAX_VALUE;
+
+			count = Math.min(count, file(TIMESTAMPS).length() / 8);
+			count = Math.min(count, file(ACTIONS).length()    / 4);
+			count = Math.min(count, file(SUBJECTS).length()   / 4);
+			count = Math.min(count, file(OBJECTS).length()    / 4);
+			count = Math.min(count, file(MESSAGES).length()   / 8);
+
+			final long dataLength = file(MESSAGE_DATA).length();
+
+			try (final FileChannel channel = open(MESSAGES)) {
+
+				// the message of the last row must be complete as well
+				while (count > 0) {
+
+					final ByteBuffer buffer = ByteBuffer.allocate(8);
+
+					read(channel, buffer, (count - 1) * 8);
+
+					messageEnd = buffer.getLong();
+
+					if (messageEnd <= dataLength) {
+						break;
+					}
+
+					count--;
+				}
+			}
+
+			if (count == 0) {
+				messageEnd = 0L;
+			}
+
+			rows = count;
+
+			truncate(TIMESTAMPS,   rows * 8);
+			truncate(ACTIONS,      rows * 4);
+			truncate(SUBJECTS,     rows * 4);
+			truncate(OBJECTS,      rows * 4);
+			truncate(MESSAGES,     rows * 8);
+			truncate(MESSAGE_DATA, messageEnd);
+		}
+
+		public void append(final List<Event> events) throws IOException {
+
+			final int size                    = events.size();
+			final ByteBuffer timestamps       = ByteBuffer.allocate(size * 8);
+			final ByteBuffer actions          = ByteBuffer.allocate(size * 4);
+			final ByteBuffer subjects         = ByteBuffer.allocate(size * 4);
+			final ByteBuffer objects          = ByteBuffer.allocate(size * 4);
+			final ByteBuffer messages         = ByteBuffer.allocate(size * 8);
+			final ByteArrayOutputStream data  = new ByteArrayOutputStream();
+			long end                          = messageEnd;
+
+			for (final Event event : events) {
+
+				final String message = event.getMessage();
+				final byte[] bytes   = message != null ? message.getBytes(StandardCharsets.UTF_8) : new byte[0];
+
+				data.write(bytes);
+
+				end += bytes.length;
+
+				timestamps.putLong(event.getTimestamp());
+				actions.putInt(id(event.getAction()));
+				subjects.putInt(id(event.getSubjectId()));
+				objects.putInt(id(event.getObjectId()));
+				messages.putLong(end);
+			}
+
+			timestamps.flip();
+			actions.flip();
+			subjects.flip();
+			objects.flip();
+			messages.flip();
+
+			// the timestamp column is written last, a row is only
+			// complete when it has been written to all columns
+			write(file(MESSAGE_DATA), ByteBuffer.wrap(data.toByteArray()), messageEnd);
+			write(file(MESSAGES),     messages,   rows * 8);
+			write(file(OBJECTS),      objects,    rows * 4);
+			write(file(SUBJECTS),     subjects,   rows * 4);
+			write(file(ACTIONS),      actions,    rows * 4);
+			write(file(TIMESTAMPS),   timestamps, rows * 8);
+
+			rows      += size;
+			messageEnd = end;
+		}
+
+		/**
+		 * Adds the rows from the given row on to the rollups of the day.
+		 */
+		public void countFrom(final long firstRow) throws IOException {
+
+			try (final FileChannel timestampColumn = open(TIMESTAMPS); final FileChannel actionColumn = open(ACTIONS)) {
+
+				for (long blockStart = firstRow; blockStart < rows; blockStart += BLOCK_SIZE) {
+
+					final int count             = (int)Math.min(BLOCK_SIZE, rows - blockStart);
+					final ByteBuffer timestamps = ByteBuffer.allocate(count * 8);
+					final ByteBuffer actions    = ByteBuffer.allocate(count * 4);
+
+					read(timestampColumn, timestamps, blockStart * 8);
+					read(actionColumn,    actions,    blockStart * 4);
+
+					for (int i=0; i<count; i++) {
+
+						day.count(timestamps.getLong(), actions.getInt());
+					}
+				}
+			}
+		}
+
+		public void scan(final long rowCount, final boolean filterSubject, final int subject, final boolean filterObject, final int object, final boolean filterAction, final int action, final long from, final long to, final Visitor visitor) throws IOException {
+
+			try (final FileChannel timestampColumn = open(TIMESTAMPS);
+			     final FileChannel actionColumn    = open(ACTIONS);
+			     final FileChannel subjectColumn   = open(SUBJECTS);
+			     final FileChannel objectColumn    = open(OBJECTS);
+			     final FileChannel messageColumn   = open(MESSAGES);
+			     final FileChannel messageData     = open(MESSAGE_DATA)) {
+
+				final Row row = new Row();
+
+				row.messageData = messageData;
+
+				for (long blockStart = 0; blockStart < rowCount; blockStart += BLOCK_SIZE) {
+
+					final int count             = (int)Math.min(BLOCK_SIZE, rowCount - blockStart);
+					final ByteBuffer timestamps = ByteBuffer.allocate(count * 8);
+					final ByteBuffer actions    = ByteBuffer.allocate(count * 4);
+					final ByteBuffer subjects   = ByteBuffer.allocate(count * 4);
+					final ByteBuffer objects    = ByteBuffer.allocate(count * 4);
+
+					read(timestampColumn, timestamps, blockStart * 8);
+					read(actionColumn,    actions,    blockStart * 4);
+					read(subjectColumn,   subjects,   blockStart * 4);
+					read(objectColumn,    objects,    blockStart * 4);
+
+					// message offsets are only read when a row of the block matches
+					row.messageEnds = null;
+
+					for (int i=0; i<count; i++) {
+
+						final long timestamp = timestamps.getLong(i * 8);
+						final int act        = actions.getInt(i * 4);
+						final int subj       = subjects.getInt(i * 4);
+						final int obj        = objects.getInt(i * 4);
+
+						if (timestamp < from || timestamp > to) {
+							continue;
+						}
+
+						if ((filterAction && act != action) || (filterSubject && subj != subject) || (filterObject && obj != object)) {
+							continue;
+						}
+
+						if (row.messageEnds == null) {
+
+							// include the end of the last message of the previous block
+							final long offset = Math.max(0, blockStart - 1);
+							final ByteBuffer ends = ByteBuffer.allocate((int)(blockStart + count - offset) * 8);
+
+							read(messageColumn, ends, offset * 8);
+
+							row.messageEnds = blockStart > 0 ? ends : prepend(ends);
+						}
+
+						row.index     = i + 1;
+						row.timestamp = timestamp;
+						row.action    = act;
+						row.subject   = subj;
+						row.object    = obj;
+
+						visitor.visit(row);
+					}
+				}
+			}
+		}
+
+		private ByteBuffer prepend(final ByteBuffer ends) {
+
+			final ByteBuffer buffer = ByteBuffer.allocate(ends.capacity() + 8);
+
+			buffer.putLong(0L);
+			buffer.put(ends);
+			buffer.flip();
+
+			return buffer;
+		}
+
+		private FileChannel open(final String name) throws IOException {
+			return FileChannel.open(file(name).toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		}
+
+		private void truncate(final String name, final long length) throws IOException {
+
+			try (final FileChannel channel = open(name)) {
+
+				if (channel.size() > length) {
+
+					logger.warn("Removing incomplete log event at the end of {}", file(name).getAbsolutePath());
+					channel.truncate(length);
+				}
+			}
+		}
+
+		private File file(final String name) {
+			return new File(directory, name);
+		}
+	}
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.resource;
+
+import java.util.List;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import org.apache.commons.lang3.StringUtils;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.Result;
+import org.structr.core.function.ChangelogFunction.ChangelogFilter;
+import org.structr.core.property.PropertyKey;
+import org.structr.rest.RestMethodResult;
+import org.structr.rest.exception.IllegalMethodException;
+import org.structr.rest.exception.IllegalPathException;
+import org.structr.rest.exception.NotFoundException;
+
+/**
+ * Returns the changelog of a single graph object, e.g.
+ *
+ * /structr/rest/_changelog/&lt;uuid&gt;?timeFrom=1500000000000&amp;verb=change
+ *
+ * The request parameters are the filter keys of the changelog() function,
+ * the time range is evaluated by the changelog store.
+ */
+public class ChangelogResource extends Resource {
+
+	private static final String[] FILTER_KEYS = new String[] { "verb", "timeFrom", "timeTo", "userId", "userName", "relType", "relDir", "target", "key" };
+
+	private HttpServletRequest request = null;
+	private UuidResource uuidResource  = null;
+
+	public enum UriPart {
+		_changelog
+	}
+
+	@Override
+	public boolean checkAndConfigure(final String part, final SecurityContext securityContext, final HttpServletRequest request) throws FrameworkException {
+
+		this.securityContext = securityContext;
+		this.request         = request;
+
+		return (UriPart._changelog.name().equals(part));
+	}
+
+	@Override
+	public Result doGet(final PropertyKey sortKey, final boolean sortDescending, final int pageSize, final int page) throws FrameworkException {
+
+		if (uuidResource == null) {
+			throw new NotFoundException("Changelog resource needs a UUID");
+		}
+
+		final GraphObject entity     = uuidResource.getEntity();
+		final ChangelogFilter filter = new ChangelogFilter();
+
+		for (final String key : FILTER_KEYS) {
+
+			final String[] values = request.getParameterValues(key);
+			if (values != null) {
+
+				for (final String value : values) {
+
+					// timestamps can be given in milliseconds as well
+					filter.addFilterEntry(key, StringUtils.isNumeric(value) ? (Object)Long.valueOf(value) : value);
+				}
+			}
+		}
+
+		filter.setResolveTargets("true".equals(request.getParameter("resolve")));
+
+		final List list = filter.getFilteredChangelog(entity);
+
+		return new Result(list, list.size(), true, false);
+	}
+
+	@Override
+	public RestMethodResult doPost(final Map<String, Object> propertySet) throws FrameworkException {
+		throw new IllegalMethodException("POST not allowed on " + getResourceSignature());
+	}
+
+	@Override
+	public Resource tryCombineWith(final Resource next) throws FrameworkException {
+
+		if (next instanceof UuidResource && uuidResource == null) {
+
+			uuidResource = (UuidResource)next;
+			return this;
+		}
+
+		throw new IllegalPathException(getResourceSignature() + " has no subresources");
+	}
+
+	@Override
+	public String getUriPart() {
+		return getResourceSignature();
+	}
+
+	@Override
+	public Class getEntityClass() {
+		return null;
+	}
+
+	@Override
+	public String getResourceSignature() {
+		return UriPart._changelog.name();
+	}
+
+	@Override
+	public boolean isCollectionResource() throws FrameworkException {
+		return true;
+	}
+}
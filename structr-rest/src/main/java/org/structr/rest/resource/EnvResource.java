@@ -21,18 +21,26 @@ package org.structr.rest.resource;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import javax.servlet.http.HttpServletRequest;
 import org.structr.api.service.LicenseManager;
+import org.structr.common.PermissionResolutionCache;
 import org.structr.common.SecurityContext;
 import org.structr.common.VersionHelper;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObjectMap;
 import org.structr.core.Result;
 import org.structr.core.Services;
+import org.structr.core.app.StructrApp;
+import org.structr.core.function.Functions;
+import org.structr.core.graph.UuidIndex;
 import org.structr.core.property.ArrayProperty;
 import org.structr.core.property.GenericProperty;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.StringProperty;
+import org.structr.core.script.Scripting;
 import org.structr.rest.RestMethodResult;
 import org.structr.rest.exception.IllegalMethodException;
 import org.structr.rest.exception.IllegalPathException;
@@ -43,10 +51,23 @@ import org.structr.rest.exception.IllegalPathException;
  */
 public class EnvResource extends Resource {
 
+	private static final Map<String, Supplier<Map<String, Object>>> statistics = new ConcurrentHashMap<>();
+
 	public enum UriPart {
 		_env
 	}
 
+	/**
+	 * Registers statistics of modules that are not known to this
+	 * resource, which are then included in the environment information.
+	 *
+	 * @param name the name of the statistics
+	 * @param supplier the supplier of the current values
+	 */
+	public static void registerStatistics(final String name, final Supplier<Map<String, Object>> supplier) {
+		statistics.put(name, supplier);
+	}
+
 	@Override
 	public boolean checkAndConfigure(String part, SecurityContext securityContext, HttpServletRequest request) throws FrameworkException {
 
@@ -83,6 +104,16 @@ public class EnvResource extends Resource {
 			info.setProperty(new StringProperty("licensee"), "Unlicensed");
 		}
 
+		info.setProperty(new GenericProperty("databaseStatistics"), StructrApp.getInstance().getDatabaseService().getStatistics());
+		info.setProperty(new GenericProperty("permissionResolutionStatistics"), PermissionResolutionCache.getStatistics());
+		info.setProperty(new GenericProperty("expressionCacheStatistics"), Functions.getExpressionCacheStatistics());
+		info.setProperty(new GenericProperty("scriptingStatistics"), Scripting.getStatistics());
+		info.setProperty(new GenericProperty("uuidIndexStatistics"), UuidIndex.getStatistics());
+
+		for (final Entry<String, Supplier<Map<String, Object>>> entry : statistics.entrySet()) {
+			info.setProperty(new GenericProperty(entry.getKey()), entry.getValue().get());
+		}
+
 		resultList.add(info);
 
 		return new Result(resultList, resultList.size(), false, false);
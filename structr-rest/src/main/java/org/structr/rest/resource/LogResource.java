@@ -56,19 +56,17 @@ import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.GraphObjectMap;
 import org.structr.core.Result;
-import org.structr.core.app.App;
-import org.structr.core.app.StructrApp;
-import org.structr.core.graph.Tx;
 import org.structr.core.property.GenericProperty;
 import org.structr.core.property.ISO8601DateProperty;
 import org.structr.core.property.IntProperty;
 import org.structr.core.property.Property;
 import org.structr.core.property.PropertyKey;
-import org.structr.core.property.PropertyMap;
 import org.structr.core.property.StringProperty;
 import org.structr.rest.RestMethodResult;
 import org.structr.rest.exception.IllegalMethodException;
-import org.structr.rest.logging.entity.LogEvent;
+import org.structr.rest.logging.LogEventStore;
+import org.structr.rest.logging.LogEventStore.Event;
+import org.structr.rest.logging.LogEventStore.Row;
 
 /**
  *
@@ -148,53 +146,38 @@ public class LogResource extends Resource {
 			final String objectId            = request.getParameter(objectProperty.jsonName());
 			final GraphObjectMap overviewMap = new GraphObjectMap();
 			final LogState logState          = new LogState(request);
+			final LogEventStore store        = getStore();
+
+			// validate histogram parameters before reading any data
+			logState.doHistogram();
 
 			if (StringUtils.isNotEmpty(subjectId) && StringUtils.isNotEmpty(objectId)) {
 
-				processData(logState, StructrApp.getInstance(securityContext)
-					.nodeQuery(LogEvent.class)
-					.and(LogEvent.subjectProperty, subjectId)
-					.and(LogEvent.objectProperty, objectId)
-					.and(LogEvent.actionProperty, logState.logAction)
-					.andRange(LogEvent.timestampProperty, new Date(logState.beginTimestamp()), new Date(logState.endTimestamp()))
-					.getAsList()
-				);
+				processData(logState, store, subjectId, objectId);
 
 			} else if (StringUtils.isNotEmpty(subjectId) && StringUtils.isEmpty(objectId)) {
 
-				processData(logState, StructrApp.getInstance(securityContext)
-					.nodeQuery(LogEvent.class)
-					.and(LogEvent.subjectProperty, subjectId)
-					.and(LogEvent.actionProperty, logState.logAction)
-					.andRange(LogEvent.timestampProperty, new Date(logState.beginTimestamp()), new Date(logState.endTimestamp()))
-					.getAsList()
-				);
+				processData(logState, store, subjectId, null);
 
 			} else if (StringUtils.isEmpty(subjectId) && StringUtils.isNotEmpty(objectId)) {
 
 				logState.inverse(true);
 
-				processData(logState, StructrApp.getInstance(securityContext)
-					.nodeQuery(LogEvent.class)
-					.and(LogEvent.objectProperty, objectId)
-					.and(LogEvent.actionProperty, logState.logAction)
-					.andRange(LogEvent.timestampProperty, new Date(logState.beginTimestamp()), new Date(logState.endTimestamp()))
-					.getAsList()
-				);
+				processData(logState, store, null, objectId);
 
 			} else if (logState.doActionQuery()) {
 
-				processData(logState);
+				if (!processRollups(logState, store)) {
+
+					processData(logState, store);
+				}
 
 			} else {
 
 				// create overview of existing logs
 				logState.overview(true);
 
-				processData(logState, StructrApp.getInstance(securityContext)
-					.nodeQuery(LogEvent.class)
-					.getAsList()
-				);
+				processRollups(logState, store);
 			}
 
 			if (logState.overview()) {
@@ -238,15 +221,13 @@ public class LogResource extends Resource {
 			// initialize?!
 			if ("true".equals(request.getParameter("initialize"))) {
 
-				final String filesPath = Settings.FilesPath.getValue();
+				final String filesPath    = Settings.FilesPath.getValue();
+				final LogEventStore store = getStore();
+				final int count           = collectFilesAndStore(store, new File(filesPath + SUBJECTS).toPath(), 0);
 
-				try (final Context context  = new Context(1000)) {
+				logger.info("Stored {} log events from {}", count, filesPath + SUBJECTS);
 
-					collectFilesAndStore(context, new File(filesPath + SUBJECTS).toPath(), 0);
-
-				} catch (FrameworkException fex) {
-					logger.warn("", fex);
-				}
+				store.writeRollups();
 
 				return new RestMethodResult(200);
 			}
@@ -258,27 +239,19 @@ public class LogResource extends Resource {
 
 			if (subjectId != null && objectId != null && action != null) {
 
-				final App app  = StructrApp.getInstance(securityContext);
-				LogEvent event = null;
+				final Event event = new Event(System.currentTimeMillis(), action, subjectId, objectId, message);
 
-				try (final Tx tx = app.tx()) {
+				try {
 
-					final PropertyMap properties = new PropertyMap();
-					properties.put(LogEvent.timestampProperty,           new Date());
-					properties.put(LogEvent.actionProperty,              action);
-					properties.put(LogEvent.subjectProperty,             subjectId);
-					properties.put(LogEvent.objectProperty,              objectId);
-					properties.put(LogEvent.messageProperty,             message);
-					properties.put(LogEvent.visibleToPublicUsers,        true);
-					properties.put(LogEvent.visibleToAuthenticatedUsers, true);
+					getStore().append(Collections.singletonList(event));
 
-					event = app.create(LogEvent.class, properties);
+				} catch (IOException ioex) {
 
-					tx.success();
+					throw new FrameworkException(500, "Unable to store log event: " + ioex.getMessage());
 				}
 
 				final RestMethodResult result = new RestMethodResult(201);
-				result.addContent(event);
+				result.addContent(event.toGraphObjectMap());
 
 				return result;
 
@@ -337,7 +310,20 @@ public class LogResource extends Resource {
 	}
 
 	// ----- private methods -----
-	private void collectFilesAndStore(final Context context, final Path dir, final int level) throws FrameworkException {
+	private LogEventStore getStore() throws FrameworkException {
+
+		final LogEventStore store = LogEventStore.getInstance();
+		if (store == null) {
+
+			throw new FrameworkException(500, "Log event store is not available.");
+		}
+
+		return store;
+	}
+
+	private int collectFilesAndStore(final LogEventStore store, final Path dir, final int level) {
+
+		int count = 0;
 
 		if (level == 1) {
 			logger.info("Path {}", dir);
@@ -349,14 +335,11 @@ public class LogResource extends Resource {
 
 				if (Files.isDirectory(p)) {
 
-					collectFilesAndStore(context, p, level+1);
+					count += collectFilesAndStore(store, p, level+1);
 
 				} else {
 
-					context.update(storeLogEntry(p));
-
-					// update object count and commit
-					context.commit(true);
+					count += storeLogEntry(store, p);
 				}
 
 				Files.delete(p);
@@ -366,27 +349,24 @@ public class LogResource extends Resource {
 		} catch (IOException ioex) {
 			logger.warn("", ioex);
 		}
+
+		return count;
 	}
 
-	private void processData(final LogState state) throws FrameworkException {
+	private void processData(final LogState state, final LogEventStore store) throws FrameworkException {
 
 		if (state.doCorrelate()) {
 
 			// get the basic correlation set (pds_click in the test case)
-			final List<LogEvent> correlationResult = StructrApp.getInstance(securityContext)
-				.nodeQuery(LogEvent.class)
-				.and(LogEvent.actionProperty, state.correlationAction)
-				.getAsList();
+			store.scan(null, null, state.correlationAction, null, null, (final Row row) -> {
 
-			for (final LogEvent entry : correlationResult) {
-
-				final String pathSubjectId = state.inverse() ? entry.getObjectId() : entry.getSubjectId();
-				final String pathObjectId  = state.inverse() ? entry.getSubjectId() : entry.getObjectId();
-				final String entryMessage  = entry.getMessage();
+				final String pathSubjectId = state.inverse() ? row.getObjectId() : row.getSubjectId();
+				final String pathObjectId  = state.inverse() ? row.getSubjectId() : row.getObjectId();
+				final Event entry          = new Event(row.getTimestamp(), row.getAction(), pathSubjectId, pathObjectId, null);
 
 				if (state.correlationPattern != null) {
 
-					final Matcher matcher = state.correlationPattern.matcher(entryMessage);
+					final Matcher matcher = state.correlationPattern.matcher(row.getMessage());
 					if (matcher.matches()) {
 
 						state.addCorrelationEntry(matcher.group(1), entry);
@@ -397,34 +377,24 @@ public class LogResource extends Resource {
 					// fallback: subjectId and objectId
 					state.addCorrelationEntry(key(pathSubjectId, pathObjectId), entry);
 				}
-			}
+			});
 		}
 
 		logger.debug("No. of correlations: {}", state.getCorrelations().entrySet().size());
 
-		final List<LogEvent> result = StructrApp.getInstance(securityContext).nodeQuery(LogEvent.class)
-			.and(LogEvent.actionProperty, state.logAction)
-			.andRange(LogEvent.timestampProperty, new Date(state.beginTimestamp()), new Date(state.endTimestamp()))
-			.getAsList();
-
-		processData(state, result);
+		processData(state, store, null, null);
 	}
 
-	private void processData(final LogState state, final Iterable<LogEvent> result) throws FrameworkException {
-
-		int count = 0;
+	private void processData(final LogState state, final LogEventStore store, final String subjectId, final String objectId) throws FrameworkException {
 
-		for (final LogEvent event : result) {
+		store.scan(subjectId, objectId, state.logAction, state.rangeStart(), state.rangeEnd(), (final Row row) -> {
 
-			if ((++count % 100000) == 0) {
-				System.out.println(count);
-			}
+			final String pathSubjectId = state.inverse() ? row.getObjectId() : row.getSubjectId();
+			final String pathObjectId  = state.inverse() ? row.getSubjectId() : row.getObjectId();
+			final long timestamp       = row.getTimestamp();
 
-			final String pathSubjectId = state.inverse() ? event.getObjectId() : event.getSubjectId();
-			final String pathObjectId  = state.inverse() ? event.getSubjectId() : event.getObjectId();
-			final long timestamp       = event.getTimestamp();
-			final String entryAction   = event.getAction();
-			final String entryMessage  = event.getMessage();
+			// the message is only read from the store if it is needed
+			final String entryMessage  = state.needsMessage() ? row.getMessage() : null;
 
 			// determine first timestamp
 			if (timestamp <= state.beginTimestamp()) {
@@ -436,41 +406,136 @@ public class LogResource extends Resource {
 				state.endTimestamp(timestamp);
 			}
 
-			if (state.overview()) {
+			// passes filter? action present or matching?
+			if (state.passesFilter(entryMessage) && state.correlates(pathSubjectId, pathObjectId, entryMessage)) {
 
-				if (entryAction != null) {
+				if (state.doAggregate()) {
 
-					state.countAction(entryAction);
+					count(state, timestamp, entryMessage);
 
 				} else {
 
-					state.countAction("null");
-				}
-
-			} else {
-
-				// passes filter? action present or matching?
-				if (state.passesFilter(entryMessage) && state.correlates(pathSubjectId, pathObjectId, entryMessage)) {
-
 					final Map<String, Object> map = new HashMap<>();
 
 					map.put(subjectProperty.jsonName(), pathSubjectId);
 					map.put(objectProperty.jsonName(), pathObjectId);
-					map.put(actionProperty.jsonName(), entryAction);
+					map.put(actionProperty.jsonName(), row.getAction());
 					map.put(timestampProperty.jsonName(), timestamp);
 					map.put(messageProperty.jsonName(), entryMessage);
 
 					state.addEntry(map);
 				}
 			}
+		});
+	}
+
+	/**
+	 * Serves the overview and aggregations that only count events per
+	 * action from the rollups of the log event store.
+	 *
+	 * @return whether the request could be served from the rollups
+	 */
+	private boolean processRollups(final LogState state, final LogEventStore store) {
+
+		if (state.overview()) {
+
+			for (final Entry<String, Integer> entry : store.getActionCounts().entrySet()) {
+
+				final String action = entry.getKey();
+
+				state.countAction(action != null ? action : "null", entry.getValue());
+			}
+
+			state.beginTimestamp(store.getFirstTimestamp());
+			state.endTimestamp(store.getLastTimestamp());
+
+			return true;
 		}
+
+		if (!state.countsActionsOnly()) {
+			return false;
+		}
+
+		final long interval   = findInterval(state.aggregate());
+		final long resolution = getRollupResolution(state, store, interval);
+		final Long from       = state.rangeStart();
+		final Long to         = state.rangeEnd();
+
+		if (resolution == 0L) {
+			return false;
+		}
+
+		for (final Entry<Long, Integer> entry : store.getCounts(resolution, state.logAction, from, to).entrySet()) {
+
+			final long timestamp = entry.getKey();
+
+			state.beginTimestamp(Math.min(timestamp, state.beginTimestamp()));
+			state.endTimestamp(Math.max(timestamp, state.endTimestamp()));
+
+			state.counts().computeIfAbsent(timestamp, k -> new LinkedHashMap<>()).merge(totalProperty.jsonName(), entry.getValue(), (a, b) -> (Integer)a + (Integer)b);
+		}
+
+		// count the events in the rollup intervals that are only partially covered by the time range
+		if (from != null && to != null) {
+
+			final long firstFull = Math.floorDiv(from + resolution - 1, resolution) * resolution;
+			final long lastFull  = Math.floorDiv(to + 1, resolution) * resolution;
+
+			if (firstFull >= lastFull) {
+
+				countEvents(state, store, from, to);
+
+			} else {
+
+				if (from < firstFull) {
+					countEvents(state, store, from, firstFull - 1);
+				}
+
+				if (lastFull <= to) {
+					countEvents(state, store, lastFull, to);
+				}
+			}
+		}
+
+		return true;
+	}
+
+	private void countEvents(final LogState state, final LogEventStore store, final long from, final long to) {
+
+		store.scan(null, null, state.logAction, from, to, (final Row row) -> {
+
+			final long timestamp = row.getTimestamp();
+
+			state.beginTimestamp(Math.min(timestamp, state.beginTimestamp()));
+			state.endTimestamp(Math.max(timestamp, state.endTimestamp()));
+
+			count(state, timestamp, null);
+		});
+	}
+
+	/**
+	 * Returns the coarsest rollup resolution whose intervals lie completely
+	 * within the aggregation intervals, or 0 if there is none.
+	 */
+	private long getRollupResolution(final LogState state, final LogEventStore store, final long interval) {
+
+		final long first = state.rangeStart() != null ? state.rangeStart() : store.getFirstTimestamp();
+		final long start = alignDateOnFormat(state.aggregate(), first);
+
+		for (final long resolution : new long[] { LogEventStore.HOUR, LogEventStore.MINUTE }) {
+
+			if (interval % resolution == 0 && start % resolution == 0) {
+				return resolution;
+			}
+		}
+
+		return 0L;
 	}
 
-	private int storeLogEntry(final Path path) throws IOException, FrameworkException {
+	private int storeLogEntry(final LogEventStore store, final Path path) throws IOException {
 
-		final App app          = StructrApp.getInstance(securityContext);
-		final String fileName  = path.getFileName().toString();
-		int count              = 0;
+		final List<Event> events = new LinkedList<>();
+		final String fileName    = path.getFileName().toString();
 
 		if (fileName.length() == 64) {
 
@@ -489,27 +554,17 @@ public class LogResource extends Resource {
 				final String action          = part1;
 				final String message         = part2;
 
-				final PropertyMap properties = new PropertyMap();
-
-				properties.put(LogEvent.messageProperty,             message);
-				properties.put(LogEvent.actionProperty,              action);
-				properties.put(LogEvent.subjectProperty,             subjectId);
-				properties.put(LogEvent.objectProperty,              objectId);
-				properties.put(LogEvent.timestampProperty,           new Date(timestamp));
-				properties.put(LogEvent.visibleToPublicUsers,        true);
-				properties.put(LogEvent.visibleToAuthenticatedUsers, true);
-
-				app.create(LogEvent.class, properties);
-
-				count++;
+				events.add(new Event(timestamp, action, subjectId, objectId, message));
 			}
 
+			store.append(events);
+
 		} else {
 
 			System.out.println("Skipping entry " + fileName);
 		}
 
-		return count;
+		return events.size();
 	}
 
 	private String getDirectoryPath(final String uuid, final int depth) {
@@ -530,15 +585,12 @@ public class LogResource extends Resource {
 
 	private Result aggregate(final LogState state) throws FrameworkException {
 
-		// sort entries before aggregation
-		state.sortEntries();
-
 		final long startTimestamp                         = state.beginTimestamp();
 		final long endTimestamp                           = state.endTimestamp();
 		final GraphObjectMap result                       = new GraphObjectMap();
 		final long interval                               = findInterval(state.aggregate());
 		final long start                                  = alignDateOnFormat(state.aggregate(), startTimestamp);
-		final TreeMap<Long, Map<String, Object>> countMap = toAggregatedCountMap(state);
+		final TreeMap<Long, Map<String, Object>> countMap = state.counts();
 		final Set<String> countProperties                 = getCountProperties(countMap);
 
 		for (long current = start; current <= endTimestamp; current += interval) {
@@ -581,16 +633,13 @@ public class LogResource extends Resource {
 
 	private Result histogram(final LogState state) throws FrameworkException {
 
-		// sort entries before creating the histogram
-		state.sortEntries();
-
 		final String dateFormat = state.aggregate();
 		final long startTimestamp = state.beginTimestamp();
 		final long endTimestamp = state.endTimestamp();
 		final GraphObjectMap result = new GraphObjectMap();
 		final long interval = findInterval(dateFormat);
 		final long start = alignDateOnFormat(dateFormat, startTimestamp);
-		final TreeMap<Long, Map<String, Object>> countMap = toHistogramCountMap(state);
+		final TreeMap<Long, Map<String, Object>> countMap = state.counts();
 		final Set<String> countProperties = getCountProperties(countMap);
 
 		for (long current = start; current <= endTimestamp; current += interval) {
@@ -677,109 +726,70 @@ public class LogResource extends Resource {
 		return max;
 	}
 
-	private TreeMap<Long, Map<String, Object>> toAggregatedCountMap(final LogState state) throws FrameworkException {
+	/**
+	 * Adds the given entry to the counts of the second it was logged in,
+	 * which is the finest granularity of the aggregation intervals.
+	 */
+	private void count(final LogState state, final long timestamp, final String message) {
 
-		final TreeMap<Long, Map<String, Object>> countMap = new TreeMap<>();
+		final long second       = Math.floorDiv(timestamp, 1000L) * 1000L;
+		Map<String, Object> obj = state.counts().get(second);
 
-		for (final Map<String, Object> entry : state.entries()) {
+		if (obj == null) {
 
-			final String message = (String) entry.get(messageProperty.jsonName());
-			final long timestamp = (Long) entry.get(timestampProperty.jsonName());
-			Map<String, Object> obj = countMap.get(timestamp);
+			obj = new LinkedHashMap<>();
+			state.counts().put(second, obj);
+		}
 
-			if (obj == null) {
-				obj = new LinkedHashMap<>();
-			}
+		Integer count = (Integer) obj.get(totalProperty.jsonName());
+		if (count == null) {
+			count = 1;
+		} else {
+			count = count + 1;
+		}
+		obj.put(totalProperty.jsonName(), count);
 
-			Integer count = (Integer) obj.get(totalProperty.jsonName());
-			if (count == null) {
-				count = 1;
-			} else {
-				count = count + 1;
+		if (state.doHistogram) {
+
+			// count the first group of the histogram pattern
+			final Matcher matcher = state.histogramPattern.matcher(message);
+			if (matcher.matches()) {
+
+				increment(obj, matcher.group(1), getMultiplier(message, state));
 			}
-			obj.put(totalProperty.jsonName(), count);
+
+		} else {
 
 			// iterate over patterns
 			for (final Entry<String, Pattern> patternEntry : state.aggregationPatterns().entrySet()) {
 
 				if (patternEntry.getValue().matcher(message).matches()) {
 
-					final String key = patternEntry.getKey();
-
-					final int multiplier = getMultiplier(message, state);
-
-					Integer c = (Integer) obj.get(key);
-					if (c == null) {
-						c = multiplier;
-					} else {
-						c = c + multiplier;
-					}
-
-					obj.put(key, c);
+					increment(obj, patternEntry.getKey(), getMultiplier(message, state));
 				}
 			}
-
-			countMap.put(timestamp, obj);
 		}
-
-		return countMap;
 	}
 
-	private TreeMap<Long, Map<String, Object>> toHistogramCountMap(final LogState state) throws FrameworkException {
-
-		final Pattern pattern = Pattern.compile(state.histogram());
-		final Matcher matcher = pattern.matcher("");
-		final TreeMap<Long, Map<String, Object>> countMap = new TreeMap<>();
+	private void increment(final Map<String, Object> obj, final String key, final int multiplier) {
 
-		for (final Map<String, Object> entry : state.entries()) {
-
-			final String message = (String) entry.get(messageProperty.jsonName());
-			final long timestamp = (Long) entry.get(timestampProperty.jsonName());
-			Map<String, Object> obj = countMap.get(timestamp);
-
-			if (obj == null) {
-				obj = new LinkedHashMap<>();
-			}
-
-			Integer count = (Integer) obj.get(totalProperty.jsonName());
-			if (count == null) {
-				count = 1;
-			} else {
-				count = count + 1;
-			}
-			obj.put(totalProperty.jsonName(), count);
-
-			// iterate over patterns
-			matcher.reset(message);
-			if (matcher.matches()) {
-
-				final String key = matcher.group(1);
-
-				final int multiplier = getMultiplier(message, state);
-
-				Integer c = (Integer) obj.get(key);
-				if (c == null) {
-					c = multiplier;
-				} else {
-					c = c + multiplier;
-				}
-
-				obj.put(key, c);
-			}
-
-			countMap.put(timestamp, obj);
+		Integer c = (Integer) obj.get(key);
+		if (c == null) {
+			c = multiplier;
+		} else {
+			c = c + multiplier;
 		}
 
-		return countMap;
+		obj.put(key, c);
 	}
 
 	private int getMultiplier(final String message, final LogState state) {
 
 		int multiplier = 1;
 
-		if (state.multiplier != null) {
+		if (state.multiplierPattern != null) {
 
-			final Matcher matcher = Pattern.compile(state.multiplier).matcher(message);
+			final Matcher matcher = state.multiplierPattern.matcher(message);
 
 			if (matcher.matches()) {
 
@@ -842,7 +852,8 @@ public class LogResource extends Resource {
 
 		private final Map<String, Pattern> aggregationPatterns       = new HashMap<>();
 		private final List<Map<String, Object>> entries              = new LinkedList<>();
-		private final Map<String, LinkedList<LogEvent>> correlations = new ConcurrentHashMap<>();
+		private final TreeMap<Long, Map<String, Object>> counts      = new TreeMap<>();
+		private final Map<String, LinkedList<Event>> correlations    = new ConcurrentHashMap<>();
 		private final Map<String, Integer> actions                   = new HashMap<>();
 		private long beginTimestamp                                  = Long.MAX_VALUE;
 		private long endTimestamp                                    = 0L;
@@ -854,12 +865,15 @@ public class LogResource extends Resource {
 		private String correlationAction                             = null;
 		private String correlationOp                                 = null;
 		private Pattern correlationPattern                           = null;
+		private Pattern histogramPattern                             = null;
+		private Pattern multiplierPattern                            = null;
 		private String[] filters                                     = null;
 		private boolean inverse                                      = false;
 		private boolean overview                                     = false;
 		private Range range                                          = null;
 		private int actionCount                                      = 0;
 		private boolean doCorrelate                                  = false;
+		private boolean doHistogram                                  = false;
 
 		public LogState(final HttpServletRequest request) {
 
@@ -873,6 +887,16 @@ public class LogResource extends Resource {
 			this.filters    = getFilterPatterns(request);
 			this.range      = getRange(request);
 
+			if (StringUtils.isNotBlank(histogram)) {
+
+				histogramPattern = Pattern.compile(histogram);
+				doHistogram      = true;
+			}
+
+			if (multiplier != null) {
+				multiplierPattern = Pattern.compile(multiplier);
+			}
+
 			if (StringUtils.isNotBlank(correlate)) {
 
 				final String[] parts = correlate.split(CORRELATION_SEPARATOR);
@@ -902,11 +926,11 @@ public class LogResource extends Resource {
 			entries.add(entry);
 		}
 
-		public void addCorrelationEntry(final String key, final LogEvent event) {
+		public void addCorrelationEntry(final String key, final Event event) {
 
-			logger.debug("No. of correllation entry lists: {}, adding action: {} {}", new Object[]{correlations.keySet().size(), key, event.getMessage()});
+			logger.debug("No. of correllation entry lists: {}, adding action: {} {}", new Object[]{correlations.keySet().size(), key, event.getAction()});
 
-			LinkedList<LogEvent> existingEventList = correlations.get(key);
+			LinkedList<Event> existingEventList = correlations.get(key);
 
 			if (existingEventList == null) {
 				existingEventList = new LinkedList<>();
@@ -917,7 +941,7 @@ public class LogResource extends Resource {
 			correlations.put(key, existingEventList);
 		}
 
-		public Map<String, LinkedList<LogEvent>> getCorrelations() {
+		public Map<String, LinkedList<Event>> getCorrelations() {
 			return correlations;
 		}
 
@@ -929,19 +953,23 @@ public class LogResource extends Resource {
 			return aggregationPatterns;
 		}
 
-		public void countAction(final String action) {
+		public TreeMap<Long, Map<String, Object>> counts() {
+			return counts;
+		}
+
+		public void countAction(final String action, final int count) {
 
 			Integer actionCount = actions.get(action);
 			if (actionCount == null) {
 
-				actions.put(action, 1);
+				actions.put(action, count);
 
 			} else {
 
-				actions.put(action, actionCount + 1);
+				actions.put(action, actionCount + count);
 			}
 
-			this.actionCount++;
+			this.actionCount += count;
 		}
 
 		public int actionCount() {
@@ -996,6 +1024,30 @@ public class LogResource extends Resource {
 			return range == null || range.contains(timestamp);
 		}
 
+		public Long rangeStart() {
+			return range != null ? range.start : null;
+		}
+
+		public Long rangeEnd() {
+			return range != null ? range.end : null;
+		}
+
+		/**
+		 * Indicates whether the messages of the log events are needed
+		 * to answer the request.
+		 */
+		public boolean needsMessage() {
+			return !countsActionsOnly();
+		}
+
+		/**
+		 * Indicates whether the request only counts log events per time
+		 * interval, without looking at their messages.
+		 */
+		public boolean countsActionsOnly() {
+			return doAggregate() && !doHistogram && !doCorrelate && filters == null && aggregationPatterns.isEmpty();
+		}
+
 		public String histogram() {
 			return histogram;
 		}
@@ -1029,7 +1081,7 @@ public class LogResource extends Resource {
 				return true;
 			}
 
-			LinkedList<LogEvent> correlationEntries;
+			LinkedList<Event> correlationEntries;
 
 			if (correlationOp != null && correlationPattern != null) {
 
@@ -1051,7 +1103,7 @@ public class LogResource extends Resource {
 
 							if (correlationEntries != null) {
 
-								for (LogEvent correlationEntry : correlationEntries) {
+								for (Event correlationEntry : correlationEntries) {
 
 									if (correlationEntry.getSubjectId().equals(pathSubjectId)) {
 
@@ -1071,7 +1123,7 @@ public class LogResource extends Resource {
 
 							if (correlationEntries != null) {
 
-								for (LogEvent correlationEntry : correlationEntries) {
+								for (Event correlationEntry : correlationEntries) {
 
 									if (correlationEntry.getObjectId().equals(pathObjectId)) {
 
@@ -1112,7 +1164,7 @@ public class LogResource extends Resource {
 
 		public boolean doHistogram() throws FrameworkException {
 
-			if (StringUtils.isNotBlank(histogram)) {
+			if (doHistogram) {
 
 				if (StringUtils.isBlank(aggregate)) {
 					throw new FrameworkException(400, "To use the histogram function, please supply an aggregation pattern.");
@@ -1241,53 +1293,4 @@ public class LogResource extends Resource {
 			return timestamp1.compareTo(timestamp2);
 		}
 	}
-
-	private static class Context implements AutoCloseable {
-
-		private final App app   = StructrApp.getInstance();
-		private Tx tx           = null;
-		private int total       = 0;
-		private int count       = 0;
-		private int commitCount = 0;
-
-		public Context(final int commitCount) throws FrameworkException {
-
-			this.commitCount = commitCount;
-			this.tx          = app.tx(false, false, false);
-		}
-
-		public void commit(final boolean intermediate) throws FrameworkException {
-
-			if (count > commitCount) {
-
-				logger.info("Committing transaction after {} objects..", total);
-
-				tx.success();
-				tx.close();
-
-				if (intermediate) {
-
-					tx = app.tx(false, false, false);
-				}
-
-				count = 0;
-			}
-		}
-
-		public int getTotal() {
-			return total;
-		}
-
-		public void update(final int count) {
-			this.count += count;
-			this.total += count;
-		}
-
-		@Override
-		public void close() throws FrameworkException {
-
-			tx.success();
-			tx.close();
-		}
-	}
 }
@@ -37,6 +37,7 @@ import org.structr.core.graph.BulkSetRelationshipPropertiesCommand;
 import org.structr.core.graph.BulkSetUuidCommand;
 import org.structr.core.graph.ClearDatabase;
 import org.structr.core.graph.FlushCachesCommand;
+import org.structr.core.graph.MigrateChangelogCommand;
 import org.structr.core.graph.SyncCommand;
 import org.structr.core.property.PropertyKey;
 import org.structr.rest.RestMethodResult;
@@ -76,6 +77,7 @@ public class MaintenanceParameterResource extends Resource {
 		maintenanceCommandMap.put("sync", SyncCommand.class);
 		maintenanceCommandMap.put("snapshot", SnapshotCommand.class);
 		maintenanceCommandMap.put("flushCaches", FlushCachesCommand.class);
+		maintenanceCommandMap.put("migrateChangelog", MigrateChangelogCommand.class);
 
 	}
 
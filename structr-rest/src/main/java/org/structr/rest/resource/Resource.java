@@ -18,8 +18,11 @@
  */
 package org.structr.rest.resource;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -42,10 +45,12 @@ import org.structr.core.app.Query;
 import org.structr.core.app.StructrApp;
 import org.structr.core.graph.BulkDeleteCommand;
 import org.structr.core.graph.NodeFactory;
+import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.Tx;
 import org.structr.core.graph.search.SearchCommand;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
+import org.structr.core.property.RelationProperty;
 import org.structr.rest.RestMethodResult;
 import org.structr.rest.exception.IllegalPathException;
 import org.structr.rest.exception.NoResultsException;
@@ -61,7 +66,9 @@ import org.structr.schema.ConfigurationProvider;
  */
 public abstract class Resource {
 
-	private static final Logger logger = LoggerFactory.getLogger(Resource.class.getName());
+	private static final Logger logger       = LoggerFactory.getLogger(Resource.class.getName());
+	private static final String DELTA_ADD    = "add";
+	private static final String DELTA_REMOVE = "remove";
 
 	protected SecurityContext securityContext = null;
 
@@ -135,7 +142,9 @@ public abstract class Resource {
 			// instruct deserialization strategies to set properties on related nodes
 			securityContext.setAttribute("setNestedProperties", true);
 
-			PropertyMap properties = PropertyMap.inputTypeToJavaType(securityContext, type, propertySet);
+			final Map<String, Object> values                   = new LinkedHashMap<>(propertySet);
+			final Map<PropertyKey, Map<String, Object>> deltas = extractCollectionDeltas(type, values);
+			final PropertyMap properties                       = PropertyMap.inputTypeToJavaType(securityContext, type, values);
 
 			for (final GraphObject obj : results) {
 
@@ -144,6 +153,8 @@ public abstract class Resource {
 				}
 
 				obj.setProperties(securityContext, properties);
+
+				applyCollectionDeltas(obj, deltas);
 			}
 
 			return new RestMethodResult(HttpServletResponse.SC_OK);
@@ -182,6 +193,71 @@ public abstract class Resource {
 	}
 
 	// ----- protected methods -----
+	/**
+	 * Removes the values of relationship collection properties that
+	 * describe a change instead of the new collection, i.e. objects with
+	 * an "add" and/or a "remove" list, from the given input.
+	 *
+	 * @param type the type of the modified entities
+	 * @param propertySet the input, without the changes afterwards
+	 * @return the changes, by property
+	 */
+	protected Map<PropertyKey, Map<String, Object>> extractCollectionDeltas(final Class type, final Map<String, Object> propertySet) {
+
+		final Map<PropertyKey, Map<String, Object>> deltas = new LinkedHashMap<>();
+		final Iterator<Map.Entry<String, Object>> iterator = propertySet.entrySet().iterator();
+
+		while (iterator.hasNext()) {
+
+			final Map.Entry<String, Object> entry = iterator.next();
+			final Object value                    = entry.getValue();
+
+			if (value instanceof Map && isCollectionDelta((Map)value)) {
+
+				final PropertyKey key = StructrApp.getConfiguration().getPropertyKeyForJSONName(type, entry.getKey(), false);
+				if (key instanceof RelationProperty && key.isCollection()) {
+
+					deltas.put(key, (Map<String, Object>)value);
+					iterator.remove();
+				}
+			}
+		}
+
+		return deltas;
+	}
+
+	/**
+	 * Adds and removes the elements of the given changes to and from the
+	 * relationship collection properties of the given entity, without
+	 * replacing the collections.
+	 *
+	 * @param obj the entity
+	 * @param deltas the changes, by property
+	 *
+	 * @throws FrameworkException
+	 */
+	protected void applyCollectionDeltas(final GraphObject obj, final Map<PropertyKey, Map<String, Object>> deltas) throws FrameworkException {
+
+		if (deltas.isEmpty()) {
+			return;
+		}
+
+		if (!obj.isNode()) {
+			throw new FrameworkException(422, "Collection changes can only be applied to nodes");
+		}
+
+		final NodeInterface node = (NodeInterface)obj;
+
+		for (final Map.Entry<PropertyKey, Map<String, Object>> entry : deltas.entrySet()) {
+
+			final PropertyKey key           = entry.getKey();
+			final Map<String, Object> delta = entry.getValue();
+
+			node.removeFromCollection(key, toList(delta.get(DELTA_REMOVE)));
+			node.addToCollection(key, toList(delta.get(DELTA_ADD)));
+		}
+	}
+
 	protected PropertyKey findPropertyKey(final TypedIdResource typedIdResource, final TypeResource typeResource) {
 
 		Class sourceNodeType = typedIdResource.getTypeResource().getEntityClass();
@@ -350,6 +426,35 @@ public abstract class Resource {
 	}
 
 	// ----- private methods -----
+	private boolean isCollectionDelta(final Map<String, Object> value) {
+
+		if (value.isEmpty()) {
+			return false;
+		}
+
+		for (final String key : value.keySet()) {
+
+			if (!DELTA_ADD.equals(key) && !DELTA_REMOVE.equals(key)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private List toList(final Object value) {
+
+		if (value instanceof Collection) {
+			return new LinkedList<>((Collection)value);
+		}
+
+		if (value != null) {
+			return Collections.singletonList(value);
+		}
+
+		return Collections.emptyList();
+	}
+
 	/**
 	 * Returns the first part of the given source string when it contains a "."
 	 *
@@ -18,6 +18,7 @@
  */
 package org.structr.rest.resource;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -52,6 +53,7 @@ import org.structr.core.property.PropertyMap;
 import org.structr.rest.RestMethodResult;
 import org.structr.rest.exception.IllegalPathException;
 import org.structr.rest.exception.NotFoundException;
+import org.structr.rest.servlet.JsonRestServlet;
 import org.structr.schema.SchemaHelper;
 
 //~--- classes ----------------------------------------------------------------
@@ -172,14 +174,22 @@ public class TypeResource extends SortableResource {
 
 			} else {
 
-				return query
+				query
 					.includeDeletedAndHidden(includeDeletedAndHidden)
 					.publicOnly(publicOnly)
 					.sort(actualSortKey)
 					.order(actualSortOrder)
 					.pageSize(pageSize)
-					.page(page)
-					.getResult();
+					.page(page);
+
+				addSecondarySortKeys(query);
+
+				// streaming results are instantiated while they are written
+				if (securityContext.streamResults()) {
+					return query.getStreamingResult();
+				}
+
+				return query.getResult();
 			}
 
 		} else {
@@ -267,6 +277,43 @@ public class TypeResource extends SortableResource {
 		throw new IllegalPathException("PUT not allowed on " + rawType + " collection resource");
 	}
 
+	/**
+	 * Creates a new entity for each of the given property sets. Nodes of
+	 * a type without virtual type transformation are created in bulk, all
+	 * other entities are created one by one with {@link #doPost}.
+	 *
+	 * @param propertySets the property sets of the new entities
+	 * @return one result per property set
+	 *
+	 * @throws FrameworkException
+	 */
+	public List<RestMethodResult> doBulkPost(final List<Map<String, Object>> propertySets) throws FrameworkException {
+
+		final List<RestMethodResult> results = new ArrayList<>();
+
+		if (isNode && virtualType == null) {
+
+			for (final NodeInterface newNode : createNodes(propertySets)) {
+
+				final RestMethodResult result = new RestMethodResult(HttpServletResponse.SC_CREATED);
+
+				result.addHeader("Location", buildLocationHeader(newNode));
+				result.addContent(newNode);
+				result.serializeAsPrimitiveArray(true);
+
+				results.add(result);
+			}
+
+		} else {
+
+			for (final Map<String, Object> propertySet : propertySets) {
+				results.add(doPost(propertySet));
+			}
+		}
+
+		return results;
+	}
+
 	public NodeInterface createNode(final Map<String, Object> propertySet) throws FrameworkException {
 
 		if (entityClass != null) {
@@ -283,6 +330,26 @@ public class TypeResource extends SortableResource {
 		throw new NotFoundException("Type " + rawType + " does not exist");
 	}
 
+	public List<NodeInterface> createNodes(final List<Map<String, Object>> propertySets) throws FrameworkException {
+
+		if (entityClass != null) {
+
+			// experimental: instruct deserialization strategies to set properties on related nodes
+			securityContext.setAttribute("setNestedProperties", true);
+
+			final App app                      = StructrApp.getInstance(securityContext);
+			final List<PropertyMap> properties = new ArrayList<>(propertySets.size());
+
+			for (final Map<String, Object> propertySet : propertySets) {
+				properties.add(PropertyMap.inputTypeToJavaType(securityContext, entityClass, propertySet));
+			}
+
+			return app.create(entityClass, properties);
+		}
+
+		throw new NotFoundException("Type " + rawType + " does not exist");
+	}
+
 	@Override
 	public Resource tryCombineWith(Resource next) throws FrameworkException {
 
@@ -433,4 +500,32 @@ public class TypeResource extends SortableResource {
 			}
 		}
 	}
+
+	/**
+	 * Adds the secondary sort keys of a comma-separated list of sort keys,
+	 * e.g. sort=lastName,firstName&order=asc,desc
+	 */
+	private void addSecondarySortKeys(final Query query) {
+
+		if (request != null) {
+
+			final String sortParameter  = request.getParameter(JsonRestServlet.REQUEST_PARAMETER_SORT_KEY);
+			final String orderParameter = request.getParameter(JsonRestServlet.REQUEST_PARAMETER_SORT_ORDER);
+
+			if (sortParameter != null && sortParameter.contains(",")) {
+
+				final String[] sortKeys = sortParameter.split(",");
+				final String[] orders   = orderParameter != null ? orderParameter.split(",") : new String[0];
+
+				for (int i=1; i<sortKeys.length; i++) {
+
+					final PropertyKey key = StructrApp.getConfiguration().getPropertyKeyForDatabaseName(entityClass, sortKeys[i].trim(), false);
+					if (key != null) {
+
+						query.thenSort(key, i < orders.length && GraphObjectComparator.DESCENDING.equalsIgnoreCase(orders[i].trim()));
+					}
+				}
+			}
+		}
+	}
 }
@@ -22,18 +22,24 @@ import java.io.IOException;
 import java.io.Writer;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import org.eclipse.jetty.util.ConcurrentHashSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.DatabaseService;
 import org.structr.api.config.Settings;
+import org.structr.api.graph.Direction;
+import org.structr.api.graph.Node;
 import org.structr.common.PropertyView;
 import org.structr.common.QueryRange;
 import org.structr.common.SecurityContext;
@@ -44,9 +50,12 @@ import org.structr.core.Value;
 import org.structr.core.app.StructrApp;
 import org.structr.core.converter.PropertyConverter;
 import org.structr.core.entity.AbstractNode;
+import org.structr.core.entity.Relation;
 import org.structr.core.function.Functions;
+import org.structr.core.graph.NodeInterface;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
+import org.structr.core.property.RelationProperty;
 
 /**
  *
@@ -67,7 +76,7 @@ public abstract class StreamingWriter {
 
 	private final Map<String, Serializer> serializerCache = new LinkedHashMap<>();
 	private final Map<String, Serializer> serializers     = new LinkedHashMap<>();
-	private final Serializer<GraphObject> root            = new RootSerializer();
+	private final RootSerializer root                     = new RootSerializer();
 	private final Set<String> nonSerializerClasses        = new LinkedHashSet<>();
 	private final Set<Integer> visitedObjects             = new ConcurrentHashSet<>();
 	private final DecimalFormat decimalFormat             = new DecimalFormat("0.000000000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
@@ -75,6 +84,7 @@ public abstract class StreamingWriter {
 	private boolean renderSerializationTime               = true;
 	private boolean renderResultCount                     = true;
 	private boolean reduceRedundancy                      = false;
+	private boolean prefetchRelationships                 = true;
 	private int outputNestingDepth                        = 3;
 	private Value<String> propertyView                    = null;
 	protected boolean indent                              = true;
@@ -84,10 +94,11 @@ public abstract class StreamingWriter {
 
 	public StreamingWriter(final Value<String> propertyView, final boolean indent, final int outputNestingDepth) {
 
-		this.reduceRedundancy   = Settings.JsonRedundancyReduction.getValue();
-		this.outputNestingDepth = outputNestingDepth;
-		this.propertyView       = propertyView;
-		this.indent             = indent;
+		this.reduceRedundancy      = Settings.JsonRedundancyReduction.getValue();
+		this.prefetchRelationships = Settings.JsonRelationshipPrefetching.getValue();
+		this.outputNestingDepth    = outputNestingDepth;
+		this.propertyView          = propertyView;
+		this.indent                = indent;
 
 		serializers.put(GraphObject.class.getName(), root);
 		serializers.put(PropertyMap.class.getName(), new PropertyMapSerializer());
@@ -135,11 +146,15 @@ public abstract class StreamingWriter {
 			writer.setIndent("	");
 		}
 
+		// streaming results must not be materialized here
+		final boolean streaming             = result.isStreaming();
+
 		// result fields in alphabetical order
-		List<? extends GraphObject> results = result.getResults();
+		List<? extends GraphObject> results = streaming ? null : result.getResults();
 		Integer page                        = result.getPage();
 		Integer pageCount                   = result.getPageCount();
 		Integer pageSize                    = result.getPageSize();
+		String queryPath                    = result.getQueryPath();
 		String queryTime                    = result.getQueryTime();
 		Integer resultCount                 = result.getRawResultCount();
 		String searchString                 = result.getSearchString();
@@ -172,7 +187,12 @@ public abstract class StreamingWriter {
 			writer.name("result_count").value(resultCount);
 		}
 
-		if (results != null) {
+		if (streaming) {
+
+			// write the result count after the results unless it is already known
+			streamResults(securityContext, writer, result, resultCount == null);
+
+		} else if (results != null) {
 
 			if (results.isEmpty() && result.isPrimitiveArray()) {
 
@@ -248,6 +268,10 @@ public abstract class StreamingWriter {
 
 				if (result.isCollection()) {
 
+					if (prefetchRelationships) {
+						root.prefetch(results, localPropertyView);
+					}
+
 					writer.name(resultKeyName).beginArray();
 
 					// serialize list of results
@@ -299,11 +323,67 @@ public abstract class StreamingWriter {
 			writer.name("serialization_time").value(decimalFormat.format((System.nanoTime() - t0) / 1000000000.0));
 		}
 
+		// strategy of the query, rendered last to keep the order of the existing fields
+		if (queryPath != null) {
+			writer.name("query_path").value(queryPath);
+		}
+
 		// finished
 		writer.endObject();
 		writer.endDocument();
 	}
 
+	/**
+	 * Writes the results of a streaming result set while they are being
+	 * instantiated. The result count is only known after the last result
+	 * was written, so it is written after the result array.
+	 */
+	private void streamResults(final SecurityContext securityContext, final RestWriter writer, final Result result, final boolean renderTrailingResultCount) throws IOException {
+
+		// keep track of serialization time
+		final long startTime           = System.currentTimeMillis();
+		final String localPropertyView = propertyView.get(null);
+		final Integer pageSize         = result.getPageSize();
+		int count                      = 0;
+
+		try {
+
+			writer.name(resultKeyName).beginArray();
+
+			for (final Object obj : result.getResultStream()) {
+
+				root.serialize(writer, (GraphObject)obj, localPropertyView, 0);
+				count++;
+
+				// check for timeout
+				if (System.currentTimeMillis() > startTime + MAX_SERIALIZATION_TIME) {
+
+					logger.error("JSON serialization of {} with {} streamed results took more than {} ms, aborted. Please review output view size or adjust timeout.", new Object[] { securityContext.getCompoundRequestURI(), count, MAX_SERIALIZATION_TIME } );
+
+					// TODO: create some output indicating that streaming was interrupted
+					break;
+				}
+			}
+
+			writer.endArray();
+
+		} finally {
+
+			result.close();
+		}
+
+		// null if the stream was not consumed completely
+		final Integer resultCount = result.getRawResultCount();
+		if (resultCount != null && renderResultCount && renderTrailingResultCount) {
+
+			writer.name("result_count").value(resultCount);
+
+			if (pageSize != null) {
+				writer.name("page_count").value((int)Math.ceil((double)resultCount / (double)pageSize));
+			}
+		}
+	}
+
 	public void setResultKeyName(final String resultKeyName) {
 		this.resultKeyName = resultKeyName;
 	}
@@ -447,6 +527,80 @@ public abstract class StreamingWriter {
 
 	public class RootSerializer extends Serializer<GraphObject> {
 
+		/**
+		 * Loads the relationships of all relationship properties in the given
+		 * view for all nodes in the given list with one query per relationship
+		 * type and direction, so that the serialization of the nodes doesn't
+		 * need to query the relationships of each node separately.
+		 *
+		 * @param results the nodes to serialize
+		 * @param localPropertyView the view
+		 */
+		public void prefetch(final List<? extends GraphObject> results, final String localPropertyView) {
+
+			final Map<Class, Set<RelationProperty>> propertiesByType = new HashMap<>();
+			final Map<String, Collection<Node>> nodesByRelation      = new LinkedHashMap<>();
+			final Map<String, Relation> relations                    = new LinkedHashMap<>();
+			final Map<String, Direction> directions                  = new LinkedHashMap<>();
+
+			// a single node doesn't benefit from batching
+			if (results.size() < 2) {
+				return;
+			}
+
+			for (final GraphObject obj : results) {
+
+				if (obj instanceof NodeInterface) {
+
+					final Class type                 = obj.getClass();
+					Set<RelationProperty> properties = propertiesByType.get(type);
+
+					if (properties == null) {
+
+						properties = new LinkedHashSet<>();
+						propertiesByType.put(type, properties);
+
+						final Iterable<PropertyKey> keys = obj.getPropertyKeys(localPropertyView);
+						if (keys != null) {
+
+							for (final PropertyKey key : keys) {
+
+								if (key instanceof RelationProperty && ((RelationProperty)key).getRelation() != null) {
+									properties.add((RelationProperty)key);
+								}
+							}
+						}
+					}
+
+					for (final RelationProperty property : properties) {
+
+						final Relation relation = property.getRelation();
+						final String key        = relation.name() + property.getDirectionKey();
+						Collection<Node> nodes  = nodesByRelation.get(key);
+
+						if (nodes == null) {
+
+							nodes = new LinkedHashSet<>();
+							nodesByRelation.put(key, nodes);
+							relations.put(key, relation);
+							directions.put(key, "in".equals(property.getDirectionKey()) ? Direction.INCOMING : Direction.OUTGOING);
+						}
+
+						nodes.add(((NodeInterface)obj).getNode());
+					}
+				}
+			}
+
+			final DatabaseService db = StructrApp.getInstance().getDatabaseService();
+
+			for (final Entry<String, Collection<Node>> entry : nodesByRelation.entrySet()) {
+
+				final String key = entry.getKey();
+
+				db.prefetchRelationships(entry.getValue(), relations.get(key), directions.get(key));
+			}
+		}
+
 		@Override
 		public void serialize(RestWriter writer, GraphObject source, String localPropertyView, int depth) throws IOException {
 
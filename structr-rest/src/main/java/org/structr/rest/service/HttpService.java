@@ -70,8 +70,10 @@ import org.structr.api.service.Command;
 import org.structr.api.service.LicenseManager;
 import org.structr.api.service.RunnableService;
 import org.structr.api.service.StructrServices;
+import org.structr.common.error.FrameworkException;
 import org.structr.core.Services;
 import org.structr.rest.ResourceProvider;
+import org.structr.rest.logging.LogEventStore;
 import org.tuckey.web.filters.urlrewrite.UrlRewriteFilter;
 
 /**
@@ -463,7 +465,30 @@ public class HttpService implements RunnableService {
 	}
 
 	@Override
-	public void initialized() {}
+	public void initialized() {
+
+		// open the log event store and move existing log events from the database in
+		// the background, so that a large number of events doesn't delay the startup
+		final LogEventStore store = LogEventStore.getInstance();
+		if (store != null) {
+
+			final Thread migration = new Thread(() -> {
+
+				try {
+
+					store.migrateLogEvents();
+
+				} catch (IOException | FrameworkException ex) {
+
+					logger.warn("Unable to move log events from the database to the log event store: {}", ex.getMessage());
+				}
+
+			}, "LogEventMigration");
+
+			migration.setDaemon(true);
+			migration.start();
+		}
+	}
 
 	@Override
 	public void shutdown() {
@@ -479,6 +504,9 @@ public class HttpService implements RunnableService {
 			}
 		}
 
+		// write the rollups of the log event store
+		LogEventStore.shutdown();
+
 		// send lifecycle event that the server has been stopped
 		sendLifecycleEvent(LifecycleEvent.Stopped);
 	}
@@ -64,6 +64,7 @@ import org.structr.core.property.PropertyKey;
 import org.structr.rest.RestMethodResult;
 import org.structr.rest.common.CsvHelper;
 import org.structr.rest.resource.Resource;
+import org.structr.rest.resource.TypeResource;
 import org.structr.rest.service.HttpServiceServlet;
 import org.structr.rest.service.StructrHttpServiceConfig;
 import org.structr.schema.parser.DatePropertyParser;
@@ -360,11 +361,7 @@ public class CsvServlet extends HttpServlet implements HttpServiceServlet {
 
 									currentChunkNo++;
 
-									for (final JsonInput propertySet : currentChunk) {
-
-										handleCsvPropertySet(results, resource, propertySet);
-
-									}
+									handleCsvPropertySets(results, resource, currentChunk);
 
 									tx.success();
 
@@ -544,6 +541,43 @@ public class CsvServlet extends HttpServlet implements HttpServiceServlet {
 		return "csv";
 	}
 
+	private void handleCsvPropertySets (final List<RestMethodResult> results, final Resource resource, final List<JsonInput> propertySets) throws FrameworkException {
+
+		if (resource instanceof TypeResource) {
+
+			final List<Map<String, Object>> maps = new ArrayList<>(propertySets.size());
+
+			for (final JsonInput propertySet : propertySets) {
+				maps.add(convertPropertySetToMap(propertySet));
+			}
+
+			try {
+
+				results.addAll(((TypeResource)resource).doBulkPost(maps));
+
+			} catch (FrameworkException fxe) {
+
+				logger.warn("CSV Import Error: " + fxe.getMessage() + "\n" + fxe.toString() + "\nin chunk of {} rows", propertySets.size());
+
+				final Map<String, Object> data = new LinkedHashMap();
+				data.put("type", "CSV_IMPORT_ERROR");
+				data.put("title", "CSV Import Error");
+				data.put("text", fxe.getMessage() + "<br>" + fxe.toString() + "<br>in chunk of " + propertySets.size() + " rows");
+				data.put("username", securityContext.getUser(false).getName());
+				TransactionCommand.simpleBroadcastGenericMessage(data);
+
+				throw fxe;
+			}
+
+		} else {
+
+			for (final JsonInput propertySet : propertySets) {
+
+				handleCsvPropertySet(results, resource, propertySet);
+			}
+		}
+	}
+
 	private void handleCsvPropertySet (final List<RestMethodResult> results, final Resource resource, final JsonInput propertySet) throws FrameworkException {
 
 		try {
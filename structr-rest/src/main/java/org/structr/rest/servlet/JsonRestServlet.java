@@ -85,6 +85,7 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 	public static final String REQUEST_PARAMETER_PAGE_SIZE              = "pageSize";
 	public static final String REQUEST_PARAMETER_SORT_KEY               = "sort";
 	public static final String REQUEST_PARAMETER_SORT_ORDER             = "order";
+	public static final String REQUEST_PARAMETER_STREAM                 = "stream";
 	public static final Set<String> commonRequestParameters             = new LinkedHashSet<>();
 	private static final Logger logger                                  = LoggerFactory.getLogger(JsonRestServlet.class.getName());
 
@@ -95,6 +96,7 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 		commonRequestParameters.add(REQUEST_PARAMETER_PAGE_SIZE);
 		commonRequestParameters.add(REQUEST_PARAMETER_SORT_KEY);
 		commonRequestParameters.add(REQUEST_PARAMETER_SORT_ORDER);
+		commonRequestParameters.add(REQUEST_PARAMETER_STREAM);
 		commonRequestParameters.add("debugLoggingEnabled");
 		commonRequestParameters.add("ignoreResultCount");
 
@@ -795,8 +797,8 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 			// add sorting & paging
 			String pageSizeParameter = request.getParameter(REQUEST_PARAMETER_PAGE_SIZE);
 			String pageParameter     = request.getParameter(REQUEST_PARAMETER_PAGE_NUMBER);
-			String sortOrder         = request.getParameter(REQUEST_PARAMETER_SORT_ORDER);
-			String sortKeyName       = request.getParameter(REQUEST_PARAMETER_SORT_KEY);
+			String sortOrder         = getFirstValue(request.getParameter(REQUEST_PARAMETER_SORT_ORDER));
+			String sortKeyName       = getFirstValue(request.getParameter(REQUEST_PARAMETER_SORT_KEY));
 			boolean sortDescending   = (sortOrder != null && "desc".equals(sortOrder.toLowerCase()));
 			int pageSize             = Services.parseInt(pageSizeParameter, NodeFactory.DEFAULT_PAGE_SIZE);
 			int page                 = Services.parseInt(pageParameter, NodeFactory.DEFAULT_PAGE);
@@ -817,86 +819,49 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 				sortKey = StructrApp.getConfiguration().getPropertyKeyForDatabaseName(type, sortKeyName, false);
 			}
 
-			// isolate doGet
-			boolean retry = true;
-			while (retry) {
+			if (returnContent && securityContext.streamResults()) {
 
+				// streaming results are instantiated while they are written,
+				// so the query and the output must share a transaction and
+				// cannot be retried
 				try (final Tx tx = app.tx()) {
-					result = resource.doGet(sortKey, sortDescending, pageSize, page);
-					tx.success();
-					retry = false;
-
-				} catch (RetryException ddex) {
-					retry = true;
-				}
-			}
-
-			if (result == null) {
 
-				throw new FrameworkException(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Unable to retrieve result, check database connection");
-			}
+					result = resource.doGet(sortKey, sortDescending, pageSize, page);
 
-			if (returnContent) {
+					if (result == null) {
 
-				if (!(resource instanceof StaticRelationshipResource) && !result.isPrimitiveArray() && !result.isEmpty()) {
+						throw new FrameworkException(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Unable to retrieve result, check database connection");
+					}
 
-					result.setIsCollection(resource.isCollectionResource());
-					result.setIsPrimitiveArray(resource.isPrimitiveArray());
+					writeResult(securityContext, request, response, resource, result, pageSize, page, queryTimeStart, baseUrl);
 
+					tx.success();
 				}
 
-				PagingHelper.addPagingParameter(result, pageSize, page);
-
-				// timing..
-				double queryTimeEnd = System.nanoTime();
-
-				// store property view that will be used to render the results
-				result.setPropertyView(propertyView.get(securityContext));
-
-				// allow resource to modify result set
-				resource.postProcessResultSet(result);
-
-				DecimalFormat decimalFormat = new DecimalFormat("0.000000000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
-				result.setQueryTime(decimalFormat.format((queryTimeEnd - queryTimeStart) / 1000000000.0));
-
-				String accept = request.getHeader("Accept");
-
-				if (accept != null && accept.contains("text/html")) {
+			} else {
 
-					final StreamingHtmlWriter htmlStreamer = new StreamingHtmlWriter(this.propertyView, indentJson, config.getOutputNestingDepth());
+				// isolate doGet
+				boolean retry = true;
+				while (retry) {
 
-					// isolate write output
 					try (final Tx tx = app.tx()) {
-
-						// no trailing semicolon so we dont trip MimeTypes.getContentTypeWithoutCharset
-						response.setContentType("text/html; charset=utf-8");
-
-						final Writer writer = response.getWriter();
-
-						htmlStreamer.stream(securityContext, writer, result, baseUrl);
-						writer.append("\n");    // useful newline
-
+						result = resource.doGet(sortKey, sortDescending, pageSize, page);
 						tx.success();
-					}
-
-				} else {
-
-					final StreamingJsonWriter jsonStreamer = new StreamingJsonWriter(this.propertyView, indentJson, config.getOutputNestingDepth());
-
-					// isolate write output
-					try (final Tx tx = app.tx()) {
+						retry = false;
 
-						// no trailing semicolon so we dont trip MimeTypes.getContentTypeWithoutCharset
-						response.setContentType("application/json; charset=utf-8");
+					} catch (RetryException ddex) {
+						retry = true;
+					}
+				}
 
-						final Writer writer = response.getWriter();
+				if (result == null) {
 
-						jsonStreamer.stream(securityContext, writer, result, baseUrl);
-						writer.append("\n");    // useful newline
+					throw new FrameworkException(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Unable to retrieve result, check database connection");
+				}
 
-						tx.success();
-					}
+				if (returnContent) {
 
+					writeResult(securityContext, request, response, resource, result, pageSize, page, queryTimeStart, baseUrl);
 				}
 			}
 
@@ -951,6 +916,87 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 		}
 	}
 
+	private void writeResult(final SecurityContext securityContext, final HttpServletRequest request, final HttpServletResponse response, final Resource resource, final Result result, final int pageSize, final int page, final double queryTimeStart, final String baseUrl) throws FrameworkException, IOException {
+
+		final App app = StructrApp.getInstance(securityContext);
+
+		// a streaming result is a collection and must not be materialized here
+		if (!(resource instanceof StaticRelationshipResource) && !result.isPrimitiveArray() && !result.isStreaming() && !result.isEmpty()) {
+
+			result.setIsCollection(resource.isCollectionResource());
+			result.setIsPrimitiveArray(resource.isPrimitiveArray());
+
+		}
+
+		PagingHelper.addPagingParameter(result, pageSize, page);
+
+		// timing..
+		double queryTimeEnd = System.nanoTime();
+
+		// store property view that will be used to render the results
+		result.setPropertyView(propertyView.get(securityContext));
+
+		// allow resource to modify result set
+		resource.postProcessResultSet(result);
+
+		DecimalFormat decimalFormat = new DecimalFormat("0.000000000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+		result.setQueryTime(decimalFormat.format((queryTimeEnd - queryTimeStart) / 1000000000.0));
+
+		String accept = request.getHeader("Accept");
+
+		if (accept != null && accept.contains("text/html")) {
+
+			final StreamingHtmlWriter htmlStreamer = new StreamingHtmlWriter(this.propertyView, indentJson, config.getOutputNestingDepth());
+
+			// isolate write output
+			try (final Tx tx = app.tx()) {
+
+				// no trailing semicolon so we dont trip MimeTypes.getContentTypeWithoutCharset
+				response.setContentType("text/html; charset=utf-8");
+
+				final Writer writer = response.getWriter();
+
+				htmlStreamer.stream(securityContext, writer, result, baseUrl);
+				writer.append("\n");    // useful newline
+
+				tx.success();
+			}
+
+		} else {
+
+			final StreamingJsonWriter jsonStreamer = new StreamingJsonWriter(this.propertyView, indentJson, config.getOutputNestingDepth());
+
+			// isolate write output
+			try (final Tx tx = app.tx()) {
+
+				// no trailing semicolon so we dont trip MimeTypes.getContentTypeWithoutCharset
+				response.setContentType("application/json; charset=utf-8");
+
+				final Writer writer = response.getWriter();
+
+				jsonStreamer.stream(securityContext, writer, result, baseUrl);
+				writer.append("\n");    // useful newline
+
+				tx.success();
+			}
+
+		}
+	}
+
+	/**
+	 * Returns the first value of a comma-separated parameter value. The
+	 * additional values of the sort key and sort order parameters are
+	 * secondary sort keys which are handled by the resource.
+	 */
+	private String getFirstValue(final String value) {
+
+		if (value != null && value.contains(",")) {
+			return value.substring(0, value.indexOf(",")).trim();
+		}
+
+		return value;
+	}
+
 	private void assertInitialized() throws FrameworkException {
 
 		if (!Services.getInstance().isInitialized()) {
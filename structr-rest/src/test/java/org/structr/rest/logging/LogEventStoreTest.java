@@ -0,0 +1,235 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.structr.api.config.Settings;
+import org.structr.rest.logging.LogEventStore.Event;
+
+/**
+ *
+ *
+ */
+public class LogEventStoreTest {
+
+	private static final long START = 1483228800000L; // 2017-01-01T00:00:00Z
+
+	private String previousBasePath = null;
+	private String basePath         = null;
+
+	@Before
+	public void setup() {
+
+		previousBasePath = Settings.BasePath.getValue();
+		basePath         = "/tmp/structr-logevents-test-" + System.nanoTime();
+
+		Settings.BasePath.setValue(basePath);
+	}
+
+	@After
+	public void cleanup() {
+
+		LogEventStore.shutdown();
+
+		Settings.BasePath.setValue(previousBasePath);
+	}
+
+	@Test
+	public void testAppendAndScan() throws IOException {
+
+		final LogEventStore store = LogEventStore.getInstance();
+		final List<Event> events  = new ArrayList<>();
+
+		// two days with one event every 10 seconds, more than one block per partition
+		for (int i=0; i<2 * 8640; i++) {
+
+			final String subject = "subject" + (i % 4);
+			final String object  = "object"  + (i % 3);
+			final String action  = (i % 2) == 0 ? "view" : "click";
+
+			events.add(new Event(START + i * 10000L, action, subject, object, "message " + i));
+		}
+
+		store.append(events);
+
+		assertEquals("Invalid number of events", 17280, scan(store, null,       null,      null,   null, null).size());
+		assertEquals("Invalid number of events",  4320, scan(store, "subject1", null,      null,   null, null).size());
+		assertEquals("Invalid number of events",  5760, scan(store, null,       "object2", null,   null, null).size());
+		assertEquals("Invalid number of events",  8640, scan(store, null,       null,      "view", null, null).size());
+		assertEquals("Invalid number of events",     0, scan(store, "unknown",  null,      null,   null, null).size());
+
+		// subject0 always views, subject1 always clicks
+		assertEquals("Invalid number of events",  4320, scan(store, "subject0", null, "view",  null, null).size());
+		assertEquals("Invalid number of events",     0, scan(store, "subject1", null, "view",  null, null).size());
+
+		// time range of one hour
+		final List<String> range = scan(store, null, null, null, START + 3600000L, START + 7200000L - 1);
+
+		assertEquals("Invalid number of events in time range", 360, range.size());
+		assertTrue("Invalid message", range.contains("message 360"));
+		assertTrue("Invalid message", range.contains("message 719"));
+
+		// every message must be read correctly, including those at block boundaries
+		for (final String message : scan(store, "subject2", null, null, null, null)) {
+
+			final int number = Integer.valueOf(message.substring(8));
+
+			assertEquals("Invalid message", 2, number % 4);
+		}
+	}
+
+	@Test
+	public void testRollups() throws IOException {
+
+		LogEventStore store      = LogEventStore.getInstance();
+		final List<Event> events = new ArrayList<>();
+
+		// 30 events per minute for three hours
+		for (int i=0; i<5400; i++) {
+
+			events.add(new Event(START + i * 2000L, (i % 3) == 0 ? "view" : "click", "subject", "object", "message"));
+		}
+
+		store.append(events);
+
+		assertCounts(store);
+
+		// rollups must be identical after the store is re-opened
+		LogEventStore.shutdown();
+
+		store = LogEventStore.getInstance();
+
+		assertCounts(store);
+
+		// rollups must be rebuilt from the columns when the rollup file is missing
+		LogEventStore.shutdown();
+
+		assertTrue("Rollup file not found", new File(basePath + "/logevents/2017-01-01/rollup").delete());
+
+		store = LogEventStore.getInstance();
+
+		assertCounts(store);
+	}
+
+	@Test
+	public void testIncompleteRowIsRemoved() throws IOException {
+
+		LogEventStore store      = LogEventStore.getInstance();
+		final List<Event> events = new ArrayList<>();
+
+		for (int i=0; i<10; i++) {
+			events.add(new Event(START + i, "view", "subject", "object", "message " + i));
+		}
+
+		store.append(events);
+
+		LogEventStore.shutdown();
+
+		final File partition = new File(basePath + "/logevents/2017-01-01").listFiles(File::isDirectory)[0];
+
+		// simulate a crash while a row was written
+		try (final RandomAccessFile file = new RandomAccessFile(new File(partition, "timestamp.col"), "rw")) {
+
+			file.seek(file.length());
+			file.writeLong(START + 10);
+			file.writeLong(START + 11);
+		}
+
+		store = LogEventStore.getInstance();
+
+		assertEquals("Invalid number of events", 10, scan(store, null, null, null, null, null).size());
+		assertEquals("Invalid number of events", 10, (int)store.getActionCounts().get("view"));
+
+		// appending to the repaired partition must work
+		events.clear();
+		events.add(new Event(START + 20, "click", "subject", "object", "message 20"));
+
+		store.append(events);
+
+		final List<String> messages = scan(store, null, null, "click", null, null);
+
+		assertEquals("Invalid number of events", 1, messages.size());
+		assertEquals("Invalid message", "message 20", messages.get(0));
+	}
+
+	// ----- private methods -----
+	private void assertCounts(final LogEventStore store) {
+
+		final Map<String, Integer> actions = store.getActionCounts();
+
+		assertEquals("Invalid number of actions", 2, actions.size());
+		assertEquals("Invalid action count", 1800, (int)actions.get("view"));
+		assertEquals("Invalid action count", 3600, (int)actions.get("click"));
+
+		assertEquals("Invalid first timestamp", START, store.getFirstTimestamp());
+		assertEquals("Invalid last timestamp",  START + 5399 * 2000L, store.getLastTimestamp());
+
+		final TreeMap<Long, Integer> minutes = store.getCounts(LogEventStore.MINUTE, "view", null, null);
+		final TreeMap<Long, Integer> hours   = store.getCounts(LogEventStore.HOUR, null, null, null);
+		final TreeMap<Long, Integer> days    = store.getCounts(LogEventStore.DAY, "click", null, null);
+
+		assertEquals("Invalid number of minute rollups", 180, minutes.size());
+		assertEquals("Invalid minute rollup", 10, (int)minutes.get(START + 60000L));
+
+		assertEquals("Invalid number of hour rollups", 3, hours.size());
+		assertEquals("Invalid hour rollup", 1800, (int)hours.get(START + 3600000L));
+
+		assertEquals("Invalid number of day rollups", 1, days.size());
+		assertEquals("Invalid day rollup", 3600, (int)days.get(START));
+
+		// only complete intervals within the time range
+		assertEquals("Invalid number of hour rollups in range", 2, store.getCounts(LogEventStore.HOUR, null, START + 1, START + 3 * 3600000L - 1).size());
+	}
+
+	private List<String> scan(final LogEventStore store, final String subject, final String object, final String action, final Long from, final Long to) {
+
+		final List<String> messages = new ArrayList<>();
+		final AtomicInteger count   = new AtomicInteger();
+
+		store.scan(subject, object, action, from, to, (final LogEventStore.Row row) -> {
+
+			if (subject != null) {
+				assertEquals("Invalid subject", subject, row.getSubjectId());
+			}
+
+			if (action != null) {
+				assertEquals("Invalid action", action, row.getAction());
+			}
+
+			messages.add(row.getMessage());
+			count.incrementAndGet();
+		});
+
+		assertEquals("Invalid number of rows", count.get(), messages.size());
+
+		return messages;
+	}
+}
@@ -0,0 +1,249 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.resource;
+
+import com.jayway.restassured.RestAssured;
+import com.jayway.restassured.filter.log.ResponseLoggingFilter;
+import com.jayway.restassured.specification.RequestSpecification;
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import org.hamcrest.Matchers;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.structr.api.config.Settings;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.graph.NodeAttribute;
+import org.structr.core.graph.Tx;
+import org.structr.rest.common.StructrRestTest;
+import org.structr.rest.logging.LogEventStore;
+import org.structr.rest.logging.entity.LogEvent;
+
+/**
+ *
+ *
+ */
+public class LogResourceTest extends StructrRestTest {
+
+	@Test
+	public void testLogEventsAndAggregation() {
+
+		createLogEvent("subject1", "object1", "view",  "viewed page 1");
+		createLogEvent("subject1", "object2", "click", "clicked button 2");
+		createLogEvent("subject2", "object1", "view",  "viewed page 3");
+		createLogEvent("subject2", "object2", "view",  "viewed page 4");
+
+		// overview
+		request()
+			.expect()
+				.statusCode(200)
+				.body("result[0].entryCount", Matchers.equalTo(4))
+				.body("result[0].firstEntry", Matchers.notNullValue())
+				.body("result[0].lastEntry",  Matchers.notNullValue())
+			.when()
+				.get("/log");
+
+		request()
+			.expect()
+				.statusCode(200)
+				.body("result_count",      Matchers.equalTo(2))
+				.body("result[0].subject", Matchers.equalTo("subject1"))
+				.body("result[0].message", Matchers.equalTo("viewed page 1"))
+				.body("result[1].action",  Matchers.equalTo("click"))
+			.when()
+				.get("/log?subject=subject1");
+
+		// inverse query
+		request()
+			.expect()
+				.statusCode(200)
+				.body("result_count",      Matchers.equalTo(2))
+				.body("result[0].subject", Matchers.equalTo("object1"))
+				.body("result[1].object",  Matchers.equalTo("subject2"))
+			.when()
+				.get("/log?object=object1");
+
+		request()
+			.expect()
+				.statusCode(200)
+				.body("result_count", Matchers.equalTo(1))
+			.when()
+				.get("/log?subject=subject2&object=object2");
+
+		try {
+
+			final SimpleDateFormat dayFormat   = new SimpleDateFormat("yyyy-MM-dd");
+			final SimpleDateFormat rangeFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ");
+			final Date start                   = dayFormat.parse(dayFormat.format(new Date()));
+			final Date end                     = new Date(start.getTime() + 86399000L);
+			final String range                 = "[" + rangeFormat.format(start) + " TO " + rangeFormat.format(end) + "]";
+			final String day                   = "result[0].'" + start.getTime() + "'";
+
+			// aggregation that only counts events (served from rollups)
+			request()
+				.param("action",    "view")
+				.param("timestamp", range)
+				.param("aggregate", "yyyy-MM-dd")
+				.expect()
+					.statusCode(200)
+					.body(day + ".total", Matchers.equalTo(3))
+				.when()
+					.get("/log");
+
+			// aggregation with patterns
+			request()
+				.param("action",    "view")
+				.param("timestamp", range)
+				.param("aggregate", "yyyy-MM-dd")
+				.param("odd",       "viewed page [13]")
+				.expect()
+					.statusCode(200)
+					.body(day + ".total", Matchers.equalTo(3))
+					.body(day + ".odd",   Matchers.equalTo(2))
+				.when()
+					.get("/log");
+
+			// histogram
+			request()
+				.param("action",    "view")
+				.param("timestamp", range)
+				.param("aggregate", "yyyy-MM-dd")
+				.param("histogram", "viewed (page) .*")
+				.expect()
+					.statusCode(200)
+					.body(day + ".total", Matchers.equalTo(3))
+					.body(day + ".page",  Matchers.equalTo(3))
+				.when()
+					.get("/log");
+
+		} catch (ParseException pex) {
+
+			pex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	@Test
+	public void testInvalidLogEvent() {
+
+		request()
+			.body(" { 'subject': 'subject1', 'action': 'view' } ")
+			.expect()
+				.statusCode(422)
+			.when()
+				.post("/log");
+	}
+
+	@Test
+	public void testMigrateLogEvents() {
+
+		final String previousPath = Settings.LogEventsPath.getValue();
+
+		try {
+
+			final File marker = new File(Settings.getFullSettingPath(Settings.LogEventsPath), "migrated");
+
+			// the store was opened on startup and is migrated in the background
+			for (int i=0; i<100 && !marker.exists(); i++) {
+				sleep(100L);
+			}
+
+			assertTrue("Log event store should be migrated on startup", marker.exists());
+
+			try (final Tx tx = app.tx()) {
+
+				app.create(LogEvent.class,
+					new NodeAttribute<>(LogEvent.timestampProperty, new Date()),
+					new NodeAttribute<>(LogEvent.actionProperty,    "view"),
+					new NodeAttribute<>(LogEvent.subjectProperty,   "subject3"),
+					new NodeAttribute<>(LogEvent.objectProperty,    "object3"),
+					new NodeAttribute<>(LogEvent.messageProperty,   "migrated event")
+				);
+
+				tx.success();
+			}
+
+			// the migration runs only once per store
+			LogEventStore.getInstance().migrateLogEvents();
+
+			try (final Tx tx = app.tx()) {
+
+				assertEquals("Log events should not be migrated twice", 1, app.nodeQuery(LogEvent.class).getAsList().size());
+				tx.success();
+			}
+
+			// a new store is migrated
+			Settings.LogEventsPath.setValue("logevents-migration");
+
+			LogEventStore.getInstance().migrateLogEvents();
+
+			try (final Tx tx = app.tx()) {
+
+				assertEquals("Migrated log events should be deleted", 0, app.nodeQuery(LogEvent.class).getAsList().size());
+				tx.success();
+			}
+
+			request()
+				.expect()
+					.statusCode(200)
+					.body("result_count",      Matchers.equalTo(1))
+					.body("result[0].action",  Matchers.equalTo("view"))
+					.body("result[0].message", Matchers.equalTo("migrated event"))
+				.when()
+					.get("/log?subject=subject3");
+
+		} catch (IOException | FrameworkException ex) {
+
+			ex.printStackTrace();
+			fail("Unexpected exception");
+
+		} finally {
+
+			Settings.LogEventsPath.setValue(previousPath);
+		}
+	}
+
+	// ----- private methods -----
+	private void createLogEvent(final String subject, final String object, final String action, final String message) {
+
+		request()
+			.body(" { 'subject': '" + subject + "', 'object': '" + object + "', 'action': '" + action + "', 'message': '" + message + "' } ")
+			.expect()
+				.statusCode(201)
+			.when()
+				.post("/log");
+
+		// make sure that the events have different timestamps
+		sleep(10L);
+	}
+
+	private RequestSpecification request() {
+
+		return RestAssured
+			.given()
+				.contentType("application/json; charset=UTF-8")
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(400))
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(404))
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(500));
+	}
+}
@@ -20,7 +20,14 @@ package org.structr.rest.resource;
 
 import com.jayway.restassured.RestAssured;
 import com.jayway.restassured.filter.log.ResponseLoggingFilter;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -28,6 +35,7 @@ import org.slf4j.LoggerFactory;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.graph.Tx;
 import org.structr.rest.common.StructrRestTest;
+import org.structr.rest.entity.FiveOneManyToMany;
 import org.structr.rest.entity.TestFive;
 import org.structr.rest.entity.TestFour;
 import org.structr.rest.entity.TestOne;
@@ -598,4 +606,147 @@ public class TypeResourceRelationshipTest extends StructrRestTest {
 			.when()
 				.get("/BaseType");
 	}
+
+	@Test
+	public void testRelationshipPropertiesOfCollection() {
+
+		final List<String> testOneIds   = new LinkedList<>();
+		final List<String> testThreeIds = new LinkedList<>();
+
+		try (final Tx tx = app.tx()) {
+
+			for (int i=0; i<3; i++) {
+
+				final TestFive testFive = app.create(TestFive.class, "testFive" + i);
+
+				// the last node has no relationships
+				if (i < 2) {
+
+					final TestOne testOne1    = app.create(TestOne.class);
+					final TestOne testOne2    = app.create(TestOne.class);
+					final TestThree testThree = app.create(TestThree.class);
+
+					testFive.setProperty(TestFive.manyToManyTestOnes, Arrays.asList(testOne1, testOne2));
+					testFive.setProperty(TestFive.oneToOneTestThree, testThree);
+
+					testOneIds.add(testOne1.getUuid());
+					testOneIds.add(testOne2.getUuid());
+					testThreeIds.add(testThree.getUuid());
+				}
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		// the relationships of all nodes in the collection are loaded in a batch,
+		// the result must be the same as if they were loaded for each node
+		RestAssured
+			.given()
+				.contentType("application/json; charset=UTF-8")
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(400))
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(401))
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(403))
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(404))
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(422))
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(500))
+
+			.expect()
+				.statusCode(200)
+				.body("result_count",                   equalTo(3))
+				.body("result[0].manyToManyTestOnes",   containsInAnyOrder(testOneIds.get(0), testOneIds.get(1)))
+				.body("result[0].oneToOneTestThree.id", equalTo(testThreeIds.get(0)))
+				.body("result[1].manyToManyTestOnes",   containsInAnyOrder(testOneIds.get(2), testOneIds.get(3)))
+				.body("result[1].oneToOneTestThree.id", equalTo(testThreeIds.get(1)))
+				.body("result[2].manyToManyTestOnes",   hasSize(0))
+				.body("result[2].oneToOneTestThree",    nullValue())
+			.when()
+				.get("/test_fives?sort=name");
+	}
+
+	@Test
+	public void testAddAndRemoveCollectionElementsOnPut() {
+
+		String testFiveId = null;
+		String testOneId1 = null;
+		String testOneId2 = null;
+		String testOneId3 = null;
+		String relId      = null;
+
+		try (final Tx tx = app.tx()) {
+
+			final TestFive testFive = app.create(TestFive.class, "testFive");
+			final TestOne testOne1  = app.create(TestOne.class);
+			final TestOne testOne2  = app.create(TestOne.class);
+			final TestOne testOne3  = app.create(TestOne.class);
+
+			testFive.setProperty(TestFive.manyToManyTestOnes, Arrays.asList(testOne1, testOne2));
+
+			testFiveId = testFive.getUuid();
+			testOneId1 = testOne1.getUuid();
+			testOneId2 = testOne2.getUuid();
+			testOneId3 = testOne3.getUuid();
+			relId      = testFive.getRelationshipTo(new FiveOneManyToMany(), testOne1).getUuid();
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		// an object with "add" and "remove" lists changes the collection instead of replacing it
+		RestAssured
+			.given()
+				.contentType("application/json; charset=UTF-8")
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(400))
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(401))
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(403))
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(404))
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(422))
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(500))
+				.body(" { \"name\": \"changed\", \"manyToManyTestOnes\": { \"add\": [\"" + testOneId3 + "\", \"" + testOneId1 + "\"], \"remove\": [\"" + testOneId2 + "\"] } } ")
+			.expect()
+				.statusCode(200)
+			.when()
+				.put("/test_fives/" + testFiveId);
+
+		RestAssured
+			.given()
+				.contentType("application/json; charset=UTF-8")
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(400))
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(401))
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(403))
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(404))
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(422))
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(500))
+
+			.expect()
+				.statusCode(200)
+				.body("result.name",               equalTo("changed"))
+				.body("result.manyToManyTestOnes", containsInAnyOrder(testOneId1, testOneId3))
+			.when()
+				.get("/test_fives/" + testFiveId);
+
+		try (final Tx tx = app.tx()) {
+
+			final TestFive testFive = app.get(TestFive.class, testFiveId);
+			final TestOne testOne1  = app.get(TestOne.class, testOneId1);
+
+			// the relationship of the element that was already related must not be replaced
+			assertEquals("Existing relationship should not be replaced", relId, testFive.getRelationshipTo(new FiveOneManyToMany(), testOne1).getUuid());
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+	}
 }
@@ -21,9 +21,15 @@ package org.structr.rest.test;
 import com.jayway.restassured.RestAssured;
 import com.jayway.restassured.filter.log.ResponseLoggingFilter;
 import java.text.SimpleDateFormat;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
@@ -372,6 +378,160 @@ public class PagingAndSortingTest extends StructrRestTest {
 
 	}
 
+	/**
+	 * Test streaming of results
+	 */
+	@Test
+	public void test04StreamingPaging() {
+
+		final String resource = "/test_one";
+
+		for (int i=0; i<8; i++) {
+
+			RestAssured.given().contentType("application/json; charset=UTF-8")
+				.body(" { 'name' : 'TestOne-" + i + "', 'anInt' : " + i + ", 'aLong' : " + (i * 10) + " } ")
+				.expect().statusCode(201).when().post(resource);
+		}
+
+		RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(200)
+				.body("result",			hasSize(8))
+				.body("result_count",		equalTo(8))
+
+				.body("result[0]",		isEntity(TestOne.class))
+				.body("result[0].name ",	equalTo("TestOne-0"))
+
+				.body("result[7]",		isEntity(TestOne.class))
+				.body("result[7].name ",	equalTo("TestOne-7"))
+
+			.when()
+				.get(resource + "?sort=name&stream=true");
+
+		RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(200)
+				.body("result",			hasSize(2))
+				.body("result_count",		equalTo(8))
+				.body("page_count",		equalTo(4))
+				.body("page",			equalTo(2))
+				.body("page_size",		equalTo(2))
+
+				.body("result[0]",		isEntity(TestOne.class))
+				.body("result[0].name ",	equalTo("TestOne-2"))
+
+				.body("result[1]",		isEntity(TestOne.class))
+				.body("result[1].name ",	equalTo("TestOne-3"))
+
+			.when()
+				.get(resource + "?sort=name&pageSize=2&page=2&stream=true");
+
+		// negative page numbers are not streamed
+		RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(200)
+				.body("result",			hasSize(2))
+				.body("result_count",		equalTo(8))
+
+				.body("result[0]",		isEntity(TestOne.class))
+				.body("result[0].name ",	equalTo("TestOne-6"))
+
+				.body("result[1]",		isEntity(TestOne.class))
+				.body("result[1].name ",	equalTo("TestOne-7"))
+
+			.when()
+				.get(resource + "?sort=name&pageSize=2&page=-1&stream=true");
+	}
+
+	@Test
+	public void test05PagingWithDuplicateSortValues() {
+
+		final String resource       = "/test_one";
+		final List<String> expected = new LinkedList<>();
+
+		for (int i=0; i<20; i++) {
+
+			RestAssured.given().contentType("application/json; charset=UTF-8")
+				.body(" { 'name' : 'TestOne-" + (i < 10 ? "0" : "") + i + "', 'anInt' : " + (i % 4) + " } ")
+				.expect().statusCode(201).when().post(resource);
+		}
+
+		// anInt descending, name ascending as secondary sort key
+		for (int anInt=3; anInt>=0; anInt--) {
+
+			for (int i=anInt; i<20; i+=4) {
+				expected.add("TestOne-" + (i < 10 ? "0" : "") + i);
+			}
+		}
+
+		for (final String stream : new String[] { "false", "true" }) {
+
+			final List<String> names = new LinkedList<>();
+
+			for (int page=1; page<=4; page++) {
+
+				names.addAll(RestAssured
+
+					.given()
+						.contentType("application/json; charset=UTF-8")
+					.expect()
+						.statusCode(200)
+						.body("result",       hasSize(5))
+						.body("result_count", equalTo(20))
+					.when()
+						.get(resource + "?sort=anInt,name&order=desc,asc&pageSize=5&page=" + page + "&stream=" + stream)
+					.then()
+						.extract()
+						.path("result.name"));
+			}
+
+			assertEquals("Invalid sort order with secondary sort key", expected, names);
+		}
+
+		// pages of a sort key with duplicate values must neither overlap nor miss results
+		for (final String stream : new String[] { "false", "true" }) {
+
+			final Set<String> names = new LinkedHashSet<>();
+			int lastValue           = -1;
+
+			for (int page=1; page<=7; page++) {
+
+				final List<Map<String, Object>> result = RestAssured
+
+					.given()
+						.contentType("application/json; charset=UTF-8")
+					.expect()
+						.statusCode(200)
+					.when()
+						.get(resource + "?sort=anInt&pageSize=3&page=" + page + "&stream=" + stream)
+					.then()
+						.extract()
+						.path("result");
+
+				for (final Map<String, Object> entry : result) {
+
+					final int value = (Integer)entry.get("anInt");
+
+					assertTrue("Invalid sort order", value >= lastValue);
+					assertTrue("Result is contained in more than one page", names.add((String)entry.get("name")));
+
+					lastValue = value;
+				}
+			}
+
+			assertEquals("Invalid number of results in all pages", 20, names.size());
+		}
+	}
+
 	@Test
 	public void testRelationshipResourcePagingOnCollectionResource() {
 
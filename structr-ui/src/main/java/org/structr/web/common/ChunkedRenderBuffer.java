@@ -0,0 +1,316 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Render buffer that encodes the rendered output to UTF-8 into fixed-size
+ * byte chunks, which are taken from a shared pool and returned to it after
+ * they were written.
+ *
+ * In synchronous mode, full chunks are written to an output stream by the
+ * rendering thread. In asynchronous mode, full chunks are queued for a
+ * writer in another thread. The queue is bounded, so the rendering thread
+ * blocks when the client reads slower than the page is rendered. A
+ * listener is notified whenever a chunk is queued.
+ */
+public class ChunkedRenderBuffer extends AsyncBuffer {
+
+	private static final int CHUNK_SIZE = 16384;
+	private static final int MAX_QUEUED = 16;
+	private static final int MAX_POOLED = 256;
+
+	private static final Queue<ByteBuffer> pool = new ConcurrentLinkedQueue<>();
+	private static final AtomicInteger poolSize = new AtomicInteger();
+
+	private final CharsetEncoder encoder     = StandardCharsets.UTF_8.newEncoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+	private BlockingQueue<ByteBuffer> queue  = null;
+	private OutputStream out                 = null;
+	private Runnable listener                = null;
+	private ByteBuffer current               = null;
+	private volatile boolean finished        = false;
+	private volatile boolean aborted         = false;
+	private StringBuilder captured           = null;
+	private IOException error                = null;
+
+	/**
+	 * Creates a buffer that writes full chunks to the given output stream.
+	 *
+	 * @param out
+	 */
+	public ChunkedRenderBuffer(final OutputStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * Creates a buffer that queues full chunks for another thread and
+	 * notifies the given listener.
+	 *
+	 * @param listener
+	 */
+	public ChunkedRenderBuffer(final Runnable listener) {
+
+		this.queue    = new ArrayBlockingQueue<>(MAX_QUEUED);
+		this.listener = listener;
+	}
+
+	@Override
+	public AsyncBuffer append(final String s) {
+
+		if (s != null && !aborted) {
+
+			if (captured != null) {
+				captured.append(s);
+			}
+
+			encode(CharBuffer.wrap(s), false);
+		}
+
+		return this;
+	}
+
+	/**
+	 * Keeps a copy of all output that is appended from now on, e.g. to
+	 * store it in the render cache after the page was rendered.
+	 */
+	public void captureOutput() {
+		captured = new StringBuilder();
+	}
+
+	/**
+	 * Returns the output that was appended since {@link #captureOutput()}
+	 * was called, or null if the output was not captured.
+	 *
+	 * @return the captured output or null
+	 */
+	public String getCapturedOutput() {
+		return captured != null ? captured.toString() : null;
+	}
+
+	/**
+	 * Encodes any pending characters and hands the last, partially filled
+	 * chunk to the output. Must be called by the rendering thread after
+	 * the page was rendered, or when rendering failed.
+	 *
+	 * @throws IOException if a chunk could not be written in synchronous mode
+	 */
+	public void finish() throws IOException {
+
+		if (!aborted) {
+
+			encode(CharBuffer.allocate(0), true);
+
+			while (encoder.flush(current()).isOverflow()) {
+				emit();
+			}
+
+			if (current != null && current.position() > 0) {
+				emit();
+			}
+
+		} else {
+
+			recycle(current);
+			current = null;
+		}
+
+		finished = true;
+
+		if (listener != null) {
+			listener.run();
+		}
+
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	/**
+	 * Discards all pending and future output, e.g. because the client has
+	 * closed the connection. The rendering thread does not block anymore.
+	 */
+	public void abort() {
+
+		aborted = true;
+
+		if (queue != null) {
+
+			ByteBuffer chunk = null;
+
+			while ((chunk = queue.poll()) != null) {
+				recycle(chunk);
+			}
+		}
+	}
+
+	/**
+	 * Indicates whether the output was discarded.
+	 *
+	 * @return whether this buffer was aborted
+	 */
+	public boolean isAborted() {
+		return aborted;
+	}
+
+	/**
+	 * Returns the next full chunk, ready to be read, or null if no chunk is
+	 * available at the moment.
+	 *
+	 * @return the next chunk or null
+	 */
+	public ByteBuffer poll() {
+		return queue.poll();
+	}
+
+	/**
+	 * Indicates whether all chunks have been handed to the output.
+	 *
+	 * @return whether rendering has finished and no chunk is queued
+	 */
+	public boolean isFinished() {
+		return finished && queue.isEmpty();
+	}
+
+	/**
+	 * Returns a chunk to the shared pool after it was written.
+	 *
+	 * @param chunk
+	 */
+	public static void recycle(final ByteBuffer chunk) {
+
+		if (chunk != null) {
+
+			if (poolSize.incrementAndGet() <= MAX_POOLED) {
+
+				chunk.clear();
+				pool.add(chunk);
+
+			} else {
+
+				poolSize.decrementAndGet();
+			}
+		}
+	}
+
+	// ----- private methods -----
+	private void encode(final CharBuffer chars, final boolean endOfInput) {
+
+		while (true) {
+
+			final CoderResult result = encoder.encode(chars, current(), endOfInput);
+			if (!result.isOverflow()) {
+
+				break;
+			}
+
+			emit();
+		}
+	}
+
+	private ByteBuffer current() {
+
+		if (current == null) {
+
+			current = pool.poll();
+
+			if (current != null) {
+
+				poolSize.decrementAndGet();
+
+			} else {
+
+				current = ByteBuffer.allocate(CHUNK_SIZE);
+			}
+		}
+
+		return current;
+	}
+
+	private void emit() {
+
+		final ByteBuffer chunk = current;
+
+		current = null;
+		chunk.flip();
+
+		if (aborted || error != null) {
+
+			recycle(chunk);
+
+		} else if (out != null) {
+
+			try {
+
+				out.write(chunk.array(), chunk.arrayOffset(), chunk.limit());
+
+			} catch (IOException ioex) {
+
+				// remember the error, rendering is not interrupted
+				error = ioex;
+
+			} finally {
+
+				recycle(chunk);
+			}
+
+		} else {
+
+			boolean queued = false;
+
+			try {
+
+				// block until the writer has taken a chunk from the queue
+				while (!aborted && !(queued = queue.offer(chunk, 1, TimeUnit.SECONDS))) {}
+
+			} catch (InterruptedException iex) {
+
+				Thread.currentThread().interrupt();
+				aborted = true;
+			}
+
+			if (!queued) {
+
+				recycle(chunk);
+
+			} else if (aborted) {
+
+				// the writer is gone, release the queued chunks
+				abort();
+
+			} else {
+
+				listener.run();
+			}
+		}
+	}
+}
@@ -20,15 +20,20 @@ package org.structr.web.common;
 
 import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 import javax.activation.MimetypesFileTypeMap;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -131,9 +136,18 @@ public class FileHelper {
 	public static <T extends org.structr.web.entity.FileBase> T createFile(final SecurityContext securityContext, final InputStream fileStream, final String contentType, final Class<T> fileType, final String name)
 		throws FrameworkException, IOException {
 
-		final byte[] data = IOUtils.toByteArray(fileStream);
-		return createFile(securityContext, data, contentType, fileType, name);
+		PropertyMap props = new PropertyMap();
+
+		props.put(AbstractNode.name, name);
+
+		T newFile = (T) StructrApp.getInstance(securityContext).create(fileType, props);
+
+		setFileData(newFile, fileStream, contentType);
 
+		// schedule indexing
+		newFile.notifyUploadCompletion();
+
+		return newFile;
 	}
 
 	/**
@@ -211,13 +225,25 @@ public class FileHelper {
 	 */
 	public static void setFileData(final FileBase file, final byte[] fileData, final String contentType) throws FrameworkException, IOException {
 
-		FileHelper.writeToFile(file, fileData);
+		setFileData(file, new ByteArrayInputStream(fileData), contentType);
+	}
+
+	/**
+	 * Write the data from the given stream to the given file node and set
+	 * checksum and size. The data is written directly to the file on disk,
+	 * checksum, size and content type are determined while writing.
+	 *
+	 * @param file
+	 * @param fileStream
+	 * @param contentType if null, try to auto-detect content type
+	 * @throws FrameworkException
+	 * @throws IOException
+	 */
+	public static void setFileData(final FileBase file, final InputStream fileStream, final String contentType) throws FrameworkException, IOException {
 
-		final PropertyMap map = new PropertyMap();
+		final java.io.File fileOnDisk = assignFileOnDisk(file);
+		final PropertyMap map         = writeToDisk(fileOnDisk, fileStream, file.getProperty(AbstractNode.name), contentType);
 
-		map.put(FileBase.contentType, contentType != null ? contentType : getContentMimeType(file));
-		map.put(FileBase.checksum, FileHelper.getChecksum(file));
-		map.put(FileBase.size, FileHelper.getSize(file));
 		map.put(FileBase.version, 1);
 
 		file.setProperties(file.getSecurityContext(), map);
@@ -339,11 +365,15 @@ public class FileHelper {
 	 * @param inStream
 	 * @throws FrameworkException
 	 * @throws IOException
+	 * @return the file on disk
 	 */
-	public static void writeToFile(final org.structr.dynamic.File fileNode, final InputStream inStream) throws FrameworkException, IOException {
+	public static File writeToFile(final FileBase fileNode, final InputStream inStream) throws FrameworkException, IOException {
 
-		writeToFile(fileNode, IOUtils.toByteArray(inStream));
+		final java.io.File fileOnDisk = assignFileOnDisk(fileNode);
 
+		writeToDisk(fileOnDisk, inStream, fileNode.getProperty(AbstractNode.name), null);
+
+		return fileOnDisk;
 	}
 
 	/**
@@ -358,6 +388,24 @@ public class FileHelper {
 	 */
 	public static File writeToFile(final FileBase fileNode, final byte[] data) throws FrameworkException, IOException {
 
+		final java.io.File fileOnDisk = assignFileOnDisk(fileNode);
+
+		FileUtils.writeByteArrayToFile(fileOnDisk, data);
+
+		return fileOnDisk;
+	}
+
+	/**
+	 * Assign a location on disk to the given file node, if it does not
+	 * have one yet, and return the file on disk. The parent directories
+	 * of the file are created.
+	 *
+	 * @param fileNode
+	 * @return the file on disk
+	 * @throws FrameworkException
+	 */
+	public static File assignFileOnDisk(final FileBase fileNode) throws FrameworkException {
+
 		final PropertyMap properties = new PropertyMap();
 
 		String id = fileNode.getProperty(GraphObject.id);
@@ -380,10 +428,41 @@ public class FileHelper {
 		final java.io.File fileOnDisk = new java.io.File(filesPath + "/" + fileNode.getRelativeFilePath());
 
 		fileOnDisk.getParentFile().mkdirs();
-		FileUtils.writeByteArrayToFile(fileOnDisk, data);
 
 		return fileOnDisk;
+	}
+
+	/**
+	 * Write the data from the given stream to the given file on disk and
+	 * return content type, checksum and size of the data. The values are
+	 * determined while the data is written, so the file is not read again.
+	 * The stream is not closed.
+	 *
+	 * @param fileOnDisk
+	 * @param inStream
+	 * @param name the file name, used to determine the content type
+	 * @param contentType if null, try to auto-detect content type
+	 * @return a property map with content type, checksum and size
+	 * @throws IOException
+	 */
+	public static PropertyMap writeToDisk(final java.io.File fileOnDisk, final InputStream inStream, final String name, final String contentType) throws IOException {
 
+		final InputStream buffered = new BufferedInputStream(inStream);
+		final PropertyMap map      = new PropertyMap();
+
+		// content type detection resets the stream after reading the first bytes
+		map.put(FileBase.contentType, contentType != null ? contentType : getContentMimeType(buffered, name));
+
+		final CheckedInputStream checked = new CheckedInputStream(buffered, new CRC32());
+
+		try (final OutputStream out = new FileOutputStream(fileOnDisk)) {
+
+			map.put(FileBase.size, IOUtils.copyLarge(checked, out));
+		}
+
+		map.put(FileBase.checksum, checked.getChecksum().getValue());
+
+		return map;
 	}
 
 	//~--- get methods ----------------------------------------------------
@@ -417,6 +496,32 @@ public class FileHelper {
 	 */
 	public static String getContentMimeType(final java.io.File file, final String name) throws IOException {
 
+		// try name first, if not null
+		if (name != null) {
+
+			final String mimeType = mimeTypeMap.getContentType(name);
+			if (mimeType != null && !UNKNOWN_MIME_TYPE.equals(mimeType)) {
+				return mimeType;
+			}
+		}
+
+		try (final InputStream is = new BufferedInputStream(new FileInputStream(file))) {
+
+			return getContentMimeType(is, null);
+		}
+	}
+
+	/**
+	 * Return mime type of the given stream. The stream must support mark
+	 * and reset, it is reset to its original position after detection.
+	 *
+	 * @param inStream
+	 * @param name
+	 * @return content type
+	 * @throws java.io.IOException
+	 */
+	public static String getContentMimeType(final InputStream inStream, final String name) throws IOException {
+
 		String mimeType;
 
 		// try name first, if not null
@@ -427,7 +532,7 @@ public class FileHelper {
 			}
 		}
 
-		final MediaType mediaType = new DefaultDetector().detect(new BufferedInputStream(new FileInputStream(file)), new Metadata());
+		final MediaType mediaType = new DefaultDetector().detect(inStream, new Metadata());
 
 		mimeType = mediaType.toString();
 
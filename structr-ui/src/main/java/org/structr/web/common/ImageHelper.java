@@ -78,8 +78,12 @@ public abstract class ImageHelper extends FileHelper {
 	public static Image createImage(final SecurityContext securityContext, final InputStream imageStream, final String contentType, final Class<? extends Image> imageType, final String name, final boolean markAsThumbnail)
 		throws FrameworkException, IOException {
 
-		return createImageNode(securityContext, IOUtils.toByteArray(imageStream), contentType, imageType, name, markAsThumbnail);
+		final Image newImage = createImageNode(securityContext, null, contentType, imageType, name, markAsThumbnail);
 
+		// stream the image data to disk without buffering it in memory
+		setFileData(newImage, imageStream, contentType);
+
+		return newImage;
 	}
 
 	/**
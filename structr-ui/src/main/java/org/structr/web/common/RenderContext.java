@@ -19,6 +19,7 @@
 package org.structr.web.common;
 
 import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.Map;
 import java.util.Stack;
 import javax.servlet.http.HttpServletRequest;
@@ -36,6 +37,7 @@ import org.structr.core.property.PropertyKey;
 import org.structr.rest.ResourceProvider;
 import org.structr.schema.action.ActionContext;
 import org.structr.schema.action.Function;
+import org.structr.web.common.RenderedOutputCache.Dependencies;
 import org.structr.web.entity.dom.DOMNode;
 import org.structr.web.entity.dom.Page;
 import org.structr.web.entity.html.relation.ResourceLink;
@@ -67,6 +69,7 @@ public class RenderContext extends ActionContext {
 	private Result result                              = null;
 	private boolean anyChildNodeCreatesNewLine         = false;
 	private boolean indentHtml                         = true;
+	private LinkedList<Dependencies> dependencies      = new LinkedList<>();
 
 	public enum EditMode {
 
@@ -106,6 +109,7 @@ public class RenderContext extends ActionContext {
 		this.anyChildNodeCreatesNewLine = other.anyChildNodeCreatesNewLine;
 		this.locale = other.locale;
 		this.indentHtml = other.indentHtml;
+		this.dependencies = other.dependencies;
 
 	}
 
@@ -137,6 +141,7 @@ public class RenderContext extends ActionContext {
 
 	public void setDetailsDataObject(GraphObject detailsDataObject) {
 		this.detailsDataObject = detailsDataObject;
+		addDependency(detailsDataObject);
 	}
 
 	public GraphObject getDetailsDataObject() {
@@ -145,6 +150,7 @@ public class RenderContext extends ActionContext {
 
 	public void setDataObject(GraphObject currentDataObject) {
 		this.currentDataObject = currentDataObject;
+		addDependency(currentDataObject);
 	}
 
 	public GraphObject getDataObject() {
@@ -510,6 +516,40 @@ public class RenderContext extends ActionContext {
 		return value;
 	}
 
+	/**
+	 * Starts recording the objects the rendered output depends on, see
+	 * {@link RenderedOutputCache}. Recordings can be nested, all objects
+	 * are added to all active recordings.
+	 */
+	public void startRecordingDependencies() {
+		dependencies.push(new Dependencies());
+	}
+
+	public Dependencies stopRecordingDependencies() {
+		return dependencies.pop();
+	}
+
+	public void addDependency(final GraphObject obj) {
+
+		for (final Dependencies recording : dependencies) {
+			recording.add(obj);
+		}
+	}
+
+	public void addQueryDependency(final Iterable<GraphObject> results) {
+
+		for (final Dependencies recording : dependencies) {
+			recording.addQueryResults(results);
+		}
+	}
+
+	public void addDependencies(final Dependencies other) {
+
+		for (final Dependencies recording : dependencies) {
+			recording.addAll(other);
+		}
+	}
+
 	// ----- private methods -----
 	private void readConfigParameters () {
 		indentHtml = Settings.HtmlIndentation.getValue();
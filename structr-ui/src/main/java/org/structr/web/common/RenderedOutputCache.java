@@ -0,0 +1,366 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.servlet.http.HttpServletRequest;
+import org.structr.api.config.Settings;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.StructrTransactionListener;
+import org.structr.core.TransactionSource;
+import org.structr.core.entity.SchemaReloadingNode;
+import org.structr.core.graph.ModificationEvent;
+import org.structr.web.common.RenderContext.EditMode;
+import org.structr.web.entity.dom.DOMNode;
+
+/**
+ * Server-side cache for the rendered output of pages and DOM subtrees.
+ *
+ * Each entry records the UUIDs of the DOM nodes and data objects that were
+ * used to render it, and the types of the objects returned by the queries
+ * of repeater elements. An entry is removed when one of these objects, or
+ * an object of one of these types, is modified in a committed transaction.
+ * Data that is accessed from scripts only is not tracked, which is why each
+ * entry also has a maximum age.
+ *
+ * The size of all entries is limited by {@link Settings#HtmlRenderCacheSize}
+ * (in megabytes), the least recently used entries are evicted first.
+ */
+public class RenderedOutputCache implements StructrTransactionListener {
+
+	private static final RenderedOutputCache instance = new RenderedOutputCache();
+
+	private final Map<String, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long generation                       = 0L;
+	private long size                             = 0L;
+
+	private RenderedOutputCache() {}
+
+	public static RenderedOutputCache getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Indicates whether the rendered output in the given context can be
+	 * cached at all.
+	 *
+	 * @param renderContext
+	 * @return whether the output can be cached
+	 */
+	public static boolean isCacheable(final RenderContext renderContext) {
+		return Settings.HtmlRenderCacheEnabled.getValue() && EditMode.NONE.equals(getEditMode(renderContext)) && renderContext.getRequest() != null;
+	}
+
+	/**
+	 * Creates the cache key for the given DOM node in the given render
+	 * context. The key consists of the request path, the query parameters,
+	 * the locale, the edit mode, the current user and data objects and the
+	 * rendering depth.
+	 *
+	 * @param renderContext
+	 * @param node
+	 * @param depth
+	 * @return the key
+	 */
+	public static String getKey(final RenderContext renderContext, final DOMNode node, final int depth) {
+
+		final HttpServletRequest request      = renderContext.getRequest();
+		final SecurityContext securityContext = renderContext.getSecurityContext();
+		final StringBuilder buf               = new StringBuilder(node.getUuid());
+
+		buf.append("|").append(depth);
+		buf.append("|").append(request.getPathInfo());
+		buf.append("|").append(renderContext.getLocale());
+		buf.append("|").append(getEditMode(renderContext));
+		buf.append("|").append(getUuid(securityContext != null ? securityContext.getUser(false) : null));
+		buf.append("|").append(getUuid(renderContext.getDetailsDataObject()));
+		buf.append("|").append(getUuid(renderContext.getDataObject()));
+
+		// sorted query parameters
+		final Map<String, String[]> parameters = new TreeMap<>(request.getParameterMap());
+		for (final Entry<String, String[]> entry : parameters.entrySet()) {
+
+			buf.append("|").append(entry.getKey());
+
+			for (final String value : entry.getValue()) {
+				buf.append("=").append(value);
+			}
+		}
+
+		return buf.toString();
+	}
+
+	public synchronized CacheEntry get(final String key) {
+
+		final CacheEntry entry = entries.get(key);
+		if (entry != null) {
+
+			if (entry.isExpired()) {
+
+				remove(key);
+				return null;
+			}
+		}
+
+		return entry;
+	}
+
+	public synchronized long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Stores the given output if it fits in the configured memory budget,
+	 * evicting the least recently used entries if necessary. Output that
+	 * was rendered before the last commit (identified by the given
+	 * generation) is ignored, because it might be based on outdated data.
+	 *
+	 * @param generation the generation at the start of the rendering
+	 * @param key
+	 * @param output
+	 * @param dependencies
+	 * @param maxAge the maximum age of the entry in seconds
+	 */
+	public synchronized void put(final long generation, final String key, final String output, final Dependencies dependencies, final int maxAge) {
+
+		final long maxSize     = Settings.HtmlRenderCacheSize.getValue() * 1024L * 1024L;
+		final CacheEntry entry = new CacheEntry(output, dependencies, System.currentTimeMillis() + maxAge * 1000L);
+
+		if (generation == this.generation && maxAge > 0 && entry.getSize() <= maxSize) {
+
+			remove(key);
+
+			entries.put(key, entry);
+			size += entry.getSize();
+
+			// evict least recently used entries
+			final Iterator<CacheEntry> iterator = entries.values().iterator();
+			while (size > maxSize && iterator.hasNext()) {
+
+				size -= iterator.next().getSize();
+				iterator.remove();
+			}
+		}
+	}
+
+	public synchronized void clear() {
+
+		generation++;
+
+		entries.clear();
+		size = 0L;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	// ----- interface StructrTransactionListener -----
+	@Override
+	public void beforeCommit(final SecurityContext securityContext, final Collection<ModificationEvent> modificationEvents, final TransactionSource source) throws FrameworkException {
+	}
+
+	@Override
+	public void afterCommit(final SecurityContext securityContext, final Collection<ModificationEvent> modificationEvents, final TransactionSource source) {
+
+		final Set<String> uuids = new HashSet<>();
+		final Set<Class> types  = new HashSet<>();
+
+		if (modificationEvents.isEmpty()) {
+			return;
+		}
+
+		for (final ModificationEvent event : modificationEvents) {
+
+			final GraphObject obj = event.getGraphObject();
+
+			// schema changes can affect everything
+			if (obj instanceof SchemaReloadingNode) {
+
+				clear();
+				return;
+			}
+
+			uuids.add(event.getUuid());
+
+			if (event.isNode() && obj != null && !(obj instanceof DOMNode)) {
+				types.add(obj.getClass());
+			}
+		}
+
+		synchronized (this) {
+
+			generation++;
+
+			if (!entries.isEmpty()) {
+
+				final Iterator<CacheEntry> iterator = entries.values().iterator();
+				while (iterator.hasNext()) {
+
+					final CacheEntry entry = iterator.next();
+					if (entry.getDependencies().isAffectedBy(uuids, types)) {
+
+						size -= entry.getSize();
+						iterator.remove();
+					}
+				}
+			}
+		}
+	}
+
+	// ----- private methods -----
+	private void remove(final String key) {
+
+		final CacheEntry entry = entries.remove(key);
+		if (entry != null) {
+
+			size -= entry.getSize();
+		}
+	}
+
+	private static EditMode getEditMode(final RenderContext renderContext) {
+
+		final SecurityContext securityContext = renderContext.getSecurityContext();
+
+		return renderContext.getEditMode(securityContext != null ? securityContext.getUser(false) : null);
+	}
+
+	private static String getUuid(final GraphObject obj) {
+		return obj != null ? obj.getUuid() : null;
+	}
+
+	// ----- nested classes -----
+	public static class CacheEntry {
+
+		private Dependencies dependencies = null;
+		private String output             = null;
+		private long expires              = 0L;
+
+		public CacheEntry(final String output, final Dependencies dependencies, final long expires) {
+
+			this.dependencies = dependencies;
+			this.output       = output;
+			this.expires      = expires;
+		}
+
+		public String getOutput() {
+			return output;
+		}
+
+		public Dependencies getDependencies() {
+			return dependencies;
+		}
+
+		public boolean isExpired() {
+			return System.currentTimeMillis() > expires;
+		}
+
+		public long getSize() {
+
+			// two bytes per character plus the dependencies
+			return output.length() * 2L + dependencies.uuids.size() * 80L;
+		}
+	}
+
+	/**
+	 * The objects and types the rendered output of a page or DOM subtree
+	 * depends on.
+	 */
+	public static class Dependencies {
+
+		private final Set<String> uuids = new HashSet<>();
+		private final Set<Class> types  = new HashSet<>();
+		private boolean anyType         = false;
+
+		public void add(final GraphObject obj) {
+
+			if (obj != null) {
+				uuids.add(obj.getUuid());
+			}
+		}
+
+		/**
+		 * Adds the types of the given query results. An empty result makes
+		 * the output depend on the creation of objects of any type.
+		 *
+		 * @param results
+		 */
+		public void addQueryResults(final Iterable<GraphObject> results) {
+
+			boolean empty = true;
+
+			if (results != null) {
+
+				for (final GraphObject obj : results) {
+
+					if (obj != null) {
+
+						types.add(obj.getClass());
+						empty = false;
+					}
+				}
+			}
+
+			anyType |= empty;
+		}
+
+		public void addAll(final Dependencies other) {
+
+			uuids.addAll(other.uuids);
+			types.addAll(other.types);
+
+			anyType |= other.anyType;
+		}
+
+		public boolean isAffectedBy(final Set<String> modifiedUuids, final Set<Class> modifiedTypes) {
+
+			if (anyType && !modifiedTypes.isEmpty()) {
+				return true;
+			}
+
+			for (final Class modifiedType : modifiedTypes) {
+
+				for (final Class type : types) {
+
+					if (type.isAssignableFrom(modifiedType)) {
+						return true;
+					}
+				}
+			}
+
+			for (final String uuid : modifiedUuids) {
+
+				if (uuids.contains(uuid)) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+	}
+}
@@ -67,6 +67,7 @@ public class UiResourceProvider implements ResourceProvider {
 		resourceMap.put(Pattern.compile(PropertyView.Html), ViewFilterResource.class);        // html attributes view
 
 		resourceMap.put(Pattern.compile("log"), LogResource.class);                           // log resource
+		resourceMap.put(Pattern.compile("_changelog"), ChangelogResource.class);              // changelog of a single entity
 		resourceMap.put(Pattern.compile("resolver"), EntityResolverResource.class);		// resolves [] of UUIDs to complete result
 
 		resourceMap.put(Pattern.compile("[a-zA-Z]+"), MaintenanceParameterResource.class);    // maintenance parameter
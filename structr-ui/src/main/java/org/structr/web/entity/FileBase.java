@@ -36,6 +36,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
+import java.util.zip.CRC32;
 import javax.xml.stream.XMLStreamException;
 import org.apache.chemistry.opencmis.commons.data.AllowableActions;
 import org.apache.chemistry.opencmis.commons.enums.BaseTypeId;
@@ -221,6 +222,14 @@ public class FileBase extends AbstractFile implements Indexable, Linkable, JavaS
 
 		}
 
+		try {
+
+			StructrApp.getInstance(securityContext).getFulltextIndexer().removeFromFulltextIndex(this);
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("Unable to remove {} from fulltext index: {}", getUuid(), fex.getMessage());
+		}
 	}
 
 	@Override
@@ -486,7 +495,33 @@ public class FileBase extends AbstractFile implements Indexable, Linkable, JavaS
 				// Return file output stream and save checksum and size after closing
 				final FileOutputStream fos = new FileOutputStream(fileOnDisk, append) {
 
-					private boolean closed = false;
+					// checksum and size of the written data, valid only if the file was not appended to
+					private final CRC32 crc = new CRC32();
+					private boolean closed  = false;
+					private long written    = 0L;
+
+					@Override
+					public void write(final int b) throws IOException {
+
+						super.write(b);
+
+						crc.update(b);
+						written++;
+					}
+
+					@Override
+					public void write(final byte[] b) throws IOException {
+						write(b, 0, b.length);
+					}
+
+					@Override
+					public void write(final byte[] b, final int off, final int len) throws IOException {
+
+						super.write(b, off, len);
+
+						crc.update(b, off, len);
+						written += len;
+					}
 
 					@Override
 					public void close() throws IOException {
@@ -502,8 +537,8 @@ public class FileBase extends AbstractFile implements Indexable, Linkable, JavaS
 							final String _contentType = FileHelper.getContentMimeType(FileBase.this);
 
 							final PropertyMap changedProperties = new PropertyMap();
-							changedProperties.put(checksum, FileHelper.getChecksum(FileBase.this));
-							changedProperties.put(size, FileHelper.getSize(FileBase.this));
+							changedProperties.put(checksum, append ? FileHelper.getChecksum(FileBase.this) : crc.getValue());
+							changedProperties.put(size, append ? FileHelper.getSize(FileBase.this) : written);
 							changedProperties.put(contentType, _contentType);
 
 							if (StringUtils.startsWith(_contentType, "image") || ImageHelper.isImageType(getProperty(name))) {
@@ -48,6 +48,8 @@ public class Comment extends Content implements org.w3c.dom.Comment, NonIndexed
 
 		final String _content = getProperty(content);
 
+		renderContext.addDependency(this);
+
 		// Avoid rendering existing @structr comments since those comments are
 		// created depending on the visiblity settings of individual nodes. If
 		// those comments are rendered, there will be duplicates in a round-
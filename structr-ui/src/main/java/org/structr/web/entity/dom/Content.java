@@ -90,7 +90,7 @@ public class Content extends DOMNode implements Text, NonIndexed, Favoritable {
 
 	public static final org.structr.common.View uiView                                   = new org.structr.common.View(Content.class, PropertyView.Ui,
 		content, contentType, parent, pageId, syncedNodes, sharedComponent, sharedComponentConfiguration, dataKey, restQuery, cypherQuery, xpathQuery, functionQuery,
-		hideOnDetail, hideOnIndex, showForLocales, hideForLocales, showConditions, hideConditions, isContent, isDOMNode, isFavoritable
+		hideOnDetail, hideOnIndex, showForLocales, hideForLocales, showConditions, hideConditions, renderCacheSeconds, isContent, isDOMNode, isFavoritable
 	);
 
 	public static final org.structr.common.View publicView                               = new org.structr.common.View(Content.class, PropertyView.Public,
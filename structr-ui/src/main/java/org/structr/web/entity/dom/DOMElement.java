@@ -189,7 +189,7 @@ public class DOMElement extends DOMNode implements Element, NamedNodeMap, NonInd
 
 	public static final org.structr.common.View uiView = new org.structr.common.View(DOMElement.class, PropertyView.Ui, name, tag, pageId, path, parent, children, childrenIds, owner,
 		restQuery, cypherQuery, xpathQuery, functionQuery, partialUpdateKey, dataKey, syncedNodes, sharedComponent, sharedComponentConfiguration,
-		isDOMNode, renderDetails, hideOnIndex, hideOnDetail, showForLocales, hideForLocales, showConditions, hideConditions,
+		isDOMNode, renderDetails, hideOnIndex, hideOnDetail, showForLocales, hideForLocales, showConditions, hideConditions, renderCacheSeconds,
 		_reload, _confirm, _appendId, _action, _attributes, _attr, _fieldName, _hide, _rawValue, _placeholder, _customOptionsQuery, _optionsKey, _returnURI, _editClass, _type, dataStructrIdProperty, _class, _id
 	);
 
@@ -406,6 +406,9 @@ public class DOMElement extends DOMNode implements Element, NamedNodeMap, NonInd
 						if (_syncedNode != null) {
 
 							rels.addAll(_syncedNode.getChildRelationships());
+
+							// the rendered output depends on the children of the shared component
+							renderContext.addDependency(_syncedNode);
 						}
 					}
 
@@ -71,6 +71,9 @@ import org.structr.web.common.AsyncBuffer;
 import org.structr.web.common.GraphDataSource;
 import org.structr.web.common.RenderContext;
 import org.structr.web.common.RenderContext.EditMode;
+import org.structr.web.common.RenderedOutputCache;
+import org.structr.web.common.RenderedOutputCache.CacheEntry;
+import org.structr.web.common.RenderedOutputCache.Dependencies;
 import org.structr.web.common.StringRenderBuffer;
 import org.structr.web.datasource.CypherGraphDataSource;
 import org.structr.web.datasource.FunctionDataSource;
@@ -139,6 +142,7 @@ public abstract class DOMNode extends LinkedTreeNode<DOMChildren, DOMSiblings, D
 	public static final Property<String> restQuery                    = new StringProperty("restQuery").category(QUERY_CATEGORY);
 	public static final Property<String> functionQuery                = new StringProperty("functionQuery").category(QUERY_CATEGORY);
 	public static final Property<Boolean> renderDetails               = new BooleanProperty("renderDetails").category(QUERY_CATEGORY);
+	public static final Property<Integer> renderCacheSeconds           = new IntProperty("renderCacheSeconds").category(PAGE_CATEGORY).hint("If set, the rendered output of this element is cached on the server for the given number of seconds, or until one of the elements or data objects it depends on is modified.");
 
 	public static final Property<List<DOMNode>> syncedNodes           = new EndNodes("syncedNodes", Sync.class, new PropertyNotion(id)).category(PAGE_CATEGORY);
 	public static final Property<DOMNode> sharedComponent             = new StartNode("sharedComponent", Sync.class, new PropertyNotion(id)).category(PAGE_CATEGORY);
@@ -169,7 +173,7 @@ public abstract class DOMNode extends LinkedTreeNode<DOMChildren, DOMSiblings, D
 	public static final Property<Integer> domSortPosition             = new IntProperty("domSortPosition").category(PAGE_CATEGORY);
 
 	public static final Property[] rawProps = new Property[] {
-		dataKey, restQuery, cypherQuery, xpathQuery, functionQuery, hideOnIndex, hideOnDetail, showForLocales, hideForLocales, showConditions, hideConditions
+		dataKey, restQuery, cypherQuery, xpathQuery, functionQuery, hideOnIndex, hideOnDetail, showForLocales, hideForLocales, showConditions, hideConditions, renderCacheSeconds
 	};
 
 	private static final Set<PropertyKey> cloneBlacklist = new LinkedHashSet<>(Arrays.asList(new Property[] {
@@ -308,6 +312,70 @@ public abstract class DOMNode extends LinkedTreeNode<DOMChildren, DOMSiblings, D
 			return;
 		}
 
+		final Integer cacheSeconds = getProperty(renderCacheSeconds);
+		if (cacheSeconds != null && cacheSeconds > 0 && RenderedOutputCache.isCacheable(renderContext)) {
+
+			renderCached(renderContext, depth, cacheSeconds);
+
+		} else {
+
+			renderUncached(renderContext, depth);
+		}
+	}
+
+	/**
+	 * Render the node from the rendered output cache, or render it and
+	 * store the output in the cache.
+	 *
+	 * @param renderContext
+	 * @param depth
+	 * @param maxAge the maximum age of the cached output in seconds
+	 * @throws FrameworkException
+	 */
+	private void renderCached(final RenderContext renderContext, final int depth, final int maxAge) throws FrameworkException {
+
+		final RenderedOutputCache cache = RenderedOutputCache.getInstance();
+		final String key                = RenderedOutputCache.getKey(renderContext, this, depth);
+		final CacheEntry entry          = cache.get(key);
+
+		if (entry != null) {
+
+			// the enclosing output depends on the same objects
+			renderContext.addDependencies(entry.getDependencies());
+			renderContext.getBuffer().append(entry.getOutput());
+
+			return;
+		}
+
+		final long generation           = cache.getGeneration();
+		final AsyncBuffer buffer        = renderContext.getBuffer();
+		final StringRenderBuffer output = new StringRenderBuffer();
+		Dependencies dependencies       = null;
+
+		renderContext.setBuffer(output);
+		renderContext.startRecordingDependencies();
+
+		try {
+
+			renderUncached(renderContext, depth);
+
+		} finally {
+
+			dependencies = renderContext.stopRecordingDependencies();
+
+			renderContext.setBuffer(buffer);
+			renderContext.addDependencies(dependencies);
+
+			buffer.append(output.getBuffer().toString());
+		}
+
+		cache.put(generation, key, output.getBuffer().toString(), dependencies, maxAge);
+	}
+
+	private void renderUncached(final RenderContext renderContext, final int depth) throws FrameworkException {
+
+		renderContext.addDependency(this);
+
 		final GraphObject details = renderContext.getDetailsDataObject();
 		final boolean detailMode = details != null;
 
@@ -338,6 +406,10 @@ public abstract class DOMNode extends LinkedTreeNode<DOMChildren, DOMSiblings, D
 				// fetch (optional) list of external data elements
 				final Iterable<GraphObject> listData = checkListSources(securityContext, renderContext);
 
+				if (hasListQuery()) {
+					renderContext.addQueryDependency(listData);
+				}
+
 				final PropertyKey propertyKey;
 
 				if (getProperty(renderDetails) && detailMode) {
@@ -628,6 +700,12 @@ public abstract class DOMNode extends LinkedTreeNode<DOMChildren, DOMSiblings, D
 
 			instructions.add("@structr:hide(" + escapeForHtmlAttributes(_hideConditions) + ")");
 		}
+
+		final Integer _renderCacheSeconds = getProperty(DOMNode.renderCacheSeconds);
+		if (_renderCacheSeconds != null) {
+
+			instructions.add("@structr:cache(" + _renderCacheSeconds + ")");
+		}
 	}
 
 	private void getLinkableInstructions(final Set<String> instructions) {
@@ -916,6 +994,10 @@ public abstract class DOMNode extends LinkedTreeNode<DOMChildren, DOMSiblings, D
 		}
 	}
 
+	private boolean hasListQuery() {
+		return StringUtils.isNotBlank(getProperty(restQuery)) || StringUtils.isNotBlank(getProperty(cypherQuery)) || StringUtils.isNotBlank(getProperty(xpathQuery)) || StringUtils.isNotBlank(getProperty(functionQuery));
+	}
+
 	protected Iterable<GraphObject> checkListSources(final SecurityContext securityContext, final RenderContext renderContext) {
 
 		// try registered data sources first
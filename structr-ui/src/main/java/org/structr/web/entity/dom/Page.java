@@ -712,6 +712,7 @@ public class Page extends DOMNode implements Linkable, Document, DOMImplementati
 	public void render(RenderContext renderContext, int depth) throws FrameworkException {
 
 		renderContext.setPage(this);
+		renderContext.addDependency(this);
 
 		// Skip DOCTYPE node
 		DOMNode subNode = (DOMNode) this.getFirstChild().getNextSibling();
@@ -18,13 +18,13 @@
  */
 package org.structr.web.function;
 
-import java.util.Date;
+import java.io.IOException;
+import java.util.Collections;
 import java.util.Map;
 import org.structr.common.error.FrameworkException;
-import org.structr.core.app.StructrApp;
-import org.structr.core.graph.NodeAttribute;
-import org.structr.core.property.PropertyMap;
-import org.structr.rest.logging.entity.LogEvent;
+import org.structr.core.GraphObjectMap;
+import org.structr.rest.logging.LogEventStore;
+import org.structr.rest.logging.LogEventStore.Event;
 import org.structr.schema.action.ActionContext;
 import org.structr.web.entity.dom.DOMNode;
 
@@ -46,29 +46,12 @@ public class LogEventFunction extends UiFunction {
 
 		if (arrayHasMinLengthAndMaxLengthAndAllElementsNotNull(sources, 2, 4)) {
 
-			final String action = sources[0].toString();
+			final String action  = sources[0].toString();
 			final String message = sources[1].toString();
+			final String subject = sources.length > 2 ? sources[2].toString() : null;
+			final String object  = sources.length > 3 ? sources[3].toString() : null;
 
-			final LogEvent logEvent = StructrApp.getInstance().create(LogEvent.class,
-				new NodeAttribute(LogEvent.actionProperty, action),
-				new NodeAttribute(LogEvent.messageProperty, message),
-				new NodeAttribute(LogEvent.timestampProperty, new Date())
-			);
-
-			switch (sources.length) {
-
-				case 4:
-					final String object = sources[3].toString();
-					logEvent.setProperties(logEvent.getSecurityContext(), new PropertyMap(LogEvent.objectProperty, object));
-					// no break, next case should be included
-
-				case 3:
-					final String subject = sources[2].toString();
-					logEvent.setProperties(logEvent.getSecurityContext(), new PropertyMap(LogEvent.subjectProperty, subject));
-					break;
-			}
-
-			return logEvent;
+			return store(new Event(System.currentTimeMillis(), action, subject, object, message));
 
 		} else if (sources.length == 1 && sources[0] instanceof Map) {
 
@@ -79,13 +62,7 @@ public class LogEventFunction extends UiFunction {
 			final String subject = DOMNode.objectToString(map.get("subject"));
 			final String object = DOMNode.objectToString(map.get("object"));
 
-			return StructrApp.getInstance().create(LogEvent.class,
-				new NodeAttribute(LogEvent.actionProperty, action),
-				new NodeAttribute(LogEvent.messageProperty, message),
-				new NodeAttribute(LogEvent.timestampProperty, new Date()),
-				new NodeAttribute(LogEvent.subjectProperty, subject),
-				new NodeAttribute(LogEvent.objectProperty, object)
-			);
+			return store(new Event(System.currentTimeMillis(), action, subject, object, message));
 
 		} else {
 
@@ -105,4 +82,25 @@ public class LogEventFunction extends UiFunction {
 	public String shortDescription() {
 		return "Logs an event to the Structr log";
 	}
+
+	// ----- private methods -----
+	private GraphObjectMap store(final Event event) throws FrameworkException {
+
+		final LogEventStore store = LogEventStore.getInstance();
+		if (store == null) {
+
+			throw new FrameworkException(500, "Log event store is not available.");
+		}
+
+		try {
+
+			store.append(Collections.singletonList(event));
+
+		} catch (IOException ioex) {
+
+			throw new FrameworkException(500, "Unable to store log event: " + ioex.getMessage());
+		}
+
+		return event.toGraphObjectMap();
+	}
 }
@@ -22,8 +22,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -128,7 +130,8 @@ public class CSVFileImportJob extends ImportJob {
 
 					try (final Tx tx = app.tx()) {
 
-						final long chunkStartTime = System.currentTimeMillis();
+						final List<PropertyMap> chunk = new ArrayList<>();
+						final long chunkStartTime     = System.currentTimeMillis();
 
 						while (iterator.hasNext() && count++ < commitInterval) {
 
@@ -136,11 +139,14 @@ public class CSVFileImportJob extends ImportJob {
 
 							mapper.transformInput(threadContext, targetEntityType, input);
 
-							app.create(targetEntityType, PropertyMap.inputTypeToJavaType(threadContext, targetEntityType, input));
+							chunk.add(PropertyMap.inputTypeToJavaType(threadContext, targetEntityType, input));
 
 							overallCount++;
 						}
 
+						// create all nodes of this chunk at once
+						app.create(targetEntityType, chunk);
+
 						tx.success();
 
 						chunks++;
@@ -22,7 +22,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import javax.xml.stream.XMLStreamException;
 import org.slf4j.Logger;
@@ -113,13 +115,18 @@ public class XMLFileImportJob extends ImportJob {
 
 						try (final Tx tx = app.tx()) {
 
+							final List<PropertyMap> chunk = new ArrayList<>();
+
 							while (iterator.hasNext() && ++count <= batchSize) {
 
-								app.create(AbstractNode.class, PropertyMap.inputTypeToJavaType(threadContext, iterator.next()));
+								chunk.add(PropertyMap.inputTypeToJavaType(threadContext, iterator.next()));
 
 								overallCount++;
 							}
 
+							// create all nodes of this chunk at once
+							app.create(AbstractNode.class, chunk);
+
 							tx.success();
 
 							chunks++;
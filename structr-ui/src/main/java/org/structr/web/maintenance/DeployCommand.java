@@ -37,12 +37,18 @@ import java.text.DecimalFormatSymbols;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -102,7 +108,9 @@ import org.structr.web.entity.relation.Thumbnails;
 import org.structr.web.entity.relation.UserFavoriteFavoritable;
 import org.structr.web.entity.relation.UserFavoriteFile;
 import org.structr.web.entity.relation.UserWorkDir;
+import org.structr.web.importer.Importer;
 import org.structr.web.maintenance.deploy.ComponentImportVisitor;
+import org.structr.web.maintenance.deploy.DeploymentManifest;
 import org.structr.web.maintenance.deploy.FileImportVisitor;
 import org.structr.web.maintenance.deploy.PageImportVisitor;
 import org.structr.web.maintenance.deploy.SchemaImportVisitor;
@@ -117,6 +125,8 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 	private static final Pattern pattern                 = Pattern.compile("[a-f0-9]{32}");
 
 	private Integer stepCounter                          = 0;
+	private DeploymentManifest previousManifest          = new DeploymentManifest();
+	private DeploymentManifest exportManifest            = new DeploymentManifest();
 
 	static {
 
@@ -220,6 +230,53 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 			throw new FrameworkException(422, "Source path " + path + " is not a directory.");
 		}
 
+		// read files.conf
+		final Path filesConfFile = source.resolve("files.json");
+		if (Files.exists(filesConfFile)) {
+
+			info("Reading {}", filesConfFile);
+			filesConf.putAll(readConfigMap(filesConfFile));
+		}
+
+		// read pages.conf
+		final Path pagesConfFile = source.resolve("pages.json");
+		if (Files.exists(pagesConfFile)) {
+
+			info("Reading {}", pagesConfFile);
+			pagesConf.putAll(readConfigMap(pagesConfFile));
+		}
+
+		// read components.conf
+		final Path componentsConfFile = source.resolve("components.json");
+		if (Files.exists(componentsConfFile)) {
+
+			info("Reading {}", componentsConfFile);
+			componentsConf.putAll(readConfigMap(componentsConfFile));
+		}
+
+		// read templates.conf
+		final Path templatesConfFile = source.resolve("templates.json");
+		if (Files.exists(templatesConfFile)) {
+
+			info("Reading {}", templatesConfFile);
+			templatesConf.putAll(readConfigMap(templatesConfFile));
+		}
+
+		// compare the deployment with the manifest of the last deployment, a full
+		// import ignores the manifest and replaces all pages, templates and components
+		final boolean fullImport                 = "true".equals(String.valueOf(attributes.get("full")));
+		final boolean dryRun                     = "true".equals(String.valueOf(attributes.get("dryRun")));
+		final int threads                        = Runtime.getRuntime().availableProcessors();
+		final Path manifestPath                  = Paths.get(Settings.getFullSettingPath(Settings.DeploymentPath), "manifest.json");
+		final DeploymentManifest manifest        = DeploymentManifest.fromSource(source, filesConf, templatesConf, componentsConf, pagesConf);
+		final DeploymentManifest appliedManifest = fullImport ? new DeploymentManifest() : DeploymentManifest.read(manifestPath);
+
+		if (dryRun) {
+
+			reportDiff(getDiff(app, manifest, appliedManifest), fullImport || isSchemaChanged(source.resolve("schema")));
+			return;
+		}
+
 		final Map<String, Object> broadcastData = new HashMap();
 		broadcastData.put("type", "DEPLOYMENT_STATUS");
 		broadcastData.put("subtype", "BEGIN");
@@ -320,41 +377,15 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 			importListData(Localization.class, readConfigList(localizationsConf), additionalData);
 		}
 
-		// read files.conf
-		final Path filesConfFile = source.resolve("files.json");
-		if (Files.exists(filesConfFile)) {
-
-			info("Reading {}", filesConfFile);
-			filesConf.putAll(readConfigMap(filesConfFile));
-		}
-
-		// read pages.conf
-		final Path pagesConfFile = source.resolve("pages.json");
-		if (Files.exists(pagesConfFile)) {
-
-			info("Reading {}", pagesConfFile);
-			pagesConf.putAll(readConfigMap(pagesConfFile));
-		}
-
-		// read components.conf
-		final Path componentsConfFile = source.resolve("components.json");
-		if (Files.exists(componentsConfFile)) {
-
-			info("Reading {}", componentsConfFile);
-			componentsConf.putAll(readConfigMap(componentsConfFile));
-		}
-
-		// read templates.conf
-		final Path templatesConfFile = source.resolve("templates.json");
-		if (Files.exists(templatesConfFile)) {
-
-			info("Reading {}", templatesConfFile);
-			templatesConf.putAll(readConfigMap(templatesConfFile));
-		}
+		final DeploymentManifest.Diff diff = getDiff(app, manifest, appliedManifest);
 
 		// import schema
 		final Path schema = source.resolve("schema");
-		if (Files.exists(schema)) {
+		if (Files.exists(schema) && !fullImport && !isSchemaChanged(schema)) {
+
+			info("Schema is unchanged, skipping schema import");
+
+		} else if (Files.exists(schema)) {
 
 			try {
 
@@ -377,10 +408,30 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 				info("Importing files (unchanged files will be skipped)");
 				publishDeploymentProgressMessage("Importing files");
 
-				FileImportVisitor fiv = new FileImportVisitor(files, filesConf);
+				final FileImportVisitor fiv = new FileImportVisitor(files, filesConf);
 				Files.walkFileTree(files, fiv);
+
+				// minified files are always imported so that the relationships to their sources are restored
+				fiv.importFiles(p -> diff.isModified(DeploymentManifest.FILES + p) || hasMinificationSources(filesConf.get("/" + p)), threads);
 				fiv.handleDeferredFiles();
 
+				for (final Map.Entry<String, String> entry : fiv.getIds().entrySet()) {
+					manifest.setId(DeploymentManifest.FILES + entry.getKey(), entry.getValue());
+				}
+
+				// remove files that were imported by the last deployment and are no longer part of it
+				try (final Tx tx = app.tx()) {
+
+					for (final String key : diff.getRemoved()) {
+
+						if (key.startsWith(DeploymentManifest.FILES)) {
+							removeArtifact(app, key, appliedManifest.getId(key));
+						}
+					}
+
+					tx.success();
+				}
+
 			} catch (IOException ioex) {
 				logger.warn("Exception while importing files", ioex);
 			}
@@ -408,17 +459,44 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 		final Path components = source.resolve("components");
 		final Path pages      = source.resolve("pages");
 
+		final boolean hasPages = !appliedManifest.getKeys(DeploymentManifest.PAGES).isEmpty();
+
 		// remove all DOMNodes from the database (clean webapp for import, but only
 		// if the actual import directories exist, don't delete web components if
-		// an empty directory was specified accidentially).
+		// an empty directory was specified accidentially). If a previous deployment
+		// is known, only the removed pages, templates and components are deleted.
 		if (Files.exists(templates) && Files.exists(components) && Files.exists(pages)) {
 
 			try (final Tx tx = app.tx()) {
 
-				info("Removing pages, templates and components");
-				publishDeploymentProgressMessage("Removing pages, templates and components");
+				if (fullImport || !hasPages) {
+
+					info("Removing pages, templates and components");
+					publishDeploymentProgressMessage("Removing pages, templates and components");
+
+					app.cypher("MATCH (n:DOMNode) DETACH DELETE n", null);
+
+					// all pages, templates and components need to be imported again
+					for (final String key : manifest.getKeys()) {
+
+						if (!key.startsWith(DeploymentManifest.FILES) && !diff.isModified(key)) {
+							diff.getChanged().add(key);
+						}
+					}
+
+				} else {
+
+					info("Removing {} pages, templates and components that are no longer part of the deployment", diff.getRemoved().size());
+					publishDeploymentProgressMessage("Removing pages, templates and components");
+
+					for (final String key : diff.getRemoved()) {
+
+						if (!key.startsWith(DeploymentManifest.FILES)) {
+							removeArtifact(app, key, appliedManifest.getId(key));
+						}
+					}
+				}
 
-				app.cypher("MATCH (n:DOMNode) DETACH DELETE n", null);
 				FlushCachesCommand.flushAll();
 
 				tx.success();
@@ -432,48 +510,69 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 		// import templates, must be done before pages so the templates exist
 		if (Files.exists(templates)) {
 
-			try {
+			info("Importing templates");
+			publishDeploymentProgressMessage("Importing templates");
 
-				info("Importing templates");
-				publishDeploymentProgressMessage("Importing templates");
+			final TemplateImportVisitor visitor = new TemplateImportVisitor(templatesConf);
 
-				Files.walkFileTree(templates, new TemplateImportVisitor(templatesConf));
+			for (final String key : manifest.getKeysInDependencyOrder(DeploymentManifest.TEMPLATES)) {
 
-			} catch (IOException ioex) {
-				logger.warn("Exception while importing templates", ioex);
+				if (diff.isModified(key)) {
+
+					try {
+
+						manifest.setId(key, visitor.importTemplate(source.resolve(key)));
+
+					} catch (IOException ioex) {
+						logger.warn("Exception while importing template {}: {}", key, ioex.getMessage());
+					}
+				}
 			}
 		}
 
-		// import components, must be done before pages so the shared components exist
+		// import components, must be done before pages so the shared components exist, and
+		// in dependency order so that nested components are imported before their parents
 		if (Files.exists(components)) {
 
-			try {
+			info("Importing shared components");
+			publishDeploymentProgressMessage("Importing shared components");
 
-				info("Importing shared components");
-				publishDeploymentProgressMessage("Importing shared components");
+			final ComponentImportVisitor visitor = new ComponentImportVisitor(componentsConf);
 
-				Files.walkFileTree(components, new ComponentImportVisitor(componentsConf));
+			for (final String key : manifest.getKeysInDependencyOrder(DeploymentManifest.COMPONENTS)) {
 
-			} catch (IOException ioex) {
-				logger.warn("Exception while importing shared components", ioex);
+				if (diff.isModified(key)) {
+
+					try {
+
+						manifest.setId(key, visitor.importComponent(source.resolve(key)));
+
+					} catch (IOException ioex) {
+						logger.warn("Exception while importing shared component {}: {}", key, ioex.getMessage());
+					}
+				}
 			}
 		}
 
 		// import pages
 		if (Files.exists(pages)) {
 
-			try {
+			info("Importing pages");
+			publishDeploymentProgressMessage("Importing pages");
 
-				info("Importing pages");
-				publishDeploymentProgressMessage("Importing pages");
+			importPages(source, pagesConf, manifest, diff, threads);
+		}
 
-				Files.walkFileTree(pages, new PageImportVisitor(pages, pagesConf));
+		// store the manifest of this deployment, unchanged artifacts keep their nodes
+		for (final String key : manifest.getKeys()) {
 
-			} catch (IOException ioex) {
-				logger.warn("Exception while importing pages", ioex);
+			if (!diff.isModified(key)) {
+				manifest.setId(key, appliedManifest.getId(key));
 			}
 		}
 
+		manifest.write(manifestPath);
+
 		// apply configuration
 		final Path postDeployConf = source.resolve("post-deploy.conf");
 		if (Files.exists(postDeployConf)) {
@@ -545,6 +644,247 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 
 	}
 
+	private DeploymentManifest.Diff getDiff(final App app, final DeploymentManifest manifest, final DeploymentManifest appliedManifest) throws FrameworkException {
+
+		try (final Tx tx = app.tx()) {
+
+			final DeploymentManifest.Diff diff = manifest.diff(appliedManifest, (final String uuid) -> {
+
+				try {
+
+					return app.getNodeById(uuid) != null;
+
+				} catch (FrameworkException fex) {
+					return false;
+				}
+			});
+
+			// pages and shared components that are not part of the deployment are removed as well
+			for (final Page page : app.nodeQuery(Page.class).getAsList()) {
+
+				final String name = page.getName();
+
+				if (!(page instanceof ShadowDocument) && name != null && !manifest.contains(DeploymentManifest.PAGES + name + ".html")) {
+
+					diff.getRemoved().add(DeploymentManifest.PAGES + name + ".html");
+				}
+			}
+
+			final ShadowDocument shadowDocument = app.nodeQuery(ShadowDocument.class).getFirst();
+			if (shadowDocument != null) {
+
+				for (final DOMNode node : shadowDocument.getProperty(Page.elements)) {
+
+					if (node.getProperty(DOMNode.parent) == null && !node.inTrash()) {
+
+						final String name = node.getProperty(AbstractNode.name);
+						final String key  = DeploymentManifest.COMPONENTS + (name != null ? name : node.getUuid()) + ".html";
+
+						if (!manifest.contains(key)) {
+
+							diff.getRemoved().add(key);
+						}
+					}
+				}
+			}
+
+			tx.success();
+
+			return diff;
+		}
+	}
+
+	private boolean isSchemaChanged(final Path schema) {
+
+		final Path schemaJson = schema.resolve("schema.json");
+		if (Files.exists(schemaJson)) {
+
+			try (final Stream<Path> files = Files.list(schema)) {
+
+				// the schema can only be compared if it is the only file in the schema directory
+				if (files.count() == 1) {
+
+					final String source  = new String(Files.readAllBytes(schemaJson), Charset.forName("utf-8"));
+					final String current = StructrSchema.createFromDatabase(StructrApp.getInstance()).toString() + "\n";
+
+					return !current.equals(source);
+				}
+
+			} catch (Throwable t) {
+				logger.warn("Unable to compare schema: {}", t.getMessage());
+			}
+		}
+
+		return true;
+	}
+
+	private void reportDiff(final DeploymentManifest.Diff diff, final boolean schemaChanged) {
+
+		info("Dry run, the following changes would be applied:");
+		info("Schema {}", schemaChanged ? "changed" : "unchanged");
+
+		for (final String key : diff.getAdded()) {
+			info("Added:   {}", key);
+		}
+
+		for (final String key : diff.getChanged()) {
+			info("Changed: {}", key);
+		}
+
+		for (final String key : diff.getRemoved()) {
+			info("Removed: {}", key);
+		}
+
+		customHeaders.put("added",         Integer.toString(diff.getAdded().size()));
+		customHeaders.put("changed",       Integer.toString(diff.getChanged().size()));
+		customHeaders.put("removed",       Integer.toString(diff.getRemoved().size()));
+		customHeaders.put("schemaChanged", Boolean.toString(schemaChanged));
+
+		final Map<String, Object> msgData = new HashMap();
+		msgData.put("type", "DEPLOYMENT_STATUS");
+		msgData.put("subtype", "DIFF");
+		msgData.put("schemaChanged", schemaChanged);
+		msgData.putAll(diff.toMap());
+
+		TransactionCommand.simpleBroadcastGenericMessage(msgData);
+	}
+
+	private void importPages(final Path source, final Map<String, Object> pagesConf, final DeploymentManifest manifest, final DeploymentManifest.Diff diff, final int threads) {
+
+		final Path pages                          = source.resolve("pages");
+		final ExecutorService executor            = Executors.newFixedThreadPool(Math.max(1, threads));
+		final Map<String, Future<String>> futures = new LinkedHashMap<>();
+		final List<String> sequential             = new LinkedList<>();
+
+		try {
+
+			for (final String key : manifest.getKeys(DeploymentManifest.PAGES)) {
+
+				if (diff.isModified(key)) {
+
+					// pages that reference unknown templates or components create them on
+					// the fly, so they must not be imported concurrently
+					if (manifest.hasUnresolvedReferences(key)) {
+
+						sequential.add(key);
+
+					} else {
+
+						futures.put(key, executor.submit(() -> new PageImportVisitor(pages, pagesConf).importPage(source.resolve(key))));
+					}
+				}
+			}
+
+			for (final Map.Entry<String, Future<String>> entry : futures.entrySet()) {
+
+				try {
+
+					manifest.setId(entry.getKey(), entry.getValue().get());
+
+				} catch (ExecutionException ex) {
+
+					// retry pages that failed because of concurrent modifications one by one
+					logger.info("Unable to import page {} concurrently, retrying: {}", entry.getKey(), ex.getMessage());
+					sequential.add(entry.getKey());
+				}
+			}
+
+		} catch (InterruptedException iex) {
+
+			logger.warn("Interrupted while importing pages");
+
+		} finally {
+
+			executor.shutdown();
+		}
+
+		final PageImportVisitor visitor = new PageImportVisitor(pages, pagesConf);
+
+		for (final String key : sequential) {
+
+			try {
+
+				manifest.setId(key, visitor.importPage(source.resolve(key)));
+
+			} catch (Throwable t) {
+				logger.warn("Exception while importing page {}: {}", key, t.toString());
+			}
+		}
+	}
+
+	private void removeArtifact(final App app, final String key, final String id) throws FrameworkException {
+
+		final String name = StringUtils.substringBeforeLast(StringUtils.substringAfter(key, "/"), ".html");
+
+		if (key.startsWith(DeploymentManifest.PAGES)) {
+
+			Page page = id != null ? app.get(Page.class, id) : null;
+			if (page == null) {
+
+				page = app.nodeQuery(Page.class).andName(name).getFirst();
+			}
+
+			if (page != null && !(page instanceof ShadowDocument)) {
+
+				info("Removing page {}", name);
+
+				for (final DOMNode child : page.getProperty(Page.elements)) {
+					app.delete(child);
+				}
+
+				app.delete(page);
+			}
+
+		} else if (key.startsWith(DeploymentManifest.TEMPLATES) || key.startsWith(DeploymentManifest.COMPONENTS)) {
+
+			DOMNode node = id != null ? app.get(DOMNode.class, id) : null;
+			if (node == null) {
+
+				if (isUuid(name)) {
+
+					node = app.get(DOMNode.class, name);
+
+				} else if (key.startsWith(DeploymentManifest.TEMPLATES)) {
+
+					node = Importer.findTemplateByName(name);
+
+				} else if (app.nodeQuery(ShadowDocument.class).getFirst() != null) {
+
+					// don't create the shadow document just to find out that the component doesn't exist
+					node = Importer.findSharedComponentByName(name);
+				}
+			}
+
+			if (node != null) {
+
+				info("Removing {}", key);
+				deleteRecursively(app, node);
+			}
+
+		} else if (key.startsWith(DeploymentManifest.FILES) && id != null) {
+
+			final FileBase file = app.get(FileBase.class, id);
+			if (file != null) {
+
+				info("Removing file {}", name);
+				app.delete(file);
+			}
+		}
+	}
+
+	private void deleteRecursively(final App app, final DOMNode node) throws FrameworkException {
+
+		for (final DOMNode child : node.treeGetChildren()) {
+			deleteRecursively(app, child);
+		}
+
+		app.delete(node);
+	}
+
+	private boolean hasMinificationSources(final Object configuration) {
+		return configuration instanceof Map && ((Map)configuration).containsKey("minificationSources");
+	}
+
 	private void doExport(final Map<String, Object> attributes) throws FrameworkException {
 
 		final String path  = (String) attributes.get("target");
@@ -576,6 +916,11 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 			final Path mailTemplates  = target.resolve("mail-templates.json");
 			final Path localizations  = target.resolve("localizations.json");
 			final Path widgets		  = target.resolve("widgets.json");
+			final Path manifest       = target.resolve("manifest.json");
+
+			// the manifest of the last export allows to skip unchanged files without reading them
+			previousManifest = DeploymentManifest.read(manifest);
+			exportManifest   = new DeploymentManifest();
 
 			exportFiles(files, filesConf);
 			exportPages(pages, pagesConf);
@@ -601,6 +946,9 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 			// config import order is "users, grants, pages, components, templates"
 			// data import order is "schema, files, templates, components, pages"
 
+			removeStaleFiles(target);
+			exportManifest.write(manifest);
+
 			logger.info("Export finished.");
 
 		} catch (IOException ex) {
@@ -693,16 +1041,30 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 		final Map<String, Object> properties = new TreeMap<>();
 		final String name                    = file.getName();
 		final Path src                       = file.getFileOnDisk().toPath();
+		final String key                     = "files" + file.getPath();
 		Path targetPath                      = target.resolve(name);
 		boolean doExport                     = true;
 
+		exportFileConfiguration(file, properties);
+
+		final String hash = DeploymentManifest.hash(String.valueOf(file.getChecksum()), properties.isEmpty() ? null : properties);
+
+		exportManifest.put(key, hash);
+
 		if (Files.exists(targetPath)) {
 
-			// compare checksum
-			final Long checksumOfExistingFile = FileHelper.getChecksum(targetPath.toFile());
-			final Long checksumOfExportFile   = file.getChecksum();
+			if (hash.equals(previousManifest.getHash(key)) && Files.size(targetPath) == Files.size(src)) {
+
+				doExport = false;
+
+			} else {
 
-			doExport = !checksumOfExistingFile.equals(checksumOfExportFile);
+				// compare checksum
+				final Long checksumOfExistingFile = FileHelper.getChecksum(targetPath.toFile());
+				final Long checksumOfExportFile   = file.getChecksum();
+
+				doExport = !checksumOfExistingFile.equals(checksumOfExportFile);
+			}
 		}
 
 		if (doExport) {
@@ -715,8 +1077,6 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 			}
 		}
 
-		exportFileConfiguration(file, properties);
-
 		if (!properties.isEmpty()) {
 			config.put(file.getPath(), properties);
 		}
@@ -741,36 +1101,12 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 						final Map<String, Object> properties = new TreeMap<>();
 						final String name                    = page.getName();
 						final Path pageFile                  = target.resolve(name + ".html");
-						boolean doExport                     = true;
-
-						if (Files.exists(pageFile)) {
-
-							try {
-
-								final String existingContent = new String(Files.readAllBytes(pageFile), "utf-8");
-								doExport = !existingContent.equals(content);
-
-							} catch (IOException ignore) {
-								logger.warn("", ignore);
-							}
-						}
 
 						pagesConfig.put(name, properties);
 						exportConfiguration(page, properties);
 						exportOwnershipAndSecurity(page, properties);
 
-						if (doExport) {
-
-							try (final OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(pageFile.toFile()))) {
-
-								writer.write(content);
-								writer.flush();
-								writer.close();
-
-							} catch (IOException ioex) {
-								logger.warn("", ioex);
-							}
-						}
+						exportContent(pageFile, DeploymentManifest.PAGES + name + ".html", content, properties);
 					}
 				}
 			}
@@ -803,7 +1139,6 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 
 					final boolean hasParent = node.getProperty(DOMNode.parent) != null;
 					final boolean inTrash   = node.inTrash();
-					boolean doExport        = true;
 
 					// skip nodes in trash and non-toplevel nodes
 					if (inTrash || hasParent) {
@@ -822,31 +1157,10 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 						final Map<String, Object> properties = new TreeMap<>();
 						final Path targetFile = target.resolve(name + ".html");
 
-						if (Files.exists(targetFile)) {
-
-							try {
-
-								final String existingContent = new String(Files.readAllBytes(targetFile), "utf-8");
-								doExport = !existingContent.equals(content);
-
-							} catch (IOException ignore) {}
-						}
-
 						configuration.put(name, properties);
 						exportConfiguration(node, properties);
 
-						if (doExport) {
-
-							try (final OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(targetFile.toFile()))) {
-
-								writer.write(content);
-								writer.flush();
-								writer.close();
-
-							} catch (IOException ioex) {
-								logger.warn("", ioex);
-							}
-						}
+						exportContent(targetFile, DeploymentManifest.COMPONENTS + name + ".html", content, properties);
 					}
 				}
 			}
@@ -900,7 +1214,6 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 	private void exportTemplateSource(final Path target, final DOMNode template, final Map<String, Object> configuration) throws FrameworkException {
 
 		final Map<String, Object> properties = new TreeMap<>();
-		boolean doExport                     = true;
 
 		final String content = template.getProperty(Template.content);
 		if (content != null) {
@@ -914,29 +1227,66 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 
 			final Path targetFile = target.resolve(name + ".html");
 
-			if (Files.exists(targetFile)) {
+			configuration.put(name, properties);
+			exportConfiguration(template, properties);
 
-				try {
+			exportContent(targetFile, DeploymentManifest.TEMPLATES + name + ".html", content, properties);
+		}
+	}
+
+	private void exportContent(final Path targetFile, final String key, final String content, final Map<String, Object> configuration) {
+
+		final String hash = DeploymentManifest.hash(content, configuration);
+		boolean doExport  = true;
+
+		exportManifest.put(key, hash);
+
+		if (Files.exists(targetFile)) {
+
+			try {
+
+				if (hash.equals(previousManifest.getHash(key)) && Files.size(targetFile) == content.getBytes().length) {
+
+					doExport = false;
+
+				} else {
 
 					final String existingContent = new String(Files.readAllBytes(targetFile), "utf-8");
 					doExport = !existingContent.equals(content);
+				}
+
+			} catch (IOException ignore) {}
+		}
+
+		if (doExport) {
+
+			try (final OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(targetFile.toFile()))) {
+
+				writer.write(content);
+				writer.flush();
+				writer.close();
 
-				} catch (IOException ignore) {}
+			} catch (IOException ioex) {
+				logger.warn("", ioex);
 			}
+		}
+	}
 
-			configuration.put(name, properties);
-			exportConfiguration(template, properties);
+	private void removeStaleFiles(final Path target) {
+
+		// remove pages, components, templates and files that were exported before and no longer exist
+		for (final String key : previousManifest.getKeys()) {
 
-			if (doExport) {
+			if (!exportManifest.contains(key)) {
 
-				try (final OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(targetFile.toFile()))) {
+				try {
 
-					writer.write(content);
-					writer.flush();
-					writer.close();
+					if (Files.deleteIfExists(target.resolve(key))) {
+						logger.info("Removed {}", key);
+					}
 
 				} catch (IOException ioex) {
-					logger.warn("", ioex);
+					logger.warn("Unable to remove {}: {}", key, ioex.getMessage());
 				}
 			}
 		}
@@ -105,6 +105,20 @@ public class ComponentImportVisitor implements FileVisitor<Path> {
 		return FileVisitResult.CONTINUE;
 	}
 
+	/**
+	 * Imports the shared component from the given file, replacing an
+	 * existing component with the same name or UUID.
+	 *
+	 * @param file the component file
+	 * @return the UUID of the new component, or null if it was not imported
+	 *
+	 * @throws IOException
+	 * @throws FrameworkException
+	 */
+	public String importComponent(final Path file) throws IOException, FrameworkException {
+		return createComponent(file, file.getFileName().toString());
+	}
+
 	// ----- private methods -----
 	private DOMNode getExistingComponent(final String name) {
 
@@ -184,11 +198,12 @@ public class ComponentImportVisitor implements FileVisitor<Path> {
 		return defaultValue;
 	}
 
-	private void createComponent(final Path file, final String fileName) throws IOException, FrameworkException {
+	private String createComponent(final Path file, final String fileName) throws IOException, FrameworkException {
 
 		final String name               = StringUtils.substringBeforeLast(fileName, ".html");
 		final DOMNode existingComponent = getExistingComponent(name);
 		final boolean byId              = DeployCommand.isUuid(name);
+		String uuid                     = null;
 
 		try (final Tx tx = app.tx(true, false, false)) {
 
@@ -243,10 +258,14 @@ public class ComponentImportVisitor implements FileVisitor<Path> {
 
 					// store properties from components.json if present
 					rootElement.setProperties(securityContext, properties);
+
+					uuid = rootElement.getUuid();
 				}
 			}
 
 			tx.success();
 		}
+
+		return uuid;
 	}
 }
@@ -103,6 +103,10 @@ public class DeploymentCommentHandler implements CommentHandler {
 			node.setProperties(node.getSecurityContext(), new PropertyMap(DOMNode.hideConditions, DOMNode.unescapeForHtmlAttributes(DOMNode.unescapeForHtmlAttributes(parameters))));
 		});
 
+		handlers.put("cache", (Page page, DOMNode node, final String parameters) -> {
+			node.setProperties(node.getSecurityContext(), new PropertyMap(DOMNode.renderCacheSeconds, Integer.valueOf(parameters)));
+		});
+
 		handlers.put("owner", (Page page, DOMNode node, final String parameters) -> {
 
 			final Principal owner = StructrApp.getInstance().nodeQuery(Principal.class).andName(parameters).getFirst();
@@ -0,0 +1,605 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.maintenance.deploy;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.web.common.FileHelper;
+
+/**
+ * Content hashes of the artifacts of a deployment (templates, shared
+ * components, pages and files), keyed by their path relative to the
+ * deployment directory.
+ *
+ * The export writes a manifest into the target directory so that unchanged
+ * artifacts don't need to be written again, and the import keeps the
+ * manifest of the last deployment along with the UUIDs of the nodes that
+ * were created from each artifact, so that only added, changed and removed
+ * artifacts need to be applied.
+ */
+public class DeploymentManifest {
+
+	private static final Logger logger            = LoggerFactory.getLogger(DeploymentManifest.class.getName());
+	private static final Pattern referencePattern = Pattern.compile("<structr:(?:template|component) src=\"([^\"]+)\"");
+	private static final Gson gson                = new GsonBuilder().setPrettyPrinting().create();
+
+	public static final String TEMPLATES  = "templates/";
+	public static final String COMPONENTS = "components/";
+	public static final String PAGES      = "pages/";
+	public static final String FILES      = "files/";
+
+	private final Map<String, Entry> entries = new TreeMap<>();
+
+	public String getHash(final String key) {
+
+		final Entry entry = entries.get(key);
+		if (entry != null) {
+
+			return entry.hash;
+		}
+
+		return null;
+	}
+
+	public String getId(final String key) {
+
+		final Entry entry = entries.get(key);
+		if (entry != null) {
+
+			return entry.id;
+		}
+
+		return null;
+	}
+
+	public void put(final String key, final String hash) {
+		entries.put(key, new Entry(hash));
+	}
+
+	public void setId(final String key, final String id) {
+
+		final Entry entry = entries.get(key);
+		if (entry != null) {
+
+			entry.id = id;
+		}
+	}
+
+	public void remove(final String key) {
+		entries.remove(key);
+	}
+
+	public boolean contains(final String key) {
+		return entries.containsKey(key);
+	}
+
+	public Set<String> getKeys() {
+		return entries.keySet();
+	}
+
+	public Set<String> getKeys(final String prefix) {
+		return entries.keySet().stream().filter(k -> k.startsWith(prefix)).collect(Collectors.toCollection(TreeSet::new));
+	}
+
+	/**
+	 * Returns the keys with the given prefix, ordered so that the templates
+	 * or shared components an artifact references come before the artifact
+	 * itself.
+	 *
+	 * A shared component must be imported after the shared components it
+	 * contains, because importing a component removes its synced nodes,
+	 * including the instances that were just created in the components
+	 * that reference it. Cyclic references are broken arbitrarily.
+	 *
+	 * @param prefix the prefix
+	 *
+	 * @return the keys in dependency order
+	 */
+	public Set<String> getKeysInDependencyOrder(final String prefix) {
+
+		final Set<String> keys = new LinkedHashSet<>();
+		final Set<String> path = new LinkedHashSet<>();
+
+		for (final String key : getKeys(prefix)) {
+			addInDependencyOrder(key, prefix, keys, path);
+		}
+
+		return keys;
+	}
+
+	/**
+	 * Compares this manifest (created from a deployment directory) with
+	 * the manifest of the last deployment and returns the artifacts that
+	 * need to be applied.
+	 *
+	 * An artifact is changed if its hash differs or if the node that was
+	 * created from it no longer exists. Pages and shared components that
+	 * reference a changed or removed template or shared component are
+	 * marked as changed as well, because re-importing a shared component
+	 * removes its synced nodes, and non-shared templates that are part of
+	 * a changed page or component are re-imported along with it, because
+	 * they are removed together with their owner document.
+	 *
+	 * @param applied the manifest of the last deployment
+	 * @param exists predicate to check whether a node with a given UUID exists
+	 *
+	 * @return the difference between the two manifests
+	 */
+	public Diff diff(final DeploymentManifest applied, final Predicate<String> exists) {
+
+		final Diff diff = new Diff();
+
+		for (final Map.Entry<String, Entry> entry : entries.entrySet()) {
+
+			final String key = entry.getKey();
+
+			if (!applied.contains(key)) {
+
+				diff.added.add(key);
+
+			} else {
+
+				final String id = applied.getId(key);
+
+				if (!entry.getValue().hash.equals(applied.getHash(key)) || id == null || !exists.test(id)) {
+
+					diff.changed.add(key);
+				}
+			}
+		}
+
+		for (final String key : applied.getKeys()) {
+
+			if (!entries.containsKey(key)) {
+
+				diff.removed.add(key);
+			}
+		}
+
+		// propagate changes along the references between templates, components and pages
+		boolean hasChanges = true;
+		while (hasChanges) {
+
+			hasChanges = false;
+
+			for (final Map.Entry<String, Entry> entry : entries.entrySet()) {
+
+				final String key = entry.getKey();
+
+				if (diff.isModified(key)) {
+
+					for (final String referencedKey : resolve(entry.getValue().references)) {
+
+						if (referencedKey.startsWith(TEMPLATES) && !entries.get(referencedKey).shared && !diff.isModified(referencedKey)) {
+
+							diff.changed.add(referencedKey);
+							hasChanges = true;
+						}
+					}
+
+				} else {
+
+					for (final String referencedKey : resolve(entry.getValue().references)) {
+
+						if (diff.isModified(referencedKey) || diff.removed.contains(referencedKey)) {
+
+							diff.changed.add(key);
+							hasChanges = true;
+							break;
+						}
+					}
+				}
+			}
+		}
+
+		return diff;
+	}
+
+	/**
+	 * Indicates whether the artifact with the given key references a
+	 * template or shared component that is not part of this manifest.
+	 *
+	 * @param key the key of the page or component
+	 *
+	 * @return whether the artifact has unresolved references
+	 */
+	public boolean hasUnresolvedReferences(final String key) {
+
+		final Entry entry = entries.get(key);
+		if (entry != null) {
+
+			for (final String reference : entry.references) {
+
+				if (resolve(Collections.singleton(reference)).isEmpty()) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	public void write(final Path path) {
+
+		try {
+
+			final Map<String, Object> data = new LinkedHashMap<>();
+
+			for (final Map.Entry<String, Entry> entry : entries.entrySet()) {
+
+				final Map<String, Object> value = new LinkedHashMap<>();
+				final Entry e                   = entry.getValue();
+
+				value.put("hash", e.hash);
+
+				if (e.id != null) {
+					value.put("id", e.id);
+				}
+
+				data.put(entry.getKey(), value);
+			}
+
+			Files.createDirectories(path.toAbsolutePath().getParent());
+
+			final Path tmp = path.resolveSibling(path.getFileName().toString() + ".tmp");
+
+			try (final Writer writer = Files.newBufferedWriter(tmp, Charset.forName("utf-8"))) {
+
+				gson.toJson(data, writer);
+			}
+
+			Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		} catch (IOException ioex) {
+			logger.warn("Unable to write deployment manifest {}: {}", path, ioex.getMessage());
+		}
+	}
+
+	// ----- public static methods -----
+	public static DeploymentManifest read(final Path path) {
+
+		final DeploymentManifest manifest = new DeploymentManifest();
+
+		if (Files.exists(path)) {
+
+			try (final Reader reader = Files.newBufferedReader(path, Charset.forName("utf-8"))) {
+
+				final Map<String, Object> data = gson.fromJson(reader, Map.class);
+				if (data != null) {
+
+					for (final Map.Entry<String, Object> entry : data.entrySet()) {
+
+						final Object value = entry.getValue();
+						if (value instanceof Map) {
+
+							final Map<String, Object> map = (Map<String, Object>)value;
+							final Object hash             = map.get("hash");
+							final Object id               = map.get("id");
+
+							if (hash != null) {
+
+								final Entry e = new Entry(hash.toString());
+
+								if (id != null) {
+									e.id = id.toString();
+								}
+
+								manifest.entries.put(entry.getKey(), e);
+							}
+						}
+					}
+				}
+
+			} catch (Throwable t) {
+				logger.warn("Unable to read deployment manifest {}, ignoring: {}", path, t.getMessage());
+			}
+		}
+
+		return manifest;
+	}
+
+	/**
+	 * Creates the manifest of the deployment directory with the given
+	 * configuration, hashing the artifacts in parallel.
+	 *
+	 * @param source the deployment directory
+	 * @param filesConf the contents of files.json
+	 * @param templatesConf the contents of templates.json
+	 * @param componentsConf the contents of components.json
+	 * @param pagesConf the contents of pages.json
+	 *
+	 * @return the manifest
+	 */
+	public static DeploymentManifest fromSource(final Path source, final Map<String, Object> filesConf, final Map<String, Object> templatesConf, final Map<String, Object> componentsConf, final Map<String, Object> pagesConf) {
+
+		final DeploymentManifest manifest = new DeploymentManifest();
+		final Map<String, Entry> entries  = new ConcurrentHashMap<>();
+		final List<Path> templates        = list(source.resolve("templates"), true);
+		final List<Path> components       = list(source.resolve("components"), true);
+		final List<Path> pages            = list(source.resolve("pages"), true);
+		final Path files                  = source.resolve("files");
+
+		templates.parallelStream().forEach(path -> {
+
+			final Object conf = templatesConf.get(getName(path));
+			final Entry entry = hashDocument(path, conf);
+
+			if (entry != null) {
+
+				entry.shared = conf instanceof Map && "true".equals(((Map)conf).get("shared"));
+
+				entries.put(TEMPLATES + getRelativePath(source.resolve("templates"), path), entry);
+			}
+		});
+
+		components.parallelStream().forEach(path -> {
+
+			final Entry entry = hashDocument(path, componentsConf.get(getName(path)));
+			if (entry != null) {
+
+				entries.put(COMPONENTS + getRelativePath(source.resolve("components"), path), entry);
+			}
+		});
+
+		pages.parallelStream().forEach(path -> {
+
+			final Entry entry = hashDocument(path, pagesConf.get(getName(path)));
+			if (entry != null) {
+
+				entries.put(PAGES + getRelativePath(source.resolve("pages"), path), entry);
+			}
+		});
+
+		list(files, false).parallelStream().forEach(path -> {
+
+			final String relativePath = getRelativePath(files, path);
+
+			try {
+
+				entries.put(FILES + relativePath, new Entry(hash(FileHelper.getChecksum(path.toFile()).toString(), filesConf.get("/" + relativePath))));
+
+			} catch (IOException ioex) {
+				logger.warn("Unable to hash file {}: {}", path, ioex.getMessage());
+			}
+		});
+
+		manifest.entries.putAll(entries);
+
+		return manifest;
+	}
+
+	/**
+	 * Returns the content hash of an artifact with the given content and
+	 * configuration.
+	 *
+	 * @param content the content
+	 * @param configuration the configuration, or null
+	 *
+	 * @return the hash
+	 */
+	public static String hash(final String content, final Object configuration) {
+
+		final StringBuilder buf = new StringBuilder(content);
+
+		if (configuration != null) {
+
+			buf.append("\n");
+			buf.append(new Gson().toJson(sorted(configuration)));
+		}
+
+		return DigestUtils.sha1Hex(buf.toString());
+	}
+
+	// ----- private methods -----
+	private void addInDependencyOrder(final String key, final String prefix, final Set<String> keys, final Set<String> path) {
+
+		if (!keys.contains(key) && path.add(key)) {
+
+			for (final String referencedKey : resolve(entries.get(key).references)) {
+
+				if (referencedKey.startsWith(prefix)) {
+
+					addInDependencyOrder(referencedKey, prefix, keys, path);
+				}
+			}
+
+			path.remove(key);
+			keys.add(key);
+		}
+	}
+
+	private Collection<String> resolve(final Collection<String> references) {
+
+		final List<String> keys = new LinkedList<>();
+
+		for (final String reference : references) {
+
+			final String template  = TEMPLATES  + reference + ".html";
+			final String component = COMPONENTS + reference + ".html";
+
+			if (entries.containsKey(template)) {
+				keys.add(template);
+			}
+
+			if (entries.containsKey(component)) {
+				keys.add(component);
+			}
+		}
+
+		return keys;
+	}
+
+	// ----- private static methods -----
+	private static Entry hashDocument(final Path path, final Object configuration) {
+
+		try {
+
+			final String content  = new String(Files.readAllBytes(path), Charset.forName("utf-8"));
+			final Entry entry     = new Entry(hash(content, configuration));
+			final Matcher matcher = referencePattern.matcher(content);
+
+			while (matcher.find()) {
+				entry.references.add(matcher.group(1));
+			}
+
+			return entry;
+
+		} catch (IOException ioex) {
+			logger.warn("Unable to hash file {}: {}", path, ioex.getMessage());
+		}
+
+		return null;
+	}
+
+	private static List<Path> list(final Path directory, final boolean htmlOnly) {
+
+		if (Files.exists(directory)) {
+
+			try (final Stream<Path> stream = Files.walk(directory)) {
+
+				return stream
+					.filter(Files::isRegularFile)
+					.filter(p -> !htmlOnly || p.getFileName().toString().endsWith(".html"))
+					.collect(Collectors.toList());
+
+			} catch (IOException ioex) {
+				logger.warn("Unable to list directory {}: {}", directory, ioex.getMessage());
+			}
+		}
+
+		return new ArrayList<>();
+	}
+
+	private static String getRelativePath(final Path base, final Path path) {
+		return base.relativize(path).toString().replace(path.getFileSystem().getSeparator(), "/");
+	}
+
+	private static String getName(final Path path) {
+		return StringUtils.substringBeforeLast(path.getFileName().toString(), ".html");
+	}
+
+	private static Object sorted(final Object value) {
+
+		if (value instanceof Map) {
+
+			final Map<String, Object> map = new TreeMap<>();
+
+			for (final Map.Entry<?, ?> entry : ((Map<?, ?>)value).entrySet()) {
+				map.put(String.valueOf(entry.getKey()), sorted(entry.getValue()));
+			}
+
+			return map;
+		}
+
+		if (value instanceof Collection) {
+
+			final List<Object> list = new ArrayList<>();
+
+			for (final Object element : (Collection)value) {
+				list.add(sorted(element));
+			}
+
+			return list;
+		}
+
+		return value;
+	}
+
+	// ----- nested classes -----
+	private static class Entry {
+
+		private final Set<String> references = new LinkedHashSet<>();
+		private boolean shared               = false;
+		private String hash                  = null;
+		private String id                    = null;
+
+		public Entry(final String hash) {
+			this.hash = hash;
+		}
+	}
+
+	/**
+	 * The added, changed and removed artifacts of a deployment.
+	 */
+	public static class Diff {
+
+		private final Set<String> added   = new TreeSet<>();
+		private final Set<String> changed = new TreeSet<>();
+		private final Set<String> removed = new TreeSet<>();
+
+		public Set<String> getAdded() {
+			return added;
+		}
+
+		public Set<String> getChanged() {
+			return changed;
+		}
+
+		public Set<String> getRemoved() {
+			return removed;
+		}
+
+		public boolean isModified(final String key) {
+			return added.contains(key) || changed.contains(key);
+		}
+
+		public boolean isEmpty() {
+			return added.isEmpty() && changed.isEmpty() && removed.isEmpty();
+		}
+
+		public Map<String, Object> toMap() {
+
+			final Map<String, Object> map = new LinkedHashMap<>();
+
+			map.put("added",   new ArrayList<>(added));
+			map.put("changed", new ArrayList<>(changed));
+			map.put("removed", new ArrayList<>(removed));
+
+			return map;
+		}
+	}
+}
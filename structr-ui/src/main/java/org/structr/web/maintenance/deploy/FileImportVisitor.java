@@ -25,9 +25,16 @@ import java.nio.file.FileVisitor;
 import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -65,6 +72,9 @@ public class FileImportVisitor implements FileVisitor<Path> {
 	private Path basePath                   = null;
 	private App app                         = null;
 	private List<FileBase> deferredFiles    = null;
+	private List<String> newFiles           = null;
+	private List<Path> files                = null;
+	private Map<String, String> ids         = null;
 
 	public FileImportVisitor(final Path basePath, final Map<String, Object> config) {
 
@@ -73,11 +83,20 @@ public class FileImportVisitor implements FileVisitor<Path> {
 		this.basePath        = basePath;
 		this.config          = config;
 		this.app             = StructrApp.getInstance(this.securityContext);
-		this.deferredFiles   = new ArrayList<>();
+		this.deferredFiles   = Collections.synchronizedList(new ArrayList<>());
+		this.newFiles        = Collections.synchronizedList(new ArrayList<>());
+		this.files           = new ArrayList<>();
+		this.ids             = new ConcurrentHashMap<>();
 	}
 
 	@Override
 	public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+
+		// create folders while walking the tree so that files can be imported in parallel
+		if (!dir.equals(basePath)) {
+			createFolder(dir);
+		}
+
 		return FileVisitResult.CONTINUE;
 	}
 
@@ -90,9 +109,7 @@ public class FileImportVisitor implements FileVisitor<Path> {
 
 		} else if (attrs.isRegularFile()) {
 
-			final String fileName = file.getFileName().toString();
-
-			createFile(file, fileName);
+			files.add(file);
 		}
 
 		return FileVisitResult.CONTINUE;
@@ -110,6 +127,67 @@ public class FileImportVisitor implements FileVisitor<Path> {
 		return FileVisitResult.CONTINUE;
 	}
 
+	/**
+	 * Imports the files that were found while walking the file tree,
+	 * using the given number of threads. Each file is imported in its own
+	 * transaction, the metadata and thumbnails of new images are updated
+	 * afterwards.
+	 *
+	 * @param filter the filter for the paths (relative to the base path) of the files to import
+	 * @param threads the number of threads
+	 */
+	public void importFiles(final Predicate<String> filter, final int threads) {
+
+		final ExecutorService executor     = Executors.newFixedThreadPool(Math.max(1, threads));
+		final List<Future<String>> futures = new ArrayList<>();
+
+		try {
+
+			for (final Path file : files) {
+
+				if (filter.test(getRelativePath(file))) {
+
+					futures.add(executor.submit(() -> createFile(file, file.getFileName().toString())));
+				}
+			}
+
+			for (final Future<String> future : futures) {
+
+				try {
+
+					future.get();
+
+				} catch (ExecutionException ex) {
+					logger.warn("Unable to import file: {}", ex.getMessage());
+				}
+			}
+
+		} catch (InterruptedException iex) {
+
+			logger.warn("Interrupted while importing files");
+
+		} finally {
+
+			executor.shutdown();
+		}
+
+		for (final String uuid : newFiles) {
+			handleNewFile(uuid);
+		}
+
+		newFiles.clear();
+	}
+
+	/**
+	 * Returns the UUIDs of the imported files, keyed by their path relative
+	 * to the base path.
+	 *
+	 * @return the UUIDs of the imported files
+	 */
+	public Map<String, String> getIds() {
+		return ids;
+	}
+
 	public void handleDeferredFiles() {
 
 		if (!this.deferredFiles.isEmpty()) {
@@ -176,9 +254,10 @@ public class FileImportVisitor implements FileVisitor<Path> {
 		}
 	}
 
-	private void createFile(final Path path, final String fileName) throws IOException {
+	private String createFile(final Path path, final String fileName) throws IOException {
 
 		String newFileUuid = null;
+		String fileUuid    = null;
 		try (final Tx tx = app.tx(true, false, false)) {
 
 			final Path parentPath    = basePath.relativize(path).getParent();
@@ -249,6 +328,7 @@ public class FileImportVisitor implements FileVisitor<Path> {
 						file.setProperties(securityContext, fileProperties);
 					}
 
+					fileUuid = file.getUuid();
 				}
 			}
 
@@ -258,6 +338,19 @@ public class FileImportVisitor implements FileVisitor<Path> {
 			logger.error("Error occured while importing file " + fileName, ex);
 		}
 
+		if (fileUuid != null) {
+			ids.put(getRelativePath(path), fileUuid);
+		}
+
+		if (newFileUuid != null) {
+			newFiles.add(newFileUuid);
+		}
+
+		return fileUuid;
+	}
+
+	private void handleNewFile(final String newFileUuid) {
+
 		try (final Tx tx = app.tx(true, false, false)) {
 
 			if (newFileUuid != null) {
@@ -285,9 +378,12 @@ public class FileImportVisitor implements FileVisitor<Path> {
 			tx.success();
 
 		} catch (Exception ex) {
-			logger.error("Error occured while importing file " + fileName, ex);
+			logger.error("Error occured while updating metadata of file " + newFileUuid, ex);
 		}
+	}
 
+	private String getRelativePath(final Path file) {
+		return basePath.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
 	}
 
 	private void handleThumbnails(final Image img) {
@@ -115,6 +115,21 @@ public class PageImportVisitor implements FileVisitor<Path> {
 		return FileVisitResult.CONTINUE;
 	}
 
+	/**
+	 * Imports the page from the given file, replacing an existing page
+	 * with the same name. This method can be called from more than one
+	 * thread, each page is imported in its own transaction.
+	 *
+	 * @param file the page file
+	 * @return the UUID of the new page, or null if it was not imported
+	 *
+	 * @throws IOException
+	 * @throws FrameworkException
+	 */
+	public String importPage(final Path file) throws IOException, FrameworkException {
+		return createPage(file, file.getFileName().toString());
+	}
+
 	// ----- private methods -----
 	private Page getExistingPage(final String name) throws FrameworkException {
 		return StructrApp.getInstance().nodeQuery(Page.class).andName(name).getFirst();
@@ -178,9 +193,10 @@ public class PageImportVisitor implements FileVisitor<Path> {
 		}
 	}
 
-	private void createPage(final Path file, final String fileName) throws IOException, FrameworkException {
+	private String createPage(final Path file, final String fileName) throws IOException, FrameworkException {
 
 		final String name = StringUtils.substringBeforeLast(fileName, ".html");
+		String uuid       = null;
 
 		try (final Tx tx = app.tx(true, false, false)) {
 
@@ -226,6 +242,8 @@ public class PageImportVisitor implements FileVisitor<Path> {
 					if (properties != null) {
 						newPage.setProperties(securityContext, properties);
 					}
+
+					uuid = newPage.getUuid();
 				}
 
 			} else {
@@ -251,11 +269,15 @@ public class PageImportVisitor implements FileVisitor<Path> {
 
 					// add children
 					importer.createChildNodes(newPage, newPage);
+
+					uuid = newPage.getUuid();
 				}
 			}
 
 			tx.success();
 		}
+
+		return uuid;
 	}
 
 	/**
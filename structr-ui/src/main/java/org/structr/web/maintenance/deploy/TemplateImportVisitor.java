@@ -107,6 +107,20 @@ public class TemplateImportVisitor implements FileVisitor<Path> {
 		return FileVisitResult.CONTINUE;
 	}
 
+	/**
+	 * Imports the template from the given file, replacing an existing
+	 * template with the same name or UUID.
+	 *
+	 * @param file the template file
+	 * @return the UUID of the new template, or null if it was not imported
+	 *
+	 * @throws IOException
+	 * @throws FrameworkException
+	 */
+	public String importTemplate(final Path file) throws IOException, FrameworkException {
+		return createTemplate(file, file.getFileName().toString());
+	}
+
 	// ----- private methods -----
 	private DOMNode getExistingTemplate(final String name) {
 
@@ -155,7 +169,7 @@ public class TemplateImportVisitor implements FileVisitor<Path> {
 		return new PropertyMap();
 	}
 
-	private void createTemplate(final Path file, final String fileName) throws IOException, FrameworkException {
+	private String createTemplate(final Path file, final String fileName) throws IOException, FrameworkException {
 
 		final String templateName = StringUtils.substringBeforeLast(fileName, ".html");
 		final boolean byId        = DeployCommand.isUuid(templateName);
@@ -213,9 +227,13 @@ public class TemplateImportVisitor implements FileVisitor<Path> {
 
 			tx.success();
 
+			return template.getUuid();
+
 		} catch (Throwable t) {
 
 			logger.debug("Error trying to create template {}", fileName);
 		}
+
+		return null;
 	}
 }
@@ -0,0 +1,178 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.servlet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.web.common.ChunkedRenderBuffer;
+
+/**
+ * Writes the chunks of a {@link ChunkedRenderBuffer} to an asynchronous
+ * servlet output stream while the page is being rendered in another
+ * thread.
+ *
+ * The container calls {@link #onWritePossible()} when the output stream
+ * can accept more data. When the writer runs out of chunks while the
+ * stream is still ready, it stops until the rendering thread signals that
+ * a new chunk is available, so neither thread polls or sleeps.
+ *
+ * The writer must also be registered as a listener of the async context,
+ * so that the buffer is aborted and the rendering thread stops waiting
+ * for a client that does not read anymore, when the request times out, fails
+ * or is completed by the container.
+ */
+public class ChunkedOutputWriter implements WriteListener, AsyncListener {
+
+	private static final Logger logger = LoggerFactory.getLogger(ChunkedOutputWriter.class.getName());
+
+	private ChunkedRenderBuffer buffer = null;
+	private ServletOutputStream out    = null;
+	private AsyncContext async         = null;
+	private ByteBuffer inFlight        = null;
+	private boolean waiting            = false;
+	private boolean completed          = false;
+
+	public ChunkedOutputWriter(final AsyncContext async, final ServletOutputStream out) {
+
+		this.async = async;
+		this.out   = out;
+	}
+
+	public void setBuffer(final ChunkedRenderBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	/**
+	 * Called by the rendering thread when a chunk was queued or rendering
+	 * has finished. Resumes writing if the writer has stopped because no
+	 * chunk was available.
+	 */
+	public void chunkAvailable() {
+
+		synchronized (this) {
+
+			if (!waiting) {
+				return;
+			}
+
+			waiting = false;
+		}
+
+		try {
+
+			onWritePossible();
+
+		} catch (IOException ioex) {
+
+			onError(ioex);
+		}
+	}
+
+	// ----- interface WriteListener -----
+	@Override
+	public synchronized void onWritePossible() throws IOException {
+
+		while (!completed && out.isReady()) {
+
+			// the previous write has finished when the stream is ready again
+			ChunkedRenderBuffer.recycle(inFlight);
+			inFlight = null;
+
+			final ByteBuffer chunk = buffer.poll();
+			if (chunk != null) {
+
+				inFlight = chunk;
+				out.write(chunk.array(), chunk.arrayOffset(), chunk.limit());
+
+			} else if (buffer.isFinished()) {
+
+				completed = true;
+				async.complete();
+
+			} else {
+
+				// wait for the rendering thread
+				waiting = true;
+				return;
+			}
+		}
+	}
+
+	@Override
+	public void onError(final Throwable t) {
+
+		logger.debug("Unable to write rendered output: {}", t.getMessage());
+
+		abort();
+	}
+
+	// ----- interface AsyncListener -----
+	@Override
+	public void onComplete(final AsyncEvent event) throws IOException {
+
+		// the rendering thread must not wait for a response that is already complete
+		buffer.abort();
+
+		synchronized (this) {
+			completed = true;
+		}
+	}
+
+	@Override
+	public void onTimeout(final AsyncEvent event) throws IOException {
+
+		logger.debug("Timeout while writing rendered output");
+
+		abort();
+	}
+
+	@Override
+	public void onError(final AsyncEvent event) throws IOException {
+
+		logger.debug("Unable to write rendered output: {}", event.getThrowable() != null ? event.getThrowable().getMessage() : null);
+
+		abort();
+	}
+
+	@Override
+	public void onStartAsync(final AsyncEvent event) throws IOException {
+	}
+
+	// ----- private methods -----
+	private void abort() {
+
+		buffer.abort();
+
+		synchronized (this) {
+
+			if (!completed) {
+
+				completed = true;
+				async.complete();
+			}
+		}
+	}
+}
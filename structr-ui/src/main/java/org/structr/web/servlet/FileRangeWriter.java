@@ -0,0 +1,225 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.servlet;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedList;
+import java.util.Queue;
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import org.eclipse.jetty.server.HttpOutput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes regions of a file to a servlet output stream.
+ *
+ * The file is read with positional reads from a file channel, so only the
+ * requested regions are read. The data is read into a direct buffer that
+ * is handed to the container without copying if the container supports
+ * it. The writer can be used synchronously or as a write listener for
+ * asynchronous output, so that a download does not block a request
+ * thread while the client is reading.
+ */
+public class FileRangeWriter implements WriteListener {
+
+	private static final Logger logger   = LoggerFactory.getLogger(FileRangeWriter.class.getName());
+	private static final int BUFFER_SIZE = 65536;
+
+	private final ByteBuffer buffer       = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private final Queue<Segment> segments = new LinkedList<>();
+	private ServletOutputStream out       = null;
+	private FileChannel channel           = null;
+	private AsyncContext async            = null;
+	private byte[] copyBuffer             = null;
+
+	public FileRangeWriter(final FileChannel channel, final ServletOutputStream out) {
+
+		this.channel = channel;
+		this.out     = out;
+	}
+
+	/**
+	 * Adds the given text to the output, e.g. the header of a part of a
+	 * multipart response.
+	 *
+	 * @param text
+	 */
+	public void addText(final String text) {
+		segments.add(new Segment(text.getBytes(StandardCharsets.ISO_8859_1)));
+	}
+
+	/**
+	 * Adds the given region of the file to the output.
+	 *
+	 * @param start the position of the first byte
+	 * @param length the number of bytes
+	 */
+	public void addRange(final long start, final long length) {
+
+		if (length > 0) {
+			segments.add(new Segment(start, length));
+		}
+	}
+
+	/**
+	 * Writes the output and closes the file, blocking until all data is
+	 * written.
+	 *
+	 * @throws IOException
+	 */
+	public void write() throws IOException {
+
+		try {
+
+			while (writeNext()) {}
+
+		} finally {
+
+			close();
+		}
+	}
+
+	/**
+	 * Writes the output asynchronously whenever the output stream is ready.
+	 * The async context is completed and the file is closed afterwards.
+	 *
+	 * @param async
+	 */
+	public void start(final AsyncContext async) {
+
+		this.async = async;
+
+		out.setWriteListener(this);
+	}
+
+	// ----- interface WriteListener -----
+	@Override
+	public void onWritePossible() throws IOException {
+
+		while (out.isReady()) {
+
+			if (!writeNext()) {
+
+				close();
+				async.complete();
+
+				return;
+			}
+		}
+	}
+
+	@Override
+	public void onError(final Throwable t) {
+
+		logger.debug("Unable to write file: {}", t.getMessage());
+
+		close();
+		async.complete();
+	}
+
+	// ----- private methods -----
+	private boolean writeNext() throws IOException {
+
+		final Segment segment = segments.peek();
+		if (segment == null) {
+
+			return false;
+		}
+
+		if (segment.text != null) {
+
+			segments.poll();
+			out.write(segment.text);
+
+			return true;
+		}
+
+		buffer.clear();
+		buffer.limit((int)Math.min(buffer.capacity(), segment.remaining));
+
+		final int count = channel.read(buffer, segment.position);
+		if (count < 0) {
+
+			throw new EOFException("File was truncated while it was written");
+		}
+
+		segment.position  += count;
+		segment.remaining -= count;
+
+		if (segment.remaining == 0) {
+			segments.poll();
+		}
+
+		buffer.flip();
+
+		if (out instanceof HttpOutput) {
+
+			// Jetty writes the direct buffer to the connection without copying it
+			((HttpOutput)out).write(buffer);
+
+		} else {
+
+			if (copyBuffer == null) {
+				copyBuffer = new byte[BUFFER_SIZE];
+			}
+
+			final int length = buffer.remaining();
+
+			buffer.get(copyBuffer, 0, length);
+			out.write(copyBuffer, 0, length);
+		}
+
+		return true;
+	}
+
+	private void close() {
+
+		try {
+
+			channel.close();
+
+		} catch (IOException ioex) {
+			logger.warn("Unable to close file: {}", ioex.getMessage());
+		}
+	}
+
+	// ----- nested classes -----
+	private static class Segment {
+
+		private byte[] text    = null;
+		private long position  = 0L;
+		private long remaining = 0L;
+
+		public Segment(final byte[] text) {
+			this.text = text;
+		}
+
+		public Segment(final long position, final long length) {
+
+			this.position  = position;
+			this.remaining = length;
+		}
+	}
+}
@@ -21,7 +21,9 @@ package org.structr.web.servlet;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -36,18 +38,16 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Queue;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.servlet.AsyncContext;
 import javax.servlet.ServletException;
 import javax.servlet.ServletOutputStream;
-import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -75,6 +75,7 @@ import org.structr.core.auth.exception.AuthenticationException;
 import org.structr.core.converter.PropertyConverter;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.Principal;
+import org.structr.core.graph.TransactionCommand;
 import org.structr.core.graph.Tx;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
@@ -85,9 +86,13 @@ import org.structr.rest.service.StructrHttpServiceConfig;
 import org.structr.schema.ConfigurationProvider;
 import org.structr.util.Base64;
 import org.structr.web.auth.UiAuthenticator;
+import org.structr.web.common.ChunkedRenderBuffer;
 import org.structr.web.common.FileHelper;
 import org.structr.web.common.RenderContext;
 import org.structr.web.common.RenderContext.EditMode;
+import org.structr.web.common.RenderedOutputCache;
+import org.structr.web.common.RenderedOutputCache.CacheEntry;
+import org.structr.web.common.RenderedOutputCache.Dependencies;
 import org.structr.web.common.StringRenderBuffer;
 import org.structr.web.entity.AbstractFile;
 import org.structr.web.entity.FileBase;
@@ -123,6 +128,8 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 
 	private static final List<String> customResponseHeaders        = new LinkedList<>();
 	private static final ThreadLocalMatcher threadLocalUUIDMatcher = new ThreadLocalMatcher("[a-fA-F0-9]{32}");
+	private static final Pattern RangePattern                      = Pattern.compile("(\\d*)-(\\d*)");
+	private static final int MAX_RANGES                            = 16;
 	private static final ExecutorService threadPool                = Executors.newCachedThreadPool();
 
 	private final Pattern FilenameCleanerPattern                      = Pattern.compile("[\n\r]", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL);
@@ -151,6 +158,9 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 		}
 
 		this.isAsync = Settings.Async.getValue();
+
+		// invalidate rendered output when the underlying data changes
+		TransactionCommand.registerTransactionListener(RenderedOutputCache.getInstance());
 	}
 
 	@Override
@@ -452,15 +462,54 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 
 						setCustomResponseHeaders(response);
 
-						final boolean createsRawData = rootElement.getProperty(Page.pageCreatesRawData);
+						final boolean createsRawData    = rootElement.getProperty(Page.pageCreatesRawData);
+						final Integer cacheForSeconds   = rootElement.getProperty(Page.cacheForSeconds);
+						final RenderedOutputCache cache = RenderedOutputCache.getInstance();
+						String cacheKey                 = null;
+						CacheEntry cached               = null;
+
+						// the output of pages for anonymous users is cached as long as clients are allowed to cache it
+						if (user == null && !dontCache && cacheForSeconds != null && cacheForSeconds > 0 && RenderedOutputCache.isCacheable(renderContext)) {
+
+							cacheKey = RenderedOutputCache.getKey(renderContext, rootElement, 0);
+							cached   = cache.get(cacheKey);
+						}
+
+						// cached, async or not?
+						if (cached != null) {
+
+							try {
+
+								response.getOutputStream().write(cached.getOutput().getBytes("utf-8"));
+								response.getOutputStream().flush();
+								response.getOutputStream().close();
+
+							} catch (IOException ioex) {
+								logger.warn("", ioex);
+							}
+
+						} else if (isAsync && !createsRawData) {
+
+							final AsyncContext async         = request.startAsync();
+							final ServletOutputStream out    = async.getResponse().getOutputStream();
+							final ChunkedOutputWriter writer = new ChunkedOutputWriter(async, out);
+							final ChunkedRenderBuffer buffer = new ChunkedRenderBuffer(writer::chunkAvailable);
+							final DOMNode rootNode           = rootElement;
+							final String asyncCacheKey       = cacheKey;
+							final long generation            = cache.getGeneration();
+
+							writer.setBuffer(buffer);
+							renderContext.setBuffer(buffer);
+
+							// stop rendering when the request times out or the client goes away
+							async.addListener(writer);
 
-						// async or not?
-						if (isAsync && !createsRawData) {
+							if (asyncCacheKey != null) {
 
-							final AsyncContext async = request.startAsync();
-							final ServletOutputStream out = async.getResponse().getOutputStream();
-							final AtomicBoolean finished = new AtomicBoolean(false);
-							final DOMNode rootNode = rootElement;
+								// keep a copy of the streamed output for the cache
+								buffer.captureOutput();
+								renderContext.startRecordingDependencies();
+							}
 
 							threadPool.submit(new Runnable() {
 
@@ -471,10 +520,20 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 
 										// render
 										rootNode.render(renderContext, 0);
-										finished.set(true);
 
 										tx.success();
 
+										if (asyncCacheKey != null) {
+
+											final Dependencies dependencies = renderContext.stopRecordingDependencies();
+
+											// don't cache error pages, redirects and incomplete output
+											if (response.getStatus() == HttpServletResponse.SC_OK && !buffer.isAborted()) {
+
+												cache.put(generation, asyncCacheKey, buffer.getCapturedOutput(), dependencies, cacheForSeconds);
+											}
+										}
+
 									} catch (Throwable t) {
 
 										t.printStackTrace();
@@ -483,70 +542,68 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 										try {
 
 											response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-											finished.set(true);
 
 										} catch (IOException ex) {
 											logger.warn("", ex);
 										}
-									}
-								}
-
-							});
 
-							// start output write listener
-							out.setWriteListener(new WriteListener() {
+									} finally {
 
-								@Override
-								public void onWritePossible() throws IOException {
+										try {
 
-									try {
+											buffer.finish();
 
-										final Queue<String> queue = renderContext.getBuffer().getQueue();
-										while (out.isReady()) {
+										} catch (IOException ex) {
+											logger.warn("", ex);
+										}
+									}
+								}
 
-											String buffer = null;
+							});
 
-											synchronized (queue) {
-												buffer = queue.poll();
-											}
+							// start output write listener
+							out.setWriteListener(writer);
 
-											if (buffer != null) {
+						} else if (cacheKey == null) {
 
-												out.print(buffer);
+							final ServletOutputStream out    = response.getOutputStream();
+							final ChunkedRenderBuffer buffer = new ChunkedRenderBuffer(out);
 
-											} else {
+							renderContext.setBuffer(buffer);
 
-												if (finished.get()) {
+							// render, full chunks are written while rendering
+							rootElement.render(renderContext, 0);
 
-													async.complete();
+							try {
 
-													// prevent this block from being called again
-													break;
-												}
+								buffer.finish();
 
-												Thread.sleep(1);
-											}
-										}
+								out.flush();
+								out.close();
 
-									} catch (Throwable t) {
-										logger.warn("", t);
-									}
-								}
-
-								@Override
-								public void onError(Throwable t) {
-									logger.warn("", t);
-								}
-							});
+							} catch (IOException ioex) {
+								logger.warn("", ioex);
+							}
 
 						} else {
 
 							final StringRenderBuffer buffer = new StringRenderBuffer();
+							final long generation           = cache.getGeneration();
+
 							renderContext.setBuffer(buffer);
+							renderContext.startRecordingDependencies();
 
 							// render
 							rootElement.render(renderContext, 0);
 
+							final Dependencies dependencies = renderContext.stopRecordingDependencies();
+
+							// don't cache error pages and redirects
+							if (response.getStatus() == HttpServletResponse.SC_OK) {
+
+								cache.put(generation, cacheKey, buffer.getBuffer().toString(), dependencies, cacheForSeconds);
+							}
+
 							try {
 
 								response.getOutputStream().write(buffer.getBuffer().toString().getBytes("utf-8"));
@@ -1433,7 +1490,15 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 			callbackMap.put("requestedFileName", downloadAsFilename);
 		}
 
-		if (!EditMode.WIDGET.equals(edit) && notModifiedSince(request, response, file, false)) {
+		// templates are rendered when they are read, all other files are written directly from disk
+		final java.io.File fileOnDisk = file.getProperty(FileBase.isTemplate) ? null : file.getFileOnDisk();
+		final String etag             = fileOnDisk != null ? getETag(file) : null;
+
+		if (etag != null) {
+			response.setHeader("ETag", etag);
+		}
+
+		if (!EditMode.WIDGET.equals(edit) && notModified(request, response, file, etag)) {
 
 			out.flush();
 			out.close();
@@ -1454,6 +1519,13 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 
 				callbackMap.put("statusCode", HttpServletResponse.SC_OK);
 
+			} else if (fileOnDisk != null && fileOnDisk.isFile()) {
+
+				// 2a: write file or requested ranges to response
+				final String contentType = file.getContentType();
+
+				writeFile(request, response, fileOnDisk, contentType != null ? contentType : "application/octet-stream", etag, callbackMap);
+
 			} else {
 
 				// 2b: stream file to response
@@ -1551,6 +1623,244 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 		}
 	}
 
+	/**
+	 * Writes the given file to the response. Single and multiple byte
+	 * ranges are supported, the ranges are ignored if the If-Range header
+	 * does not match the current version of the file.
+	 */
+	private void writeFile(final HttpServletRequest request, final HttpServletResponse response, final java.io.File fileOnDisk, final String contentType, final String etag, final Map<String, Object> callbackMap) throws IOException {
+
+		final long length         = fileOnDisk.length();
+		final List<long[]> ranges = getRanges(request, response, etag, length);
+
+		response.setHeader("Accept-Ranges", "bytes");
+
+		if (ranges != null && ranges.isEmpty()) {
+
+			response.setHeader("Content-Range", "bytes */" + length);
+			response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+			callbackMap.put("statusCode", HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+
+			return;
+		}
+
+		final FileRangeWriter writer = new FileRangeWriter(FileChannel.open(fileOnDisk.toPath(), StandardOpenOption.READ), response.getOutputStream());
+
+		if (ranges == null) {
+
+			response.setContentType(contentType);
+			response.setContentLengthLong(length);
+			response.setStatus(HttpServletResponse.SC_OK);
+			callbackMap.put("statusCode", HttpServletResponse.SC_OK);
+
+			writer.addRange(0, length);
+
+		} else if (ranges.size() == 1) {
+
+			final long start = ranges.get(0)[0];
+			final long end   = ranges.get(0)[1];
+
+			response.setContentType(contentType);
+			response.setContentLengthLong(end - start + 1);
+			response.setHeader("Content-Range", String.format("bytes %s-%s/%s", start, end, length));
+			response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+			callbackMap.put("statusCode", HttpServletResponse.SC_PARTIAL_CONTENT);
+
+			writer.addRange(start, end - start + 1);
+
+		} else {
+
+			final String boundary = UUID.randomUUID().toString().replace("-", "");
+			long contentLength    = 0L;
+
+			for (final long[] range : ranges) {
+
+				final String header = String.format("\r\n--%s\r\nContent-Type: %s\r\nContent-Range: bytes %s-%s/%s\r\n\r\n", boundary, contentType, range[0], range[1], length);
+
+				writer.addText(header);
+				writer.addRange(range[0], range[1] - range[0] + 1);
+
+				contentLength += header.length() + range[1] - range[0] + 1;
+			}
+
+			final String trailer = "\r\n--" + boundary + "--\r\n";
+
+			writer.addText(trailer);
+
+			contentLength += trailer.length();
+
+			response.setContentType("multipart/byteranges; boundary=" + boundary);
+			response.setContentLengthLong(contentLength);
+			response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+			callbackMap.put("statusCode", HttpServletResponse.SC_PARTIAL_CONTENT);
+		}
+
+		if (isAsync && request.isAsyncSupported()) {
+
+			final AsyncContext async = request.startAsync();
+
+			// downloads of large files must not be limited by the default timeout
+			async.setTimeout(0);
+
+			writer.start(async);
+
+		} else {
+
+			writer.write();
+		}
+	}
+
+	/**
+	 * Returns the byte ranges requested in the Range header, as pairs of
+	 * first and last position. Overlapping and adjacent ranges are merged,
+	 * and requests with more than MAX_RANGES ranges are answered with the
+	 * whole file, so that a request cannot make the server send the same
+	 * parts of a file over and over again.
+	 *
+	 * @return the requested ranges, an empty list if none of the ranges
+	 * can be satisfied, or null if the whole file is to be sent
+	 */
+	private static List<long[]> getRanges(final HttpServletRequest request, final HttpServletResponse response, final String etag, final long length) {
+
+		final String range = request.getHeader("Range");
+		if (range == null || !range.startsWith("bytes=")) {
+
+			return null;
+		}
+
+		// the file has changed since the client received the first part of it
+		final String ifRange = request.getHeader("If-Range");
+		if (ifRange != null && !ifRange.equals(etag) && !ifRange.equals(response.getHeader("Last-Modified"))) {
+
+			return null;
+		}
+
+		final String[] parts = range.substring(6).split(",");
+		if (parts.length > MAX_RANGES) {
+
+			return null;
+		}
+
+		final List<long[]> ranges = new LinkedList<>();
+
+		try {
+
+			for (final String part : parts) {
+
+				final Matcher matcher = RangePattern.matcher(part.trim());
+				if (!matcher.matches()) {
+
+					// invalid ranges are ignored
+					return null;
+				}
+
+				final String startGroup = matcher.group(1);
+				final String endGroup   = matcher.group(2);
+				long start              = 0L;
+				long end                = length - 1;
+
+				if (startGroup.isEmpty()) {
+
+					if (endGroup.isEmpty()) {
+						return null;
+					}
+
+					// suffix range, i.e. the last n bytes
+					start = Math.max(0L, length - Long.valueOf(endGroup));
+
+				} else {
+
+					start = Long.valueOf(startGroup);
+
+					if (!endGroup.isEmpty()) {
+
+						end = Long.valueOf(endGroup);
+
+						if (end < start) {
+							return null;
+						}
+
+						end = Math.min(end, length - 1);
+					}
+				}
+
+				if (start < length && start <= end) {
+
+					ranges.add(new long[] { start, end });
+				}
+			}
+
+		} catch (NumberFormatException nfex) {
+			return null;
+		}
+
+		return mergeRanges(ranges);
+	}
+
+	/**
+	 * Sorts the given ranges by their first position and merges ranges
+	 * that overlap or are adjacent to each other.
+	 */
+	private static List<long[]> mergeRanges(final List<long[]> ranges) {
+
+		final List<long[]> merged = new LinkedList<>();
+		long[] current            = null;
+
+		Collections.sort(ranges, (a, b) -> Long.compare(a[0], b[0]));
+
+		for (final long[] range : ranges) {
+
+			if (current != null && range[0] <= current[1] + 1) {
+
+				current[1] = Math.max(current[1], range[1]);
+
+			} else {
+
+				current = range;
+				merged.add(current);
+			}
+		}
+
+		return merged;
+	}
+
+	/**
+	 * Returns an entity tag for the given file, based on its checksum.
+	 */
+	private static String getETag(final FileBase file) {
+
+		final Long checksum = file.getChecksum();
+		if (checksum != null) {
+
+			return "\"" + Long.toHexString(checksum) + "\"";
+		}
+
+		return null;
+	}
+
+	/**
+	 * Checks the If-None-Match header against the given entity tag, and
+	 * the If-Modified-Since header if there is no If-None-Match header or
+	 * no entity tag.
+	 */
+	private static boolean notModified(final HttpServletRequest request, final HttpServletResponse response, final AbstractNode node, final String etag) {
+
+		final boolean notModifiedSince = notModifiedSince(request, response, node, false);
+		final String ifNoneMatch       = request.getHeader("If-None-Match");
+
+		if (ifNoneMatch != null && etag != null) {
+
+			final boolean matches = "*".equals(ifNoneMatch.trim()) || Arrays.asList(ifNoneMatch.split("\\s*,\\s*")).contains(etag);
+
+			// If-None-Match takes precedence over If-Modified-Since
+			response.setStatus(matches ? HttpServletResponse.SC_NOT_MODIFIED : HttpServletResponse.SC_OK);
+
+			return matches;
+		}
+
+		return notModifiedSince;
+	}
+
 	/**
 	 * Check if the given page is visible for the requested site defined by
 	 * a hostname and a port.
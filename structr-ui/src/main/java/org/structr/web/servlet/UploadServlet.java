@@ -18,11 +18,9 @@
  */
 package org.structr.web.servlet;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 import javax.servlet.ServletException;
@@ -30,10 +28,12 @@ import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import org.apache.commons.fileupload.FileItem;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadBase.FileUploadIOException;
 import org.apache.commons.fileupload.FileUploadException;
-import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.apache.commons.fileupload.util.Streams;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.exception.ExceptionUtils;
@@ -66,6 +66,10 @@ import org.structr.web.entity.Folder;
 /**
  * Simple upload servlet.
  *
+ * Uploaded files are streamed directly into their location on disk while
+ * the request is read, checksum, size and content type are determined on
+ * the fly. The content of an upload is never buffered in memory or in a
+ * temporary file.
  *
  */
 public class UploadServlet extends HttpServlet implements HttpServiceServlet {
@@ -75,12 +79,10 @@ public class UploadServlet extends HttpServlet implements HttpServiceServlet {
 	private static final String REDIRECT_AFTER_UPLOAD_PARAMETER    = "redirectOnSuccess";
 	private static final String APPEND_UUID_ON_REDIRECT_PARAMETER  = "appendUuidOnRedirect";
 	private static final String UPLOAD_FOLDER_PATH_PARAMETER       = "uploadFolderPath";
-	private static final int MEGABYTE                              = 1024 * 1024;
-	private static final int MEMORY_THRESHOLD                      = 10 * MEGABYTE;  // above 10 MB, files are stored on disk
+	private static final long MEGABYTE                             = 1024L * 1024L;
 
 	// non-static fields
 	private ServletFileUpload uploader = null;
-	private File filesDir = null;
 	private final StructrHttpServiceConfig config = new StructrHttpServiceConfig();
 
 	public UploadServlet() {
@@ -100,16 +102,8 @@ public class UploadServlet extends HttpServlet implements HttpServiceServlet {
 	@Override
 	public void init() {
 
-		DiskFileItemFactory fileFactory = new DiskFileItemFactory();
-		fileFactory.setSizeThreshold(MEMORY_THRESHOLD);
-
-		filesDir = new File(Settings.TmpPath.getValue());
-		if (!filesDir.exists()) {
-			filesDir.mkdir();
-		}
-
-		fileFactory.setRepository(filesDir);
-		uploader = new ServletFileUpload(fileFactory);
+		// streaming API, file items are read directly from the request
+		uploader = new ServletFileUpload();
 	}
 
 	@Override
@@ -200,39 +194,39 @@ public class UploadServlet extends HttpServlet implements HttpServiceServlet {
 
 			response.setContentType("text/html");
 
-			List<FileItem> fileItemsList = uploader.parseRequest(request);
-			Iterator<FileItem> fileItemsIterator = fileItemsList.iterator();
-
-			final Map<String, Object> params = new HashMap<>();
+			// form fields must precede the file fields they refer to
+			final FileItemIterator fileItemsIterator = uploader.getItemIterator(request);
+			final Map<String, Object> params         = new HashMap<>();
 
 			while (fileItemsIterator.hasNext()) {
 
-				final FileItem item = fileItemsIterator.next();
+				final FileItemStream item = fileItemsIterator.next();
 
 				if (item.isFormField()) {
 
 					final String fieldName = item.getFieldName();
+					final String value     = Streams.asString(item.openStream(), "UTF-8");
 
 					if (REDIRECT_AFTER_UPLOAD_PARAMETER.equals(fieldName)) {
 
-						redirectUrl = item.getString();
+						redirectUrl = value;
 
 					} else if (APPEND_UUID_ON_REDIRECT_PARAMETER.equals(fieldName)) {
 
-						appendUuidOnRedirect = "true".equalsIgnoreCase(item.getString());
+						appendUuidOnRedirect = "true".equalsIgnoreCase(value);
 
 					} else if (UPLOAD_FOLDER_PATH_PARAMETER.equals(fieldName)) {
 
-						path = item.getString();
+						path = value;
 
 					} else {
 
-						params.put(item.getFieldName(), item.getString());
+						params.put(fieldName, value);
 					}
 
 				} else {
 
-					try {
+					try (final InputStream fileStream = item.openStream()) {
 
 						final String contentType = item.getContentType();
 						boolean isImage = (contentType != null && contentType.startsWith("image"));
@@ -274,10 +268,11 @@ public class UploadServlet extends HttpServlet implements HttpServiceServlet {
 							type = cls.getSimpleName();
 						}
 
-						final String name = item.getName().replaceAll("\\\\", "/");
-						FileBase newFile  = null;
-						String uuid       = null;
-						boolean retry     = true;
+						final String name       = item.getName().replaceAll("\\\\", "/");
+						java.io.File fileOnDisk = null;
+						FileBase newFile        = null;
+						String uuid             = null;
+						boolean retry           = true;
 
 						while (retry) {
 
@@ -285,7 +280,7 @@ public class UploadServlet extends HttpServlet implements HttpServiceServlet {
 
 							try (final Tx tx = StructrApp.getInstance().tx()) {
 
-								newFile = FileHelper.createFile(securityContext, IOUtils.toByteArray(item.getInputStream()), contentType, cls);
+								newFile = (FileBase)StructrApp.getInstance(securityContext).create(cls, new PropertyMap());
 
 								final PropertyMap changedProperties = new PropertyMap();
 
@@ -318,7 +313,30 @@ public class UploadServlet extends HttpServlet implements HttpServiceServlet {
 
 								newFile.setProperties(securityContext, changedProperties);
 
-								uuid = newFile.getUuid();
+								fileOnDisk = FileHelper.assignFileOnDisk(newFile);
+								uuid       = newFile.getUuid();
+
+								tx.success();
+
+							} catch (RetryException rex) {
+								retry = true;
+							}
+						}
+
+						// the transaction is not held open while the data is written
+						final PropertyMap metadata = writeToDisk(securityContext, newFile, fileOnDisk, fileStream, name, contentType);
+
+						metadata.put(FileBase.version, 1);
+
+						retry = true;
+
+						while (retry) {
+
+							retry = false;
+
+							try (final Tx tx = StructrApp.getInstance().tx()) {
+
+								newFile.setProperties(securityContext, metadata);
 
 								tx.success();
 
@@ -354,6 +372,11 @@ public class UploadServlet extends HttpServlet implements HttpServiceServlet {
 
 						}
 
+					} catch (FileUploadIOException fuex) {
+
+						// size limits are reported like in a non-streaming upload
+						throw fuex.getCause();
+
 					} catch (IOException ex) {
 						logger.warn("Could not upload file", ex);
 					}
@@ -425,14 +448,17 @@ public class UploadServlet extends HttpServlet implements HttpServiceServlet {
 			uploader.setFileSizeMax(MEGABYTE * Settings.UploadMaxFileSize.getValue());
 			uploader.setSizeMax(MEGABYTE * Settings.UploadMaxRequestSize.getValue());
 
-			List<FileItem> fileItemsList = uploader.parseRequest(request);
-			Iterator<FileItem> fileItemsIterator = fileItemsList.iterator();
+			final FileItemIterator fileItemsIterator = uploader.getItemIterator(request);
 
 			while (fileItemsIterator.hasNext()) {
 
-				final FileItem fileItem = fileItemsIterator.next();
+				final FileItemStream fileItem = fileItemsIterator.next();
+
+				if (fileItem.isFormField()) {
+					continue;
+				}
 
-				try {
+				try (final InputStream fileStream = fileItem.openStream()) {
 
 					final GraphObject node = StructrApp.getInstance().getNodeById(uuid);
 
@@ -448,7 +474,7 @@ public class UploadServlet extends HttpServlet implements HttpServiceServlet {
 						final org.structr.dynamic.File file = (org.structr.dynamic.File) node;
 						if (file.isGranted(Permission.write, securityContext)) {
 
-							FileHelper.writeToFile(file, fileItem.getInputStream());
+							FileHelper.writeToFile(file, fileStream);
 							file.increaseVersion();
 
 							// upload trigger
@@ -477,6 +503,30 @@ public class UploadServlet extends HttpServlet implements HttpServiceServlet {
 		}
 	}
 
+	// ----- private methods -----
+	/**
+	 * Writes the uploaded data to disk, the new file node is removed if
+	 * the upload fails, e.g. because it exceeds the maximum file size.
+	 */
+	private PropertyMap writeToDisk(final SecurityContext securityContext, final FileBase newFile, final java.io.File fileOnDisk, final InputStream fileStream, final String name, final String contentType) throws FrameworkException, IOException {
+
+		try {
+
+			return FileHelper.writeToDisk(fileOnDisk, fileStream, name, contentType);
+
+		} catch (IOException ioex) {
+
+			try (final Tx tx = StructrApp.getInstance().tx()) {
+
+				StructrApp.getInstance(securityContext).delete(newFile);
+
+				tx.success();
+			}
+
+			throw ioex;
+		}
+	}
+
 	private String errorPage(final Throwable t) {
 		return "<html><head><title>Error in Upload</title></head><body><h1>Error in Upload</h1><p>" + t.toString() + "</p>\n<!--" + ExceptionUtils.getStackTrace(t) + "--></body></html>";
 	}
@@ -0,0 +1,240 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.websocket;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WebSocketException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+
+/**
+ * Sends broadcast messages to websocket clients asynchronously, so that
+ * committing transactions do not wait for the clients.
+ *
+ * Each client has a bounded queue of serialized messages that is drained
+ * by a fixed number of sender threads, messages are sent to each client in
+ * the order they were queued. If the queue of a slow client is full, its
+ * oldest messages are dropped.
+ */
+public class BroadcastDispatcher {
+
+	private static final Logger logger             = LoggerFactory.getLogger(BroadcastDispatcher.class.getName());
+	private static final AtomicInteger threadCount = new AtomicInteger();
+	private static final AtomicLong queueDepth     = new AtomicLong();
+	private static final AtomicLong maxQueueDepth  = new AtomicLong();
+	private static final AtomicLong maxLatency     = new AtomicLong();
+	private static final LongAdder totalLatency    = new LongAdder();
+	private static final LongAdder dropped         = new LongAdder();
+	private static final LongAdder failed          = new LongAdder();
+	private static final LongAdder sent            = new LongAdder();
+
+	private final Map<StructrWebSocket, ClientQueue> queues = new ConcurrentHashMap<>();
+	private WebsocketController controller                  = null;
+	private ExecutorService executor                        = null;
+
+	public BroadcastDispatcher(final WebsocketController controller) {
+
+		this.controller = controller;
+		this.executor   = Executors.newFixedThreadPool(Settings.WebsocketBroadcastThreads.getValue(), (r) -> {
+
+			final Thread thread = new Thread(r, "WebSocketBroadcast-" + threadCount.incrementAndGet());
+
+			thread.setDaemon(true);
+
+			return thread;
+		});
+	}
+
+	/**
+	 * Queues the given message for the given client.
+	 *
+	 * @param socket the client
+	 * @param message the serialized message
+	 */
+	public void send(final StructrWebSocket socket, final String message) {
+		queues.computeIfAbsent(socket, ClientQueue::new).offer(message);
+	}
+
+	/**
+	 * Discards all queued messages of the given client.
+	 *
+	 * @param socket the client
+	 */
+	public void remove(final StructrWebSocket socket) {
+
+		final ClientQueue queue = queues.remove(socket);
+		if (queue != null) {
+
+			queue.clear();
+		}
+	}
+
+	public static Map<String, Object> getStatistics() {
+
+		final Map<String, Object> statistics = new LinkedHashMap<>();
+		final long count                     = sent.sum();
+
+		statistics.put("sent",           count);
+		statistics.put("dropped",        dropped.sum());
+		statistics.put("failed",         failed.sum());
+		statistics.put("queueDepth",     queueDepth.get());
+		statistics.put("maxQueueDepth",  maxQueueDepth.get());
+		statistics.put("averageLatency", count > 0 ? (double)totalLatency.sum() / (double)count / 1000000.0 : 0.0);
+		statistics.put("maxLatency",     maxLatency.get() / 1000000.0);
+
+		return statistics;
+	}
+
+	// ----- nested classes -----
+	private class ClientQueue implements Runnable {
+
+		private final AtomicBoolean scheduled = new AtomicBoolean(false);
+		private Queue<QueuedMessage> queue    = null;
+		private StructrWebSocket socket       = null;
+
+		public ClientQueue(final StructrWebSocket socket) {
+
+			this.queue  = new ArrayBlockingQueue<>(Settings.WebsocketBroadcastQueue.getValue());
+			this.socket = socket;
+		}
+
+		public void offer(final String message) {
+
+			final QueuedMessage queuedMessage = new QueuedMessage(message);
+
+			while (!queue.offer(queuedMessage)) {
+
+				// drop oldest message of a slow client
+				if (queue.poll() != null) {
+
+					queueDepth.decrementAndGet();
+					dropped.increment();
+				}
+			}
+
+			maxQueueDepth.accumulateAndGet(queueDepth.incrementAndGet(), Math::max);
+
+			schedule();
+		}
+
+		public void clear() {
+
+			while (queue.poll() != null) {
+				queueDepth.decrementAndGet();
+			}
+		}
+
+		@Override
+		public void run() {
+
+			try {
+
+				QueuedMessage message = queue.poll();
+				while (message != null) {
+
+					queueDepth.decrementAndGet();
+
+					send(message);
+
+					message = queue.poll();
+				}
+
+			} finally {
+
+				scheduled.set(false);
+
+				// a message might have been queued after the last poll
+				if (!queue.isEmpty()) {
+					schedule();
+				}
+			}
+		}
+
+		// ----- private methods -----
+		private void schedule() {
+
+			if (scheduled.compareAndSet(false, true)) {
+
+				executor.execute(this);
+			}
+		}
+
+		private void send(final QueuedMessage message) {
+
+			final Session session = socket.getSession();
+			if (session != null) {
+
+				try {
+
+					synchronized (session) {
+						session.getRemote().sendString(message.message);
+					}
+
+					final long latency = System.nanoTime() - message.queued;
+
+					totalLatency.add(latency);
+					maxLatency.accumulateAndGet(latency, Math::max);
+					sent.increment();
+
+				} catch (Throwable t) {
+
+					failed.increment();
+
+					if (t instanceof WebSocketException) {
+
+						WebSocketException wse = (WebSocketException) t;
+
+						if ("RemoteEndpoint unavailable, current state [CLOSED], expecting [OPEN or CONNECTED]".equals(wse.getMessage())) {
+
+							controller.unregisterClient(socket);
+
+							logger.warn("Client removed from broadcast list: {}", socket);
+						}
+					}
+
+					logger.debug("Error sending message to client.", t);
+				}
+			}
+		}
+	}
+
+	private static class QueuedMessage {
+
+		private String message = null;
+		private long queued    = 0L;
+
+		public QueuedMessage(final String message) {
+
+			this.message = message;
+			this.queued  = System.nanoTime();
+		}
+	}
+}
@@ -348,7 +348,10 @@ public class StructrWebSocket implements WebSocketListener {
 				securityContext.clearCustomView();
 			}
 
-			session.getRemote().sendString(msg);
+			// broadcast messages are sent to the same session by other threads
+			synchronized (session) {
+				session.getRemote().sendString(msg);
+			}
 
 			tx.success();
 
@@ -20,7 +20,9 @@ package org.structr.websocket;
 
 import com.google.gson.Gson;
 import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
@@ -31,7 +33,6 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import org.eclipse.jetty.util.URIUtil;
 import org.eclipse.jetty.websocket.api.Session;
-import org.eclipse.jetty.websocket.api.WebSocketException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.graph.RelationshipType;
@@ -53,8 +54,11 @@ import org.structr.websocket.message.MessageBuilder;
 import org.structr.websocket.message.WebSocketMessage;
 
 /**
+ * Broadcasts modifications to the connected websocket clients.
  *
- *
+ * Broadcast messages are filtered and serialized on the committing thread,
+ * once for each distinct result a client is allowed to see, and sent to the
+ * clients asynchronously by the {@link BroadcastDispatcher}.
  */
 public class WebsocketController implements StructrTransactionListener {
 
@@ -62,11 +66,13 @@ public class WebsocketController implements StructrTransactionListener {
 	private static final Set<String> BroadcastCommands = new HashSet<>(Arrays.asList(new String[] { "UPDATE", "ADD", "CREATE" } ));
 
 	private final Set<StructrWebSocket> clients = ConcurrentHashMap.newKeySet();
+	private BroadcastDispatcher dispatcher      = null;
 	private Gson gson                           = null;
 
 	public WebsocketController(final Gson gson) {
 
-		this.gson = gson;
+		this.dispatcher = new BroadcastDispatcher(this);
+		this.gson       = gson;
 	}
 
 	public void registerClient(final StructrWebSocket client) {
@@ -77,6 +83,7 @@ public class WebsocketController implements StructrTransactionListener {
 	public void unregisterClient(final StructrWebSocket client) {
 
 		clients.remove(client);
+		dispatcher.remove(client);
 	}
 
 	private void broadcast(final WebSocketMessage webSocketData) {
@@ -89,12 +96,12 @@ public class WebsocketController implements StructrTransactionListener {
 		// session must be valid to be received by the client
 		webSocketData.setSessionValid(true);
 
-		final String pagePath                        = (String) webSocketData.getNodeData().get("pagePath");
-		final String encodedPath                     = URIUtil.encodePath(pagePath);
-		final List<StructrWebSocket> clientsToRemove = new LinkedList<>();
-		final List<? extends GraphObject> result     = webSocketData.getResult();
-		final String command                         = webSocketData.getCommand();
-		final GraphObject obj                        = webSocketData.getGraphObject();
+		final String pagePath                    = (String) webSocketData.getNodeData().get("pagePath");
+		final String encodedPath                 = URIUtil.encodePath(pagePath);
+		final List<? extends GraphObject> result = webSocketData.getResult();
+		final String command                     = webSocketData.getCommand();
+		final GraphObject obj                    = webSocketData.getGraphObject();
+		final Map<List<String>, String> messages = new HashMap<>();
 
 		String message;
 
@@ -137,43 +144,46 @@ public class WebsocketController implements StructrTransactionListener {
 
 				if (result != null && !result.isEmpty() && BroadcastCommands.contains(command)) {
 
-					final WebSocketMessage clientData = webSocketData.copy();
-
-					clientData.setResult(filter(securityContext, result));
+					final List<? extends GraphObject> filteredResult = filter(securityContext, result);
 
-					message = gson.toJson(clientData, WebSocketMessage.class);
+					// serialize once for all clients that see the same result
+					message = messages.get(getIds(filteredResult));
+					if (message == null) {
 
-				} else {
+						final WebSocketMessage clientData = webSocketData.copy();
 
-					message = gson.toJson(webSocketData, WebSocketMessage.class);
-				}
+						clientData.setResult(filteredResult);
 
-				try {
+						message = gson.toJson(clientData, WebSocketMessage.class);
 
-					session.getRemote().sendString(message);
+						messages.put(getIds(filteredResult), message);
+					}
 
-				} catch (Throwable t) {
+				} else {
 
-					if (t instanceof WebSocketException) {
+					message = messages.get(null);
+					if (message == null) {
 
-						WebSocketException wse = (WebSocketException) t;
+						message = gson.toJson(webSocketData, WebSocketMessage.class);
 
-						if ("RemoteEndpoint unavailable, current state [CLOSED], expecting [OPEN or CONNECTED]".equals(wse.getMessage())) {
-							clientsToRemove.add(socket);
-						}
+						messages.put(null, message);
 					}
-
-					logger.debug("Error sending message to client.", t);
 				}
+
+				dispatcher.send(socket, message);
 			}
 		}
+	}
 
-		for (StructrWebSocket s : clientsToRemove) {
+	private List<String> getIds(final List<? extends GraphObject> objects) {
 
-			unregisterClient(s);
+		final List<String> ids = new ArrayList<>(objects.size());
 
-			logger.warn("Client removed from broadcast list: {}", s);
+		for (final GraphObject obj : objects) {
+			ids.add(obj.getUuid());
 		}
+
+		return ids;
 	}
 
 	private <T extends GraphObject> List<T> filter(final SecurityContext securityContext, final List<T> all) {
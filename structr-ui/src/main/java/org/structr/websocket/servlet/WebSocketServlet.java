@@ -23,8 +23,10 @@ import com.google.gson.GsonBuilder;
 import org.eclipse.jetty.websocket.servlet.WebSocketServletFactory;
 import org.structr.api.config.Settings;
 import org.structr.core.graph.TransactionCommand;
+import org.structr.rest.resource.EnvResource;
 import org.structr.rest.service.HttpServiceServlet;
 import org.structr.rest.service.StructrHttpServiceConfig;
+import org.structr.websocket.BroadcastDispatcher;
 import org.structr.websocket.StructrWebSocket;
 import org.structr.websocket.StructrWebSocketCreator;
 import org.structr.websocket.WebSocketDataGSONAdapter;
@@ -80,6 +82,9 @@ public class WebSocketServlet extends org.eclipse.jetty.websocket.servlet.WebSoc
 		// register (Structr) transaction listener
 		TransactionCommand.registerTransactionListener(syncController);
 
+		// export send latency and queue depth of broadcast messages
+		EnvResource.registerStatistics("websocketStatistics", BroadcastDispatcher::getStatistics);
+
 		factory.getPolicy().setIdleTimeout(61000);
 		factory.setCreator(new StructrWebSocketCreator(syncController, gson, config.getAuthenticator()));
 		factory.register(StructrWebSocket.class);
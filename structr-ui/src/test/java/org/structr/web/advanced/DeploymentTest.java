@@ -63,6 +63,7 @@ import org.structr.schema.json.JsonSchema;
 import org.structr.schema.json.JsonType;
 import org.structr.web.StructrUiTest;
 import org.structr.web.common.FileHelper;
+import org.structr.web.common.RenderContext;
 import org.structr.web.entity.FileBase;
 import org.structr.web.entity.Folder;
 import org.structr.web.entity.User;
@@ -1847,6 +1848,196 @@ public class DeploymentTest extends StructrUiTest {
 		compare(calculateHash(), true);
 	}
 
+	@Test
+	public void test39IncrementalDeployment() {
+
+		// setup
+		try (final Tx tx = app.tx()) {
+
+			Page.createSimplePage(securityContext, "test39a");
+			Page.createSimplePage(securityContext, "test39b");
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fail("Unexpected exception.");
+		}
+
+		final DeployCommand cmd = app.command(DeployCommand.class);
+		final Path tmp          = Paths.get("/tmp/structr-deployment-test" + System.currentTimeMillis() + System.nanoTime());
+
+		try {
+
+			final Map<String, Object> exportParams = new HashMap<>();
+			exportParams.put("mode", "export");
+			exportParams.put("target", tmp.toString());
+
+			final Map<String, Object> importParams = new HashMap<>();
+			importParams.put("source", tmp.toString());
+
+			final Map<String, Object> dryRunParams = new HashMap<>();
+			dryRunParams.put("source", tmp.toString());
+			dryRunParams.put("dryRun", true);
+
+			cmd.execute(exportParams);
+
+			Assert.assertTrue("Export should write a deployment manifest", Files.exists(tmp.resolve("manifest.json")));
+
+			cleanDatabase();
+
+			cmd.execute(importParams);
+
+			final String uuid = getPageUuid("test39b");
+
+			// nothing has changed since the last import
+			cmd.execute(dryRunParams);
+
+			Assert.assertEquals("Invalid number of added artifacts",   "0", cmd.getCustomHeaders().get("added"));
+			Assert.assertEquals("Invalid number of changed artifacts", "0", cmd.getCustomHeaders().get("changed"));
+			Assert.assertEquals("Invalid number of removed artifacts", "0", cmd.getCustomHeaders().get("removed"));
+
+			// modify a single page
+			final Path page = tmp.resolve("pages").resolve("test39a.html");
+			Files.write(page, new String(Files.readAllBytes(page), "utf-8").replace("Initial body text", "Modified body text").getBytes("utf-8"));
+
+			// a dry run reports the change but leaves the database untouched
+			cmd.execute(dryRunParams);
+
+			Assert.assertEquals("Invalid number of changed artifacts", "1", cmd.getCustomHeaders().get("changed"));
+			Assert.assertEquals("Dry run should not modify the database", 0, countContent("Modified body text"));
+
+			cmd.execute(importParams);
+
+			Assert.assertEquals("Modified page should be imported", 1, countContent("Modified body text"));
+			Assert.assertEquals("Unmodified page should not be replaced", uuid, getPageUuid("test39b"));
+
+			// remove a page
+			Files.delete(tmp.resolve("pages").resolve("test39b.html"));
+
+			cmd.execute(importParams);
+
+			Assert.assertNull("Removed page should be deleted", getPageUuid("test39b"));
+			Assert.assertNotNull("Unmodified page should not be deleted", getPageUuid("test39a"));
+
+		} catch (IOException | FrameworkException ex) {
+
+			logger.warn("", ex);
+			fail("Unexpected exception.");
+
+		} finally {
+
+			try {
+				// clean directories
+				Files.walkFileTree(tmp, new DeletingFileVisitor());
+				Files.delete(tmp);
+
+			} catch (IOException ioex) {}
+		}
+	}
+
+	@Test
+	public void test40IncrementalDeploymentWithSharedComponents() {
+
+		// setup
+		try (final Tx tx = app.tx()) {
+
+			// create first page with a shared component and a shared template
+			final Page page1 = Page.createNewPage(securityContext,   "test40_1");
+			final Html html1 = createElement(page1, page1, "html");
+			final Head head1 = createElement(page1, html1, "head");
+			createElement(page1, head1, "title", "test40_1");
+
+			final Body body1 = createElement(page1, html1, "body");
+			final Div div1   = createElement(page1, body1, "div");
+
+			createElement(page1, div1, "div", "component text");
+
+			// a shared component that is used in another shared component
+			final Div div2 = createElement(page1, div1, "div");
+			createElement(page1, div2, "div", "inner text");
+
+			final Div inner = createComponent(div2);
+			inner.setProperty(AbstractNode.name, "test40inner");
+
+			final Div component = createComponent(div1);
+			component.setProperty(AbstractNode.name, "test40component");
+
+			final Template template1 = createTemplate(page1, body1, "template text");
+			final Template template  = createComponent(template1);
+			template.setProperty(AbstractNode.name, "test40template");
+
+			// create second page that re-uses both
+			final Page page2 = Page.createNewPage(securityContext,   "test40_2");
+			final Html html2 = createElement(page2, page2, "html");
+			final Head head2 = createElement(page2, html2, "head");
+			createElement(page2, head2, "title", "test40_2");
+
+			final Body body2 = createElement(page2, html2, "body");
+
+			cloneComponent(component, body2);
+			cloneComponent(template, body2);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fail("Unexpected exception.");
+		}
+
+		final DeployCommand cmd = app.command(DeployCommand.class);
+		final Path tmp          = Paths.get("/tmp/structr-deployment-test" + System.currentTimeMillis() + System.nanoTime());
+
+		try {
+
+			final Map<String, Object> exportParams = new HashMap<>();
+			exportParams.put("mode", "export");
+			exportParams.put("target", tmp.toString());
+
+			final Map<String, Object> importParams = new HashMap<>();
+			importParams.put("source", tmp.toString());
+
+			cmd.execute(exportParams);
+
+			cleanDatabase();
+
+			cmd.execute(importParams);
+
+			// modify the shared components and the shared template, but none of the pages
+			final Path component = tmp.resolve("components").resolve("test40component.html");
+			final Path inner     = tmp.resolve("components").resolve("test40inner.html");
+			final Path template  = tmp.resolve("templates").resolve("test40template.html");
+
+			Files.write(component, new String(Files.readAllBytes(component), "utf-8").replace("component text", "modified component text").getBytes("utf-8"));
+			Files.write(inner,     new String(Files.readAllBytes(inner),     "utf-8").replace("inner text",     "modified inner text").getBytes("utf-8"));
+			Files.write(template,  new String(Files.readAllBytes(template),  "utf-8").replace("template text",  "modified template text").getBytes("utf-8"));
+
+			cmd.execute(importParams);
+
+			// both pages must render the modified shared component and template
+			for (final String name : new String[] { "test40_1", "test40_2" }) {
+
+				final String content = getPageContent(name);
+
+				Assert.assertTrue("Page " + name + " should contain the modified component", content.contains("modified component text"));
+				Assert.assertTrue("Page " + name + " should contain the modified inner component", content.contains("modified inner text"));
+				Assert.assertTrue("Page " + name + " should contain the modified template",  content.contains("modified template text"));
+			}
+
+		} catch (IOException | FrameworkException ex) {
+
+			logger.warn("", ex);
+			fail("Unexpected exception.");
+
+		} finally {
+
+			try {
+				// clean directories
+				Files.walkFileTree(tmp, new DeletingFileVisitor());
+				Files.delete(tmp);
+
+			} catch (IOException ioex) {}
+		}
+	}
+
 	// ----- private methods -----
 	private void compare(final String sourceHash, final boolean deleteTestDirectory) {
 		compare(sourceHash, deleteTestDirectory, true);
@@ -2090,6 +2281,61 @@ public class DeploymentTest extends StructrUiTest {
 		}
 	}
 
+	private String getPageUuid(final String name) {
+
+		try (final Tx tx = app.tx()) {
+
+			final Page page = app.nodeQuery(Page.class).andName(name).getFirst();
+
+			tx.success();
+
+			return page != null ? page.getUuid() : null;
+
+		} catch (FrameworkException fex) {
+
+			fail("Unexpected exception");
+		}
+
+		return null;
+	}
+
+	private String getPageContent(final String name) {
+
+		try (final Tx tx = app.tx()) {
+
+			final Page page      = app.nodeQuery(Page.class).andName(name).getFirst();
+			final String content = page.getContent(RenderContext.EditMode.NONE);
+
+			tx.success();
+
+			return content;
+
+		} catch (FrameworkException fex) {
+
+			fail("Unexpected exception");
+		}
+
+		return null;
+	}
+
+	private int countContent(final String content) {
+
+		try (final Tx tx = app.tx()) {
+
+			final int count = app.nodeQuery(Content.class).and(Content.content, content).getAsList().size();
+
+			tx.success();
+
+			return count;
+
+		} catch (FrameworkException fex) {
+
+			fail("Unexpected exception");
+		}
+
+		return 0;
+	}
+
 	private String valueOrEmpty(final GraphObject obj, final PropertyKey key) {
 
 		final Object value = obj.getProperty(key);
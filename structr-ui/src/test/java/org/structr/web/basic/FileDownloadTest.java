@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.basic;
+
+import com.jayway.restassured.RestAssured;
+import java.io.IOException;
+import java.util.Collections;
+import org.hamcrest.Matchers;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.graph.Tx;
+import org.structr.dynamic.File;
+import org.structr.web.StructrUiTest;
+import org.structr.web.common.FileHelper;
+import org.structr.web.entity.FileBase;
+
+/**
+ * Tests for conditional and partial downloads of files in HtmlServlet.
+ */
+public class FileDownloadTest extends StructrUiTest {
+
+	@Test
+	public void testRangeRequests() {
+
+		RestAssured.basePath = "/";
+
+		createPublicFile("test.txt", "0123456789abcdefghij");
+
+		// full download
+		final String etag = RestAssured
+			.expect()
+			.statusCode(200)
+			.header("Accept-Ranges", "bytes")
+			.header("Content-Length", "20")
+			.body(Matchers.equalTo("0123456789abcdefghij"))
+			.when()
+			.get("test.txt")
+			.getHeader("ETag");
+
+		assertNotNull("File download should have an ETag", etag);
+
+		RestAssured
+			.given()
+			.header("Range", "bytes=5-9")
+			.expect()
+			.statusCode(206)
+			.header("Content-Range", "bytes 5-9/20")
+			.body(Matchers.equalTo("56789"))
+			.when()
+			.get("test.txt");
+
+		// open and suffix ranges
+		RestAssured.given().header("Range", "bytes=15-").expect().statusCode(206).body(Matchers.equalTo("fghij")).when().get("test.txt");
+		RestAssured.given().header("Range", "bytes=-3").expect().statusCode(206).body(Matchers.equalTo("hij")).when().get("test.txt");
+
+		// range outside of the file
+		RestAssured.given().header("Range", "bytes=30-40").expect().statusCode(416).header("Content-Range", "bytes */20").when().get("test.txt");
+
+		// multiple ranges
+		RestAssured
+			.given()
+			.header("Range", "bytes=0-1,10-11")
+			.expect()
+			.statusCode(206)
+			.contentType(Matchers.startsWith("multipart/byteranges; boundary="))
+			.body(Matchers.containsString("Content-Range: bytes 0-1/20\r\n\r\n01\r\n"))
+			.body(Matchers.containsString("Content-Range: bytes 10-11/20\r\n\r\nab\r\n"))
+			.when()
+			.get("test.txt");
+
+		// overlapping and adjacent ranges are merged into a single range
+		RestAssured
+			.given()
+			.header("Range", "bytes=3-7,0-4,8-9,8-8")
+			.expect()
+			.statusCode(206)
+			.header("Content-Range", "bytes 0-9/20")
+			.body(Matchers.equalTo("0123456789"))
+			.when()
+			.get("test.txt");
+
+		// too many ranges return the whole file
+		RestAssured.given().header("Range", "bytes=" + String.join(",", Collections.nCopies(17, "0-0"))).expect().statusCode(200).body(Matchers.equalTo("0123456789abcdefghij")).when().get("test.txt");
+
+		// If-Range with the current ETag returns the range, with another ETag the whole file
+		RestAssured.given().header("Range", "bytes=5-9").header("If-Range", etag).expect().statusCode(206).body(Matchers.equalTo("56789")).when().get("test.txt");
+		RestAssured.given().header("Range", "bytes=5-9").header("If-Range", "\"1234\"").expect().statusCode(200).body(Matchers.equalTo("0123456789abcdefghij")).when().get("test.txt");
+
+		// conditional requests
+		RestAssured.given().header("If-None-Match", etag).expect().statusCode(304).when().get("test.txt");
+		RestAssured.given().header("If-None-Match", "\"1234\"").expect().statusCode(200).when().get("test.txt");
+	}
+
+	// ----- private methods -----
+	private void createPublicFile(final String name, final String content) {
+
+		try (final Tx tx = app.tx()) {
+
+			final FileBase file = FileHelper.createFile(securityContext, content.getBytes("UTF-8"), "text/plain", File.class, name);
+
+			file.setProperty(FileBase.visibleToPublicUsers, true);
+
+			tx.success();
+
+		} catch (FrameworkException | IOException ex) {
+			ex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+	}
+}
@@ -20,6 +20,7 @@ package org.structr.web.basic;
 
 import org.structr.web.StructrUiTest;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -398,6 +399,66 @@ public class UiTest extends StructrUiTest {
 
 	}
 
+	@Test
+	public void testCreateFileFromStream() {
+
+		FileBase file = null;
+		byte[] data   = null;
+
+		try (final Tx tx = app.tx()) {
+
+			data = IOUtils.toByteArray(UiTest.class.getResourceAsStream("/test/test.png"));
+			file = FileHelper.createFile(securityContext, UiTest.class.getResourceAsStream("/test/test.png"), null, File.class, "test");
+
+			tx.success();
+
+		} catch (FrameworkException | IOException ex) {
+			logger.error("", ex);
+			fail("Unexpected exception");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			// checksum, size and content type are determined while the stream is written
+			assertEquals("Invalid content type of streamed file", "image/png",                                  file.getContentType());
+			assertEquals("Invalid size of streamed file",         Long.valueOf(data.length),                    file.getSize());
+			assertEquals("Invalid checksum of streamed file",     FileHelper.getChecksum(file.getFileOnDisk()), file.getChecksum());
+
+			tx.success();
+
+		} catch (FrameworkException | IOException ex) {
+			logger.error("", ex);
+			fail("Unexpected exception");
+		}
+
+		// overwrite file using its output stream
+		try (final Tx tx = app.tx()) {
+
+			try (final OutputStream os = file.getOutputStream(false, false)) {
+
+				os.write("Hello world!".getBytes("UTF-8"));
+			}
+
+			tx.success();
+
+		} catch (FrameworkException | IOException ex) {
+			logger.error("", ex);
+			fail("Unexpected exception");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			assertEquals("Invalid size after writing to output stream",     Long.valueOf(12),                             file.getSize());
+			assertEquals("Invalid checksum after writing to output stream", FileHelper.getChecksum(file.getFileOnDisk()), file.getChecksum());
+
+			tx.success();
+
+		} catch (FrameworkException | IOException ex) {
+			logger.error("", ex);
+			fail("Unexpected exception");
+		}
+	}
+
 	@Test
 	public void testExtensionBasedMimeTypeDetection() {
 
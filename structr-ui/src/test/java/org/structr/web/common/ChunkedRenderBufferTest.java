@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Test the encoding, chunking and backpressure of ChunkedRenderBuffer.
+ */
+public class ChunkedRenderBufferTest {
+
+	@Test
+	public void testSynchronousOutput() throws IOException {
+
+		final ByteArrayOutputStream out  = new ByteArrayOutputStream();
+		final ChunkedRenderBuffer buffer = new ChunkedRenderBuffer(out);
+		final StringBuilder expected     = new StringBuilder();
+
+		for (int i=0; i<10000; i++) {
+
+			// multi-byte characters and surrogate pairs must not be split at chunk borders
+			final String fragment = "<p>" + i + " äöü € 😀</p>";
+
+			buffer.append(fragment);
+			expected.append(fragment);
+		}
+
+		buffer.finish();
+
+		assertArrayEquals("Invalid chunked output", expected.toString().getBytes(StandardCharsets.UTF_8), out.toByteArray());
+	}
+
+	@Test
+	public void testAsynchronousOutput() throws Exception {
+
+		final Semaphore available        = new Semaphore(0);
+		final ChunkedRenderBuffer buffer = new ChunkedRenderBuffer(available::release);
+		final ByteArrayOutputStream out  = new ByteArrayOutputStream();
+		final StringBuilder expected     = new StringBuilder();
+
+		for (int i=0; i<100000; i++) {
+			expected.append("<div>").append(i).append("</div>");
+		}
+
+		final Thread renderer = new Thread(() -> {
+
+			buffer.append(expected.toString());
+
+			try { buffer.finish(); } catch (IOException ignore) {}
+		});
+
+		renderer.start();
+
+		// the renderer must block when the queue is full
+		renderer.join(500);
+		assertTrue("Rendering thread should be blocked by a full queue", renderer.isAlive());
+
+		while (!buffer.isFinished()) {
+
+			final ByteBuffer chunk = buffer.poll();
+			if (chunk != null) {
+
+				out.write(chunk.array(), chunk.arrayOffset(), chunk.limit());
+				ChunkedRenderBuffer.recycle(chunk);
+
+			} else {
+
+				available.tryAcquire(100, TimeUnit.MILLISECONDS);
+			}
+		}
+
+		renderer.join(1000);
+
+		assertFalse("Rendering thread should have finished", renderer.isAlive());
+		assertArrayEquals("Invalid chunked output", expected.toString().getBytes(StandardCharsets.UTF_8), out.toByteArray());
+	}
+
+	@Test
+	public void testAbort() throws Exception {
+
+		final ChunkedRenderBuffer buffer = new ChunkedRenderBuffer(() -> {});
+		final Thread renderer            = new Thread(() -> {
+
+			for (int i=0; i<100000; i++) {
+				buffer.append("<span>aborted</span>");
+			}
+
+			try { buffer.finish(); } catch (IOException ignore) {}
+		});
+
+		renderer.start();
+		renderer.join(500);
+
+		assertTrue("Rendering thread should be blocked by a full queue", renderer.isAlive());
+
+		// the client went away
+		buffer.abort();
+
+		renderer.join(5000);
+
+		assertFalse("Rendering thread should not block after abort", renderer.isAlive());
+	}
+}
@@ -29,13 +29,16 @@ import static org.junit.Assert.assertNull;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.graph.Tx;
 import org.structr.web.StructrUiTest;
+import org.structr.web.common.RenderedOutputCache;
 import org.w3c.dom.DOMException;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.w3c.dom.Text;
 
 /**
  *
@@ -291,6 +294,176 @@ public class PageTest extends StructrUiTest {
 		}
 	}
 
+	@Test
+	public void testRenderCache() {
+
+		Text text = null;
+
+		try (final Tx tx = app.tx()) {
+
+			final Page page = Page.createNewPage(securityContext, "cachedPage");
+
+			final DOMNode html = (DOMNode)page.createElement("html");
+			final DOMNode head = (DOMNode)page.createElement("head");
+			final DOMNode body = (DOMNode)page.createElement("body");
+			final DOMNode div  = (DOMNode)page.createElement("div");
+			final DOMNode p    = (DOMNode)page.createElement("p");
+
+			text = page.createTextNode("First Paragraph");
+
+			page.appendChild(html);
+			html.appendChild(head);
+			html.appendChild(body);
+			body.appendChild(div);
+			div.appendChild(p);
+			p.appendChild(text);
+
+			// cache rendered output of the div
+			div.setProperty(DOMNode.renderCacheSeconds, 60);
+
+			makePublic(page, html, head, body, div, p, text);
+
+			tx.success();
+
+		} catch (Exception ex) {
+			logger.warn("", ex);
+			fail("Unexpected exception");
+		}
+
+		try {
+
+			RenderedOutputCache.getInstance().clear();
+
+			final Document first  = Jsoup.connect(baseUri + "cachedPage").get();
+
+			assertEquals("First Paragraph", first.select("div > p").text());
+			assertEquals(1, RenderedOutputCache.getInstance().size());
+
+			final Document second = Jsoup.connect(baseUri + "cachedPage").get();
+
+			// pages should render exactly identical
+			assertEquals(first.outerHtml(), second.outerHtml());
+
+		} catch (Exception ex) {
+			logger.warn("", ex);
+			fail("Unexpected exception");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			text.setData("Second Paragraph");
+
+			tx.success();
+
+		} catch (Exception ex) {
+			logger.warn("", ex);
+			fail("Unexpected exception");
+		}
+
+		try {
+
+			// modification of the content must invalidate the cached output
+			final Document third = Jsoup.connect(baseUri + "cachedPage").get();
+
+			assertEquals("Second Paragraph", third.select("div > p").text());
+
+		} catch (Exception ex) {
+			logger.warn("", ex);
+			fail("Unexpected exception");
+		}
+	}
+
+	@Test
+	public void testPageRenderCache() {
+
+		Text text = null;
+
+		// whole pages are rendered asynchronously by default
+		assertTrue(Settings.Async.getValue());
+
+		try (final Tx tx = app.tx()) {
+
+			final Page page = Page.createNewPage(securityContext, "cachedWholePage");
+
+			final DOMNode html = (DOMNode)page.createElement("html");
+			final DOMNode head = (DOMNode)page.createElement("head");
+			final DOMNode body = (DOMNode)page.createElement("body");
+			final DOMNode p1   = (DOMNode)page.createElement("p");
+			final DOMNode p2   = (DOMNode)page.createElement("p");
+			final Text token   = page.createTextNode("${random(16)}");
+
+			text = page.createTextNode("First Paragraph");
+
+			page.appendChild(html);
+			html.appendChild(head);
+			html.appendChild(body);
+			body.appendChild(p1);
+			body.appendChild(p2);
+			p1.appendChild(text);
+			p2.appendChild(token);
+
+			// cache rendered output of the whole page
+			page.setProperty(Page.cacheForSeconds, 60);
+
+			makePublic(page, html, head, body, p1, p2, text, token);
+
+			tx.success();
+
+		} catch (Exception ex) {
+			logger.warn("", ex);
+			fail("Unexpected exception");
+		}
+
+		Document first = null;
+
+		try {
+
+			RenderedOutputCache.getInstance().clear();
+
+			first = Jsoup.connect(baseUri + "cachedWholePage").get();
+
+			assertEquals("First Paragraph", first.select("body > p").first().text());
+			assertEquals(1, RenderedOutputCache.getInstance().size());
+
+			Thread.sleep(10);
+
+			// the second response is served from the cache, including the random token
+			final Document second = Jsoup.connect(baseUri + "cachedWholePage").get();
+
+			assertEquals(first.outerHtml(), second.outerHtml());
+
+		} catch (Exception ex) {
+			logger.warn("", ex);
+			fail("Unexpected exception");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			text.setData("Second Paragraph");
+
+			tx.success();
+
+		} catch (Exception ex) {
+			logger.warn("", ex);
+			fail("Unexpected exception");
+		}
+
+		try {
+
+			Thread.sleep(10);
+
+			// modification of the content must invalidate the cached page
+			final Document third = Jsoup.connect(baseUri + "cachedWholePage").get();
+
+			assertEquals("Second Paragraph", third.select("body > p").first().text());
+			assertTrue(!first.select("body > p").last().text().equals(third.select("body > p").last().text()));
+
+		} catch (Exception ex) {
+			logger.warn("", ex);
+			fail("Unexpected exception");
+		}
+	}
+
 	@Test
 	public void testCloneNode() {
 
@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.servlet;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.structr.web.common.ChunkedRenderBuffer;
+
+/**
+ * Test that a stalled client does not block the rendering thread forever.
+ */
+public class ChunkedOutputWriterTest {
+
+	@Test
+	public void testStalledClientTimeout() throws Exception {
+
+		final AtomicInteger completed    = new AtomicInteger();
+		final AsyncContext async         = createAsyncContext(completed);
+		final ChunkedOutputWriter writer = new ChunkedOutputWriter(async, new StalledOutputStream());
+		final ChunkedRenderBuffer buffer = new ChunkedRenderBuffer(writer::chunkAvailable);
+		final Thread renderer            = startRenderer(buffer);
+
+		writer.setBuffer(buffer);
+
+		// the client does not read, so the stream never becomes ready
+		writer.onWritePossible();
+
+		renderer.join(500);
+		assertTrue("Rendering thread should be blocked by a stalled client", renderer.isAlive());
+
+		// the container times out the request
+		writer.onTimeout(new AsyncEvent(async));
+
+		renderer.join(5000);
+
+		assertFalse("Rendering thread should not block after timeout", renderer.isAlive());
+		assertTrue("Buffer should be aborted after timeout", buffer.isAborted());
+		assertEquals("Async context should be completed once", 1, completed.get());
+	}
+
+	@Test
+	public void testStalledClientComplete() throws Exception {
+
+		final AtomicInteger completed    = new AtomicInteger();
+		final AsyncContext async         = createAsyncContext(completed);
+		final ChunkedOutputWriter writer = new ChunkedOutputWriter(async, new StalledOutputStream());
+		final ChunkedRenderBuffer buffer = new ChunkedRenderBuffer(writer::chunkAvailable);
+		final Thread renderer            = startRenderer(buffer);
+
+		writer.setBuffer(buffer);
+		writer.onWritePossible();
+
+		renderer.join(500);
+		assertTrue("Rendering thread should be blocked by a stalled client", renderer.isAlive());
+
+		// the container completes the request, e.g. after the connection was closed
+		writer.onComplete(new AsyncEvent(async));
+
+		renderer.join(5000);
+
+		assertFalse("Rendering thread should not block after the request was completed", renderer.isAlive());
+		assertTrue("Buffer should be aborted after completion", buffer.isAborted());
+
+		// an error after completion must not complete the context again
+		writer.onError(new IOException("Connection closed"));
+
+		assertEquals("Async context should not be completed by the writer", 0, completed.get());
+	}
+
+	// ----- private methods -----
+	private Thread startRenderer(final ChunkedRenderBuffer buffer) {
+
+		final Thread renderer = new Thread(() -> {
+
+			for (int i=0; i<100000; i++) {
+				buffer.append("<span>stalled</span>");
+			}
+
+			try { buffer.finish(); } catch (IOException ignore) {}
+		});
+
+		renderer.start();
+
+		return renderer;
+	}
+
+	private AsyncContext createAsyncContext(final AtomicInteger completed) {
+
+		return (AsyncContext)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { AsyncContext.class }, (proxy, method, args) -> {
+
+			if ("complete".equals(method.getName())) {
+				completed.incrementAndGet();
+			}
+
+			return null;
+		});
+	}
+
+	// ----- nested classes -----
+	private static class StalledOutputStream extends ServletOutputStream {
+
+		@Override
+		public boolean isReady() {
+			return false;
+		}
+
+		@Override
+		public void setWriteListener(final WriteListener writeListener) {
+		}
+
+		@Override
+		public void write(final int b) throws IOException {
+			throw new IOException("Stream is not ready");
+		}
+	}
+}
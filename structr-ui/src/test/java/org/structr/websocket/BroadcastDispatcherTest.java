@@ -0,0 +1,212 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.websocket;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+import org.structr.api.config.Settings;
+
+/**
+ * Tests the per-client queues of the BroadcastDispatcher.
+ */
+public class BroadcastDispatcherTest {
+
+	private int previousQueueSize = 0;
+	private int previousThreads   = 0;
+
+	@Before
+	public void setUp() {
+
+		previousQueueSize = Settings.WebsocketBroadcastQueue.getValue();
+		previousThreads   = Settings.WebsocketBroadcastThreads.getValue();
+	}
+
+	@After
+	public void tearDown() {
+
+		Settings.WebsocketBroadcastQueue.setValue(previousQueueSize);
+		Settings.WebsocketBroadcastThreads.setValue(previousThreads);
+	}
+
+	@Test
+	public void testMessageOrderPerClient() throws InterruptedException {
+
+		Settings.WebsocketBroadcastQueue.setValue(10000);
+		Settings.WebsocketBroadcastThreads.setValue(4);
+
+		final BroadcastDispatcher dispatcher = new BroadcastDispatcher(null);
+		final List<TestClient> clients       = new ArrayList<>();
+		final int count                      = 2000;
+
+		for (int i=0; i<5; i++) {
+			clients.add(new TestClient(null, null));
+		}
+
+		for (int i=0; i<count; i++) {
+
+			for (final TestClient client : clients) {
+				dispatcher.send(client, Integer.toString(i));
+			}
+		}
+
+		for (final TestClient client : clients) {
+
+			assertTrue("Client did not receive all messages in time", client.awaitMessages(count));
+			assertEquals("Messages were not sent in the order they were queued", sequence(0, count), client.getMessages());
+		}
+	}
+
+	@Test
+	public void testSlowClient() throws InterruptedException {
+
+		Settings.WebsocketBroadcastQueue.setValue(4);
+		Settings.WebsocketBroadcastThreads.setValue(2);
+
+		final BroadcastDispatcher dispatcher = new BroadcastDispatcher(null);
+		final CountDownLatch sending         = new CountDownLatch(1);
+		final CountDownLatch release         = new CountDownLatch(1);
+		final TestClient slow                = new TestClient(sending, release);
+		final TestClient fast                = new TestClient(null, null);
+		final long droppedBefore             = (Long)BroadcastDispatcher.getStatistics().get("dropped");
+
+		// the first message blocks the slow client
+		dispatcher.send(slow, "0");
+		dispatcher.send(fast, "0");
+
+		assertTrue("Slow client did not start sending", sending.await(10, TimeUnit.SECONDS));
+
+		for (int i=1; i<20; i++) {
+
+			dispatcher.send(slow, Integer.toString(i));
+			dispatcher.send(fast, Integer.toString(i));
+
+			// wait for the fast client so that its queue never overflows
+			assertTrue("Fast client did not receive message in time", fast.awaitMessages(i + 1));
+		}
+
+		// a blocked client must not delay the others
+		assertEquals("Fast client was delayed by slow client", sequence(0, 20), fast.getMessages());
+
+		release.countDown();
+
+		assertTrue("Slow client did not receive messages in time", slow.awaitMessages(5));
+
+		// the oldest queued messages of the slow client are dropped
+		assertEquals("Slow client did not receive the newest messages", Arrays.asList("0", "16", "17", "18", "19"), slow.getMessages());
+		assertEquals("Dropped messages were not counted", 15L, (Long)BroadcastDispatcher.getStatistics().get("dropped") - droppedBefore);
+	}
+
+	// ----- private methods -----
+	private List<String> sequence(final int start, final int end) {
+
+		final List<String> list = new ArrayList<>();
+
+		for (int i=start; i<end; i++) {
+			list.add(Integer.toString(i));
+		}
+
+		return list;
+	}
+
+	// ----- nested classes -----
+	private static class TestClient extends StructrWebSocket {
+
+		private final List<String> messages = Collections.synchronizedList(new ArrayList<>());
+		private Session session             = null;
+
+		public TestClient(final CountDownLatch sending, final CountDownLatch release) {
+
+			final RemoteEndpoint remote = (RemoteEndpoint)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { RemoteEndpoint.class }, (proxy, method, args) -> {
+
+				if ("sendString".equals(method.getName())) {
+
+					if (sending != null) {
+
+						sending.countDown();
+						release.await(10, TimeUnit.SECONDS);
+					}
+
+					messages.add((String)args[0]);
+				}
+
+				return null;
+			});
+
+			this.session = (Session)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { Session.class }, (proxy, method, args) -> {
+
+				switch (method.getName()) {
+
+					case "getRemote":
+						return remote;
+
+					case "hashCode":
+						return System.identityHashCode(proxy);
+
+					case "equals":
+						return proxy == args[0];
+
+					case "toString":
+						return "TestSession";
+				}
+
+				return null;
+			});
+		}
+
+		@Override
+		public Session getSession() {
+			return session;
+		}
+
+		public List<String> getMessages() {
+
+			synchronized (messages) {
+				return new ArrayList<>(messages);
+			}
+		}
+
+		public boolean awaitMessages(final int count) throws InterruptedException {
+
+			final long timeout = System.currentTimeMillis() + 10000;
+
+			while (messages.size() < count) {
+
+				if (System.currentTimeMillis() > timeout) {
+					return false;
+				}
+
+				Thread.sleep(10);
+			}
+
+			return true;
+		}
+	}
+}